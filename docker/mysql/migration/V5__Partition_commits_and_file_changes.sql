@@ -0,0 +1,133 @@
+-- Monthly range partitioning for commits and file_changes
+-- Partitions are named pYYYYMM and hold rows with timestamp < first day of the following month,
+-- the same layout CreateMonthlyPartition (V3) produces. Rows older than the first month go to p_history.
+-- Future partitions and retention are maintained by PartitionMaintenanceService in the application.
+
+USE gitlab_metrics;
+
+-- The V3 event also targeted non-partitioned tables and conflicts with the application job
+DROP EVENT IF EXISTS monthly_partition_maintenance;
+
+-- file_changes carries its commit's timestamp so it can be partitioned and pruned on its own
+ALTER TABLE file_changes ADD COLUMN commit_timestamp DATETIME NULL AFTER commit_id;
+
+UPDATE file_changes fc
+JOIN commits c ON fc.commit_id = c.id
+SET fc.commit_timestamp = c.timestamp
+WHERE fc.commit_timestamp IS NULL;
+
+ALTER TABLE file_changes MODIFY commit_timestamp DATETIME NOT NULL;
+
+DELIMITER //
+
+-- Partitioned InnoDB tables cannot have foreign keys
+CREATE PROCEDURE IF NOT EXISTS DropForeignKeys(
+    IN p_table VARCHAR(64)
+)
+BEGIN
+    DECLARE done INT DEFAULT FALSE;
+    DECLARE fk_name VARCHAR(64);
+    DECLARE fk_cursor CURSOR FOR
+        SELECT CONSTRAINT_NAME
+        FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS
+        WHERE TABLE_SCHEMA = DATABASE()
+        AND TABLE_NAME = p_table
+        AND CONSTRAINT_TYPE = 'FOREIGN KEY';
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = TRUE;
+
+    OPEN fk_cursor;
+    read_loop: LOOP
+        FETCH fk_cursor INTO fk_name;
+        IF done THEN
+            LEAVE read_loop;
+        END IF;
+        SET @sql = CONCAT('ALTER TABLE ', p_table, ' DROP FOREIGN KEY ', fk_name);
+        PREPARE stmt FROM @sql;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END LOOP;
+    CLOSE fk_cursor;
+END //
+
+-- Every unique key of a partitioned table must include the partitioning column
+CREATE PROCEDURE IF NOT EXISTS DropSecondaryUniqueKeys(
+    IN p_table VARCHAR(64)
+)
+BEGIN
+    DECLARE done INT DEFAULT FALSE;
+    DECLARE idx_name VARCHAR(64);
+    DECLARE idx_cursor CURSOR FOR
+        SELECT DISTINCT INDEX_NAME
+        FROM INFORMATION_SCHEMA.STATISTICS
+        WHERE TABLE_SCHEMA = DATABASE()
+        AND TABLE_NAME = p_table
+        AND NON_UNIQUE = 0
+        AND INDEX_NAME <> 'PRIMARY';
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = TRUE;
+
+    OPEN idx_cursor;
+    read_loop: LOOP
+        FETCH idx_cursor INTO idx_name;
+        IF done THEN
+            LEAVE read_loop;
+        END IF;
+        SET @sql = CONCAT('ALTER TABLE ', p_table, ' DROP INDEX ', idx_name);
+        PREPARE stmt FROM @sql;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END LOOP;
+    CLOSE idx_cursor;
+END //
+
+-- Partition a table by month on the given column, from the oldest row's month through p_months_ahead months from now
+CREATE PROCEDURE IF NOT EXISTS PartitionTableMonthly(
+    IN p_table VARCHAR(64),
+    IN p_column VARCHAR(64),
+    IN p_months_ahead INT
+)
+BEGIN
+    DECLARE month_start DATE;
+    DECLARE last_month DATE;
+    DECLARE partitions TEXT;
+
+    SET @sql = CONCAT('SELECT DATE_FORMAT(COALESCE(MIN(', p_column, '), CURDATE()), ''%Y-%m-01'') INTO @first_month FROM ', p_table);
+    PREPARE stmt FROM @sql;
+    EXECUTE stmt;
+    DEALLOCATE PREPARE stmt;
+
+    SET month_start = @first_month;
+    SET last_month = DATE_FORMAT(DATE_ADD(CURDATE(), INTERVAL p_months_ahead MONTH), '%Y-%m-01');
+    SET partitions = CONCAT('PARTITION p_history VALUES LESS THAN (TO_DAYS(''', month_start, '''))');
+
+    WHILE month_start <= last_month DO
+        SET partitions = CONCAT(partitions, ', PARTITION p', DATE_FORMAT(month_start, '%Y%m'),
+                                ' VALUES LESS THAN (TO_DAYS(''', DATE_ADD(month_start, INTERVAL 1 MONTH), '''))');
+        SET month_start = DATE_ADD(month_start, INTERVAL 1 MONTH);
+    END WHILE;
+
+    SET @sql = CONCAT('ALTER TABLE ', p_table, ' PARTITION BY RANGE (TO_DAYS(', p_column, ')) (', partitions, ')');
+    PREPARE stmt FROM @sql;
+    EXECUTE stmt;
+    DEALLOCATE PREPARE stmt;
+END //
+
+DELIMITER ;
+
+-- commits: keep commit SHA de-duplication through (commit_sha, timestamp); a commit's timestamp never changes
+CALL DropForeignKeys('file_changes');
+CALL DropSecondaryUniqueKeys('commits');
+ALTER TABLE commits
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, timestamp),
+    ADD UNIQUE KEY uk_commit_sha_timestamp (commit_sha, timestamp);
+
+ALTER TABLE file_changes
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, commit_timestamp),
+    ADD INDEX idx_file_change_commit_timestamp (commit_timestamp);
+
+CALL PartitionTableMonthly('commits', 'timestamp', 12);
+CALL PartitionTableMonthly('file_changes', 'commit_timestamp', 12);
+
+ANALYZE TABLE commits;
+ANALYZE TABLE file_changes;
@@ -0,0 +1,64 @@
+-- Composite covering indexes for the hot repository query shapes
+-- Almost every query filters on project_id plus a time range; the leading (project_id, time) columns
+-- serve the range scan and the trailing columns let the aggregates be answered from the index alone.
+-- On the partitioned commits/file_changes tables (V5) every secondary index also carries the primary key.
+-- Verify with GET /api/performance/database/index-advice, which runs EXPLAIN over every @Query method.
+
+USE gitlab_metrics;
+
+-- commits: developer leaderboards over a time range (CommitRepository.getDeveloperStats*, findTopDevelopers*)
+CREATE INDEX IF NOT EXISTS idx_commits_timestamp_developer_covering
+    ON commits(timestamp, developer_id, developer_name, lines_added, lines_deleted, files_changed);
+-- commits: per-project daily/branch breakdowns
+CREATE INDEX IF NOT EXISTS idx_commits_project_timestamp_branch
+    ON commits(project_id, timestamp, branch, lines_added, lines_deleted);
+
+-- Issues rows are updated in place on every webhook (status, assignee, closed_at, resolution time), and each
+-- update rewrites every index holding a changed column, so issues only get narrow scan indexes plus
+-- one covering index; bug analysis and assignee/closed_at leaderboards stay on the V2/V4 indexes.
+-- issues: per-project range counts by status/type (getProjectIssueStats, getIssueTypeStats, getIssueStatusStats, trends)
+CREATE INDEX IF NOT EXISTS idx_issues_project_created_covering
+    ON issues(project_id, created_at, status, issue_type, priority);
+-- issues: long-pending and overdue scans ordered by created_at / due_date
+CREATE INDEX IF NOT EXISTS idx_issues_status_created ON issues(status, created_at);
+CREATE INDEX IF NOT EXISTS idx_issues_status_due_date ON issues(status, due_date);
+-- issues: per-project open listings; replaces the V2 (project_id, status) index, which is its prefix
+CREATE INDEX IF NOT EXISTS idx_issues_project_status_created ON issues(project_id, status, created_at);
+DROP INDEX IF EXISTS idx_issues_project_status ON issues;
+
+-- merge_requests: per-project range counts by status and target branch
+CREATE INDEX IF NOT EXISTS idx_merge_requests_project_created_covering
+    ON merge_requests(project_id, created_at, status, target_branch, merged_at);
+-- merge_requests: merge time analysis (project, status equality then created_at range)
+CREATE INDEX IF NOT EXISTS idx_merge_requests_project_status_created
+    ON merge_requests(project_id, status, created_at, merged_at);
+-- merge_requests: author statistics over a time range
+CREATE INDEX IF NOT EXISTS idx_merge_requests_created_author_covering
+    ON merge_requests(created_at, author_id, status, merged_at, additions, deletions, changed_files);
+-- merge_requests: status-filtered listings across projects (findByStatus*, open MR scans)
+CREATE INDEX IF NOT EXISTS idx_merge_requests_status_project_created
+    ON merge_requests(status, project_id, created_at);
+
+-- quality_metrics: overview and trend aggregates (getQualityOverviewByProjects, getQualityTrend*)
+-- Rows are insert-only, one per analysis run, so the wide covering index costs one index write per analysis
+-- and no update traffic. It covers every column of the V2 (project_id, timestamp) and V4 5-column covering
+-- indexes, which are dropped so the table keeps the same number of secondary indexes.
+CREATE INDEX IF NOT EXISTS idx_quality_metrics_overview_covering
+    ON quality_metrics(project_id, timestamp, quality_gate, code_complexity, duplicate_rate,
+                       maintainability_index, technical_debt, bugs, vulnerabilities, code_smells);
+DROP INDEX IF EXISTS idx_quality_metrics_project_timestamp ON quality_metrics;
+DROP INDEX IF EXISTS idx_quality_metrics_project_timestamp_covering ON quality_metrics;
+CREATE INDEX IF NOT EXISTS idx_quality_metrics_project_gate_timestamp ON quality_metrics(project_id, quality_gate, timestamp);
+
+-- test_coverage: trend and latest-per-project lookups
+CREATE INDEX IF NOT EXISTS idx_test_coverage_trend_covering
+    ON test_coverage(project_id, timestamp, line_coverage, branch_coverage, function_coverage, status);
+CREATE INDEX IF NOT EXISTS idx_test_coverage_project_status_timestamp ON test_coverage(project_id, status, timestamp);
+CREATE INDEX IF NOT EXISTS idx_test_coverage_status_timestamp ON test_coverage(status, timestamp);
+CREATE INDEX IF NOT EXISTS idx_test_coverage_timestamp_project ON test_coverage(timestamp, project_id, line_coverage);
+
+ANALYZE TABLE commits;
+ANALYZE TABLE issues;
+ANALYZE TABLE merge_requests;
+ANALYZE TABLE quality_metrics;
+ANALYZE TABLE test_coverage;
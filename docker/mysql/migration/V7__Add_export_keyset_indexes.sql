@@ -0,0 +1,10 @@
+-- Keyset indexes for the streaming exports (GET /api/v1/exports/{type})
+-- Exports walk each table ordered by (time, id). InnoDB appends the primary key to every secondary
+-- index, so commits(timestamp), file_changes(commit_timestamp) and issues(created_at) already provide
+-- that order; per-project issue exports need an index that ends in created_at so id follows it directly.
+
+USE gitlab_metrics;
+
+CREATE INDEX IF NOT EXISTS idx_issues_project_created_keyset ON issues(project_id, created_at);
+
+ANALYZE TABLE issues;
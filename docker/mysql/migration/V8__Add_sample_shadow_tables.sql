@@ -0,0 +1,29 @@
+-- Sampled shadow tables for accuracy=approx queries (leaderboard, project activity, quality overview)
+-- SampleService copies the rows selected by MOD(FLOOR(MOD(id * 2654435761, 2^32) / 65536), app.approx.sample-modulus) = 0,
+-- so the same row is always in or out of the sample. Only the columns the approximate aggregates read are kept.
+-- Rebuild after changing the sample modulus.
+
+USE gitlab_metrics;
+
+CREATE TABLE IF NOT EXISTS commits_sample (
+    id BIGINT PRIMARY KEY,
+    project_id VARCHAR(100) NOT NULL,
+    developer_id VARCHAR(100) NOT NULL,
+    developer_name VARCHAR(255),
+    timestamp DATETIME NOT NULL,
+    lines_added INT,
+    lines_deleted INT,
+    files_changed INT,
+    INDEX idx_commits_sample_timestamp (timestamp, project_id, developer_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS quality_metrics_sample (
+    id BIGINT PRIMARY KEY,
+    project_id VARCHAR(100) NOT NULL,
+    timestamp DATETIME NOT NULL,
+    code_complexity DOUBLE,
+    duplicate_rate DOUBLE,
+    maintainability_index DOUBLE,
+    technical_debt DOUBLE,
+    INDEX idx_quality_metrics_sample_timestamp (timestamp, project_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
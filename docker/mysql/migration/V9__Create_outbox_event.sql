@@ -0,0 +1,29 @@
+-- Transactional outbox (OutboxService / OutboxRelay)
+-- Events are inserted in the same transaction as the business change and published by the relay after commit.
+-- The relay claims batches with SELECT ... WHERE status = 'PENDING' AND id > ? ... ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED
+-- (MySQL 8.0+) and sets claimed_until in the same short transaction, then publishes without holding locks or a connection.
+-- idx_outbox_status_id keeps each poll a short range scan and lets several relay nodes run side by side.
+-- SENT rows are purged after app.messaging.outbox.sent-retention-hours; FAILED rows (unroutable messages) are kept
+-- for inspection until failed-retention-hours.
+-- With project sharding enabled, apply this migration to every shard.
+
+USE gitlab_metrics;
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    exchange VARCHAR(255) NOT NULL,
+    routing_key VARCHAR(255) NOT NULL,
+    event_type VARCHAR(100),
+    content_type VARCHAR(100),
+    headers TEXT,
+    payload MEDIUMBLOB NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1024),
+    claimed_until DATETIME(3),
+    created_at DATETIME(3) NOT NULL,
+    sent_at DATETIME(3),
+    INDEX idx_outbox_status_id (status, id),
+    INDEX idx_outbox_status_sent_at (status, sent_at),
+    INDEX idx_outbox_status_created_at (status, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
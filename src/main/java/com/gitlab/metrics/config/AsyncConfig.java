@@ -36,4 +36,19 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * 实时推送发送线程池，SSE写出在此执行而不占用定时任务线程
+     * 每个订阅者同一时刻最多一个发送任务，队列按订阅者数量设上限，放不下时断开该订阅者
+     */
+    @Bean(name = "realtimePushExecutor")
+    public Executor realtimePushExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("Realtime-Push-");
+        executor.initialize();
+        return executor;
+    }
+}
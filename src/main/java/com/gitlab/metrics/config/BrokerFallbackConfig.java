@@ -0,0 +1,86 @@
+package com.gitlab.metrics.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.messaging.BrokerFallbackPublisher;
+import com.gitlab.metrics.messaging.ConfirmedSender;
+import com.gitlab.metrics.messaging.ConfirmingEventPublisher;
+import com.gitlab.metrics.messaging.SegmentSpool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Webhook 事件的消息队列故障兜底：“rabbitmq-publish”熔断器打开后，事件暂存到本地段文件，
+ * 消息队列恢复接收后按暂存顺序限速重放。
+ * 重放使用独立的 mandatory 模板并逐条等待确认，保证暂存顺序不变。
+ * 事件在发布器重试耗尽后才会暂存，期间发布的其他事件可能先于它到达消息队列；顺序保证只针对暂存区，不是整体发布顺序。
+ * 事件经 RabbitMQ 传输时，此发布器是首选的 EventTransport
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.messaging", name = "transport", havingValue = "rabbitmq", matchIfMissing = true)
+public class BrokerFallbackConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrokerFallbackConfig.class);
+
+    public static final String CIRCUIT_BREAKER_NAME = "rabbitmq-publish";
+
+    @Autowired
+    private BrokerFallbackPublisher brokerFallbackPublisher;
+
+    @Bean
+    public static BrokerFallbackProperties brokerFallbackProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.fallback", BrokerFallbackProperties.class)
+            .orElseGet(BrokerFallbackProperties::new);
+    }
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public static BrokerFallbackPublisher brokerFallbackPublisher(ConfirmingEventPublisher eventPublisher,
+                                                                  @Qualifier("eventMessageConverter") MessageConverter messageConverter,
+                                                                  ObjectMapper objectMapper, ConnectionFactory connectionFactory,
+                                                                  CircuitBreakerConfig.CircuitBreakerRegistry circuitBreakerRegistry,
+                                                                  BrokerFallbackProperties properties,
+                                                                  ObjectProvider<MeterRegistry> meterRegistry) throws IOException {
+        SegmentSpool spool = null;
+        if (properties.isEnabled()) {
+            spool = new SegmentSpool(Paths.get(properties.getDirectory()), properties.getSegmentBytes(),
+                properties.getMaxBytes(), properties.isFsync());
+            logger.info("Broker fallback spool at {}: {} events pending", properties.getDirectory(), spool.size());
+        }
+        RabbitTemplate replayTemplate = new RabbitTemplate(connectionFactory);
+        replayTemplate.setMandatory(true);
+        ConfirmedSender replaySender = new ConfirmedSender(replayTemplate, connectionFactory.isPublisherConfirms(),
+            properties.getConfirmTimeoutMs());
+        return new BrokerFallbackPublisher(eventPublisher, messageConverter, objectMapper, spool, replaySender,
+            circuitBreakerRegistry.getCircuitBreaker(CIRCUIT_BREAKER_NAME, properties.getFailureThreshold(),
+                properties.getOpenTimeoutMs()),
+            properties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Scheduled(fixedDelayString = "${app.messaging.fallback.replay-interval-ms:1000}")
+    public void replaySpooledEvents() {
+        try {
+            brokerFallbackPublisher.replay();
+        } catch (RuntimeException e) {
+            logger.warn("Spool replay failed: {}", e.getMessage());
+        }
+    }
+}
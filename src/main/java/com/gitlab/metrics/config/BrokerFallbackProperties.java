@@ -0,0 +1,79 @@
+package com.gitlab.metrics.config;
+
+/**
+ * broker 故障降级配置
+ * 绑定 app.messaging.fallback：发布连续失败使熔断器打开后，事件写入本地段文件队列，
+ * broker 恢复后按写入磁盘队列的顺序限速重放
+ */
+public class BrokerFallbackProperties {
+
+    private boolean enabled = true;
+    private String directory = "data/spool";
+    private long segmentBytes = 64L * 1024 * 1024;
+    private long maxBytes = 2L * 1024 * 1024 * 1024;
+    private boolean fsync = true;
+    private int failureThreshold = 5;
+    private long openTimeoutMs = 30000;
+    private int replayRatePerSecond = 200;
+    private int replayBatchSize = 100;
+    private long replayIntervalMs = 1000;
+    private long confirmTimeoutMs = 5000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /**
+     * 段文件目录，每个实例使用独立的目录
+     */
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+
+    public long getSegmentBytes() { return segmentBytes; }
+    public void setSegmentBytes(long segmentBytes) { this.segmentBytes = segmentBytes; }
+
+    /**
+     * 段文件总大小上限，超过后事件无法暂存，发布以失败结束
+     */
+    public long getMaxBytes() { return maxBytes; }
+    public void setMaxBytes(long maxBytes) { this.maxBytes = maxBytes; }
+
+    /**
+     * 每条记录写入后刷盘；关闭后进程崩溃不丢数据，但断电可能丢失最近写入的记录
+     */
+    public boolean isFsync() { return fsync; }
+    public void setFsync(boolean fsync) { this.fsync = fsync; }
+
+    /**
+     * 连续失败多少次后熔断器打开
+     */
+    public int getFailureThreshold() { return failureThreshold; }
+    public void setFailureThreshold(int failureThreshold) { this.failureThreshold = failureThreshold; }
+
+    /**
+     * 熔断器打开后多久允许重放探测 broker
+     */
+    public long getOpenTimeoutMs() { return openTimeoutMs; }
+    public void setOpenTimeoutMs(long openTimeoutMs) { this.openTimeoutMs = openTimeoutMs; }
+
+    /**
+     * 重放速率上限，避免恢复后的积压瞬间压垮 broker 和消费者
+     */
+    public int getReplayRatePerSecond() { return replayRatePerSecond; }
+    public void setReplayRatePerSecond(int replayRatePerSecond) { this.replayRatePerSecond = replayRatePerSecond; }
+
+    public int getReplayBatchSize() { return replayBatchSize; }
+    public void setReplayBatchSize(int replayBatchSize) { this.replayBatchSize = replayBatchSize; }
+
+    public long getReplayIntervalMs() { return replayIntervalMs; }
+    public void setReplayIntervalMs(long replayIntervalMs) { this.replayIntervalMs = replayIntervalMs; }
+
+    public long getConfirmTimeoutMs() { return confirmTimeoutMs; }
+    public void setConfirmTimeoutMs(long confirmTimeoutMs) { this.confirmTimeoutMs = confirmTimeoutMs; }
+
+    /**
+     * 每次重放最多发送的消息数
+     */
+    public int replayBudget() {
+        return (int) Math.max(1, (long) replayRatePerSecond * replayIntervalMs / 1000);
+    }
+}
@@ -0,0 +1,116 @@
+package com.gitlab.metrics.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池隔离舱
+ * 将主库的 Hikari 连接池拆分为同一数据库上的多个命名连接池（ingest、interactive-read、batch），
+ * 各自有独立的大小、超时和泄漏检测，每次调用由 ConnectionPoolAspect 选择
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.bulkheads", name = "enabled", havingValue = "true")
+public class BulkheadDataSourceConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadDataSourceConfig.class);
+
+    @Bean
+    public static BulkheadDataSourceProperties bulkheadDataSourceProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.datasource.bulkheads", BulkheadDataSourceProperties.class)
+            .orElseGet(BulkheadDataSourceProperties::new);
+    }
+
+    @Bean
+    public static BulkheadPostProcessor bulkheadPostProcessor(Environment environment,
+                                                              ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BulkheadPostProcessor(bulkheadDataSourceProperties(environment), meterRegistry);
+    }
+
+    @Bean
+    public ConnectionPoolAspect connectionPoolAspect(BulkheadDataSourceProperties properties) {
+        return new ConnectionPoolAspect(properties.getBindings());
+    }
+
+    /**
+     * 先于只读副本路由的后处理器执行，副本路由包装的是已拆分隔离舱的主库
+     */
+    static class BulkheadPostProcessor implements BeanPostProcessor, DisposableBean, Ordered {
+
+        private final BulkheadDataSourceProperties properties;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private BulkheadRoutingDataSource routingDataSource;
+
+        BulkheadPostProcessor(BulkheadDataSourceProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+            this.properties = properties;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public int getOrder() {
+            return 0;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!"dataSource".equals(beanName) || !(bean instanceof HikariDataSource)) {
+                return bean;
+            }
+            HikariDataSource ingest = (HikariDataSource) bean;
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+
+            Map<String, DataSource> pools = new LinkedHashMap<>();
+            for (Map.Entry<String, BulkheadDataSourceProperties.Pool> entry : properties.getPools().entrySet()) {
+                if (!BulkheadRoutingDataSource.INGEST.equals(entry.getKey())) {
+                    pools.put(entry.getKey(), createPool(ingest, entry.getKey(), entry.getValue(), registry));
+                }
+            }
+
+            routingDataSource = new BulkheadRoutingDataSource(ingest, pools);
+            if (registry != null) {
+                routingDataSource.bindMetrics(registry);
+            }
+            logger.info("Connection-pool bulkheads: {}", routingDataSource.getPools().keySet());
+            return routingDataSource;
+        }
+
+        private HikariDataSource createPool(HikariDataSource template, String name,
+                                            BulkheadDataSourceProperties.Pool pool, MeterRegistry registry) {
+            HikariConfig config = new HikariConfig();
+            template.copyStateTo(config);
+            config.setPoolName(template.getPoolName() + "-" + name);
+            config.setMaximumPoolSize(pool.getMaximumPoolSize());
+            config.setMinimumIdle(pool.getMinimumIdle());
+            config.setConnectionTimeout(pool.getConnectionTimeout());
+            config.setLeakDetectionThreshold(pool.getLeakDetectionThreshold());
+            config.setMetricRegistry(null);
+            config.setMetricsTrackerFactory(registry != null ? new MicrometerMetricsTrackerFactory(registry) : null);
+            return new HikariDataSource(config);
+        }
+
+        @Override
+        public void destroy() {
+            if (routingDataSource != null) {
+                routingDataSource.close();
+            }
+        }
+    }
+}
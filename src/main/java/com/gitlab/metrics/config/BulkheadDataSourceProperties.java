@@ -0,0 +1,49 @@
+package com.gitlab.metrics.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池隔离舱配置
+ * 绑定 app.datasource.bulkheads；ingest 池沿用 spring.datasource.hikari 配置
+ */
+public class BulkheadDataSourceProperties {
+
+    private boolean enabled = false;
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+    private Map<String, String> bindings = new LinkedHashMap<>();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public Map<String, Pool> getPools() { return pools; }
+    public void setPools(Map<String, Pool> pools) { this.pools = pools; }
+
+    /**
+     * 包名或类名前缀到连接池名称的映射
+     */
+    public Map<String, String> getBindings() { return bindings; }
+    public void setBindings(Map<String, String> bindings) { this.bindings = bindings; }
+
+    /**
+     * 单个连接池参数
+     */
+    public static class Pool {
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+        private long connectionTimeout = 20000;
+        private long leakDetectionThreshold = 60000;
+
+        public int getMaximumPoolSize() { return maximumPoolSize; }
+        public void setMaximumPoolSize(int maximumPoolSize) { this.maximumPoolSize = maximumPoolSize; }
+
+        public int getMinimumIdle() { return minimumIdle; }
+        public void setMinimumIdle(int minimumIdle) { this.minimumIdle = minimumIdle; }
+
+        public long getConnectionTimeout() { return connectionTimeout; }
+        public void setConnectionTimeout(long connectionTimeout) { this.connectionTimeout = connectionTimeout; }
+
+        public long getLeakDetectionThreshold() { return leakDetectionThreshold; }
+        public void setLeakDetectionThreshold(long leakDetectionThreshold) { this.leakDetectionThreshold = leakDetectionThreshold; }
+    }
+}
@@ -0,0 +1,136 @@
+package com.gitlab.metrics.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池隔离舱路由数据源
+ * 按当前线程绑定的工作负载（ingest / interactive-read / batch）选择独立的连接池，
+ * 避免慢查询或定时任务占满写入链路的连接。未绑定时使用 ingest 池。
+ */
+public class BulkheadRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadRoutingDataSource.class);
+
+    public static final String INGEST = "ingest";
+    public static final String INTERACTIVE_READ = "interactive-read";
+    public static final String BATCH = "batch";
+
+    private static final ThreadLocal<String> CURRENT_POOL = new ThreadLocal<>();
+
+    private final Map<String, DataSource> pools;
+
+    private MeterRegistry meterRegistry;
+
+    public BulkheadRoutingDataSource(DataSource ingestPool, Map<String, DataSource> otherPools) {
+        Map<String, DataSource> all = new LinkedHashMap<>();
+        all.put(INGEST, ingestPool);
+        all.putAll(otherPools);
+        this.pools = Collections.unmodifiableMap(all);
+        setTargetDataSources(new LinkedHashMap<Object, Object>(all));
+        setDefaultTargetDataSource(ingestPool);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 绑定当前线程使用的连接池
+     *
+     * @return 之前绑定的连接池，用于 restore
+     */
+    public static String bind(String pool) {
+        String previous = CURRENT_POOL.get();
+        CURRENT_POOL.set(pool);
+        return previous;
+    }
+
+    /**
+     * 恢复之前的绑定
+     */
+    public static void restore(String previous) {
+        if (previous == null) {
+            CURRENT_POOL.remove();
+        } else {
+            CURRENT_POOL.set(previous);
+        }
+    }
+
+    public static String currentPool() {
+        return CURRENT_POOL.get();
+    }
+
+    public void bindMetrics(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String pool = CURRENT_POOL.get();
+        return pool != null && pools.containsKey(pool) ? pool : INGEST;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String pool = (String) determineCurrentLookupKey();
+        long start = System.nanoTime();
+        try {
+            return pools.get(pool).getConnection();
+        } finally {
+            recordWait(pool, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        String pool = (String) determineCurrentLookupKey();
+        long start = System.nanoTime();
+        try {
+            return pools.get(pool).getConnection(username, password);
+        } finally {
+            recordWait(pool, System.nanoTime() - start);
+        }
+    }
+
+    private void recordWait(String pool, long nanos) {
+        if (meterRegistry != null) {
+            Timer.builder("datasource.bulkhead.acquire")
+                .description("Time spent waiting for a connection from the bulkhead pool")
+                .tag("pool", pool)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public Map<String, DataSource> getPools() {
+        return pools;
+    }
+
+    public DataSource getIngestPool() {
+        return pools.get(INGEST);
+    }
+
+    @Override
+    public void close() {
+        for (DataSource pool : pools.values()) {
+            if (pool instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) pool).close();
+                } catch (Exception e) {
+                    logger.warn("关闭连接池失败", e);
+                }
+            }
+        }
+    }
+}
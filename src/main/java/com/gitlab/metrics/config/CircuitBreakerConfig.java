@@ -28,6 +28,13 @@ public class CircuitBreakerConfig {
         public CircuitBreaker getCircuitBreaker(String name) {
             return circuitBreakers.computeIfAbsent(name, k -> new CircuitBreaker(name));
         }
+        
+        /**
+         * Get or create a circuit breaker with its own thresholds; thresholds only apply on creation
+         */
+        public CircuitBreaker getCircuitBreaker(String name, int failureThreshold, long openTimeoutMs) {
+            return circuitBreakers.computeIfAbsent(name, k -> new CircuitBreaker(name, failureThreshold, openTimeoutMs));
+        }
     }
     
     public static class CircuitBreaker {
@@ -35,35 +42,54 @@ public class CircuitBreakerConfig {
         private final AtomicInteger failureCount = new AtomicInteger(0);
         private final AtomicLong lastFailureTime = new AtomicLong(0);
         private volatile State state = State.CLOSED;
+        private final int failureThreshold;
+        private final long timeout;
         
         private static final int FAILURE_THRESHOLD = 5;
         private static final long TIMEOUT = 60000; // 1 minute
         
         public CircuitBreaker(String name) {
+            this(name, FAILURE_THRESHOLD, TIMEOUT);
+        }
+        
+        public CircuitBreaker(String name, int failureThreshold, long timeout) {
             this.name = name;
+            this.failureThreshold = failureThreshold;
+            this.timeout = timeout;
         }
         
         public <T> T execute(CircuitBreakerCallback<T> callback) throws Exception {
-            if (state == State.OPEN) {
-                if (System.currentTimeMillis() - lastFailureTime.get() > TIMEOUT) {
-                    state = State.HALF_OPEN;
-                    logger.info("Circuit breaker {} moved to HALF_OPEN state", name);
-                } else {
-                    throw new RuntimeException("Circuit breaker is OPEN for service: " + name);
-                }
+            if (!isCallPermitted()) {
+                throw new RuntimeException("Circuit breaker is OPEN for service: " + name);
             }
             
             try {
                 T result = callback.call();
-                onSuccess();
+                recordSuccess();
                 return result;
             } catch (Exception e) {
-                onFailure();
+                recordFailure();
                 throw e;
             }
         }
         
-        private void onSuccess() {
+        /**
+         * For callers whose outcome arrives asynchronously: check before the call,
+         * then report the result with recordSuccess/recordFailure
+         */
+        public boolean isCallPermitted() {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - lastFailureTime.get() > timeout) {
+                    state = State.HALF_OPEN;
+                    logger.info("Circuit breaker {} moved to HALF_OPEN state", name);
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        public void recordSuccess() {
             failureCount.set(0);
             if (state == State.HALF_OPEN) {
                 state = State.CLOSED;
@@ -71,11 +97,11 @@ public class CircuitBreakerConfig {
             }
         }
         
-        private void onFailure() {
+        public void recordFailure() {
             int failures = failureCount.incrementAndGet();
             lastFailureTime.set(System.currentTimeMillis());
             
-            if (failures >= FAILURE_THRESHOLD) {
+            if (failures >= failureThreshold) {
                 state = State.OPEN;
                 logger.warn("Circuit breaker {} moved to OPEN state after {} failures", name, failures);
             }
@@ -0,0 +1,89 @@
+package com.gitlab.metrics.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 将调用线程绑定到连接池隔离舱
+ * 先于事务拦截器执行，保证获取连接之前已经选定连接池。
+ * 只拦截请求进入的入口：控制器、消息监听方法、定时和异步方法，以及标注了 {@link UseConnectionPool} 的类或方法；
+ * 入口内部调用的其他 Bean 沿用入口绑定的连接池，不再逐层拦截
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConnectionPoolAspect {
+
+    private static final String NONE = "";
+
+    private final Map<String, String> bindings;
+    private final Map<Method, Binding> cache = new ConcurrentHashMap<>();
+
+    public ConnectionPoolAspect(Map<String, String> bindings) {
+        this.bindings = bindings;
+    }
+
+    @Around("within(com.gitlab.metrics..*) && ("
+        + "@within(org.springframework.web.bind.annotation.RestController) || "
+        + "@within(org.springframework.stereotype.Controller) || "
+        + "@annotation(org.springframework.amqp.rabbit.annotation.RabbitListener) || "
+        + "@annotation(org.springframework.scheduling.annotation.Scheduled) || "
+        + "@annotation(org.springframework.scheduling.annotation.Async) || "
+        + "@within(com.gitlab.metrics.config.UseConnectionPool) || "
+        + "@annotation(com.gitlab.metrics.config.UseConnectionPool))")
+    public Object bindPool(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Binding binding = cache.computeIfAbsent(method, m -> resolve(m, joinPoint.getTarget().getClass()));
+
+        // 显式注解总是生效；推导出的绑定只在最外层入口生效
+        if (binding.pool.equals(NONE) || (!binding.explicit && BulkheadRoutingDataSource.currentPool() != null)) {
+            return joinPoint.proceed();
+        }
+        String previous = BulkheadRoutingDataSource.bind(binding.pool);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            BulkheadRoutingDataSource.restore(previous);
+        }
+    }
+
+    Binding resolve(Method method, Class<?> targetClass) {
+        UseConnectionPool annotation = AnnotatedElementUtils.findMergedAnnotation(method, UseConnectionPool.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(targetClass, UseConnectionPool.class);
+        }
+        if (annotation != null) {
+            return new Binding(annotation.value(), true);
+        }
+        if (AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)) {
+            return new Binding(BulkheadRoutingDataSource.BATCH, false);
+        }
+        String className = targetClass.getName();
+        String match = null;
+        for (String prefix : bindings.keySet()) {
+            if (className.startsWith(prefix) && (match == null || prefix.length() > match.length())) {
+                match = prefix;
+            }
+        }
+        return new Binding(match != null ? bindings.get(match) : NONE, false);
+    }
+
+    static class Binding {
+        final String pool;
+        final boolean explicit;
+
+        Binding(String pool, boolean explicit) {
+            this.pool = pool;
+            this.explicit = explicit;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.messaging.ConfirmingEventPublisher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 异步、跟踪发布确认的事件发布器，所有发往 RabbitMQ 的事件都经由它发送
+ * 使用独立的 mandatory RabbitTemplate，无法路由的消息会被退回而不是静默丢弃
+ */
+@Configuration
+public class EventPublisherConfig {
+
+    @Bean
+    public static EventPublisherProperties eventPublisherProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.publisher", EventPublisherProperties.class)
+            .orElseGet(EventPublisherProperties::new);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public ConfirmingEventPublisher eventPublisher(ConnectionFactory connectionFactory,
+                                                   @Qualifier("eventMessageConverter") MessageConverter messageConverter,
+                                                   EventPublisherProperties properties,
+                                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMessageConverter(messageConverter);
+        template.setMandatory(true);
+        return new ConfirmingEventPublisher(template, properties, connectionFactory.isPublisherConfirms(),
+            meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -0,0 +1,74 @@
+package com.gitlab.metrics.config;
+
+/**
+ * 异步发布器配置
+ * 绑定 app.messaging.publisher；需要连接工厂开启 publisher-confirm-type: correlated
+ */
+public class EventPublisherProperties {
+
+    private int channels = 2;
+    private int batchSize = 50;
+    private long lingerMs = 5;
+    private int maxInFlight = 500;
+    private int maxPending = 10000;
+    private long enqueueTimeoutMs = 1000;
+    private int maxAttempts = 5;
+    private long retryBackoffMs = 200;
+    private long maxRetryBackoffMs = 10000;
+    private long confirmTimeoutMs = 15000;
+    private long shutdownTimeoutMs = 30000;
+
+    /**
+     * 发送线程数，每个线程在自己的 channel 上发布
+     */
+    public int getChannels() { return channels; }
+    public void setChannels(int channels) { this.channels = channels; }
+
+    /**
+     * 每批在同一 channel 上连续发布的最大消息数
+     */
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    /**
+     * 凑批的最长等待时间
+     */
+    public long getLingerMs() { return lingerMs; }
+    public void setLingerMs(long lingerMs) { this.lingerMs = lingerMs; }
+
+    /**
+     * 每个 channel 已发出未确认消息的上限
+     */
+    public int getMaxInFlight() { return maxInFlight; }
+    public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+
+    /**
+     * 已接收未完成（排队、在途、等待重试）的消息上限，超过后调用方最多等待 enqueueTimeoutMs
+     */
+    public int getMaxPending() { return maxPending; }
+    public void setMaxPending(int maxPending) { this.maxPending = maxPending; }
+
+    public long getEnqueueTimeoutMs() { return enqueueTimeoutMs; }
+    public void setEnqueueTimeoutMs(long enqueueTimeoutMs) { this.enqueueTimeoutMs = enqueueTimeoutMs; }
+
+    /**
+     * 包括首次发送在内的最大发送次数
+     */
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+    public long getRetryBackoffMs() { return retryBackoffMs; }
+    public void setRetryBackoffMs(long retryBackoffMs) { this.retryBackoffMs = retryBackoffMs; }
+
+    public long getMaxRetryBackoffMs() { return maxRetryBackoffMs; }
+    public void setMaxRetryBackoffMs(long maxRetryBackoffMs) { this.maxRetryBackoffMs = maxRetryBackoffMs; }
+
+    /**
+     * 超过该时间未收到确认按 nack 处理
+     */
+    public long getConfirmTimeoutMs() { return confirmTimeoutMs; }
+    public void setConfirmTimeoutMs(long confirmTimeoutMs) { this.confirmTimeoutMs = confirmTimeoutMs; }
+
+    public long getShutdownTimeoutMs() { return shutdownTimeoutMs; }
+    public void setShutdownTimeoutMs(long shutdownTimeoutMs) { this.shutdownTimeoutMs = shutdownTimeoutMs; }
+}
@@ -3,13 +3,14 @@ package com.gitlab.metrics.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
 
 /**
  * HTTPS安全配置类
- * 强制使用HTTPS传输，配置安全头
+ * 强制使用HTTPS传输，配置安全头；运维接口要求 ADMIN 角色的 HTTP Basic 认证，其余接口保持开放
  */
 @Configuration
 @Profile("prod")
@@ -18,6 +19,14 @@ public class HttpsSecurityConfig extends WebSecurityConfigurerAdapter {
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http
+            // 运维接口仅限管理员，控制器上的 @PreAuthorize 作为第二道校验
+            .authorizeRequests(requests -> requests
+                .antMatchers("/api/admin/**", "/api/performance/**").hasRole("ADMIN")
+                .anyRequest().permitAll())
+            .httpBasic(Customizer.withDefaults())
+            // 运维接口使用 Basic 认证、不依赖会话 Cookie，无需 CSRF 令牌
+            .csrf(csrf -> csrf.ignoringAntMatchers("/api/admin/**", "/api/performance/**"))
+            
             // 强制使用HTTPS
             .requiresChannel(channel -> 
                 channel.requestMatchers(r -> r.getHeader("X-Forwarded-Proto") != null)
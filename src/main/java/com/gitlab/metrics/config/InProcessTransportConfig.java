@@ -0,0 +1,104 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.messaging.InProcessEventTransport;
+import com.gitlab.metrics.messaging.LaneLatencyRecorder;
+import com.gitlab.metrics.messaging.PipelineLagRecorder;
+import com.gitlab.metrics.messaging.QueueLoadTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 进程内事件传输，用于没有消息队列的单节点部署（app.messaging.transport=in-process）
+ * 每个 @RabbitListener 方法按其队列注册到传输上，交换机的 Binding 也全部复制过来，
+ * 同样的监听器和路由规则无需经过消息队列即可运行。此模式下不启动 Rabbit 监听容器；
+ * 发件箱和消息队列故障暂存区属于 RabbitMQ 的功能，保持关闭
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.messaging", name = "transport", havingValue = "in-process")
+public class InProcessTransportConfig {
+
+    @Bean
+    public static InProcessTransportProperties inProcessTransportProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.in-process", InProcessTransportProperties.class)
+            .orElseGet(InProcessTransportProperties::new);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @Primary
+    public InProcessEventTransport inProcessEventTransport(InProcessTransportProperties properties,
+                                                           PipelineLagRecorder pipelineLagRecorder,
+                                                           LaneLatencyRecorder laneLatencyRecorder,
+                                                           QueueLoadTracker queueLoadTracker,
+                                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        return new InProcessEventTransport(properties, pipelineLagRecorder, laneLatencyRecorder, queueLoadTracker,
+            meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /**
+     * 所有单例创建完成后注册监听器和路由绑定，然后启动工作线程
+     */
+    @Bean
+    public SmartInitializingSingleton inProcessListenerRegistrar(ConfigurableListableBeanFactory beanFactory,
+                                                                 InProcessEventTransport transport) {
+        return () -> {
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                Class<?> beanType = beanFactory.getBeanDefinition(beanName).isAbstract() ? null : beanFactory.getType(beanName);
+                if (beanType == null) {
+                    continue;
+                }
+                ReflectionUtils.doWithMethods(ClassUtils.getUserClass(beanType), method -> {
+                    RabbitListener listener = AnnotatedElementUtils.findMergedAnnotation(method, RabbitListener.class);
+                    if (listener == null) {
+                        return;
+                    }
+                    Object bean = beanFactory.getBean(beanName);
+                    Method invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+                    for (String queue : listener.queues()) {
+                        transport.register(beanFactory.resolveEmbeddedValue(queue), message -> invoke(bean, invocable, message));
+                    }
+                }, method -> method.getParameterCount() == 1);
+            }
+            for (Binding binding : beanFactory.getBeansOfType(Binding.class).values()) {
+                if (binding.isDestinationQueue()) {
+                    transport.bind(binding.getExchange(), binding.getRoutingKey(), binding.getDestination());
+                }
+            }
+            transport.start();
+        };
+    }
+
+    private static void invoke(Object bean, Method method, Object message) throws Exception {
+        Class<?> parameterType = method.getParameterTypes()[0];
+        if (!parameterType.isInstance(message)) {
+            throw new IllegalArgumentException("Listener " + method + " does not accept " + message.getClass().getName());
+        }
+        try {
+            method.invoke(bean, message);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getTargetException();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.gitlab.metrics.config;
+
+/**
+ * 进程内事件传输配置
+ * 绑定 app.messaging.in-process，仅在 app.messaging.transport=in-process 时生效
+ */
+public class InProcessTransportProperties {
+
+    private int queueCapacity = 4096;
+    private int workersPerQueue = 2;
+    private long offerTimeoutMs = 200;
+    private double saturationRatio = 0.9;
+    private int maxAttempts = 5;
+    private long retryInitialDelayMs = 1000;
+    private double retryMultiplier = 4.0;
+    private long retryMaxDelayMs = 60000;
+    private int parkingLotCapacity = 10000;
+    private long shutdownTimeoutMs = 10000;
+
+    /**
+     * 每个队列环形缓冲的容量，向上取整到 2 的幂
+     */
+    public int getQueueCapacity() { return queueCapacity; }
+    public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+    /**
+     * 每个队列的处理线程数，对应 RabbitMQ 模式下的并发消费者
+     */
+    public int getWorkersPerQueue() { return workersPerQueue; }
+    public void setWorkersPerQueue(int workersPerQueue) { this.workersPerQueue = workersPerQueue; }
+
+    /**
+     * 队列已满时发布方最多等待的时间，超时后发布以 rejected 失败
+     */
+    public long getOfferTimeoutMs() { return offerTimeoutMs; }
+    public void setOfferTimeoutMs(long offerTimeoutMs) { this.offerTimeoutMs = offerTimeoutMs; }
+
+    /**
+     * 任一队列的占用率达到该比例时 webhook 入口返回 503，让调用方稍后重试
+     */
+    public double getSaturationRatio() { return saturationRatio; }
+    public void setSaturationRatio(double saturationRatio) { this.saturationRatio = saturationRatio; }
+
+    /**
+     * 监听器抛出异常时的最大处理次数（含首次），用尽后事件转入 parking lot
+     */
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+    /**
+     * 第一次失败后重新入队前的延迟，之后每次乘以 retryMultiplier，不超过 retryMaxDelayMs
+     */
+    public long getRetryInitialDelayMs() { return retryInitialDelayMs; }
+    public void setRetryInitialDelayMs(long retryInitialDelayMs) { this.retryInitialDelayMs = retryInitialDelayMs; }
+
+    public double getRetryMultiplier() { return retryMultiplier; }
+    public void setRetryMultiplier(double retryMultiplier) { this.retryMultiplier = retryMultiplier; }
+
+    public long getRetryMaxDelayMs() { return retryMaxDelayMs; }
+    public void setRetryMaxDelayMs(long retryMaxDelayMs) { this.retryMaxDelayMs = retryMaxDelayMs; }
+
+    /**
+     * 第 attempt 次失败后的重试延迟
+     */
+    public long retryDelayMs(int attempt) {
+        double delay = retryInitialDelayMs * Math.pow(Math.max(1.0, retryMultiplier), Math.max(0, attempt - 1));
+        return (long) Math.min(delay, Math.max(retryInitialDelayMs, retryMaxDelayMs));
+    }
+
+    /**
+     * 内存 parking lot 最多保留的事件数，超出时淘汰最早停放的事件
+     */
+    public int getParkingLotCapacity() { return parkingLotCapacity; }
+    public void setParkingLotCapacity(int parkingLotCapacity) { this.parkingLotCapacity = parkingLotCapacity; }
+
+    /**
+     * 关闭时等待队列中剩余事件处理完的时间
+     */
+    public long getShutdownTimeoutMs() { return shutdownTimeoutMs; }
+    public void setShutdownTimeoutMs(long shutdownTimeoutMs) { this.shutdownTimeoutMs = shutdownTimeoutMs; }
+}
@@ -0,0 +1,128 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.messaging.ListenerAutoscaler;
+import com.gitlab.metrics.messaging.QueueLoadTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按队列积压深度自动伸缩 @RabbitListener 容器
+ * 启动时按队列登记每个 SimpleMessageListenerContainer（本应用中每个容器只监听一个队列），
+ * 此后容器的 concurrentConsumers、maxConcurrentConsumers 和 prefetch 都由伸缩器调整
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.messaging.autoscaler", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ListenerAutoscalerConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerAutoscalerConfig.class);
+
+    @Autowired
+    private ListenerAutoscaler listenerAutoscaler;
+
+    @Autowired
+    private RabbitListenerEndpointRegistry listenerRegistry;
+
+    @Bean
+    public static ListenerAutoscalerProperties listenerAutoscalerProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.autoscaler", ListenerAutoscalerProperties.class)
+            .orElseGet(ListenerAutoscalerProperties::new);
+    }
+
+    @Bean
+    public static ListenerAutoscaler listenerAutoscaler(ListenerAutoscalerProperties properties,
+                                                        QueueLoadTracker queueLoadTracker, AmqpAdmin amqpAdmin,
+                                                        RabbitListenerEndpointRegistry registry,
+                                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ListenerAutoscaler(properties, queueLoadTracker,
+            queue -> {
+                QueueInformation information = amqpAdmin.getQueueInfo(queue);
+                return information != null ? information.getMessageCount() : -1;
+            },
+            new ContainerConcurrencyControl(registry),
+            meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    /**
+     * 监听容器创建后再登记；第一次采样只建立负载基线
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerListenerContainers() {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (container instanceof SimpleMessageListenerContainer) {
+                for (String queue : ((SimpleMessageListenerContainer) container).getQueueNames()) {
+                    listenerAutoscaler.register(queue, RabbitMQConfig.INITIAL_CONCURRENT_CONSUMERS,
+                        SimpleMessageListenerContainer.DEFAULT_PREFETCH_COUNT);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.messaging.autoscaler.interval-ms:10000}")
+    public void autoscaleListeners() {
+        try {
+            listenerAutoscaler.tick();
+        } catch (RuntimeException e) {
+            logger.warn("Listener autoscaling failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 设置消费者数量时把 maxConcurrentConsumers 固定为相同的值，关闭容器自带的按连续空闲/繁忙伸缩，
+     * 避免两套机制相互干扰。新的 prefetch 只对调整之后启动的消费者生效
+     */
+    static class ContainerConcurrencyControl implements ListenerAutoscaler.ConcurrencyControl {
+
+        private final RabbitListenerEndpointRegistry registry;
+        private final Map<String, Integer> applied = new ConcurrentHashMap<>();
+
+        ContainerConcurrencyControl(RabbitListenerEndpointRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void apply(String queue, int consumers, int prefetch) {
+            for (MessageListenerContainer candidate : registry.getListenerContainers()) {
+                if (!(candidate instanceof SimpleMessageListenerContainer)) {
+                    continue;
+                }
+                SimpleMessageListenerContainer container = (SimpleMessageListenerContainer) candidate;
+                for (String name : container.getQueueNames()) {
+                    if (name.equals(queue)) {
+                        container.setPrefetchCount(prefetch);
+                        int previous = applied.getOrDefault(queue, RabbitMQConfig.INITIAL_MAX_CONCURRENT_CONSUMERS);
+                        // 每一步都保持 concurrentConsumers <= maxConcurrentConsumers
+                        if (consumers >= previous) {
+                            container.setMaxConcurrentConsumers(consumers);
+                            container.setConcurrentConsumers(consumers);
+                        } else {
+                            container.setConcurrentConsumers(consumers);
+                            container.setMaxConcurrentConsumers(consumers);
+                        }
+                        applied.put(queue, consumers);
+                    }
+                }
+            }
+        }
+    }
+}
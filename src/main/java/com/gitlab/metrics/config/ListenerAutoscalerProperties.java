@@ -0,0 +1,104 @@
+package com.gitlab.metrics.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 监听器并发自动伸缩配置
+ * 绑定 app.messaging.autoscaler；queues 中未配置的字段沿用 defaults
+ */
+public class ListenerAutoscalerProperties {
+
+    private boolean enabled = true;
+    private long intervalMs = 10000;
+    private double targetUtilization = 0.75;
+    private long targetDrainMs = 30000;
+    private long prefetchWindowMs = 1000;
+    private int scaleDownTicks = 3;
+    private Bounds defaults = new Bounds(1, 10, 1, 250);
+    private Map<String, Bounds> queues = new LinkedHashMap<>();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public long getIntervalMs() { return intervalMs; }
+    public void setIntervalMs(long intervalMs) { this.intervalMs = intervalMs; }
+
+    /**
+     * 消费者忙碌时间占比的目标值，按到达速率计算所需消费者数时使用
+     */
+    public double getTargetUtilization() { return targetUtilization; }
+    public void setTargetUtilization(double targetUtilization) { this.targetUtilization = targetUtilization; }
+
+    /**
+     * 期望在该时间内消化当前积压
+     */
+    public long getTargetDrainMs() { return targetDrainMs; }
+    public void setTargetDrainMs(long targetDrainMs) { this.targetDrainMs = targetDrainMs; }
+
+    /**
+     * 每个消费者预取约这么长时间的工作量：处理快的队列预取多，慢的队列预取少
+     */
+    public long getPrefetchWindowMs() { return prefetchWindowMs; }
+    public void setPrefetchWindowMs(long prefetchWindowMs) { this.prefetchWindowMs = prefetchWindowMs; }
+
+    /**
+     * 连续多少个周期需要的消费者都少于当前值才缩容
+     */
+    public int getScaleDownTicks() { return scaleDownTicks; }
+    public void setScaleDownTicks(int scaleDownTicks) { this.scaleDownTicks = scaleDownTicks; }
+
+    public Bounds getDefaults() { return defaults; }
+    public void setDefaults(Bounds defaults) { this.defaults = defaults; }
+
+    public Map<String, Bounds> getQueues() { return queues; }
+    public void setQueues(Map<String, Bounds> queues) { this.queues = queues; }
+
+    /**
+     * 取队列的伸缩范围，未配置的字段用默认值补齐
+     */
+    public Bounds boundsFor(String queue) {
+        Bounds configured = queues.get(queue);
+        Bounds bounds = new Bounds();
+        bounds.setMinConsumers(pick(configured != null ? configured.getMinConsumers() : null, defaults.getMinConsumers()));
+        bounds.setMaxConsumers(pick(configured != null ? configured.getMaxConsumers() : null, defaults.getMaxConsumers()));
+        bounds.setMinPrefetch(pick(configured != null ? configured.getMinPrefetch() : null, defaults.getMinPrefetch()));
+        bounds.setMaxPrefetch(pick(configured != null ? configured.getMaxPrefetch() : null, defaults.getMaxPrefetch()));
+        return bounds;
+    }
+
+    private static Integer pick(Integer value, Integer fallback) {
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * 单个队列的消费者数和预取数范围，为空的字段取 defaults
+     */
+    public static class Bounds {
+        private Integer minConsumers;
+        private Integer maxConsumers;
+        private Integer minPrefetch;
+        private Integer maxPrefetch;
+
+        public Bounds() {}
+
+        public Bounds(Integer minConsumers, Integer maxConsumers, Integer minPrefetch, Integer maxPrefetch) {
+            this.minConsumers = minConsumers;
+            this.maxConsumers = maxConsumers;
+            this.minPrefetch = minPrefetch;
+            this.maxPrefetch = maxPrefetch;
+        }
+
+        public Integer getMinConsumers() { return minConsumers; }
+        public void setMinConsumers(Integer minConsumers) { this.minConsumers = minConsumers; }
+
+        public Integer getMaxConsumers() { return maxConsumers; }
+        public void setMaxConsumers(Integer maxConsumers) { this.maxConsumers = maxConsumers; }
+
+        public Integer getMinPrefetch() { return minPrefetch; }
+        public void setMinPrefetch(Integer minPrefetch) { this.minPrefetch = minPrefetch; }
+
+        public Integer getMaxPrefetch() { return maxPrefetch; }
+        public void setMaxPrefetch(Integer maxPrefetch) { this.maxPrefetch = maxPrefetch; }
+    }
+}
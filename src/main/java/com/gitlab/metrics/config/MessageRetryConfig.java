@@ -0,0 +1,76 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.messaging.ConfirmedSender;
+import com.gitlab.metrics.messaging.DelayedRetryInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 监听器处理失败消息的延迟重试层级和停车场
+ * 每个层级是一个 fanout 交换机，连接一个固定 x-message-ttl 的队列，其死信交换机为默认交换机；
+ * 到期的消息保留重新发布时的路由键（即原队列名），回到处理失败的队列。
+ * 各层级由所有队列共用，新增监听器无需修改拓扑
+ */
+@Configuration
+public class MessageRetryConfig {
+
+    @Bean
+    public static MessageRetryProperties messageRetryProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.retry", MessageRetryProperties.class)
+            .orElseGet(MessageRetryProperties::new);
+    }
+
+    @Bean
+    public Declarables retryTopology(MessageRetryProperties properties) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (Long delayMs : new LinkedHashSet<>(properties.getDelaysMs())) {
+            String name = DelayedRetryInterceptor.tierName(delayMs);
+            FanoutExchange exchange = new FanoutExchange(name, true, false);
+            Queue queue = QueueBuilder.durable(name)
+                .withArgument("x-message-ttl", delayMs)
+                .withArgument("x-dead-letter-exchange", "")
+                .build();
+            Binding binding = BindingBuilder.bind(queue).to(exchange);
+            declarables.add(exchange);
+            declarables.add(queue);
+            declarables.add(binding);
+        }
+        declarables.add(QueueBuilder.durable(properties.getParkingLotQueue()).build());
+        return new Declarables(declarables);
+    }
+
+    /**
+     * 在队列之间转移已接收消息的发送器，使用 mandatory 并等待发布确认
+     */
+    @Bean
+    public ConfirmedSender confirmedSender(ConnectionFactory connectionFactory, MessageRetryProperties properties) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMandatory(true);
+        return new ConfirmedSender(template, connectionFactory.isPublisherConfirms(), properties.getConfirmTimeoutMs());
+    }
+
+    @Bean
+    public DelayedRetryInterceptor delayedRetryInterceptor(MessageRetryProperties properties, ConfirmedSender confirmedSender,
+                                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        return new DelayedRetryInterceptor(properties, confirmedSender, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -0,0 +1,52 @@
+package com.gitlab.metrics.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 消费失败延迟重试配置
+ * 绑定 app.messaging.retry；delays-ms 的每一项对应一个延迟梯队，第 n 次失败进入第 n 个梯队，
+ * 失败次数超过梯队数时一直使用最后一个梯队，达到 max-attempts 后转入 parking lot
+ */
+public class MessageRetryProperties {
+
+    private boolean enabled = true;
+    private List<Long> delaysMs = new ArrayList<>(Arrays.asList(5000L, 30000L, 300000L));
+    private int maxAttempts = 5;
+    private long confirmTimeoutMs = 5000;
+    private String parkingLotQueue = "parking.lot.queue";
+    private int maxStackTraceLength = 4000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public List<Long> getDelaysMs() { return delaysMs; }
+    public void setDelaysMs(List<Long> delaysMs) { this.delaysMs = delaysMs; }
+
+    /**
+     * 含首次投递在内的最大处理次数
+     */
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+    /**
+     * 重投到梯队或 parking lot 时等待 broker 确认的时间，超时则原消息进入死信队列
+     */
+    public long getConfirmTimeoutMs() { return confirmTimeoutMs; }
+    public void setConfirmTimeoutMs(long confirmTimeoutMs) { this.confirmTimeoutMs = confirmTimeoutMs; }
+
+    public String getParkingLotQueue() { return parkingLotQueue; }
+    public void setParkingLotQueue(String parkingLotQueue) { this.parkingLotQueue = parkingLotQueue; }
+
+    public int getMaxStackTraceLength() { return maxStackTraceLength; }
+    public void setMaxStackTraceLength(int maxStackTraceLength) { this.maxStackTraceLength = maxStackTraceLength; }
+
+    /**
+     * 第 attempt 次失败后的重试延迟
+     */
+    public long delayFor(int attempt) {
+        int index = Math.max(0, Math.min(attempt, delaysMs.size()) - 1);
+        return delaysMs.get(index);
+    }
+}
@@ -0,0 +1,14 @@
+package com.gitlab.metrics.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+
+/**
+ * 方法级安全配置
+ * 启用 &#64;PreAuthorize，使运维控制器（parking lot、性能测试）上的 ADMIN 角色要求在所有环境生效；
+ * 管理员账号通过 spring.security.user 配置
+ */
+@Configuration
+@EnableGlobalMethodSecurity(prePostEnabled = true)
+public class MethodSecurityConfig {
+}
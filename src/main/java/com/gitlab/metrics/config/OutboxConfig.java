@@ -0,0 +1,118 @@
+package com.gitlab.metrics.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.messaging.ConfirmingEventPublisher;
+import com.gitlab.metrics.service.outbox.OutboxRelay;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 事务发件箱：数据库事务中产生的事件在调用方的事务内写入 outbox_event（V9 迁移脚本），提交后由中继发布
+ * 每个节点都会轮询，FOR UPDATE SKIP LOCKED 保证不同节点不会发布同一行。
+ * 一次中继最长要等待 publish-timeout-ms 的发布确认，因此在独立线程上执行而不占用共享的定时任务线程；
+ * 上一次中继尚未结束时跳过本次轮询
+ */
+@Configuration
+public class OutboxConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxConfig.class);
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private OutboxProperties outboxProperties;
+
+    @Autowired
+    @Qualifier("outboxRelayExecutor")
+    private ThreadPoolTaskExecutor outboxRelayExecutor;
+
+    private final AtomicBoolean relayRunning = new AtomicBoolean();
+
+    @Bean
+    public static OutboxProperties outboxProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.outbox", OutboxProperties.class)
+            .orElseGet(OutboxProperties::new);
+    }
+
+    @Bean
+    public static OutboxRelay outboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                          ConfirmingEventPublisher eventPublisher, ObjectMapper objectMapper,
+                                          OutboxProperties properties, ObjectProvider<ShardMap> shardMap,
+                                          ObjectProvider<MeterRegistry> meterRegistry) {
+        return new OutboxRelay(jdbcTemplate, transactionManager, eventPublisher, objectMapper, properties,
+            shardMap.getIfAvailable(), meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public static ThreadPoolTaskExecutor outboxRelayExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("outbox-relay-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 把中继交给 outboxRelayExecutor 执行后立即返回
+     */
+    @Scheduled(fixedDelayString = "${app.messaging.outbox.poll-interval-ms:200}")
+    public void relayOutbox() {
+        if (!outboxProperties.isEnabled() || !relayRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            outboxRelayExecutor.execute(this::runRelay);
+        } catch (TaskRejectedException e) {
+            relayRunning.set(false);
+            logger.warn("Outbox relay not started: {}", e.getMessage());
+        }
+    }
+
+    private void runRelay() {
+        try {
+            outboxRelay.relay();
+        } catch (DataAccessException e) {
+            logger.warn("Outbox relay failed: {}", e.getMessage());
+        } finally {
+            relayRunning.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.messaging.outbox.cleanup-interval-ms:600000}")
+    public void purgeOutbox() {
+        if (!outboxProperties.isEnabled()) {
+            return;
+        }
+        try {
+            int deleted = outboxRelay.purge();
+            if (deleted > 0) {
+                logger.info("Purged {} sent or failed outbox rows", deleted);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Outbox cleanup failed: {}", e.getMessage());
+        }
+    }
+}
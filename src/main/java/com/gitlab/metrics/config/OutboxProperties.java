@@ -0,0 +1,67 @@
+package com.gitlab.metrics.config;
+
+/**
+ * 事务发件箱配置
+ * 绑定 app.messaging.outbox：业务事务内写入 outbox_event 的事件由中继按 id 顺序分批发布，
+ * 关闭时事件直接交给发布器，与业务事务无关。outbox_event 只在 MySQL 迁移脚本中创建，默认关闭，由 prod 配置开启
+ */
+public class OutboxProperties {
+
+    private boolean enabled = false;
+    private int batchSize = 500;
+    private int maxBatchesPerPoll = 20;
+    private long publishTimeoutMs = 30000;
+    private long claimLeaseMs = 120000;
+    private int maxAttempts = 10;
+    private long sentRetentionHours = 24;
+    private long failedRetentionHours = 168;
+    private int cleanupBatchSize = 5000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /**
+     * 每批锁定并发布的行数
+     */
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    /**
+     * 一次轮询最多连续处理的批次数，积压时不必等下一次轮询
+     */
+    public int getMaxBatchesPerPoll() { return maxBatchesPerPoll; }
+    public void setMaxBatchesPerPoll(int maxBatchesPerPoll) { this.maxBatchesPerPoll = maxBatchesPerPoll; }
+
+    /**
+     * 一批消息等待 broker 确认的最长时间，超时未确认的行释放认领，下次轮询重新发布
+     */
+    public long getPublishTimeoutMs() { return publishTimeoutMs; }
+    public void setPublishTimeoutMs(long publishTimeoutMs) { this.publishTimeoutMs = publishTimeoutMs; }
+
+    /**
+     * 认领的租约时长，节点在发布期间崩溃时其他节点等租约过期后接手；至少取 publishTimeoutMs 的两倍
+     */
+    public long getClaimLeaseMs() { return claimLeaseMs; }
+    public void setClaimLeaseMs(long claimLeaseMs) { this.claimLeaseMs = claimLeaseMs; }
+
+    /**
+     * 每行最多发布的次数，达到后仍未确认的行标记为 FAILED，不再重试
+     */
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+    /**
+     * 已发送的行保留的小时数，之后由清理任务删除
+     */
+    public long getSentRetentionHours() { return sentRetentionHours; }
+    public void setSentRetentionHours(long sentRetentionHours) { this.sentRetentionHours = sentRetentionHours; }
+
+    /**
+     * 发布失败（无法路由或无法转换）的行保留的小时数
+     */
+    public long getFailedRetentionHours() { return failedRetentionHours; }
+    public void setFailedRetentionHours(long failedRetentionHours) { this.failedRetentionHours = failedRetentionHours; }
+
+    public int getCleanupBatchSize() { return cleanupBatchSize; }
+    public void setCleanupBatchSize(int cleanupBatchSize) { this.cleanupBatchSize = cleanupBatchSize; }
+}
@@ -0,0 +1,40 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.messaging.LaneLatencyRecorder;
+import com.gitlab.metrics.service.webhook.EventLaneClassifier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 优先级通道：webhook 事件按类型和大小分到各通道的队列，每个通道的消费者上限
+ * （app.messaging.autoscaler.queues）即其权重，批量导入不会饿死合并检查
+ */
+@Configuration
+public class PriorityLaneConfig {
+
+    @Bean
+    public static PriorityLaneProperties priorityLaneProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.messaging.lanes", PriorityLaneProperties.class)
+            .orElseGet(PriorityLaneProperties::new);
+    }
+
+    @Bean
+    public EventLaneClassifier eventLaneClassifier(PriorityLaneProperties properties) {
+        return new EventLaneClassifier(properties);
+    }
+
+    /**
+     * 各通道从发布到处理完成的延迟，以通道的 SLO 作为直方图边界
+     */
+    @Bean
+    public LaneLatencyRecorder laneLatencyRecorder(PriorityLaneProperties properties,
+                                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        return new LaneLatencyRecorder(properties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
@@ -0,0 +1,49 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.messaging.PriorityLane;
+
+/**
+ * 优先级通道配置
+ * 绑定 app.messaging.lanes：push 事件按提交数和估算的载荷大小划入 BULK，
+ * 各通道的延迟 SLO 用于端到端延迟直方图的分桶和超时计数
+ */
+public class PriorityLaneProperties {
+
+    private int bulkCommitThreshold = 200;
+    private long bulkPayloadBytes = 1024 * 1024;
+    private long interactiveSloMs = 2000;
+    private long standardSloMs = 60000;
+    private long bulkSloMs = 900000;
+
+    /**
+     * push 的提交数（取 total_commits_count 与提交列表中的较大者）达到该值时走 BULK
+     */
+    public int getBulkCommitThreshold() { return bulkCommitThreshold; }
+    public void setBulkCommitThreshold(int bulkCommitThreshold) { this.bulkCommitThreshold = bulkCommitThreshold; }
+
+    /**
+     * push 估算载荷达到该字节数时走 BULK
+     */
+    public long getBulkPayloadBytes() { return bulkPayloadBytes; }
+    public void setBulkPayloadBytes(long bulkPayloadBytes) { this.bulkPayloadBytes = bulkPayloadBytes; }
+
+    public long getInteractiveSloMs() { return interactiveSloMs; }
+    public void setInteractiveSloMs(long interactiveSloMs) { this.interactiveSloMs = interactiveSloMs; }
+
+    public long getStandardSloMs() { return standardSloMs; }
+    public void setStandardSloMs(long standardSloMs) { this.standardSloMs = standardSloMs; }
+
+    public long getBulkSloMs() { return bulkSloMs; }
+    public void setBulkSloMs(long bulkSloMs) { this.bulkSloMs = bulkSloMs; }
+
+    public long sloFor(PriorityLane lane) {
+        switch (lane) {
+            case INTERACTIVE:
+                return interactiveSloMs;
+            case BULK:
+                return bulkSloMs;
+            default:
+                return standardSloMs;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.exception.QueryRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 查询准入控制
+ * 按请求参数中的时间跨度和项目范围估算查询成本，划入对应类别；
+ * 每个类别有独立的并发预算和有界等待队列，超出队列返回429，排队超时返回503，
+ * 放行的请求绑定该类别的JDBC语句超时
+ */
+public class QueryGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryGovernor.class);
+
+    private static final Pattern TIME_RANGE = Pattern.compile("(\\d+)([dwmy])");
+
+    private final QueryGovernorProperties properties;
+    private final List<Lane> lanes = new ArrayList<>();
+
+    /**
+     * @param defaultTimeoutSeconds 类别未配置语句超时时使用的秒数（app.performance.query-timeout）
+     */
+    public QueryGovernor(QueryGovernorProperties properties, int defaultTimeoutSeconds, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (Map.Entry<String, QueryGovernorProperties.QueryClass> entry : properties.getClasses().entrySet()) {
+            lanes.add(new Lane(entry.getKey(), entry.getValue(), defaultTimeoutSeconds, meterRegistry));
+        }
+        if (lanes.isEmpty()) {
+            lanes.add(new Lane("default", new QueryGovernorProperties.QueryClass(), defaultTimeoutSeconds, meterRegistry));
+        }
+        lanes.sort(Comparator.comparingLong(lane -> lane.maxCost < 0 ? Long.MAX_VALUE : lane.maxCost));
+    }
+
+    /**
+     * 估算成本 = 时间跨度天数 × 项目范围
+     * 时间跨度依次取 startDate/endDate、startTime/endTime、days、timeRange；
+     * 项目范围为 projectId 数量，未指定项目时按 unscopedFactor 计；近似查询按 approxCostDivisor 折算
+     */
+    public long estimateCost(Map<String, String[]> parameters) {
+        long days = rangeDays(parameters);
+        long cost = Math.max(1, days) * projectScope(parameters);
+        if ("approx".equalsIgnoreCase(first(parameters, "accuracy"))) {
+            cost = Math.max(1, cost / Math.max(1, properties.getApproxCostDivisor()));
+        }
+        return cost;
+    }
+
+    /**
+     * 按成本选择类别
+     */
+    public String classify(long cost) {
+        return laneFor(cost).name;
+    }
+
+    /**
+     * 申请执行许可，许可关闭时释放并发名额并恢复语句超时绑定
+     *
+     * @throws QueryRejectedException 排队已满（429）或等待超时（503）
+     */
+    public Permit admit(long cost) {
+        Lane lane = laneFor(cost);
+        lane.acquire(cost);
+        return new Permit(lane, StatementTimeoutDataSource.bind(lane.timeoutSeconds));
+    }
+
+    public int getActive(String queryClass) {
+        Lane lane = lane(queryClass);
+        return lane != null ? lane.active.get() : 0;
+    }
+
+    public int getQueued(String queryClass) {
+        Lane lane = lane(queryClass);
+        return lane != null ? lane.queued.get() : 0;
+    }
+
+    private Lane lane(String name) {
+        for (Lane lane : lanes) {
+            if (lane.name.equals(name)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    private Lane laneFor(long cost) {
+        for (Lane lane : lanes) {
+            if (lane.maxCost < 0 || cost <= lane.maxCost) {
+                return lane;
+            }
+        }
+        return lanes.get(lanes.size() - 1);
+    }
+
+    private long rangeDays(Map<String, String[]> parameters) {
+        Long days = between(first(parameters, "startDate"), first(parameters, "endDate"));
+        if (days == null) {
+            days = between(first(parameters, "startTime"), first(parameters, "endTime"));
+        }
+        if (days == null) {
+            days = parseDays(first(parameters, "days"));
+        }
+        if (days == null) {
+            days = parseTimeRange(first(parameters, "timeRange"));
+        }
+        return days != null ? days : properties.getDefaultRangeDays();
+    }
+
+    private long projectScope(Map<String, String[]> parameters) {
+        String projectId = first(parameters, "projectId");
+        if (projectId != null && !projectId.trim().isEmpty()) {
+            return 1;
+        }
+        String[] projectIds = parameters.get("projectIds");
+        if (projectIds != null) {
+            int count = 0;
+            for (String value : projectIds) {
+                for (String id : value.split(",")) {
+                    if (!id.trim().isEmpty()) {
+                        count++;
+                    }
+                }
+            }
+            if (count > 0) {
+                return count;
+            }
+        }
+        return Math.max(1, properties.getUnscopedFactor());
+    }
+
+    private Long between(String start, String end) {
+        if (start == null) {
+            return null;
+        }
+        LocalDateTime from = parseDateTime(start);
+        if (from == null) {
+            return null;
+        }
+        LocalDateTime to = end != null ? parseDateTime(end) : null;
+        if (to == null) {
+            to = LocalDateTime.now();
+        }
+        return Math.max(1, ChronoUnit.DAYS.between(from, to) + 1);
+    }
+
+    private LocalDateTime parseDateTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value).atStartOfDay();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private Long parseDays(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Long parseTimeRange(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = TIME_RANGE.matcher(value.trim().toLowerCase());
+        if (!matcher.matches()) {
+            return null;
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "w":
+                return amount * 7;
+            case "m":
+                return amount * 30;
+            case "y":
+                return amount * 365;
+            default:
+                return amount;
+        }
+    }
+
+    private static String first(Map<String, String[]> parameters, String name) {
+        String[] values = parameters.get(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    /**
+     * 执行许可
+     */
+    public static class Permit implements AutoCloseable {
+
+        private final Lane lane;
+        private final Integer previousTimeout;
+        private boolean closed;
+
+        Permit(Lane lane, Integer previousTimeout) {
+            this.lane = lane;
+            this.previousTimeout = previousTimeout;
+        }
+
+        public String getQueryClass() { return lane.name; }
+        public int getTimeoutSeconds() { return lane.timeoutSeconds; }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            StatementTimeoutDataSource.restore(previousTimeout);
+            lane.release();
+        }
+    }
+
+    /**
+     * 单个类别的并发预算和等待队列
+     */
+    private static class Lane {
+
+        private final String name;
+        private final long maxCost;
+        private final int maxQueue;
+        private final long maxWaitMs;
+        private final int timeoutSeconds;
+        private final Semaphore permits;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final Counter admitted;
+        private final Counter admittedAfterQueue;
+        private final Counter rejectedQueueFull;
+        private final Counter rejectedWaitTimeout;
+        private final Timer queueWait;
+
+        Lane(String name, QueryGovernorProperties.QueryClass config, int defaultTimeoutSeconds, MeterRegistry registry) {
+            this.name = name;
+            this.maxCost = config.getMaxCost();
+            this.maxQueue = Math.max(0, config.getMaxQueue());
+            this.maxWaitMs = Math.max(0, config.getMaxWaitMs());
+            this.timeoutSeconds = config.getStatementTimeoutSeconds() > 0
+                ? config.getStatementTimeoutSeconds() : defaultTimeoutSeconds;
+            this.permits = new Semaphore(Math.max(1, config.getMaxConcurrent()), true);
+
+            this.admitted = Counter.builder("query.governor.admitted")
+                .description("Queries admitted by the query governor")
+                .tag("class", name).tag("queued", "false")
+                .register(registry);
+            this.admittedAfterQueue = Counter.builder("query.governor.admitted")
+                .description("Queries admitted by the query governor")
+                .tag("class", name).tag("queued", "true")
+                .register(registry);
+            this.rejectedQueueFull = Counter.builder("query.governor.rejected")
+                .description("Queries rejected by the query governor")
+                .tag("class", name).tag("reason", "queue_full")
+                .register(registry);
+            this.rejectedWaitTimeout = Counter.builder("query.governor.rejected")
+                .description("Queries rejected by the query governor")
+                .tag("class", name).tag("reason", "wait_timeout")
+                .register(registry);
+            this.queueWait = Timer.builder("query.governor.queue.wait")
+                .description("Time queries spent queued for a concurrency slot")
+                .tag("class", name)
+                .register(registry);
+            registry.gauge("query.governor.active", Tags.of("class", name), active);
+            registry.gauge("query.governor.queued", Tags.of("class", name), queued);
+        }
+
+        void acquire(long cost) {
+            if (permits.tryAcquire()) {
+                active.incrementAndGet();
+                admitted.increment();
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueue) {
+                queued.decrementAndGet();
+                rejectedQueueFull.increment();
+                logger.warn("Query rejected: class={} cost={} queue full ({})", name, cost, maxQueue);
+                throw new QueryRejectedException(name, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds(),
+                    "Too many " + name + " queries in progress, please retry later or narrow the time range/project");
+            }
+            long started = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            } finally {
+                queued.decrementAndGet();
+                queueWait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            if (!acquired) {
+                rejectedWaitTimeout.increment();
+                logger.warn("Query rejected: class={} cost={} waited {}ms without a slot", name, cost, maxWaitMs);
+                throw new QueryRejectedException(name, HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds(),
+                    "Query capacity for " + name + " queries is exhausted, please retry later");
+            }
+            active.incrementAndGet();
+            admittedAfterQueue.increment();
+        }
+
+        void release() {
+            active.decrementAndGet();
+            permits.release();
+        }
+
+        private long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMs + 999));
+        }
+    }
+}
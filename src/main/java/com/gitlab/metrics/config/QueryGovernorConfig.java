@@ -0,0 +1,90 @@
+package com.gitlab.metrics.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * 查询准入控制配置
+ * 按估算代价（时间范围长度 × 项目范围）对指标和缺陷效率请求分级，
+ * 每个级别有独立的并发额度、有界等待队列和 JDBC 语句超时
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.query-governor", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryGovernorConfig implements WebMvcConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryGovernorConfig.class);
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private PerformanceConfig performanceConfig;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Bean
+    public static QueryGovernorProperties queryGovernorProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.query-governor", QueryGovernorProperties.class)
+            .orElseGet(QueryGovernorProperties::new);
+    }
+
+    /**
+     * 排在舱壁和副本路由后处理器之后执行，保证每个路由出的连接都设置语句超时
+     */
+    @Bean
+    public static StatementTimeoutPostProcessor statementTimeoutPostProcessor() {
+        return new StatementTimeoutPostProcessor();
+    }
+
+    @Bean
+    public QueryGovernor queryGovernor() {
+        QueryGovernorProperties properties = queryGovernorProperties(environment);
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        QueryGovernor governor = new QueryGovernor(properties, performanceConfig.getQueryTimeout(), registry);
+        logger.info("Query governor classes: {}", properties.getClasses().keySet());
+        return governor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        QueryGovernorProperties properties = queryGovernorProperties(environment);
+        registry.addInterceptor(new QueryGovernorInterceptor(queryGovernor()))
+            .addPathPatterns(properties.getPathPatterns())
+            .excludePathPatterns(properties.getExcludePathPatterns());
+    }
+
+    static class StatementTimeoutPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public int getOrder() {
+            return 20;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!"dataSource".equals(beanName) || !(bean instanceof DataSource)
+                || bean instanceof StatementTimeoutDataSource) {
+                return bean;
+            }
+            return new StatementTimeoutDataSource((DataSource) bean);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.gitlab.metrics.config;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 查询准入拦截器
+ * 在进入控制器之前估算成本并申请执行许可，拒绝时抛出 QueryRejectedException 由全局异常处理器返回429/503；
+ * 请求完成（或转入异步处理）后释放许可
+ */
+public class QueryGovernorInterceptor implements AsyncHandlerInterceptor {
+
+    static final String PERMIT_ATTRIBUTE = QueryGovernorInterceptor.class.getName() + ".permit";
+
+    private final QueryGovernor queryGovernor;
+
+    public QueryGovernorInterceptor(QueryGovernor queryGovernor) {
+        this.queryGovernor = queryGovernor;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            return true;
+        }
+        long cost = queryGovernor.estimateCost(request.getParameterMap());
+        QueryGovernor.Permit permit = queryGovernor.admit(cost);
+        request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        response.setHeader("X-Query-Class", permit.getQueryClass());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        release(request);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release(request);
+    }
+
+    private void release(HttpServletRequest request) {
+        Object permit = request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit instanceof QueryGovernor.Permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            ((QueryGovernor.Permit) permit).close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.gitlab.metrics.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询准入控制配置
+ * 绑定 app.query-governor；查询类别按 max-cost 从小到大匹配，最后一个类别兜底
+ */
+public class QueryGovernorProperties {
+
+    private boolean enabled = true;
+    private List<String> pathPatterns = new ArrayList<>(Arrays.asList("/api/v1/metrics/**", "/api/bug-fix-efficiency/**"));
+    private List<String> excludePathPatterns = new ArrayList<>(Arrays.asList("/api/v1/metrics/health", "/api/v1/metrics/realtime/stream"));
+    private int defaultRangeDays = 30;
+    private int unscopedFactor = 20;
+    private int approxCostDivisor = 100;
+    private Map<String, QueryClass> classes = new LinkedHashMap<>();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public List<String> getPathPatterns() { return pathPatterns; }
+    public void setPathPatterns(List<String> pathPatterns) { this.pathPatterns = pathPatterns; }
+
+    public List<String> getExcludePathPatterns() { return excludePathPatterns; }
+    public void setExcludePathPatterns(List<String> excludePathPatterns) { this.excludePathPatterns = excludePathPatterns; }
+
+    /**
+     * 请求未携带时间范围参数时按多少天估算
+     */
+    public int getDefaultRangeDays() { return defaultRangeDays; }
+    public void setDefaultRangeDays(int defaultRangeDays) { this.defaultRangeDays = defaultRangeDays; }
+
+    /**
+     * 未指定项目（全项目扫描）时的成本倍数
+     */
+    public int getUnscopedFactor() { return unscopedFactor; }
+    public void setUnscopedFactor(int unscopedFactor) { this.unscopedFactor = unscopedFactor; }
+
+    /**
+     * accuracy=approx 的请求在抽样影子表上执行，成本按该除数折算（与 app.approx.sample-modulus 一致）
+     */
+    public int getApproxCostDivisor() { return approxCostDivisor; }
+    public void setApproxCostDivisor(int approxCostDivisor) { this.approxCostDivisor = approxCostDivisor; }
+
+    public Map<String, QueryClass> getClasses() { return classes; }
+    public void setClasses(Map<String, QueryClass> classes) { this.classes = classes; }
+
+    /**
+     * 单个查询类别的并发预算、排队和语句超时
+     */
+    public static class QueryClass {
+        private long maxCost = -1;
+        private int maxConcurrent = 8;
+        private int maxQueue = 16;
+        private long maxWaitMs = 2000;
+        private int statementTimeoutSeconds = 0;
+
+        /**
+         * 成本上限（含），-1 表示不设上限
+         */
+        public long getMaxCost() { return maxCost; }
+        public void setMaxCost(long maxCost) { this.maxCost = maxCost; }
+
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+
+        public int getMaxQueue() { return maxQueue; }
+        public void setMaxQueue(int maxQueue) { this.maxQueue = maxQueue; }
+
+        public long getMaxWaitMs() { return maxWaitMs; }
+        public void setMaxWaitMs(long maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+
+        /**
+         * JDBC语句超时秒数，0 表示沿用 app.performance.query-timeout
+         */
+        public int getStatementTimeoutSeconds() { return statementTimeoutSeconds; }
+        public void setStatementTimeoutSeconds(int statementTimeoutSeconds) { this.statementTimeoutSeconds = statementTimeoutSeconds; }
+    }
+}
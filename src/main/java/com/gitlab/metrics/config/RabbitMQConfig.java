@@ -1,11 +1,20 @@
 package com.gitlab.metrics.config;
 
+import com.gitlab.metrics.messaging.DelayedRetryInterceptor;
+import com.gitlab.metrics.messaging.EventEnvelopeMessageConverter;
+import com.gitlab.metrics.messaging.LaneLatencyRecorder;
+import com.gitlab.metrics.messaging.PipelineLagRecorder;
+import com.gitlab.metrics.messaging.QueueLoadTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -17,6 +26,7 @@ public class RabbitMQConfig {
     
     // Queue names
     public static final String COMMIT_ANALYSIS_QUEUE = "commit.analysis.queue";
+    public static final String COMMIT_ANALYSIS_BULK_QUEUE = "commit.analysis.bulk.queue";
     public static final String QUALITY_ANALYSIS_QUEUE = "quality.analysis.queue";
     public static final String ISSUE_ANALYSIS_QUEUE = "issue.analysis.queue";
     public static final String MERGE_REQUEST_ANALYSIS_QUEUE = "merge.request.analysis.queue";
@@ -25,30 +35,83 @@ public class RabbitMQConfig {
     
     // Routing keys
     public static final String COMMIT_ROUTING_KEY = "gitlab.event.push";
+    public static final String COMMIT_BULK_ROUTING_KEY = "gitlab.event.push.bulk";
     public static final String QUALITY_ROUTING_KEY = "gitlab.event.quality";
     public static final String ISSUE_ROUTING_KEY = "gitlab.event.issue";
     public static final String MERGE_REQUEST_ROUTING_KEY = "gitlab.event.merge_request";
 
+    // Listener concurrency before the autoscaler takes over (and when it is disabled)
+    public static final int INITIAL_CONCURRENT_CONSUMERS = 5;
+    public static final int INITIAL_MAX_CONCURRENT_CONSUMERS = 10;
+
+    /**
+     * Wire format for event envelopes we publish (json | smile); consumers decode by content type,
+     * so switch producers to smile only after every consumer runs a version that reads it
+     */
+    @Value("${app.messaging.wire-format:json}")
+    private String wireFormat;
+
+    /**
+     * Distinct project tags kept on the per-project pipeline lag timer; later projects are reported as "other"
+     */
+    @Value("${app.messaging.pipeline-lag.max-project-tags:100}")
+    private int maxProjectTags;
+
+    /**
+     * Event transport (rabbitmq | in-process); with in-process the listener containers are created but never started
+     */
+    @Value("${app.messaging.transport:rabbitmq}")
+    private String transport;
+
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter eventMessageConverter() {
+        return new EventEnvelopeMessageConverter(
+            EventEnvelopeMessageConverter.WireFormat.valueOf(wireFormat.trim().toUpperCase()),
+            new Jackson2JsonMessageConverter());
     }
 
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(jsonMessageConverter());
+        rabbitTemplate.setMessageConverter(eventMessageConverter());
         return rabbitTemplate;
     }
 
+    /**
+     * Per-queue processing counts and busy time, read by the listener autoscaler
+     */
+    @Bean
+    public QueueLoadTracker queueLoadTracker() {
+        return new QueueLoadTracker();
+    }
+
+    /**
+     * Receipt-to-persisted lag per pipeline stage, read from the x-ts-* headers stamped along the way
+     */
+    @Bean
+    public PipelineLagRecorder pipelineLagRecorder(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new PipelineLagRecorder(meterRegistry.getIfAvailable(SimpleMeterRegistry::new), maxProjectTags);
+    }
+
+    /**
+     * Listeners ack on return; a thrown exception is handed to the delayed retry interceptor, and anything it
+     * cannot republish is rejected without requeue so it lands in the dead letter queue instead of looping
+     */
     @Bean
-    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory) {
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                               DelayedRetryInterceptor delayedRetryInterceptor,
+                                                                               LaneLatencyRecorder laneLatencyRecorder,
+                                                                               PipelineLagRecorder pipelineLagRecorder) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
-        factory.setMessageConverter(jsonMessageConverter());
-        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
-        factory.setConcurrentConsumers(5);
-        factory.setMaxConcurrentConsumers(10);
+        factory.setMessageConverter(eventMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setDefaultRequeueRejected(false);
+        factory.setConcurrentConsumers(INITIAL_CONCURRENT_CONSUMERS);
+        factory.setMaxConcurrentConsumers(INITIAL_MAX_CONCURRENT_CONSUMERS);
+        factory.setAutoStartup(!"in-process".equals(transport));
+        // latency recorders sit inside the retry interceptor so only successful processing is recorded
+        factory.setAdviceChain(queueLoadTracker(), delayedRetryInterceptor, laneLatencyRecorder, pipelineLagRecorder);
         return factory;
     }
 
@@ -67,6 +130,17 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * Bulk lane for large pushes (imports, mass rebases) so they don't hold up regular commit analysis
+     */
+    @Bean
+    public Queue commitAnalysisBulkQueue() {
+        return QueueBuilder.durable(COMMIT_ANALYSIS_BULK_QUEUE)
+                .withArgument("x-dead-letter-exchange", GITLAB_EVENTS_EXCHANGE + ".dlx")
+                .withArgument("x-dead-letter-routing-key", "dead.letter")
+                .build();
+    }
+
     @Bean
     public Queue qualityAnalysisQueue() {
         return QueueBuilder.durable(QUALITY_ANALYSIS_QUEUE)
@@ -115,6 +189,13 @@ public class RabbitMQConfig {
                 .with(COMMIT_ROUTING_KEY);
     }
 
+    @Bean
+    public Binding commitAnalysisBulkBinding() {
+        return BindingBuilder.bind(commitAnalysisBulkQueue())
+                .to(gitlabEventsExchange())
+                .with(COMMIT_BULK_ROUTING_KEY);
+    }
+
     @Bean
     public Binding qualityAnalysisBinding() {
         return BindingBuilder.bind(qualityAnalysisQueue())
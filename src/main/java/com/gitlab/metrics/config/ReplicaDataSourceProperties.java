@@ -0,0 +1,62 @@
+package com.gitlab.metrics.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本数据源配置
+ * 绑定 app.datasource.replicas，每个副本节点使用独立的连接池参数
+ */
+public class ReplicaDataSourceProperties {
+
+    private boolean enabled = false;
+    private long maxLagSeconds = 10;
+    private long healthCheckIntervalMs = 5000;
+    private List<Node> nodes = new ArrayList<>();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public long getMaxLagSeconds() { return maxLagSeconds; }
+    public void setMaxLagSeconds(long maxLagSeconds) { this.maxLagSeconds = maxLagSeconds; }
+
+    public long getHealthCheckIntervalMs() { return healthCheckIntervalMs; }
+    public void setHealthCheckIntervalMs(long healthCheckIntervalMs) { this.healthCheckIntervalMs = healthCheckIntervalMs; }
+
+    public List<Node> getNodes() { return nodes; }
+    public void setNodes(List<Node> nodes) { this.nodes = nodes; }
+
+    /**
+     * 副本节点，未配置的连接参数沿用主库连接池
+     */
+    public static class Node {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+        private long connectionTimeout = 5000;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public int getMaximumPoolSize() { return maximumPoolSize; }
+        public void setMaximumPoolSize(int maximumPoolSize) { this.maximumPoolSize = maximumPoolSize; }
+
+        public int getMinimumIdle() { return minimumIdle; }
+        public void setMinimumIdle(int minimumIdle) { this.minimumIdle = minimumIdle; }
+
+        public long getConnectionTimeout() { return connectionTimeout; }
+        public void setConnectionTimeout(long connectionTimeout) { this.connectionTimeout = connectionTimeout; }
+    }
+}
@@ -0,0 +1,165 @@
+package com.gitlab.metrics.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 读写分离配置
+ * 把主库 Hikari 连接池包装为 ReplicaRoutingDataSource，只读事务在副本连接池上执行，
+ * 副本连接池的大小与写入方独立配置
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.replicas", name = "enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingConfig.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * 包装主库 "dataSource" bean，无论它来自自动配置还是 DatabaseSslConfig
+     */
+    @Bean
+    public static ReplicaRoutingPostProcessor replicaRoutingPostProcessor(Environment environment,
+                                                                          ObjectProvider<MeterRegistry> meterRegistry) {
+        ReplicaDataSourceProperties properties = Binder.get(environment)
+            .bind("app.datasource.replicas", ReplicaDataSourceProperties.class)
+            .orElseGet(ReplicaDataSourceProperties::new);
+        return new ReplicaRoutingPostProcessor(properties, meterRegistry);
+    }
+
+    /**
+     * 定时检查副本健康状态和复制延迟
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-check-interval-ms:5000}")
+    public void checkReplicaHealth() {
+        try {
+            if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                dataSource.unwrap(ReplicaRoutingDataSource.class).checkReplicas();
+            }
+        } catch (SQLException e) {
+            logger.warn("Replica health check failed", e);
+        }
+    }
+
+    /**
+     * 排在舱壁后处理器之后，使舱壁隔离后的主库成为写路由
+     */
+    static class ReplicaRoutingPostProcessor implements BeanPostProcessor, DisposableBean, Ordered {
+
+        private final ReplicaDataSourceProperties properties;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private ReplicaRoutingDataSource routingDataSource;
+
+        ReplicaRoutingPostProcessor(ReplicaDataSourceProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+            this.properties = properties;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public int getOrder() {
+            return 10;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!"dataSource".equals(beanName) || properties.getNodes().isEmpty()) {
+                return bean;
+            }
+            HikariDataSource template = templatePool(bean);
+            if (template == null) {
+                return bean;
+            }
+            DataSource primary = (DataSource) bean;
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+
+            Map<String, DataSource> replicaPools = new LinkedHashMap<>();
+            int index = 1;
+            for (ReplicaDataSourceProperties.Node node : properties.getNodes()) {
+                String name = node.getName() != null ? node.getName() : "replica-" + index;
+                replicaPools.put(name, createReplicaPool(template, node, name, registry));
+                index++;
+            }
+
+            routingDataSource = new ReplicaRoutingDataSource(primary, replicaPools, properties.getMaxLagSeconds());
+            if (registry != null) {
+                routingDataSource.bindMetrics(registry);
+            }
+            // 副本启动时视为不可用，先同步检查一次，避免未就绪或延迟过大的副本在首次定时检查前接收读请求
+            routingDataSource.checkReplicas();
+            logger.info("Read-only transactions routed to replicas: {}, usable: {}", replicaPools.keySet(),
+                routingDataSource.getReplicas().stream()
+                    .filter(replica -> replica.isUsable(properties.getMaxLagSeconds()))
+                    .map(ReplicaRoutingDataSource.Replica::getName)
+                    .collect(Collectors.toList()));
+
+            // 推迟到第一条语句时才获取物理连接，此时事务的只读标记已经确定
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(routingDataSource);
+            proxy.setDefaultAutoCommit(template.isAutoCommit());
+            return proxy;
+        }
+
+        private HikariDataSource templatePool(Object bean) {
+            if (bean instanceof HikariDataSource) {
+                return (HikariDataSource) bean;
+            }
+            if (bean instanceof BulkheadRoutingDataSource
+                && ((BulkheadRoutingDataSource) bean).getIngestPool() instanceof HikariDataSource) {
+                return (HikariDataSource) ((BulkheadRoutingDataSource) bean).getIngestPool();
+            }
+            return null;
+        }
+
+        private HikariDataSource createReplicaPool(HikariDataSource primary, ReplicaDataSourceProperties.Node node,
+                                                   String name, MeterRegistry registry) {
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setJdbcUrl(node.getUrl());
+            if (node.getUsername() != null) {
+                config.setUsername(node.getUsername());
+            }
+            if (node.getPassword() != null) {
+                config.setPassword(node.getPassword());
+            }
+            config.setPoolName(primary.getPoolName() + "-" + name);
+            config.setMaximumPoolSize(node.getMaximumPoolSize());
+            config.setMinimumIdle(node.getMinimumIdle());
+            config.setConnectionTimeout(node.getConnectionTimeout());
+            config.setReadOnly(true);
+            config.setMetricRegistry(null);
+            config.setMetricsTrackerFactory(registry != null ? new MicrometerMetricsTrackerFactory(registry) : null);
+            return new HikariDataSource(config);
+        }
+
+        @Override
+        public void destroy() throws Exception {
+            if (routingDataSource != null) {
+                routingDataSource.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.gitlab.metrics.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离路由数据源
+ * 只读事务（@Transactional(readOnly = true)）轮询路由到健康且复制延迟在阈值内的副本，
+ * 其余连接以及所有副本不可用时回退到主库。副本在首次健康检查通过之前不参与路由。
+ * 需要包装在 LazyConnectionDataSourceProxy 中使用，保证路由时事务的只读标记已经设置。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagSeconds;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaPools, long maxLagSeconds) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLagSeconds;
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Map.Entry<String, DataSource> entry : replicaPools.entrySet()) {
+            targets.put(entry.getKey(), entry.getValue());
+            replicas.add(new Replica(entry.getKey(), entry.getValue()));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 注册路由计数与副本状态指标
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                .description("Whether the replica is eligible for read-only routing")
+                .tag("route", replica.name)
+                .register(registry);
+            Gauge.builder("datasource.replica.lag.seconds", replica, r -> r.lagSeconds)
+                .description("Replication lag reported by the replica")
+                .tag("route", replica.name)
+                .register(registry);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String route = resolveRoute();
+        if (meterRegistry != null) {
+            Counter.builder("datasource.routing.connections")
+                .description("Connections handed out per route")
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment();
+        }
+        return route;
+    }
+
+    String resolveRoute() {
+        if (replicas.isEmpty()
+            || !TransactionSynchronizationManager.isActualTransactionActive()
+            || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isUsable(maxLagSeconds)) {
+                return replica.name;
+            }
+        }
+        if (meterRegistry != null) {
+            meterRegistry.counter("datasource.routing.fallback", "route", PRIMARY).increment();
+        }
+        logger.debug("没有可用的只读副本，只读事务回退到主库");
+        return PRIMARY;
+    }
+
+    /**
+     * 检查所有副本的连通性和复制延迟
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean wasUsable = replica.isUsable(maxLagSeconds);
+            try (Connection connection = replica.dataSource.getConnection()) {
+                replica.lagSeconds = queryReplicationLag(connection);
+                replica.healthy = connection.isValid(2) && replica.lagSeconds >= 0;
+            } catch (SQLException e) {
+                replica.healthy = false;
+                logger.debug("副本健康检查失败: {}", replica.name, e);
+            }
+            boolean usable = replica.isUsable(maxLagSeconds);
+            if (wasUsable != usable) {
+                logger.warn("副本路由状态变化: replica={}, usable={}, healthy={}, lagSeconds={}",
+                    replica.name, usable, replica.healthy, replica.lagSeconds);
+            }
+        }
+    }
+
+    /**
+     * 查询复制延迟（秒），非副本节点返回0，复制线程停止时返回-1
+     */
+    static long queryReplicationLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            ResultSet resultSet;
+            try {
+                resultSet = statement.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                // MySQL 8.0.22 之前的版本
+                resultSet = statement.executeQuery("SHOW SLAVE STATUS");
+            }
+            try (ResultSet rs = resultSet) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                Object lag = readColumn(rs, "Seconds_Behind_Source");
+                if (lag == null) {
+                    lag = readColumn(rs, "Seconds_Behind_Master");
+                }
+                return lag instanceof Number ? ((Number) lag).longValue()
+                    : lag != null ? Long.parseLong(lag.toString()) : -1;
+            }
+        }
+    }
+
+    private static Object readColumn(ResultSet rs, String column) {
+        try {
+            return rs.getObject(column);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            closeQuietly(replica.dataSource);
+        }
+        closeQuietly(primary);
+    }
+
+    private void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                logger.warn("关闭连接池失败", e);
+            }
+        }
+    }
+
+    /**
+     * 副本节点状态
+     */
+    public static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = false;
+        private volatile long lagSeconds = 0;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        boolean isUsable(long maxLagSeconds) {
+            return healthy && lagSeconds >= 0 && lagSeconds <= maxLagSeconds;
+        }
+
+        public String getName() { return name; }
+        public boolean isHealthy() { return healthy; }
+        public long getLagSeconds() { return lagSeconds; }
+    }
+}
@@ -0,0 +1,65 @@
+package com.gitlab.metrics.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按项目分片配置
+ * 绑定 app.datasource.shards；主数据源作为 primary-name 分片，其余分片在 shards 中配置，
+ * 每个分片需预先执行与主库相同的迁移脚本
+ */
+public class ShardDataSourceProperties {
+
+    private boolean enabled = false;
+    private String primaryName = "shard-0";
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+    private Map<String, String> assignments = new LinkedHashMap<>();
+    private int scatterThreads = 0;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getPrimaryName() { return primaryName; }
+    public void setPrimaryName(String primaryName) { this.primaryName = primaryName; }
+
+    public Map<String, Shard> getShards() { return shards; }
+    public void setShards(Map<String, Shard> shards) { this.shards = shards; }
+
+    /**
+     * 项目ID到分片名称的固定分配，优先于哈希分配；新增分片前可用来钉住已有项目
+     */
+    public Map<String, String> getAssignments() { return assignments; }
+    public void setAssignments(Map<String, String> assignments) { this.assignments = assignments; }
+
+    /**
+     * 跨分片查询的并行线程数，0 表示与分片数相同
+     */
+    public int getScatterThreads() { return scatterThreads; }
+    public void setScatterThreads(int scatterThreads) { this.scatterThreads = scatterThreads; }
+
+    /**
+     * 单个分片的连接参数，未配置的连接池参数沿用主数据源
+     */
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public int getMaximumPoolSize() { return maximumPoolSize; }
+        public void setMaximumPoolSize(int maximumPoolSize) { this.maximumPoolSize = maximumPoolSize; }
+
+        public int getMinimumIdle() { return minimumIdle; }
+        public void setMinimumIdle(int minimumIdle) { this.minimumIdle = minimumIdle; }
+    }
+}
@@ -0,0 +1,86 @@
+package com.gitlab.metrics.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 项目到分片的映射
+ * 固定分配优先，其余项目使用最高随机权重（rendezvous）哈希：对每个分片计算 hash(分片名, 项目ID) 取最大者，
+ * 新增分片时只有约 1/N 的项目迁移到新分片，已有分片之间不发生迁移
+ */
+public class ShardMap {
+
+    private final List<String> shards;
+    private final String defaultShard;
+    private final Map<String, String> assignments;
+
+    public ShardMap(List<String> shards, String defaultShard, Map<String, String> assignments) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        List<String> sorted = new ArrayList<>(shards);
+        Collections.sort(sorted);
+        this.shards = Collections.unmodifiableList(sorted);
+        this.defaultShard = defaultShard;
+        for (Map.Entry<String, String> entry : assignments.entrySet()) {
+            if (!sorted.contains(entry.getValue())) {
+                throw new IllegalArgumentException("Project " + entry.getKey() + " assigned to unknown shard " + entry.getValue());
+            }
+        }
+        this.assignments = new LinkedHashMap<>(assignments);
+    }
+
+    /**
+     * 项目所在分片
+     */
+    public String shardFor(String projectId) {
+        if (projectId == null) {
+            return defaultShard;
+        }
+        String assigned = assignments.get(projectId);
+        if (assigned != null) {
+            return assigned;
+        }
+        String best = null;
+        long bestWeight = -1;
+        for (String shard : shards) {
+            long weight = weight(shard, projectId);
+            if (weight > bestWeight) {
+                best = shard;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * 未指定项目的调用使用的分片（主数据源）
+     */
+    public String getDefaultShard() {
+        return defaultShard;
+    }
+
+    private static long weight(String shard, String projectId) {
+        CRC32 crc = new CRC32();
+        crc.update(shard.getBytes(StandardCharsets.UTF_8));
+        crc.update(0);
+        crc.update(projectId.getBytes(StandardCharsets.UTF_8));
+        // CRC32 对相近输入的输出不够分散，再做一次 64 位混合（MurmurHash3 fmix64）
+        long h = crc.getValue();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h & Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,356 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.entity.CodeReview;
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.FileChange;
+import com.gitlab.metrics.entity.Issue;
+import com.gitlab.metrics.entity.MergeRequest;
+import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.entity.TestCoverage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import javax.persistence.Entity;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 将分片表的仓库调用路由到项目所在的分片
+ * 分片由 projectId 参数、projectIds 集合或被保存的实体决定；都没有时沿用线程上已绑定的分片
+ * （&#64;ShardedByProject 服务方法或跨分片查询的工作线程）。
+ * 线程未绑定分片的调用不会静默落到默认分片：按业务键的单条查找、exists 和 count 在所有分片上执行后合并，
+ * 不带排序、限量和分组的行列表查询按分片拼接，其余调用（写操作、按自增主键的查找、排序/分组聚合）直接拒绝。
+ * 在事务拦截器之前执行，保证使用连接前分片已确定。
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ShardRoutingAspect {
+
+    private static final String PROJECT_ID = "projectId";
+    private static final String PROJECT_IDS = "projectIds";
+
+    /**
+     * 参数为自增主键的 CrudRepository 方法，各分片的主键互相独立，不能跨分片查找
+     */
+    private static final Set<String> SURROGATE_KEY_METHODS = new HashSet<>(Arrays.asList(
+        "findById", "findAllById", "existsById", "getById", "getOne", "getReferenceById",
+        "deleteById", "deleteAllById"));
+
+    /**
+     * 未路由调用的跨分片合并方式
+     */
+    enum Merge { FIRST, ANY, SUM, CONCAT, REJECT }
+
+    private final ShardMap shardMap;
+    private final Supplier<ShardScatterGather> scatterGather;
+    private final Counter scatteredCalls;
+    private final Counter rejectedCalls;
+    private final ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final Map<Method, int[]> parameterCache = new ConcurrentHashMap<>();
+    private final Map<Method, Expression> expressionCache = new ConcurrentHashMap<>();
+    private final Map<Method, Merge> mergeCache = new ConcurrentHashMap<>();
+
+    public ShardRoutingAspect(ShardMap shardMap, Supplier<ShardScatterGather> scatterGather, MeterRegistry registry) {
+        this.shardMap = shardMap;
+        this.scatterGather = scatterGather;
+        this.scatteredCalls = Counter.builder("shard.unrouted.calls")
+            .description("Sharded repository calls without a project or bound shard")
+            .tag("outcome", "scattered")
+            .register(registry);
+        this.rejectedCalls = Counter.builder("shard.unrouted.calls")
+            .description("Sharded repository calls without a project or bound shard")
+            .tag("outcome", "rejected")
+            .register(registry);
+    }
+
+    @Around("execution(public * *(..)) && ("
+        + "target(com.gitlab.metrics.repository.CommitRepository) || "
+        + "target(com.gitlab.metrics.repository.FileChangeRepository) || "
+        + "target(com.gitlab.metrics.repository.IssueRepository) || "
+        + "target(com.gitlab.metrics.repository.MergeRequestRepository) || "
+        + "target(com.gitlab.metrics.repository.CodeReviewRepository) || "
+        + "target(com.gitlab.metrics.repository.QualityMetricsRepository) || "
+        + "target(com.gitlab.metrics.repository.TestCoverageRepository))")
+    public Object routeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object[] args = joinPoint.getArgs();
+        int[] indexes = parameterCache.computeIfAbsent(method, this::projectParameters);
+
+        if (indexes[0] >= 0 && args[indexes[0]] instanceof String) {
+            return proceedOn(shardMap.shardFor((String) args[indexes[0]]), joinPoint);
+        }
+        if (indexes[1] >= 0 && args[indexes[1]] instanceof Collection) {
+            return routeProjects(joinPoint, method, indexes[1]);
+        }
+
+        Set<String> shards = new LinkedHashSet<>();
+        for (Object arg : args) {
+            if (arg instanceof Iterable) {
+                for (Object element : (Iterable<?>) arg) {
+                    addEntityShard(element, shards);
+                }
+            } else {
+                addEntityShard(arg, shards);
+            }
+        }
+        if (shards.size() > 1) {
+            throw new IllegalArgumentException("Entities of one call belong to different shards: " + shards);
+        }
+        if (shards.size() == 1) {
+            return proceedOn(shards.iterator().next(), joinPoint);
+        }
+        return routeUnscoped(joinPoint, method);
+    }
+
+    @Around("@annotation(shardedByProject)")
+    public Object routeAnnotated(ProceedingJoinPoint joinPoint, ShardedByProject shardedByProject) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Expression expression = expressionCache.computeIfAbsent(method,
+            m -> parser.parseExpression(shardedByProject.value()));
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+            joinPoint.getTarget(), method, joinPoint.getArgs(), parameterNames);
+        Object projectId = expression.getValue(context);
+        if (projectId == null) {
+            return joinPoint.proceed();
+        }
+        return proceedOn(shardMap.shardFor(projectId.toString()), joinPoint);
+    }
+
+    /**
+     * 多项目调用：所有项目同属一个分片时直接路由，否则按分片拆分 projectIds 参数，并行查询后拼接列表
+     */
+    private Object routeProjects(ProceedingJoinPoint joinPoint, Method method, int index) throws Throwable {
+        Map<String, List<Object>> byShard = new LinkedHashMap<>();
+        for (Object projectId : (Collection<?>) joinPoint.getArgs()[index]) {
+            String shard = shardMap.shardFor(projectId != null ? projectId.toString() : null);
+            byShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(projectId);
+        }
+        if (byShard.size() <= 1) {
+            return byShard.isEmpty() ? joinPoint.proceed() : proceedOn(byShard.keySet().iterator().next(), joinPoint);
+        }
+        if (!List.class.isAssignableFrom(method.getReturnType())) {
+            throw new IllegalArgumentException("Cannot split " + method.getName() + " across shards " + byShard.keySet());
+        }
+
+        Map<String, List<?>> results = scatterGather.get().onShards(byShard.keySet(), shard -> {
+            Object[] args = joinPoint.getArgs().clone();
+            args[index] = byShard.get(shard);
+            try {
+                return (List<?>) joinPoint.proceed(args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        List<Object> merged = new ArrayList<>();
+        results.values().forEach(merged::addAll);
+        return merged;
+    }
+
+    /**
+     * 无项目信息的调用：线程已绑定分片时在该分片执行，否则按方法的合并方式跨分片执行或拒绝
+     */
+    private Object routeUnscoped(ProceedingJoinPoint joinPoint, Method method) throws Throwable {
+        if (ShardRoutingDataSource.currentShard() != null) {
+            return joinPoint.proceed();
+        }
+        List<String> shards = shardMap.getShards();
+        if (shards.size() == 1) {
+            return proceedOn(shards.get(0), joinPoint);
+        }
+        Merge merge = mergeCache.computeIfAbsent(method, ShardRoutingAspect::mergeOf);
+        if (merge == Merge.REJECT) {
+            rejectedCalls.increment();
+            throw new IllegalStateException("Sharded repository call " + method.getDeclaringClass().getSimpleName()
+                + "." + method.getName() + " has no project; bind the shard with @ShardedByProject");
+        }
+        scatteredCalls.increment();
+        Object[] args = joinPoint.getArgs();
+        Map<String, Object> results = scatterGather.get().onShards(shards, shard -> {
+            try {
+                return joinPoint.proceed(args.clone());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return merge(merge, method, results);
+    }
+
+    private static Object merge(Merge merge, Method method, Map<String, Object> results) {
+        switch (merge) {
+            case FIRST: {
+                Object found = null;
+                String foundOn = null;
+                for (Map.Entry<String, Object> entry : results.entrySet()) {
+                    Object value = entry.getValue();
+                    if (value == null || (value instanceof Optional && !((Optional<?>) value).isPresent())) {
+                        continue;
+                    }
+                    if (found != null) {
+                        throw new IllegalStateException(method.getName() + " matched rows on shards "
+                            + foundOn + " and " + entry.getKey());
+                    }
+                    found = value;
+                    foundOn = entry.getKey();
+                }
+                return found != null || !Optional.class.equals(method.getReturnType()) ? found : Optional.empty();
+            }
+            case ANY:
+                return results.values().stream().anyMatch(Boolean.TRUE::equals);
+            case SUM: {
+                long sum = 0;
+                for (Object value : results.values()) {
+                    sum += value != null ? ((Number) value).longValue() : 0;
+                }
+                Class<?> type = method.getReturnType();
+                return type == int.class || type == Integer.class ? (Object) (int) sum : (Object) sum;
+            }
+            default: {
+                List<Object> merged = new ArrayList<>();
+                results.values().forEach(rows -> merged.addAll((List<?>) rows));
+                return merged;
+            }
+        }
+    }
+
+    /**
+     * 跨分片合并方式：只有合并结果与单库查询等价的方法才允许跨分片执行
+     */
+    static Merge mergeOf(Method method) {
+        String name = method.getName();
+        Class<?> type = method.getReturnType();
+        if (SURROGATE_KEY_METHODS.contains(name) || method.isAnnotationPresent(Modifying.class)
+            || !(name.startsWith("find") || name.startsWith("get") || name.startsWith("exists")
+                 || name.startsWith("count"))) {
+            return Merge.REJECT;
+        }
+        for (Class<?> parameter : method.getParameterTypes()) {
+            if (Pageable.class.isAssignableFrom(parameter) || Sort.class.isAssignableFrom(parameter)) {
+                return Merge.REJECT;
+            }
+        }
+        Query query = method.getAnnotation(Query.class);
+        String sql = query != null ? query.value().toUpperCase() : "";
+        if (name.startsWith("exists") && (type == boolean.class || type == Boolean.class)) {
+            return Merge.ANY;
+        }
+        // 去重计数和排序、限量、分组的结果不能按分片简单相加或拼接
+        if (name.contains("Distinct") || name.contains("OrderBy") || name.contains("Top") || name.contains("First")
+            || sql.contains("DISTINCT") || sql.contains("ORDER BY") || sql.contains("LIMIT")) {
+            return Merge.REJECT;
+        }
+        if (Optional.class.equals(type) || type.isAnnotationPresent(Entity.class)) {
+            return Merge.FIRST;
+        }
+        if (name.startsWith("count")
+            && (type == long.class || type == Long.class || type == int.class || type == Integer.class)) {
+            return Merge.SUM;
+        }
+        if (List.class.equals(type) && !sql.contains("GROUP BY") && !sql.contains("COUNT(") && !sql.contains("SUM(")) {
+            return Merge.CONCAT;
+        }
+        return Merge.REJECT;
+    }
+
+    private Object proceedOn(String shard, ProceedingJoinPoint joinPoint) throws Throwable {
+        String current = ShardRoutingDataSource.currentShard();
+        if (shard.equals(current)) {
+            return joinPoint.proceed();
+        }
+        if (current != null) {
+            throw new IllegalStateException("Thread is bound to shard " + current + ", call requires " + shard);
+        }
+        String previous = ShardRoutingDataSource.bind(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+
+    private void addEntityShard(Object entity, Set<String> shards) {
+        String projectId = projectOf(entity);
+        if (projectId != null) {
+            shards.add(shardMap.shardFor(projectId));
+        }
+    }
+
+    /**
+     * 实体所属项目；文件变更和评审跟随其提交和合并请求
+     */
+    static String projectOf(Object entity) {
+        if (entity instanceof Commit) {
+            return ((Commit) entity).getProjectId();
+        }
+        if (entity instanceof Issue) {
+            return ((Issue) entity).getProjectId();
+        }
+        if (entity instanceof MergeRequest) {
+            return ((MergeRequest) entity).getProjectId();
+        }
+        if (entity instanceof QualityMetrics) {
+            return ((QualityMetrics) entity).getProjectId();
+        }
+        if (entity instanceof TestCoverage) {
+            return ((TestCoverage) entity).getProjectId();
+        }
+        if (entity instanceof FileChange) {
+            return projectOf(((FileChange) entity).getCommit());
+        }
+        if (entity instanceof CodeReview) {
+            return projectOf(((CodeReview) entity).getMergeRequest());
+        }
+        return null;
+    }
+
+    /**
+     * 按 @Param 或参数名查找 projectId 和 projectIds 参数的位置，不存在时为 -1
+     */
+    private int[] projectParameters(Method method) {
+        int[] indexes = {-1, -1};
+        Parameter[] parameters = method.getParameters();
+        String[] names = parameterNames.getParameterNames(method);
+        for (int i = 0; i < parameters.length; i++) {
+            Param param = parameters[i].getAnnotation(Param.class);
+            String name = param != null ? param.value() : (names != null ? names[i] : null);
+            if (PROJECT_ID.equals(name)) {
+                indexes[0] = i;
+            } else if (PROJECT_IDS.equals(name)) {
+                indexes[1] = i;
+            }
+        }
+        return indexes;
+    }
+}
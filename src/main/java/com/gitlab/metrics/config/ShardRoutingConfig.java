@@ -0,0 +1,197 @@
+package com.gitlab.metrics.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按项目分片配置
+ * 提交、文件变更、Issue、合并请求、评审、质量和覆盖率表按项目分片，主数据源作为 ShardRoutingDataSource 的一个分片；
+ * 仓库调用由 ShardRoutingAspect 路由，跨项目聚合通过 ShardScatterGather 在所有分片上执行
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.shards", name = "enabled", havingValue = "true")
+public class ShardRoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRoutingConfig.class);
+
+    @Bean
+    public static ShardDataSourceProperties shardDataSourceProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("app.datasource.shards", ShardDataSourceProperties.class)
+            .orElseGet(ShardDataSourceProperties::new);
+    }
+
+    @Bean
+    public static ShardRoutingPostProcessor shardRoutingPostProcessor(Environment environment,
+                                                                      ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ShardRoutingPostProcessor(shardDataSourceProperties(environment), meterRegistry);
+    }
+
+    @Bean
+    public ShardMap shardMap(ShardDataSourceProperties properties) {
+        List<String> shards = new ArrayList<>();
+        shards.add(properties.getPrimaryName());
+        shards.addAll(properties.getShards().keySet());
+        ShardMap shardMap = new ShardMap(shards, properties.getPrimaryName(), properties.getAssignments());
+        logger.info("Project shards: {}, fixed assignments: {}", shardMap.getShards(), properties.getAssignments().size());
+        return shardMap;
+    }
+
+    @Bean
+    public ShardRoutingAspect shardRoutingAspect(ShardMap shardMap, ObjectProvider<ShardScatterGather> scatterGather,
+                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ShardRoutingAspect(shardMap, scatterGather::getObject,
+            meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor shardScatterExecutor(ShardDataSourceProperties properties, ShardMap shardMap) {
+        int threads = properties.getScatterThreads() > 0 ? properties.getScatterThreads() : shardMap.getShards().size();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 16);
+        executor.setThreadNamePrefix("ShardScatter-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ShardScatterGather shardScatterGather(ShardMap shardMap, PlatformTransactionManager transactionManager,
+                                                 ThreadPoolTaskExecutor shardScatterExecutor) {
+        return new ShardScatterGather(shardMap, transactionManager, shardScatterExecutor);
+    }
+
+    /**
+     * 在隔离舱和只读副本的后处理器之后执行，拆分隔离舱/接入副本后的主库成为主分片；
+     * 在语句超时的后处理器之前执行，每个分片都带上语句超时
+     */
+    static class ShardRoutingPostProcessor implements BeanPostProcessor, DisposableBean, Ordered {
+
+        private final ShardDataSourceProperties properties;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private ShardRoutingDataSource routingDataSource;
+
+        ShardRoutingPostProcessor(ShardDataSourceProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+            this.properties = properties;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public int getOrder() {
+            return 15;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!"dataSource".equals(beanName) || !(bean instanceof DataSource) || properties.getShards().isEmpty()) {
+                return bean;
+            }
+            HikariDataSource template = templatePool(bean);
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+
+            Map<String, DataSource> shards = new LinkedHashMap<>();
+            shards.put(properties.getPrimaryName(), (DataSource) bean);
+            for (Map.Entry<String, ShardDataSourceProperties.Shard> entry : properties.getShards().entrySet()) {
+                shards.put(entry.getKey(), createShardPool(template, entry.getValue(), entry.getKey(), registry));
+            }
+            routingDataSource = new ShardRoutingDataSource(properties.getPrimaryName(), shards);
+            logger.info("Sharded tables routed across: {}", shards.keySet());
+
+            // 第一条语句执行时才选择分片，此时已处于绑定了分片的仓库调用内
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(routingDataSource);
+            primeDefaults(proxy, template);
+            return proxy;
+        }
+
+        /**
+         * 开启事务时分片尚未绑定，不能打开物理连接，因此需要预先知道自动提交和隔离级别的默认值
+         */
+        private void primeDefaults(LazyConnectionDataSourceProxy proxy, HikariDataSource template) {
+            try (Connection connection = routingDataSource.getConnection()) {
+                proxy.setDefaultAutoCommit(connection.getAutoCommit());
+                proxy.setDefaultTransactionIsolation(connection.getTransactionIsolation());
+            } catch (SQLException e) {
+                logger.warn("Could not read connection defaults from the primary shard", e);
+                proxy.setDefaultAutoCommit(template == null || template.isAutoCommit());
+                proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+        }
+
+        private HikariDataSource templatePool(Object bean) {
+            Object current = bean;
+            while (current != null) {
+                if (current instanceof HikariDataSource) {
+                    return (HikariDataSource) current;
+                }
+                if (current instanceof BulkheadRoutingDataSource) {
+                    current = ((BulkheadRoutingDataSource) current).getIngestPool();
+                } else if (current instanceof ReplicaRoutingDataSource) {
+                    current = ((ReplicaRoutingDataSource) current).getPrimary();
+                } else if (current instanceof DelegatingDataSource) {
+                    current = ((DelegatingDataSource) current).getTargetDataSource();
+                } else {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private HikariDataSource createShardPool(HikariDataSource primary, ShardDataSourceProperties.Shard shard,
+                                                 String name, MeterRegistry registry) {
+            HikariConfig config = new HikariConfig();
+            if (primary != null) {
+                primary.copyStateTo(config);
+                config.setPoolName(primary.getPoolName() + "-" + name);
+            } else {
+                config.setPoolName(name);
+            }
+            config.setJdbcUrl(shard.getUrl());
+            if (shard.getUsername() != null) {
+                config.setUsername(shard.getUsername());
+            }
+            if (shard.getPassword() != null) {
+                config.setPassword(shard.getPassword());
+            }
+            config.setMaximumPoolSize(shard.getMaximumPoolSize());
+            config.setMinimumIdle(shard.getMinimumIdle());
+            config.setMetricRegistry(null);
+            config.setMetricsTrackerFactory(registry != null ? new MicrometerMetricsTrackerFactory(registry) : null);
+            return new HikariDataSource(config);
+        }
+
+        @Override
+        public void destroy() {
+            if (routingDataSource != null) {
+                routingDataSource.close();
+            }
+        }
+    }
+}
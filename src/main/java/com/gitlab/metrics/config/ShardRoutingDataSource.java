@@ -0,0 +1,139 @@
+package com.gitlab.metrics.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按项目分片路由的数据源
+ * 当前线程绑定的分片决定获取连接的目标库，未绑定时使用默认分片（主数据源）；
+ * 事务中第一次获取连接时记录该事务的分片，之后绑定到其他分片会被拒绝，避免跨分片写入落在同一连接上
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRoutingDataSource.class);
+
+    private static final ThreadLocal<String> CURRENT_SHARD = new ThreadLocal<>();
+    private static final Object TRANSACTION_SHARD_KEY = ShardRoutingDataSource.class.getName() + ".transactionShard";
+
+    private final String defaultShard;
+    private final Map<String, DataSource> shards;
+
+    public ShardRoutingDataSource(String defaultShard, Map<String, DataSource> shards) {
+        if (!shards.containsKey(defaultShard)) {
+            throw new IllegalArgumentException("Default shard " + defaultShard + " is not configured");
+        }
+        this.defaultShard = defaultShard;
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(defaultShard));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 绑定当前线程使用的分片
+     *
+     * @return 之前绑定的分片，用于 restore
+     */
+    public static String bind(String shard) {
+        checkTransactionShard(shard);
+        String previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return previous;
+    }
+
+    /**
+     * 绑定分片但不检查当前事务的分片，仅用于随后立即开启新事务（REQUIRES_NEW）的调用
+     */
+    static String bindForNewTransaction(String shard) {
+        String previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return previous;
+    }
+
+    /**
+     * 恢复之前的绑定
+     */
+    public static void restore(String previous) {
+        if (previous == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(previous);
+        }
+    }
+
+    public static String currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    /**
+     * 当前事务已经在某个分片上获取过连接时，不允许再绑定到其他分片
+     */
+    static void checkTransactionShard(String shard) {
+        Object transactionShard = TransactionSynchronizationManager.getResource(TRANSACTION_SHARD_KEY);
+        if (transactionShard != null && !transactionShard.equals(shard)) {
+            throw new IllegalStateException("Cross-shard access in one transaction: transaction is on "
+                + transactionShard + ", call requires " + shard);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = CURRENT_SHARD.get();
+        if (shard == null) {
+            shard = defaultShard;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+            && TransactionSynchronizationManager.getResource(TRANSACTION_SHARD_KEY) == null) {
+            String transactionShard = shard;
+            TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD_KEY, transactionShard);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // 挂起事务（REQUIRES_NEW）时一并解绑，新事务可以使用其他分片
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD_KEY);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD_KEY, transactionShard);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD_KEY);
+                }
+            });
+        }
+        return shard;
+    }
+
+    public String getDefaultShard() {
+        return defaultShard;
+    }
+
+    public Map<String, DataSource> getShards() {
+        return shards;
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, DataSource> entry : shards.entrySet()) {
+            if (!entry.getKey().equals(defaultShard) && entry.getValue() instanceof HikariDataSource) {
+                logger.info("关闭分片连接池: {}", entry.getKey());
+                ((HikariDataSource) entry.getValue()).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.gitlab.metrics.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * 跨分片查询（scatter-gather）
+ * 每个分片在独立线程、独立只读事务中执行同一查询，调用方合并结果；
+ * 调用线程上绑定的连接池隔离和语句超时会传递到工作线程。
+ * 不带项目的写操作（如按时间清理）用 {@link #updateEachShard} 在调用线程上逐个分片、各自提交
+ */
+public class ShardScatterGather {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardScatterGather.class);
+
+    private final ShardMap shardMap;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate updateTemplate;
+    private final AsyncTaskExecutor executor;
+
+    public ShardScatterGather(ShardMap shardMap, PlatformTransactionManager transactionManager,
+                              AsyncTaskExecutor executor) {
+        this.shardMap = shardMap;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.updateTemplate = new TransactionTemplate(transactionManager);
+        this.updateTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.executor = executor;
+    }
+
+    /**
+     * 在所有分片上执行查询
+     *
+     * @return 分片名称到查询结果的映射，按分片名称排序
+     */
+    public <T> Map<String, T> onEachShard(Function<String, T> query) {
+        return onShards(shardMap.getShards(), query);
+    }
+
+    /**
+     * 在所有分片上执行列表查询，并按分片顺序拼接结果
+     */
+    public <T> List<T> gather(Function<String, List<T>> query) {
+        List<T> result = new ArrayList<>();
+        for (List<T> rows : onEachShard(query).values()) {
+            result.addAll(rows);
+        }
+        return result;
+    }
+
+    /**
+     * 在指定分片上执行查询；只有一个分片时直接在调用线程上执行
+     */
+    public <T> Map<String, T> onShards(Collection<String> shards, Function<String, T> query) {
+        Map<String, T> results = new LinkedHashMap<>();
+        if (shards.size() == 1) {
+            String shard = shards.iterator().next();
+            results.put(shard, runOnShard(shard, query));
+            return results;
+        }
+
+        String pool = BulkheadRoutingDataSource.currentPool();
+        Integer timeout = StatementTimeoutDataSource.currentTimeout();
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String shard : shards) {
+            futures.put(shard, executor.submit(() -> {
+                String previousPool = pool != null ? BulkheadRoutingDataSource.bind(pool) : null;
+                Integer previousTimeout = timeout != null ? StatementTimeoutDataSource.bind(timeout) : null;
+                try {
+                    return runOnShard(shard, query);
+                } finally {
+                    if (timeout != null) {
+                        StatementTimeoutDataSource.restore(previousTimeout);
+                    }
+                    if (pool != null) {
+                        BulkheadRoutingDataSource.restore(previousPool);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+                results.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            futures.values().forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard queries", e);
+        } catch (ExecutionException e) {
+            futures.values().forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            logger.error("跨分片查询失败", cause);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Shard query failed", cause);
+        }
+        return results;
+    }
+
+    /**
+     * 在调用线程上逐个分片执行写操作，每个分片一个独立的读写事务；某个分片失败时已提交的分片不回滚
+     *
+     * @return 分片名称到执行结果的映射，按分片名称排序
+     */
+    public <T> Map<String, T> updateEachShard(Function<String, T> update) {
+        Map<String, T> results = new LinkedHashMap<>();
+        for (String shard : shardMap.getShards()) {
+            String previous = ShardRoutingDataSource.bindForNewTransaction(shard);
+            try {
+                results.put(shard, updateTemplate.execute(status -> update.apply(shard)));
+            } finally {
+                ShardRoutingDataSource.restore(previous);
+            }
+        }
+        return results;
+    }
+
+    public ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    private <T> T runOnShard(String shard, Function<String, T> query) {
+        // 在新事务开始前绑定分片；新事务挂起调用方事务，调用方事务所在的分片不影响本次查询
+        String previous = ShardRoutingDataSource.bindForNewTransaction(shard);
+        try {
+            return transactionTemplate.execute(status -> query.apply(shard));
+        } finally {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.gitlab.metrics.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 将整个方法调用绑定到项目所在的分片
+ * 用于在一个事务中访问同一项目的多张分片表、或使用不带 projectId 参数的查询（如按 commitSha 查重）的服务方法；
+ * 仓库方法本身按 projectId 参数或实体自动路由，无需此注解
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardedByProject {
+
+    /**
+     * 计算项目ID的 SpEL 表达式，参数按名称引用，例如 "#pushEvent.projectId"
+     */
+    String value();
+}
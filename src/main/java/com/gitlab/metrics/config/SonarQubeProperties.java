@@ -21,6 +21,7 @@ public class SonarQubeProperties {
         private boolean enabled = true;
         private boolean triggerOnCommit = true;
         private long qualityGateTimeout = 300000L; // 5 minutes
+        private long debounceWindowMs = 30000L; // 同一 SonarQube 项目的触发在窗口内合并，0 表示不合并
         
         public boolean isEnabled() {
             return enabled;
@@ -45,6 +46,14 @@ public class SonarQubeProperties {
         public void setQualityGateTimeout(long qualityGateTimeout) {
             this.qualityGateTimeout = qualityGateTimeout;
         }
+        
+        public long getDebounceWindowMs() {
+            return debounceWindowMs;
+        }
+        
+        public void setDebounceWindowMs(long debounceWindowMs) {
+            this.debounceWindowMs = debounceWindowMs;
+        }
     }
     
     public static class Projects {
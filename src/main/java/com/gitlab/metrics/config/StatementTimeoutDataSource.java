@@ -0,0 +1,107 @@
+package com.gitlab.metrics.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 按线程绑定JDBC语句超时的数据源
+ * 查询准入控制为每个请求绑定所属类别的超时秒数，该连接上创建的语句都会设置 queryTimeout；
+ * 未绑定时直接返回原始连接
+ */
+public class StatementTimeoutDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<Integer> CURRENT_TIMEOUT = new ThreadLocal<>();
+
+    public StatementTimeoutDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * 绑定当前线程的语句超时秒数
+     *
+     * @return 之前绑定的超时，用于 restore
+     */
+    public static Integer bind(int timeoutSeconds) {
+        Integer previous = CURRENT_TIMEOUT.get();
+        CURRENT_TIMEOUT.set(timeoutSeconds);
+        return previous;
+    }
+
+    /**
+     * 恢复之前的绑定
+     */
+    public static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT_TIMEOUT.remove();
+        } else {
+            CURRENT_TIMEOUT.set(previous);
+        }
+    }
+
+    public static Integer currentTimeout() {
+        return CURRENT_TIMEOUT.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return withTimeout(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return withTimeout(super.getConnection(username, password));
+    }
+
+    private Connection withTimeout(Connection connection) {
+        Integer timeout = CURRENT_TIMEOUT.get();
+        if (timeout == null || timeout <= 0) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new TimeoutConnectionHandler(connection, timeout));
+    }
+
+    /**
+     * 为 createStatement / prepareStatement / prepareCall 返回的语句设置超时；
+     * 调用方已设置更短的超时时保留调用方的值
+     */
+    private static class TimeoutConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final int timeoutSeconds;
+
+        TimeoutConnectionHandler(Connection target, int timeoutSeconds) {
+            this.target = target;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("unwrap".equals(method.getName()) && ((Class<?>) args[0]).isInstance(target)) {
+                return target;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                int current = statement.getQueryTimeout();
+                if (current == 0 || current > timeoutSeconds) {
+                    statement.setQueryTimeout(timeoutSeconds);
+                }
+            }
+            return result;
+        }
+    }
+}
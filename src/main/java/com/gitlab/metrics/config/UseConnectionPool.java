@@ -0,0 +1,25 @@
+package com.gitlab.metrics.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定类或方法使用的连接池隔离舱
+ * 显式注解总是生效，标注的类或方法同时也是 ConnectionPoolAspect 拦截的入口；
+ * 其余入口（控制器、消息监听、定时和异步方法）按 app.datasource.bulkheads.bindings 的包前缀绑定，
+ * &#64;Scheduled 方法默认使用 batch 池，其余使用 ingest 池。
+ * 已在事务中的调用沿用外层事务的连接。
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface UseConnectionPool {
+
+    /**
+     * 连接池名称，见 BulkheadRoutingDataSource 中的常量
+     */
+    String value();
+}
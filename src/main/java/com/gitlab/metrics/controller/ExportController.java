@@ -0,0 +1,74 @@
+package com.gitlab.metrics.controller;
+
+import com.gitlab.metrics.service.export.DataExportService;
+import com.gitlab.metrics.service.export.ExportCursor;
+import com.gitlab.metrics.service.export.ExportFormat;
+import com.gitlab.metrics.service.export.ExportType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * 数据导出API控制器
+ * 以 NDJSON 或 CSV 流式导出提交、Issue 和文件变更，支持续传令牌
+ */
+@RestController
+@RequestMapping("/api/v1/exports")
+@CrossOrigin(origins = "*")
+public class ExportController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+    
+    @Autowired
+    private DataExportService dataExportService;
+    
+    /**
+     * 流式导出数据集
+     * 每行带有 cursor 字段，连接中断后把最后一个完整行的 cursor 作为 resumeToken 重新请求即可续传
+     * 
+     * @param type 数据集：commits、issues、file-changes
+     * @param format 输出格式：ndjson 或 csv
+     * @param projectId 项目ID（可选）
+     * @param startDate 开始时间（可选）
+     * @param endDate 结束时间（可选）
+     * @param resumeToken 续传令牌（可选）
+     */
+    @GetMapping("/{type}")
+    public void export(
+            @PathVariable String type,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String projectId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String resumeToken,
+            HttpServletResponse response) throws IOException {
+        
+        // 先校验参数，写出任何数据之前失败时仍可返回标准错误响应
+        ExportType exportType = ExportType.fromPath(type);
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        if (resumeToken != null) {
+            ExportCursor.fromToken(resumeToken);
+        }
+        dataExportService.requireLive(exportType, startDate, endDate);
+        
+        logger.info("开始导出: type={}, format={}, projectId={}, resume={}", 
+                   type, format, projectId, resumeToken != null);
+        
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"" + exportType.getPath() + "." + exportFormat.getExtension() + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        
+        dataExportService.export(exportType, exportFormat, projectId, startDate, endDate, resumeToken,
+            response.getOutputStream());
+    }
+}
@@ -6,17 +6,30 @@ import com.gitlab.metrics.dto.QualityMetricsResponse;
 import com.gitlab.metrics.dto.TestCoverageResponse;
 import com.gitlab.metrics.entity.QualityMetrics;
 import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.exception.ArchivedRangeException;
 import com.gitlab.metrics.repository.QualityMetricsRepository;
 import com.gitlab.metrics.repository.TestCoverageRepository;
 import com.gitlab.metrics.service.CommitStatisticsService;
 import com.gitlab.metrics.service.DashboardService;
+import com.gitlab.metrics.service.OptimizedQueryService;
+import com.gitlab.metrics.service.ProjectComparisonService;
+import com.gitlab.metrics.service.QualityMetricsService;
 import com.gitlab.metrics.service.TestCoverageService;
+import com.gitlab.metrics.service.approx.ApproximateQueryService;
+import com.gitlab.metrics.service.approx.SampleTable;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
+import com.gitlab.metrics.service.realtime.RealtimePushPublisher;
+import com.gitlab.metrics.service.realtime.SseRealtimeSubscriber;
+import com.gitlab.metrics.util.TrendDownsampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -34,6 +47,9 @@ public class MetricsController {
     
     private static final Logger logger = LoggerFactory.getLogger(MetricsController.class);
     
+    private static final String ACCURACY_EXACT = "exact";
+    private static final String ACCURACY_APPROX = "approx";
+    
     @Autowired
     private CommitStatisticsService commitStatisticsService;
     
@@ -49,6 +65,30 @@ public class MetricsController {
     @Autowired
     private DashboardService dashboardService;
     
+    @Autowired
+    private ProjectComparisonService projectComparisonService;
+    
+    @Autowired
+    private RealtimeCounterService realtimeCounterService;
+    
+    @Autowired
+    private RealtimePushPublisher realtimePushPublisher;
+    
+    @Autowired
+    private OptimizedQueryService optimizedQueryService;
+    
+    @Autowired
+    private QualityMetricsService qualityMetricsService;
+    
+    @Autowired
+    private ApproximateQueryService approximateQueryService;
+    
+    @Value("${app.realtime.push.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    
+    @Value("${app.trends.max-points:120}")
+    private int defaultTrendMaxPoints = 120;
+    
     /**
      * 获取代码提交统计数据
      * 
@@ -239,6 +279,7 @@ public class MetricsController {
      * @param timeRange 时间范围 (7d, 30d, 90d, 180d, 1y)
      * @param startDate 自定义开始日期（可选）
      * @param endDate 自定义结束日期（可选）
+     * @param maxPoints 趋势数据最大点数（可选，默认使用配置值）
      * @return 效率看板数据
      */
     @GetMapping("/dashboard")
@@ -246,7 +287,8 @@ public class MetricsController {
             @RequestParam String projectId,
             @RequestParam(defaultValue = "30d") String timeRange,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) Integer maxPoints) {
         
         logger.info("获取效率看板数据: projectId={}, timeRange={}", projectId, timeRange);
         
@@ -256,18 +298,111 @@ public class MetricsController {
             LocalDateTime calculatedStartDate = dateRange[0];
             LocalDateTime calculatedEndDate = dateRange[1];
             
-            DashboardResponse response = dashboardService.getDashboardData(
-                projectId, calculatedStartDate, calculatedEndDate, timeRange);
+            DashboardResponse response = maxPoints != null
+                ? dashboardService.getDashboardData(projectId, calculatedStartDate, calculatedEndDate, timeRange,
+                    TrendDownsampler.clampMaxPoints(maxPoints))
+                : dashboardService.getDashboardData(projectId, calculatedStartDate, calculatedEndDate, timeRange);
             
             logger.info("效率看板数据获取完成");
             return ResponseEntity.ok(response);
             
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
         } catch (Exception e) {
             logger.error("获取效率看板数据失败: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * 获取质量趋势数据
+     * 
+     * @param projectId 项目ID
+     * @param timeRange 时间范围 (7d, 30d, 90d, 180d, 1y)
+     * @param startDate 自定义开始日期（可选）
+     * @param endDate 自定义结束日期（可选）
+     * @param groupBy 分组粒度 day/week/month/auto，默认按时间范围自动选择
+     * @param maxPoints 最大点数（可选，默认使用配置值）
+     * @return 按时间分组并降采样后的质量趋势
+     */
+    @GetMapping("/quality/trends")
+    public ResponseEntity<Object> getQualityTrends(
+            @RequestParam String projectId,
+            @RequestParam(defaultValue = "30d") String timeRange,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "auto") String groupBy,
+            @RequestParam(required = false) Integer maxPoints) {
+        
+        logger.info("获取质量趋势: projectId={}, timeRange={}, groupBy={}", projectId, timeRange, groupBy);
+        
+        try {
+            LocalDateTime[] dateRange = calculateDateRange(timeRange, startDate, endDate);
+            int points = TrendDownsampler.clampMaxPoints(maxPoints != null ? maxPoints : defaultTrendMaxPoints);
+            
+            java.util.Map<String, Object> trends = new java.util.HashMap<>();
+            trends.put("projectId", projectId);
+            trends.put("startDate", dateRange[0]);
+            trends.put("endDate", dateRange[1]);
+            trends.put("granularity", TrendDownsampler.Granularity.resolve(groupBy, dateRange[0], dateRange[1]));
+            trends.put("points", optimizedQueryService.getOptimizedQualityTrends(
+                projectId, dateRange[0], dateRange[1], groupBy, points));
+            return ResponseEntity.ok(trends);
+            
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
+        } catch (Exception e) {
+            logger.error("获取质量趋势失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 获取测试覆盖率趋势数据
+     * 
+     * @param projectId 项目ID
+     * @param timeRange 时间范围 (7d, 30d, 90d, 180d, 1y)
+     * @param startDate 自定义开始日期（可选）
+     * @param endDate 自定义结束日期（可选）
+     * @param groupBy 分组粒度 day/week/month/auto，默认按时间范围自动选择
+     * @param maxPoints 最大点数（可选，默认使用配置值）
+     * @return 按时间分组并降采样后的覆盖率趋势
+     */
+    @GetMapping("/coverage/trends")
+    public ResponseEntity<Object> getCoverageTrends(
+            @RequestParam String projectId,
+            @RequestParam(defaultValue = "30d") String timeRange,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "auto") String groupBy,
+            @RequestParam(required = false) Integer maxPoints) {
+        
+        logger.info("获取覆盖率趋势: projectId={}, timeRange={}, groupBy={}", projectId, timeRange, groupBy);
+        
+        try {
+            LocalDateTime[] dateRange = calculateDateRange(timeRange, startDate, endDate);
+            int points = TrendDownsampler.clampMaxPoints(maxPoints != null ? maxPoints : defaultTrendMaxPoints);
+            
+            java.util.Map<String, Object> trends = new java.util.HashMap<>();
+            trends.put("projectId", projectId);
+            trends.put("startDate", dateRange[0]);
+            trends.put("endDate", dateRange[1]);
+            trends.put("granularity", TrendDownsampler.Granularity.resolve(groupBy, dateRange[0], dateRange[1]));
+            trends.put("points", optimizedQueryService.getOptimizedCoverageTrends(
+                projectId, dateRange[0], dateRange[1], groupBy, points));
+            return ResponseEntity.ok(trends);
+            
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
+        } catch (Exception e) {
+            logger.error("获取覆盖率趋势失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * 获取项目概览数据
      * 
@@ -491,48 +626,19 @@ public class MetricsController {
             comparison.put("startDate", startDate);
             comparison.put("endDate", endDate);
             
-            java.util.List<java.util.Map<String, Object>> projectComparisons = new java.util.ArrayList<>();
-            
-            for (String projectId : projectIdArray) {
-                projectId = projectId.trim();
-                java.util.Map<String, Object> projectData = new java.util.HashMap<>();
-                projectData.put("projectId", projectId);
-                
-                // 获取基础统计
-                CommitStatisticsService.ProjectTotalStats commitStats = 
-                    commitStatisticsService.getProjectTotalStats(projectId, startDate, endDate);
-                projectData.put("commits", commitStats.getTotalCommits());
-                projectData.put("linesAdded", commitStats.getTotalLinesAdded());
-                projectData.put("linesDeleted", commitStats.getTotalLinesDeleted());
-                
-                // 获取开发者数量
-                List<CommitStatisticsService.DeveloperCommitStats> developerStats = 
-                    commitStatisticsService.getDeveloperCommitStats(startDate, endDate, projectId, null);
-                projectData.put("developers", developerStats.size());
-                
-                // 获取最新质量指标
-                List<QualityMetrics> latestQuality = qualityMetricsRepository.findLatestByProject(projectId);
-                if (!latestQuality.isEmpty()) {
-                    QualityMetrics quality = latestQuality.get(0);
-                    projectData.put("qualityGate", quality.getQualityGate());
-                    projectData.put("bugs", quality.getBugs());
-                    projectData.put("vulnerabilities", quality.getVulnerabilities());
-                }
-                
-                // 获取最新覆盖率
-                java.util.Optional<TestCoverage> latestCoverage = testCoverageService.getLatestCoverage(projectId);
-                if (latestCoverage.isPresent()) {
-                    projectData.put("testCoverage", latestCoverage.get().getLineCoverage());
-                }
-                
-                projectComparisons.add(projectData);
-            }
+            ProjectComparisonService.ComparisonResult result = projectComparisonService
+                .compareProjects(java.util.Arrays.asList(projectIdArray), startDate, endDate);
             
-            comparison.put("projects", projectComparisons);
+            comparison.put("projects", result.getProjects());
+            comparison.put("queryTimings", result.getQueryTimings());
+            comparison.put("totalTimeMs", result.getTotalTimeMs());
             
-            logger.info("多项目对比数据获取完成");
+            logger.info("多项目对比数据获取完成: 项目数={}, 耗时={}ms", result.getProjects().size(), result.getTotalTimeMs());
             return ResponseEntity.ok(comparison);
             
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
         } catch (Exception e) {
             logger.error("获取多项目对比数据失败: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -544,14 +650,16 @@ public class MetricsController {
      * 
      * @param timeRange 时间范围
      * @param limit 返回数量限制
+     * @param accuracy exact（默认）或 approx（基于抽样影子表的近似结果，附带误差范围）
      * @return 团队效率排行榜
      */
     @GetMapping("/leaderboard")
     public ResponseEntity<Object> getLeaderboard(
             @RequestParam(defaultValue = "30d") String timeRange,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = ACCURACY_EXACT) String accuracy) {
         
-        logger.info("获取团队效率排行榜: timeRange={}, limit={}", timeRange, limit);
+        logger.info("获取团队效率排行榜: timeRange={}, limit={}, accuracy={}", timeRange, limit, accuracy);
         
         try {
             LocalDateTime[] dateRange = calculateDateRange(timeRange, null, null);
@@ -563,6 +671,21 @@ public class MetricsController {
             leaderboard.put("startDate", startDate);
             leaderboard.put("endDate", endDate);
             
+            if (useApproximation(accuracy, SampleTable.COMMITS)) {
+                putApproximation(leaderboard);
+                List<ApproximateQueryService.DeveloperEstimate> estimates =
+                    approximateQueryService.getDeveloperStats(startDate, endDate);
+                leaderboard.put("commitLeaders", approximateLeaders(estimates,
+                    e -> e.getCommitCount().getValue(), limit));
+                leaderboard.put("codeLeaders", approximateLeaders(estimates,
+                    e -> e.getLinesAdded().getValue() + e.getLinesDeleted().getValue(), limit));
+                leaderboard.put("fileLeaders", approximateLeaders(estimates,
+                    e -> e.getFilesChanged().getValue(), limit));
+                logger.info("团队效率排行榜（近似）获取完成: 样本开发者数={}", estimates.size());
+                return ResponseEntity.ok(leaderboard);
+            }
+            leaderboard.put("accuracy", ACCURACY_EXACT);
+            
             // 获取所有开发者统计
             List<CommitStatisticsService.DeveloperCommitStats> allDeveloperStats = 
                 commitStatisticsService.getDeveloperCommitStats(startDate, endDate, null, null);
@@ -596,56 +719,119 @@ public class MetricsController {
             logger.info("团队效率排行榜获取完成");
             return ResponseEntity.ok(leaderboard);
             
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
         } catch (Exception e) {
             logger.error("获取团队效率排行榜失败: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * 获取项目活跃度排行
+     * 
+     * @param timeRange 时间范围
+     * @param limit 返回数量限制
+     * @param accuracy exact（默认）或 approx
+     * @return 项目活跃度排行
+     */
+    @GetMapping("/project-activity")
+    public ResponseEntity<Object> getProjectActivity(
+            @RequestParam(defaultValue = "30d") String timeRange,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = ACCURACY_EXACT) String accuracy) {
+        
+        logger.info("获取项目活跃度排行: timeRange={}, limit={}, accuracy={}", timeRange, limit, accuracy);
+        
+        try {
+            LocalDateTime[] dateRange = calculateDateRange(timeRange, null, null);
+            
+            java.util.Map<String, Object> activity = new java.util.HashMap<>();
+            activity.put("timeRange", timeRange);
+            activity.put("startDate", dateRange[0]);
+            activity.put("endDate", dateRange[1]);
+            
+            if (useApproximation(accuracy, SampleTable.COMMITS)) {
+                putApproximation(activity);
+                activity.put("projects", approximateQueryService.getProjectActivity(dateRange[0], dateRange[1], limit));
+            } else {
+                activity.put("accuracy", ACCURACY_EXACT);
+                activity.put("projects", optimizedQueryService.getOptimizedProjectActivity(dateRange[0], dateRange[1], limit));
+            }
+            return ResponseEntity.ok(activity);
+            
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
+        } catch (Exception e) {
+            logger.error("获取项目活跃度排行失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 获取所有项目的质量概览
+     * 
+     * @param timeRange 时间范围
+     * @param accuracy exact（默认）或 approx
+     * @return 按可维护性指数排序的项目质量概览
+     */
+    @GetMapping("/quality/overview")
+    public ResponseEntity<Object> getAllProjectsQualityOverview(
+            @RequestParam(defaultValue = "30d") String timeRange,
+            @RequestParam(defaultValue = ACCURACY_EXACT) String accuracy) {
+        
+        logger.info("获取全项目质量概览: timeRange={}, accuracy={}", timeRange, accuracy);
+        
+        try {
+            LocalDateTime[] dateRange = calculateDateRange(timeRange, null, null);
+            
+            java.util.Map<String, Object> overview = new java.util.HashMap<>();
+            overview.put("timeRange", timeRange);
+            overview.put("startDate", dateRange[0]);
+            overview.put("endDate", dateRange[1]);
+            
+            if (useApproximation(accuracy, SampleTable.QUALITY_METRICS)) {
+                putApproximation(overview);
+                overview.put("projects", approximateQueryService.getAllProjectsQualityOverview(dateRange[0], dateRange[1]));
+            } else {
+                overview.put("accuracy", ACCURACY_EXACT);
+                overview.put("projects", qualityMetricsService.getAllProjectsQualityOverview(dateRange[0], dateRange[1]));
+            }
+            return ResponseEntity.ok(overview);
+            
+        } catch (ArchivedRangeException e) {
+            // 交给全局异常处理返回 400，说明已归档的边界
+            throw e;
+        } catch (Exception e) {
+            logger.error("获取全项目质量概览失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * 获取实时统计数据
+     * 数据来自事件驱动的实时计数器，不访问数据库
      * 
      * @return 实时统计数据
      */
     @GetMapping("/realtime")
     public ResponseEntity<Object> getRealtimeStats() {
-        logger.info("获取实时统计数据");
+        logger.debug("获取实时统计数据");
         
         try {
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime todayStart = now.toLocalDate().atStartOfDay();
+            RealtimeCounterService.RealtimeSnapshot snapshot = realtimeCounterService.snapshot();
             
             java.util.Map<String, Object> realtimeStats = new java.util.HashMap<>();
-            realtimeStats.put("timestamp", now);
-            realtimeStats.put("date", todayStart.toLocalDate());
-            
-            // 今日提交统计
-            List<CommitStatisticsService.ProjectCommitStats> todayCommits = 
-                commitStatisticsService.getProjectCommitStats(todayStart, now);
-            int totalTodayCommits = todayCommits.stream()
-                .mapToInt(CommitStatisticsService.ProjectCommitStats::getCommitCount)
-                .sum();
-            realtimeStats.put("todayCommits", totalTodayCommits);
-            
-            // 活跃项目数
-            realtimeStats.put("activeProjects", todayCommits.size());
-            
-            // 今日活跃开发者
-            List<CommitStatisticsService.DeveloperCommitStats> todayDevelopers = 
-                commitStatisticsService.getDeveloperCommitStats(todayStart, now, null, null);
-            realtimeStats.put("activeDevelopers", todayDevelopers.size());
-            
-            // 最近的质量门禁失败
-            List<QualityMetrics> recentFailures = qualityMetricsRepository
-                .findFailedQualityGates(todayStart, now);
-            realtimeStats.put("qualityGateFailures", recentFailures.size());
-            
-            // 最近的覆盖率失败
-            List<TestCoverage> coverageFailures = testCoverageRepository
-                .findFailedCoverageRecords(todayStart, now);
-            realtimeStats.put("coverageFailures", coverageFailures.size());
-            
-            logger.info("实时统计数据获取完成");
+            realtimeStats.put("timestamp", snapshot.getTimestamp());
+            realtimeStats.put("date", snapshot.getDate());
+            realtimeStats.put("todayCommits", snapshot.getTodayCommits());
+            realtimeStats.put("activeProjects", snapshot.getActiveProjects());
+            realtimeStats.put("activeDevelopers", snapshot.getActiveDevelopers());
+            realtimeStats.put("qualityGateFailures", snapshot.getQualityGateFailures());
+            realtimeStats.put("coverageFailures", snapshot.getCoverageFailures());
+            
             return ResponseEntity.ok(realtimeStats);
             
         } catch (Exception e) {
@@ -654,8 +840,80 @@ public class MetricsController {
         }
     }
     
+    /**
+     * 订阅项目的实时统计推送 (SSE)
+     * 连接建立后先下发一次完整快照(snapshot)，之后仅在项目计数变化时下发变化字段(delta)
+     * 
+     * @param projectId 项目ID
+     * @return SSE事件流
+     */
+    @GetMapping(value = "/realtime/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRealtimeStats(@RequestParam String projectId) {
+        logger.debug("订阅实时统计推送: projectId={}", projectId);
+        
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        SseRealtimeSubscriber subscriber = new SseRealtimeSubscriber(emitter);
+        emitter.onCompletion(() -> realtimePushPublisher.unsubscribe(projectId, subscriber));
+        emitter.onTimeout(() -> realtimePushPublisher.unsubscribe(projectId, subscriber));
+        emitter.onError(e -> realtimePushPublisher.unsubscribe(projectId, subscriber));
+        
+        realtimePushPublisher.subscribe(projectId, subscriber);
+        return emitter;
+    }
+    
     // 辅助方法
     
+    /**
+     * 请求近似结果且影子表可用时使用近似查询，否则回退到精确查询
+     */
+    private boolean useApproximation(String accuracy, SampleTable table) {
+        if (!ACCURACY_APPROX.equalsIgnoreCase(accuracy)) {
+            return false;
+        }
+        if (!approximateQueryService.isAvailable(table)) {
+            logger.debug("抽样影子表不可用，回退到精确查询: table={}", table.getSampleTable());
+            return false;
+        }
+        return true;
+    }
+    
+    private void putApproximation(java.util.Map<String, Object> response) {
+        response.put("accuracy", ACCURACY_APPROX);
+        response.put("sampleRate", approximateQueryService.getSampleRate());
+        response.put("confidenceLevel", 0.95);
+    }
+    
+    private List<java.util.Map<String, Object>> approximateLeaders(
+            List<ApproximateQueryService.DeveloperEstimate> estimates,
+            java.util.function.ToDoubleFunction<ApproximateQueryService.DeveloperEstimate> rankBy, int limit) {
+        return estimates.stream()
+            .sorted(java.util.Comparator.comparingDouble(rankBy).reversed())
+            .limit(limit)
+            .map(this::convertToApproximateLeaderboardEntry)
+            .collect(java.util.stream.Collectors.toList());
+    }
+    
+    private java.util.Map<String, Object> convertToApproximateLeaderboardEntry(
+            ApproximateQueryService.DeveloperEstimate estimate) {
+        java.util.Map<String, Object> entry = new java.util.HashMap<>();
+        entry.put("developerId", estimate.getDeveloperId());
+        entry.put("developerName", estimate.getDeveloperName());
+        entry.put("commits", estimate.getCommitCount().rounded());
+        entry.put("linesAdded", estimate.getLinesAdded().rounded());
+        entry.put("linesDeleted", estimate.getLinesDeleted().rounded());
+        entry.put("filesChanged", estimate.getFilesChanged().rounded());
+        entry.put("totalLines", estimate.getLinesAdded().rounded() + estimate.getLinesDeleted().rounded());
+        
+        java.util.Map<String, Object> errorBounds = new java.util.HashMap<>();
+        errorBounds.put("commits", estimate.getCommitCount().getErrorBound());
+        errorBounds.put("linesAdded", estimate.getLinesAdded().getErrorBound());
+        errorBounds.put("linesDeleted", estimate.getLinesDeleted().getErrorBound());
+        errorBounds.put("filesChanged", estimate.getFilesChanged().getErrorBound());
+        entry.put("errorBounds", errorBounds);
+        entry.put("sampledCommits", estimate.getSampledCommits());
+        return entry;
+    }
+    
     private java.util.Map<String, Object> convertToLeaderboardEntry(CommitStatisticsService.DeveloperCommitStats stats) {
         java.util.Map<String, Object> entry = new java.util.HashMap<>();
         entry.put("developerId", stats.getDeveloperId());
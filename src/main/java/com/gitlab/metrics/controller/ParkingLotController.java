@@ -0,0 +1,92 @@
+package com.gitlab.metrics.controller;
+
+import com.gitlab.metrics.service.ParkingLotService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parking lot 管理控制器
+ * 查看、重放和删除多次处理失败后停放的队列消息
+ */
+@RestController
+@RequestMapping("/api/admin/parking-lot")
+@PreAuthorize("hasRole('ADMIN')")
+public class ParkingLotController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParkingLotController.class);
+
+    private static final int MAX_LIMIT = 1000;
+
+    @Autowired
+    private ParkingLotService parkingLotService;
+
+    /**
+     * 查看停放的消息
+     *
+     * @param queue 原队列，为空时查看全部
+     * @param limit 最多返回条数
+     * @return 停放消息及失败信息
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> inspect(
+            @RequestParam(required = false) String queue,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        List<ParkingLotService.ParkedMessage> messages = parkingLotService.inspect(queue, clamp(limit));
+        Map<String, Object> response = new HashMap<>();
+        response.put("total", parkingLotService.count());
+        response.put("returned", messages.size());
+        response.put("messages", messages);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 重放停放的消息到原队列
+     *
+     * @param queue 原队列，为空时重放全部
+     * @param limit 最多重放条数
+     * @return 重放条数
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Object>> replay(
+            @RequestParam(required = false) String queue,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        logger.info("重放parking lot消息: queue={}, limit={}", queue, limit);
+        Map<String, Object> response = new HashMap<>();
+        response.put("replayed", parkingLotService.replay(queue, clamp(limit)));
+        response.put("remaining", parkingLotService.count());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 删除停放的消息
+     *
+     * @param queue 原队列，为空时删除全部
+     * @param limit 最多删除条数
+     * @return 删除条数
+     */
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> purge(
+            @RequestParam(required = false) String queue,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        logger.warn("删除parking lot消息: queue={}, limit={}", queue, limit);
+        Map<String, Object> response = new HashMap<>();
+        response.put("purged", parkingLotService.purge(queue, clamp(limit)));
+        response.put("remaining", parkingLotService.count());
+        return ResponseEntity.ok(response);
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(MAX_LIMIT, limit));
+    }
+}
@@ -2,6 +2,7 @@ package com.gitlab.metrics.controller;
 
 import com.gitlab.metrics.service.LoadTestingService;
 import com.gitlab.metrics.service.PerformanceMonitoringService;
+import com.gitlab.metrics.service.QueryIndexAdvisor;
 import com.gitlab.metrics.service.SystemDebuggingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -172,6 +173,21 @@ public class PerformanceTestController {
         return ResponseEntity.ok(tableSizes);
     }
     
+    /**
+     * 获取查询执行计划分析
+     * 
+     * @param refresh 是否重新执行 EXPLAIN
+     * @return 每个 @Query 方法的执行计划分析
+     */
+    @GetMapping("/database/index-advice")
+    public ResponseEntity<List<QueryIndexAdvisor.QueryAdvice>> getIndexAdvice(
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        
+        logger.debug("获取查询执行计划分析, refresh={}", refresh);
+        
+        return ResponseEntity.ok(performanceMonitoringService.getIndexAdvice(refresh));
+    }
+    
     /**
      * 获取优化建议
      * 
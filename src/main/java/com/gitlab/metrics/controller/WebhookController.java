@@ -4,6 +4,7 @@ import com.gitlab.metrics.dto.webhook.WebhookRequest;
 import com.gitlab.metrics.dto.webhook.WebhookResponse;
 import com.gitlab.metrics.exception.WebhookProcessingException;
 import com.gitlab.metrics.exception.WebhookValidationException;
+import com.gitlab.metrics.messaging.EventTransport;
 import com.gitlab.metrics.security.WebhookSecurityValidator;
 import com.gitlab.metrics.service.webhook.WebhookEventDispatcher;
 import org.slf4j.Logger;
@@ -34,6 +35,14 @@ public class WebhookController {
     @Autowired
     private WebhookEventDispatcher eventDispatcher;
     
+    @Autowired
+    private EventTransport eventTransport;
+    
+    /**
+     * Seconds GitLab is asked to wait before retrying while the event transport is saturated
+     */
+    private static final int SATURATED_RETRY_AFTER_SECONDS = 5;
+    
     /**
      * Main endpoint for GitLab webhook events
      */
@@ -45,6 +54,8 @@ public class WebhookController {
             @RequestBody String payload,
             HttpServletRequest request) {
         
+        long receivedAt = System.currentTimeMillis();
+        
         // Generate request ID for tracking
         String requestId = StringUtils.hasText(eventUuid) ? eventUuid : UUID.randomUUID().toString();
         
@@ -73,8 +84,16 @@ public class WebhookController {
             // Log successful validation
             logger.info("Webhook validation successful for event: {}", eventType);
             
+            // Backpressure: refuse new events while the transport queues are near capacity, GitLab retries later
+            if (eventTransport.isSaturated()) {
+                logger.warn("Event transport saturated, rejecting webhook: eventType={}, requestId={}", eventType, requestId);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(SATURATED_RETRY_AFTER_SECONDS))
+                    .body(WebhookResponse.error("Event queue is full, retry later"));
+            }
+            
             // Process the webhook (this will be implemented in task 3.2)
-            processWebhookEvent(eventType, payload, requestId);
+            processWebhookEvent(eventType, payload, requestId, receivedAt);
             
             // Return success response
             WebhookResponse response = WebhookResponse.success("Event processed successfully");
@@ -127,7 +146,7 @@ public class WebhookController {
     /**
      * Processes the webhook event using the event dispatcher
      */
-    private void processWebhookEvent(String eventType, String payload, String requestId) {
+    private void processWebhookEvent(String eventType, String payload, String requestId, long receivedAt) {
         logger.info("Processing webhook event: eventType={}, requestId={}", eventType, requestId);
         
         // Basic payload validation
@@ -137,7 +156,7 @@ public class WebhookController {
         
         try {
             // Dispatch event to appropriate parser and processor
-            eventDispatcher.dispatchEvent(eventType, payload, requestId);
+            eventDispatcher.dispatchEvent(eventType, payload, requestId, receivedAt);
             
             logger.debug("Webhook event dispatched successfully: eventType={}, requestId={}", eventType, requestId);
             
@@ -13,7 +13,12 @@ import java.util.List;
 @Table(name = "commits", indexes = {
     @Index(name = "idx_commit_project_developer", columnList = "projectId,developerId"),
     @Index(name = "idx_commit_timestamp", columnList = "timestamp"),
-    @Index(name = "idx_commit_sha", columnList = "commitSha")
+    @Index(name = "idx_commit_sha", columnList = "commitSha"),
+    @Index(name = "idx_commit_project_timestamp", columnList = "projectId,timestamp"),
+    @Index(name = "idx_commit_timestamp_developer", columnList = "timestamp,developerId")
+}, uniqueConstraints = {
+    // 按月分区表的唯一键必须包含分区列；同一提交的时间固定，仍可保证SHA不重复
+    @UniqueConstraint(name = "uk_commit_sha_timestamp", columnNames = {"commitSha", "timestamp"})
 })
 public class Commit {
     
@@ -21,7 +26,7 @@ public class Commit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(nullable = false, unique = true, length = 40)
+    @Column(nullable = false, length = 40)
     @NotNull
     private String commitSha;
     
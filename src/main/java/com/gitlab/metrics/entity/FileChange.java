@@ -2,6 +2,7 @@ package com.gitlab.metrics.entity;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
 
 /**
  * 文件变更实体类
@@ -10,7 +11,8 @@ import javax.validation.constraints.NotNull;
 @Entity
 @Table(name = "file_changes", indexes = {
     @Index(name = "idx_file_change_commit", columnList = "commit_id"),
-    @Index(name = "idx_file_change_path", columnList = "filePath")
+    @Index(name = "idx_file_change_path", columnList = "filePath"),
+    @Index(name = "idx_file_change_commit_timestamp", columnList = "commit_timestamp")
 })
 public class FileChange {
     
@@ -19,10 +21,16 @@ public class FileChange {
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "commit_id", nullable = false)
+    @JoinColumn(name = "commit_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @NotNull
     private Commit commit;
     
+    /**
+     * 所属提交的时间，冗余存储用于按月分区和分区裁剪（分区表不支持外键）
+     */
+    @Column(name = "commit_timestamp", nullable = false)
+    private LocalDateTime commitTimestamp;
+    
     @Column(nullable = false, length = 500)
     @NotNull
     private String filePath;
@@ -49,6 +57,13 @@ public class FileChange {
         this.changeType = changeType;
     }
     
+    @PrePersist
+    protected void onCreate() {
+        if (commitTimestamp == null && commit != null) {
+            commitTimestamp = commit.getTimestamp();
+        }
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -66,6 +81,14 @@ public class FileChange {
         this.commit = commit;
     }
     
+    public LocalDateTime getCommitTimestamp() {
+        return commitTimestamp;
+    }
+    
+    public void setCommitTimestamp(LocalDateTime commitTimestamp) {
+        this.commitTimestamp = commitTimestamp;
+    }
+    
     public String getFilePath() {
         return filePath;
     }
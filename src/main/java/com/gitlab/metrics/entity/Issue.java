@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
     @Index(name = "idx_issue_assignee", columnList = "assigneeId"),
     @Index(name = "idx_issue_status", columnList = "status"),
     @Index(name = "idx_issue_created", columnList = "createdAt"),
-    @Index(name = "idx_issue_type", columnList = "issueType")
+    @Index(name = "idx_issue_type", columnList = "issueType"),
+    @Index(name = "idx_issue_project_created", columnList = "projectId,createdAt,status"),
+    @Index(name = "idx_issue_status_created", columnList = "status,createdAt")
 })
 public class Issue {
     
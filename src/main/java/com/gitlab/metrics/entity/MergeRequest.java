@@ -14,7 +14,10 @@ import java.util.List;
     @Index(name = "idx_mr_project", columnList = "projectId"),
     @Index(name = "idx_mr_author", columnList = "authorId"),
     @Index(name = "idx_mr_status", columnList = "status"),
-    @Index(name = "idx_mr_created", columnList = "createdAt")
+    @Index(name = "idx_mr_created", columnList = "createdAt"),
+    @Index(name = "idx_mr_project_created", columnList = "projectId,createdAt,status"),
+    @Index(name = "idx_mr_project_status_created", columnList = "projectId,status,createdAt"),
+    @Index(name = "idx_mr_status_created", columnList = "status,createdAt")
 })
 public class MergeRequest {
     
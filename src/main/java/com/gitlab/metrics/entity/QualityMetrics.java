@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Table(name = "quality_metrics", indexes = {
     @Index(name = "idx_quality_project", columnList = "projectId"),
     @Index(name = "idx_quality_commit", columnList = "commitSha"),
-    @Index(name = "idx_quality_timestamp", columnList = "timestamp")
+    @Index(name = "idx_quality_timestamp", columnList = "timestamp"),
+    @Index(name = "idx_quality_project_timestamp", columnList = "projectId,timestamp")
 })
 public class QualityMetrics {
     
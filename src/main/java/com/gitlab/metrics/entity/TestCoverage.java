@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Table(name = "test_coverage", indexes = {
     @Index(name = "idx_coverage_project", columnList = "projectId"),
     @Index(name = "idx_coverage_commit", columnList = "commitSha"),
-    @Index(name = "idx_coverage_timestamp", columnList = "timestamp")
+    @Index(name = "idx_coverage_timestamp", columnList = "timestamp"),
+    @Index(name = "idx_coverage_project_timestamp", columnList = "projectId,timestamp")
 })
 public class TestCoverage {
     
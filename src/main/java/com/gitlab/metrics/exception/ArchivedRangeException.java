@@ -0,0 +1,28 @@
+package com.gitlab.metrics.exception;
+
+import java.time.LocalDateTime;
+
+/**
+ * 只读取活跃表的查询被请求的时间范围包含已归档数据时抛出的异常
+ */
+public class ArchivedRangeException extends ValidationException {
+
+    private final String table;
+    private final LocalDateTime archivedThrough;
+
+    public ArchivedRangeException(String reader, String table, LocalDateTime archivedThrough) {
+        super(reader + " only reads live data, but " + table + " rows up to " + archivedThrough
+            + " have been archived; start the range after " + archivedThrough
+            + " or use the commit/quality/coverage statistics endpoints, which include archived months");
+        this.table = table;
+        this.archivedThrough = archivedThrough;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public LocalDateTime getArchivedThrough() {
+        return archivedThrough;
+    }
+}
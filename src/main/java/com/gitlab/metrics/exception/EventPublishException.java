@@ -0,0 +1,27 @@
+package com.gitlab.metrics.exception;
+
+/**
+ * 消息未得到消息队列确认时，用于结束发布 Future 的异常
+ */
+public class EventPublishException extends RuntimeException {
+
+    private final String reason;
+    private final int attempts;
+
+    public EventPublishException(String reason, int attempts, String message) {
+        super(message);
+        this.reason = reason;
+        this.attempts = attempts;
+    }
+
+    /**
+     * 失败类别：nack、timeout、returned、rejected、conversion、shutdown 或 spool
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
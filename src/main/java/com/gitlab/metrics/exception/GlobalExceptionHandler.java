@@ -100,6 +100,26 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(errorResponse);
     }
     
+    /**
+     * Handles queries refused by the query governor (429 when the class queue is full, 503 on queue timeout)
+     */
+    @ExceptionHandler(QueryRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleQueryRejected(QueryRejectedException e, HttpServletRequest request) {
+        String errorId = generateErrorId();
+        logWarn(errorId, "Query rejected by governor: " + e.getQueryClass(), e, request);
+
+        ErrorResponse errorResponse = new ErrorResponse(
+            e.getStatus() == HttpStatus.TOO_MANY_REQUESTS ? "QUERY_QUEUE_FULL" : "QUERY_CAPACITY_EXHAUSTED",
+            e.getMessage(),
+            request.getRequestURI(),
+            "Query class: " + e.getQueryClass() + ", Error ID: " + errorId
+        );
+
+        return ResponseEntity.status(e.getStatus())
+            .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+            .body(errorResponse);
+    }
+
     /**
      * Handles external service exceptions
      */
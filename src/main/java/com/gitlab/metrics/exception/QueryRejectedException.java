@@ -0,0 +1,32 @@
+package com.gitlab.metrics.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * 查询准入控制拒绝高开销查询时抛出的异常
+ */
+public class QueryRejectedException extends RuntimeException {
+
+    private final String queryClass;
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public QueryRejectedException(String queryClass, HttpStatus status, long retryAfterSeconds, String message) {
+        super(message);
+        this.queryClass = queryClass;
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getQueryClass() {
+        return queryClass;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -4,12 +4,14 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuator.health.Health;
 import org.springframework.boot.actuator.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
- * Custom health indicator for RabbitMQ connectivity
+ * Custom health indicator for RabbitMQ connectivity; not registered when events run in-process
  */
 @Component
+@ConditionalOnProperty(prefix = "app.messaging", name = "transport", havingValue = "rabbitmq", matchIfMissing = true)
 public class RabbitMQHealthIndicator implements HealthIndicator {
     
     @Autowired
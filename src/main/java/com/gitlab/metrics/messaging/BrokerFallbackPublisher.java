@@ -0,0 +1,320 @@
+package com.gitlab.metrics.messaging;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.BrokerFallbackProperties;
+import com.gitlab.metrics.config.CircuitBreakerConfig;
+import com.gitlab.metrics.exception.EventPublishException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpMessageReturnedException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * broker 故障时降级到本地磁盘队列的发布器
+ * 正常情况下直接交给 ConfirmingEventPublisher；发布以 broker 侧原因（nack、超时、连接失败、缓冲已满）失败时
+ * 计入熔断器并把事件写入 {@link SegmentSpool}，调用方的 future 在写盘后正常完成，事件不再丢失。
+ * 熔断器打开或磁盘队列非空时新事件直接写盘，不会越过已暂存的事件；
+ * 熔断器允许探测后由 {@link #replay()} 按写入顺序逐条同步确认重放，每次重放的条数受速率限制。
+ * 顺序只在磁盘队列内部成立：事件在发布器的重试用尽后才写盘，重试期间其他调用方的事件仍直接发往 broker，
+ * 可能先于这条事件送达，消费端不能依赖跨事件的发布顺序。
+ * 无法路由、无法转换的消息不是 broker 故障，照常以失败结束
+ */
+public class BrokerFallbackPublisher implements EventTransport, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrokerFallbackPublisher.class);
+
+    private static final String DEFAULT_EXCHANGE = "";
+    private static final int RECORD_VERSION = 1;
+    private static final TypeReference<Map<String, Object>> HEADERS_TYPE = new TypeReference<Map<String, Object>>() { };
+
+    private final ConfirmingEventPublisher delegate;
+    private final MessageConverter messageConverter;
+    private final ObjectMapper objectMapper;
+    private final SegmentSpool spool;
+    private final ConfirmedSender replaySender;
+    private final CircuitBreakerConfig.CircuitBreaker circuitBreaker;
+    private final BrokerFallbackProperties properties;
+
+    private final Counter spooledCounter;
+    private final Counter replayedCounter;
+    private final Counter droppedCounter;
+
+    /**
+     * @param spool 降级关闭时为 null，此时只做透传
+     */
+    public BrokerFallbackPublisher(ConfirmingEventPublisher delegate, MessageConverter messageConverter,
+                                   ObjectMapper objectMapper, SegmentSpool spool, ConfirmedSender replaySender,
+                                   CircuitBreakerConfig.CircuitBreaker circuitBreaker,
+                                   BrokerFallbackProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.messageConverter = messageConverter;
+        this.objectMapper = objectMapper;
+        this.spool = spool;
+        this.replaySender = replaySender;
+        this.circuitBreaker = circuitBreaker;
+        this.properties = properties;
+
+        spooledCounter = Counter.builder("messaging.fallback.spooled")
+            .description("Events written to the local spool instead of the broker")
+            .register(meterRegistry);
+        replayedCounter = Counter.builder("messaging.fallback.replayed")
+            .description("Spooled events replayed to the broker and confirmed")
+            .register(meterRegistry);
+        droppedCounter = Counter.builder("messaging.fallback.dropped")
+            .description("Spooled events dropped on replay because they are unroutable or unreadable")
+            .register(meterRegistry);
+        if (spool != null) {
+            Gauge.builder("messaging.fallback.depth", spool, SegmentSpool::size)
+                .description("Events waiting in the local spool")
+                .register(meterRegistry);
+            Gauge.builder("messaging.fallback.disk", spool, SegmentSpool::diskBytes)
+                .description("Disk space used by spool segments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        }
+        Gauge.builder("messaging.fallback.circuit.open", circuitBreaker,
+                breaker -> breaker.getState() == CircuitBreakerConfig.State.OPEN ? 1 : 0)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 经默认交换机发布到指定队列
+     */
+    @Override
+    public CompletableFuture<Void> publishToQueue(String queueName, Object message) {
+        return publish(DEFAULT_EXCHANGE, queueName, message);
+    }
+
+    /**
+     * 发布事件；future 在 broker 确认或事件写入磁盘队列后正常完成
+     */
+    @Override
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object message) {
+        if (spool == null) {
+            return delegate.publish(exchange, routingKey, message);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!spool.isEmpty() || !circuitBreaker.isCallPermitted()) {
+            spool(exchange, routingKey, message, result);
+            return result;
+        }
+        delegate.publish(exchange, routingKey, message).whenComplete((ok, error) -> {
+            if (error == null) {
+                circuitBreaker.recordSuccess();
+                result.complete(null);
+                return;
+            }
+            if (!isBrokerFailure(error)) {
+                result.completeExceptionally(error);
+                return;
+            }
+            circuitBreaker.recordFailure();
+            logger.warn("Publish to {} failed, spooling event: {}", target(exchange, routingKey), error.getMessage());
+            spool(exchange, routingKey, message, result);
+        });
+        return result;
+    }
+
+    /**
+     * 按写入顺序重放暂存的事件，每条等待 broker 确认后推进；遇到失败即停止，留待下次重放
+     *
+     * @return 本次重放并确认的条数
+     */
+    public int replay() {
+        if (spool == null || spool.isEmpty() || !circuitBreaker.isCallPermitted()) {
+            return 0;
+        }
+        int budget = properties.replayBudget();
+        int replayed = 0;
+        try {
+            while (replayed < budget) {
+                List<SegmentSpool.Entry> entries = spool.peek(Math.min(properties.getReplayBatchSize(), budget - replayed));
+                if (entries.isEmpty()) {
+                    break;
+                }
+                int done = 0;
+                int delivered = 0;
+                try {
+                    for (SegmentSpool.Entry entry : entries) {
+                        if (replayOne(entry)) {
+                            delivered++;
+                        }
+                        done++;
+                    }
+                } catch (AmqpException e) {
+                    circuitBreaker.recordFailure();
+                    logger.warn("Spool replay interrupted after {} events: {}", replayed + done, e.getMessage());
+                    spool.acknowledge(entries.subList(0, done));
+                    replayed += done;
+                    return replayed;
+                } finally {
+                    replayedCounter.increment(delivered);
+                }
+                spool.acknowledge(entries);
+                replayed += done;
+                circuitBreaker.recordSuccess();
+            }
+        } catch (IOException e) {
+            logger.error("Spool replay failed", e);
+        }
+        if (replayed > 0) {
+            logger.info("Replayed {} spooled events, {} remaining", replayed, spool.size());
+        }
+        return replayed;
+    }
+
+    public long getSpoolDepth() {
+        return spool != null ? spool.size() : 0;
+    }
+
+    public CircuitBreakerConfig.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    /**
+     * 重放一条记录；无法解析或被退回的记录丢弃并返回 false，broker 故障时抛出 AmqpException
+     */
+    private boolean replayOne(SegmentSpool.Entry entry) {
+        SpooledMessage spooled;
+        try {
+            spooled = decode(entry.getData());
+        } catch (IOException e) {
+            droppedCounter.increment();
+            logger.error("Dropping unreadable spool record: {}", e.getMessage());
+            return false;
+        }
+        try {
+            PipelineStage.PUBLISHED.stamp(spooled.message.getMessageProperties(), System.currentTimeMillis());
+            replaySender.send(spooled.exchange, spooled.routingKey, spooled.message);
+            return true;
+        } catch (AmqpMessageReturnedException e) {
+            droppedCounter.increment();
+            logger.error("Dropping spooled event returned as unroutable: target={}, reply={}",
+                target(spooled.exchange, spooled.routingKey), e.getReplyText());
+            return false;
+        }
+    }
+
+    private void spool(String exchange, String routingKey, Object message, CompletableFuture<Void> result) {
+        try {
+            Message encoded = message instanceof Message
+                ? (Message) message : messageConverter.toMessage(message, new MessageProperties());
+            // 写盘不算发布，发布时间在重放时重新标记
+            encoded.getMessageProperties().getHeaders().remove(PipelineStage.PUBLISHED.getHeader());
+            PipelineStage.JOURNALED.stamp(encoded.getMessageProperties(), System.currentTimeMillis());
+            spool.append(encode(exchange, routingKey, encoded));
+            spooledCounter.increment();
+            result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to spool event for {}", target(exchange, routingKey), e);
+            result.completeExceptionally(new EventPublishException("spool", 0,
+                "Broker unavailable and event could not be spooled: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 记录格式：版本(int) 交换机(UTF) 路由键(UTF) content-type(UTF) 时间戳(long) 消息头 JSON(长度+UTF-8) 消息体(长度+字节)
+     */
+    byte[] encode(String exchange, String routingKey, Message message) throws IOException {
+        MessageProperties messageProperties = message.getMessageProperties();
+        byte[] headers = objectMapper.writeValueAsBytes(messageProperties.getHeaders());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.getBody().length + headers.length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(RECORD_VERSION);
+            out.writeUTF(exchange);
+            out.writeUTF(routingKey);
+            out.writeUTF(messageProperties.getContentType() != null ? messageProperties.getContentType() : "");
+            out.writeLong(messageProperties.getTimestamp() != null ? messageProperties.getTimestamp().getTime() : -1L);
+            out.writeInt(headers.length);
+            out.write(headers);
+            out.writeInt(message.getBody().length);
+            out.write(message.getBody());
+        }
+        return bytes.toByteArray();
+    }
+
+    SpooledMessage decode(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            int version = in.readInt();
+            if (version != RECORD_VERSION) {
+                throw new IOException("Unsupported spool record version: " + version);
+            }
+            String exchange = in.readUTF();
+            String routingKey = in.readUTF();
+            String contentType = in.readUTF();
+            long timestamp = in.readLong();
+            byte[] headers = new byte[in.readInt()];
+            in.readFully(headers);
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            MessageProperties messageProperties = new MessageProperties();
+            if (!contentType.isEmpty()) {
+                messageProperties.setContentType(contentType);
+            }
+            if (timestamp >= 0) {
+                messageProperties.setTimestamp(new Date(timestamp));
+            }
+            messageProperties.setContentLength(body.length);
+            messageProperties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+            Map<String, Object> headerMap = objectMapper.readValue(new String(headers, StandardCharsets.UTF_8), HEADERS_TYPE);
+            headerMap.forEach(messageProperties::setHeader);
+            return new SpooledMessage(exchange, routingKey, new Message(body, messageProperties));
+        }
+    }
+
+    private static boolean isBrokerFailure(Throwable error) {
+        Throwable cause = error.getCause() != null && !(error instanceof EventPublishException) ? error.getCause() : error;
+        if (cause instanceof EventPublishException) {
+            String reason = ((EventPublishException) cause).getReason();
+            return !"returned".equals(reason) && !"conversion".equals(reason);
+        }
+        return true;
+    }
+
+    private static String target(String exchange, String routingKey) {
+        return exchange.isEmpty() ? routingKey : exchange + "/" + routingKey;
+    }
+
+    /**
+     * 从磁盘队列读出的一条待重放消息
+     */
+    static final class SpooledMessage {
+        final String exchange;
+        final String routingKey;
+        final Message message;
+
+        SpooledMessage(String exchange, String routingKey, Message message) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.message = message;
+        }
+    }
+}
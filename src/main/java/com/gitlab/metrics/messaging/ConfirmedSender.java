@@ -0,0 +1,58 @@
+package com.gitlab.metrics.messaging;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpMessageReturnedException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 同步确认的原始消息发送
+ * 用于把已收到的消息转投到重试梯队、parking lot 或原队列：发送后等待 broker 确认，
+ * 被拒绝、被退回或超时都抛出 AmqpException（被退回时为 AmqpMessageReturnedException），调用方据此决定是否确认原消息
+ */
+public class ConfirmedSender {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final boolean confirmsEnabled;
+    private final long confirmTimeoutMs;
+
+    public ConfirmedSender(RabbitTemplate rabbitTemplate, boolean confirmsEnabled, long confirmTimeoutMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirmsEnabled = confirmsEnabled;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    public void send(String exchange, String routingKey, Message message) {
+        CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+        rabbitTemplate.send(exchange, routingKey, message, correlation);
+        if (!confirmsEnabled) {
+            return;
+        }
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted waiting for confirm on " + describe(exchange, routingKey), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException("No confirm within " + confirmTimeoutMs + " ms on " + describe(exchange, routingKey), e);
+        }
+        if (!confirm.isAck()) {
+            throw new AmqpException("Broker nacked message to " + describe(exchange, routingKey) + ": " + confirm.getReason());
+        }
+        if (correlation.getReturned() != null) {
+            throw new AmqpMessageReturnedException("Message to " + describe(exchange, routingKey) + " was returned: "
+                + correlation.getReturned().getReplyText(), correlation.getReturned());
+        }
+    }
+
+    private static String describe(String exchange, String routingKey) {
+        return (exchange.isEmpty() ? "(default)" : exchange) + "/" + routingKey;
+    }
+}
@@ -0,0 +1,427 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.EventPublisherProperties;
+import com.gitlab.metrics.exception.EventPublishException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带发布确认的异步批量发布器
+ * 调用方把消息放入有界缓冲后立即拿到 CompletableFuture；每个发送线程占用一个 channel，
+ * 凑批后在同一 channel 上连续发布、不逐条等待确认，确认经 CorrelationData 异步回调。
+ * 每个 channel 的未确认消息数不超过 maxInFlight；nack、连接异常和确认超时按指数退避重发，
+ * 超过最大次数、消息无法路由或无法转换时 future 以 EventPublishException 结束。
+ * 投递语义为至少一次：确认丢失后的重发可能产生重复消息
+ */
+public class ConfirmingEventPublisher implements EventTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfirmingEventPublisher.class);
+
+    private static final String DEFAULT_EXCHANGE = "";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final EventPublisherProperties properties;
+    private final boolean confirmsEnabled;
+    private final MeterRegistry meterRegistry;
+
+    private final LinkedBlockingDeque<PendingPublish> buffer = new LinkedBlockingDeque<>();
+    private final Semaphore pendingPermits;
+    private final Map<String, PendingPublish> unconfirmed = new ConcurrentHashMap<>();
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Dispatcher> dispatchers = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final Counter confirmedCounter;
+    private final Counter nackedCounter;
+    private final Counter retriedCounter;
+    private final DistributionSummary batchSizeSummary;
+
+    private volatile boolean running;
+
+    public ConfirmingEventPublisher(RabbitTemplate rabbitTemplate, EventPublisherProperties properties,
+                                    boolean confirmsEnabled, MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.confirmsEnabled = confirmsEnabled;
+        this.meterRegistry = meterRegistry;
+        this.pendingPermits = new Semaphore(properties.getMaxPending());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-publisher-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("messaging.publish.inflight", unconfirmed, Map::size)
+            .description("Messages published and awaiting a broker confirm")
+            .register(meterRegistry);
+        Gauge.builder("messaging.publish.buffered", buffer, Collection::size)
+            .description("Messages accepted and waiting for a publisher channel")
+            .register(meterRegistry);
+        confirmedCounter = Counter.builder("messaging.publish.confirmed").register(meterRegistry);
+        nackedCounter = Counter.builder("messaging.publish.nacked").register(meterRegistry);
+        retriedCounter = Counter.builder("messaging.publish.retried").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("messaging.publish.batch.size")
+            .description("Messages published back to back on one channel")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 启动发送线程和确认超时检查
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        int maxInFlight = Math.max(1, properties.getMaxInFlight());
+        int channels = Math.max(1, properties.getChannels());
+        for (int i = 0; i < channels; i++) {
+            Dispatcher dispatcher = new Dispatcher(i, maxInFlight);
+            dispatchers.add(dispatcher);
+            dispatcher.thread.start();
+        }
+        long sweepMs = Math.max(100, properties.getConfirmTimeoutMs() / 2);
+        scheduler.scheduleWithFixedDelay(this::expireUnconfirmed, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+        if (!confirmsEnabled) {
+            logger.warn("Publisher confirms are not enabled on the connection factory; messages count as confirmed once written");
+        }
+        logger.info("Event publisher started: channels={}, batchSize={}, maxInFlight={}/channel, maxPending={}",
+            channels, properties.getBatchSize(), maxInFlight, properties.getMaxPending());
+    }
+
+    /**
+     * 经默认交换机发布到指定队列
+     */
+    @Override
+    public CompletableFuture<Void> publishToQueue(String queueName, Object message) {
+        return publish(DEFAULT_EXCHANGE, queueName, message);
+    }
+
+    /**
+     * 异步发布消息；缓冲已满时最多等待 enqueueTimeoutMs，仍无空间则返回失败的 future
+     */
+    @Override
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            fail(future, "shutdown", 0, "Publisher is not running");
+            return future;
+        }
+        try {
+            if (!pendingPermits.tryAcquire(properties.getEnqueueTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                fail(future, "rejected", 0, "Publish buffer full: " + properties.getMaxPending() + " messages pending");
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(future, "rejected", 0, "Interrupted while waiting for publish buffer space");
+            return future;
+        }
+        future.whenComplete((result, error) -> pendingPermits.release());
+        buffer.offerLast(new PendingPublish(sequence.incrementAndGet(), exchange, routingKey, message, future));
+        return future;
+    }
+
+    /**
+     * 停止接收新消息，发完缓冲并等待确认，超时后剩余消息以 shutdown 失败
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getShutdownTimeoutMs());
+        try {
+            for (Dispatcher dispatcher : dispatchers) {
+                dispatcher.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+            while (!unconfirmed.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Dispatcher dispatcher : dispatchers) {
+            dispatcher.thread.interrupt();
+        }
+        scheduler.shutdownNow();
+
+        int abandoned = 0;
+        PendingPublish pending;
+        while ((pending = buffer.pollFirst()) != null) {
+            fail(pending.future, "shutdown", pending.attempts, "Publisher shut down before sending");
+            abandoned++;
+        }
+        for (String correlationId : new ArrayList<>(unconfirmed.keySet())) {
+            pending = unconfirmed.remove(correlationId);
+            if (pending != null) {
+                fail(pending.future, "shutdown", pending.attempts, "Publisher shut down before confirm");
+                abandoned++;
+            }
+        }
+        if (abandoned > 0) {
+            logger.error("Event publisher stopped with {} unconfirmed messages", abandoned);
+        } else {
+            logger.info("Event publisher stopped, all messages confirmed");
+        }
+    }
+
+    public int getInFlight() {
+        return unconfirmed.size();
+    }
+
+    public int getBuffered() {
+        return buffer.size();
+    }
+
+    public boolean isConfirmsEnabled() {
+        return confirmsEnabled;
+    }
+
+    private void send(Dispatcher dispatcher, List<PendingPublish> batch) {
+        batchSizeSummary.record(batch.size());
+        String[] correlationIds = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingPublish pending = batch.get(i);
+            pending.attempts++;
+            pending.correlation = new CorrelationData(pending.id + "." + pending.attempts);
+            pending.owner = dispatcher;
+            pending.sentNanos = System.nanoTime();
+            correlationIds[i] = pending.correlation.getId();
+        }
+
+        // 整批在 invoke 绑定的同一 channel 上发出，确认稍后异步到达
+        int[] written = {0};
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingPublish pending : batch) {
+                    unconfirmed.put(pending.correlation.getId(), pending);
+                    try {
+                        operations.convertAndSend(pending.exchange, pending.routingKey, pending.message, pending.correlation);
+                    } catch (MessageConversionException e) {
+                        if (unconfirmed.remove(pending.correlation.getId()) != null) {
+                            dispatcher.window.release();
+                            pending.rejected = true;
+                            fail(pending.future, "conversion", pending.attempts, "Message conversion failed: " + e.getMessage());
+                        }
+                    }
+                    written[0]++;
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Publishing batch failed after {} of {} messages: {}", written[0], batch.size(), e.getMessage());
+            // 抛出异常的那条和之后未写出的消息整体重发
+            for (int i = written[0]; i < batch.size(); i++) {
+                unconfirmed.remove(correlationIds[i]);
+                dispatcher.window.release();
+                retryOrFail(batch.get(i), "nack", e.getMessage());
+            }
+        }
+
+        for (int i = 0; i < written[0]; i++) {
+            PendingPublish pending = batch.get(i);
+            if (pending.rejected) {
+                continue;
+            }
+            String correlationId = correlationIds[i];
+            if (confirmsEnabled) {
+                pending.correlation.getFuture().addCallback(
+                    confirm -> complete(pending, correlationId, confirm != null && confirm.isAck(), "nack",
+                        confirm != null ? confirm.getReason() : null),
+                    error -> complete(pending, correlationId, false, "nack", error.getMessage()));
+            } else {
+                complete(pending, correlationId, true, null, null);
+            }
+        }
+    }
+
+    private void complete(PendingPublish pending, String correlationId, boolean ack, String reason, String detail) {
+        if (unconfirmed.remove(correlationId) == null) {
+            // 已按超时处理或已关闭
+            return;
+        }
+        pending.owner.window.release();
+        if (!ack) {
+            nackedCounter.increment();
+            retryOrFail(pending, reason, detail);
+            return;
+        }
+        ReturnedMessage returned = pending.correlation.getReturned();
+        if (returned != null) {
+            fail(pending.future, "returned", pending.attempts, "Message to " + target(pending)
+                + " returned as unroutable: " + returned.getReplyCode() + " " + returned.getReplyText());
+            return;
+        }
+        latencyTimer(pending.routingKey).record(System.nanoTime() - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+        confirmedCounter.increment();
+        pending.future.complete(null);
+    }
+
+    private void retryOrFail(PendingPublish pending, String reason, String detail) {
+        if (!running || pending.attempts >= properties.getMaxAttempts()) {
+            fail(pending.future, reason, pending.attempts, "Publish to " + target(pending) + " failed after "
+                + pending.attempts + " attempt(s): " + detail);
+            return;
+        }
+        long backoff = properties.getRetryBackoffMs() * (1L << Math.min(pending.attempts - 1, 20));
+        long delay = Math.min(backoff, properties.getMaxRetryBackoffMs());
+        try {
+            scheduler.schedule(() -> buffer.offerFirst(pending), delay, TimeUnit.MILLISECONDS);
+            retriedCounter.increment();
+            logger.debug("Retrying publish to {} in {} ms: attempt={}, reason={}", target(pending), delay, pending.attempts, detail);
+        } catch (RejectedExecutionException e) {
+            fail(pending.future, "shutdown", pending.attempts, "Publisher shut down before retry");
+        }
+    }
+
+    /**
+     * 超时未确认的消息按 nack 处理（连接中断时确认可能永远不会到达）
+     */
+    private void expireUnconfirmed() {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getConfirmTimeoutMs());
+        long now = System.nanoTime();
+        for (Map.Entry<String, PendingPublish> entry : unconfirmed.entrySet()) {
+            PendingPublish pending = entry.getValue();
+            if (now - pending.sentNanos > timeoutNanos) {
+                logger.warn("Publish confirm timed out: target={}, correlationId={}", target(pending), entry.getKey());
+                complete(pending, entry.getKey(), false, "timeout", "no confirm within " + properties.getConfirmTimeoutMs() + " ms");
+            }
+        }
+    }
+
+    private void fail(CompletableFuture<Void> future, String reason, int attempts, String message) {
+        Counter.builder("messaging.publish.failed")
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+        future.completeExceptionally(new EventPublishException(reason, attempts, message));
+    }
+
+    private Timer latencyTimer(String routingKey) {
+        return latencyTimers.computeIfAbsent(routingKey, key -> Timer.builder("messaging.publish.latency")
+            .description("Time from publish call to broker confirm, including retries")
+            .tag("target", key)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry));
+    }
+
+    private static String target(PendingPublish pending) {
+        return pending.exchange.isEmpty() ? pending.routingKey : pending.exchange + "/" + pending.routingKey;
+    }
+
+    /**
+     * 一条待确认消息；重发时生成新的 CorrelationData
+     */
+    private static final class PendingPublish {
+        private final long id;
+        private final String exchange;
+        private final String routingKey;
+        private final Object message;
+        private final CompletableFuture<Void> future;
+        private final long enqueuedNanos = System.nanoTime();
+        private volatile int attempts;
+        private volatile CorrelationData correlation;
+        private volatile Dispatcher owner;
+        private volatile long sentNanos;
+        private volatile boolean rejected;
+
+        private PendingPublish(long id, String exchange, String routingKey, Object message, CompletableFuture<Void> future) {
+            this.id = id;
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.message = message;
+            this.future = future;
+        }
+    }
+
+    /**
+     * 发送线程；window 限制该 channel 上的未确认消息数
+     */
+    private final class Dispatcher implements Runnable {
+        private final Semaphore window;
+        private final Thread thread;
+
+        private Dispatcher(int index, int maxInFlight) {
+            this.window = new Semaphore(maxInFlight);
+            this.thread = new Thread(this, "event-publisher-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running || !buffer.isEmpty()) {
+                List<PendingPublish> batch = Collections.emptyList();
+                try {
+                    batch = nextBatch();
+                    if (!batch.isEmpty()) {
+                        send(this, batch);
+                    }
+                } catch (InterruptedException e) {
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        buffer.offerFirst(batch.get(i));
+                    }
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    logger.error("Event publisher dispatcher error", e);
+                }
+            }
+        }
+
+        /**
+         * 每取一条消息占用一个窗口许可；窗口用尽或凑批超时即发出当前批次
+         */
+        private List<PendingPublish> nextBatch() throws InterruptedException {
+            window.acquire();
+            PendingPublish first = buffer.pollFirst(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                window.release();
+                return Collections.emptyList();
+            }
+            List<PendingPublish> batch = new ArrayList<>(properties.getBatchSize());
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getLingerMs());
+            while (batch.size() < properties.getBatchSize() && window.tryAcquire()) {
+                PendingPublish next = buffer.pollFirst();
+                if (next == null) {
+                    long wait = deadline - System.nanoTime();
+                    next = wait > 0 && running ? buffer.pollFirst(wait, TimeUnit.NANOSECONDS) : null;
+                }
+                if (next == null) {
+                    window.release();
+                    break;
+                }
+                batch.add(next);
+            }
+            return batch;
+        }
+    }
+}
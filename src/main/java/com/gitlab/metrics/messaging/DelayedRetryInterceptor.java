@@ -0,0 +1,177 @@
+package com.gitlab.metrics.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.gitlab.metrics.config.MessageRetryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * 消费失败的延迟重试与 parking lot
+ * 作为监听容器的 advice：监听器抛出异常时不在消费线程里等待退避，而是按已失败次数把消息转投到对应的延迟梯队
+ * （带 TTL 的队列，过期后经默认交换机按原路由键死信回原队列），确认送达后再确认原消息；
+ * 达到最大次数或重试无意义（消息无法解析、事件类型或载荷不符）时带上失败信息转入 parking lot。
+ * 转投本身失败时抛出 AmqpRejectAndDontRequeueException，由容器拒绝原消息，进入原有的死信队列兜底
+ */
+public class DelayedRetryInterceptor implements MethodInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DelayedRetryInterceptor.class);
+
+    public static final String ATTEMPTS_HEADER = "x-retry-attempts";
+    public static final String ORIGINAL_QUEUE_HEADER = "x-original-queue";
+    public static final String FIRST_FAILED_AT_HEADER = "x-first-failed-at";
+    public static final String LAST_FAILED_AT_HEADER = "x-last-failed-at";
+    public static final String EXCEPTION_TYPE_HEADER = "x-exception-type";
+    public static final String EXCEPTION_MESSAGE_HEADER = "x-exception-message";
+    public static final String EXCEPTION_STACKTRACE_HEADER = "x-exception-stacktrace";
+    public static final String PARKED_REASON_HEADER = "x-parked-reason";
+
+    public static final String REASON_EXHAUSTED = "exhausted";
+    public static final String REASON_NON_RETRYABLE = "non-retryable";
+
+    private static final int MAX_EXCEPTION_MESSAGE_LENGTH = 1000;
+
+    private final MessageRetryProperties properties;
+    private final ConfirmedSender sender;
+    private final MeterRegistry meterRegistry;
+
+    public DelayedRetryInterceptor(MessageRetryProperties properties, ConfirmedSender sender, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.sender = sender;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 延迟梯队的交换机和队列名，延迟值写在名字里，调整延迟会声明新的梯队而不是与已有队列参数冲突
+     */
+    public static String tierName(long delayMs) {
+        return "retry.delay." + delayMs + "ms";
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        Object data = arguments.length > 1 ? arguments[1] : null;
+        if (!properties.isEnabled() || !(data instanceof Message)) {
+            return invocation.proceed();
+        }
+        Message message = (Message) data;
+        String queue = message.getMessageProperties().getConsumerQueue();
+        if (queue == null) {
+            return invocation.proceed();
+        }
+        try {
+            Object result = invocation.proceed();
+            if (attemptsOf(message) > 0) {
+                counter("messaging.retry.recovered", queue).increment();
+            }
+            return result;
+        } catch (Exception e) {
+            handleFailure(queue, message, e);
+            return null;
+        }
+    }
+
+    private void handleFailure(String queue, Message message, Exception failure) {
+        MessageProperties messageProperties = message.getMessageProperties();
+        Throwable cause = rootCause(failure);
+        int attempts = attemptsOf(message) + 1;
+        long now = System.currentTimeMillis();
+
+        Map<String, Object> headers = messageProperties.getHeaders();
+        headers.put(ATTEMPTS_HEADER, attempts);
+        headers.put(ORIGINAL_QUEUE_HEADER, queue);
+        headers.putIfAbsent(FIRST_FAILED_AT_HEADER, now);
+        headers.put(LAST_FAILED_AT_HEADER, now);
+        headers.put(EXCEPTION_TYPE_HEADER, cause.getClass().getName());
+        headers.put(EXCEPTION_MESSAGE_HEADER, truncate(String.valueOf(cause.getMessage()), MAX_EXCEPTION_MESSAGE_LENGTH));
+        // 收到的消息 deliveryMode 为空，原样转投会变成非持久消息
+        messageProperties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+
+        boolean retryable = isRetryable(failure);
+        try {
+            if (!retryable || attempts >= properties.getMaxAttempts()) {
+                String reason = retryable ? REASON_EXHAUSTED : REASON_NON_RETRYABLE;
+                headers.put(PARKED_REASON_HEADER, reason);
+                headers.put(EXCEPTION_STACKTRACE_HEADER, truncate(stackTrace(failure), properties.getMaxStackTraceLength()));
+                sender.send("", properties.getParkingLotQueue(), message);
+                Counter.builder("messaging.retry.parked")
+                    .tag("queue", queue)
+                    .tag("reason", reason)
+                    .register(meterRegistry)
+                    .increment();
+                logger.warn("Parked message from {} after {} attempt(s) ({}): type={}, error={}", queue, attempts,
+                    reason, headers.get(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER), cause.toString());
+            } else {
+                long delayMs = properties.delayFor(attempts);
+                sender.send(tierName(delayMs), queue, message);
+                Counter.builder("messaging.retry.scheduled")
+                    .tag("queue", queue)
+                    .tag("delay", delayMs + "ms")
+                    .register(meterRegistry)
+                    .increment();
+                logger.info("Retrying message from {} in {} ms (attempt {} of {}): {}", queue, delayMs, attempts,
+                    properties.getMaxAttempts(), cause.toString());
+            }
+        } catch (AmqpException e) {
+            counter("messaging.retry.republish.failed", queue).increment();
+            logger.error("Could not republish failed message from {}, rejecting to dead letter queue: {}", queue, e.getMessage());
+            throw new AmqpRejectAndDontRequeueException("Republish failed for message from " + queue, failure);
+        }
+    }
+
+    /**
+     * 消息本身有问题时重试只会得到同样的结果
+     */
+    public static boolean isRetryable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof AmqpRejectAndDontRequeueException
+                || t instanceof MessageConversionException
+                || t instanceof JsonProcessingException
+                || t instanceof ClassCastException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int attemptsOf(Message message) {
+        Object value = message.getMessageProperties().getHeaders().get(ATTEMPTS_HEADER);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private Counter counter(String name, String queue) {
+        return Counter.builder(name).tag("queue", queue).register(meterRegistry);
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String stackTrace(Throwable failure) {
+        StringWriter writer = new StringWriter();
+        failure.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+}
@@ -0,0 +1,88 @@
+package com.gitlab.metrics.messaging;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+
+/**
+ * 队列消息信封
+ * 携带版本号、事件类型、请求ID和发送时间，载荷按事件类型强类型化；
+ * 编码格式由 EventEnvelopeMessageConverter 决定，信封本身与 JSON/Smile 无关
+ */
+public class EventEnvelope {
+
+    /**
+     * 当前信封版本；字段只能追加，删除或改变字段含义时递增版本
+     */
+    public static final int CURRENT_VERSION = 1;
+
+    private int version = CURRENT_VERSION;
+    private EventType type;
+    private String requestId;
+    private long timestamp;
+    private Object payload;
+
+    /**
+     * webhook 到达时间，不写入消息体，由转换器以 x-ts-received 消息头传递；0 表示未知
+     */
+    private long receivedAt;
+
+    public EventEnvelope() {}
+
+    public EventEnvelope(EventType type, String requestId, Object payload) {
+        this.type = type;
+        this.requestId = requestId;
+        this.payload = payload;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * 按载荷类型确定事件类型并创建信封
+     */
+    public static EventEnvelope of(String requestId, Object payload) {
+        return new EventEnvelope(EventType.forPayload(payload), requestId, payload);
+    }
+
+    /**
+     * 取出指定类型的载荷，类型不符时抛出 IllegalStateException
+     */
+    public <T> T getPayload(Class<T> payloadClass) {
+        if (!payloadClass.isInstance(payload)) {
+            throw new IllegalStateException("Expected " + payloadClass.getSimpleName() + " payload but envelope carries "
+                + type + (payload != null ? " (" + payload.getClass().getSimpleName() + ")" : ""));
+        }
+        return payloadClass.cast(payload);
+    }
+
+    /**
+     * 监听器取载荷用：事件类型或载荷类型不符说明消息本身有问题，重试没有意义，
+     * 抛出 AmqpRejectAndDontRequeueException 让消息直接进入 parking lot
+     */
+    public <T> T requirePayload(EventType expectedType, Class<T> payloadClass) {
+        if (type != expectedType) {
+            throw new AmqpRejectAndDontRequeueException("Expected " + expectedType + " event but got " + type
+                + ": requestId=" + requestId);
+        }
+        try {
+            return getPayload(payloadClass);
+        } catch (IllegalStateException e) {
+            throw new AmqpRejectAndDontRequeueException(e.getMessage() + ": requestId=" + requestId, e);
+        }
+    }
+
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
+    public EventType getType() { return type; }
+    public void setType(EventType type) { this.type = type; }
+
+    public String getRequestId() { return requestId; }
+    public void setRequestId(String requestId) { this.requestId = requestId; }
+
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+
+    public Object getPayload() { return payload; }
+    public void setPayload(Object payload) { this.payload = payload; }
+
+    public long getReceivedAt() { return receivedAt; }
+    public void setReceivedAt(long receivedAt) { this.receivedAt = receivedAt; }
+}
@@ -0,0 +1,301 @@
+package com.gitlab.metrics.messaging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.gitlab.metrics.dto.webhook.WebhookRequest;
+import com.gitlab.metrics.service.SonarQubeAnalysisMessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * 事件信封消息转换器
+ * EventEnvelope 按配置的格式（默认 Smile 二进制，可选 JSON）编码，类型标识写在载荷之前，
+ * 消费端流式读取时先拿到类型再把载荷直接反序列化为目标类，不经过 LinkedHashMap；
+ * 解码按消息的 content-type 选择格式，生产端切换格式时新旧消息可以共存。
+ * 非信封对象（如告警的字符串消息）交给原有的 JSON 转换器处理；
+ * 升级前已在队列中的旧格式消息（WebhookEventMessage 包装、字符串化的质量分析消息）按内容识别后转换为信封
+ */
+public class EventEnvelopeMessageConverter implements MessageConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventEnvelopeMessageConverter.class);
+
+    public static final String CONTENT_TYPE_SMILE = "application/x-jackson-smile";
+    public static final String VERSION_HEADER = "x-envelope-version";
+    public static final String EVENT_TYPE_HEADER = "x-event-type";
+    public static final String PROJECT_HEADER = "x-project-id";
+
+    private static final String LEGACY_WRAPPER_TYPE = "WebhookEventMessage";
+
+    /**
+     * 消息编码格式
+     */
+    public enum WireFormat {
+        JSON(MessageProperties.CONTENT_TYPE_JSON),
+        SMILE(CONTENT_TYPE_SMILE);
+
+        private final String contentType;
+
+        WireFormat(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * 按 content-type 识别格式，无法识别时返回 null
+         */
+        public static WireFormat fromContentType(String contentType) {
+            if (contentType == null) {
+                return null;
+            }
+            String mime = contentType.split(";")[0].trim();
+            for (WireFormat format : values()) {
+                if (format.contentType.equalsIgnoreCase(mime)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final WireFormat producerFormat;
+    private final MessageConverter delegate;
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+
+    public EventEnvelopeMessageConverter(WireFormat producerFormat, MessageConverter delegate) {
+        this.producerFormat = producerFormat;
+        this.delegate = delegate;
+        this.jsonMapper = configure(new ObjectMapper());
+        // 共享属性名/短字符串引用：同一消息内重复的键只写一次
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_NAMES);
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        this.smileMapper = configure(new ObjectMapper(smileFactory));
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.findAndRegisterModules();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        return mapper;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        if (!(object instanceof EventEnvelope)) {
+            return delegate.toMessage(object, messageProperties);
+        }
+        EventEnvelope envelope = (EventEnvelope) object;
+        if (envelope.getType() == null) {
+            throw new MessageConversionException("Event envelope without type: requestId=" + envelope.getRequestId());
+        }
+        byte[] body = encode(envelope, producerFormat);
+        messageProperties.setContentType(producerFormat.getContentType());
+        messageProperties.setContentLength(body.length);
+        // 发布时间随消息传递，消费端据此统计端到端延迟，无需解码载荷
+        messageProperties.setTimestamp(new Date(envelope.getTimestamp()));
+        messageProperties.setHeader(VERSION_HEADER, envelope.getVersion());
+        messageProperties.setHeader(EVENT_TYPE_HEADER, envelope.getType().getWireName());
+        String projectId = projectIdOf(envelope.getPayload());
+        if (projectId != null) {
+            messageProperties.setHeader(PROJECT_HEADER, projectId);
+        }
+        // 管道各阶段时间戳：编码即视为发布，先写入发件箱或磁盘队列的路径在真正发送时重新标记
+        if (envelope.getReceivedAt() > 0) {
+            PipelineStage.RECEIVED.stamp(messageProperties, envelope.getReceivedAt());
+        }
+        PipelineStage.PUBLISHED.stamp(messageProperties, System.currentTimeMillis());
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties properties = message.getMessageProperties();
+        WireFormat format = WireFormat.fromContentType(properties.getContentType());
+        if (properties.getHeaders().containsKey(VERSION_HEADER) || format == WireFormat.SMILE) {
+            EventEnvelope envelope = decode(message.getBody(), format != null ? format : WireFormat.JSON);
+            envelope.setReceivedAt(PipelineStage.RECEIVED.read(properties));
+            return envelope;
+        }
+        if (format == WireFormat.JSON) {
+            EventEnvelope legacy = upgradeLegacy(message);
+            if (legacy != null) {
+                return legacy;
+            }
+        }
+        return delegate.fromMessage(message);
+    }
+
+    /**
+     * 编码信封：v、type、requestId、ts 在前，payload 最后
+     */
+    public byte[] encode(EventEnvelope envelope, WireFormat format) {
+        ObjectMapper mapper = mapper(format);
+        try (ByteArrayBuilder buffer = new ByteArrayBuilder()) {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(buffer)) {
+                generator.writeStartObject();
+                generator.writeNumberField("v", envelope.getVersion());
+                generator.writeStringField("type", envelope.getType().getWireName());
+                if (envelope.getRequestId() != null) {
+                    generator.writeStringField("requestId", envelope.getRequestId());
+                }
+                generator.writeNumberField("ts", envelope.getTimestamp());
+                generator.writeFieldName("payload");
+                mapper.writeValue(generator, envelope.getPayload());
+                generator.writeEndObject();
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to encode event envelope: type=" + envelope.getType(), e);
+        }
+    }
+
+    /**
+     * 流式解码信封；载荷出现在类型标识之前时先缓存为树再转换
+     */
+    public EventEnvelope decode(byte[] body, WireFormat format) {
+        ObjectMapper mapper = mapper(format);
+        EventEnvelope envelope = new EventEnvelope();
+        JsonNode bufferedPayload = null;
+        boolean hasPayload = false;
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new MessageConversionException("Event envelope must be an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "v":
+                        envelope.setVersion(parser.getIntValue());
+                        if (envelope.getVersion() > EventEnvelope.CURRENT_VERSION) {
+                            throw new MessageConversionException("Unsupported event envelope version "
+                                + envelope.getVersion() + ", this consumer reads up to " + EventEnvelope.CURRENT_VERSION);
+                        }
+                        break;
+                    case "type":
+                        envelope.setType(EventType.fromWireName(parser.getText()));
+                        if (envelope.getType() == null) {
+                            throw new MessageConversionException("Unknown event type: " + parser.getText());
+                        }
+                        break;
+                    case "requestId":
+                        envelope.setRequestId(parser.getValueAsString());
+                        break;
+                    case "ts":
+                        envelope.setTimestamp(parser.getLongValue());
+                        break;
+                    case "payload":
+                        hasPayload = true;
+                        if (envelope.getType() != null) {
+                            envelope.setPayload(mapper.readValue(parser, envelope.getType().getPayloadClass()));
+                        } else {
+                            bufferedPayload = mapper.readTree(parser);
+                        }
+                        break;
+                    default:
+                        // 新版本追加的字段
+                        parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to decode event envelope", e);
+        }
+        if (envelope.getType() == null) {
+            throw new MessageConversionException("Event envelope without type");
+        }
+        if (!hasPayload) {
+            throw new MessageConversionException("Event envelope without payload: type=" + envelope.getType());
+        }
+        if (bufferedPayload != null) {
+            try {
+                envelope.setPayload(mapper.treeToValue(bufferedPayload, envelope.getType().getPayloadClass()));
+            } catch (IOException e) {
+                throw new MessageConversionException("Failed to decode payload: type=" + envelope.getType(), e);
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * 识别升级前的旧格式 JSON 消息：WebhookEventMessage 包装按 object_kind 确定类型，
+     * 被二次编码为 JSON 字符串的质量分析消息按 sonarProjectKey 字段识别；其余返回 null
+     */
+    EventEnvelope upgradeLegacy(Message message) {
+        Object typeId = message.getMessageProperties().getHeaders().get(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+        if (typeId == null) {
+            return null;
+        }
+        try {
+            JsonNode node = jsonMapper.readTree(message.getBody());
+            if (node.isTextual() && String.class.getName().equals(typeId.toString())) {
+                String text = node.asText().trim();
+                if (!text.startsWith("{")) {
+                    return null;
+                }
+                node = jsonMapper.readTree(text);
+            }
+            if (typeId.toString().endsWith(LEGACY_WRAPPER_TYPE) && node.has("eventData")) {
+                EventType type = EventType.fromWireName(node.path("eventData").path("object_kind").asText(null));
+                if (type == null) {
+                    return null;
+                }
+                EventEnvelope envelope = new EventEnvelope(type, node.path("requestId").asText(null),
+                    jsonMapper.treeToValue(node.get("eventData"), type.getPayloadClass()));
+                envelope.setTimestamp(node.path("timestamp").asLong(envelope.getTimestamp()));
+                logger.debug("Upgraded legacy webhook message: type={}, requestId={}", type, envelope.getRequestId());
+                return envelope;
+            }
+            if (node.has("sonarProjectKey") && node.has("commitSha")) {
+                EventEnvelope envelope = new EventEnvelope(EventType.QUALITY_ANALYSIS, null,
+                    jsonMapper.treeToValue(node, EventType.QUALITY_ANALYSIS.getPayloadClass()));
+                envelope.setTimestamp(node.path("timestamp").asLong(envelope.getTimestamp()));
+                return envelope;
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 载荷所属的 GitLab 项目，用作延迟指标的标签
+     */
+    static String projectIdOf(Object payload) {
+        if (payload instanceof WebhookRequest) {
+            WebhookRequest.ProjectInfo project = ((WebhookRequest) payload).getProject();
+            return project != null && project.getId() != null ? project.getId().toString() : null;
+        }
+        if (payload instanceof SonarQubeAnalysisMessageListener.QualityAnalysisMessage) {
+            return ((SonarQubeAnalysisMessageListener.QualityAnalysisMessage) payload).getProjectId();
+        }
+        return null;
+    }
+
+    public WireFormat getProducerFormat() {
+        return producerFormat;
+    }
+
+    private ObjectMapper mapper(WireFormat format) {
+        return format == WireFormat.SMILE ? smileMapper : jsonMapper;
+    }
+}
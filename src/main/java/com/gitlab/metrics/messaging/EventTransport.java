@@ -0,0 +1,32 @@
+package com.gitlab.metrics.messaging;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 事件传输
+ * 业务代码只依赖这个接口发布事件，由 app.messaging.transport 决定事件经 RabbitMQ（rabbitmq，默认）
+ * 还是在进程内（in-process）投递给监听器；两种方式下监听器的方法签名和路由（队列、交换机绑定）相同。
+ * future 在事件被接收（broker 确认、写入本地磁盘队列或进入进程内队列）后正常完成，
+ * 失败时以 EventPublishException 结束
+ */
+public interface EventTransport {
+
+    /**
+     * 经默认交换机发布到指定队列
+     */
+    default CompletableFuture<Void> publishToQueue(String queueName, Object message) {
+        return publish("", queueName, message);
+    }
+
+    /**
+     * 按交换机和路由键发布事件
+     */
+    CompletableFuture<Void> publish(String exchange, String routingKey, Object message);
+
+    /**
+     * 传输已接近容量上限，入口应暂停接收新事件；默认不限制
+     */
+    default boolean isSaturated() {
+        return false;
+    }
+}
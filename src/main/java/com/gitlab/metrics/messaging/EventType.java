@@ -0,0 +1,60 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.dto.webhook.IssueEventRequest;
+import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.service.SonarQubeAnalysisMessageListener;
+
+/**
+ * 消息事件类型
+ * 作为信封中的类型标识写入消息，消费端据此把载荷直接反序列化为对应的类型；
+ * 标识与 GitLab 的 object_kind 保持一致，新增类型只能追加，已发布的标识不能修改
+ */
+public enum EventType {
+
+    PUSH("push", PushEventRequest.class),
+    MERGE_REQUEST("merge_request", MergeRequestEventRequest.class),
+    ISSUE("issue", IssueEventRequest.class),
+    QUALITY_ANALYSIS("quality_analysis", SonarQubeAnalysisMessageListener.QualityAnalysisMessage.class);
+
+    private final String wireName;
+    private final Class<?> payloadClass;
+
+    EventType(String wireName, Class<?> payloadClass) {
+        this.wireName = wireName;
+        this.payloadClass = payloadClass;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    public Class<?> getPayloadClass() {
+        return payloadClass;
+    }
+
+    /**
+     * 按消息中的类型标识查找，未知标识返回 null
+     */
+    public static EventType fromWireName(String wireName) {
+        for (EventType type : values()) {
+            if (type.wireName.equals(wireName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按载荷类型查找
+     */
+    public static EventType forPayload(Object payload) {
+        for (EventType type : values()) {
+            if (type.payloadClass.isInstance(payload)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported event payload: "
+            + (payload != null ? payload.getClass().getName() : "null"));
+    }
+}
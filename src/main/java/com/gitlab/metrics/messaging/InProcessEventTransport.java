@@ -0,0 +1,518 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.InProcessTransportProperties;
+import com.gitlab.metrics.exception.EventPublishException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内事件传输，供不部署 RabbitMQ 的单节点安装使用
+ * 每个有监听器的队列一个 {@link RingBuffer} 和一组处理线程；事件对象直接交给监听器，不经过序列化。
+ * 路由与 RabbitMQ 模式一致：默认交换机按队列名投递，其它交换机按注册的绑定（精确路由键）投递。
+ * 队列已满时发布方最多等待 offerTimeoutMs，仍无空间则以 rejected 失败；占用率达到 saturationRatio 时
+ * {@link #isSaturated()} 返回 true，webhook 入口据此拒绝新请求。
+ * 监听器抛出异常时事件按指数退避延迟后重新入队，处理 maxAttempts 次仍失败则转入内存中的 parking lot，
+ * 可通过 ParkingLotService 查看、重放或删除；parking lot 满时淘汰最早的事件并计入 dropped。
+ * 事件（包括等待重试和停放的事件）只在内存中，进程退出时会丢失
+ */
+public class InProcessEventTransport implements EventTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(InProcessEventTransport.class);
+
+    private static final String DEFAULT_EXCHANGE = "";
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final InProcessTransportProperties properties;
+    private final PipelineLagRecorder pipelineLagRecorder;
+    private final LaneLatencyRecorder laneLatencyRecorder;
+    private final QueueLoadTracker queueLoadTracker;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, String> bindings = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<ParkedEvent> parkingLot = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger parkedSize = new AtomicInteger();
+    private final AtomicInteger pendingRetries = new AtomicInteger();
+    private final ScheduledExecutorService retryScheduler;
+
+    private final Counter rejectedCounter;
+    private final Counter retriedCounter;
+    private final Counter parkedCounter;
+    private final Counter droppedCounter;
+
+    private volatile boolean running;
+
+    public InProcessEventTransport(InProcessTransportProperties properties, PipelineLagRecorder pipelineLagRecorder,
+                                   LaneLatencyRecorder laneLatencyRecorder, QueueLoadTracker queueLoadTracker,
+                                   MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.pipelineLagRecorder = pipelineLagRecorder;
+        this.laneLatencyRecorder = laneLatencyRecorder;
+        this.queueLoadTracker = queueLoadTracker;
+        this.meterRegistry = meterRegistry;
+        rejectedCounter = Counter.builder("messaging.inprocess.rejected")
+            .description("Events not accepted because the queue stayed full")
+            .register(meterRegistry);
+        retriedCounter = Counter.builder("messaging.inprocess.retried").register(meterRegistry);
+        parkedCounter = Counter.builder("messaging.inprocess.parked")
+            .description("Events moved to the in-process parking lot after maxAttempts failures")
+            .register(meterRegistry);
+        droppedCounter = Counter.builder("messaging.inprocess.dropped")
+            .description("Parked events evicted because the in-process parking lot was full")
+            .register(meterRegistry);
+        Gauge.builder("messaging.inprocess.parking.lot", parkedSize, AtomicInteger::get)
+            .description("Events waiting in the in-process parking lot")
+            .register(meterRegistry);
+        Gauge.builder("messaging.inprocess.retry.pending", pendingRetries, AtomicInteger::get)
+            .description("Failed events waiting for their backoff delay before being requeued")
+            .register(meterRegistry);
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inprocess-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 注册队列的监听器，须在 {@link #start()} 之前调用；同一队列只能有一个监听器
+     */
+    public void register(String queue, Listener listener) {
+        if (running) {
+            throw new IllegalStateException("Listeners must be registered before the transport starts");
+        }
+        Lane lane = new Lane(queue, listener, new RingBuffer<>(properties.getQueueCapacity()));
+        if (lanes.putIfAbsent(queue, lane) != null) {
+            throw new IllegalStateException("Queue already has an in-process listener: " + queue);
+        }
+        Gauge.builder("messaging.inprocess.depth", lane.buffer, RingBuffer::size)
+            .description("Events waiting in the in-process queue")
+            .tag("queue", queue)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 把交换机上的路由键绑定到队列，对应 RabbitMQ 模式下的 Binding
+     */
+    public void bind(String exchange, String routingKey, String queue) {
+        bindings.put(bindingKey(exchange, routingKey), queue);
+    }
+
+    /**
+     * 为每个队列启动处理线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        int workers = Math.max(1, properties.getWorkersPerQueue());
+        for (Lane lane : lanes.values()) {
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(() -> work(lane), "inprocess-" + lane.queue + "-" + i);
+                thread.setDaemon(true);
+                lane.workers.add(thread);
+                thread.start();
+            }
+        }
+        logger.info("In-process event transport started: queues={}, workersPerQueue={}, capacity={}",
+            lanes.keySet(), workers, properties.getQueueCapacity());
+    }
+
+    @Override
+    public CompletableFuture<Void> publishToQueue(String queueName, Object message) {
+        return publish(DEFAULT_EXCHANGE, queueName, message);
+    }
+
+    /**
+     * 事件进入目标队列后 future 正常完成；没有监听器的路由以 returned 失败，队列持续已满时以 rejected 失败
+     */
+    @Override
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new EventPublishException("shutdown", 0, "In-process transport is not running"));
+            return future;
+        }
+        String queue = DEFAULT_EXCHANGE.equals(exchange) ? routingKey : bindings.get(bindingKey(exchange, routingKey));
+        Lane lane = queue != null ? lanes.get(queue) : null;
+        if (lane == null) {
+            future.completeExceptionally(new EventPublishException("returned", 0,
+                "No in-process listener for exchange=" + exchange + ", routingKey=" + routingKey));
+            return future;
+        }
+        Delivery delivery = new Delivery(message, toProperties(queue, message));
+        if (!offer(lane, delivery, TimeUnit.MILLISECONDS.toNanos(properties.getOfferTimeoutMs()))) {
+            rejectedCounter.increment();
+            future.completeExceptionally(new EventPublishException("rejected", 0,
+                "In-process queue full: " + queue + " (" + lane.buffer.capacity() + " events)"));
+            return future;
+        }
+        future.complete(null);
+        return future;
+    }
+
+    /**
+     * 任一队列占用率达到 saturationRatio 时返回 true
+     */
+    @Override
+    public boolean isSaturated() {
+        for (Lane lane : lanes.values()) {
+            if (lane.buffer.size() >= lane.buffer.capacity() * properties.getSaturationRatio()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 队列中等待处理的事件数，未注册的队列返回 0
+     */
+    public int getDepth(String queue) {
+        Lane lane = lanes.get(queue);
+        return lane != null ? lane.buffer.size() : 0;
+    }
+
+    /**
+     * parking lot 中的事件数
+     */
+    public int getParkedCount() {
+        return parkedSize.get();
+    }
+
+    /**
+     * 查看停放的事件，按停放先后排列
+     *
+     * @param queue 只看该队列的事件，为空时不筛选
+     */
+    public List<ParkedEvent> getParked(String queue, int limit) {
+        List<ParkedEvent> result = new ArrayList<>();
+        for (ParkedEvent parked : parkingLot) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (queue == null || queue.equals(parked.queue)) {
+                result.add(parked);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把停放的事件重新投递到原队列并重置处理次数；原队列已满时停止，剩余事件留在 parking lot
+     *
+     * @return 重放的条数
+     */
+    public int replayParked(String queue, int limit) {
+        if (!running) {
+            return 0;
+        }
+        int replayed = 0;
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getOfferTimeoutMs());
+        for (ParkedEvent parked : getParked(queue, limit)) {
+            Lane lane = lanes.get(parked.queue);
+            if (lane == null || !parkingLot.remove(parked)) {
+                continue;
+            }
+            parkedSize.decrementAndGet();
+            parked.delivery.attempts = 0;
+            if (!offer(lane, parked.delivery, timeoutNanos)) {
+                parkingLot.addFirst(parked);
+                parkedSize.incrementAndGet();
+                break;
+            }
+            replayed++;
+        }
+        logger.info("Replayed {} parked in-process event(s){}", replayed, queue != null ? " to " + queue : "");
+        return replayed;
+    }
+
+    /**
+     * 删除停放的事件
+     *
+     * @return 删除的条数
+     */
+    public int purgeParked(String queue, int limit) {
+        int purged = 0;
+        for (ParkedEvent parked : getParked(queue, limit)) {
+            if (parkingLot.remove(parked)) {
+                parkedSize.decrementAndGet();
+                purged++;
+            }
+        }
+        logger.info("Purged {} parked in-process event(s){}", purged, queue != null ? " from " + queue : "");
+        return purged;
+    }
+
+    /**
+     * 停止接收新事件，等待队列中剩余事件处理完，超时后剩余事件和等待重试的事件丢弃
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        retryScheduler.shutdownNow();
+        int abandonedRetries = pendingRetries.getAndSet(0);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getShutdownTimeoutMs());
+        try {
+            for (Lane lane : lanes.values()) {
+                for (Thread worker : lane.workers) {
+                    worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int abandoned = 0;
+        for (Lane lane : lanes.values()) {
+            for (Thread worker : lane.workers) {
+                worker.interrupt();
+            }
+            while (lane.buffer.poll() != null) {
+                abandoned++;
+            }
+        }
+        if (abandoned > 0 || abandonedRetries > 0 || parkedSize.get() > 0) {
+            logger.error("In-process event transport stopped with {} unprocessed, {} awaiting retry and {} parked events",
+                abandoned, abandonedRetries, parkedSize.get());
+        } else {
+            logger.info("In-process event transport stopped, all events processed");
+        }
+    }
+
+    private void work(Lane lane) {
+        long idleParkNanos = MIN_IDLE_PARK_NANOS;
+        while (!Thread.currentThread().isInterrupted()) {
+            Delivery delivery = lane.buffer.poll();
+            if (delivery == null) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(idleParkNanos);
+                idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+                continue;
+            }
+            idleParkNanos = MIN_IDLE_PARK_NANOS;
+            process(lane, delivery);
+        }
+    }
+
+    private void process(Lane lane, Delivery delivery) {
+        delivery.attempts++;
+        long start = System.nanoTime();
+        try {
+            pipelineLagRecorder.track(delivery.properties, () -> {
+                lane.listener.onMessage(delivery.message);
+                return null;
+            });
+            Date publishedAt = delivery.properties.getTimestamp();
+            if (publishedAt != null) {
+                laneLatencyRecorder.record(lane.queue, System.currentTimeMillis() - publishedAt.getTime());
+            }
+        } catch (Throwable e) {
+            retryOrPark(lane, delivery, e);
+        } finally {
+            queueLoadTracker.record(lane.queue, 1, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 未用尽处理次数时按退避延迟安排重新入队，否则转入 parking lot
+     */
+    private void retryOrPark(Lane lane, Delivery delivery, Throwable error) {
+        long now = System.currentTimeMillis();
+        if (delivery.firstFailedAt == 0) {
+            delivery.firstFailedAt = now;
+        }
+        delivery.lastFailedAt = now;
+        if (delivery.attempts < Math.max(1, properties.getMaxAttempts()) && running) {
+            long delayMs = properties.retryDelayMs(delivery.attempts);
+            if (scheduleRequeue(lane, delivery, delayMs)) {
+                retriedCounter.increment();
+                logger.warn("In-process listener failed, event requeued in {} ms: queue={}, attempt={}, error={}",
+                    delayMs, lane.queue, delivery.attempts, error.getMessage());
+                return;
+            }
+        }
+        park(lane, delivery, error);
+    }
+
+    private boolean scheduleRequeue(Lane lane, Delivery delivery, long delayMs) {
+        pendingRetries.incrementAndGet();
+        try {
+            retryScheduler.schedule(() -> requeue(lane, delivery), delayMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingRetries.decrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * 退避到期后重新入队；队列已满时再等一个初始退避周期，不计入处理次数
+     */
+    private void requeue(Lane lane, Delivery delivery) {
+        if (!running) {
+            return;
+        }
+        if (lane.buffer.offer(delivery)) {
+            pendingRetries.decrementAndGet();
+            return;
+        }
+        pendingRetries.decrementAndGet();
+        if (!scheduleRequeue(lane, delivery, properties.retryDelayMs(1))) {
+            park(lane, delivery, new IllegalStateException("In-process queue full while requeueing"));
+        }
+    }
+
+    private void park(Lane lane, Delivery delivery, Throwable error) {
+        parkingLot.addLast(new ParkedEvent(lane.queue, delivery, error));
+        parkedCounter.increment();
+        logger.error("In-process listener failed, event parked: queue={}, attempts={}, requestId={}",
+            lane.queue, delivery.attempts, requestIdOf(delivery.message), error);
+        if (parkedSize.incrementAndGet() > Math.max(1, properties.getParkingLotCapacity())) {
+            ParkedEvent evicted = parkingLot.pollFirst();
+            if (evicted != null) {
+                parkedSize.decrementAndGet();
+                droppedCounter.increment();
+                logger.error("In-process parking lot full, oldest event dropped: queue={}, requestId={}",
+                    evicted.queue, evicted.getRequestId());
+            }
+        }
+    }
+
+    /**
+     * 队列已满时自旋后逐步退避等待，直到超时
+     */
+    private boolean offer(Lane lane, Delivery delivery, long timeoutNanos) {
+        if (lane.buffer.offer(delivery)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        long parkNanos = MIN_IDLE_PARK_NANOS;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+            if (lane.buffer.offer(delivery)) {
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按 EventEnvelopeMessageConverter 的规则生成消息属性，监听端的延迟统计不区分传输方式
+     */
+    private static MessageProperties toProperties(String queue, Object message) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue(queue);
+        if (message instanceof EventEnvelope) {
+            EventEnvelope envelope = (EventEnvelope) message;
+            properties.setTimestamp(new Date(envelope.getTimestamp()));
+            properties.setHeader(EventEnvelopeMessageConverter.VERSION_HEADER, envelope.getVersion());
+            if (envelope.getType() != null) {
+                properties.setHeader(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER, envelope.getType().getWireName());
+            }
+            String projectId = EventEnvelopeMessageConverter.projectIdOf(envelope.getPayload());
+            if (projectId != null) {
+                properties.setHeader(EventEnvelopeMessageConverter.PROJECT_HEADER, projectId);
+            }
+            if (envelope.getReceivedAt() > 0) {
+                PipelineStage.RECEIVED.stamp(properties, envelope.getReceivedAt());
+            }
+        }
+        PipelineStage.PUBLISHED.stamp(properties, System.currentTimeMillis());
+        return properties;
+    }
+
+    private static String requestIdOf(Object message) {
+        return message instanceof EventEnvelope ? ((EventEnvelope) message).getRequestId() : null;
+    }
+
+    private static String bindingKey(String exchange, String routingKey) {
+        return exchange + "/" + routingKey;
+    }
+
+    /**
+     * 队列的监听器，与 @RabbitListener 方法的契约相同：正常返回即处理成功，抛出异常触发重试
+     */
+    public interface Listener {
+        void onMessage(Object message) throws Exception;
+    }
+
+    private static final class Lane {
+        private final String queue;
+        private final Listener listener;
+        private final RingBuffer<Delivery> buffer;
+        private final List<Thread> workers = new ArrayList<>();
+
+        private Lane(String queue, Listener listener, RingBuffer<Delivery> buffer) {
+            this.queue = queue;
+            this.listener = listener;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Delivery {
+        private final Object message;
+        private final MessageProperties properties;
+        private volatile int attempts;
+        private volatile long firstFailedAt;
+        private volatile long lastFailedAt;
+
+        private Delivery(Object message, MessageProperties properties) {
+            this.message = message;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * parking lot 中的事件及最后一次失败的信息
+     */
+    public static final class ParkedEvent {
+        private final String queue;
+        private final Delivery delivery;
+        private final Throwable error;
+        private final int attempts;
+
+        private ParkedEvent(String queue, Delivery delivery, Throwable error) {
+            this.queue = queue;
+            this.delivery = delivery;
+            this.error = error;
+            this.attempts = delivery.attempts;
+        }
+
+        public String getQueue() { return queue; }
+        public Object getMessage() { return delivery.message; }
+        public String getRequestId() { return requestIdOf(delivery.message); }
+        public int getAttempts() { return attempts; }
+        public long getFirstFailedAt() { return delivery.firstFailedAt; }
+        public long getLastFailedAt() { return delivery.lastFailedAt; }
+        public Throwable getError() { return error; }
+    }
+}
@@ -0,0 +1,90 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.PriorityLaneProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.amqp.core.Message;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按优先级通道统计端到端延迟
+ * 作为监听容器的 advice，在消息处理成功后按发布时间（消息的 timestamp 属性，由 EventEnvelopeMessageConverter 写入）
+ * 记录从发布到处理完成的时间；直方图以通道的 SLO 作为分桶边界，超过 SLO 的另外计数。
+ * 经过延迟重试的消息仍按首次发布时间计算
+ */
+public class LaneLatencyRecorder implements MethodInterceptor {
+
+    private final PriorityLaneProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LaneMeters> meters = new ConcurrentHashMap<>();
+
+    public LaneLatencyRecorder(PriorityLaneProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        Object data = arguments.length > 1 ? arguments[1] : null;
+        Object result = invocation.proceed();
+        if (data instanceof Message) {
+            Message message = (Message) data;
+            Date publishedAt = message.getMessageProperties().getTimestamp();
+            String queue = message.getMessageProperties().getConsumerQueue();
+            if (publishedAt != null && queue != null) {
+                record(queue, System.currentTimeMillis() - publishedAt.getTime());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录一条消息从发布到处理完成的延迟
+     */
+    public void record(String queue, long latencyMs) {
+        LaneMeters laneMeters = meters.computeIfAbsent(queue, this::createMeters);
+        long latency = Math.max(0, latencyMs);
+        laneMeters.latency.record(latency, TimeUnit.MILLISECONDS);
+        if (latency > laneMeters.sloMs) {
+            laneMeters.breached.increment();
+        }
+    }
+
+    private LaneMeters createMeters(String queue) {
+        PriorityLane lane = PriorityLane.forQueue(queue);
+        long sloMs = properties.sloFor(lane);
+        Timer latency = Timer.builder("messaging.lane.latency")
+            .description("Time from publish to successful processing")
+            .tag("lane", lane.getTag())
+            .tag("queue", queue)
+            .serviceLevelObjectives(Duration.ofMillis(sloMs))
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        Counter breached = Counter.builder("messaging.lane.slo.breached")
+            .tag("lane", lane.getTag())
+            .tag("queue", queue)
+            .register(meterRegistry);
+        return new LaneMeters(sloMs, latency, breached);
+    }
+
+    private static final class LaneMeters {
+        private final long sloMs;
+        private final Timer latency;
+        private final Counter breached;
+
+        LaneMeters(long sloMs, Timer latency, Counter breached) {
+            this.sloMs = sloMs;
+            this.latency = latency;
+            this.breached = breached;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.ListenerAutoscalerProperties;
+import com.gitlab.metrics.config.ListenerAutoscalerProperties.Bounds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监听器并发与预取数自动伸缩
+ * 每个周期读取队列深度和 QueueLoadTracker 的负载，按到达速率、积压和平均处理耗时计算所需消费者数：
+ * 所需 = 到达速率 × 平均耗时 / 目标利用率 + 积压 × 平均耗时 / 目标消化时间。
+ * 扩容立即生效但每次最多翻倍，缩容需连续 scaleDownTicks 个周期都低于当前值，每次最多减半；
+ * 预取数按每个消费者持有约 prefetchWindowMs 的工作量计算。结果都限制在队列的配置范围内
+ */
+public class ListenerAutoscaler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerAutoscaler.class);
+
+    /**
+     * 队列深度来源，无法获取时返回 -1
+     */
+    public interface DepthProbe {
+        long depth(String queue);
+    }
+
+    /**
+     * 把伸缩结果应用到监听容器
+     */
+    public interface ConcurrencyControl {
+        void apply(String queue, int consumers, int prefetch);
+    }
+
+    private final ListenerAutoscalerProperties properties;
+    private final QueueLoadTracker tracker;
+    private final DepthProbe depthProbe;
+    private final ConcurrencyControl control;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, QueueState> states = new LinkedHashMap<>();
+
+    private long lastTickNanos = System.nanoTime();
+
+    public ListenerAutoscaler(ListenerAutoscalerProperties properties, QueueLoadTracker tracker,
+                              DepthProbe depthProbe, ConcurrencyControl control, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.tracker = tracker;
+        this.depthProbe = depthProbe;
+        this.control = control;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 登记队列和容器当前的设置；超出配置范围时立即调整到范围内
+     */
+    public synchronized void register(String queue, int consumers, int prefetch) {
+        if (states.containsKey(queue)) {
+            return;
+        }
+        Bounds bounds = properties.boundsFor(queue);
+        QueueState state = new QueueState(queue, bounds);
+        state.consumers = clamp(consumers, bounds.getMinConsumers(), bounds.getMaxConsumers());
+        state.prefetch = clamp(prefetch, bounds.getMinPrefetch(), bounds.getMaxPrefetch());
+        states.put(queue, state);
+
+        Gauge.builder("messaging.autoscaler.consumers", state, s -> s.consumers).tag("queue", queue).register(meterRegistry);
+        Gauge.builder("messaging.autoscaler.prefetch", state, s -> s.prefetch).tag("queue", queue).register(meterRegistry);
+        Gauge.builder("messaging.autoscaler.queue.depth", state, s -> s.depth).tag("queue", queue).register(meterRegistry);
+        Gauge.builder("messaging.autoscaler.utilization", state, s -> s.utilization).tag("queue", queue).register(meterRegistry);
+        Gauge.builder("messaging.autoscaler.processing.avg", state, s -> s.avgNanos / 1_000_000.0)
+            .tag("queue", queue)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+
+        if (state.consumers != consumers || state.prefetch != prefetch) {
+            control.apply(queue, state.consumers, state.prefetch);
+        }
+        logger.info("Autoscaling listener queue {}: consumers {} ({}-{}), prefetch {} ({}-{})", queue,
+            state.consumers, bounds.getMinConsumers(), bounds.getMaxConsumers(),
+            state.prefetch, bounds.getMinPrefetch(), bounds.getMaxPrefetch());
+    }
+
+    /**
+     * 按距上次调用的实际间隔执行一轮伸缩
+     */
+    public synchronized List<Decision> tick() {
+        long now = System.nanoTime();
+        long elapsedMs = Math.max(1, (now - lastTickNanos) / 1_000_000);
+        lastTickNanos = now;
+        return tick(elapsedMs);
+    }
+
+    /**
+     * 按给定间隔执行一轮伸缩，返回发生变化的决策
+     */
+    public synchronized List<Decision> tick(long elapsedMs) {
+        List<Decision> changes = new ArrayList<>();
+        for (QueueState state : states.values()) {
+            try {
+                Decision decision = evaluate(state, tracker.drain(state.queue), depthProbe.depth(state.queue), elapsedMs);
+                if (decision.isChanged()) {
+                    control.apply(state.queue, decision.getConsumers(), decision.getPrefetch());
+                    record(state, decision);
+                    changes.add(decision);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Autoscaler tick failed for queue {}: {}", state.queue, e.getMessage());
+            }
+        }
+        return changes;
+    }
+
+    public synchronized int getConsumers(String queue) {
+        QueueState state = states.get(queue);
+        return state != null ? state.consumers : 0;
+    }
+
+    public synchronized int getPrefetch(String queue) {
+        QueueState state = states.get(queue);
+        return state != null ? state.prefetch : 0;
+    }
+
+    Decision evaluate(QueueState state, QueueLoadTracker.Snapshot load, long depth, long elapsedMs) {
+        Bounds bounds = state.bounds;
+        double intervalNanos = elapsedMs * 1_000_000.0;
+        if (load.getProcessed() > 0) {
+            double average = (double) load.getBusyNanos() / load.getProcessed();
+            // 平滑一下，避免单个周期里的慢消息把预取数压到底
+            state.avgNanos = state.avgNanos > 0 ? (state.avgNanos + average) / 2 : average;
+        }
+        double busyShare = state.consumers > 0 ? load.getBusyNanos() / (intervalNanos * state.consumers) : 0;
+        double activeShare = state.consumers > 0 ? (double) load.getActive() / state.consumers : 0;
+        state.utilization = Math.min(1.0, Math.max(busyShare, activeShare));
+
+        int consumers = state.consumers;
+        String reason = "steady";
+        if (state.avgNanos > 0) {
+            double averageMs = state.avgNanos / 1_000_000.0;
+            double arrivals = load.getProcessed();
+            if (depth >= 0 && state.depth >= 0) {
+                arrivals += depth - state.depth;
+            }
+            double arrivalsPerMs = Math.max(0, arrivals) / elapsedMs;
+            double needed = arrivalsPerMs * averageMs / properties.getTargetUtilization();
+            if (depth > 0) {
+                needed += depth * averageMs / properties.getTargetDrainMs();
+            }
+            int desired = clamp((int) Math.ceil(needed), bounds.getMinConsumers(), bounds.getMaxConsumers());
+
+            if (desired > state.consumers) {
+                consumers = Math.min(desired, Math.max(state.consumers * 2, state.consumers + 1));
+                state.lowTicks = 0;
+                reason = String.format("need %.1f consumers (depth %d, %.1f ms/msg)", needed, depth, averageMs);
+            } else if (desired < state.consumers) {
+                if (++state.lowTicks >= properties.getScaleDownTicks()) {
+                    consumers = Math.max(desired, state.consumers - Math.max(1, state.consumers / 2));
+                    state.lowTicks = 0;
+                    reason = String.format("need %.1f consumers for %d ticks", needed, properties.getScaleDownTicks());
+                }
+            } else {
+                state.lowTicks = 0;
+            }
+        }
+        state.depth = depth;
+
+        int prefetch = state.prefetch;
+        if (state.avgNanos > 0) {
+            long window = Math.round(properties.getPrefetchWindowMs() * 1_000_000.0 / state.avgNanos);
+            prefetch = clamp((int) Math.min(Integer.MAX_VALUE, window), bounds.getMinPrefetch(), bounds.getMaxPrefetch());
+        }
+
+        Decision decision = new Decision(state.queue, state.consumers, consumers, state.prefetch, prefetch,
+            depth, state.utilization, reason);
+        state.consumers = consumers;
+        state.prefetch = prefetch;
+        return decision;
+    }
+
+    private void record(QueueState state, Decision decision) {
+        if (decision.getConsumers() != decision.getPreviousConsumers()) {
+            String direction = decision.getConsumers() > decision.getPreviousConsumers() ? "up" : "down";
+            Counter.builder("messaging.autoscaler.decisions")
+                .tag("queue", state.queue)
+                .tag("action", direction)
+                .register(meterRegistry)
+                .increment();
+            logger.info("Scaling {} {}: consumers {} -> {}, utilization {}, {}", state.queue, direction,
+                decision.getPreviousConsumers(), decision.getConsumers(),
+                String.format("%.2f", decision.getUtilization()), decision.getReason());
+        }
+        if (decision.getPrefetch() != decision.getPreviousPrefetch()) {
+            Counter.builder("messaging.autoscaler.decisions")
+                .tag("queue", state.queue)
+                .tag("action", "prefetch")
+                .register(meterRegistry)
+                .increment();
+            logger.info("Prefetch for {}: {} -> {}", state.queue, decision.getPreviousPrefetch(), decision.getPrefetch());
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * 单个队列的伸缩状态
+     */
+    static final class QueueState {
+        private final String queue;
+        private final Bounds bounds;
+        private volatile int consumers;
+        private volatile int prefetch;
+        private volatile long depth = -1;
+        private volatile double utilization;
+        private volatile double avgNanos;
+        private int lowTicks;
+
+        QueueState(String queue, Bounds bounds) {
+            this.queue = queue;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * 一轮伸缩的结果
+     */
+    public static class Decision {
+        private final String queue;
+        private final int previousConsumers;
+        private final int consumers;
+        private final int previousPrefetch;
+        private final int prefetch;
+        private final long depth;
+        private final double utilization;
+        private final String reason;
+
+        public Decision(String queue, int previousConsumers, int consumers, int previousPrefetch, int prefetch,
+                        long depth, double utilization, String reason) {
+            this.queue = queue;
+            this.previousConsumers = previousConsumers;
+            this.consumers = consumers;
+            this.previousPrefetch = previousPrefetch;
+            this.prefetch = prefetch;
+            this.depth = depth;
+            this.utilization = utilization;
+            this.reason = reason;
+        }
+
+        public boolean isChanged() {
+            return consumers != previousConsumers || prefetch != previousPrefetch;
+        }
+
+        public String getQueue() { return queue; }
+        public int getPreviousConsumers() { return previousConsumers; }
+        public int getConsumers() { return consumers; }
+        public int getPreviousPrefetch() { return previousPrefetch; }
+        public int getPrefetch() { return prefetch; }
+        public long getDepth() { return depth; }
+        public double getUtilization() { return utilization; }
+        public String getReason() { return reason; }
+    }
+}
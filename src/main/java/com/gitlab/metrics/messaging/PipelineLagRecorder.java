@@ -0,0 +1,222 @@
+package com.gitlab.metrics.messaging;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按管道阶段统计从 webhook 到达到数据落库的延迟
+ * 作为监听容器的 advice，读取消息头中的阶段时间戳（见 {@link PipelineStage}），在监听器成功返回后记录：
+ * <ul>
+ *   <li>pipeline.stage.lag：每个阶段相对上一个已记录阶段的耗时</li>
+ *   <li>pipeline.lag：从到达到终点阶段的端到端耗时；质量分析事件的终点是 quality_analyzed，其余是 persisted</li>
+ *   <li>pipeline.lag.project：按项目的端到端耗时</li>
+ *   <li>pipeline.lag.current：每个队列最近一条消息开始处理时距到达的时间，队列空闲后归零</li>
+ * </ul>
+ * 前两项按阶段和事件类型发布直方图；按项目的计时器只有次数、总和与最大值，不发布直方图，
+ * 避免直方图桶数乘以项目数造成时间序列膨胀。项目标签最多保留 maxProjectTags 个，之后出现的项目归入 other。
+ * 处理期间在当前线程暴露消息的到达时间，监听器内派生的事件（如发件箱里的质量分析事件）据此沿用原始到达时间。
+ */
+public class PipelineLagRecorder implements MethodInterceptor {
+
+    private static final String UNKNOWN = "unknown";
+    private static final String OTHER_PROJECTS = "other";
+
+    /**
+     * 队列没有正在处理的消息且超过该时间没有完成处理时，pipeline.lag.current 归零
+     */
+    static final long IDLE_RESET_MS = 5000;
+
+    private static final ThreadLocal<Long> CURRENT_RECEIVED_AT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final int maxProjectTags;
+    private final Set<String> projectTags = ConcurrentHashMap.newKeySet();
+    private final Map<String, QueueLag> currentLag = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public PipelineLagRecorder(MeterRegistry meterRegistry, int maxProjectTags) {
+        this.meterRegistry = meterRegistry;
+        this.maxProjectTags = maxProjectTags;
+    }
+
+    /**
+     * 当前线程正在处理的消息的 webhook 到达时间，不在监听器内或消息没有到达时间时返回 0
+     */
+    public static long currentReceivedAt() {
+        Long receivedAt = CURRENT_RECEIVED_AT.get();
+        return receivedAt != null ? receivedAt : 0;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        Object data = arguments.length > 1 ? arguments[1] : null;
+        if (!(data instanceof Message)) {
+            return invocation.proceed();
+        }
+        return track(((Message) data).getMessageProperties(), invocation::proceed);
+    }
+
+    /**
+     * 执行一次消息处理，成功后按消息头记录各阶段延迟；监听容器和进程内传输共用
+     */
+    public Object track(MessageProperties properties, Handler handler) throws Throwable {
+        long consumedAt = System.currentTimeMillis();
+        long receivedAt = PipelineStage.RECEIVED.read(properties);
+        String queue = properties.getConsumerQueue() != null ? properties.getConsumerQueue() : UNKNOWN;
+        long origin = receivedAt > 0 ? receivedAt : PipelineStage.PUBLISHED.read(properties);
+        QueueLag queueLag = currentLag(queue);
+        queueLag.start(origin > 0 ? Math.max(0, consumedAt - origin) : -1);
+
+        Long previous = CURRENT_RECEIVED_AT.get();
+        CURRENT_RECEIVED_AT.set(receivedAt);
+        Object result;
+        try {
+            result = handler.handle();
+        } finally {
+            queueLag.finish(System.currentTimeMillis());
+            if (previous != null) {
+                CURRENT_RECEIVED_AT.set(previous);
+            } else {
+                CURRENT_RECEIVED_AT.remove();
+            }
+        }
+        record(properties, consumedAt, System.currentTimeMillis());
+        return result;
+    }
+
+    /**
+     * 记录一条处理成功的消息各阶段的耗时
+     */
+    void record(MessageProperties properties, long consumedAt, long completedAt) {
+        Object type = properties.getHeaders().get(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER);
+        String eventType = type != null ? type.toString() : UNKNOWN;
+        PipelineStage terminal = EventType.QUALITY_ANALYSIS.getWireName().equals(eventType)
+            ? PipelineStage.QUALITY_ANALYZED : PipelineStage.PERSISTED;
+        String project = projectTag(properties.getHeaders().get(EventEnvelopeMessageConverter.PROJECT_HEADER));
+
+        long receivedAt = PipelineStage.RECEIVED.read(properties);
+        long last = receivedAt;
+        for (PipelineStage stage : new PipelineStage[] {PipelineStage.JOURNALED, PipelineStage.PUBLISHED}) {
+            long at = stage.read(properties);
+            if (at > 0) {
+                last = recordStage(stage, last, at, eventType, project);
+            }
+        }
+        last = recordStage(PipelineStage.CONSUMED, last, consumedAt, eventType);
+        recordStage(terminal, last, completedAt, eventType);
+        if (receivedAt > 0) {
+            long lag = Math.max(0, completedAt - receivedAt);
+            timer("pipeline.lag", Tags.of("stage", terminal.getTag(), "event_type", eventType), true)
+                .record(lag, TimeUnit.MILLISECONDS);
+            timer("pipeline.lag.project", Tags.of("stage", terminal.getTag(), "project", project), false)
+                .record(lag, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 队列最近一条消息开始处理时距到达的时间，毫秒；没有到达时间的消息按发布时间计算，队列空闲时为 0
+     */
+    public long getCurrentLag(String queue) {
+        return getCurrentLag(queue, System.currentTimeMillis());
+    }
+
+    long getCurrentLag(String queue, long now) {
+        QueueLag lag = currentLag.get(queue);
+        return lag != null ? lag.value(now) : 0;
+    }
+
+    private long recordStage(PipelineStage stage, long previousAt, long at, String eventType) {
+        if (previousAt > 0) {
+            timer("pipeline.stage.lag", Tags.of("stage", stage.getTag(), "event_type", eventType), true)
+                .record(Math.max(0, at - previousAt), TimeUnit.MILLISECONDS);
+        }
+        return at;
+    }
+
+    private Timer timer(String name, Tags tags, boolean histogram) {
+        return timers.computeIfAbsent(name + tags, key -> {
+            Timer.Builder builder = Timer.builder(name)
+                .description(name.equals("pipeline.stage.lag")
+                    ? "Time spent reaching a pipeline stage" : "Time from webhook receipt to the final pipeline stage")
+                .tags(tags);
+            if (histogram) {
+                builder.publishPercentileHistogram();
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+
+    private QueueLag currentLag(String queue) {
+        return currentLag.computeIfAbsent(queue, key -> {
+            QueueLag lag = new QueueLag();
+            Gauge.builder("pipeline.lag.current", lag, l -> l.value(System.currentTimeMillis()))
+                .description("Age of the most recently consumed message when its processing started, 0 when idle")
+                .tag("queue", key)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+            return lag;
+        });
+    }
+
+    private String projectTag(Object projectId) {
+        if (projectId == null) {
+            return UNKNOWN;
+        }
+        String project = projectId.toString();
+        if (projectTags.contains(project)) {
+            return project;
+        }
+        synchronized (projectTags) {
+            if (projectTags.size() < maxProjectTags) {
+                projectTags.add(project);
+                return project;
+            }
+        }
+        return OTHER_PROJECTS;
+    }
+
+    /**
+     * 一个队列的当前延迟：有消息在处理或刚处理完时为最近一条消息的延迟，空闲超过 IDLE_RESET_MS 后为 0
+     */
+    private static final class QueueLag {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lag;
+        private volatile long lastCompletedAt;
+
+        private void start(long lagMs) {
+            inFlight.incrementAndGet();
+            if (lagMs >= 0) {
+                lag = lagMs;
+            }
+        }
+
+        private void finish(long now) {
+            lastCompletedAt = now;
+            inFlight.decrementAndGet();
+        }
+
+        private long value(long now) {
+            return inFlight.get() > 0 || now - lastCompletedAt < IDLE_RESET_MS ? lag : 0;
+        }
+    }
+
+    /**
+     * 被统计的一次消息处理
+     */
+    public interface Handler {
+        Object handle() throws Throwable;
+    }
+}
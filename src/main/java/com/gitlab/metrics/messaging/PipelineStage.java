@@ -0,0 +1,65 @@
+package com.gitlab.metrics.messaging;
+
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * 事件处理管道的阶段
+ * 前四个阶段的时间戳以 x-ts-&lt;阶段&gt; 消息头随消息传递（毫秒时间戳）；
+ * 持久化和质量分析是消费端的终点阶段，由 PipelineLagRecorder 在监听器成功返回时记录，不写入消息头
+ */
+public enum PipelineStage {
+
+    /** webhook 请求到达 */
+    RECEIVED("received"),
+    /** 写入发件箱或本地磁盘队列，直接发布的事件没有这一阶段 */
+    JOURNALED("journaled"),
+    /** 交给 broker */
+    PUBLISHED("published"),
+    /** 监听器开始处理 */
+    CONSUMED("consumed"),
+    /** 监听器处理完成，数据已落库 */
+    PERSISTED("persisted"),
+    /** 代码质量分析完成 */
+    QUALITY_ANALYZED("quality_analyzed");
+
+    private static final String HEADER_PREFIX = "x-ts-";
+
+    private final String tag;
+
+    PipelineStage(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getHeader() {
+        return HEADER_PREFIX + tag;
+    }
+
+    /**
+     * 在消息头中记录本阶段的时间戳，已有的值被覆盖
+     */
+    public void stamp(MessageProperties properties, long timestampMs) {
+        properties.setHeader(getHeader(), timestampMs);
+    }
+
+    /**
+     * 读取本阶段的时间戳；经 JSON 往返后消息头可能是 Integer 或字符串，缺失或无法解析时返回 0
+     */
+    public long read(MessageProperties properties) {
+        Object value = properties.getHeaders().get(getHeader());
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value != null) {
+            try {
+                return Long.parseLong(value.toString());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+}
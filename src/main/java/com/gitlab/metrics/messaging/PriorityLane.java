@@ -0,0 +1,41 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.RabbitMQConfig;
+
+/**
+ * 消息优先级通道
+ * 每个通道对应一组独立的队列和监听容器，通道之间按各自的消费者上限分配处理能力：
+ * 合并请求和 Issue 这类驱动实时判断的小事件走 INTERACTIVE，普通 push 走 STANDARD，
+ * 大批量导入的 push 和 SonarQube 拉取走 BULK，大事件再多也只占用 BULK 的消费者
+ */
+public enum PriorityLane {
+
+    INTERACTIVE,
+    STANDARD,
+    BULK;
+
+    public String getTag() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * 队列所属的通道
+     */
+    public static PriorityLane forQueue(String queue) {
+        if (queue == null) {
+            return STANDARD;
+        }
+        switch (queue) {
+            case RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE:
+            case RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE:
+            case RabbitMQConfig.ISSUE_ANALYSIS_QUEUE:
+                return INTERACTIVE;
+            case RabbitMQConfig.COMMIT_ANALYSIS_BULK_QUEUE:
+            case RabbitMQConfig.QUALITY_ANALYSIS_QUEUE:
+            case RabbitMQConfig.EFFICIENCY_ANALYSIS_QUEUE:
+                return BULK;
+            default:
+                return STANDARD;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.gitlab.metrics.messaging;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.amqp.core.Message;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按队列统计监听器负载
+ * 作为监听容器的 advice 包裹每次消息处理，累计处理条数、忙碌时间和正在处理的消息数，
+ * 供 ListenerAutoscaler 每个周期取走后计算利用率和平均处理耗时
+ */
+public class QueueLoadTracker implements MethodInterceptor {
+
+    private static final String UNKNOWN_QUEUE = "unknown";
+
+    private final Map<String, Load> loads = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        Object data = arguments.length > 1 ? arguments[1] : null;
+        Load load = loads.computeIfAbsent(queueOf(data), queue -> new Load());
+        int messages = data instanceof List ? ((List<?>) data).size() : 1;
+        load.active.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            load.busyNanos.add(System.nanoTime() - start);
+            load.processed.add(messages);
+            load.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * 取走并清零队列自上次调用以来的统计；正在处理的消息数不清零
+     */
+    public Snapshot drain(String queue) {
+        Load load = loads.computeIfAbsent(queue, key -> new Load());
+        return new Snapshot(load.processed.sumThenReset(), load.busyNanos.sumThenReset(), load.active.get());
+    }
+
+    /**
+     * 直接记录一次处理，供不经过监听容器的调用方和测试使用
+     */
+    public void record(String queue, int messages, long busyNanos) {
+        Load load = loads.computeIfAbsent(queue, key -> new Load());
+        load.processed.add(messages);
+        load.busyNanos.add(busyNanos);
+    }
+
+    private static String queueOf(Object data) {
+        Object first = data instanceof List && !((List<?>) data).isEmpty() ? ((List<?>) data).get(0) : data;
+        if (first instanceof Message) {
+            String queue = ((Message) first).getMessageProperties().getConsumerQueue();
+            if (queue != null) {
+                return queue;
+            }
+        }
+        return UNKNOWN_QUEUE;
+    }
+
+    private static final class Load {
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicInteger active = new AtomicInteger();
+    }
+
+    /**
+     * 一个统计周期的负载
+     */
+    public static class Snapshot {
+        private final long processed;
+        private final long busyNanos;
+        private final int active;
+
+        public Snapshot(long processed, long busyNanos, int active) {
+            this.processed = processed;
+            this.busyNanos = busyNanos;
+            this.active = active;
+        }
+
+        public long getProcessed() { return processed; }
+        public long getBusyNanos() { return busyNanos; }
+        public int getActive() { return active; }
+    }
+}
@@ -0,0 +1,352 @@
+package com.gitlab.metrics.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * 基于段文件的本地持久化 FIFO 队列
+ *
+ * 目录布局：
+ * <pre>
+ * 00000000000000000001.seg  记录：长度(int) CRC32(int) 数据
+ * 00000000000000000002.seg  当前段写满 segmentBytes 后切换到下一个段
+ * cursor                    已确认读到的位置：段序号(long) 段内偏移(long)
+ * </pre>
+ * 读取不移动游标，调用方处理成功后 {@link #acknowledge} 才推进并落盘；读完的段整体删除。
+ * 打开时从游标恢复，最后一个段末尾不完整或校验失败的记录（写入时进程退出）被截掉
+ */
+public class SegmentSpool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentSpool.class);
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String CURSOR_FILE = "cursor";
+    private static final int RECORD_HEADER = 8;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final boolean fsync;
+
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private FileChannel writer;
+    private long writeSegment;
+    private long writeOffset;
+    private long readSegment;
+    private long readOffset;
+    private long pendingRecords;
+    private long diskBytes;
+
+    /**
+     * @param segmentBytes 单个段文件的目标大小
+     * @param maxBytes 所有段文件的总大小上限，超过后拒绝写入
+     * @param fsync 每条记录写入后是否强制刷盘
+     */
+    public SegmentSpool(Path directory, long segmentBytes, long maxBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @throws IOException 写入失败或已超过总大小上限
+     */
+    public synchronized void append(byte[] data) throws IOException {
+        int recordLength = RECORD_HEADER + data.length;
+        if (diskBytes + recordLength > maxBytes) {
+            throw new IOException("Spool full: " + diskBytes + " bytes on disk, limit " + maxBytes);
+        }
+        if (writeOffset > 0 && writeOffset + recordLength > segmentBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+        buffer.putInt(data.length).putInt((int) crc.getValue()).put(data);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            writer.write(buffer, writeOffset + buffer.position());
+        }
+        if (fsync) {
+            writer.force(false);
+        }
+        writeOffset += recordLength;
+        diskBytes += recordLength;
+        pendingRecords++;
+    }
+
+    /**
+     * 从游标处按顺序读取最多 max 条记录，不推进游标
+     */
+    public synchronized List<Entry> peek(int max) throws IOException {
+        if (pendingRecords == 0 || max <= 0) {
+            return Collections.emptyList();
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(max, (int) Math.min(pendingRecords, Integer.MAX_VALUE)));
+        long segment = readSegment;
+        long offset = readOffset;
+        while (entries.size() < max && segment <= writeSegment) {
+            Path path = segmentPath(segment);
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long end = segment == writeSegment ? writeOffset : channel.size();
+                    while (entries.size() < max && offset < end) {
+                        byte[] data = readRecord(channel, offset, end);
+                        if (data == null) {
+                            throw new IOException("Corrupt spool record in " + path + " at offset " + offset);
+                        }
+                        offset += RECORD_HEADER + data.length;
+                        entries.add(new Entry(data, segment, offset));
+                    }
+                }
+            }
+            if (entries.size() < max) {
+                Long next = segments.higher(segment);
+                if (next == null) {
+                    break;
+                }
+                segment = next;
+                offset = 0;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 确认 entries（必须是 {@link #peek} 返回的前缀）已处理，推进游标并删除读完的段
+     */
+    public synchronized void acknowledge(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Entry last = entries.get(entries.size() - 1);
+        readSegment = last.segment;
+        readOffset = last.nextOffset;
+        pendingRecords = Math.max(0, pendingRecords - entries.size());
+        writeCursor();
+
+        for (Long segment : new ArrayList<>(segments.headSet(readSegment))) {
+            Path path = segmentPath(segment);
+            diskBytes -= Files.size(path);
+            Files.deleteIfExists(path);
+            segments.remove(segment);
+        }
+    }
+
+    public synchronized long size() {
+        return pendingRecords;
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    /**
+     * 段文件占用的磁盘字节数（含已读未删除的部分）
+     */
+    public synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null && writer.isOpen()) {
+            writer.force(false);
+            writer.close();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file in spool directory: {}", path);
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.add(1L);
+        }
+        writeSegment = segments.last();
+        writer = FileChannel.open(segmentPath(writeSegment),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeOffset = validLength(writer);
+        if (writeOffset < writer.size()) {
+            logger.warn("Truncating torn spool record: segment={}, validBytes={}, fileBytes={}",
+                writeSegment, writeOffset, writer.size());
+            writer.truncate(writeOffset);
+        }
+
+        readCursor();
+        if (!segments.contains(readSegment) || readSegment > writeSegment) {
+            readSegment = segments.first();
+            readOffset = 0;
+        }
+        for (Long segment : new ArrayList<>(segments.headSet(readSegment))) {
+            Files.deleteIfExists(segmentPath(segment));
+            segments.remove(segment);
+        }
+
+        diskBytes = 0;
+        for (Long segment : segments) {
+            diskBytes += segment == writeSegment ? writeOffset : Files.size(segmentPath(segment));
+        }
+        pendingRecords = countFrom(readSegment, readOffset);
+        if (pendingRecords > 0) {
+            logger.info("Recovered spool: directory={}, pendingRecords={}, segments={}", directory, pendingRecords, segments.size());
+        }
+    }
+
+    private long countFrom(long segment, long offset) throws IOException {
+        long count = 0;
+        for (Long current : segments.tailSet(segment)) {
+            try (FileChannel channel = FileChannel.open(segmentPath(current), StandardOpenOption.READ)) {
+                long end = current == writeSegment ? writeOffset : channel.size();
+                long position = current == segment ? offset : 0;
+                while (position < end) {
+                    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+                    readFully(channel, header, position);
+                    position += RECORD_HEADER + header.getInt(0);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 从头校验段文件，返回最后一条完整记录的结束位置
+     */
+    private static long validLength(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        while (offset < size) {
+            byte[] data = readRecord(channel, offset, size);
+            if (data == null) {
+                break;
+            }
+            offset += RECORD_HEADER + data.length;
+        }
+        return offset;
+    }
+
+    /**
+     * 读取 offset 处的记录；记录不完整或校验失败时返回 null
+     */
+    private static byte[] readRecord(FileChannel channel, long offset, long end) throws IOException {
+        if (end - offset < RECORD_HEADER) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(channel, header, offset);
+        int length = header.getInt(0);
+        if (length < 0 || end - offset - RECORD_HEADER < length) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(channel, body, offset + RECORD_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        if ((int) crc.getValue() != header.getInt(4)) {
+            return null;
+        }
+        return body.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of spool segment");
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        writer.force(false);
+        writer.close();
+        writeSegment++;
+        writeOffset = 0;
+        segments.add(writeSegment);
+        writer = FileChannel.open(segmentPath(writeSegment),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void readCursor() throws IOException {
+        Path cursor = directory.resolve(CURSOR_FILE);
+        if (!Files.exists(cursor)) {
+            readSegment = segments.first();
+            readOffset = 0;
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cursor));
+        if (buffer.remaining() < 16) {
+            logger.warn("Ignoring truncated spool cursor: {}", cursor);
+            readSegment = segments.first();
+            readOffset = 0;
+            return;
+        }
+        readSegment = buffer.getLong();
+        readOffset = buffer.getLong();
+    }
+
+    /**
+     * 先写临时文件再原子替换，进程退出时游标要么是旧值要么是新值
+     */
+    private void writeCursor() throws IOException {
+        Path temp = directory.resolve(CURSOR_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(readSegment).putLong(readOffset);
+        Files.write(temp, buffer.array());
+        Files.move(temp, directory.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 一条读出的记录及其之后的游标位置
+     */
+    public static final class Entry {
+        private final byte[] data;
+        private final long segment;
+        private final long nextOffset;
+
+        Entry(byte[] data, long segment, long nextOffset) {
+            this.data = data;
+            this.segment = segment;
+            this.nextOffset = nextOffset;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.CodeReview;
+import com.gitlab.metrics.entity.MergeRequest;
+import com.gitlab.metrics.repository.projection.ReviewerStatsRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -21,6 +23,12 @@ public interface CodeReviewRepository extends JpaRepository<CodeReview, Long> {
      */
     List<CodeReview> findByMergeRequestIdOrderByReviewedAtDesc(Long mergeRequestId);
     
+    /**
+     * 根据合并请求查找代码评审记录
+     * 以实体为参数，分片部署时按合并请求所属项目路由，适用于未绑定分片的调用
+     */
+    List<CodeReview> findByMergeRequestOrderByReviewedAtDesc(MergeRequest mergeRequest);
+    
     /**
      * 根据评审者ID查找代码评审记录
      */
@@ -38,17 +46,16 @@ public interface CodeReviewRepository extends JpaRepository<CodeReview, Long> {
     
     /**
      * 统计评审者的评审数据
-     * 返回：评审者ID, 评审者名称, 评审总数, 批准数量, 要求修改数量, 平均评审时间(小时)
      */
-    @Query("SELECT r.reviewerId, r.reviewerName, COUNT(r), " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ReviewerStatsRow(r.reviewerId, r.reviewerName, COUNT(r), " +
            "COUNT(CASE WHEN r.status = 'approved' THEN 1 END), " +
            "COUNT(CASE WHEN r.status = 'changes_requested' THEN 1 END), " +
            "AVG(CASE WHEN r.submittedAt IS NOT NULL THEN " +
-           "TIMESTAMPDIFF(HOUR, r.reviewedAt, r.submittedAt) END) " +
+           "TIMESTAMPDIFF(HOUR, r.reviewedAt, r.submittedAt) END)) " +
            "FROM CodeReview r WHERE r.reviewedAt BETWEEN :start AND :end " +
            "GROUP BY r.reviewerId, r.reviewerName " +
            "ORDER BY COUNT(r) DESC")
-    List<Object[]> getReviewerStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<ReviewerStatsRow> getReviewerStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 统计项目的代码评审数据
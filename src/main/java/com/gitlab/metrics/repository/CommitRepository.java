@@ -1,18 +1,32 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.repository.projection.BranchActivityRow;
+import com.gitlab.metrics.repository.projection.CommitTotalsRow;
+import com.gitlab.metrics.repository.projection.CommitTrendRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitSizeRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow;
+import com.gitlab.metrics.repository.projection.HourlyCommitCountRow;
+import com.gitlab.metrics.repository.projection.ProjectCommitStatsRow;
+import com.gitlab.metrics.repository.projection.ProjectCommitSummaryRow;
+import com.gitlab.metrics.repository.projection.ProjectDeveloperCountRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * 代码提交Repository接口
  * 提供代码提交相关的数据访问方法，包括统计查询和复杂分析
+ * 聚合查询通过构造表达式直接返回 projection 包中的类型化行，不经过 Object[] 和实体加载
  */
 @Repository
 public interface CommitRepository extends JpaRepository<Commit, Long> {
@@ -55,81 +69,98 @@ public interface CommitRepository extends JpaRepository<Commit, Long> {
     
     /**
      * 统计开发者在指定时间范围内的提交数据
-     * 返回：开发者ID, 提交次数, 新增代码行数, 删除代码行数, 修改文件数
      */
-    @Query("SELECT c.developerId, c.developerName, COUNT(c), " +
-           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COALESCE(SUM(c.filesChanged), 0) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow(c.developerId, c.developerName, COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COALESCE(SUM(c.filesChanged), 0)) " +
            "FROM Commit c WHERE c.timestamp BETWEEN :start AND :end " +
            "GROUP BY c.developerId, c.developerName " +
            "ORDER BY COUNT(c) DESC")
-    List<Object[]> getDeveloperCommitStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<DeveloperCommitStatsRow> getDeveloperCommitStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 统计项目在指定时间范围内的提交数据
      */
-    @Query("SELECT c.projectId, COUNT(c), " +
-           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COALESCE(SUM(c.filesChanged), 0) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ProjectCommitStatsRow(c.projectId, COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COALESCE(SUM(c.filesChanged), 0)) " +
            "FROM Commit c WHERE c.timestamp BETWEEN :start AND :end " +
            "GROUP BY c.projectId " +
            "ORDER BY COUNT(c) DESC")
-    List<Object[]> getProjectCommitStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<ProjectCommitStatsRow> getProjectCommitStats(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
+    /**
+     * 按项目和开发者统计指定时间范围内的提交数
+     */
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ProjectDeveloperCountRow(c.projectId, c.developerId, COUNT(c)) " +
+           "FROM Commit c WHERE c.timestamp BETWEEN :start AND :end " +
+           "GROUP BY c.projectId, c.developerId")
+    List<ProjectDeveloperCountRow> getProjectDeveloperCommitCounts(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
+    /**
+     * 按开发者统计单个项目在指定时间范围内的提交数
+     */
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ProjectDeveloperCountRow(c.projectId, c.developerId, COUNT(c)) " +
+           "FROM Commit c WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "GROUP BY c.projectId, c.developerId")
+    List<ProjectDeveloperCountRow> getDeveloperCommitCountsByProject(
+        @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 统计指定项目中开发者的提交数据
      */
-    @Query("SELECT c.developerId, c.developerName, COUNT(c), " +
-           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COALESCE(SUM(c.filesChanged), 0) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow(c.developerId, c.developerName, COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COALESCE(SUM(c.filesChanged), 0)) " +
            "FROM Commit c WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
            "GROUP BY c.developerId, c.developerName " +
            "ORDER BY COUNT(c) DESC")
-    List<Object[]> getDeveloperCommitStatsByProject(
+    List<DeveloperCommitStatsRow> getDeveloperCommitStatsByProject(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 按日期统计提交趋势
      */
-    @Query("SELECT DATE(c.timestamp), COUNT(c), " +
-           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.CommitTrendRow(DATE(c.timestamp), COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0)) " +
            "FROM Commit c WHERE c.timestamp BETWEEN :start AND :end " +
            "GROUP BY DATE(c.timestamp) " +
            "ORDER BY DATE(c.timestamp)")
-    List<Object[]> getCommitTrendByDate(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<CommitTrendRow> getCommitTrendByDate(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 按项目和日期统计提交趋势
      */
-    @Query("SELECT c.projectId, DATE(c.timestamp), COUNT(c), " +
-           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.CommitTrendRow(c.projectId, DATE(c.timestamp), COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0)) " +
            "FROM Commit c WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
            "GROUP BY c.projectId, DATE(c.timestamp) " +
            "ORDER BY DATE(c.timestamp)")
-    List<Object[]> getCommitTrendByProjectAndDate(
+    List<CommitTrendRow> getCommitTrendByProjectAndDate(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 统计开发者的活跃度（按小时分布）
      */
-    @Query("SELECT HOUR(c.timestamp), COUNT(c) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.HourlyCommitCountRow(HOUR(c.timestamp), COUNT(c)) " +
            "FROM Commit c WHERE c.developerId = :developerId AND c.timestamp BETWEEN :start AND :end " +
            "GROUP BY HOUR(c.timestamp) " +
            "ORDER BY HOUR(c.timestamp)")
-    List<Object[]> getDeveloperActivityByHour(
+    List<HourlyCommitCountRow> getDeveloperActivityByHour(
         @Param("developerId") String developerId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 统计分支的提交活跃度
      */
-    @Query("SELECT c.branch, COUNT(c), " +
-           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.BranchActivityRow(c.branch, COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0)) " +
            "FROM Commit c WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
            "GROUP BY c.branch " +
            "ORDER BY COUNT(c) DESC")
-    List<Object[]> getBranchActivityStats(
+    List<BranchActivityRow> getBranchActivityStats(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
-     * 查找大型提交（超过指定行数变更的提交）
+     * 查找大型提交（超过指定行数变更的提交），只读加载，不参与脏检查
      */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
     @Query("SELECT c FROM Commit c WHERE (COALESCE(c.linesAdded, 0) + COALESCE(c.linesDeleted, 0)) > :threshold " +
            "AND c.timestamp BETWEEN :start AND :end ORDER BY (COALESCE(c.linesAdded, 0) + COALESCE(c.linesDeleted, 0)) DESC")
     List<Commit> findLargeCommits(
@@ -138,20 +169,30 @@ public interface CommitRepository extends JpaRepository<Commit, Long> {
     /**
      * 统计开发者的平均提交大小
      */
-    @Query("SELECT c.developerId, c.developerName, " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.DeveloperCommitSizeRow(c.developerId, c.developerName, " +
            "AVG(COALESCE(c.linesAdded, 0) + COALESCE(c.linesDeleted, 0)), " +
-           "AVG(COALESCE(c.filesChanged, 0)) " +
+           "AVG(COALESCE(c.filesChanged, 0))) " +
            "FROM Commit c WHERE c.timestamp BETWEEN :start AND :end " +
            "GROUP BY c.developerId, c.developerName " +
            "ORDER BY AVG(COALESCE(c.linesAdded, 0) + COALESCE(c.linesDeleted, 0)) DESC")
-    List<Object[]> getDeveloperAverageCommitSize(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<DeveloperCommitSizeRow> getDeveloperAverageCommitSize(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
      * 统计项目的总体代码变更量
      */
-    @Query("SELECT COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), " +
-           "COALESCE(SUM(c.filesChanged), 0), COUNT(c) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.CommitTotalsRow(COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), " +
+           "COALESCE(SUM(c.filesChanged), 0), COUNT(c)) " +
            "FROM Commit c WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end")
-    Object[] getProjectTotalStats(
+    CommitTotalsRow getProjectTotalStats(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
-}
\ No newline at end of file
+    
+    /**
+     * 批量统计多个项目的提交数据（项目对比）
+     */
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ProjectCommitSummaryRow(c.projectId, COUNT(c), " +
+           "COALESCE(SUM(c.linesAdded), 0), COALESCE(SUM(c.linesDeleted), 0), COUNT(DISTINCT c.developerId)) " +
+           "FROM Commit c WHERE c.projectId IN :projectIds AND c.timestamp BETWEEN :start AND :end " +
+           "GROUP BY c.projectId")
+    List<ProjectCommitSummaryRow> getCommitStatsByProjects(
+        @Param("projectIds") Collection<String> projectIds, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
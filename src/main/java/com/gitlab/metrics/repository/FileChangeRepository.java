@@ -39,6 +39,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "COALESCE(SUM(f.linesAdded), 0), COALESCE(SUM(f.linesDeleted), 0) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY f.filePath " +
            "ORDER BY COUNT(f) DESC")
     List<Object[]> getFileChangeFrequency(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
@@ -50,6 +51,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "COALESCE(SUM(f.linesAdded), 0), COALESCE(SUM(f.linesDeleted), 0) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY f.filePath " +
            "ORDER BY COUNT(f) DESC")
     List<Object[]> getFileChangeFrequencyByProject(
@@ -61,6 +63,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
     @Query("SELECT f.changeType, COUNT(f) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY f.changeType")
     List<Object[]> getChangeTypeStats(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
@@ -71,6 +74,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
     @Query("SELECT f.filePath, COUNT(f) as changeCount " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY f.filePath " +
            "HAVING COUNT(f) > :threshold " +
            "ORDER BY COUNT(f) DESC")
@@ -85,6 +89,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "COUNT(f), COALESCE(SUM(f.linesAdded), 0), COALESCE(SUM(f.linesDeleted), 0) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "AND f.filePath LIKE '%.%' " +
            "GROUP BY SUBSTRING(f.filePath, LOCATE('.', f.filePath) + 1) " +
            "ORDER BY COUNT(f) DESC")
@@ -98,6 +103,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "COUNT(f), COALESCE(SUM(f.linesAdded), 0), COALESCE(SUM(f.linesDeleted), 0) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "AND f.filePath LIKE '%/%' " +
            "GROUP BY SUBSTRING(f.filePath, 1, LOCATE('/', f.filePath) - 1) " +
            "ORDER BY COUNT(f) DESC")
@@ -111,6 +117,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "COALESCE(SUM(f.linesAdded), 0), COALESCE(SUM(f.linesDeleted), 0) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE f.filePath = :filePath AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY c.developerId, c.developerName " +
            "ORDER BY COUNT(f) DESC")
     List<Object[]> getDeveloperContributionToFile(
@@ -122,6 +129,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
     @Query("SELECT f, (COALESCE(f.linesAdded, 0) + COALESCE(f.linesDeleted, 0)) as totalLines " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "AND (COALESCE(f.linesAdded, 0) + COALESCE(f.linesDeleted, 0)) > :threshold " +
            "ORDER BY (COALESCE(f.linesAdded, 0) + COALESCE(f.linesDeleted, 0)) DESC")
     List<Object[]> getLargeFileChanges(
@@ -135,6 +143,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "FROM FileChange f JOIN f.commit c " +
            "WHERE f.changeType = 'renamed' AND c.projectId = :projectId " +
            "AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "ORDER BY c.timestamp DESC")
     List<Object[]> getFileRenameOperations(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
@@ -146,6 +155,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "FROM FileChange f JOIN f.commit c " +
            "WHERE f.changeType = 'added' AND c.projectId = :projectId " +
            "AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "ORDER BY c.timestamp DESC")
     List<Object[]> getNewFiles(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
@@ -157,6 +167,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "FROM FileChange f JOIN f.commit c " +
            "WHERE f.changeType = 'deleted' AND c.projectId = :projectId " +
            "AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "ORDER BY c.timestamp DESC")
     List<Object[]> getDeletedFiles(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
@@ -170,6 +181,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "COUNT(CASE WHEN f.changeType = 'deleted' THEN 1 END) " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY DATE(c.timestamp) " +
            "ORDER BY DATE(c.timestamp)")
     List<Object[]> getFileChangeTrendByDate(
@@ -195,6 +207,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
            "AVG(COALESCE(f.linesAdded, 0) + COALESCE(f.linesDeleted, 0)) as avgChangeSize " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY f.filePath " +
            "HAVING COUNT(f) >= :minChanges " +
            "ORDER BY AVG(COALESCE(f.linesAdded, 0) + COALESCE(f.linesDeleted, 0)) DESC")
@@ -208,6 +221,7 @@ public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
     @Query("SELECT f.filePath, COUNT(DISTINCT c.developerId) as developerCount, COUNT(f) as changeCount " +
            "FROM FileChange f JOIN f.commit c " +
            "WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end " +
+           "AND f.commitTimestamp BETWEEN :start AND :end " +
            "GROUP BY f.filePath " +
            "HAVING COUNT(DISTINCT c.developerId) >= :minDevelopers " +
            "ORDER BY COUNT(DISTINCT c.developerId) DESC, COUNT(f) DESC")
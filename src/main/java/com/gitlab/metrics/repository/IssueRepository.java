@@ -1,6 +1,7 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.Issue;
+import com.gitlab.metrics.repository.projection.BugFixTimeRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -47,6 +48,11 @@ public interface IssueRepository extends JpaRepository<Issue, Long> {
      */
     List<Issue> findByProjectIdAndCreatedAtBetween(String projectId, LocalDateTime start, LocalDateTime end);
     
+    /**
+     * 统计项目在时间范围内创建的Issue数量（只计数，不加载实体）
+     */
+    long countByProjectIdAndCreatedAtBetween(String projectId, LocalDateTime start, LocalDateTime end);
+    
     /**
      * 根据分配人ID和时间范围查找问题
      */
@@ -124,12 +130,12 @@ public interface IssueRepository extends JpaRepository<Issue, Long> {
     /**
      * 按严重程度统计Bug修复时间
      */
-    @Query("SELECT i.severity, COUNT(i), AVG(i.resolutionTimeMinutes), AVG(i.responseTimeMinutes) " +
+    @Query("SELECT new com.gitlab.metrics.repository.projection.BugFixTimeRow(i.severity, COUNT(i), AVG(i.resolutionTimeMinutes), AVG(i.responseTimeMinutes)) " +
            "FROM Issue i WHERE i.projectId = :projectId AND i.issueType = 'bug' AND i.status = 'closed' " +
            "AND i.severity IS NOT NULL AND i.createdAt BETWEEN :start AND :end " +
            "GROUP BY i.severity " +
            "ORDER BY AVG(i.resolutionTimeMinutes) ASC")
-    List<Object[]> getBugFixTimesBySeverity(
+    List<BugFixTimeRow> getBugFixTimesBySeverity(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
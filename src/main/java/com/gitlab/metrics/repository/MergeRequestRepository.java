@@ -42,6 +42,11 @@ public interface MergeRequestRepository extends JpaRepository<MergeRequest, Long
      */
     List<MergeRequest> findByProjectIdAndCreatedAtBetween(String projectId, LocalDateTime start, LocalDateTime end);
     
+    /**
+     * 统计项目在时间范围内创建的合并请求数量（只计数，不加载实体）
+     */
+    long countByProjectIdAndCreatedAtBetween(String projectId, LocalDateTime start, LocalDateTime end);
+    
     /**
      * 根据作者ID和时间范围查找合并请求
      */
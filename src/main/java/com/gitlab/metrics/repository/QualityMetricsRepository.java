@@ -1,12 +1,17 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.repository.projection.ProjectRecordRef;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,6 +51,15 @@ public interface QualityMetricsRepository extends JpaRepository<QualityMetrics,
            "FROM QualityMetrics q WHERE q.projectId = :projectId AND q.timestamp BETWEEN :start AND :end")
     Object[] getQualityTrend(@Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
+    /**
+     * 获取项目质量指标的求和与非空计数，用于与归档数据合并计算平均值
+     * 返回：复杂度和、复杂度数、重复率和、重复率数、可维护性指数和、可维护性指数数、技术债务和、技术债务数
+     */
+    @Query("SELECT SUM(q.codeComplexity), COUNT(q.codeComplexity), SUM(q.duplicateRate), COUNT(q.duplicateRate), " +
+           "SUM(q.maintainabilityIndex), COUNT(q.maintainabilityIndex), SUM(q.technicalDebt), COUNT(q.technicalDebt) " +
+           "FROM QualityMetrics q WHERE q.projectId = :projectId AND q.timestamp BETWEEN :start AND :end")
+    List<Object[]> getQualityTrendTotals(@Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
     /**
      * 按日期统计质量趋势
      */
@@ -78,20 +92,43 @@ public interface QualityMetricsRepository extends JpaRepository<QualityMetrics,
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
-     * 查找质量门禁失败的记录
+     * 查找质量门禁失败的记录（只读加载，不参与脏检查）
      */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
     @Query("SELECT q FROM QualityMetrics q WHERE q.qualityGate = 'FAILED' AND q.timestamp BETWEEN :start AND :end " +
            "ORDER BY q.timestamp DESC")
     List<QualityMetrics> findFailedQualityGates(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     /**
-     * 按项目查找质量门禁失败的记录
+     * 按项目查找质量门禁失败的记录（只读加载，不参与脏检查）
      */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
     @Query("SELECT q FROM QualityMetrics q WHERE q.projectId = :projectId AND q.qualityGate = 'FAILED' " +
            "AND q.timestamp BETWEEN :start AND :end ORDER BY q.timestamp DESC")
     List<QualityMetrics> findFailedQualityGatesByProject(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
+    /**
+     * 统计质量门禁失败的记录数
+     */
+    @Query("SELECT COUNT(q) FROM QualityMetrics q WHERE q.qualityGate = 'FAILED' AND q.timestamp BETWEEN :start AND :end")
+    long countFailedQualityGates(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
+    /**
+     * 按项目统计质量门禁失败的记录数
+     */
+    @Query("SELECT COUNT(q) FROM QualityMetrics q WHERE q.projectId = :projectId AND q.qualityGate = 'FAILED' " +
+           "AND q.timestamp BETWEEN :start AND :end")
+    long countFailedQualityGatesByProject(
+        @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
+    /**
+     * 查找质量门禁失败记录的ID和项目ID（不加载实体）
+     */
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ProjectRecordRef(q.id, q.projectId) FROM QualityMetrics q " +
+           "WHERE q.qualityGate = 'FAILED' AND q.timestamp BETWEEN :start AND :end")
+    List<ProjectRecordRef> findFailedQualityGateRefs(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
     /**
      * 统计质量门禁通过率
      */
@@ -167,4 +204,21 @@ public interface QualityMetricsRepository extends JpaRepository<QualityMetrics,
     List<Object[]> findMostImprovedProjects(
         @Param("oldStart") LocalDateTime oldStart, @Param("oldEnd") LocalDateTime oldEnd,
         @Param("newStart") LocalDateTime newStart, @Param("newEnd") LocalDateTime newEnd);
-}
\ No newline at end of file
+    
+    /**
+     * 批量查找多个项目各自最新的质量指标记录（项目对比）
+     */
+    @Query("SELECT q FROM QualityMetrics q WHERE q.projectId IN :projectIds " +
+           "AND q.timestamp = (SELECT MAX(q2.timestamp) FROM QualityMetrics q2 WHERE q2.projectId = q.projectId)")
+    List<QualityMetrics> findLatestByProjects(@Param("projectIds") Collection<String> projectIds);
+    
+    /**
+     * 批量获取多个项目的质量概览（项目对比）
+     */
+    @Query("SELECT q.projectId, COUNT(q), AVG(q.codeComplexity), AVG(q.duplicateRate), " +
+           "AVG(q.maintainabilityIndex), SUM(q.technicalDebt) " +
+           "FROM QualityMetrics q WHERE q.projectId IN :projectIds AND q.timestamp BETWEEN :start AND :end " +
+           "GROUP BY q.projectId")
+    List<Object[]> getQualityOverviewByProjects(
+        @Param("projectIds") Collection<String> projectIds, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
@@ -1,12 +1,15 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.repository.projection.ProjectRecordRef;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,6 +49,15 @@ public interface TestCoverageRepository extends JpaRepository<TestCoverage, Long
            "FROM TestCoverage t WHERE t.projectId = :projectId AND t.timestamp BETWEEN :start AND :end")
     Object[] getCoverageTrend(@Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
+    /**
+     * 获取项目覆盖率的求和与非空计数，用于与归档数据合并计算平均值
+     * 返回：行覆盖率和、数量、分支覆盖率和、数量、函数覆盖率和、数量
+     */
+    @Query("SELECT SUM(t.lineCoverage), COUNT(t.lineCoverage), SUM(t.branchCoverage), COUNT(t.branchCoverage), " +
+           "SUM(t.functionCoverage), COUNT(t.functionCoverage) " +
+           "FROM TestCoverage t WHERE t.projectId = :projectId AND t.timestamp BETWEEN :start AND :end")
+    List<Object[]> getCoverageTrendTotals(@Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
     /**
      * 按日期统计覆盖率趋势
      */
@@ -89,6 +101,13 @@ public interface TestCoverageRepository extends JpaRepository<TestCoverage, Long
     List<TestCoverage> findFailedCoverageRecordsByProject(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
+    /**
+     * 查找覆盖率失败记录的ID和项目ID（不加载实体）
+     */
+    @Query("SELECT new com.gitlab.metrics.repository.projection.ProjectRecordRef(t.id, t.projectId) FROM TestCoverage t " +
+           "WHERE t.status = 'FAILED' AND t.timestamp BETWEEN :start AND :end")
+    List<ProjectRecordRef> findFailedCoverageRefs(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
     /**
      * 统计测试覆盖率详细信息
      */
@@ -175,4 +194,20 @@ public interface TestCoverageRepository extends JpaRepository<TestCoverage, Long
            "AND t.timestamp BETWEEN :start AND :end")
     Object[] getCoverageThresholdStats(
         @Param("projectId") String projectId, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
-}
\ No newline at end of file
+    
+    /**
+     * 批量查找多个项目各自最新的测试覆盖率记录（项目对比）
+     */
+    @Query("SELECT t FROM TestCoverage t WHERE t.projectId IN :projectIds " +
+           "AND t.timestamp = (SELECT MAX(t2.timestamp) FROM TestCoverage t2 WHERE t2.projectId = t.projectId)")
+    List<TestCoverage> findLatestByProjects(@Param("projectIds") Collection<String> projectIds);
+    
+    /**
+     * 批量删除指定时间之前的覆盖率记录
+     * 
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM TestCoverage t WHERE t.timestamp < :before")
+    int deleteByTimestampBefore(@Param("before") LocalDateTime before);
+}
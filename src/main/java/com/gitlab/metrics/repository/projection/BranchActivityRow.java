@@ -0,0 +1,24 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 分支活跃度行（分支名、提交数、新增行数、删除行数）
+ */
+public final class BranchActivityRow {
+
+    private final String branch;
+    private final long commitCount;
+    private final long linesAdded;
+    private final long linesDeleted;
+
+    public BranchActivityRow(String branch, Number commitCount, Number linesAdded, Number linesDeleted) {
+        this.branch = branch;
+        this.commitCount = ProjectionValues.longValue(commitCount);
+        this.linesAdded = ProjectionValues.longValue(linesAdded);
+        this.linesDeleted = ProjectionValues.longValue(linesDeleted);
+    }
+
+    public String getBranch() { return branch; }
+    public long getCommitCount() { return commitCount; }
+    public long getLinesAdded() { return linesAdded; }
+    public long getLinesDeleted() { return linesDeleted; }
+}
@@ -0,0 +1,25 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 按维度（严重程度等）分组的Bug修复时间行（分组值、Bug数、平均解决时间、平均响应时间，单位分钟）
+ */
+public final class BugFixTimeRow {
+
+    private final String group;
+    private final long bugCount;
+    private final Double averageResolutionMinutes;
+    private final Double averageResponseMinutes;
+
+    public BugFixTimeRow(String group, Number bugCount, Number averageResolutionMinutes,
+                         Number averageResponseMinutes) {
+        this.group = group;
+        this.bugCount = ProjectionValues.longValue(bugCount);
+        this.averageResolutionMinutes = ProjectionValues.doubleValue(averageResolutionMinutes);
+        this.averageResponseMinutes = ProjectionValues.doubleValue(averageResponseMinutes);
+    }
+
+    public String getGroup() { return group; }
+    public long getBugCount() { return bugCount; }
+    public Double getAverageResolutionMinutes() { return averageResolutionMinutes; }
+    public Double getAverageResponseMinutes() { return averageResponseMinutes; }
+}
@@ -0,0 +1,35 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 提交总量行（新增行数、删除行数、变更文件数、提交数）
+ */
+public final class CommitTotalsRow {
+
+    private final long linesAdded;
+    private final long linesDeleted;
+    private final long filesChanged;
+    private final long commitCount;
+
+    public CommitTotalsRow(Number linesAdded, Number linesDeleted, Number filesChanged, Number commitCount) {
+        this.linesAdded = ProjectionValues.longValue(linesAdded);
+        this.linesDeleted = ProjectionValues.longValue(linesDeleted);
+        this.filesChanged = ProjectionValues.longValue(filesChanged);
+        this.commitCount = ProjectionValues.longValue(commitCount);
+    }
+
+    /**
+     * 累加另一总量行，other 为 null 时返回自身
+     */
+    public CommitTotalsRow plus(CommitTotalsRow other) {
+        if (other == null) {
+            return this;
+        }
+        return new CommitTotalsRow(linesAdded + other.linesAdded, linesDeleted + other.linesDeleted,
+            filesChanged + other.filesChanged, commitCount + other.commitCount);
+    }
+
+    public long getLinesAdded() { return linesAdded; }
+    public long getLinesDeleted() { return linesDeleted; }
+    public long getFilesChanged() { return filesChanged; }
+    public long getCommitCount() { return commitCount; }
+}
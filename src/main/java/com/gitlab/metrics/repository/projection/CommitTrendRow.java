@@ -0,0 +1,41 @@
+package com.gitlab.metrics.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * 按日期的提交趋势行（项目ID可选、日期、提交数、新增行数、删除行数）
+ */
+public final class CommitTrendRow {
+
+    private final String projectId;
+    private final LocalDate date;
+    private final long commitCount;
+    private final long linesAdded;
+    private final long linesDeleted;
+
+    public CommitTrendRow(Object date, Number commitCount, Number linesAdded, Number linesDeleted) {
+        this(null, date, commitCount, linesAdded, linesDeleted);
+    }
+
+    public CommitTrendRow(String projectId, Object date, Number commitCount, Number linesAdded, Number linesDeleted) {
+        this.projectId = projectId;
+        this.date = ProjectionValues.localDate(date);
+        this.commitCount = ProjectionValues.longValue(commitCount);
+        this.linesAdded = ProjectionValues.longValue(linesAdded);
+        this.linesDeleted = ProjectionValues.longValue(linesDeleted);
+    }
+
+    /**
+     * 累加同一日期的另一行（用于合并归档与活跃数据）
+     */
+    public CommitTrendRow plus(CommitTrendRow other) {
+        return new CommitTrendRow(projectId, date, commitCount + other.commitCount,
+            linesAdded + other.linesAdded, linesDeleted + other.linesDeleted);
+    }
+
+    public String getProjectId() { return projectId; }
+    public LocalDate getDate() { return date; }
+    public long getCommitCount() { return commitCount; }
+    public long getLinesAdded() { return linesAdded; }
+    public long getLinesDeleted() { return linesDeleted; }
+}
@@ -0,0 +1,25 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 开发者平均提交大小行（开发者ID、名称、平均变更行数、平均变更文件数）
+ */
+public final class DeveloperCommitSizeRow {
+
+    private final String developerId;
+    private final String developerName;
+    private final Double averageChangedLines;
+    private final Double averageChangedFiles;
+
+    public DeveloperCommitSizeRow(String developerId, String developerName,
+                                  Number averageChangedLines, Number averageChangedFiles) {
+        this.developerId = developerId;
+        this.developerName = developerName;
+        this.averageChangedLines = ProjectionValues.doubleValue(averageChangedLines);
+        this.averageChangedFiles = ProjectionValues.doubleValue(averageChangedFiles);
+    }
+
+    public String getDeveloperId() { return developerId; }
+    public String getDeveloperName() { return developerName; }
+    public Double getAverageChangedLines() { return averageChangedLines; }
+    public Double getAverageChangedFiles() { return averageChangedFiles; }
+}
@@ -0,0 +1,39 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 开发者提交统计行（开发者ID、名称、提交数、新增行数、删除行数、变更文件数）
+ */
+public final class DeveloperCommitStatsRow {
+
+    private final String developerId;
+    private final String developerName;
+    private final long commitCount;
+    private final long linesAdded;
+    private final long linesDeleted;
+    private final long filesChanged;
+
+    public DeveloperCommitStatsRow(String developerId, String developerName, Number commitCount,
+                                   Number linesAdded, Number linesDeleted, Number filesChanged) {
+        this.developerId = developerId;
+        this.developerName = developerName;
+        this.commitCount = ProjectionValues.longValue(commitCount);
+        this.linesAdded = ProjectionValues.longValue(linesAdded);
+        this.linesDeleted = ProjectionValues.longValue(linesDeleted);
+        this.filesChanged = ProjectionValues.longValue(filesChanged);
+    }
+
+    /**
+     * 累加同一开发者的另一行（用于合并归档与活跃数据）
+     */
+    public DeveloperCommitStatsRow plus(DeveloperCommitStatsRow other) {
+        return new DeveloperCommitStatsRow(developerId, developerName, commitCount + other.commitCount,
+            linesAdded + other.linesAdded, linesDeleted + other.linesDeleted, filesChanged + other.filesChanged);
+    }
+
+    public String getDeveloperId() { return developerId; }
+    public String getDeveloperName() { return developerName; }
+    public long getCommitCount() { return commitCount; }
+    public long getLinesAdded() { return linesAdded; }
+    public long getLinesDeleted() { return linesDeleted; }
+    public long getFilesChanged() { return filesChanged; }
+}
@@ -0,0 +1,18 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 按小时分布的提交数行
+ */
+public final class HourlyCommitCountRow {
+
+    private final int hour;
+    private final long commitCount;
+
+    public HourlyCommitCountRow(Number hour, Number commitCount) {
+        this.hour = (int) ProjectionValues.longValue(hour);
+        this.commitCount = ProjectionValues.longValue(commitCount);
+    }
+
+    public int getHour() { return hour; }
+    public long getCommitCount() { return commitCount; }
+}
@@ -0,0 +1,36 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 项目提交统计行（项目ID、提交数、新增行数、删除行数、变更文件数）
+ */
+public final class ProjectCommitStatsRow {
+
+    private final String projectId;
+    private final long commitCount;
+    private final long linesAdded;
+    private final long linesDeleted;
+    private final long filesChanged;
+
+    public ProjectCommitStatsRow(String projectId, Number commitCount, Number linesAdded,
+                                 Number linesDeleted, Number filesChanged) {
+        this.projectId = projectId;
+        this.commitCount = ProjectionValues.longValue(commitCount);
+        this.linesAdded = ProjectionValues.longValue(linesAdded);
+        this.linesDeleted = ProjectionValues.longValue(linesDeleted);
+        this.filesChanged = ProjectionValues.longValue(filesChanged);
+    }
+
+    /**
+     * 累加同一项目的另一行（用于合并归档与活跃数据）
+     */
+    public ProjectCommitStatsRow plus(ProjectCommitStatsRow other) {
+        return new ProjectCommitStatsRow(projectId, commitCount + other.commitCount,
+            linesAdded + other.linesAdded, linesDeleted + other.linesDeleted, filesChanged + other.filesChanged);
+    }
+
+    public String getProjectId() { return projectId; }
+    public long getCommitCount() { return commitCount; }
+    public long getLinesAdded() { return linesAdded; }
+    public long getLinesDeleted() { return linesDeleted; }
+    public long getFilesChanged() { return filesChanged; }
+}
@@ -0,0 +1,28 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 项目对比用的提交汇总行（项目ID、提交数、新增行数、删除行数、开发者数）
+ */
+public final class ProjectCommitSummaryRow {
+
+    private final String projectId;
+    private final long commitCount;
+    private final long linesAdded;
+    private final long linesDeleted;
+    private final long developerCount;
+
+    public ProjectCommitSummaryRow(String projectId, Number commitCount, Number linesAdded,
+                                   Number linesDeleted, Number developerCount) {
+        this.projectId = projectId;
+        this.commitCount = ProjectionValues.longValue(commitCount);
+        this.linesAdded = ProjectionValues.longValue(linesAdded);
+        this.linesDeleted = ProjectionValues.longValue(linesDeleted);
+        this.developerCount = ProjectionValues.longValue(developerCount);
+    }
+
+    public String getProjectId() { return projectId; }
+    public long getCommitCount() { return commitCount; }
+    public long getLinesAdded() { return linesAdded; }
+    public long getLinesDeleted() { return linesDeleted; }
+    public long getDeveloperCount() { return developerCount; }
+}
@@ -0,0 +1,22 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 项目-开发者提交数行（项目ID、开发者ID、提交数）
+ * 每个项目只在一个分片上，各分片的行互不重叠，跨分片时直接拼接即可
+ */
+public final class ProjectDeveloperCountRow {
+
+    private final String projectId;
+    private final String developerId;
+    private final long commitCount;
+
+    public ProjectDeveloperCountRow(String projectId, String developerId, Number commitCount) {
+        this.projectId = projectId;
+        this.developerId = developerId;
+        this.commitCount = ProjectionValues.longValue(commitCount);
+    }
+
+    public String getProjectId() { return projectId; }
+    public String getDeveloperId() { return developerId; }
+    public long getCommitCount() { return commitCount; }
+}
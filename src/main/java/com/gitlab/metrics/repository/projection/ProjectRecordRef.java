@@ -0,0 +1,19 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 只含ID和项目ID的记录引用，用于只需计数或去重而不需要加载完整实体的场景
+ * 使用构造表达式而非接口投影：接口投影每行会额外创建代理和元组Map，分配量甚至高于实体
+ */
+public final class ProjectRecordRef {
+
+    private final Long id;
+    private final String projectId;
+
+    public ProjectRecordRef(Long id, String projectId) {
+        this.id = id;
+        this.projectId = projectId;
+    }
+
+    public Long getId() { return id; }
+    public String getProjectId() { return projectId; }
+}
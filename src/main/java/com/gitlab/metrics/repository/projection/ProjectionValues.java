@@ -0,0 +1,35 @@
+package com.gitlab.metrics.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * 投影构造参数转换工具
+ * JPQL 构造表达式的参数类型随方言和聚合函数而变化（COUNT/SUM 为 Long，AVG 为 Double，
+ * DATE() 为 java.sql.Date），投影构造函数统一接收 Number/Object 并在此转换为固定类型
+ */
+final class ProjectionValues {
+
+    private ProjectionValues() {
+    }
+
+    static long longValue(Number value) {
+        return value != null ? value.longValue() : 0L;
+    }
+
+    static Double doubleValue(Number value) {
+        return value != null ? value.doubleValue() : null;
+    }
+
+    static LocalDate localDate(Object value) {
+        if (value == null || value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        }
+        if (value instanceof java.util.Date) {
+            return new java.sql.Date(((java.util.Date) value).getTime()).toLocalDate();
+        }
+        return LocalDate.parse(value.toString());
+    }
+}
@@ -0,0 +1,31 @@
+package com.gitlab.metrics.repository.projection;
+
+/**
+ * 评审者统计行（评审者ID、名称、评审总数、批准数、要求修改数、平均评审时间小时）
+ */
+public final class ReviewerStatsRow {
+
+    private final String reviewerId;
+    private final String reviewerName;
+    private final long reviewCount;
+    private final long approvedCount;
+    private final long changesRequestedCount;
+    private final Double averageReviewHours;
+
+    public ReviewerStatsRow(String reviewerId, String reviewerName, Number reviewCount, Number approvedCount,
+                            Number changesRequestedCount, Number averageReviewHours) {
+        this.reviewerId = reviewerId;
+        this.reviewerName = reviewerName;
+        this.reviewCount = ProjectionValues.longValue(reviewCount);
+        this.approvedCount = ProjectionValues.longValue(approvedCount);
+        this.changesRequestedCount = ProjectionValues.longValue(changesRequestedCount);
+        this.averageReviewHours = ProjectionValues.doubleValue(averageReviewHours);
+    }
+
+    public String getReviewerId() { return reviewerId; }
+    public String getReviewerName() { return reviewerName; }
+    public long getReviewCount() { return reviewCount; }
+    public long getApprovedCount() { return approvedCount; }
+    public long getChangesRequestedCount() { return changesRequestedCount; }
+    public Double getAverageReviewHours() { return averageReviewHours; }
+}
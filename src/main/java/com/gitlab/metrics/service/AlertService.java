@@ -4,10 +4,10 @@ import com.gitlab.metrics.config.RabbitMQConfig;
 import com.gitlab.metrics.service.SecurityAnalysisService.QualityThresholdResult;
 import com.gitlab.metrics.service.SecurityAnalysisService.SecurityAnalysisResult;
 import com.gitlab.metrics.service.SecurityAnalysisService.PerformanceAnalysisResult;
+import com.gitlab.metrics.service.outbox.OutboxService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -72,7 +72,7 @@ public class AlertService {
     }
     
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private OutboxService outboxService;
     
     @Autowired
     private ObjectMapper objectMapper;
@@ -282,15 +282,19 @@ public class AlertService {
         try {
             String alertJson = objectMapper.writeValueAsString(alert);
             
-            // 发送到告警队列
-            rabbitTemplate.convertAndSend(
+            // 写入发件箱，与调用方的事务一同提交后由中继发布；发件箱关闭时直接发布并在 broker 确认后记录结果
+            outboxService.enqueue(
                 RabbitMQConfig.GITLAB_EVENTS_EXCHANGE,
                 "alert.notification",
                 alertJson
-            );
-            
-            logger.info("成功发送告警: projectId={}, type={}, level={}", 
-                alert.getProjectId(), alert.getType(), alert.getLevel());
+            ).whenComplete((result, error) -> {
+                if (error != null) {
+                    logger.error("发送告警失败: projectId={}, type={}", alert.getProjectId(), alert.getType(), error);
+                } else {
+                    logger.info("成功发送告警: projectId={}, type={}, level={}", 
+                        alert.getProjectId(), alert.getType(), alert.getLevel());
+                }
+            });
             
         } catch (Exception e) {
             logger.error("发送告警失败: {}", e.getMessage(), e);
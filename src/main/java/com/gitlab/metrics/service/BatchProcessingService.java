@@ -1,6 +1,10 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.BulkheadRoutingDataSource;
 import com.gitlab.metrics.config.PerformanceConfig;
+import com.gitlab.metrics.config.ShardMap;
+import com.gitlab.metrics.config.ShardRoutingDataSource;
+import com.gitlab.metrics.config.UseConnectionPool;
 import com.gitlab.metrics.entity.Commit;
 import com.gitlab.metrics.entity.FileChange;
 import com.gitlab.metrics.entity.QualityMetrics;
@@ -12,17 +16,21 @@ import com.gitlab.metrics.repository.TestCoverageRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
 
 /**
  * 批量处理服务
  * 提供高性能的批量数据处理功能，优化数据库操作性能
+ * 批量保存属于 webhook 写入链路，使用 ingest 池；过期清理等维护任务使用 batch 池
  */
 @Service
 public class BatchProcessingService {
@@ -44,6 +52,15 @@ public class BatchProcessingService {
     @Autowired
     private TestCoverageRepository testCoverageRepository;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PartitionMaintenanceService partitionMaintenanceService;
+    
+    @Autowired(required = false)
+    private ShardMap shardMap;
+    
     /**
      * 批量保存提交记录
      * 
@@ -52,6 +69,7 @@ public class BatchProcessingService {
      */
     @Async("batchExecutor")
     @Transactional
+    @UseConnectionPool(BulkheadRoutingDataSource.INGEST)
     public CompletableFuture<Integer> batchSaveCommits(List<Commit> commits) {
         logger.info("开始批量保存提交记录，数量: {}", commits.size());
         
@@ -90,6 +108,7 @@ public class BatchProcessingService {
      */
     @Async("batchExecutor")
     @Transactional
+    @UseConnectionPool(BulkheadRoutingDataSource.INGEST)
     public CompletableFuture<Integer> batchSaveFileChanges(List<FileChange> fileChanges) {
         logger.info("开始批量保存文件变更记录，数量: {}", fileChanges.size());
         
@@ -127,6 +146,7 @@ public class BatchProcessingService {
      */
     @Async("batchExecutor")
     @Transactional
+    @UseConnectionPool(BulkheadRoutingDataSource.INGEST)
     public CompletableFuture<Integer> batchSaveQualityMetrics(List<QualityMetrics> qualityMetrics) {
         logger.info("开始批量保存质量指标，数量: {}", qualityMetrics.size());
         
@@ -164,6 +184,7 @@ public class BatchProcessingService {
      */
     @Async("batchExecutor")
     @Transactional
+    @UseConnectionPool(BulkheadRoutingDataSource.INGEST)
     public CompletableFuture<Integer> batchSaveTestCoverages(List<TestCoverage> testCoverages) {
         logger.info("开始批量保存测试覆盖率，数量: {}", testCoverages.size());
         
@@ -195,13 +216,15 @@ public class BatchProcessingService {
     
     /**
      * 批量删除过期数据
+     * commits 表连同其文件变更一起清理；按批次删除，每批独立提交，因此不在单个事务中执行。
+     * 启用项目分片时在每个分片上各清理一次
      * 
      * @param tableName 表名
      * @param cutoffDate 截止日期（删除此日期之前的数据）
      * @return 异步处理结果
      */
     @Async("batchExecutor")
-    @Transactional
+    @UseConnectionPool(BulkheadRoutingDataSource.BATCH)
     public CompletableFuture<Integer> batchDeleteExpiredData(String tableName, java.time.LocalDateTime cutoffDate) {
         logger.info("开始批量删除过期数据，表: {}, 截止日期: {}", tableName, cutoffDate);
         
@@ -210,14 +233,13 @@ public class BatchProcessingService {
             
             switch (tableName.toLowerCase()) {
                 case "commits":
-                    // 这里需要实现自定义的批量删除逻辑
-                    // 由于JPA的deleteBy方法可能性能不佳，建议使用原生SQL
+                    deletedCount = onEachShard(() -> deleteCommitsBefore(cutoffDate));
                     break;
                 case "quality_metrics":
-                    // 类似的批量删除逻辑
+                    deletedCount = onEachShard(() -> deleteInBatches("quality_metrics", "timestamp", cutoffDate));
                     break;
                 case "test_coverage":
-                    // 类似的批量删除逻辑
+                    deletedCount = onEachShard(() -> deleteInBatches("test_coverage", "timestamp", cutoffDate));
                     break;
                 default:
                     logger.warn("不支持的表名: {}", tableName);
@@ -233,6 +255,63 @@ public class BatchProcessingService {
         }
     }
     
+    /**
+     * 已分区且开启保留策略时先整体清理完整过期的月分区，再分批删除截止日期所在月的剩余数据
+     * 归档模式下移入归档的行不计入删除数量
+     */
+    private int deleteCommitsBefore(java.time.LocalDateTime cutoffDate) {
+        PartitionMaintenanceService.PurgeResult fileChanges =
+            partitionMaintenanceService.purgePartitionsBefore("file_changes", cutoffDate);
+        PartitionMaintenanceService.PurgeResult commits =
+            partitionMaintenanceService.purgePartitionsBefore("commits", cutoffDate);
+        if (fileChanges.getPartitions() + commits.getPartitions() > 0) {
+            logger.info("整分区清理完成: 分区数={}, 删除行数={}, 归档行数={}",
+                       fileChanges.getPartitions() + commits.getPartitions(),
+                       fileChanges.getDeletedRows() + commits.getDeletedRows(),
+                       fileChanges.getArchivedRows() + commits.getArchivedRows());
+        }
+
+        int deletedCount = (int) (fileChanges.getDeletedRows() + commits.getDeletedRows());
+        deletedCount += deleteInBatches("file_changes", "commit_timestamp", cutoffDate);
+        deletedCount += deleteInBatches("commits", "timestamp", cutoffDate);
+        return deletedCount;
+    }
+    
+    /**
+     * 在每个分片上执行清理并累加删除数；未启用分片时直接在主库执行
+     */
+    private int onEachShard(IntSupplier delete) {
+        List<String> shards = shardMap != null ? shardMap.getShards() : Collections.singletonList(null);
+        int total = 0;
+        for (String shard : shards) {
+            String previous = shard != null ? ShardRoutingDataSource.bind(shard) : null;
+            try {
+                total += delete.getAsInt();
+            } finally {
+                if (shard != null) {
+                    ShardRoutingDataSource.restore(previous);
+                }
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * 按批次删除指定时间之前的数据
+     * 每批单独提交，避免长事务和大范围锁
+     */
+    private int deleteInBatches(String table, String timestampColumn, java.time.LocalDateTime cutoffDate) {
+        int batchSize = performanceConfig.getBatchSize();
+        String sql = "DELETE FROM " + table + " WHERE " + timestampColumn + " < ? LIMIT " + batchSize;
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, cutoffDate);
+            total += deleted;
+        } while (deleted >= batchSize);
+        return total;
+    }
+    
     /**
      * 批量更新统计信息
      * 
@@ -241,6 +320,7 @@ public class BatchProcessingService {
      */
     @Async("batchExecutor")
     @Transactional
+    @UseConnectionPool(BulkheadRoutingDataSource.BATCH)
     public CompletableFuture<Integer> batchUpdateStatistics(List<String> projectIds) {
         logger.info("开始批量更新统计信息，项目数量: {}", projectIds.size());
         
@@ -1,5 +1,6 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardScatterGather;
 import com.gitlab.metrics.dto.BugFixEfficiencyStats;
 import com.gitlab.metrics.entity.Issue;
 import com.gitlab.metrics.repository.IssueRepository;
@@ -31,6 +32,9 @@ public class BugFixEfficiencyService {
     @Autowired
     private AlertService alertService;
     
+    @Autowired(required = false)
+    private ShardScatterGather shardScatterGather;
+    
     // Configuration parameters: Expected fix time for different severity bugs (hours)
     @Value("${bug.fix.timeout.critical:4}")
     private int criticalBugTimeoutHours;
@@ -397,7 +401,7 @@ public class BugFixEfficiencyService {
      */
     private void checkTimeoutBugsBySeverity(String severity, int timeoutHours) {
         try {
-            List<Issue> timeoutBugs = issueRepository.findByStatusOrderByCreatedAtDesc("opened")
+            List<Issue> timeoutBugs = findOpenIssues()
                 .stream()
                 .filter(bug -> "bug".equals(bug.getIssueType()))
                 .filter(bug -> severity.equals(bug.getSeverity()))
@@ -414,6 +418,18 @@ public class BugFixEfficiencyService {
         }
     }
     
+    /**
+     * 未关闭的问题，按创建时间倒序；启用项目分片时合并所有分片的问题
+     */
+    private List<Issue> findOpenIssues() {
+        if (shardScatterGather == null) {
+            return issueRepository.findByStatusOrderByCreatedAtDesc("opened");
+        }
+        List<Issue> issues = shardScatterGather.gather(shard -> issueRepository.findByStatusOrderByCreatedAtDesc("opened"));
+        issues.sort(Comparator.comparing(Issue::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return issues;
+    }
+    
     /**
      * Send timeout alert
      */
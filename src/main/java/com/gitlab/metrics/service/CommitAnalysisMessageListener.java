@@ -1,7 +1,10 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.RabbitMQConfig;
 import com.gitlab.metrics.dto.webhook.PushEventRequest;
-import com.gitlab.metrics.service.webhook.WebhookEventProcessor;
+import com.gitlab.metrics.exception.DataProcessingException;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -24,10 +27,10 @@ public class CommitAnalysisMessageListener {
     /**
      * 监听提交分析队列，处理push事件
      * 
-     * @param message 包含push事件数据的消息
+     * @param message 包含push事件数据的消息信封
      */
-    @RabbitListener(queues = "commit.analysis")
-    public void handleCommitAnalysis(WebhookEventProcessor.WebhookEventMessage message) {
+    @RabbitListener(queues = RabbitMQConfig.COMMIT_ANALYSIS_QUEUE)
+    public void handleCommitAnalysis(EventEnvelope message) {
         String requestId = message.getRequestId();
         
         // 设置MDC用于日志跟踪
@@ -36,19 +39,8 @@ public class CommitAnalysisMessageListener {
         try {
             logger.info("Received commit analysis message: requestId={}", requestId);
             
-            // 验证消息数据
-            if (message.getEventData() == null) {
-                logger.error("Event data is null in commit analysis message: requestId={}", requestId);
-                return;
-            }
-            
-            if (!(message.getEventData() instanceof PushEventRequest)) {
-                logger.error("Invalid event data type in commit analysis message: expected PushEventRequest, got {}, requestId={}", 
-                           message.getEventData().getClass().getSimpleName(), requestId);
-                return;
-            }
-            
-            PushEventRequest pushEvent = (PushEventRequest) message.getEventData();
+            // 类型或载荷不符时直接进入 parking lot
+            PushEventRequest pushEvent = message.requirePayload(EventType.PUSH, PushEventRequest.class);
             
             // 处理提交分析
             int processedCommits = commitAnalysisService.processPushEvent(pushEvent);
@@ -58,11 +50,21 @@ public class CommitAnalysisMessageListener {
             
         } catch (Exception e) {
             logger.error("Failed to process commit analysis message: requestId={}", requestId, e);
-            // 在生产环境中，可能需要实现重试机制或将消息发送到死信队列
-            
+            // 抛出后由 DelayedRetryInterceptor 转投延迟梯队，多次失败后进入 parking lot
+            throw new DataProcessingException("Failed to process commit analysis: " + e.getMessage(), e);
         } finally {
             // 清理MDC
             MDC.clear();
         }
     }
+    
+    /**
+     * 监听大批量push的通道，处理逻辑相同，消费者数单独限制
+     * 
+     * @param message 包含push事件数据的消息信封
+     */
+    @RabbitListener(queues = RabbitMQConfig.COMMIT_ANALYSIS_BULK_QUEUE)
+    public void handleBulkCommitAnalysis(EventEnvelope message) {
+        handleCommitAnalysis(message);
+    }
 }
\ No newline at end of file
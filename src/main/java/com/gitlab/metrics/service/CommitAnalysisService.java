@@ -1,14 +1,16 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardedByProject;
 import com.gitlab.metrics.dto.webhook.PushEventRequest;
 import com.gitlab.metrics.entity.Commit;
 import com.gitlab.metrics.entity.FileChange;
 import com.gitlab.metrics.repository.CommitRepository;
 import com.gitlab.metrics.repository.FileChangeRepository;
+import com.gitlab.metrics.service.hotfile.HotFileTracker;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -46,7 +48,7 @@ public class CommitAnalysisService {
     private FileChangeRepository fileChangeRepository;
     
     @Autowired
-    private SonarQubeAnalysisService sonarQubeAnalysisService;
+    private QualityAnalysisDebouncer qualityAnalysisDebouncer;
     
     @Autowired
     private EntityManager entityManager;
@@ -54,6 +56,12 @@ public class CommitAnalysisService {
     @Autowired
     private BatchProcessingService batchProcessingService;
     
+    @Autowired
+    private RealtimeCounterService realtimeCounterService;
+    
+    @Autowired
+    private HotFileTracker hotFileTracker;
+    
     /**
      * 处理push事件，分析并保存提交数据（优化版本）
      * 使用批量处理和异步操作提高性能
@@ -61,6 +69,7 @@ public class CommitAnalysisService {
      * @param pushEvent GitLab push事件数据
      * @return 处理的提交数量
      */
+    @ShardedByProject("#pushEvent.projectId")
     public int processPushEvent(PushEventRequest pushEvent) {
         logger.info("Processing push event for project: {}, ref: {}, commits: {}", 
                    pushEvent.getProjectId(), pushEvent.getRef(), 
@@ -102,7 +111,7 @@ public class CommitAnalysisService {
                     processedCommitShas.add(commitInfo.getId());
                     
                     // 异步触发代码质量分析
-                    triggerQualityAnalysisAsync(projectId, commitInfo.getId(), pushEvent);
+                    triggerQualityAnalysisAsync(projectId, commit, pushEvent);
                 }
                 
             } catch (Exception e) {
@@ -121,6 +130,10 @@ public class CommitAnalysisService {
                 // 降级到单个保存
                 fallbackToIndividualSave(commitsToSave);
             }
+            
+            // 累加实时计数
+            realtimeCounterService.recordCommits(commitsToSave);
+            hotFileTracker.recordCommits(commitsToSave);
         }
         
         logger.info("Successfully processed {} commits from push event", commitsToSave.size());
@@ -175,13 +188,14 @@ public class CommitAnalysisService {
     
     /**
      * 异步触发代码质量分析
+     * 同一 SonarQube 项目在防抖窗口内的触发合并为一次对最新提交的分析
      * 
      * @param projectId 项目ID
-     * @param commitSha 提交SHA
+     * @param commit 提交，按提交时间判断窗口内哪个提交最新
      * @param pushEvent push事件数据
      */
-    @Async("taskExecutor")
-    private void triggerQualityAnalysisAsync(String projectId, String commitSha, PushEventRequest pushEvent) {
+    private void triggerQualityAnalysisAsync(String projectId, Commit commit, PushEventRequest pushEvent) {
+        String commitSha = commit.getCommitSha();
         try {
             // 构建SonarQube项目键，通常使用项目路径或名称
             String sonarProjectKey = generateSonarProjectKey(pushEvent);
@@ -189,8 +203,8 @@ public class CommitAnalysisService {
             logger.debug("Triggering async quality analysis for project: {}, commit: {}, sonar key: {}", 
                         projectId, commitSha, sonarProjectKey);
             
-            // 异步触发质量分析
-            sonarQubeAnalysisService.triggerQualityAnalysis(projectId, commitSha, sonarProjectKey);
+            // 经防抖器异步触发质量分析
+            qualityAnalysisDebouncer.trigger(projectId, commitSha, sonarProjectKey, commit.getTimestamp());
             
         } catch (Exception e) {
             logger.error("Failed to trigger async quality analysis for commit: {}", commitSha, e);
@@ -445,8 +459,8 @@ public class CommitAnalysisService {
             logger.debug("Triggering quality analysis for project: {}, commit: {}, sonar key: {}", 
                         projectId, commitSha, sonarProjectKey);
             
-            // 异步触发质量分析
-            sonarQubeAnalysisService.triggerQualityAnalysis(projectId, commitSha, sonarProjectKey);
+            // 经防抖器异步触发质量分析
+            qualityAnalysisDebouncer.trigger(projectId, commitSha, sonarProjectKey);
             
         } catch (Exception e) {
             logger.error("Failed to trigger quality analysis for commit: {}", commitSha, e);
@@ -1,11 +1,23 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardScatterGather;
 import com.gitlab.metrics.entity.Commit;
 import com.gitlab.metrics.repository.CommitRepository;
+import com.gitlab.metrics.repository.projection.BranchActivityRow;
+import com.gitlab.metrics.repository.projection.CommitTotalsRow;
+import com.gitlab.metrics.repository.projection.CommitTrendRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitSizeRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow;
+import com.gitlab.metrics.repository.projection.HourlyCommitCountRow;
+import com.gitlab.metrics.repository.projection.ProjectCommitStatsRow;
+import com.gitlab.metrics.repository.projection.ProjectDeveloperCountRow;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDate;
@@ -17,8 +29,13 @@ import java.util.stream.Collectors;
 /**
  * 代码提交统计服务
  * 提供按时间维度聚合的提交统计功能，支持按项目、分支、开发者筛选
+ * 查询范围覆盖已归档月份时，开发者、项目、趋势和总体统计会合并归档段上的聚合结果，
+ * 其余只查活跃表的统计（分支活跃度、按小时分布、大型提交、平均提交大小）拒绝这样的范围
+ * 所有查询都是只读事务，聚合结果直接以类型化投影返回，不加载实体
+ * 启用项目分片时，跨项目的开发者统计（排行榜）在各分片上分别聚合后合并
  */
 @Service
+@Transactional(readOnly = true)
 public class CommitStatisticsService {
     
     private static final Logger logger = LoggerFactory.getLogger(CommitStatisticsService.class);
@@ -26,6 +43,12 @@ public class CommitStatisticsService {
     @Autowired
     private CommitRepository commitRepository;
     
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+    
+    @Autowired(required = false)
+    private ShardScatterGather shardScatterGather;
+    
     /**
      * 获取开发者提交统计
      * 
@@ -40,14 +63,29 @@ public class CommitStatisticsService {
         logger.info("Getting developer commit stats: startDate={}, endDate={}, projectId={}, developerId={}", 
                    startDate, endDate, projectId, developerId);
         
-        List<Object[]> rawStats;
+        List<DeveloperCommitStatsRow> rawStats;
         
         if (StringUtils.hasText(projectId)) {
             rawStats = commitRepository.getDeveloperCommitStatsByProject(projectId, startDate, endDate);
+        } else if (shardScatterGather != null) {
+            // 同一开发者可能在多个分片上都有提交，按开发者合并各分片的聚合行
+            rawStats = ArchiveQueryService.mergeRows(
+                shardScatterGather.gather(shard -> commitRepository.getDeveloperCommitStats(startDate, endDate)),
+                Collections.emptyList(),
+                row -> Arrays.asList(row.getDeveloperId(), row.getDeveloperName()), DeveloperCommitStatsRow::plus,
+                Comparator.comparingLong(DeveloperCommitStatsRow::getCommitCount).reversed());
         } else {
             rawStats = commitRepository.getDeveloperCommitStats(startDate, endDate);
         }
         
+        if (spansArchive(startDate, endDate)) {
+            rawStats = ArchiveQueryService.mergeRows(rawStats,
+                archiveQueryService.getDeveloperCommitStats(startDate, endDate,
+                    StringUtils.hasText(projectId) ? projectId : null),
+                row -> Arrays.asList(row.getDeveloperId(), row.getDeveloperName()), DeveloperCommitStatsRow::plus,
+                Comparator.comparingLong(DeveloperCommitStatsRow::getCommitCount).reversed());
+        }
+        
         List<DeveloperCommitStats> stats = rawStats.stream()
             .map(this::mapToDeveloperCommitStats)
             .collect(Collectors.toList());
@@ -73,7 +111,14 @@ public class CommitStatisticsService {
     public List<ProjectCommitStats> getProjectCommitStats(LocalDateTime startDate, LocalDateTime endDate) {
         logger.info("Getting project commit stats: startDate={}, endDate={}", startDate, endDate);
         
-        List<Object[]> rawStats = commitRepository.getProjectCommitStats(startDate, endDate);
+        List<ProjectCommitStatsRow> rawStats = commitRepository.getProjectCommitStats(startDate, endDate);
+        
+        if (spansArchive(startDate, endDate)) {
+            rawStats = ArchiveQueryService.mergeRows(rawStats,
+                archiveQueryService.getProjectCommitStats(startDate, endDate),
+                ProjectCommitStatsRow::getProjectId, ProjectCommitStatsRow::plus,
+                Comparator.comparingLong(ProjectCommitStatsRow::getCommitCount).reversed());
+        }
         
         List<ProjectCommitStats> stats = rawStats.stream()
             .map(this::mapToProjectCommitStats)
@@ -83,6 +128,26 @@ public class CommitStatisticsService {
         return stats;
     }
     
+    /**
+     * 按项目和开发者统计提交数，只查活跃表，用于当日实时计数
+     * 
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param projectId 项目ID（可选）
+     * @return 项目-开发者提交数列表
+     */
+    public List<ProjectDeveloperCountRow> getProjectDeveloperCommitCounts(LocalDateTime startDate, LocalDateTime endDate,
+                                                                          String projectId) {
+        if (StringUtils.hasText(projectId)) {
+            return commitRepository.getDeveloperCommitCountsByProject(projectId, startDate, endDate);
+        }
+        if (shardScatterGather != null) {
+            // 各分片上的项目互不重叠，分组行直接拼接
+            return shardScatterGather.gather(shard -> commitRepository.getProjectDeveloperCommitCounts(startDate, endDate));
+        }
+        return commitRepository.getProjectDeveloperCommitCounts(startDate, endDate);
+    }
+    
     /**
      * 获取提交趋势数据（按日期）
      * 
@@ -94,7 +159,7 @@ public class CommitStatisticsService {
     public List<CommitTrendData> getCommitTrend(LocalDateTime startDate, LocalDateTime endDate, String projectId) {
         logger.info("Getting commit trend: startDate={}, endDate={}, projectId={}", startDate, endDate, projectId);
         
-        List<Object[]> rawTrend;
+        List<CommitTrendRow> rawTrend;
         
         if (StringUtils.hasText(projectId)) {
             rawTrend = commitRepository.getCommitTrendByProjectAndDate(projectId, startDate, endDate);
@@ -102,6 +167,13 @@ public class CommitStatisticsService {
             rawTrend = commitRepository.getCommitTrendByDate(startDate, endDate);
         }
         
+        if (spansArchive(startDate, endDate)) {
+            rawTrend = ArchiveQueryService.mergeRows(rawTrend,
+                archiveQueryService.getCommitTrend(startDate, endDate,
+                    StringUtils.hasText(projectId) ? projectId : null),
+                CommitTrendRow::getDate, CommitTrendRow::plus, Comparator.comparing(CommitTrendRow::getDate));
+        }
+        
         List<CommitTrendData> trendData = rawTrend.stream()
             .map(this::mapToCommitTrendData)
             .collect(Collectors.toList());
@@ -122,9 +194,10 @@ public class CommitStatisticsService {
      * @return 分支活跃度统计列表
      */
     public List<BranchActivityStats> getBranchActivityStats(String projectId, LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("branch activity stats", startDate, endDate);
         logger.info("Getting branch activity stats: projectId={}, startDate={}, endDate={}", projectId, startDate, endDate);
         
-        List<Object[]> rawStats = commitRepository.getBranchActivityStats(projectId, startDate, endDate);
+        List<BranchActivityRow> rawStats = commitRepository.getBranchActivityStats(projectId, startDate, endDate);
         
         List<BranchActivityStats> stats = rawStats.stream()
             .map(this::mapToBranchActivityStats)
@@ -143,9 +216,10 @@ public class CommitStatisticsService {
      * @return 开发者活跃度数据（24小时分布）
      */
     public List<DeveloperActivityData> getDeveloperActivityByHour(String developerId, LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("developer activity by hour", startDate, endDate);
         logger.info("Getting developer activity by hour: developerId={}, startDate={}, endDate={}", developerId, startDate, endDate);
         
-        List<Object[]> rawActivity = commitRepository.getDeveloperActivityByHour(developerId, startDate, endDate);
+        List<HourlyCommitCountRow> rawActivity = commitRepository.getDeveloperActivityByHour(developerId, startDate, endDate);
         
         // 创建24小时的活跃度数据，初始值为0
         Map<Integer, Integer> activityMap = new HashMap<>();
@@ -154,10 +228,8 @@ public class CommitStatisticsService {
         }
         
         // 填充实际数据
-        for (Object[] row : rawActivity) {
-            Integer hour = (Integer) row[0];
-            Long commitCount = (Long) row[1];
-            activityMap.put(hour, commitCount.intValue());
+        for (HourlyCommitCountRow row : rawActivity) {
+            activityMap.put(row.getHour(), (int) row.getCommitCount());
         }
         
         List<DeveloperActivityData> activityData = new ArrayList<>();
@@ -181,6 +253,7 @@ public class CommitStatisticsService {
      * @return 大型提交列表
      */
     public List<Commit> getLargeCommits(Integer threshold, LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("large commits", startDate, endDate);
         logger.info("Getting large commits: threshold={}, startDate={}, endDate={}", threshold, startDate, endDate);
         
         List<Commit> largeCommits = commitRepository.findLargeCommits(threshold, startDate, endDate);
@@ -197,9 +270,10 @@ public class CommitStatisticsService {
      * @return 开发者平均提交大小统计列表
      */
     public List<DeveloperAverageCommitSize> getDeveloperAverageCommitSize(LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("developer average commit size", startDate, endDate);
         logger.info("Getting developer average commit size: startDate={}, endDate={}", startDate, endDate);
         
-        List<Object[]> rawStats = commitRepository.getDeveloperAverageCommitSize(startDate, endDate);
+        List<DeveloperCommitSizeRow> rawStats = commitRepository.getDeveloperAverageCommitSize(startDate, endDate);
         
         List<DeveloperAverageCommitSize> stats = rawStats.stream()
             .map(this::mapToDeveloperAverageCommitSize)
@@ -220,7 +294,11 @@ public class CommitStatisticsService {
     public ProjectTotalStats getProjectTotalStats(String projectId, LocalDateTime startDate, LocalDateTime endDate) {
         logger.info("Getting project total stats: projectId={}, startDate={}, endDate={}", projectId, startDate, endDate);
         
-        Object[] rawStats = commitRepository.getProjectTotalStats(projectId, startDate, endDate);
+        CommitTotalsRow rawStats = commitRepository.getProjectTotalStats(projectId, startDate, endDate);
+        
+        if (spansArchive(startDate, endDate)) {
+            rawStats = archiveQueryService.getProjectTotalStats(projectId, startDate, endDate).plus(rawStats);
+        }
         
         ProjectTotalStats stats = mapToProjectTotalStats(rawStats);
         
@@ -229,72 +307,79 @@ public class CommitStatisticsService {
         return stats;
     }
     
+    /**
+     * 查询范围是否包含已归档的提交（已归档的行已从活跃表删除，两边结果不会重复）
+     */
+    private boolean spansArchive(LocalDateTime startDate, LocalDateTime endDate) {
+        return archiveQueryService != null && archiveQueryService.covers(ArchiveTable.COMMITS, startDate, endDate);
+    }
+    
+    /**
+     * 没有归档实现的统计在范围包含已归档的提交时直接拒绝
+     */
+    private void requireLive(String reader, LocalDateTime startDate, LocalDateTime endDate) {
+        if (archiveQueryService != null) {
+            archiveQueryService.requireLive(reader, startDate, endDate, ArchiveTable.COMMITS);
+        }
+    }
+    
     // 映射方法
     
-    private DeveloperCommitStats mapToDeveloperCommitStats(Object[] row) {
+    private DeveloperCommitStats mapToDeveloperCommitStats(DeveloperCommitStatsRow row) {
         DeveloperCommitStats stats = new DeveloperCommitStats();
-        stats.setDeveloperId((String) row[0]);
-        stats.setDeveloperName((String) row[1]);
-        stats.setCommitCount(((Long) row[2]).intValue());
-        stats.setLinesAdded(((Long) row[3]).intValue());
-        stats.setLinesDeleted(((Long) row[4]).intValue());
-        stats.setFilesChanged(((Long) row[5]).intValue());
+        stats.setDeveloperId(row.getDeveloperId());
+        stats.setDeveloperName(row.getDeveloperName());
+        stats.setCommitCount((int) row.getCommitCount());
+        stats.setLinesAdded((int) row.getLinesAdded());
+        stats.setLinesDeleted((int) row.getLinesDeleted());
+        stats.setFilesChanged((int) row.getFilesChanged());
         return stats;
     }
     
-    private ProjectCommitStats mapToProjectCommitStats(Object[] row) {
+    private ProjectCommitStats mapToProjectCommitStats(ProjectCommitStatsRow row) {
         ProjectCommitStats stats = new ProjectCommitStats();
-        stats.setProjectId((String) row[0]);
-        stats.setCommitCount(((Long) row[1]).intValue());
-        stats.setLinesAdded(((Long) row[2]).intValue());
-        stats.setLinesDeleted(((Long) row[3]).intValue());
-        stats.setFilesChanged(((Long) row[4]).intValue());
+        stats.setProjectId(row.getProjectId());
+        stats.setCommitCount((int) row.getCommitCount());
+        stats.setLinesAdded((int) row.getLinesAdded());
+        stats.setLinesDeleted((int) row.getLinesDeleted());
+        stats.setFilesChanged((int) row.getFilesChanged());
         return stats;
     }
     
-    private CommitTrendData mapToCommitTrendData(Object[] row) {
+    private CommitTrendData mapToCommitTrendData(CommitTrendRow row) {
         CommitTrendData data = new CommitTrendData();
-        if (row.length == 5) {
-            // 包含项目ID的查询结果
-            data.setProjectId((String) row[0]);
-            data.setDate((LocalDate) row[1]);
-            data.setCommitCount(((Long) row[2]).intValue());
-            data.setLinesAdded(((Long) row[3]).intValue());
-            data.setLinesDeleted(((Long) row[4]).intValue());
-        } else {
-            // 不包含项目ID的查询结果
-            data.setDate((LocalDate) row[0]);
-            data.setCommitCount(((Long) row[1]).intValue());
-            data.setLinesAdded(((Long) row[2]).intValue());
-            data.setLinesDeleted(((Long) row[3]).intValue());
-        }
+        data.setProjectId(row.getProjectId());
+        data.setDate(row.getDate());
+        data.setCommitCount((int) row.getCommitCount());
+        data.setLinesAdded((int) row.getLinesAdded());
+        data.setLinesDeleted((int) row.getLinesDeleted());
         return data;
     }
     
-    private BranchActivityStats mapToBranchActivityStats(Object[] row) {
+    private BranchActivityStats mapToBranchActivityStats(BranchActivityRow row) {
         BranchActivityStats stats = new BranchActivityStats();
-        stats.setBranchName((String) row[0]);
-        stats.setCommitCount(((Long) row[1]).intValue());
-        stats.setLinesAdded(((Long) row[2]).intValue());
-        stats.setLinesDeleted(((Long) row[3]).intValue());
+        stats.setBranchName(row.getBranch());
+        stats.setCommitCount((int) row.getCommitCount());
+        stats.setLinesAdded((int) row.getLinesAdded());
+        stats.setLinesDeleted((int) row.getLinesDeleted());
         return stats;
     }
     
-    private DeveloperAverageCommitSize mapToDeveloperAverageCommitSize(Object[] row) {
+    private DeveloperAverageCommitSize mapToDeveloperAverageCommitSize(DeveloperCommitSizeRow row) {
         DeveloperAverageCommitSize stats = new DeveloperAverageCommitSize();
-        stats.setDeveloperId((String) row[0]);
-        stats.setDeveloperName((String) row[1]);
-        stats.setAverageChangedLines(((Double) row[2]).intValue());
-        stats.setAverageChangedFiles(((Double) row[3]).intValue());
+        stats.setDeveloperId(row.getDeveloperId());
+        stats.setDeveloperName(row.getDeveloperName());
+        stats.setAverageChangedLines(row.getAverageChangedLines() != null ? row.getAverageChangedLines().intValue() : 0);
+        stats.setAverageChangedFiles(row.getAverageChangedFiles() != null ? row.getAverageChangedFiles().intValue() : 0);
         return stats;
     }
     
-    private ProjectTotalStats mapToProjectTotalStats(Object[] row) {
+    private ProjectTotalStats mapToProjectTotalStats(CommitTotalsRow row) {
         ProjectTotalStats stats = new ProjectTotalStats();
-        stats.setTotalLinesAdded(((Long) row[0]).intValue());
-        stats.setTotalLinesDeleted(((Long) row[1]).intValue());
-        stats.setTotalFilesChanged(((Long) row[2]).intValue());
-        stats.setTotalCommits(((Long) row[3]).intValue());
+        stats.setTotalLinesAdded((int) row.getLinesAdded());
+        stats.setTotalLinesDeleted((int) row.getLinesDeleted());
+        stats.setTotalFilesChanged((int) row.getFilesChanged());
+        stats.setTotalCommits((int) row.getCommitCount());
         return stats;
     }
     
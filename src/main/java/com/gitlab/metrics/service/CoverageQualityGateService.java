@@ -1,7 +1,9 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardedByProject;
 import com.gitlab.metrics.entity.TestCoverage;
 import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +33,9 @@ public class CoverageQualityGateService {
     @Autowired
     private AlertService alertService;
     
+    @Autowired
+    private RealtimeCounterService realtimeCounterService;
+    
     // 默认覆盖率阈值配置
     @Value("${coverage.threshold.line:80.0}")
     private Double defaultLineThreshold;
@@ -54,6 +59,7 @@ public class CoverageQualityGateService {
      * @param commitSha 提交SHA
      * @return 质量门禁检查结果
      */
+    @ShardedByProject("#projectId")
     public QualityGateResult checkQualityGate(String projectId, String commitSha) {
         logger.info("开始检查覆盖率质量门禁: projectId={}, commitSha={}", projectId, commitSha);
         
@@ -76,6 +82,7 @@ public class CoverageQualityGateService {
     /**
      * 检查覆盖率质量门禁（使用自定义阈值）
      */
+    @ShardedByProject("#projectId")
     public QualityGateResult checkQualityGate(String projectId, String commitSha, 
                                             Double lineThreshold, Double branchThreshold, Double functionThreshold) {
         logger.info("开始检查覆盖率质量门禁（自定义阈值）: projectId={}, commitSha={}, lineThreshold={}, branchThreshold={}, functionThreshold={}", 
@@ -144,6 +151,7 @@ public class CoverageQualityGateService {
         coverage.setStatus(status);
         coverage.setThreshold(lineThreshold);
         testCoverageRepository.save(coverage);
+        realtimeCounterService.recordCoverageStatus(coverage);
         
         String message = passed ? "覆盖率质量门禁检查通过" : "覆盖率质量门禁检查失败";
         
@@ -161,6 +169,7 @@ public class CoverageQualityGateService {
      * @param newCodeLines 新增代码行数
      * @return 新增代码测试检查结果
      */
+    @ShardedByProject("#projectId")
     public NewCodeTestResult checkNewCodeTestRequirement(String projectId, String commitSha, Integer newCodeLines) {
         logger.info("开始检查新增代码测试要求: projectId={}, commitSha={}, newCodeLines={}", 
                    projectId, commitSha, newCodeLines);
@@ -6,13 +6,18 @@ import com.gitlab.metrics.entity.MergeRequest;
 import com.gitlab.metrics.entity.QualityMetrics;
 import com.gitlab.metrics.entity.TestCoverage;
 import com.gitlab.metrics.repository.*;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import com.gitlab.metrics.util.TrendDownsampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -21,6 +26,7 @@ import java.util.stream.Collectors;
 /**
  * 效率看板服务
  * 提供综合的开发效率看板数据，包括趋势分析和对比数据计算
+ * 看板直接读取活跃表，时间范围（质量和覆盖率含对比的上一期间）包含已归档数据时拒绝生成
  */
 @Service
 @Transactional(readOnly = true)
@@ -49,6 +55,12 @@ public class DashboardService {
     @Autowired
     private BugFixEfficiencyService bugFixEfficiencyService;
     
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+    
+    @Value("${app.trends.max-points:120}")
+    private int defaultMaxPoints = 120;
+    
     /**
      * 获取项目效率看板数据
      * 
@@ -61,8 +73,36 @@ public class DashboardService {
     @Cacheable(value = "dashboard", key = "#projectId + '_' + #timeRange", unless = "#result == null")
     public DashboardResponse getDashboardData(String projectId, LocalDateTime startDate, 
                                             LocalDateTime endDate, String timeRange) {
+        return buildDashboardData(projectId, startDate, endDate, timeRange, defaultMaxPoints);
+    }
+    
+    /**
+     * 获取项目效率看板数据，限制趋势数据的最大点数
+     * 
+     * @param projectId 项目ID
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param timeRange 时间范围标识
+     * @param maxPoints 趋势数据最大点数
+     * @return 效率看板数据
+     */
+    @Cacheable(value = "dashboard", key = "#projectId + '_' + #timeRange + '_' + #maxPoints", unless = "#result == null")
+    public DashboardResponse getDashboardData(String projectId, LocalDateTime startDate, 
+                                            LocalDateTime endDate, String timeRange, int maxPoints) {
+        return buildDashboardData(projectId, startDate, endDate, timeRange, maxPoints);
+    }
+    
+    private DashboardResponse buildDashboardData(String projectId, LocalDateTime startDate, 
+                                               LocalDateTime endDate, String timeRange, int maxPoints) {
         logger.info("获取效率看板数据: projectId={}, timeRange={}", projectId, timeRange);
         
+        if (archiveQueryService != null) {
+            archiveQueryService.requireLive("dashboard", startDate, endDate, ArchiveTable.COMMITS);
+            LocalDateTime previousStart = startDate.minus(ChronoUnit.DAYS.between(startDate, endDate), ChronoUnit.DAYS);
+            archiveQueryService.requireLive("dashboard", previousStart, endDate,
+                ArchiveTable.QUALITY_METRICS, ArchiveTable.TEST_COVERAGE);
+        }
+        
         DashboardResponse response = new DashboardResponse(projectId, timeRange);
         response.setStartDate(startDate);
         response.setEndDate(endDate);
@@ -85,7 +125,7 @@ public class DashboardService {
             response.setProductivityMetrics(productivityMetrics);
             
             // 获取趋势数据
-            List<DashboardResponse.TrendPoint> trendData = buildTrendData(projectId, startDate, endDate);
+            List<DashboardResponse.TrendPoint> trendData = buildTrendData(projectId, startDate, endDate, maxPoints);
             response.setTrendData(trendData);
             
             logger.info("效率看板数据获取完成");
@@ -134,14 +174,12 @@ public class DashboardService {
         metrics.setTotalDevelopers(developerStats.size());
         
         // 获取合并请求数量
-        List<MergeRequest> mergeRequests = mergeRequestRepository
-            .findByProjectIdAndCreatedAtBetween(projectId, startDate, endDate);
-        metrics.setTotalMergeRequests(mergeRequests.size());
+        metrics.setTotalMergeRequests((int) mergeRequestRepository
+            .countByProjectIdAndCreatedAtBetween(projectId, startDate, endDate));
         
         // 获取Issue数量
-        List<Issue> issues = issueRepository
-            .findByProjectIdAndCreatedAtBetween(projectId, startDate, endDate);
-        metrics.setTotalIssues(issues.size());
+        metrics.setTotalIssues((int) issueRepository
+            .countByProjectIdAndCreatedAtBetween(projectId, startDate, endDate));
         
         return metrics;
     }
@@ -322,8 +360,10 @@ public class DashboardService {
     
     /**
      * 构建趋势数据
+     * 按时间范围自动按日/周/月分组，分组后仍超过最大点数时使用LTTB降采样
      */
-    private List<DashboardResponse.TrendPoint> buildTrendData(String projectId, LocalDateTime startDate, LocalDateTime endDate) {
+    private List<DashboardResponse.TrendPoint> buildTrendData(String projectId, LocalDateTime startDate, 
+                                                              LocalDateTime endDate, int maxPoints) {
         List<DashboardResponse.TrendPoint> trendPoints = new ArrayList<>();
         
         // 获取提交趋势
@@ -365,7 +405,63 @@ public class DashboardService {
             trendPoints.add(point);
         }
         
-        return trendPoints;
+        TrendDownsampler.Granularity granularity = TrendDownsampler.Granularity.forRange(startDate, endDate);
+        List<DashboardResponse.TrendPoint> grouped = groupTrendPoints(trendPoints, granularity);
+        List<DashboardResponse.TrendPoint> sampled = TrendDownsampler.largestTriangleThreeBuckets(
+            grouped, maxPoints, point -> point.getCommits() != null ? point.getCommits() : 0);
+        
+        logger.debug("趋势数据降采样: granularity={}, 原始点数={}, 分组后={}, 返回={}", 
+                    granularity, trendPoints.size(), grouped.size(), sampled.size());
+        return sampled;
+    }
+    
+    /**
+     * 按粒度合并趋势点：提交数和代码行数累加，质量分和覆盖率取有数据日期的平均值
+     */
+    private List<DashboardResponse.TrendPoint> groupTrendPoints(
+            List<DashboardResponse.TrendPoint> dailyPoints, TrendDownsampler.Granularity granularity) {
+        if (granularity == TrendDownsampler.Granularity.DAY) {
+            return dailyPoints;
+        }
+        
+        Map<LocalDate, DashboardResponse.TrendPoint> buckets = new LinkedHashMap<>();
+        Map<LocalDate, double[]> scoreSums = new HashMap<>();
+        for (DashboardResponse.TrendPoint daily : dailyPoints) {
+            LocalDate bucketStart = granularity.bucketStart(daily.getDate().toLocalDate());
+            DashboardResponse.TrendPoint point = buckets.computeIfAbsent(bucketStart, date -> {
+                DashboardResponse.TrendPoint created = new DashboardResponse.TrendPoint();
+                created.setDate(date.atStartOfDay());
+                created.setCommits(0);
+                created.setLinesAdded(0);
+                created.setLinesDeleted(0);
+                return created;
+            });
+            point.setCommits(point.getCommits() + nullToZero(daily.getCommits()));
+            point.setLinesAdded(point.getLinesAdded() + nullToZero(daily.getLinesAdded()));
+            point.setLinesDeleted(point.getLinesDeleted() + nullToZero(daily.getLinesDeleted()));
+            
+            // [质量分合计, 质量分天数, 覆盖率合计, 覆盖率天数]
+            double[] sums = scoreSums.computeIfAbsent(bucketStart, date -> new double[4]);
+            if (daily.getQualityScore() != null && daily.getQualityScore() > 0) {
+                sums[0] += daily.getQualityScore();
+                sums[1]++;
+            }
+            if (daily.getTestCoverage() != null && daily.getTestCoverage() > 0) {
+                sums[2] += daily.getTestCoverage();
+                sums[3]++;
+            }
+        }
+        
+        for (Map.Entry<LocalDate, DashboardResponse.TrendPoint> entry : buckets.entrySet()) {
+            double[] sums = scoreSums.get(entry.getKey());
+            entry.getValue().setQualityScore(sums[1] > 0 ? sums[0] / sums[1] : 0.0);
+            entry.getValue().setTestCoverage(sums[3] > 0 ? sums[2] / sums[3] : 0.0);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+    
+    private static int nullToZero(Integer value) {
+        return value != null ? value : 0;
     }
     
     // 辅助方法
@@ -1,7 +1,10 @@
 package com.gitlab.metrics.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.RabbitMQConfig;
 import com.gitlab.metrics.dto.webhook.IssueEventRequest;
+import com.gitlab.metrics.exception.DataProcessingException;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -20,23 +23,16 @@ public class IssueAnalysisMessageListener {
     @Autowired
     private IssueAnalysisService issueAnalysisService;
     
-    @Autowired
-    private ObjectMapper objectMapper;
-    
     /**
      * 处理Issue分析消息
      */
-    @RabbitListener(queues = "bug.tracking.analysis.queue")
-    public void handleIssueAnalysisMessage(String message) {
+    @RabbitListener(queues = RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE)
+    public void handleIssueAnalysisMessage(EventEnvelope eventMessage) {
         try {
-            logger.info("收到Issue分析消息: {}", message);
-            
-            // 解析WebhookEventMessage包装器
-            com.gitlab.metrics.service.webhook.WebhookEventProcessor.WebhookEventMessage eventMessage = 
-                objectMapper.readValue(message, com.gitlab.metrics.service.webhook.WebhookEventProcessor.WebhookEventMessage.class);
+            logger.info("收到Issue分析消息: type={}, requestId={}", eventMessage.getType(), eventMessage.getRequestId());
             
-            // 提取IssueEventRequest
-            IssueEventRequest issueEvent = objectMapper.convertValue(eventMessage.getEventData(), IssueEventRequest.class);
+            // 非Issue事件或载荷不符时直接进入 parking lot
+            IssueEventRequest issueEvent = eventMessage.requirePayload(EventType.ISSUE, IssueEventRequest.class);
             
             // 执行Issue分析
             IssueAnalysisService.IssueProcessResult result = 
@@ -51,8 +47,9 @@ public class IssueAnalysisMessageListener {
             }
             
         } catch (Exception e) {
-            logger.error("处理Issue分析消息失败: {}", message, e);
-            // 这里可以实现重试机制或者将失败的消息发送到死信队列
+            logger.error("处理Issue分析消息失败: requestId={}", eventMessage.getRequestId(), e);
+            // 抛出后由 DelayedRetryInterceptor 转投延迟梯队，多次失败后进入 parking lot
+            throw new DataProcessingException("处理Issue分析消息失败: " + e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardedByProject;
 import com.gitlab.metrics.dto.BugFixEfficiencyStats;
 import com.gitlab.metrics.dto.webhook.IssueEventRequest;
 import com.gitlab.metrics.entity.Issue;
@@ -41,6 +42,7 @@ public class IssueAnalysisService {
      * @param issueEvent GitLab Issue事件数据
      * @return 处理结果
      */
+    @ShardedByProject("#issueEvent.project?.id")
     public IssueProcessResult processIssueEvent(IssueEventRequest issueEvent) {
         try {
             logger.info("处理Issue事件: projectId={}, issueId={}, action={}", 
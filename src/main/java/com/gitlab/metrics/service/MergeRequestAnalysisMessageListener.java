@@ -1,8 +1,9 @@
 package com.gitlab.metrics.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.RabbitMQConfig;
 import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
-import com.gitlab.metrics.service.webhook.WebhookEventProcessor;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -22,14 +23,11 @@ public class MergeRequestAnalysisMessageListener {
     @Autowired
     private MergeRequestService mergeRequestService;
     
-    @Autowired
-    private ObjectMapper objectMapper;
-    
     /**
      * 处理合并请求分析消息
      */
-    @RabbitListener(queues = "merge-request-analysis-queue")
-    public void handleMergeRequestAnalysis(WebhookEventProcessor.WebhookEventMessage message) {
+    @RabbitListener(queues = RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE)
+    public void handleMergeRequestAnalysis(EventEnvelope message) {
         String requestId = message.getRequestId();
         
         // Set up MDC for logging
@@ -38,17 +36,12 @@ public class MergeRequestAnalysisMessageListener {
         try {
             logger.info("Received merge request analysis message: requestId={}", requestId);
             
-            // Extract the event data
-            Object eventData = message.getEventData();
-            MergeRequestEventRequest event;
-            
-            if (eventData instanceof MergeRequestEventRequest) {
-                event = (MergeRequestEventRequest) eventData;
-            } else {
-                // Convert from generic object to specific type
-                String eventJson = objectMapper.writeValueAsString(eventData);
-                event = objectMapper.readValue(eventJson, MergeRequestEventRequest.class);
+            // 合并提交的push事件也会投递到该队列，这里只处理合并请求事件
+            if (message.getType() != EventType.MERGE_REQUEST) {
+                logger.debug("Skipping {} event on merge request analysis queue: requestId={}", message.getType(), requestId);
+                return;
             }
+            MergeRequestEventRequest event = message.requirePayload(EventType.MERGE_REQUEST, MergeRequestEventRequest.class);
             
             // 处理合并请求事件
             mergeRequestService.processMergeRequestEvent(event);
@@ -58,7 +51,7 @@ public class MergeRequestAnalysisMessageListener {
             
         } catch (Exception e) {
             logger.error("Failed to process merge request analysis message: requestId={}", requestId, e);
-            // 这里可以添加重试逻辑或死信队列处理
+            // 抛出后由 DelayedRetryInterceptor 转投延迟梯队，多次失败后进入 parking lot
             throw new RuntimeException("Failed to process merge request analysis: " + e.getMessage(), e);
         } finally {
             MDC.clear();
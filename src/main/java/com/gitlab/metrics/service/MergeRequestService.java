@@ -1,5 +1,6 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardedByProject;
 import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
 import com.gitlab.metrics.entity.CodeReview;
 import com.gitlab.metrics.entity.MergeRequest;
@@ -38,6 +39,7 @@ public class MergeRequestService {
     /**
      * 处理合并请求事件
      */
+    @ShardedByProject("#event.objectAttributes?.targetProjectId")
     public void processMergeRequestEvent(MergeRequestEventRequest event) {
         try {
             logger.info("Processing merge request event: MR {} - Action: {}", 
@@ -247,7 +249,7 @@ public class MergeRequestService {
      * 检查评审批准是否满足要求
      */
     public boolean isReviewApprovalSatisfied(MergeRequest mergeRequest) {
-        List<CodeReview> reviews = codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(mergeRequest.getId());
+        List<CodeReview> reviews = codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(mergeRequest);
         
         if (reviews.isEmpty()) {
             return !isReviewRequired(mergeRequest);
@@ -283,7 +285,7 @@ public class MergeRequestService {
             return "approved";
         }
         
-        List<CodeReview> reviews = codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(mergeRequest.getId());
+        List<CodeReview> reviews = codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(mergeRequest);
         
         if (reviews.isEmpty()) {
             return "pending";
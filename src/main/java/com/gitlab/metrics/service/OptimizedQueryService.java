@@ -1,5 +1,11 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardScatterGather;
+import com.gitlab.metrics.config.ShardedByProject;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import com.gitlab.metrics.service.hotfile.HotFileTracker;
+import com.gitlab.metrics.util.TrendDownsampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,12 +16,16 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 优化查询服务
  * 提供高性能的数据库查询方法，使用原生SQL和优化策略
+ * 只查询活跃表，时间范围包含已归档数据时拒绝查询，不返回缺少归档月份的结果
  */
 @Service
 @Transactional(readOnly = true)
@@ -29,12 +39,28 @@ public class OptimizedQueryService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private HotFileTracker hotFileTracker;
+    
+    @Autowired(required = false)
+    private ShardScatterGather shardScatterGather;
+    
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+    
+    /**
+     * 热点文件候选的过采样倍数，补偿草图估计误差
+     */
+    private static final int HOT_FILE_CANDIDATE_FACTOR = 2;
+    
     /**
      * 获取项目提交统计（优化版本）
      * 使用原生SQL和索引优化
      */
     @Cacheable(value = "statistics", key = "#projectId + '_commits_' + #startDate + '_' + #endDate")
+    @ShardedByProject("#projectId")
     public Map<String, Object> getOptimizedCommitStats(String projectId, LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("commit stats", startDate, endDate, ArchiveTable.COMMITS);
         logger.debug("获取优化的提交统计: projectId={}, startDate={}, endDate={}", projectId, startDate, endDate);
         
         String sql = "SELECT " +
@@ -59,6 +85,7 @@ public class OptimizedQueryService {
     @Cacheable(value = "developer", key = "'efficiency_ranking_' + #startDate + '_' + #endDate + '_' + #limit")
     public List<Map<String, Object>> getOptimizedDeveloperEfficiencyRanking(
             LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        requireLive("developer efficiency ranking", startDate, endDate, ArchiveTable.COMMITS);
         logger.debug("获取优化的开发者效率排行: startDate={}, endDate={}, limit={}", startDate, endDate, limit);
         
         String sql = "SELECT " +
@@ -85,12 +112,12 @@ public class OptimizedQueryService {
     
     /**
      * 获取质量趋势数据（优化版本）
+     * groupBy 支持 day/week/month，周按 %Y-%u 分组，其他值按日分组
      */
     @Cacheable(value = "trends", key = "#projectId + '_quality_' + #groupBy + '_' + #startDate + '_' + #endDate")
+    @ShardedByProject("#projectId")
     public List<Map<String, Object>> getOptimizedQualityTrends(
             String projectId, LocalDateTime startDate, LocalDateTime endDate, String groupBy) {
-        logger.debug("获取优化的质量趋势: projectId={}, groupBy={}", projectId, groupBy);
-        
         String dateFormat;
         switch (groupBy.toLowerCase()) {
             case "week":
@@ -102,6 +129,29 @@ public class OptimizedQueryService {
             default:
                 dateFormat = "%Y-%m-%d";
         }
+        logger.debug("获取优化的质量趋势: projectId={}, groupBy={}", projectId, groupBy);
+        return queryQualityTrends(projectId, startDate, endDate, dateFormat);
+    }
+    
+    /**
+     * 获取质量趋势数据（降采样版本）
+     * groupBy 支持 day/week/month，auto 或其他值按时间范围自动选择，周按 ISO 年-周分组；
+     * 分组后的点数仍超过 maxPoints 时按可维护性指数使用LTTB降采样
+     */
+    @Cacheable(value = "trends", key = "#projectId + '_quality_' + #groupBy + '_' + #startDate + '_' + #endDate + '_' + #maxPoints")
+    @ShardedByProject("#projectId")
+    public List<Map<String, Object>> getOptimizedQualityTrends(
+            String projectId, LocalDateTime startDate, LocalDateTime endDate, String groupBy, int maxPoints) {
+        TrendDownsampler.Granularity granularity = TrendDownsampler.Granularity.resolve(groupBy, startDate, endDate);
+        logger.debug("获取优化的质量趋势: projectId={}, groupBy={}, granularity={}, maxPoints={}",
+            projectId, groupBy, granularity, maxPoints);
+        List<Map<String, Object>> trends = queryQualityTrends(projectId, startDate, endDate, dateFormat(granularity));
+        return TrendDownsampler.largestTriangleThreeBuckets(trends, maxPoints, row -> toDouble(row.get("avg_maintainability")));
+    }
+    
+    private List<Map<String, Object>> queryQualityTrends(
+            String projectId, LocalDateTime startDate, LocalDateTime endDate, String dateFormat) {
+        requireLive("quality trends", startDate, endDate, ArchiveTable.QUALITY_METRICS);
         
         String sql = String.format(
             "SELECT " +
@@ -127,12 +177,35 @@ public class OptimizedQueryService {
      * 获取测试覆盖率趋势（优化版本）
      */
     @Cacheable(value = "trends", key = "#projectId + '_coverage_' + #startDate + '_' + #endDate")
+    @ShardedByProject("#projectId")
     public List<Map<String, Object>> getOptimizedCoverageTrends(
             String projectId, LocalDateTime startDate, LocalDateTime endDate) {
-        logger.debug("获取优化的覆盖率趋势: projectId={}", projectId);
+        return queryCoverageTrends(projectId, startDate, endDate, TrendDownsampler.Granularity.DAY);
+    }
+    
+    /**
+     * 获取测试覆盖率趋势（降采样版本）
+     * groupBy 支持 day/week/month/auto，分组后的点数仍超过 maxPoints 时按行覆盖率使用LTTB降采样
+     */
+    @Cacheable(value = "trends", key = "#projectId + '_coverage_' + #groupBy + '_' + #startDate + '_' + #endDate + '_' + #maxPoints")
+    @ShardedByProject("#projectId")
+    public List<Map<String, Object>> getOptimizedCoverageTrends(
+            String projectId, LocalDateTime startDate, LocalDateTime endDate, String groupBy, int maxPoints) {
+        List<Map<String, Object>> trends = queryCoverageTrends(projectId, startDate, endDate,
+            TrendDownsampler.Granularity.resolve(groupBy, startDate, endDate));
+        return TrendDownsampler.largestTriangleThreeBuckets(trends, maxPoints, row -> toDouble(row.get("avg_line_coverage")));
+    }
+    
+    private List<Map<String, Object>> queryCoverageTrends(
+            String projectId, LocalDateTime startDate, LocalDateTime endDate, TrendDownsampler.Granularity granularity) {
+        requireLive("coverage trends", startDate, endDate, ArchiveTable.TEST_COVERAGE);
+        logger.debug("获取优化的覆盖率趋势: projectId={}, granularity={}", projectId, granularity);
         
+        String period = granularity == TrendDownsampler.Granularity.DAY
+            ? "DATE(timestamp)"
+            : String.format("DATE_FORMAT(timestamp, '%s')", dateFormat(granularity));
         String sql = "SELECT " +
-            "DATE(timestamp) as date, " +
+            period + " as date, " +
             "AVG(COALESCE(line_coverage, 0)) as avg_line_coverage, " +
             "AVG(COALESCE(branch_coverage, 0)) as avg_branch_coverage, " +
             "AVG(COALESCE(function_coverage, 0)) as avg_function_coverage, " +
@@ -142,18 +215,40 @@ public class OptimizedQueryService {
             "FROM test_coverage " +
             "WHERE project_id = ? " +
             "AND timestamp BETWEEN ? AND ? " +
-            "GROUP BY DATE(timestamp) " +
+            "GROUP BY " + period + " " +
             "ORDER BY date";
         
         return jdbcTemplate.queryForList(sql, projectId, startDate, endDate);
     }
     
+    private void requireLive(String reader, LocalDateTime startDate, LocalDateTime endDate, ArchiveTable... tables) {
+        if (archiveQueryService != null) {
+            archiveQueryService.requireLive(reader, startDate, endDate, tables);
+        }
+    }
+    
+    private static String dateFormat(TrendDownsampler.Granularity granularity) {
+        switch (granularity) {
+            case WEEK:
+                return "%x-%v";
+            case MONTH:
+                return "%Y-%m";
+            default:
+                return "%Y-%m-%d";
+        }
+    }
+    
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+    
     /**
      * 获取项目活跃度统计（优化版本）
      */
     @Cacheable(value = "project", key = "'activity_' + #startDate + '_' + #endDate + '_' + #limit")
     public List<Map<String, Object>> getOptimizedProjectActivity(
             LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        requireLive("project activity", startDate, endDate, ArchiveTable.COMMITS);
         logger.debug("获取优化的项目活跃度统计");
         
         String sql = "SELECT " +
@@ -173,18 +268,31 @@ public class OptimizedQueryService {
             "ORDER BY activity_score DESC " +
             "LIMIT ?";
         
-        return jdbcTemplate.queryForList(sql, startDate, endDate, limit);
+        if (shardScatterGather == null) {
+            return jdbcTemplate.queryForList(sql, startDate, endDate, limit);
+        }
+        
+        // 项目不跨分片，各分片的前 limit 名合并后重新排序即为全局前 limit 名
+        List<Map<String, Object>> rows = shardScatterGather.gather(
+            shard -> jdbcTemplate.queryForList(sql, startDate, endDate, limit));
+        rows.sort(Comparator.comparingDouble(
+            (Map<String, Object> row) -> ((Number) row.get("activity_score")).doubleValue()).reversed());
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
     }
     
     /**
      * 获取热点文件分析（优化版本）
+     * 单节点模式下窗口在热点文件追踪器覆盖范围内时，先由追踪器给出候选文件，只对候选文件查询精确统计；
+     * 否则（包括多节点部署，追踪器只看到本节点入库的提交）回退到全量分组查询
      */
     @Cacheable(value = "statistics", key = "#projectId + '_hotfiles_' + #startDate + '_' + #endDate + '_' + #limit")
+    @ShardedByProject("#projectId")
     public List<Map<String, Object>> getOptimizedHotFiles(
             String projectId, LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        requireLive("hot files", startDate, endDate, ArchiveTable.COMMITS, ArchiveTable.FILE_CHANGES);
         logger.debug("获取优化的热点文件分析: projectId={}", projectId);
         
-        String sql = "SELECT " +
+        StringBuilder sql = new StringBuilder("SELECT " +
             "fc.file_path, " +
             "COUNT(*) as change_count, " +
             "COUNT(DISTINCT c.developer_id) as unique_developers, " +
@@ -196,17 +304,42 @@ public class OptimizedQueryService {
             "JOIN commits c ON fc.commit_id = c.id " +
             "WHERE c.project_id = ? " +
             "AND c.timestamp BETWEEN ? AND ? " +
-            "GROUP BY fc.file_path " +
+            "AND fc.commit_timestamp BETWEEN ? AND ? ");
+        List<Object> params = new ArrayList<>();
+        params.add(projectId);
+        params.add(startDate);
+        params.add(endDate);
+        params.add(startDate);
+        params.add(endDate);
+        
+        if (hotFileTracker.covers(startDate)) {
+            List<HotFileTracker.HotFileCandidate> candidates = hotFileTracker.getTopCandidates(
+                projectId, startDate, endDate, limit * HOT_FILE_CANDIDATE_FACTOR);
+            if (candidates.isEmpty()) {
+                return new ArrayList<>();
+            }
+            sql.append("AND fc.file_path IN (")
+               .append(String.join(", ", Collections.nCopies(candidates.size(), "?")))
+               .append(") ");
+            for (HotFileTracker.HotFileCandidate candidate : candidates) {
+                params.add(candidate.getFilePath());
+            }
+            logger.debug("热点文件候选: projectId={}, candidates={}", projectId, candidates.size());
+        }
+        
+        sql.append("GROUP BY fc.file_path " +
             "HAVING change_count > 1 " +
             "ORDER BY change_count DESC, unique_developers DESC " +
-            "LIMIT ?";
+            "LIMIT ?");
+        params.add(limit);
         
-        return jdbcTemplate.queryForList(sql, projectId, startDate, endDate, limit);
+        return jdbcTemplate.queryForList(sql.toString(), params.toArray());
     }
     
     /**
      * 获取分页的提交记录（优化版本）
      */
+    @ShardedByProject("#projectId")
     public List<Map<String, Object>> getOptimizedCommitsPaginated(
             String projectId, Long lastCommitId, int pageSize) {
         logger.debug("获取分页提交记录: projectId={}, lastCommitId={}, pageSize={}", 
@@ -242,8 +375,11 @@ public class OptimizedQueryService {
      * 执行复杂的聚合查询（优化版本）
      */
     @Cacheable(value = "reports", key = "#projectId + '_comprehensive_' + #startDate + '_' + #endDate")
+    @ShardedByProject("#projectId")
     public Map<String, Object> getOptimizedComprehensiveStats(
             String projectId, LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("comprehensive stats", startDate, endDate,
+            ArchiveTable.COMMITS, ArchiveTable.QUALITY_METRICS, ArchiveTable.TEST_COVERAGE);
         logger.debug("获取优化的综合统计数据: projectId={}", projectId);
         
         // 使用简化的查询，避免复杂的CTE
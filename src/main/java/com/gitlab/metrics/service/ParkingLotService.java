@@ -0,0 +1,353 @@
+package com.gitlab.metrics.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.gitlab.metrics.config.MessageRetryProperties;
+import com.gitlab.metrics.messaging.ConfirmedSender;
+import com.gitlab.metrics.messaging.DelayedRetryInterceptor;
+import com.gitlab.metrics.messaging.EventEnvelopeMessageConverter;
+import com.gitlab.metrics.messaging.InProcessEventTransport;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parking lot 管理服务
+ * 多次重试仍失败或无法解析的消息停放在 parking lot 队列中，带有原队列、失败次数和异常信息；
+ * 本服务按原队列筛选后批量查看、重放到原队列或删除。
+ * 查看和筛选通过不确认的 basicGet 实现，未处理的消息在操作结束时全部退回队列。
+ * 使用进程内传输时改为操作 InProcessEventTransport 的内存 parking lot
+ */
+@Service
+public class ParkingLotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParkingLotService.class);
+
+    /**
+     * 单次操作最多扫描的消息数，避免筛选时一次持有过多未确认消息
+     */
+    static final int MAX_SCAN = 10000;
+
+    private static final int BODY_PREVIEW_LENGTH = 2000;
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ConfirmedSender confirmedSender;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private MessageRetryProperties retryProperties;
+
+    @Autowired(required = false)
+    private InProcessEventTransport inProcessTransport;
+
+    /**
+     * parking lot 中的消息数，队列不存在时返回 0
+     */
+    public long count() {
+        if (inProcessTransport != null) {
+            return inProcessTransport.getParkedCount();
+        }
+        QueueInformation information = amqpAdmin.getQueueInfo(retryProperties.getParkingLotQueue());
+        return information != null ? information.getMessageCount() : 0;
+    }
+
+    /**
+     * 查看停放的消息，不改变队列内容
+     *
+     * @param originalQueue 只看来自该队列的消息，为空时不筛选
+     * @param limit 最多返回条数
+     */
+    public List<ParkedMessage> inspect(String originalQueue, int limit) {
+        List<ParkedMessage> parked = new ArrayList<>();
+        if (inProcessTransport != null) {
+            for (InProcessEventTransport.ParkedEvent event : inProcessTransport.getParked(originalQueue, limit)) {
+                parked.add(toParkedMessage(event));
+            }
+            return parked;
+        }
+        scan(originalQueue, limit, (channel, deliveryTag, message) -> {
+            parked.add(toParkedMessage(message));
+            return false;
+        });
+        return parked;
+    }
+
+    /**
+     * 把停放的消息清除失败信息后重新投递到原队列，投递确认后才从 parking lot 删除
+     *
+     * @return 重放的条数
+     */
+    public int replay(String originalQueue, int limit) {
+        if (inProcessTransport != null) {
+            return inProcessTransport.replayParked(originalQueue, limit);
+        }
+        int replayed = scan(originalQueue, limit, (channel, deliveryTag, message) -> {
+            String queue = originalQueueOf(message);
+            if (queue == null) {
+                return false;
+            }
+            confirmedSender.send("", queue, resetForReplay(message));
+            channel.basicAck(deliveryTag, false);
+            return true;
+        });
+        logger.info("Replayed {} parked message(s){}", replayed, originalQueue != null ? " to " + originalQueue : "");
+        return replayed;
+    }
+
+    /**
+     * 删除停放的消息
+     *
+     * @return 删除的条数
+     */
+    public int purge(String originalQueue, int limit) {
+        if (inProcessTransport != null) {
+            return inProcessTransport.purgeParked(originalQueue, limit);
+        }
+        int purged = scan(originalQueue, limit, (channel, deliveryTag, message) -> {
+            channel.basicAck(deliveryTag, false);
+            return true;
+        });
+        logger.info("Purged {} parked message(s){}", purged, originalQueue != null ? " from " + originalQueue : "");
+        return purged;
+    }
+
+    /**
+     * 逐条取出 parking lot 中的消息，匹配的交给 action 处理；action 返回 true 表示已确认该消息，
+     * 其余消息（包括 action 抛出异常时）在结束时退回队列
+     *
+     * @return 被确认的条数
+     */
+    private int scan(String originalQueue, int limit, ParkedMessageAction action) {
+        Integer handled = rabbitTemplate.execute(channel -> {
+            List<Long> held = new ArrayList<>();
+            int matched = 0;
+            int consumed = 0;
+            try {
+                for (int scanned = 0; matched < limit && scanned < MAX_SCAN; scanned++) {
+                    GetResponse response = channel.basicGet(retryProperties.getParkingLotQueue(), false);
+                    if (response == null) {
+                        break;
+                    }
+                    long deliveryTag = response.getEnvelope().getDeliveryTag();
+                    Message message = toMessage(response);
+                    if (originalQueue != null && !originalQueue.equals(originalQueueOf(message))) {
+                        held.add(deliveryTag);
+                        continue;
+                    }
+                    matched++;
+                    held.add(deliveryTag);
+                    if (action.apply(channel, deliveryTag, message)) {
+                        held.remove(held.size() - 1);
+                        consumed++;
+                    }
+                }
+            } finally {
+                for (Long deliveryTag : held) {
+                    channel.basicNack(deliveryTag, false, true);
+                }
+            }
+            return consumed;
+        });
+        return handled != null ? handled : 0;
+    }
+
+    private Message toMessage(GetResponse response) {
+        MessageProperties properties = propertiesConverter.toMessageProperties(
+            response.getProps(), response.getEnvelope(), StandardCharsets.UTF_8.name());
+        properties.setMessageCount(response.getMessageCount());
+        return new Message(response.getBody(), properties);
+    }
+
+    private static String originalQueueOf(Message message) {
+        Object queue = message.getMessageProperties().getHeaders().get(DelayedRetryInterceptor.ORIGINAL_QUEUE_HEADER);
+        return queue != null ? queue.toString() : null;
+    }
+
+    /**
+     * 去掉重试和失败相关的头，重放后重新获得完整的重试次数
+     */
+    private static Message resetForReplay(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Map<String, Object> headers = properties.getHeaders();
+        headers.remove(DelayedRetryInterceptor.ATTEMPTS_HEADER);
+        headers.remove(DelayedRetryInterceptor.FIRST_FAILED_AT_HEADER);
+        headers.remove(DelayedRetryInterceptor.LAST_FAILED_AT_HEADER);
+        headers.remove(DelayedRetryInterceptor.EXCEPTION_TYPE_HEADER);
+        headers.remove(DelayedRetryInterceptor.EXCEPTION_MESSAGE_HEADER);
+        headers.remove(DelayedRetryInterceptor.EXCEPTION_STACKTRACE_HEADER);
+        headers.remove(DelayedRetryInterceptor.PARKED_REASON_HEADER);
+        headers.remove("x-death");
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        return message;
+    }
+
+    private ParkedMessage toParkedMessage(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Map<String, Object> headers = properties.getHeaders();
+        ParkedMessage parked = new ParkedMessage();
+        parked.setMessageId(properties.getMessageId());
+        parked.setOriginalQueue(originalQueueOf(message));
+        parked.setEventType(asString(headers.get(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER)));
+        parked.setAttempts(asLong(headers.get(DelayedRetryInterceptor.ATTEMPTS_HEADER)));
+        parked.setReason(asString(headers.get(DelayedRetryInterceptor.PARKED_REASON_HEADER)));
+        parked.setExceptionType(asString(headers.get(DelayedRetryInterceptor.EXCEPTION_TYPE_HEADER)));
+        parked.setExceptionMessage(asString(headers.get(DelayedRetryInterceptor.EXCEPTION_MESSAGE_HEADER)));
+        parked.setStackTrace(asString(headers.get(DelayedRetryInterceptor.EXCEPTION_STACKTRACE_HEADER)));
+        parked.setFirstFailedAt(asLong(headers.get(DelayedRetryInterceptor.FIRST_FAILED_AT_HEADER)));
+        parked.setLastFailedAt(asLong(headers.get(DelayedRetryInterceptor.LAST_FAILED_AT_HEADER)));
+        parked.setContentType(properties.getContentType());
+        parked.setBodySize(message.getBody().length);
+        parked.setBody(preview(message));
+        return parked;
+    }
+
+    private static ParkedMessage toParkedMessage(InProcessEventTransport.ParkedEvent event) {
+        Throwable error = event.getError();
+        ParkedMessage parked = new ParkedMessage();
+        parked.setMessageId(event.getRequestId());
+        parked.setOriginalQueue(event.getQueue());
+        parked.setEventType(event.getMessage().getClass().getSimpleName());
+        parked.setAttempts((long) event.getAttempts());
+        parked.setReason(DelayedRetryInterceptor.REASON_EXHAUSTED);
+        if (error != null) {
+            StringWriter stackTrace = new StringWriter();
+            error.printStackTrace(new PrintWriter(stackTrace));
+            parked.setExceptionType(error.getClass().getName());
+            parked.setExceptionMessage(error.getMessage());
+            parked.setStackTrace(stackTrace.toString());
+        }
+        parked.setFirstFailedAt(event.getFirstFailedAt());
+        parked.setLastFailedAt(event.getLastFailedAt());
+        String text;
+        try {
+            text = JSON_MAPPER.writeValueAsString(event.getMessage());
+        } catch (IOException e) {
+            text = String.valueOf(event.getMessage());
+        }
+        parked.setContentType("application/json");
+        parked.setBodySize(text.length());
+        parked.setBody(text.length() <= BODY_PREVIEW_LENGTH ? text : text.substring(0, BODY_PREVIEW_LENGTH) + "...");
+        return parked;
+    }
+
+    /**
+     * Smile 消息解码为 JSON 文本展示，其余按 UTF-8 文本截断展示
+     */
+    private static String preview(Message message) {
+        byte[] body = message.getBody();
+        String text;
+        if (EventEnvelopeMessageConverter.CONTENT_TYPE_SMILE.equals(message.getMessageProperties().getContentType())) {
+            try {
+                text = SMILE_MAPPER.readTree(body).toString();
+            } catch (IOException e) {
+                return "<" + body.length + " bytes of undecodable smile>";
+            }
+        } else {
+            text = new String(body, StandardCharsets.UTF_8);
+        }
+        return text.length() <= BODY_PREVIEW_LENGTH ? text : text.substring(0, BODY_PREVIEW_LENGTH) + "...";
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    /**
+     * 对取出的单条消息执行的操作
+     */
+    private interface ParkedMessageAction {
+        boolean apply(Channel channel, long deliveryTag, Message message) throws IOException;
+    }
+
+    /**
+     * 停放消息的摘要
+     */
+    public static class ParkedMessage {
+        private String messageId;
+        private String originalQueue;
+        private String eventType;
+        private Long attempts;
+        private String reason;
+        private String exceptionType;
+        private String exceptionMessage;
+        private String stackTrace;
+        private Long firstFailedAt;
+        private Long lastFailedAt;
+        private String contentType;
+        private int bodySize;
+        private String body;
+
+        public String getMessageId() { return messageId; }
+        public void setMessageId(String messageId) { this.messageId = messageId; }
+
+        public String getOriginalQueue() { return originalQueue; }
+        public void setOriginalQueue(String originalQueue) { this.originalQueue = originalQueue; }
+
+        public String getEventType() { return eventType; }
+        public void setEventType(String eventType) { this.eventType = eventType; }
+
+        public Long getAttempts() { return attempts; }
+        public void setAttempts(Long attempts) { this.attempts = attempts; }
+
+        public String getReason() { return reason; }
+        public void setReason(String reason) { this.reason = reason; }
+
+        public String getExceptionType() { return exceptionType; }
+        public void setExceptionType(String exceptionType) { this.exceptionType = exceptionType; }
+
+        public String getExceptionMessage() { return exceptionMessage; }
+        public void setExceptionMessage(String exceptionMessage) { this.exceptionMessage = exceptionMessage; }
+
+        public String getStackTrace() { return stackTrace; }
+        public void setStackTrace(String stackTrace) { this.stackTrace = stackTrace; }
+
+        public Long getFirstFailedAt() { return firstFailedAt; }
+        public void setFirstFailedAt(Long firstFailedAt) { this.firstFailedAt = firstFailedAt; }
+
+        public Long getLastFailedAt() { return lastFailedAt; }
+        public void setLastFailedAt(Long lastFailedAt) { this.lastFailedAt = lastFailedAt; }
+
+        public String getContentType() { return contentType; }
+        public void setContentType(String contentType) { this.contentType = contentType; }
+
+        public int getBodySize() { return bodySize; }
+        public void setBodySize(int bodySize) { this.bodySize = bodySize; }
+
+        public String getBody() { return body; }
+        public void setBody(String body) { this.body = body; }
+    }
+}
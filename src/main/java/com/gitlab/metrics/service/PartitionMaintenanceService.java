@@ -0,0 +1,363 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.config.BulkheadRoutingDataSource;
+import com.gitlab.metrics.config.ShardMap;
+import com.gitlab.metrics.config.ShardRoutingDataSource;
+import com.gitlab.metrics.config.UseConnectionPool;
+import com.gitlab.metrics.service.archive.ArchiveService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分区维护服务
+ * 维护 commits 和 file_changes 的按月范围分区（见 V5 迁移脚本）：
+ * 提前创建未来月份的分区，并以整分区为单位删除或归档超过保留期的数据，
+ * 删除/交换分区只修改元数据，耗时与分区内的行数无关。
+ * 未来分区总是维护（V5 之后表上没有 MAXVALUE 分区）；清理过期分区需显式开启 app.retention.enabled，
+ * 定时任务和 {@link #purgePartitionsBefore} 都受此开关控制。
+ * 表未分区时（如H2或尚未执行迁移的库）所有操作直接跳过。启用项目分片时逐个分片维护。
+ *
+ * 归档模式下，开启列式归档（app.archive.enabled）时先由 {@link ArchiveService} 把过期行写入段文件，
+ * 分区清空后再删除，归档数据仍可被查询读取；未开启列式归档时退化为与 {table}_archive_pYYYYMM 普通表交换分区，
+ * 这些表只是离线冷备份，查询和 ArchiveService 都不会读取。
+ */
+@Service
+@UseConnectionPool(BulkheadRoutingDataSource.BATCH)
+public class PartitionMaintenanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+    static final String HISTORY_PARTITION = "p_history";
+
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * 分区表及其分区列，file_changes 在前，保证先于所属提交被清理
+     */
+    static final Map<String, String> PARTITIONED_TABLES = new LinkedHashMap<>();
+
+    static {
+        PARTITIONED_TABLES.put("file_changes", "commit_timestamp");
+        PARTITIONED_TABLES.put("commits", "timestamp");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ShardMap shardMap;
+
+    @Autowired(required = false)
+    private ArchiveService archiveService;
+
+    @Value("${app.retention.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.retention.commits-months:24}")
+    private int retentionMonths = 24;
+
+    @Value("${app.retention.months-ahead:3}")
+    private int monthsAhead = 3;
+
+    @Value("${app.retention.mode:archive}")
+    private String mode = "archive";
+
+    /**
+     * 定时分区维护：创建未来分区，开启保留策略时清理过期分区
+     */
+    @Scheduled(cron = "${app.retention.cron:0 30 2 * * ?}")
+    public void runMaintenance() {
+        long start = System.nanoTime();
+        YearMonth current = YearMonth.now();
+        YearMonth cutoff = current.minusMonths(retentionMonths);
+        int created = 0;
+        int removed = 0;
+
+        List<String> shards = shardMap != null ? shardMap.getShards() : Collections.singletonList(null);
+        for (String shard : shards) {
+            String previous = shard != null ? ShardRoutingDataSource.bind(shard) : null;
+            try {
+                for (String table : PARTITIONED_TABLES.keySet()) {
+                    try {
+                        if (!isPartitioned(table)) {
+                            logger.debug("表未分区，跳过分区维护: shard={}, table={}", shard, table);
+                            continue;
+                        }
+                        created += ensureFuturePartitions(table, current.plusMonths(monthsAhead));
+                        if (enabled) {
+                            removed += removePartitionsBefore(table, cutoff);
+                        }
+                    } catch (DataAccessException | IllegalStateException e) {
+                        logger.error("分区维护失败: shard={}, table={}", shard, table, e);
+                        increment("retention.failures", table);
+                    }
+                }
+            } finally {
+                if (shard != null) {
+                    ShardRoutingDataSource.restore(previous);
+                }
+            }
+        }
+
+        if (meterRegistry != null) {
+            Timer.builder("retention.run.duration")
+                .description("Duration of partition maintenance runs")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (enabled) {
+            logger.info("分区维护完成: 新建分区={}, 清理分区={}, 保留截止={}", created, removed, cutoff);
+        } else {
+            logger.info("分区维护完成: 新建分区={}, 保留策略未开启", created);
+        }
+    }
+
+    /**
+     * 删除（或归档）在截止时间之前已完整结束的分区
+     *
+     * @param table 分区表名
+     * @param cutoffDate 截止时间
+     * @return 清理结果，保留策略未开启或表未分区时各项为0
+     */
+    public PurgeResult purgePartitionsBefore(String table, LocalDateTime cutoffDate) {
+        if (!enabled) {
+            logger.debug("保留策略未开启，跳过整分区清理: table={}", table);
+            return new PurgeResult();
+        }
+        if (!PARTITIONED_TABLES.containsKey(table) || !isPartitioned(table)) {
+            return new PurgeResult();
+        }
+        YearMonth cutoff = YearMonth.from(cutoffDate);
+        return removePartitions(table, partitionsToRemove(listPartitions(table), cutoff), cutoff);
+    }
+
+    /**
+     * 判断表是否已分区
+     */
+    public boolean isPartitioned(String table) {
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+                Integer.class, table);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    int ensureFuturePartitions(String table, YearMonth through) {
+        List<String> toCreate = partitionsToCreate(listPartitions(table), through);
+        for (String partition : toCreate) {
+            YearMonth month = YearMonth.parse(partition.substring(1), PARTITION_FORMAT);
+            jdbcTemplate.execute(String.format(
+                "ALTER TABLE %s ADD PARTITION (PARTITION %s VALUES LESS THAN (TO_DAYS('%s')))",
+                table, partition, month.plusMonths(1).atDay(1)));
+            increment("retention.partitions.created", table);
+            logger.info("新建分区: {}.{}", table, partition);
+        }
+        return toCreate.size();
+    }
+
+    int removePartitionsBefore(String table, YearMonth cutoff) {
+        return removePartitions(table, partitionsToRemove(listPartitions(table), cutoff), cutoff).getPartitions();
+    }
+
+    private PurgeResult removePartitions(String table, List<String> partitions, YearMonth cutoff) {
+        PurgeResult result = new PurgeResult();
+        if (partitions.isEmpty()) {
+            return result;
+        }
+        boolean archive = "archive".equalsIgnoreCase(mode);
+        ArchiveTable columnar = archive ? columnarArchiveTable(table) : null;
+        if (columnar != null) {
+            try {
+                result.archivedRows += archiveService.archiveBefore(columnar, cutoff);
+            } catch (IOException e) {
+                throw new IllegalStateException("列式归档失败: " + table, e);
+            }
+        }
+
+        for (String partition : partitions) {
+            if (columnar != null) {
+                // 列式归档校验失败或期间有新写入时分区仍有数据，留到下次归档后再删除
+                if (hasRows(table, partition)) {
+                    logger.warn("分区仍有未归档的数据，暂不删除: {}.{}", table, partition);
+                    continue;
+                }
+                increment("retention.partitions.archived", table);
+                logger.info("分区数据已写入列式归档，删除分区: {}.{}", table, partition);
+            } else if (archive) {
+                // 与同结构的普通表交换分区，数据原样保留在归档表中
+                // 每一步都可重入：上次运行在交换后、删除分区前中断时，重跑只补做剩余步骤
+                String archiveTable = table + "_archive_" + partition;
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + archiveTable + " LIKE " + table);
+                if (isPartitioned(archiveTable)) {
+                    jdbcTemplate.execute("ALTER TABLE " + archiveTable + " REMOVE PARTITIONING");
+                }
+                if (!hasRows(archiveTable, null)) {
+                    result.archivedRows += countRows(table, partition);
+                    jdbcTemplate.execute("ALTER TABLE " + table + " EXCHANGE PARTITION " + partition +
+                                         " WITH TABLE " + archiveTable);
+                } else if (hasRows(table, partition)) {
+                    // 归档表和分区都有数据时交换会把归档数据换回线上表，需人工处理
+                    throw new IllegalStateException("归档表已存在数据且分区非空: " + archiveTable);
+                }
+                increment("retention.partitions.archived", table);
+                logger.info("归档分区: {}.{} -> {}", table, partition, archiveTable);
+            } else {
+                result.deletedRows += countRows(table, partition);
+                increment("retention.partitions.dropped", table);
+                logger.info("删除分区: {}.{}", table, partition);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+            result.partitions++;
+        }
+        return result;
+    }
+
+    /**
+     * 开启列式归档时返回表对应的归档表，否则返回null
+     */
+    private ArchiveTable columnarArchiveTable(String table) {
+        if (archiveService == null || !archiveService.isEnabled()) {
+            return null;
+        }
+        for (ArchiveTable archiveTable : ArchiveTable.values()) {
+            if (archiveTable.getTableName().equals(table)) {
+                return archiveTable;
+            }
+        }
+        return null;
+    }
+
+    private List<String> listPartitions(String table) {
+        return jdbcTemplate.queryForList(
+            "SELECT PARTITION_NAME FROM INFORMATION_SCHEMA.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION",
+            String.class, table);
+    }
+
+    private boolean hasRows(String table, String partition) {
+        String source = partition != null ? table + " PARTITION (" + partition + ")" : table;
+        return !jdbcTemplate.queryForList("SELECT 1 FROM " + source + " LIMIT 1", Integer.class).isEmpty();
+    }
+
+    /**
+     * 分区的精确行数；INFORMATION_SCHEMA 中的 TABLE_ROWS 只是 InnoDB 的估计值，不用于报告清理数量
+     */
+    private long countRows(String table, String partition) {
+        Long rows = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + table + " PARTITION (" + partition + ")", Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    private void increment(String name, String table) {
+        if (meterRegistry != null) {
+            Counter.builder(name).tag("table", table).register(meterRegistry).increment();
+        }
+    }
+
+    /**
+     * 整分区清理结果，行数均为精确值
+     * 归档的行仍保留在列式归档或归档表中，不计入删除行数
+     */
+    public static class PurgeResult {
+        private int partitions;
+        private long deletedRows;
+        private long archivedRows;
+
+        public int getPartitions() { return partitions; }
+
+        public long getDeletedRows() { return deletedRows; }
+
+        public long getArchivedRows() { return archivedRows; }
+    }
+
+    /**
+     * 计算需要新建的月分区：从最后一个月分区的下一个月到 through（含）
+     */
+    static List<String> partitionsToCreate(List<String> existing, YearMonth through) {
+        List<String> result = new ArrayList<>();
+        YearMonth last = null;
+        for (String partition : existing) {
+            YearMonth month = parseMonth(partition);
+            if (month != null && (last == null || month.isAfter(last))) {
+                last = month;
+            }
+        }
+        if (last == null) {
+            return result;
+        }
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(through); month = month.plusMonths(1)) {
+            result.add(partitionName(month));
+        }
+        return result;
+    }
+
+    /**
+     * 计算可整体清理的分区：月份早于 cutoff 的月分区，以及上界不晚于最早月分区的 p_history
+     * 始终保留最后一个分区，避免表失去所有分区
+     */
+    static List<String> partitionsToRemove(List<String> existing, YearMonth cutoff) {
+        List<String> result = new ArrayList<>();
+        YearMonth earliest = null;
+        for (String partition : existing) {
+            YearMonth month = parseMonth(partition);
+            if (month != null && (earliest == null || month.isBefore(earliest))) {
+                earliest = month;
+            }
+        }
+        for (int i = 0; i < existing.size() - 1; i++) {
+            String partition = existing.get(i);
+            YearMonth month = parseMonth(partition);
+            if (month != null && month.isBefore(cutoff)) {
+                result.add(partition);
+            } else if (HISTORY_PARTITION.equals(partition) && earliest != null && !earliest.isAfter(cutoff)) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    static String partitionName(YearMonth month) {
+        return "p" + month.format(PARTITION_FORMAT);
+    }
+
+    private static YearMonth parseMonth(String partition) {
+        if (partition == null || partition.length() != 7 || partition.charAt(0) != 'p') {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(1), PARTITION_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
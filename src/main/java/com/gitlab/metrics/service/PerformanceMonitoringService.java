@@ -1,5 +1,7 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.BulkheadRoutingDataSource;
+import com.gitlab.metrics.config.UseConnectionPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,15 +13,19 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 性能监控服务
  * 监控数据库性能、查询执行时间、缓存命中率等关键指标
  */
 @Service
+@UseConnectionPool(BulkheadRoutingDataSource.BATCH)
 public class PerformanceMonitoringService {
     
     private static final Logger logger = LoggerFactory.getLogger(PerformanceMonitoringService.class);
@@ -30,6 +36,11 @@ public class PerformanceMonitoringService {
     @Autowired
     private DataSource dataSource;
     
+    @Autowired
+    private QueryIndexAdvisor queryIndexAdvisor;
+    
+    private volatile Set<String> reportedIndexProblems = new HashSet<>();
+    
     /**
      * 定期监控数据库性能（每5分钟执行一次）
      */
@@ -130,49 +141,50 @@ public class PerformanceMonitoringService {
     
     /**
      * 监控索引使用情况
+     * 对查询目录中的每个 @Query 执行 EXPLAIN，新出现的全表扫描和 filesort 记录警告
      */
     private void monitorIndexUsage() {
         try {
-            String sql = "SELECT " +
-                "table_name, " +
-                "index_name, " +
-                "cardinality, " +
-                "CASE " +
-                "    WHEN cardinality = 0 THEN 'UNUSED' " +
-                "    WHEN cardinality < 100 THEN 'LOW_CARDINALITY' " +
-                "    ELSE 'NORMAL' " +
-                "END as status " +
-                "FROM information_schema.statistics " +
-                "WHERE table_schema = 'gitlab_metrics' " +
-                "AND index_name != 'PRIMARY' " +
-                "ORDER BY table_name, cardinality DESC";
-            
-            List<Map<String, Object>> indexStats = jdbcTemplate.queryForList(sql);
-            
-            int unusedIndexes = 0;
-            int lowCardinalityIndexes = 0;
-            
-            for (Map<String, Object> index : indexStats) {
-                String status = (String) index.get("status");
-                if ("UNUSED".equals(status)) {
-                    unusedIndexes++;
-                    logger.warn("未使用的索引: {}.{}", index.get("table_name"), index.get("index_name"));
-                } else if ("LOW_CARDINALITY".equals(status)) {
-                    lowCardinalityIndexes++;
-                    logger.debug("低基数索引: {}.{} (基数: {})", 
-                               index.get("table_name"), index.get("index_name"), index.get("cardinality"));
+            List<QueryIndexAdvisor.QueryAdvice> advice = queryIndexAdvisor.analyze();
+            
+            Set<String> problems = new HashSet<>();
+            int fullScans = 0;
+            int filesorts = 0;
+            
+            for (QueryIndexAdvisor.QueryAdvice item : advice) {
+                if (!item.getFullScanTables().isEmpty()) {
+                    fullScans++;
+                }
+                if (item.isFilesort()) {
+                    filesorts++;
+                }
+                if (item.hasProblem()) {
+                    String key = item.getRepository() + "." + item.getMethod() + ": " + item.getProblems();
+                    problems.add(key);
+                    if (!reportedIndexProblems.contains(key)) {
+                        logger.warn("查询执行计划问题: {}", key);
+                    }
                 }
             }
+            reportedIndexProblems = problems;
             
-            if (unusedIndexes > 0 || lowCardinalityIndexes > 0) {
-                logger.info("索引分析: 未使用索引 {}, 低基数索引 {}", unusedIndexes, lowCardinalityIndexes);
-            }
+            logger.info("索引分析: 检查查询 {}, 全表扫描 {}, filesort {}", advice.size(), fullScans, filesorts);
             
         } catch (Exception e) {
-            logger.debug("无法获取索引使用情况: {}", e.getMessage());
+            logger.debug("无法分析查询执行计划: {}", e.getMessage());
         }
     }
     
+    /**
+     * 获取查询执行计划分析结果
+     * 
+     * @param refresh 是否重新执行 EXPLAIN
+     * @return 每个 @Query 方法的分析结果，有问题的排在前面
+     */
+    public List<QueryIndexAdvisor.QueryAdvice> getIndexAdvice(boolean refresh) {
+        return refresh ? queryIndexAdvisor.analyze() : queryIndexAdvisor.getLastAdvice();
+    }
+    
     /**
      * 监控连接池状态
      */
@@ -297,7 +309,7 @@ public class PerformanceMonitoringService {
      * @return 优化建议列表
      */
     public List<String> getOptimizationSuggestions() {
-        List<String> suggestions = List.of();
+        List<String> suggestions = new ArrayList<>();
         
         try {
             // 检查未使用的索引
@@ -312,6 +324,14 @@ public class PerformanceMonitoringService {
                 suggestions.add("发现 " + unusedIndexes.size() + " 个未使用的索引，建议删除以节省空间");
             }
             
+            // 检查执行计划
+            long problemQueries = queryIndexAdvisor.getLastAdvice().stream()
+                .filter(QueryIndexAdvisor.QueryAdvice::hasProblem)
+                .count();
+            if (problemQueries > 0) {
+                suggestions.add("发现 " + problemQueries + " 个查询存在全表扫描或filesort，详见索引分析结果");
+            }
+            
             // 检查大表
             String largeTableSql = "SELECT table_name " +
                 "FROM information_schema.tables " +
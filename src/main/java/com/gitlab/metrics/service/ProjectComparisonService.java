@@ -0,0 +1,251 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.repository.CommitRepository;
+import com.gitlab.metrics.repository.QualityMetricsRepository;
+import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.repository.projection.ProjectCommitSummaryRow;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 多项目对比服务
+ * 每个指标族只执行一次 project_id IN (...) 分组查询，查询结果在一次遍历中按项目组装，
+ * 查询次数与项目数量无关。返回结果附带每个查询的耗时明细。
+ * 只查询活跃表，时间范围包含已归档的提交或质量数据时拒绝对比。
+ */
+@Service
+@Transactional(readOnly = true)
+public class ProjectComparisonService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectComparisonService.class);
+
+    static final String QUERY_COMMIT_STATS = "commitStats";
+    static final String QUERY_QUALITY_OVERVIEW = "qualityOverview";
+    static final String QUERY_LATEST_QUALITY = "latestQuality";
+    static final String QUERY_LATEST_COVERAGE = "latestCoverage";
+
+    @Autowired
+    private CommitRepository commitRepository;
+
+    @Autowired
+    private QualityMetricsRepository qualityMetricsRepository;
+
+    @Autowired
+    private TestCoverageRepository testCoverageRepository;
+
+    @Autowired
+    private QualityMetricsService qualityMetricsService;
+
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+
+    /**
+     * 对比多个项目在指定时间范围内的指标
+     *
+     * @param projectIds 项目ID列表，结果按此顺序返回，重复ID只保留一个
+     * @param startDate 开始时间
+     * @param endDate 结束时间
+     * @return 对比结果及查询耗时明细
+     */
+    public ComparisonResult compareProjects(Collection<String> projectIds, LocalDateTime startDate, LocalDateTime endDate) {
+        if (archiveQueryService != null) {
+            archiveQueryService.requireLive("project comparison", startDate, endDate,
+                ArchiveTable.COMMITS, ArchiveTable.QUALITY_METRICS);
+        }
+        long start = System.nanoTime();
+        ComparisonResult result = new ComparisonResult();
+
+        Set<String> ids = new LinkedHashSet<>();
+        for (String projectId : projectIds) {
+            if (projectId != null && !projectId.trim().isEmpty()) {
+                ids.add(projectId.trim());
+            }
+        }
+        Map<String, ProjectComparison> projects = new LinkedHashMap<>();
+        for (String projectId : ids) {
+            projects.put(projectId, new ProjectComparison(projectId));
+        }
+        if (ids.isEmpty()) {
+            result.setProjects(new ArrayList<>());
+            return result;
+        }
+
+        // 提交统计
+        List<ProjectCommitSummaryRow> commitStats = timed(result, QUERY_COMMIT_STATS,
+            () -> commitRepository.getCommitStatsByProjects(ids, startDate, endDate));
+        for (ProjectCommitSummaryRow row : commitStats) {
+            ProjectComparison project = projects.get(row.getProjectId());
+            if (project != null) {
+                project.setCommits((int) row.getCommitCount());
+                project.setLinesAdded((int) row.getLinesAdded());
+                project.setLinesDeleted((int) row.getLinesDeleted());
+                project.setDevelopers((int) row.getDeveloperCount());
+            }
+        }
+
+        // 质量概览
+        List<QualityMetricsService.ProjectQualityOverview> overviews = timed(result, QUERY_QUALITY_OVERVIEW,
+            () -> qualityMetricsService.getProjectsQualityOverview(ids, startDate, endDate));
+        for (QualityMetricsService.ProjectQualityOverview overview : overviews) {
+            ProjectComparison project = projects.get(overview.getProjectId());
+            if (project != null) {
+                project.setQualityScans(overview.getTotalScans());
+                project.setAverageComplexity(overview.getAverageComplexity());
+                project.setAverageMaintainabilityIndex(overview.getAverageMaintainabilityIndex());
+                project.setTotalTechnicalDebt(overview.getTotalTechnicalDebt());
+            }
+        }
+
+        // 最新质量指标，同一时间戳有多条记录时保留ID最大的一条
+        List<QualityMetrics> latestQuality = timed(result, QUERY_LATEST_QUALITY,
+            () -> qualityMetricsRepository.findLatestByProjects(ids));
+        Map<String, QualityMetrics> qualityByProject = new LinkedHashMap<>();
+        for (QualityMetrics metrics : latestQuality) {
+            qualityByProject.merge(metrics.getProjectId(), metrics, (a, b) -> newer(a.getId(), b.getId()) ? a : b);
+        }
+        for (QualityMetrics metrics : qualityByProject.values()) {
+            ProjectComparison project = projects.get(metrics.getProjectId());
+            if (project != null) {
+                project.setQualityGate(metrics.getQualityGate());
+                project.setBugs(metrics.getBugs());
+                project.setVulnerabilities(metrics.getVulnerabilities());
+            }
+        }
+
+        // 最新覆盖率
+        List<TestCoverage> latestCoverage = timed(result, QUERY_LATEST_COVERAGE,
+            () -> testCoverageRepository.findLatestByProjects(ids));
+        Map<String, TestCoverage> coverageByProject = new LinkedHashMap<>();
+        for (TestCoverage coverage : latestCoverage) {
+            coverageByProject.merge(coverage.getProjectId(), coverage, (a, b) -> newer(a.getId(), b.getId()) ? a : b);
+        }
+        for (TestCoverage coverage : coverageByProject.values()) {
+            ProjectComparison project = projects.get(coverage.getProjectId());
+            if (project != null) {
+                project.setTestCoverage(coverage.getLineCoverage());
+            }
+        }
+
+        result.setProjects(new ArrayList<>(projects.values()));
+        result.setTotalTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("多项目对比完成: projects={}, totalTimeMs={}, queryTimings={}",
+                   ids.size(), result.getTotalTimeMs(), result.getQueryTimings());
+        return result;
+    }
+
+    private <T> T timed(ComparisonResult result, String queryName, Supplier<T> query) {
+        long start = System.nanoTime();
+        try {
+            return query.get();
+        } finally {
+            result.getQueryTimings().put(queryName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static boolean newer(Long a, Long b) {
+        return b == null || (a != null && a > b);
+    }
+
+    // 数据类
+
+    /**
+     * 多项目对比结果
+     */
+    public static class ComparisonResult {
+        private List<ProjectComparison> projects;
+        private Map<String, Long> queryTimings = new LinkedHashMap<>();
+        private long totalTimeMs;
+
+        public List<ProjectComparison> getProjects() { return projects; }
+        public void setProjects(List<ProjectComparison> projects) { this.projects = projects; }
+
+        public Map<String, Long> getQueryTimings() { return queryTimings; }
+        public void setQueryTimings(Map<String, Long> queryTimings) { this.queryTimings = queryTimings; }
+
+        public long getTotalTimeMs() { return totalTimeMs; }
+        public void setTotalTimeMs(long totalTimeMs) { this.totalTimeMs = totalTimeMs; }
+    }
+
+    /**
+     * 单个项目的对比数据
+     */
+    public static class ProjectComparison {
+        private String projectId;
+        private Integer commits = 0;
+        private Integer linesAdded = 0;
+        private Integer linesDeleted = 0;
+        private Integer developers = 0;
+        private String qualityGate;
+        private Integer bugs;
+        private Integer vulnerabilities;
+        private Double testCoverage;
+        private Integer qualityScans;
+        private Double averageComplexity;
+        private Double averageMaintainabilityIndex;
+        private Double totalTechnicalDebt;
+
+        public ProjectComparison() {}
+
+        public ProjectComparison(String projectId) {
+            this.projectId = projectId;
+        }
+
+        // Getters and Setters
+        public String getProjectId() { return projectId; }
+        public void setProjectId(String projectId) { this.projectId = projectId; }
+
+        public Integer getCommits() { return commits; }
+        public void setCommits(Integer commits) { this.commits = commits; }
+
+        public Integer getLinesAdded() { return linesAdded; }
+        public void setLinesAdded(Integer linesAdded) { this.linesAdded = linesAdded; }
+
+        public Integer getLinesDeleted() { return linesDeleted; }
+        public void setLinesDeleted(Integer linesDeleted) { this.linesDeleted = linesDeleted; }
+
+        public Integer getDevelopers() { return developers; }
+        public void setDevelopers(Integer developers) { this.developers = developers; }
+
+        public String getQualityGate() { return qualityGate; }
+        public void setQualityGate(String qualityGate) { this.qualityGate = qualityGate; }
+
+        public Integer getBugs() { return bugs; }
+        public void setBugs(Integer bugs) { this.bugs = bugs; }
+
+        public Integer getVulnerabilities() { return vulnerabilities; }
+        public void setVulnerabilities(Integer vulnerabilities) { this.vulnerabilities = vulnerabilities; }
+
+        public Double getTestCoverage() { return testCoverage; }
+        public void setTestCoverage(Double testCoverage) { this.testCoverage = testCoverage; }
+
+        public Integer getQualityScans() { return qualityScans; }
+        public void setQualityScans(Integer qualityScans) { this.qualityScans = qualityScans; }
+
+        public Double getAverageComplexity() { return averageComplexity; }
+        public void setAverageComplexity(Double averageComplexity) { this.averageComplexity = averageComplexity; }
+
+        public Double getAverageMaintainabilityIndex() { return averageMaintainabilityIndex; }
+        public void setAverageMaintainabilityIndex(Double averageMaintainabilityIndex) { this.averageMaintainabilityIndex = averageMaintainabilityIndex; }
+
+        public Double getTotalTechnicalDebt() { return totalTechnicalDebt; }
+        public void setTotalTechnicalDebt(Double totalTechnicalDebt) { this.totalTechnicalDebt = totalTechnicalDebt; }
+    }
+}
@@ -0,0 +1,246 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.config.SonarQubeProperties;
+import com.gitlab.metrics.messaging.PipelineLagRecorder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 代码质量分析触发的防抖器
+ * SonarQube 的度量按项目而不是按提交获取，一次多提交的 push 只需分析一次。按 sonarProjectKey 合并：
+ * 第一次触发开启一个窗口，窗口内的后续触发只替换待分析的提交，窗口结束时对最新的提交触发一次分析。
+ * “最新”按提交时间判断：同一 push 的提交可能乱序到达，较早的提交后到时不会替换已记录的较新提交。
+ * 窗口从第一次触发起算、不随后续触发顺延，持续有提交的项目每个窗口仍分析一次。
+ * 触发方在事务中时，提交后才计入窗口，回滚的提交不会触发分析，窗口结束时提交的数据也一定可见。
+ * 分析在窗口结束时由调度线程经 OutboxService 提交（开启发件箱时按 projectId 写入项目所在分片，
+ * 未开启时直接发布到消息队列），不再属于触发方的事务；
+ * 关闭时未到期的分析立即提交。待分析的提交只保存在内存中，进程在事务提交后、窗口结束前崩溃时该次分析丢失，
+ * 直到项目的下一次 push 才会重新触发；需要严格不丢失时把窗口设为 0。
+ * 窗口为 0 或分析已禁用时在触发方的事务内直接提交，不做合并
+ */
+@Service
+public class QualityAnalysisDebouncer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QualityAnalysisDebouncer.class);
+
+    @Autowired
+    private SonarQubeAnalysisService sonarQubeAnalysisService;
+
+    @Autowired
+    private SonarQubeProperties sonarQubeProperties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, PendingAnalysis> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong triggerCount = new AtomicLong();
+
+    private final AtomicLong collapsedCount = new AtomicLong();
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quality-analysis-debouncer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            Gauge.builder("sonarqube.analysis.pending", pending, Map::size)
+                .description("SonarQube projects with an analysis waiting for its debounce window to close")
+                .register(meterRegistry);
+            FunctionCounter.builder("sonarqube.analysis.triggers", triggerCount, AtomicLong::get)
+                .description("Quality analysis triggers received from commit processing")
+                .register(meterRegistry);
+            FunctionCounter.builder("sonarqube.analysis.triggers.collapsed", collapsedCount, AtomicLong::get)
+                .description("Quality analysis triggers merged into a later analysis of the same project")
+                .register(meterRegistry);
+            FunctionCounter.builder("sonarqube.analysis.dispatched", dispatchedCount, AtomicLong::get)
+                .description("Quality analyses actually submitted after debouncing")
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 触发项目的代码质量分析，提交时间未知时按到达顺序视为最新的提交
+     */
+    public void trigger(String projectId, String commitSha, String sonarProjectKey) {
+        trigger(projectId, commitSha, sonarProjectKey, null);
+    }
+
+    /**
+     * 触发项目的代码质量分析；窗口内已有待分析的提交时，当前提交不早于它才替换。
+     * 在事务中调用时延迟到事务提交后计入窗口
+     *
+     * @param commitTimestamp 提交时间，为 null 时视为最新的提交
+     */
+    public void trigger(String projectId, String commitSha, String sonarProjectKey, LocalDateTime commitTimestamp) {
+        triggerCount.incrementAndGet();
+        long windowMs = sonarQubeProperties.getAnalysis().getDebounceWindowMs();
+        if (windowMs <= 0 || !sonarQubeProperties.getAnalysis().isEnabled()) {
+            dispatchedCount.incrementAndGet();
+            sonarQubeAnalysisService.triggerQualityAnalysis(projectId, commitSha, sonarProjectKey);
+            return;
+        }
+
+        String requestId = MDC.get("requestId");
+        long receivedAt = PipelineLagRecorder.currentReceivedAt();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    debounce(projectId, commitSha, commitTimestamp, sonarProjectKey, requestId, receivedAt, windowMs);
+                }
+            });
+            return;
+        }
+        debounce(projectId, commitSha, commitTimestamp, sonarProjectKey, requestId, receivedAt, windowMs);
+    }
+
+    private void debounce(String projectId, String commitSha, LocalDateTime commitTimestamp, String sonarProjectKey,
+                          String requestId, long receivedAt, long windowMs) {
+        boolean[] opened = new boolean[1];
+        boolean[] replaced = new boolean[1];
+        pending.compute(sonarProjectKey, (key, existing) -> {
+            if (existing == null) {
+                opened[0] = true;
+                return new PendingAnalysis(projectId, commitSha, commitTimestamp, requestId, receivedAt);
+            }
+            replaced[0] = existing.replace(projectId, commitSha, commitTimestamp, requestId, receivedAt);
+            return existing;
+        });
+        if (opened[0]) {
+            scheduler.schedule(() -> flush(sonarProjectKey), windowMs, TimeUnit.MILLISECONDS);
+        } else {
+            collapsedCount.incrementAndGet();
+            logger.debug("合并代码质量分析触发: sonarProjectKey={}, commitSha={}, 替换待分析提交={}",
+                sonarProjectKey, commitSha, replaced[0]);
+        }
+    }
+
+    /**
+     * 结束项目的窗口并对最新的提交触发分析
+     */
+    void flush(String sonarProjectKey) {
+        PendingAnalysis analysis = pending.remove(sonarProjectKey);
+        if (analysis == null) {
+            return;
+        }
+        String previousRequestId = MDC.get("requestId");
+        if (analysis.requestId != null) {
+            MDC.put("requestId", analysis.requestId);
+        }
+        try {
+            dispatchedCount.incrementAndGet();
+            logger.info("触发合并后的代码质量分析: sonarProjectKey={}, commitSha={}, 合并触发数={}",
+                sonarProjectKey, analysis.commitSha, analysis.collapsed);
+            sonarQubeAnalysisService.triggerQualityAnalysis(analysis.projectId, analysis.commitSha, sonarProjectKey,
+                analysis.receivedAt);
+        } catch (Exception e) {
+            logger.error("触发合并后的代码质量分析失败: sonarProjectKey={}", sonarProjectKey, e);
+        } finally {
+            if (previousRequestId != null) {
+                MDC.put("requestId", previousRequestId);
+            } else {
+                MDC.remove("requestId");
+            }
+        }
+    }
+
+    /**
+     * 关闭时提交所有未到期的分析，避免丢失
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (String sonarProjectKey : new ArrayList<>(pending.keySet())) {
+            flush(sonarProjectKey);
+        }
+    }
+
+    /**
+     * 收到的触发次数
+     */
+    public long getTriggerCount() {
+        return triggerCount.get();
+    }
+
+    /**
+     * 被合并到同一项目后续分析中的触发次数
+     */
+    public long getCollapsedCount() {
+        return collapsedCount.get();
+    }
+
+    /**
+     * 实际提交的分析次数
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    /**
+     * 一个项目窗口内待分析的最新提交
+     */
+    private static final class PendingAnalysis {
+        private String projectId;
+        private String commitSha;
+        private LocalDateTime commitTimestamp;
+        private String requestId;
+        private long receivedAt;
+        private int collapsed;
+
+        private PendingAnalysis(String projectId, String commitSha, LocalDateTime commitTimestamp,
+                                String requestId, long receivedAt) {
+            this.projectId = projectId;
+            this.commitSha = commitSha;
+            this.commitTimestamp = commitTimestamp;
+            this.requestId = requestId;
+            this.receivedAt = receivedAt;
+        }
+
+        /**
+         * 提交时间不早于已记录的提交时替换；延迟从窗口内最早的 webhook 到达算起
+         *
+         * @return 是否替换了待分析的提交
+         */
+        private boolean replace(String projectId, String commitSha, LocalDateTime commitTimestamp,
+                                String requestId, long receivedAt) {
+            collapsed++;
+            if (this.receivedAt == 0) {
+                this.receivedAt = receivedAt;
+            }
+            if (commitTimestamp != null && this.commitTimestamp != null
+                    && commitTimestamp.isBefore(this.commitTimestamp)) {
+                return false;
+            }
+            this.projectId = projectId;
+            this.commitSha = commitSha;
+            this.commitTimestamp = commitTimestamp != null ? commitTimestamp : this.commitTimestamp;
+            this.requestId = requestId;
+            return true;
+        }
+    }
+}
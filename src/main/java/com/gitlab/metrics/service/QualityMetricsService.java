@@ -2,6 +2,8 @@ package com.gitlab.metrics.service;
 
 import com.gitlab.metrics.entity.QualityMetrics;
 import com.gitlab.metrics.repository.QualityMetricsRepository;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +27,9 @@ public class QualityMetricsService {
     @Autowired
     private QualityMetricsRepository qualityMetricsRepository;
     
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+    
     /**
      * 获取项目的质量指标历史记录
      */
@@ -52,10 +57,19 @@ public class QualityMetricsService {
     
     /**
      * 获取质量趋势分析
+     * 范围覆盖已归档月份时，按求和与计数合并活跃表和归档数据后再计算平均值
      */
     @Transactional(readOnly = true)
     public QualityTrend getQualityTrend(String projectId, LocalDateTime start, LocalDateTime end) {
-        Object[] result = qualityMetricsRepository.getQualityTrend(projectId, start, end);
+        Object[] result;
+        if (archiveQueryService != null && archiveQueryService.covers(ArchiveTable.QUALITY_METRICS, start, end)) {
+            List<Object[]> live = qualityMetricsRepository.getQualityTrendTotals(projectId, start, end);
+            result = ArchiveQueryService.toAverages(ArchiveQueryService.mergeTotals(
+                live.isEmpty() ? null : live.get(0),
+                archiveQueryService.getQualityTrendTotals(projectId, start, end)));
+        } else {
+            result = qualityMetricsRepository.getQualityTrend(projectId, start, end);
+        }
         
         if (result != null && result.length >= 4) {
             QualityTrend trend = new QualityTrend();
@@ -84,6 +98,18 @@ public class QualityMetricsService {
         }
     }
     
+    /**
+     * 统计质量门禁失败的记录数（只计数，不加载实体）
+     */
+    @Transactional(readOnly = true)
+    public long countFailedQualityGates(String projectId, LocalDateTime start, LocalDateTime end) {
+        if (projectId != null) {
+            return qualityMetricsRepository.countFailedQualityGatesByProject(projectId, start, end);
+        } else {
+            return qualityMetricsRepository.countFailedQualityGates(start, end);
+        }
+    }
+    
     /**
      * 获取质量门禁统计
      */
@@ -190,6 +216,19 @@ public class QualityMetricsService {
             .collect(java.util.stream.Collectors.toList());
     }
     
+    /**
+     * 获取指定项目集合的质量概览，单条分组查询完成
+     */
+    @Transactional(readOnly = true)
+    public List<ProjectQualityOverview> getProjectsQualityOverview(
+            java.util.Collection<String> projectIds, LocalDateTime start, LocalDateTime end) {
+        List<Object[]> results = qualityMetricsRepository.getQualityOverviewByProjects(projectIds, start, end);
+        
+        return results.stream()
+            .map(this::mapToProjectQualityOverview)
+            .collect(java.util.stream.Collectors.toList());
+    }
+    
     /**
      * 查找质量改善最明显的项目
      */
@@ -0,0 +1,407 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.config.BulkheadRoutingDataSource;
+import com.gitlab.metrics.config.UseConnectionPool;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.ParameterInformation;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 查询索引顾问
+ * 以 repository 包中所有 @Query 方法作为查询目录，将JPQL翻译为SQL、代入样例参数后执行 EXPLAIN，
+ * 报告全表扫描、filesort 和临时表，用于验证索引是否覆盖实际的查询形态。
+ */
+@Service
+@UseConnectionPool(BulkheadRoutingDataSource.BATCH)
+public class QueryIndexAdvisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryIndexAdvisor.class);
+
+    static final String REPOSITORY_PACKAGE = "com.gitlab.metrics.repository";
+
+    private static final DateTimeFormatter SQL_DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String SAMPLE_PROJECT_ID = "sample-project";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired(required = false)
+    private List<Repository<?, ?>> repositories;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private volatile List<CatalogEntry> catalog;
+
+    private volatile List<QueryAdvice> lastAdvice = Collections.emptyList();
+
+    private final AtomicInteger fullScanCount = new AtomicInteger();
+    private final AtomicInteger filesortCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            Gauge.builder("index.advisor.queries", fullScanCount, AtomicInteger::get)
+                .description("Catalog queries with a problem in their last EXPLAIN")
+                .tag("problem", "full_scan").register(meterRegistry);
+            Gauge.builder("index.advisor.queries", filesortCount, AtomicInteger::get)
+                .description("Catalog queries with a problem in their last EXPLAIN")
+                .tag("problem", "filesort").register(meterRegistry);
+            Gauge.builder("index.advisor.queries", failedCount, AtomicInteger::get)
+                .description("Catalog queries with a problem in their last EXPLAIN")
+                .tag("problem", "explain_failed").register(meterRegistry);
+        }
+    }
+
+    /**
+     * 获取查询目录
+     */
+    public List<CatalogEntry> getCatalog() {
+        if (catalog == null) {
+            Set<Class<?>> interfaces = new LinkedHashSet<>();
+            if (repositories != null) {
+                for (Repository<?, ?> repository : repositories) {
+                    for (Class<?> candidate : AopProxyUtils.proxiedUserInterfaces(repository)) {
+                        if (candidate.getName().startsWith(REPOSITORY_PACKAGE)) {
+                            interfaces.add(candidate);
+                        }
+                    }
+                }
+            }
+            catalog = buildCatalog(interfaces);
+        }
+        return catalog;
+    }
+
+    /**
+     * 对目录中的每个查询执行 EXPLAIN
+     *
+     * @return 每个查询的分析结果，有问题的排在前面
+     */
+    public List<QueryAdvice> analyze() {
+        String projectId = sampleProjectId();
+        List<QueryAdvice> result = new ArrayList<>();
+        for (CatalogEntry entry : getCatalog()) {
+            String sql = null;
+            try {
+                sql = toSql(entry, projectId);
+                List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql);
+                result.add(evaluate(entry, sql, plan));
+            } catch (Exception e) {
+                QueryAdvice advice = new QueryAdvice(entry.getRepository(), entry.getMethod(), sql);
+                advice.setError(e.getMessage());
+                result.add(advice);
+            }
+        }
+        result.sort(Comparator.comparing(QueryAdvice::hasProblem).reversed());
+
+        fullScanCount.set((int) result.stream().filter(a -> !a.getFullScanTables().isEmpty()).count());
+        filesortCount.set((int) result.stream().filter(QueryAdvice::isFilesort).count());
+        failedCount.set((int) result.stream().filter(a -> a.getError() != null).count());
+        lastAdvice = Collections.unmodifiableList(result);
+        return lastAdvice;
+    }
+
+    /**
+     * 最近一次分析结果，尚未分析时立即执行
+     */
+    public List<QueryAdvice> getLastAdvice() {
+        return lastAdvice.isEmpty() ? analyze() : lastAdvice;
+    }
+
+    /**
+     * 收集接口中的 @Query 方法（跳过 @Modifying 写操作）
+     */
+    static List<CatalogEntry> buildCatalog(Collection<Class<?>> repositoryInterfaces) {
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (Class<?> repositoryInterface : repositoryInterfaces) {
+            Method[] methods = repositoryInterface.getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                Query query = method.getAnnotation(Query.class);
+                if (query == null || query.nativeQuery() || method.isAnnotationPresent(Modifying.class)) {
+                    continue;
+                }
+                Map<String, Class<?>> namedParameters = new LinkedHashMap<>();
+                List<Class<?>> positionalParameters = new ArrayList<>();
+                for (Parameter parameter : method.getParameters()) {
+                    Param param = parameter.getAnnotation(Param.class);
+                    if (param != null) {
+                        namedParameters.put(param.value(), parameter.getType());
+                    }
+                    positionalParameters.add(parameter.getType());
+                }
+                entries.add(new CatalogEntry(repositoryInterface.getSimpleName(), method.getName(), query.value(),
+                    namedParameters, positionalParameters));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 将JPQL翻译为SQL并代入样例参数
+     */
+    String toSql(CatalogEntry entry, String projectId) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        QueryTranslator translator = new ASTQueryTranslatorFactory()
+            .createQueryTranslator(entry.getQuery(), entry.getQuery(), Collections.emptyMap(), sessionFactory, null);
+        translator.compile(Collections.emptyMap(), false);
+
+        Map<Integer, String> literals = new HashMap<>();
+        for (Map.Entry<String, ? extends ParameterInformation> parameter :
+                translator.getParameterTranslations().getNamedParameterInformationMap().entrySet()) {
+            String literal = sampleLiteral(parameter.getKey(), entry.getNamedParameters().get(parameter.getKey()), projectId);
+            for (int location : parameter.getValue().getSourceLocations()) {
+                literals.put(location, literal);
+            }
+        }
+        for (Map.Entry<Integer, ? extends ParameterInformation> parameter :
+                translator.getParameterTranslations().getPositionalParameterInformationMap().entrySet()) {
+            int index = parameter.getKey() - 1;
+            Class<?> type = index >= 0 && index < entry.getPositionalParameters().size()
+                ? entry.getPositionalParameters().get(index) : null;
+            String literal = sampleLiteral("p" + parameter.getKey(), type, projectId);
+            for (int location : parameter.getValue().getSourceLocations()) {
+                literals.put(location, literal);
+            }
+        }
+        return bindLiterals(translator.getSQLString(), literals);
+    }
+
+    /**
+     * 按出现顺序替换SQL中的 ? 占位符，忽略字符串常量中的问号
+     */
+    static String bindLiterals(String sql, Map<Integer, String> literals) {
+        StringBuilder result = new StringBuilder(sql.length() + 64);
+        boolean inString = false;
+        int position = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            }
+            if (c == '?' && !inString) {
+                String literal = literals.get(position++);
+                result.append(literal != null ? literal : "NULL");
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 按参数名和类型生成样例值：时间范围取最近30天，项目ID取最近提交的项目
+     */
+    static String sampleLiteral(String name, Class<?> type, String projectId) {
+        String lowerName = name.toLowerCase();
+        if (type == null) {
+            return "NULL";
+        }
+        if (LocalDateTime.class.equals(type) || LocalDate.class.equals(type) || java.util.Date.class.isAssignableFrom(type)) {
+            LocalDateTime now = LocalDateTime.now().withNano(0);
+            LocalDateTime value = lowerName.contains("end") ? now : now.minusDays(30);
+            return "'" + value.format(SQL_DATETIME) + "'";
+        }
+        if (Number.class.isAssignableFrom(type) || (type.isPrimitive() && type != boolean.class)) {
+            return "10";
+        }
+        if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+            return "1";
+        }
+        if (lowerName.startsWith("project")) {
+            return "'" + projectId.replace("'", "''") + "'";
+        }
+        return "'sample'";
+    }
+
+    /**
+     * 解析 EXPLAIN 结果
+     */
+    static QueryAdvice evaluate(CatalogEntry entry, String sql, List<Map<String, Object>> plan) {
+        QueryAdvice advice = new QueryAdvice(entry.getRepository(), entry.getMethod(), sql);
+        for (Map<String, Object> row : plan) {
+            PlanStep step = new PlanStep();
+            step.setTable(asString(row.get("table")));
+            step.setAccessType(asString(row.get("type")));
+            step.setKey(asString(row.get("key")));
+            step.setRows(row.get("rows") instanceof Number ? ((Number) row.get("rows")).longValue() : null);
+            step.setExtra(asString(row.get("Extra")));
+            advice.getPlan().add(step);
+
+            if ("ALL".equalsIgnoreCase(step.getAccessType()) && step.getTable() != null && !step.getTable().startsWith("<")) {
+                advice.getFullScanTables().add(step.getTable());
+            }
+            if (step.getExtra() != null && step.getExtra().contains("Using filesort")) {
+                advice.setFilesort(true);
+            }
+            if (step.getExtra() != null && step.getExtra().contains("Using temporary")) {
+                advice.setTemporary(true);
+            }
+        }
+        return advice;
+    }
+
+    private String sampleProjectId() {
+        try {
+            List<String> ids = jdbcTemplate.queryForList(
+                "SELECT project_id FROM commits ORDER BY timestamp DESC LIMIT 1", String.class);
+            return ids.isEmpty() ? SAMPLE_PROJECT_ID : ids.get(0);
+        } catch (DataAccessException e) {
+            logger.debug("无法获取样例项目ID: {}", e.getMessage());
+            return SAMPLE_PROJECT_ID;
+        }
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * 查询目录条目
+     */
+    public static class CatalogEntry {
+        private final String repository;
+        private final String method;
+        private final String query;
+        private final Map<String, Class<?>> namedParameters;
+        private final List<Class<?>> positionalParameters;
+
+        CatalogEntry(String repository, String method, String query,
+                     Map<String, Class<?>> namedParameters, List<Class<?>> positionalParameters) {
+            this.repository = repository;
+            this.method = method;
+            this.query = query;
+            this.namedParameters = namedParameters;
+            this.positionalParameters = positionalParameters;
+        }
+
+        public String getRepository() { return repository; }
+        public String getMethod() { return method; }
+        public String getQuery() { return query; }
+        public Map<String, Class<?>> getNamedParameters() { return namedParameters; }
+        public List<Class<?>> getPositionalParameters() { return positionalParameters; }
+    }
+
+    /**
+     * 单个查询的分析结果
+     */
+    public static class QueryAdvice {
+        private final String repository;
+        private final String method;
+        private final String sql;
+        private final List<PlanStep> plan = new ArrayList<>();
+        private final List<String> fullScanTables = new ArrayList<>();
+        private boolean filesort;
+        private boolean temporary;
+        private String error;
+
+        public QueryAdvice(String repository, String method, String sql) {
+            this.repository = repository;
+            this.method = method;
+            this.sql = sql;
+        }
+
+        public boolean hasProblem() {
+            return !fullScanTables.isEmpty() || filesort || error != null;
+        }
+
+        /**
+         * 问题描述，无问题时为空
+         */
+        public List<String> getProblems() {
+            List<String> problems = new ArrayList<>();
+            if (!fullScanTables.isEmpty()) {
+                problems.add("全表扫描: " + fullScanTables.stream().distinct().collect(Collectors.joining(", ")));
+            }
+            if (filesort) {
+                problems.add(temporary ? "filesort + 临时表" : "filesort");
+            }
+            if (error != null) {
+                problems.add("EXPLAIN失败: " + error);
+            }
+            return problems;
+        }
+
+        public String getRepository() { return repository; }
+        public String getMethod() { return method; }
+        public String getSql() { return sql; }
+        public List<PlanStep> getPlan() { return plan; }
+        public List<String> getFullScanTables() { return fullScanTables; }
+
+        public boolean isFilesort() { return filesort; }
+        public void setFilesort(boolean filesort) { this.filesort = filesort; }
+
+        public boolean isTemporary() { return temporary; }
+        public void setTemporary(boolean temporary) { this.temporary = temporary; }
+
+        public String getError() { return error; }
+        public void setError(String error) { this.error = error; }
+    }
+
+    /**
+     * EXPLAIN 中的一行
+     */
+    public static class PlanStep {
+        private String table;
+        private String accessType;
+        private String key;
+        private Long rows;
+        private String extra;
+
+        public String getTable() { return table; }
+        public void setTable(String table) { this.table = table; }
+
+        public String getAccessType() { return accessType; }
+        public void setAccessType(String accessType) { this.accessType = accessType; }
+
+        public String getKey() { return key; }
+        public void setKey(String key) { this.key = key; }
+
+        public Long getRows() { return rows; }
+        public void setRows(Long rows) { this.rows = rows; }
+
+        public String getExtra() { return extra; }
+        public void setExtra(String extra) { this.extra = extra; }
+    }
+}
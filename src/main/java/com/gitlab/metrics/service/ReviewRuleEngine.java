@@ -1,5 +1,6 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardedByProject;
 import com.gitlab.metrics.entity.CodeReview;
 import com.gitlab.metrics.entity.MergeRequest;
 import com.gitlab.metrics.repository.CodeReviewRepository;
@@ -88,7 +89,7 @@ public class ReviewRuleEngine {
             }
             
             // 获取评审记录
-            List<CodeReview> reviews = codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(mergeRequest.getId());
+            List<CodeReview> reviews = codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(mergeRequest);
             
             // 检查最小评审者数量
             if (!hasMinimumReviewers(mergeRequest, reviews)) {
@@ -198,6 +199,7 @@ public class ReviewRuleEngine {
     /**
      * 计算评审覆盖率统计
      */
+    @ShardedByProject("#projectId")
     public ReviewCoverageStats calculateReviewCoverage(String projectId, LocalDateTime start, LocalDateTime end) {
         try {
             logger.info("Calculating review coverage for project {} from {} to {}", projectId, start, end);
@@ -1,6 +1,9 @@
 package com.gitlab.metrics.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import com.gitlab.metrics.exception.DataProcessingException;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -19,19 +22,20 @@ public class SonarQubeAnalysisMessageListener {
     @Autowired
     private SonarQubeAnalysisService sonarQubeAnalysisService;
     
-    @Autowired
-    private ObjectMapper objectMapper;
-    
     /**
      * 处理代码质量分析消息
      */
-    @RabbitListener(queues = "quality.analysis.queue")
-    public void handleQualityAnalysisMessage(String message) {
+    @RabbitListener(queues = RabbitMQConfig.QUALITY_ANALYSIS_QUEUE)
+    public void handleQualityAnalysisMessage(EventEnvelope message) {
         try {
-            logger.info("收到代码质量分析消息: {}", message);
+            logger.info("收到代码质量分析消息: type={}, requestId={}", message.getType(), message.getRequestId());
             
-            // 解析消息
-            QualityAnalysisMessage analysisMessage = objectMapper.readValue(message, QualityAnalysisMessage.class);
+            // 已合并的合并请求事件也会投递到该队列，没有 SonarQube 项目键，不在这里触发分析
+            if (message.getType() != EventType.QUALITY_ANALYSIS) {
+                logger.debug("跳过非质量分析事件: type={}, requestId={}", message.getType(), message.getRequestId());
+                return;
+            }
+            QualityAnalysisMessage analysisMessage = message.requirePayload(EventType.QUALITY_ANALYSIS, QualityAnalysisMessage.class);
             
             // 执行质量分析
             sonarQubeAnalysisService.analyzeProjectQuality(
@@ -44,8 +48,9 @@ public class SonarQubeAnalysisMessageListener {
                 analysisMessage.getProjectId(), analysisMessage.getCommitSha());
             
         } catch (Exception e) {
-            logger.error("处理代码质量分析消息失败: {}", message, e);
-            // 这里可以实现重试机制或者将失败的消息发送到死信队列
+            logger.error("处理代码质量分析消息失败: requestId={}", message.getRequestId(), e);
+            // 抛出后由 DelayedRetryInterceptor 转投延迟梯队，多次失败后进入 parking lot
+            throw new DataProcessingException("处理代码质量分析消息失败: " + e.getMessage(), e);
         }
     }
     
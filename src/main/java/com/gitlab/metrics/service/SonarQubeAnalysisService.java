@@ -2,11 +2,16 @@ package com.gitlab.metrics.service;
 
 import com.gitlab.metrics.config.SonarQubeProperties;
 import com.gitlab.metrics.config.RabbitMQConfig;
+import com.gitlab.metrics.config.ShardedByProject;
 import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventType;
 import com.gitlab.metrics.repository.QualityMetricsRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.service.outbox.OutboxService;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -35,10 +40,7 @@ public class SonarQubeAnalysisService {
     private SonarQubeProperties sonarQubeProperties;
     
     @Autowired
-    private org.springframework.amqp.rabbit.core.RabbitTemplate rabbitTemplate;
-    
-    @Autowired
-    private ObjectMapper objectMapper;
+    private OutboxService outboxService;
     
     @Autowired
     private SecurityAnalysisService securityAnalysisService;
@@ -46,6 +48,9 @@ public class SonarQubeAnalysisService {
     @Autowired
     private AlertService alertService;
     
+    @Autowired
+    private RealtimeCounterService realtimeCounterService;
+    
     /**
      * 分析项目代码质量
      * 
@@ -55,6 +60,7 @@ public class SonarQubeAnalysisService {
      * @return 质量指标实体
      */
     @Transactional
+    @ShardedByProject("#projectId")
     public Optional<QualityMetrics> analyzeProjectQuality(String projectId, String commitSha, String sonarProjectKey) {
         try {
             logger.info("开始分析项目代码质量: projectId={}, commitSha={}, sonarProjectKey={}", 
@@ -103,6 +109,7 @@ public class SonarQubeAnalysisService {
             
             // 保存质量指标
             QualityMetrics savedMetrics = qualityMetricsRepository.save(qualityMetrics);
+            realtimeCounterService.recordQualityGate(savedMetrics);
             
             // 执行安全和性能分析
             performSecurityAndPerformanceAnalysis(projectId, sonarProjectKey);
@@ -249,7 +256,18 @@ public class SonarQubeAnalysisService {
      * 触发代码质量分析
      * 通过消息队列异步处理分析任务
      */
+    @ShardedByProject("#projectId")
     public boolean triggerQualityAnalysis(String projectId, String commitSha, String sonarProjectKey) {
+        return triggerQualityAnalysis(projectId, commitSha, sonarProjectKey, 0);
+    }
+    
+    /**
+     * 触发代码质量分析
+     * 延后触发的调用方（如 QualityAnalysisDebouncer）传入原始 webhook 的到达时间，为 0 时沿用当前线程正在处理的消息的到达时间；
+     * 发件箱写入项目所在的分片，调度线程上调用时也不会落到默认分片
+     */
+    @ShardedByProject("#projectId")
+    public boolean triggerQualityAnalysis(String projectId, String commitSha, String sonarProjectKey, long receivedAt) {
         try {
             logger.info("触发代码质量分析: projectId={}, commitSha={}, sonarProjectKey={}", 
                 projectId, commitSha, sonarProjectKey);
@@ -264,15 +282,22 @@ public class SonarQubeAnalysisService {
             SonarQubeAnalysisMessageListener.QualityAnalysisMessage message = 
                 new SonarQubeAnalysisMessageListener.QualityAnalysisMessage(projectId, commitSha, sonarProjectKey);
             
-            // 发送到消息队列进行异步处理
-            String messageJson = objectMapper.writeValueAsString(message);
-            rabbitTemplate.convertAndSend(
+            EventEnvelope envelope = new EventEnvelope(EventType.QUALITY_ANALYSIS, MDC.get("requestId"), message);
+            envelope.setReceivedAt(receivedAt);
+            
+            // 写入发件箱，随调用方的事务提交后由中继发布到消息队列，事务回滚时消息一并撤销；
+            // 载荷由消息转换器编码，不再预先序列化为字符串
+            outboxService.enqueue(
                 RabbitMQConfig.GITLAB_EVENTS_EXCHANGE,
                 RabbitMQConfig.QUALITY_ROUTING_KEY,
-                messageJson
-            );
+                envelope
+            ).whenComplete((result, error) -> {
+                if (error != null) {
+                    logger.error("代码质量分析消息发布失败: projectId={}, commitSha={}", projectId, commitSha, error);
+                }
+            });
             
-            logger.info("成功发送代码质量分析消息到队列: projectId={}, commitSha={}", projectId, commitSha);
+            logger.info("成功提交代码质量分析消息: projectId={}, commitSha={}", projectId, commitSha);
             return true;
             
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package com.gitlab.metrics.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.exception.DataProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -46,6 +47,8 @@ public class TestCoverageAnalysisMessageListener {
             
         } catch (Exception e) {
             logger.error("处理测试覆盖率分析消息失败: message={}, error={}", message, e.getMessage(), e);
+            // 抛出后由 DelayedRetryInterceptor 转投延迟梯队，多次失败后进入 parking lot
+            throw new DataProcessingException("处理测试覆盖率分析消息失败: " + e.getMessage(), e);
         }
     }
     
@@ -72,6 +75,7 @@ public class TestCoverageAnalysisMessageListener {
             
         } catch (Exception e) {
             logger.error("处理测试覆盖率文件分析消息失败: message={}, error={}", message, e.getMessage(), e);
+            throw new DataProcessingException("处理测试覆盖率文件分析消息失败: " + e.getMessage(), e);
         }
     }
     
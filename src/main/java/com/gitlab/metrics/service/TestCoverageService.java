@@ -1,7 +1,11 @@
 package com.gitlab.metrics.service;
 
+import com.gitlab.metrics.config.ShardScatterGather;
 import com.gitlab.metrics.entity.TestCoverage;
 import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +38,15 @@ public class TestCoverageService {
     @Autowired
     private TestCoverageRepository testCoverageRepository;
     
+    @Autowired
+    private RealtimeCounterService realtimeCounterService;
+    
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+    
+    @Autowired(required = false)
+    private ShardScatterGather shardScatterGather;
+    
     /**
      * 解析并保存测试覆盖率报告
      * 
@@ -71,6 +84,7 @@ public class TestCoverageService {
             
             // 保存到数据库
             TestCoverage savedCoverage = testCoverageRepository.save(coverage);
+            realtimeCounterService.recordCoverageStatus(savedCoverage);
             logger.info("测试覆盖率报告解析完成: id={}, lineCoverage={}", 
                        savedCoverage.getId(), savedCoverage.getLineCoverage());
             
@@ -80,7 +94,7 @@ public class TestCoverageService {
             logger.error("解析测试覆盖率报告失败: projectId={}, commitSha={}, error={}", 
                         projectId, commitSha, e.getMessage(), e);
             coverage.setStatus("FAILED");
-            testCoverageRepository.save(coverage);
+            realtimeCounterService.recordCoverageStatus(testCoverageRepository.save(coverage));
             throw new RuntimeException("解析测试覆盖率报告失败", e);
         }
     }
@@ -330,10 +344,19 @@ public class TestCoverageService {
     
     /**
      * 获取覆盖率趋势分析
+     * 范围覆盖已归档月份时，按求和与计数合并活跃表和归档数据后再计算平均值
      */
     @Transactional(readOnly = true)
     public CoverageTrend getCoverageTrend(String projectId, LocalDateTime start, LocalDateTime end) {
-        Object[] result = testCoverageRepository.getCoverageTrend(projectId, start, end);
+        Object[] result;
+        if (archiveQueryService != null && archiveQueryService.covers(ArchiveTable.TEST_COVERAGE, start, end)) {
+            List<Object[]> live = testCoverageRepository.getCoverageTrendTotals(projectId, start, end);
+            result = ArchiveQueryService.toAverages(ArchiveQueryService.mergeTotals(
+                live.isEmpty() ? null : live.get(0),
+                archiveQueryService.getCoverageTrendTotals(projectId, start, end)));
+        } else {
+            result = testCoverageRepository.getCoverageTrend(projectId, start, end);
+        }
         
         if (result != null && result.length >= 3) {
             CoverageTrend trend = new CoverageTrend();
@@ -351,19 +374,17 @@ public class TestCoverageService {
     
     /**
      * 删除旧的覆盖率记录
+     * 使用单条批量DELETE语句，不加载实体；启用项目分片时在每个分片上各执行一次
      */
     @Transactional
     public void cleanupOldCoverageRecords(LocalDateTime before) {
         logger.info("清理旧的覆盖率记录: before={}", before);
         
-        List<TestCoverage> oldRecords = testCoverageRepository.findAll()
-            .stream()
-            .filter(coverage -> coverage.getTimestamp().isBefore(before))
-            .collect(java.util.stream.Collectors.toList());
-        
-        if (!oldRecords.isEmpty()) {
-            testCoverageRepository.deleteAll(oldRecords);
-            logger.info("已清理 {} 条旧的覆盖率记录", oldRecords.size());
+        int deleted = shardScatterGather == null ? testCoverageRepository.deleteByTimestampBefore(before)
+            : shardScatterGather.updateEachShard(shard -> testCoverageRepository.deleteByTimestampBefore(before))
+                .values().stream().mapToInt(Integer::intValue).sum();
+        if (deleted > 0) {
+            logger.info("已清理 {} 条旧的覆盖率记录", deleted);
         }
     }
     
@@ -0,0 +1,301 @@
+package com.gitlab.metrics.service.approx;
+
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 近似查询服务
+ * 在抽样影子表上执行与精确查询相同形状的聚合，按抽样率放大并返回95%置信区间，
+ * 用于全组织排行榜、项目活跃度和全项目质量概览等探索性视图。
+ * 影子表重建时只从活跃表抽样，是否包含已归档月份不确定，因此范围包含已归档数据时拒绝查询
+ */
+@Service
+@Transactional(readOnly = true)
+public class ApproximateQueryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApproximateQueryService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SampleService sampleService;
+
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+
+    public boolean isAvailable(SampleTable table) {
+        return sampleService.isAvailable(table);
+    }
+
+    public double getSampleRate() {
+        return sampleService.getSampleRate();
+    }
+
+    /**
+     * 开发者提交统计估计（全部项目），对应 CommitStatisticsService.getDeveloperCommitStats
+     */
+    public List<DeveloperEstimate> getDeveloperStats(LocalDateTime startDate, LocalDateTime endDate) {
+        requireLive("approximate developer stats", startDate, endDate, ArchiveTable.COMMITS);
+        logger.debug("近似查询开发者统计: startDate={}, endDate={}", startDate, endDate);
+        double rate = sampleService.getSampleRate();
+
+        String sql = "SELECT s.developer_id, MAX(s.developer_name), COUNT(*), " +
+            "COALESCE(SUM(s.lines_added), 0), COALESCE(SUM(s.lines_added * 1.0 * s.lines_added), 0), " +
+            "COALESCE(SUM(s.lines_deleted), 0), COALESCE(SUM(s.lines_deleted * 1.0 * s.lines_deleted), 0), " +
+            "COALESCE(SUM(s.files_changed), 0), COALESCE(SUM(s.files_changed * 1.0 * s.files_changed), 0) " +
+            "FROM " + SampleTable.COMMITS.getSampleTable() + " s " +
+            "WHERE s.timestamp BETWEEN ? AND ? " +
+            "GROUP BY s.developer_id";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            DeveloperEstimate estimate = new DeveloperEstimate();
+            estimate.setDeveloperId(rs.getString(1));
+            estimate.setDeveloperName(rs.getString(2));
+            estimate.setSampledCommits(rs.getLong(3));
+            estimate.setCommitCount(Estimate.count(rs.getLong(3), rate));
+            estimate.setLinesAdded(Estimate.total(rs.getDouble(4), rs.getDouble(5), rate));
+            estimate.setLinesDeleted(Estimate.total(rs.getDouble(6), rs.getDouble(7), rate));
+            estimate.setFilesChanged(Estimate.total(rs.getDouble(8), rs.getDouble(9), rate));
+            return estimate;
+        }, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate));
+    }
+
+    /**
+     * 项目活跃度估计，对应 OptimizedQueryService.getOptimizedProjectActivity
+     * 不同开发者数和活跃天数无法按抽样率线性放大，按样本中出现1次、2次的取值数估计（见 Estimate.distinct），
+     * 开发者数不超过估计提交数，活跃天数不超过查询范围的天数；活跃度得分与精确查询使用相同的权重
+     */
+    public List<ProjectActivityEstimate> getProjectActivity(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        requireLive("approximate project activity", startDate, endDate, ArchiveTable.COMMITS);
+        logger.debug("近似查询项目活跃度: startDate={}, endDate={}, limit={}", startDate, endDate, limit);
+        double rate = sampleService.getSampleRate();
+        Timestamp start = Timestamp.valueOf(startDate);
+        Timestamp end = Timestamp.valueOf(endDate);
+        double rangeDays = ChronoUnit.DAYS.between(startDate.toLocalDate(), endDate.toLocalDate()) + 1;
+
+        Map<String, long[]> developers = frequencyProfile("s.developer_id", start, end);
+        Map<String, long[]> activeDays = frequencyProfile("CAST(s.timestamp AS DATE)", start, end);
+
+        String change = "(COALESCE(s.lines_added, 0) + COALESCE(s.lines_deleted, 0))";
+        String sql = "SELECT s.project_id, COUNT(*), " +
+            "COALESCE(SUM(" + change + "), 0), COALESCE(SUM(" + change + " * 1.0 * " + change + "), 0) " +
+            "FROM " + SampleTable.COMMITS.getSampleTable() + " s " +
+            "WHERE s.timestamp BETWEEN ? AND ? " +
+            "GROUP BY s.project_id";
+
+        List<ProjectActivityEstimate> results = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            ProjectActivityEstimate estimate = new ProjectActivityEstimate();
+            String projectId = rs.getString(1);
+            long sampled = rs.getLong(2);
+            double changes = rs.getDouble(3);
+            double changesSquared = rs.getDouble(4);
+            estimate.setProjectId(projectId);
+            estimate.setSampledCommits(sampled);
+            estimate.setTotalCommits(Estimate.count(sampled, rate));
+            estimate.setTotalChanges(Estimate.total(changes, changesSquared, rate));
+            estimate.setAvgCommitSize(Estimate.mean(sampled, changes, changesSquared, rate));
+
+            long[] developerProfile = developers.getOrDefault(projectId, new long[3]);
+            long[] dayProfile = activeDays.getOrDefault(projectId, new long[3]);
+            estimate.setObservedDevelopers(developerProfile[0]);
+            estimate.setObservedActiveDays(dayProfile[0]);
+            estimate.setEstimatedDevelopers(Estimate.distinct(developerProfile[0], developerProfile[1],
+                developerProfile[2], sampled, rate, estimate.getTotalCommits().getValue()));
+            estimate.setEstimatedActiveDays(Estimate.distinct(dayProfile[0], dayProfile[1],
+                dayProfile[2], sampled, rate, rangeDays));
+            estimate.setActivityScore(estimate.getTotalCommits().getValue() * 0.3
+                + estimate.getEstimatedDevelopers() * 0.2
+                + estimate.getEstimatedActiveDays() * 0.5);
+            return estimate;
+        }, start, end);
+
+        return results.stream()
+            .sorted(Comparator.comparingDouble(ProjectActivityEstimate::getActivityScore).reversed())
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 全项目质量概览估计，对应 QualityMetricsService.getAllProjectsQualityOverview
+     */
+    public List<ProjectQualityEstimate> getAllProjectsQualityOverview(LocalDateTime start, LocalDateTime end) {
+        requireLive("approximate quality overview", start, end, ArchiveTable.QUALITY_METRICS);
+        logger.debug("近似查询全项目质量概览: start={}, end={}", start, end);
+        double rate = sampleService.getSampleRate();
+
+        String sql = "SELECT s.project_id, COUNT(*), " +
+            "COUNT(s.code_complexity), COALESCE(SUM(s.code_complexity), 0), COALESCE(SUM(s.code_complexity * s.code_complexity), 0), " +
+            "COUNT(s.duplicate_rate), COALESCE(SUM(s.duplicate_rate), 0), COALESCE(SUM(s.duplicate_rate * s.duplicate_rate), 0), " +
+            "COUNT(s.maintainability_index), COALESCE(SUM(s.maintainability_index), 0), " +
+            "COALESCE(SUM(s.maintainability_index * s.maintainability_index), 0), " +
+            "COALESCE(SUM(s.technical_debt), 0), COALESCE(SUM(s.technical_debt * s.technical_debt), 0) " +
+            "FROM " + SampleTable.QUALITY_METRICS.getSampleTable() + " s " +
+            "WHERE s.timestamp BETWEEN ? AND ? " +
+            "GROUP BY s.project_id";
+
+        List<ProjectQualityEstimate> results = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            ProjectQualityEstimate estimate = new ProjectQualityEstimate();
+            estimate.setProjectId(rs.getString(1));
+            estimate.setSampledScans(rs.getLong(2));
+            estimate.setTotalScans(Estimate.count(rs.getLong(2), rate));
+            estimate.setAverageComplexity(Estimate.mean(rs.getLong(3), rs.getDouble(4), rs.getDouble(5), rate));
+            estimate.setAverageDuplicateRate(Estimate.mean(rs.getLong(6), rs.getDouble(7), rs.getDouble(8), rate));
+            estimate.setAverageMaintainabilityIndex(Estimate.mean(rs.getLong(9), rs.getDouble(10), rs.getDouble(11), rate));
+            estimate.setTotalTechnicalDebt(Estimate.total(rs.getDouble(12), rs.getDouble(13), rate));
+            return estimate;
+        }, Timestamp.valueOf(start), Timestamp.valueOf(end));
+
+        return results.stream()
+            .sorted(Comparator.comparingDouble(
+                (ProjectQualityEstimate e) -> e.getAverageMaintainabilityIndex().getValue()).reversed())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 按项目统计样本中某列的频次分布，返回 {不同取值数, 出现1次的取值数, 出现2次的取值数}
+     */
+    private Map<String, long[]> frequencyProfile(String valueExpression, Timestamp start, Timestamp end) {
+        String sql = "SELECT g.project_id, COUNT(*), " +
+            "SUM(CASE WHEN g.cnt = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN g.cnt = 2 THEN 1 ELSE 0 END) " +
+            "FROM (SELECT s.project_id, COUNT(*) AS cnt " +
+            "FROM " + SampleTable.COMMITS.getSampleTable() + " s " +
+            "WHERE s.timestamp BETWEEN ? AND ? " +
+            "GROUP BY s.project_id, " + valueExpression + ") g " +
+            "GROUP BY g.project_id";
+
+        Map<String, long[]> profiles = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            profiles.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3), rs.getLong(4)});
+        }, start, end);
+        return profiles;
+    }
+
+    private void requireLive(String reader, LocalDateTime start, LocalDateTime end, ArchiveTable table) {
+        if (archiveQueryService != null) {
+            archiveQueryService.requireLive(reader, start, end, table);
+        }
+    }
+
+    // 内部类定义
+
+    public static class DeveloperEstimate {
+        private String developerId;
+        private String developerName;
+        private long sampledCommits;
+        private Estimate commitCount;
+        private Estimate linesAdded;
+        private Estimate linesDeleted;
+        private Estimate filesChanged;
+
+        public String getDeveloperId() { return developerId; }
+        public void setDeveloperId(String developerId) { this.developerId = developerId; }
+
+        public String getDeveloperName() { return developerName; }
+        public void setDeveloperName(String developerName) { this.developerName = developerName; }
+
+        public long getSampledCommits() { return sampledCommits; }
+        public void setSampledCommits(long sampledCommits) { this.sampledCommits = sampledCommits; }
+
+        public Estimate getCommitCount() { return commitCount; }
+        public void setCommitCount(Estimate commitCount) { this.commitCount = commitCount; }
+
+        public Estimate getLinesAdded() { return linesAdded; }
+        public void setLinesAdded(Estimate linesAdded) { this.linesAdded = linesAdded; }
+
+        public Estimate getLinesDeleted() { return linesDeleted; }
+        public void setLinesDeleted(Estimate linesDeleted) { this.linesDeleted = linesDeleted; }
+
+        public Estimate getFilesChanged() { return filesChanged; }
+        public void setFilesChanged(Estimate filesChanged) { this.filesChanged = filesChanged; }
+    }
+
+    public static class ProjectActivityEstimate {
+        private String projectId;
+        private long sampledCommits;
+        private Estimate totalCommits;
+        private Estimate totalChanges;
+        private Estimate avgCommitSize;
+        private long observedDevelopers;
+        private long observedActiveDays;
+        private double estimatedDevelopers;
+        private double estimatedActiveDays;
+        private double activityScore;
+
+        public String getProjectId() { return projectId; }
+        public void setProjectId(String projectId) { this.projectId = projectId; }
+
+        public long getSampledCommits() { return sampledCommits; }
+        public void setSampledCommits(long sampledCommits) { this.sampledCommits = sampledCommits; }
+
+        public Estimate getTotalCommits() { return totalCommits; }
+        public void setTotalCommits(Estimate totalCommits) { this.totalCommits = totalCommits; }
+
+        public Estimate getTotalChanges() { return totalChanges; }
+        public void setTotalChanges(Estimate totalChanges) { this.totalChanges = totalChanges; }
+
+        public Estimate getAvgCommitSize() { return avgCommitSize; }
+        public void setAvgCommitSize(Estimate avgCommitSize) { this.avgCommitSize = avgCommitSize; }
+
+        public long getObservedDevelopers() { return observedDevelopers; }
+        public void setObservedDevelopers(long observedDevelopers) { this.observedDevelopers = observedDevelopers; }
+
+        public long getObservedActiveDays() { return observedActiveDays; }
+        public void setObservedActiveDays(long observedActiveDays) { this.observedActiveDays = observedActiveDays; }
+
+        public double getEstimatedDevelopers() { return estimatedDevelopers; }
+        public void setEstimatedDevelopers(double estimatedDevelopers) { this.estimatedDevelopers = estimatedDevelopers; }
+
+        public double getEstimatedActiveDays() { return estimatedActiveDays; }
+        public void setEstimatedActiveDays(double estimatedActiveDays) { this.estimatedActiveDays = estimatedActiveDays; }
+
+        public double getActivityScore() { return activityScore; }
+        public void setActivityScore(double activityScore) { this.activityScore = activityScore; }
+    }
+
+    public static class ProjectQualityEstimate {
+        private String projectId;
+        private long sampledScans;
+        private Estimate totalScans;
+        private Estimate averageComplexity;
+        private Estimate averageDuplicateRate;
+        private Estimate averageMaintainabilityIndex;
+        private Estimate totalTechnicalDebt;
+
+        public String getProjectId() { return projectId; }
+        public void setProjectId(String projectId) { this.projectId = projectId; }
+
+        public long getSampledScans() { return sampledScans; }
+        public void setSampledScans(long sampledScans) { this.sampledScans = sampledScans; }
+
+        public Estimate getTotalScans() { return totalScans; }
+        public void setTotalScans(Estimate totalScans) { this.totalScans = totalScans; }
+
+        public Estimate getAverageComplexity() { return averageComplexity; }
+        public void setAverageComplexity(Estimate averageComplexity) { this.averageComplexity = averageComplexity; }
+
+        public Estimate getAverageDuplicateRate() { return averageDuplicateRate; }
+        public void setAverageDuplicateRate(Estimate averageDuplicateRate) { this.averageDuplicateRate = averageDuplicateRate; }
+
+        public Estimate getAverageMaintainabilityIndex() { return averageMaintainabilityIndex; }
+        public void setAverageMaintainabilityIndex(Estimate averageMaintainabilityIndex) { this.averageMaintainabilityIndex = averageMaintainabilityIndex; }
+
+        public Estimate getTotalTechnicalDebt() { return totalTechnicalDebt; }
+        public void setTotalTechnicalDebt(Estimate totalTechnicalDebt) { this.totalTechnicalDebt = totalTechnicalDebt; }
+    }
+}
@@ -0,0 +1,94 @@
+package com.gitlab.metrics.service.approx;
+
+/**
+ * 基于抽样的估计值及其95%置信区间半宽
+ * 总量使用 Horvitz-Thompson 估计（样本和除以抽样率），均值使用样本均值，
+ * 方差都按伯努利抽样计算并带有限总体修正 (1 - 抽样率)
+ */
+public final class Estimate {
+
+    static final double Z_95 = 1.96;
+
+    private final double value;
+    private final double errorBound;
+
+    public Estimate(double value, double errorBound) {
+        this.value = value;
+        this.errorBound = errorBound;
+    }
+
+    /**
+     * 总量估计：样本和 / 抽样率，方差估计为 (1 - p) * Σy² / p²
+     */
+    public static Estimate total(double sampleSum, double sampleSumOfSquares, double sampleRate) {
+        if (sampleRate >= 1.0) {
+            return new Estimate(sampleSum, 0.0);
+        }
+        double value = sampleSum / sampleRate;
+        double bound = Z_95 * Math.sqrt((1.0 - sampleRate) * sampleSumOfSquares) / sampleRate;
+        return new Estimate(value, bound);
+    }
+
+    /**
+     * 计数估计，即每行取值为1的总量估计
+     */
+    public static Estimate count(long sampleCount, double sampleRate) {
+        return total(sampleCount, sampleCount, sampleRate);
+    }
+
+    /**
+     * 均值估计：样本均值，标准误为 s / √n；样本不足两行时误差范围取均值本身
+     */
+    public static Estimate mean(long sampleCount, double sampleSum, double sampleSumOfSquares, double sampleRate) {
+        if (sampleCount <= 0) {
+            return new Estimate(0.0, 0.0);
+        }
+        double mean = sampleSum / sampleCount;
+        if (sampleRate >= 1.0) {
+            return new Estimate(mean, 0.0);
+        }
+        if (sampleCount == 1) {
+            return new Estimate(mean, Math.abs(mean));
+        }
+        double variance = Math.max(0.0, (sampleSumOfSquares - sampleCount * mean * mean) / (sampleCount - 1));
+        double bound = Z_95 * Math.sqrt(variance / sampleCount * (1.0 - sampleRate));
+        return new Estimate(mean, bound);
+    }
+
+    /**
+     * 不同取值个数估计（Chao 与 Lin 针对无放回抽样的下界估计）：
+     * d + f1² / (2·f2·n/(n-1) + f1·p/(1-p))，d 为样本中的不同取值数，f1、f2 为恰好出现1次、2次的取值数，n 为样本行数；
+     * 样本中全是单次取值时退化为 d + f1·(1-p)/p。结果不低于 d，也不超过 maxDistinct
+     */
+    public static double distinct(long observed, long singletons, long doubletons, long sampleCount,
+                                  double sampleRate, double maxDistinct) {
+        if (sampleRate >= 1.0 || singletons <= 0) {
+            return observed;
+        }
+        double correction = sampleCount > 1 ? sampleCount / (sampleCount - 1.0) : 1.0;
+        double unseen = (double) singletons * singletons
+            / (2.0 * doubletons * correction + singletons * sampleRate / (1.0 - sampleRate));
+        return Math.max(observed, Math.min(maxDistinct, observed + unseen));
+    }
+
+    public double getValue() { return value; }
+    public double getErrorBound() { return errorBound; }
+    public double getLowerBound() { return value - errorBound; }
+    public double getUpperBound() { return value + errorBound; }
+
+    /**
+     * 相对误差（误差范围 / 估计值），估计值为0时返回0
+     */
+    public double getRelativeError() {
+        return value != 0.0 ? errorBound / Math.abs(value) : 0.0;
+    }
+
+    public long rounded() {
+        return Math.round(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.2f ± %.2f", value, errorBound);
+    }
+}
@@ -0,0 +1,197 @@
+package com.gitlab.metrics.service.approx;
+
+import com.gitlab.metrics.config.ShardScatterGather;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 抽样影子表维护服务
+ * 按 id 的乘法哈希取模确定性地抽取 1/sampleModulus 的行写入影子表，
+ * 同一行无论何时同步都会得到相同的抽样结果，近似查询据此按抽样率放大并给出误差范围
+ */
+@Service
+public class SampleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleService.class);
+
+    /**
+     * Knuth 乘法哈希取 32 位乘积的高 16 位再取模，打散 id 连续递增带来的周期性
+     * （乘积的低位与 id 的低位同余，不能直接取模）；参数为抽样模数
+     */
+    static final String SAMPLE_PREDICATE = "MOD(FLOOR(MOD(t.id * 2654435761, 4294967296) / 65536), ?) = 0";
+
+    private static final long HASH_MULTIPLIER = 2654435761L;
+    private static final long HASH_RANGE = 4294967296L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ShardScatterGather shardScatterGather;
+
+    @Value("${app.approx.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.approx.sample-modulus:100}")
+    private int sampleModulus;
+
+    @Value("${app.approx.batch-size:50000}")
+    private int batchSize;
+
+    @Value("${app.approx.resync-id-window:10000}")
+    private long resyncIdWindow;
+
+    @Value("${app.retention.commits-months:24}")
+    private int retentionMonths;
+
+    private final Map<SampleTable, Boolean> ready = new ConcurrentHashMap<>();
+    private final Map<SampleTable, Long> sampledRows = new EnumMap<>(SampleTable.class);
+
+    /**
+     * 检查影子表是否存在（由 V8 迁移创建），不存在的表不提供近似查询
+     * 启用项目分片时影子表只能覆盖主分片，近似查询停用，全部回退到精确查询
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (shardScatterGather != null) {
+            logger.info("已启用项目分片，抽样影子表停用，近似查询将回退到精确查询");
+            enabled = false;
+            return;
+        }
+        for (SampleTable table : SampleTable.values()) {
+            try {
+                Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table.getSampleTable(), Long.class);
+                ready.put(table, Boolean.TRUE);
+                synchronized (sampledRows) {
+                    sampledRows.put(table, rows != null ? rows : 0L);
+                }
+            } catch (DataAccessException e) {
+                logger.warn("抽样影子表不可用，近似查询将回退到精确查询: table={}, error={}",
+                    table.getSampleTable(), e.getMessage());
+            }
+        }
+        if (meterRegistry != null) {
+            for (SampleTable table : SampleTable.values()) {
+                Gauge.builder("approx.sample.rows", this, service -> service.getSampledRows(table))
+                    .description("Rows held in the sampled shadow table")
+                    .tag("table", table.getSourceTable())
+                    .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * 定时把新增的源表行同步到影子表，并清理超过保留期的样本
+     */
+    @Scheduled(fixedDelayString = "${app.approx.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        for (SampleTable table : SampleTable.values()) {
+            if (!isReady(table)) {
+                continue;
+            }
+            try {
+                long copied = syncTable(table);
+                int pruned = jdbcTemplate.update("DELETE FROM " + table.getSampleTable() + " WHERE timestamp < ?",
+                    Timestamp.valueOf(LocalDateTime.now().minusMonths(retentionMonths)));
+                if (copied > 0 || pruned > 0) {
+                    logger.debug("抽样影子表同步完成: table={}, copied={}, pruned={}", table.getSampleTable(), copied, pruned);
+                }
+            } catch (DataAccessException e) {
+                logger.error("抽样影子表同步失败: table={}", table.getSampleTable(), e);
+            }
+        }
+    }
+
+    /**
+     * 从影子表中最大的 id 往回 resyncIdWindow 行开始扫描源表，按批次复制抽中且尚未同步的行
+     * 自增 id 在插入时分配、提交时才可见，并发事务提交顺序不同会让较小的 id 晚于较大的 id 出现，
+     * 只从最大 id 之后扫描会永久漏掉这些行；回看窗口内的迟到行会在下次同步时补上，
+     * 晚于窗口的行只能通过 rebuild 修复
+     *
+     * @return 本次复制的行数
+     */
+    public long syncTable(SampleTable table) {
+        Long lastId = jdbcTemplate.queryForObject(
+            "SELECT COALESCE(MAX(id), 0) FROM " + table.getSampleTable(), Long.class);
+        Long maxId = jdbcTemplate.queryForObject(
+            "SELECT COALESCE(MAX(id), 0) FROM " + table.getSourceTable(), Long.class);
+        long from = Math.max(0L, (lastId != null ? lastId : 0L) - resyncIdWindow);
+        long to = maxId != null ? maxId : 0L;
+
+        String sql = table.getCopySql();
+        long copied = 0;
+        while (from < to) {
+            long upper = Math.min(to, from + batchSize);
+            copied += jdbcTemplate.update(sql, from, upper, sampleModulus);
+            from = upper;
+        }
+        if (copied > 0) {
+            synchronized (sampledRows) {
+                sampledRows.merge(table, copied, Long::sum);
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * 清空影子表并从头重建，用于修改抽样模数或修复漏同步的行
+     */
+    public long rebuild(SampleTable table) {
+        jdbcTemplate.update("DELETE FROM " + table.getSampleTable());
+        synchronized (sampledRows) {
+            sampledRows.put(table, 0L);
+        }
+        long copied = syncTable(table);
+        logger.info("抽样影子表重建完成: table={}, rows={}", table.getSampleTable(), copied);
+        return copied;
+    }
+
+    /**
+     * 与 SAMPLE_PREDICATE 相同的抽样判定
+     */
+    public boolean isSampled(long id) {
+        return (((id * HASH_MULTIPLIER) % HASH_RANGE) >>> 16) % sampleModulus == 0;
+    }
+
+    public boolean isAvailable(SampleTable table) {
+        return enabled && isReady(table);
+    }
+
+    public double getSampleRate() {
+        return 1.0 / sampleModulus;
+    }
+
+    public long getSampledRows(SampleTable table) {
+        synchronized (sampledRows) {
+            return sampledRows.getOrDefault(table, 0L);
+        }
+    }
+
+    private boolean isReady(SampleTable table) {
+        return Boolean.TRUE.equals(ready.get(table));
+    }
+}
@@ -0,0 +1,59 @@
+package com.gitlab.metrics.service.approx;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 维护抽样影子表的源表
+ * 影子表只保留近似查询需要的列，列名与源表一致
+ */
+public enum SampleTable {
+
+    COMMITS("commits", "commits_sample",
+        "id", "project_id", "developer_id", "developer_name", "timestamp",
+        "lines_added", "lines_deleted", "files_changed"),
+
+    QUALITY_METRICS("quality_metrics", "quality_metrics_sample",
+        "id", "project_id", "timestamp",
+        "code_complexity", "duplicate_rate", "maintainability_index", "technical_debt");
+
+    private final String sourceTable;
+    private final String sampleTable;
+    private final List<String> columns;
+
+    SampleTable(String sourceTable, String sampleTable, String... columns) {
+        this.sourceTable = sourceTable;
+        this.sampleTable = sampleTable;
+        this.columns = Arrays.asList(columns);
+    }
+
+    public String getSourceTable() {
+        return sourceTable;
+    }
+
+    public String getSampleTable() {
+        return sampleTable;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 从源表复制抽中行的 INSERT ... SELECT，参数依次为 id 下界（不含）、id 上界（含）和抽样模数
+     * 已在影子表中的行跳过，同一 id 区间可以重复扫描
+     */
+    String getCopySql() {
+        StringBuilder select = new StringBuilder();
+        for (String column : columns) {
+            if (select.length() > 0) {
+                select.append(", ");
+            }
+            select.append("t.").append(column);
+        }
+        return "INSERT INTO " + sampleTable + " (" + String.join(", ", columns) + ") " +
+            "SELECT " + select + " FROM " + sourceTable + " t " +
+            "WHERE t.id > ? AND t.id <= ? AND " + SampleService.SAMPLE_PREDICATE + " " +
+            "AND NOT EXISTS (SELECT 1 FROM " + sampleTable + " x WHERE x.id = t.id)";
+    }
+}
@@ -0,0 +1,48 @@
+package com.gitlab.metrics.service.archive;
+
+/**
+ * 归档段文件中的列定义
+ */
+public class ArchiveColumn {
+
+    /**
+     * 列类型，决定列块的编码方式
+     */
+    public enum Type {
+        /** 整数：按行差分后 zigzag 变长编码 */
+        LONG,
+        /** 时间戳：转为毫秒后按 LONG 编码，按时间排序的列差分后通常只占1~2字节 */
+        TIMESTAMP,
+        /** 浮点数：原始 IEEE 754 位，依赖块压缩去重 */
+        DOUBLE,
+        /** 字符串：字典编码，列块内每个不同值只存一次，行上存变长字典码 */
+        STRING
+    }
+
+    private final String name;
+    private final Type type;
+
+    public ArchiveColumn(String name, Type type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    public static ArchiveColumn int64(String name) {
+        return new ArchiveColumn(name, Type.LONG);
+    }
+
+    public static ArchiveColumn timestamp(String name) {
+        return new ArchiveColumn(name, Type.TIMESTAMP);
+    }
+
+    public static ArchiveColumn float64(String name) {
+        return new ArchiveColumn(name, Type.DOUBLE);
+    }
+
+    public static ArchiveColumn string(String name) {
+        return new ArchiveColumn(name, Type.STRING);
+    }
+
+    public String getName() { return name; }
+    public Type getType() { return type; }
+}
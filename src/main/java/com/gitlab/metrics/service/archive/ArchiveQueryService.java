@@ -0,0 +1,210 @@
+package com.gitlab.metrics.service.archive;
+
+import com.gitlab.metrics.exception.ArchivedRangeException;
+import com.gitlab.metrics.repository.projection.CommitTotalsRow;
+import com.gitlab.metrics.repository.projection.CommitTrendRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow;
+import com.gitlab.metrics.repository.projection.ProjectCommitStatsRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * 归档查询服务
+ * 在归档段上计算与统计仓库查询相同的聚合结果（提交统计为 projection 包中的类型化行，
+ * 质量和覆盖率为求和与计数对），统计服务在查询范围覆盖已归档月份时，将其与活跃表的查询结果合并。
+ * 没有归档实现的查询（对比、导出、仪表板、优化查询、近似查询等）通过 requireLive 拒绝覆盖已归档数据的范围，
+ * 不返回缺少归档月份的结果。
+ */
+@Service
+public class ArchiveQueryService {
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    /**
+     * 判断时间范围内是否有需要合并的归档数据
+     */
+    public boolean covers(ArchiveTable table, LocalDateTime start, LocalDateTime end) {
+        return archiveService.hasArchivedData(table, start, end);
+    }
+
+    /**
+     * 只读活跃表的查询在范围内有已归档数据时直接拒绝，避免静默返回缺少归档月份的结果
+     *
+     * @param reader 查询名称，用于错误信息
+     * @throws ArchivedRangeException 任一表在范围内有已归档数据
+     */
+    public void requireLive(String reader, LocalDateTime start, LocalDateTime end, ArchiveTable... tables) {
+        for (ArchiveTable table : tables) {
+            if (covers(table, start, end)) {
+                throw new ArchivedRangeException(reader, table.getTableName(), archiveService.getArchivedThrough(table));
+            }
+        }
+    }
+
+    /**
+     * 开发者提交统计，按 (developerId, developerName) 分组
+     */
+    public List<DeveloperCommitStatsRow> getDeveloperCommitStats(LocalDateTime start, LocalDateTime end, String projectId) {
+        Map<List<Object>, long[]> groups = new LinkedHashMap<>();
+        archiveService.scan(ArchiveTable.COMMITS, start, end, projectId,
+            Arrays.asList("developer_id", "developer_name", "lines_added", "lines_deleted", "files_changed"),
+            row -> accumulate(groups, Arrays.asList(row.getString("developer_id"), row.getString("developer_name")),
+                1, value(row.getLong("lines_added")), value(row.getLong("lines_deleted")),
+                value(row.getLong("files_changed"))));
+        List<DeveloperCommitStatsRow> rows = new ArrayList<>(groups.size());
+        groups.forEach((key, totals) -> rows.add(new DeveloperCommitStatsRow((String) key.get(0), (String) key.get(1),
+            totals[0], totals[1], totals[2], totals[3])));
+        return rows;
+    }
+
+    /**
+     * 项目提交统计，按 projectId 分组
+     */
+    public List<ProjectCommitStatsRow> getProjectCommitStats(LocalDateTime start, LocalDateTime end) {
+        Map<List<Object>, long[]> groups = new LinkedHashMap<>();
+        archiveService.scan(ArchiveTable.COMMITS, start, end, null,
+            Arrays.asList("project_id", "lines_added", "lines_deleted", "files_changed"),
+            row -> accumulate(groups, Collections.singletonList(row.getString("project_id")),
+                1, value(row.getLong("lines_added")), value(row.getLong("lines_deleted")),
+                value(row.getLong("files_changed"))));
+        List<ProjectCommitStatsRow> rows = new ArrayList<>(groups.size());
+        groups.forEach((key, totals) -> rows.add(new ProjectCommitStatsRow((String) key.get(0),
+            totals[0], totals[1], totals[2], totals[3])));
+        return rows;
+    }
+
+    /**
+     * 按日期的提交趋势，指定项目时行中带 projectId
+     */
+    public List<CommitTrendRow> getCommitTrend(LocalDateTime start, LocalDateTime end, String projectId) {
+        Map<List<Object>, long[]> groups = new LinkedHashMap<>();
+        archiveService.scan(ArchiveTable.COMMITS, start, end, projectId,
+            Arrays.asList("timestamp", "lines_added", "lines_deleted"),
+            row -> accumulate(groups, Collections.singletonList(row.getTimestamp("timestamp").toLocalDate()),
+                1, value(row.getLong("lines_added")), value(row.getLong("lines_deleted"))));
+        List<CommitTrendRow> rows = new ArrayList<>(groups.size());
+        groups.forEach((key, totals) -> rows.add(new CommitTrendRow(projectId, key.get(0),
+            totals[0], totals[1], totals[2])));
+        return rows;
+    }
+
+    /**
+     * 项目总体统计
+     */
+    public CommitTotalsRow getProjectTotalStats(String projectId, LocalDateTime start, LocalDateTime end) {
+        long[] totals = new long[4];
+        archiveService.scan(ArchiveTable.COMMITS, start, end, projectId,
+            Arrays.asList("lines_added", "lines_deleted", "files_changed"),
+            row -> {
+                totals[0] += value(row.getLong("lines_added"));
+                totals[1] += value(row.getLong("lines_deleted"));
+                totals[2] += value(row.getLong("files_changed"));
+                totals[3]++;
+            });
+        return new CommitTotalsRow(totals[0], totals[1], totals[2], totals[3]);
+    }
+
+    /**
+     * 质量指标的求和与非空计数，行: 复杂度和, 复杂度数, 重复率和, 重复率数, 可维护性和, 可维护性数, 技术债和, 技术债数
+     */
+    public Object[] getQualityTrendTotals(String projectId, LocalDateTime start, LocalDateTime end) {
+        return sumAndCount(ArchiveTable.QUALITY_METRICS, projectId, start, end,
+            "code_complexity", "duplicate_rate", "maintainability_index", "technical_debt");
+    }
+
+    /**
+     * 覆盖率的求和与非空计数，行: 行覆盖率和, 数量, 分支覆盖率和, 数量, 函数覆盖率和, 数量
+     */
+    public Object[] getCoverageTrendTotals(String projectId, LocalDateTime start, LocalDateTime end) {
+        return sumAndCount(ArchiveTable.TEST_COVERAGE, projectId, start, end,
+            "line_coverage", "branch_coverage", "function_coverage");
+    }
+
+    private Object[] sumAndCount(ArchiveTable table, String projectId, LocalDateTime start, LocalDateTime end,
+                                 String... columns) {
+        double[] sums = new double[columns.length];
+        long[] counts = new long[columns.length];
+        archiveService.scan(table, start, end, projectId, Arrays.asList(columns), row -> {
+            for (int i = 0; i < columns.length; i++) {
+                Double value = row.getDouble(columns[i]);
+                if (value != null) {
+                    sums[i] += value;
+                    counts[i]++;
+                }
+            }
+        });
+        Object[] result = new Object[columns.length * 2];
+        for (int i = 0; i < columns.length; i++) {
+            result[i * 2] = sums[i];
+            result[i * 2 + 1] = counts[i];
+        }
+        return result;
+    }
+
+    /**
+     * 合并两组类型化聚合行：key 相同的行用 plus 累加，结果按 order 排序
+     */
+    public static <T> List<T> mergeRows(List<T> first, List<T> second, Function<T, ?> key,
+                                        BinaryOperator<T> plus, Comparator<T> order) {
+        Map<Object, T> merged = new LinkedHashMap<>();
+        for (List<T> rows : Arrays.asList(first, second)) {
+            for (T row : rows) {
+                merged.merge(key.apply(row), row, plus);
+            }
+        }
+        List<T> result = new ArrayList<>(merged.values());
+        result.sort(order);
+        return result;
+    }
+
+    /**
+     * 合并两组总计行，逐列相加
+     */
+    public static Object[] mergeTotals(Object[] first, Object[] second) {
+        Object[] result = new Object[second.length];
+        for (int i = 0; i < result.length; i++) {
+            Number a = first != null && i < first.length ? (Number) first[i] : null;
+            Number b = (Number) second[i];
+            result[i] = a instanceof Double || b instanceof Double
+                ? (a != null ? a.doubleValue() : 0.0) + (b != null ? b.doubleValue() : 0.0)
+                : (Object) (value(a) + value(b));
+        }
+        return result;
+    }
+
+    /**
+     * 将 (和, 非空计数) 成对排列的总计行转换为平均值，计数为0的列返回 null
+     */
+    public static Double[] toAverages(Object[] sumsAndCounts) {
+        Double[] averages = new Double[sumsAndCounts.length / 2];
+        for (int i = 0; i < averages.length; i++) {
+            Number sum = (Number) sumsAndCounts[i * 2];
+            long count = value((Number) sumsAndCounts[i * 2 + 1]);
+            averages[i] = count > 0 && sum != null ? sum.doubleValue() / count : null;
+        }
+        return averages;
+    }
+
+    private static void accumulate(Map<List<Object>, long[]> groups, List<Object> key, long... values) {
+        long[] totals = groups.computeIfAbsent(key, k -> new long[values.length]);
+        for (int i = 0; i < values.length; i++) {
+            totals[i] += values[i];
+        }
+    }
+
+    private static long value(Number number) {
+        return number != null ? number.longValue() : 0L;
+    }
+}
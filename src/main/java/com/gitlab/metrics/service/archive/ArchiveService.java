@@ -0,0 +1,510 @@
+package com.gitlab.metrics.service.archive;
+
+import com.gitlab.metrics.config.BulkheadRoutingDataSource;
+import com.gitlab.metrics.config.UseConnectionPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 冷数据归档服务
+ * 将已结束月份的 commits、file_changes、quality_metrics、test_coverage 数据写入本地列式段文件
+ * （{@code {dir}/{table}/{yyyyMM}-{seq}.seg}），校验行数后再从活跃表删除，并提供按时间范围的归档扫描。
+ *
+ * 段文件先以 .tmp 写入，校验通过后改名为 .pending，活跃表删除完成后才改名为 .seg 对查询可见，
+ * 因此同一行不会同时出现在活跃表和可见的段中；中断留下的 .pending 段在下次归档时继续删除并发布。
+ * 同一月份后来写入的行以 id 大于已归档最大 id 为界，追加为该月的新段。
+ */
+@Service
+@UseConnectionPool(BulkheadRoutingDataSource.BATCH)
+public class ArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveService.class);
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String PENDING_SUFFIX = ".seg.pending";
+    static final String TEMP_SUFFIX = ".seg.tmp";
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.archive.dir:./data/archive}")
+    private String directory = "./data/archive";
+
+    @Value("${app.archive.after-months:6}")
+    private int afterMonths = 6;
+
+    @Value("${app.archive.row-group-size:65536}")
+    private int rowGroupSize = 65536;
+
+    @Value("${app.archive.delete-batch-size:5000}")
+    private int deleteBatchSize = 5000;
+
+    @Value("${app.archive.fetch-size:500}")
+    private int fetchSize = 500;
+
+    /**
+     * 已发布段的目录：表 -> 月份 -> 段列表
+     */
+    private final Map<ArchiveTable, NavigableMap<YearMonth, List<SegmentReader>>> catalog =
+        Collections.synchronizedMap(new EnumMap<>(ArchiveTable.class));
+
+    /**
+     * 加载本地已发布的段，清理中断留下的临时文件
+     */
+    @PostConstruct
+    public void loadCatalog() {
+        for (ArchiveTable table : ArchiveTable.values()) {
+            NavigableMap<YearMonth, List<SegmentReader>> months = segments(table);
+            Path tableDir = tableDir(table);
+            if (!Files.isDirectory(tableDir)) {
+                continue;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(tableDir)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                        try {
+                            months.computeIfAbsent(parseMonth(name), m -> new CopyOnWriteArrayList<>())
+                                .add(SegmentReader.open(file));
+                        } catch (IOException | RuntimeException e) {
+                            logger.error("无法打开归档段，已跳过: {}", file, e);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("加载归档目录失败: {}", tableDir, e);
+            }
+        }
+
+        if (meterRegistry != null) {
+            for (ArchiveTable table : ArchiveTable.values()) {
+                Gauge.builder("archive.segments", this, service -> service.countSegments(table))
+                    .description("Published archive segments")
+                    .tag("table", table.getTableName())
+                    .register(meterRegistry);
+                Gauge.builder("archive.rows", this, service -> service.countRows(table))
+                    .description("Rows held in published archive segments")
+                    .tag("table", table.getTableName())
+                    .register(meterRegistry);
+            }
+        }
+        logger.info("归档目录加载完成: dir={}, segments={}", directory,
+            catalog.values().stream().flatMap(m -> m.values().stream()).mapToInt(List::size).sum());
+    }
+
+    /**
+     * 定时归档超过保留在线月数的已结束月份
+     */
+    @Scheduled(cron = "${app.archive.cron:0 0 3 * * ?}")
+    public void runArchive() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        YearMonth cutoff = YearMonth.now().minusMonths(afterMonths);
+        long archived = 0;
+
+        for (ArchiveTable table : ArchiveTable.values()) {
+            try {
+                archived += archiveBefore(table, cutoff);
+            } catch (IOException | UncheckedIOException | DataAccessException e) {
+                logger.error("归档失败: table={}", table.getTableName(), e);
+                increment("archive.failures", table);
+            }
+        }
+
+        if (meterRegistry != null) {
+            Timer.builder("archive.run.duration")
+                .description("Duration of archive runs")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        logger.info("归档完成: 归档行数={}, 截止月份={}", archived, cutoff);
+    }
+
+    /**
+     * 归档 cutoff 之前（不含）所有仍有活跃数据的月份
+     *
+     * @return 本次归档的行数
+     */
+    public long archiveBefore(ArchiveTable table, YearMonth cutoff) throws IOException {
+        long archived = recoverPending(table);
+        LocalDateTime oldest = jdbcTemplate.query(
+            "SELECT MIN(t." + table.getTimeColumn() + ") FROM " + table.getTableName() + " t " +
+            "WHERE t." + table.getTimeColumn() + " < ?",
+            rs -> rs.next() && rs.getTimestamp(1) != null ? rs.getTimestamp(1).toLocalDateTime() : null,
+            Timestamp.valueOf(cutoff.atDay(1).atStartOfDay()));
+        if (oldest == null) {
+            return archived;
+        }
+        for (YearMonth month = YearMonth.from(oldest); month.isBefore(cutoff); month = month.plusMonths(1)) {
+            archived += archiveMonth(table, month);
+        }
+        return archived;
+    }
+
+    /**
+     * 将一个月份中尚未归档的活跃行写入新段，校验后删除活跃行并发布段
+     *
+     * @return 归档的行数，校验失败或没有新行时返回0
+     */
+    public long archiveMonth(ArchiveTable table, YearMonth month) throws IOException {
+        Path tableDir = tableDir(table);
+        Files.createDirectories(tableDir);
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        long afterId = archivedMaxId(table, month);
+        String baseName = segmentBaseName(table, month);
+        Path temp = tableDir.resolve(baseName + TEMP_SUFFIX);
+
+        long rows;
+        try (SegmentWriter writer = new SegmentWriter(temp, table.getColumns(), table.getTimeColumn(), rowGroupSize)) {
+            streamRows(table, from, to, afterId, writer);
+            rows = writer.getRowCount();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (rows == 0) {
+            Files.deleteIfExists(temp);
+            return 0;
+        }
+
+        // 活跃表中对应 id 区间的行数与段内行数一致才删除，期间有并发写入则放弃本次归档
+        SegmentReader segment = SegmentReader.open(temp);
+        long live = countLive(table, from, to, afterId, segment.getMaxId());
+        if (live != segment.getRowCount()) {
+            Files.deleteIfExists(temp);
+            increment("archive.verify.failures", table);
+            logger.warn("归档校验失败，放弃本次归档: table={}, month={}, segmentRows={}, liveRows={}",
+                table.getTableName(), month, segment.getRowCount(), live);
+            return 0;
+        }
+
+        Path pending = tableDir.resolve(baseName + PENDING_SUFFIX);
+        Files.move(temp, pending, StandardCopyOption.ATOMIC_MOVE);
+        return publish(table, month, pending);
+    }
+
+    /**
+     * 是否开启列式归档
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 判断时间范围内是否有已归档数据
+     */
+    public boolean hasArchivedData(ArchiveTable table, LocalDateTime start, LocalDateTime end) {
+        for (List<SegmentReader> segments : monthsInRange(table, start, end).values()) {
+            for (SegmentReader segment : segments) {
+                if ((end == null || !segment.getMinTimestamp().isAfter(end))
+                    && (start == null || !segment.getMaxTimestamp().isBefore(start))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已归档数据的最晚时间，没有已发布的段时返回 null
+     */
+    public LocalDateTime getArchivedThrough(ArchiveTable table) {
+        LocalDateTime latest = null;
+        for (SegmentReader segment : getSegments(table)) {
+            if (latest == null || segment.getMaxTimestamp().isAfter(latest)) {
+                latest = segment.getMaxTimestamp();
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 扫描时间范围 [start, end] 内的归档行
+     *
+     * @param table 归档表
+     * @param start 开始时间（含），可为空
+     * @param end 结束时间（含），可为空
+     * @param projectId 项目ID，为空时不过滤；表没有项目列时忽略
+     * @param columns 需要读取的列
+     * @param consumer 行回调
+     * @return 回调的行数
+     */
+    public long scan(ArchiveTable table, LocalDateTime start, LocalDateTime end, String projectId,
+                     Collection<String> columns, Consumer<SegmentReader.SegmentRow> consumer) {
+        long begin = System.nanoTime();
+        String projectColumn = table.getProjectColumn();
+        boolean filterProject = projectId != null && projectColumn != null;
+        Set<String> requested = new LinkedHashSet<>(columns);
+        if (filterProject) {
+            requested.add(projectColumn);
+        }
+        Consumer<SegmentReader.SegmentRow> target = filterProject
+            ? row -> {
+                if (projectId.equals(row.getString(projectColumn))) {
+                    consumer.accept(row);
+                }
+            }
+            : consumer;
+
+        long[] matched = new long[1];
+        try {
+            for (List<SegmentReader> segments : monthsInRange(table, start, end).values()) {
+                for (SegmentReader segment : segments) {
+                    segment.scan(requested, start, end, row -> {
+                        target.accept(row);
+                        matched[0]++;
+                    });
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("归档扫描失败: " + table.getTableName(), e);
+        } finally {
+            if (meterRegistry != null) {
+                Timer.builder("archive.scan.duration")
+                    .description("Duration of archive segment scans")
+                    .tag("table", table.getTableName())
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+            }
+        }
+        return matched[0];
+    }
+
+    /**
+     * 返回已发布的段（按月份排序）
+     */
+    public List<SegmentReader> getSegments(ArchiveTable table) {
+        List<SegmentReader> result = new ArrayList<>();
+        segments(table).values().forEach(result::addAll);
+        return result;
+    }
+
+    private long recoverPending(ArchiveTable table) throws IOException {
+        Path tableDir = tableDir(table);
+        if (!Files.isDirectory(tableDir)) {
+            return 0;
+        }
+        List<Path> pending = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tableDir, "*" + PENDING_SUFFIX)) {
+            files.forEach(pending::add);
+        }
+        Collections.sort(pending);
+        long recovered = 0;
+        for (Path file : pending) {
+            logger.info("继续发布中断的归档段: {}", file);
+            recovered += publish(table, parseMonth(file.getFileName().toString()), file);
+        }
+        return recovered;
+    }
+
+    private long publish(ArchiveTable table, YearMonth month, Path pending) throws IOException {
+        SegmentReader segment = SegmentReader.open(pending);
+        long deleted = deleteLive(table, month, archivedMaxId(table, month), segment.getMaxId());
+
+        String name = pending.getFileName().toString();
+        Path published = pending.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()) + SEGMENT_SUFFIX);
+        Files.move(pending, published, StandardCopyOption.ATOMIC_MOVE);
+        segments(table).computeIfAbsent(month, m -> new CopyOnWriteArrayList<>()).add(SegmentReader.open(published));
+
+        if (meterRegistry != null) {
+            Counter.builder("archive.rows.archived")
+                .tag("table", table.getTableName())
+                .register(meterRegistry)
+                .increment(segment.getRowCount());
+        }
+        logger.info("归档段已发布: {}, rows={}, deletedLiveRows={}, bytes={}",
+            published, segment.getRowCount(), deleted, Files.size(published));
+        return segment.getRowCount();
+    }
+
+    private void streamRows(ArchiveTable table, LocalDateTime from, LocalDateTime to, long afterId,
+                            SegmentWriter writer) throws IOException {
+        String timeColumn = "t." + table.getTimeColumn();
+        String sql = table.getSelectSql() + " WHERE " + timeColumn + " >= ? AND " + timeColumn + " < ? AND t.id > ?" +
+            " ORDER BY " + timeColumn + ", t.id";
+        List<ArchiveColumn> columns = table.getColumns();
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(streamingFetchSize(connection));
+                statement.setTimestamp(1, Timestamp.valueOf(from));
+                statement.setTimestamp(2, Timestamp.valueOf(to));
+                statement.setLong(3, afterId);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                Object[] values = new Object[columns.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(rs, i + 1, columns.get(i).getType());
+                }
+                try {
+                    writer.append(values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long countLive(ArchiveTable table, LocalDateTime from, LocalDateTime to, long afterId, long maxId) {
+        String timeColumn = "t." + table.getTimeColumn();
+        Long count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + table.getTableName() + " t WHERE " + timeColumn + " >= ? AND " +
+            timeColumn + " < ? AND t.id > ? AND t.id <= ?",
+            Long.class, Timestamp.valueOf(from), Timestamp.valueOf(to), afterId, maxId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 分批删除已归档的活跃行，条件带时间范围以便按分区裁剪
+     */
+    private long deleteLive(ArchiveTable table, YearMonth month, long afterId, long maxId) {
+        String sql = "DELETE FROM " + table.getTableName() + " WHERE " + table.getTimeColumn() + " >= ? AND " +
+            table.getTimeColumn() + " < ? AND id > ? AND id <= ? LIMIT " + deleteBatchSize;
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, from, to, afterId, maxId);
+            total += deleted;
+        } while (deleted >= deleteBatchSize);
+        return total;
+    }
+
+    private long archivedMaxId(ArchiveTable table, YearMonth month) {
+        long maxId = 0;
+        List<SegmentReader> segments = segments(table).get(month);
+        if (segments != null) {
+            for (SegmentReader segment : segments) {
+                maxId = Math.max(maxId, segment.getMaxId());
+            }
+        }
+        return maxId;
+    }
+
+    private String segmentBaseName(ArchiveTable table, YearMonth month) {
+        List<SegmentReader> segments = segments(table).get(month);
+        int sequence = segments != null ? segments.size() : 0;
+        return String.format("%s-%03d", month.format(MONTH_FORMAT), sequence);
+    }
+
+    private NavigableMap<YearMonth, List<SegmentReader>> monthsInRange(ArchiveTable table,
+                                                                     LocalDateTime start, LocalDateTime end) {
+        NavigableMap<YearMonth, List<SegmentReader>> months = segments(table);
+        if (start != null && end != null) {
+            return months.subMap(YearMonth.from(start), true, YearMonth.from(end), true);
+        } else if (start != null) {
+            return months.tailMap(YearMonth.from(start), true);
+        } else if (end != null) {
+            return months.headMap(YearMonth.from(end), true);
+        }
+        return months;
+    }
+
+    private NavigableMap<YearMonth, List<SegmentReader>> segments(ArchiveTable table) {
+        return catalog.computeIfAbsent(table, t -> new ConcurrentSkipListMap<>());
+    }
+
+    private Path tableDir(ArchiveTable table) {
+        return Paths.get(directory, table.getTableName());
+    }
+
+    private int countSegments(ArchiveTable table) {
+        return segments(table).values().stream().mapToInt(List::size).sum();
+    }
+
+    private long countRows(ArchiveTable table) {
+        return getSegments(table).stream().mapToLong(SegmentReader::getRowCount).sum();
+    }
+
+    private void increment(String name, ArchiveTable table) {
+        if (meterRegistry != null) {
+            Counter.builder(name).tag("table", table.getTableName()).register(meterRegistry).increment();
+        }
+    }
+
+    private static Object readValue(ResultSet rs, int index, ArchiveColumn.Type type) throws SQLException {
+        switch (type) {
+            case LONG:
+                long longValue = rs.getLong(index);
+                return rs.wasNull() ? null : longValue;
+            case TIMESTAMP:
+                Timestamp timestamp = rs.getTimestamp(index);
+                return timestamp != null ? timestamp.toLocalDateTime() : null;
+            case DOUBLE:
+                double doubleValue = rs.getDouble(index);
+                return rs.wasNull() ? null : doubleValue;
+            default:
+                return rs.getString(index);
+        }
+    }
+
+    /**
+     * MySQL Connector/J 只有在 fetchSize 为 Integer.MIN_VALUE 时才逐行流式读取，其他驱动使用正常的 fetchSize
+     */
+    private int streamingFetchSize(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        return product != null && product.toLowerCase().contains("mysql") ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    private static YearMonth parseMonth(String fileName) {
+        return YearMonth.parse(fileName.substring(0, 6), MONTH_FORMAT);
+    }
+}
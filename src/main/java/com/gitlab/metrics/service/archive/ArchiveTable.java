@@ -0,0 +1,101 @@
+package com.gitlab.metrics.service.archive;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 可归档的表
+ * 列顺序即段文件中的列顺序；file_changes 在前，保证先于所属提交被归档
+ */
+public enum ArchiveTable {
+
+    FILE_CHANGES("file_changes", "commit_timestamp", null,
+        ArchiveColumn.int64("id"),
+        ArchiveColumn.int64("commit_id"),
+        ArchiveColumn.timestamp("commit_timestamp"),
+        ArchiveColumn.string("file_path"),
+        ArchiveColumn.string("change_type"),
+        ArchiveColumn.int64("lines_added"),
+        ArchiveColumn.int64("lines_deleted"),
+        ArchiveColumn.string("old_path")),
+
+    COMMITS("commits", "timestamp", "project_id",
+        ArchiveColumn.int64("id"),
+        ArchiveColumn.string("commit_sha"),
+        ArchiveColumn.string("project_id"),
+        ArchiveColumn.string("developer_id"),
+        ArchiveColumn.string("developer_name"),
+        ArchiveColumn.timestamp("timestamp"),
+        ArchiveColumn.string("message"),
+        ArchiveColumn.string("branch"),
+        ArchiveColumn.int64("lines_added"),
+        ArchiveColumn.int64("lines_deleted"),
+        ArchiveColumn.int64("files_changed")),
+
+    QUALITY_METRICS("quality_metrics", "timestamp", "project_id",
+        ArchiveColumn.int64("id"),
+        ArchiveColumn.string("project_id"),
+        ArchiveColumn.string("commit_sha"),
+        ArchiveColumn.timestamp("timestamp"),
+        ArchiveColumn.float64("code_complexity"),
+        ArchiveColumn.float64("duplicate_rate"),
+        ArchiveColumn.float64("maintainability_index"),
+        ArchiveColumn.int64("security_issues"),
+        ArchiveColumn.int64("performance_issues"),
+        ArchiveColumn.int64("code_smells"),
+        ArchiveColumn.int64("bugs"),
+        ArchiveColumn.int64("vulnerabilities"),
+        ArchiveColumn.int64("hotspots"),
+        ArchiveColumn.float64("technical_debt"),
+        ArchiveColumn.string("quality_gate"),
+        ArchiveColumn.string("analysis_details")),
+
+    TEST_COVERAGE("test_coverage", "timestamp", "project_id",
+        ArchiveColumn.int64("id"),
+        ArchiveColumn.string("project_id"),
+        ArchiveColumn.string("commit_sha"),
+        ArchiveColumn.timestamp("timestamp"),
+        ArchiveColumn.float64("line_coverage"),
+        ArchiveColumn.float64("branch_coverage"),
+        ArchiveColumn.float64("function_coverage"),
+        ArchiveColumn.int64("total_lines"),
+        ArchiveColumn.int64("covered_lines"),
+        ArchiveColumn.int64("total_branches"),
+        ArchiveColumn.int64("covered_branches"),
+        ArchiveColumn.int64("total_functions"),
+        ArchiveColumn.int64("covered_functions"),
+        ArchiveColumn.int64("total_classes"),
+        ArchiveColumn.int64("covered_classes"),
+        ArchiveColumn.string("report_type"),
+        ArchiveColumn.string("report_path"),
+        ArchiveColumn.string("status"),
+        ArchiveColumn.float64("threshold"));
+
+    private final String tableName;
+    private final String timeColumn;
+    private final String projectColumn;
+    private final List<ArchiveColumn> columns;
+
+    ArchiveTable(String tableName, String timeColumn, String projectColumn, ArchiveColumn... columns) {
+        this.tableName = tableName;
+        this.timeColumn = timeColumn;
+        this.projectColumn = projectColumn;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    /**
+     * 按 (时间, id) 顺序读取整表列的查询，条件由调用方追加；列统一加表别名，避免与保留字冲突
+     */
+    public String getSelectSql() {
+        return columns.stream()
+            .map(column -> "t." + column.getName())
+            .collect(Collectors.joining(", ", "SELECT ", " FROM " + tableName + " t"));
+    }
+
+    public String getTableName() { return tableName; }
+    public String getTimeColumn() { return timeColumn; }
+    public String getProjectColumn() { return projectColumn; }
+    public List<ArchiveColumn> getColumns() { return columns; }
+}
@@ -0,0 +1,322 @@
+package com.gitlab.metrics.service.archive;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 列式归档段文件读取器
+ * 打开时只读取文件头和尾部摘要；扫描时按行块的时间范围跳过整块，
+ * 并且只解压和解码请求的列，其余列块直接跳过。文件格式见 {@link SegmentWriter}。
+ */
+public class SegmentReader {
+
+    private final Path path;
+    private final List<ArchiveColumn> columns;
+    private final int timeColumn;
+    private final long rowCount;
+    private final long maxId;
+    private final long minTime;
+    private final long maxTime;
+
+    private SegmentReader(Path path, List<ArchiveColumn> columns, int timeColumn,
+                          long rowCount, long maxId, long minTime, long maxTime) {
+        this.path = path;
+        this.columns = columns;
+        this.timeColumn = timeColumn;
+        this.rowCount = rowCount;
+        this.maxId = maxId;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * 打开段文件，校验文件头和尾部摘要
+     */
+    public static SegmentReader open(Path path) throws IOException {
+        List<ArchiveColumn> columns = new ArrayList<>();
+        int timeColumn;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            timeColumn = readHeader(in, path, columns);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < SegmentWriter.TRAILER_LENGTH) {
+                throw new IOException("Truncated archive segment: " + path);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(SegmentWriter.TRAILER_LENGTH);
+            long position = channel.size() - SegmentWriter.TRAILER_LENGTH;
+            while (trailer.hasRemaining()) {
+                int read = channel.read(trailer, position + trailer.position());
+                if (read < 0) {
+                    throw new EOFException("Truncated archive segment: " + path);
+                }
+            }
+            trailer.flip();
+            long rows = trailer.getLong();
+            long maxId = trailer.getLong();
+            long minTime = trailer.getLong();
+            long maxTime = trailer.getLong();
+            if (trailer.getInt() != SegmentWriter.MAGIC) {
+                throw new IOException("Truncated archive segment: " + path);
+            }
+            return new SegmentReader(path, Collections.unmodifiableList(columns), timeColumn,
+                rows, maxId, minTime, maxTime);
+        }
+    }
+
+    /**
+     * 扫描段内时间在 [from, to] 内的行
+     *
+     * @param requested 需要读取的列，为空时读取全部列
+     * @param from 开始时间（含），可为空
+     * @param to 结束时间（含），可为空
+     * @param consumer 行回调，回调中的 {@link SegmentRow} 会被复用，不能在回调外保存
+     * @return 回调的行数
+     */
+    public long scan(Collection<String> requested, LocalDateTime from, LocalDateTime to,
+                     Consumer<SegmentRow> consumer) throws IOException {
+        long lower = from != null ? SegmentWriter.toMillis(from) : Long.MIN_VALUE;
+        long upper = to != null ? SegmentWriter.toMillis(to) : Long.MAX_VALUE;
+        if (rowCount == 0 || maxTime < lower || minTime > upper) {
+            return 0;
+        }
+
+        boolean[] wanted = new boolean[columns.size()];
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            String name = columns.get(i).getName();
+            wanted[i] = requested == null || requested.isEmpty() || requested.contains(name) || i == timeColumn;
+            positions.put(name, i);
+        }
+
+        long matched = 0;
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            readHeader(in, path, new ArrayList<>());
+            SegmentRow row = new SegmentRow(positions);
+            Object[][] decoded = new Object[columns.size()][];
+
+            int rows;
+            while ((rows = in.readInt()) > 0) {
+                long groupMin = in.readLong();
+                long groupMax = in.readLong();
+                boolean overlaps = groupMax >= lower && groupMin <= upper;
+
+                for (int i = 0; i < columns.size(); i++) {
+                    int rawLength = in.readInt();
+                    int compressedLength = in.readInt();
+                    if (overlaps && wanted[i]) {
+                        byte[] compressed = new byte[compressedLength];
+                        in.readFully(compressed);
+                        decoded[i] = decodeColumn(columns.get(i).getType(),
+                            inflate(inflater, compressed, rawLength), rows);
+                    } else {
+                        skipFully(in, compressedLength);
+                        decoded[i] = null;
+                    }
+                }
+                if (!overlaps) {
+                    continue;
+                }
+
+                row.values = decoded;
+                Object[] times = decoded[timeColumn];
+                for (int r = 0; r < rows; r++) {
+                    long time = SegmentWriter.toMillis((LocalDateTime) times[r]);
+                    if (time >= lower && time <= upper) {
+                        row.index = r;
+                        consumer.accept(row);
+                        matched++;
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return matched;
+    }
+
+    static Object[] decodeColumn(ArchiveColumn.Type type, byte[] raw, int rows) throws IOException {
+        Object[] values = new Object[rows];
+        ByteBuffer data = ByteBuffer.wrap(raw);
+        byte[] nulls = new byte[(rows + 7) / 8];
+        data.get(nulls);
+
+        switch (type) {
+            case LONG:
+            case TIMESTAMP:
+                long previous = 0;
+                for (int row = 0; row < rows; row++) {
+                    if (!isNull(nulls, row)) {
+                        previous += unzigzag(readVarLong(data));
+                        values[row] = type == ArchiveColumn.Type.TIMESTAMP ? fromMillis(previous) : previous;
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (int row = 0; row < rows; row++) {
+                    if (!isNull(nulls, row)) {
+                        values[row] = Double.longBitsToDouble(data.getLong());
+                    }
+                }
+                break;
+            case STRING:
+                String[] dictionary = new String[(int) readVarLong(data)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte[] utf8 = new byte[(int) readVarLong(data)];
+                    data.get(utf8);
+                    dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+                }
+                for (int row = 0; row < rows; row++) {
+                    if (!isNull(nulls, row)) {
+                        values[row] = dictionary[(int) readVarLong(data)];
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Unsupported column type: " + type);
+        }
+        return values;
+    }
+
+    private static int readHeader(DataInputStream in, Path path, List<ArchiveColumn> columns) throws IOException {
+        if (in.readInt() != SegmentWriter.MAGIC) {
+            throw new IOException("Not an archive segment: " + path);
+        }
+        short version = in.readShort();
+        if (version != SegmentWriter.VERSION) {
+            throw new IOException("Unsupported segment version " + version + ": " + path);
+        }
+        int count = in.readShort();
+        int timeColumn = in.readShort();
+        ArchiveColumn.Type[] types = ArchiveColumn.Type.values();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            columns.add(new ArchiveColumn(name, types[in.readByte()]));
+        }
+        return timeColumn;
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] compressed, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int length = inflater.inflate(raw, offset, rawLength - offset);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != rawLength) {
+                throw new IOException("Corrupt column block: expected " + rawLength + " bytes, got " + offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column block", e);
+        }
+        return raw;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Truncated archive segment");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static boolean isNull(byte[] nulls, int row) {
+        return (nulls[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    private static long readVarLong(ByteBuffer data) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+            (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    public Path getPath() { return path; }
+    public List<ArchiveColumn> getColumns() { return columns; }
+    public long getRowCount() { return rowCount; }
+    public long getMaxId() { return maxId; }
+    public LocalDateTime getMinTimestamp() { return rowCount > 0 ? fromMillis(minTime) : null; }
+    public LocalDateTime getMaxTimestamp() { return rowCount > 0 ? fromMillis(maxTime) : null; }
+
+    /**
+     * 扫描回调中的当前行，按列名取值；未请求的列返回 null
+     */
+    public static class SegmentRow {
+        private final Map<String, Integer> positions;
+        private Object[][] values;
+        private int index;
+
+        SegmentRow(Map<String, Integer> positions) {
+            this.positions = positions;
+        }
+
+        public Object get(String column) {
+            Integer position = positions.get(column);
+            if (position == null) {
+                throw new IllegalArgumentException("Unknown archive column: " + column);
+            }
+            Object[] columnValues = values[position];
+            return columnValues != null ? columnValues[index] : null;
+        }
+
+        public String getString(String column) {
+            return (String) get(column);
+        }
+
+        public Long getLong(String column) {
+            return (Long) get(column);
+        }
+
+        public Double getDouble(String column) {
+            return (Double) get(column);
+        }
+
+        public LocalDateTime getTimestamp(String column) {
+            return (LocalDateTime) get(column);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.gitlab.metrics.service.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * 列式归档段文件写入器
+ *
+ * 文件布局：
+ * <pre>
+ * header   : MAGIC(int) VERSION(short) 列数(short) 时间列序号(short) [列名(UTF) 类型(byte)]...
+ * rowGroup : 行数(int) 最小时间(long) 最大时间(long) [原始长度(int) 压缩长度(int) 压缩列块]...
+ * end      : 0(int)
+ * trailer  : 总行数(long) 最大id(long) 最小时间(long) 最大时间(long) MAGIC(int)
+ * </pre>
+ * 每个列块以空值位图开头，随后是非空值的编码（见 {@link ArchiveColumn.Type}），整体 Deflate 压缩。
+ * 行按块缓冲，写入内存与段的总行数无关；块上的时间范围用于查询时跳过整块。
+ */
+public class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x474C4153;
+
+    static final short VERSION = 1;
+
+    static final int TRAILER_LENGTH = 8 * 4 + 4;
+
+    private final DataOutputStream out;
+    private final List<ArchiveColumn> columns;
+    private final int timeColumn;
+    private final int idColumn;
+    private final int rowGroupSize;
+    private final Object[][] buffer;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+    private int buffered;
+    private long totalRows;
+    private long maxId = Long.MIN_VALUE;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean closed;
+
+    /**
+     * @param path 段文件路径
+     * @param columns 列定义
+     * @param timeColumnName 时间列，必须是 TIMESTAMP 类型
+     * @param rowGroupSize 每个行块的最大行数
+     */
+    public SegmentWriter(Path path, List<ArchiveColumn> columns, String timeColumnName, int rowGroupSize)
+            throws IOException {
+        this.columns = columns;
+        this.timeColumn = indexOf(columns, timeColumnName);
+        this.idColumn = indexOf(columns, "id");
+        if (timeColumn < 0 || columns.get(timeColumn).getType() != ArchiveColumn.Type.TIMESTAMP) {
+            throw new IllegalArgumentException("Time column must be a TIMESTAMP column: " + timeColumnName);
+        }
+        this.rowGroupSize = rowGroupSize;
+        this.buffer = new Object[columns.size()][rowGroupSize];
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(columns.size());
+        out.writeShort(timeColumn);
+        for (ArchiveColumn column : columns) {
+            out.writeUTF(column.getName());
+            out.writeByte(column.getType().ordinal());
+        }
+    }
+
+    /**
+     * 追加一行，values 与列定义一一对应；时间列不能为空
+     */
+    public void append(Object[] values) throws IOException {
+        if (values[timeColumn] == null) {
+            throw new IllegalArgumentException("Time column must not be null");
+        }
+        for (int i = 0; i < values.length; i++) {
+            buffer[i][buffered] = values[i];
+        }
+        buffered++;
+        if (buffered == rowGroupSize) {
+            flushRowGroup();
+        }
+    }
+
+    public long getRowCount() {
+        return totalRows + buffered;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushRowGroup();
+            out.writeInt(0);
+            out.writeLong(totalRows);
+            out.writeLong(maxId);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        long groupMin = Long.MAX_VALUE;
+        long groupMax = Long.MIN_VALUE;
+        for (int row = 0; row < buffered; row++) {
+            long time = toMillis((LocalDateTime) buffer[timeColumn][row]);
+            groupMin = Math.min(groupMin, time);
+            groupMax = Math.max(groupMax, time);
+            if (idColumn >= 0 && buffer[idColumn][row] != null) {
+                maxId = Math.max(maxId, ((Number) buffer[idColumn][row]).longValue());
+            }
+        }
+        minTime = Math.min(minTime, groupMin);
+        maxTime = Math.max(maxTime, groupMax);
+
+        out.writeInt(buffered);
+        out.writeLong(groupMin);
+        out.writeLong(groupMax);
+        for (int i = 0; i < columns.size(); i++) {
+            byte[] raw = encodeColumn(columns.get(i).getType(), buffer[i], buffered);
+            byte[] compressed = compress(raw);
+            out.writeInt(raw.length);
+            out.writeInt(compressed.length);
+            out.write(compressed);
+            Arrays.fill(buffer[i], 0, buffered, null);
+        }
+        totalRows += buffered;
+        buffered = 0;
+    }
+
+    static byte[] encodeColumn(ArchiveColumn.Type type, Object[] values, int rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows * 2 + 16);
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        byte[] nulls = new byte[(rows + 7) / 8];
+        for (int row = 0; row < rows; row++) {
+            if (values[row] == null) {
+                nulls[row >> 3] |= 1 << (row & 7);
+            }
+        }
+        data.write(nulls);
+
+        switch (type) {
+            case LONG:
+            case TIMESTAMP:
+                // 差分编码：相邻行的差值通常远小于值本身，zigzag 后变长编码只占很少字节
+                long previous = 0;
+                for (int row = 0; row < rows; row++) {
+                    if (values[row] != null) {
+                        long value = type == ArchiveColumn.Type.TIMESTAMP
+                            ? toMillis((LocalDateTime) values[row]) : ((Number) values[row]).longValue();
+                        writeVarLong(data, zigzag(value - previous));
+                        previous = value;
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (int row = 0; row < rows; row++) {
+                    if (values[row] != null) {
+                        data.writeLong(Double.doubleToLongBits(((Number) values[row]).doubleValue()));
+                    }
+                }
+                break;
+            case STRING:
+                Map<String, Integer> dictionary = new HashMap<>();
+                List<String> entries = new ArrayList<>();
+                int[] codes = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    if (values[row] != null) {
+                        String value = values[row].toString();
+                        Integer code = dictionary.get(value);
+                        if (code == null) {
+                            code = entries.size();
+                            dictionary.put(value, code);
+                            entries.add(value);
+                        }
+                        codes[row] = code;
+                    }
+                }
+                writeVarLong(data, entries.size());
+                for (String entry : entries) {
+                    byte[] utf8 = entry.getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(data, utf8.length);
+                    data.write(utf8);
+                }
+                for (int row = 0; row < rows; row++) {
+                    if (values[row] != null) {
+                        writeVarLong(data, codes[row]);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unsupported column type: " + type);
+        }
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    private byte[] compress(byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            compressed.write(chunk, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static int indexOf(List<ArchiveColumn> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,240 @@
+package com.gitlab.metrics.service.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.BulkheadRoutingDataSource;
+import com.gitlab.metrics.config.UseConnectionPool;
+import com.gitlab.metrics.service.archive.ArchiveQueryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据导出服务
+ * 按 (时间, id) 键集分页遍历表，每页用流式结果集逐行写入输出流，
+ * 内存占用与导出总量无关；每行附带续传令牌，断点后可从令牌位置继续导出。
+ * 导出只读活跃表，时间范围包含已归档月份时拒绝导出。
+ */
+@Service
+@UseConnectionPool(BulkheadRoutingDataSource.BATCH)
+public class DataExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataExportService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ArchiveQueryService archiveQueryService;
+
+    @Value("${app.export.page-size:5000}")
+    private int pageSize = 5000;
+
+    @Value("${app.export.fetch-size:500}")
+    private int fetchSize = 500;
+
+    /**
+     * 时间范围包含该数据集已归档的数据时拒绝导出，已归档的行不在活跃表中
+     *
+     * @throws com.gitlab.metrics.exception.ArchivedRangeException 范围内有已归档数据
+     */
+    public void requireLive(ExportType type, LocalDateTime startDate, LocalDateTime endDate) {
+        if (archiveQueryService != null && type.getArchiveTable() != null) {
+            archiveQueryService.requireLive(type.getPath() + " export", startDate, endDate, type.getArchiveTable());
+        }
+    }
+
+    /**
+     * 导出数据集
+     *
+     * @param type 数据集
+     * @param format 输出格式
+     * @param projectId 项目ID，为空时导出所有项目
+     * @param startDate 开始时间（含），可为空
+     * @param endDate 结束时间（含），可为空
+     * @param resumeToken 续传令牌，从该位置之后继续导出，可为空
+     * @param out 输出流
+     * @return 导出摘要
+     */
+    public ExportSummary export(ExportType type, ExportFormat format, String projectId,
+                                LocalDateTime startDate, LocalDateTime endDate,
+                                String resumeToken, OutputStream out) throws IOException {
+        requireLive(type, startDate, endDate);
+        long start = System.nanoTime();
+        JsonFactory jsonFactory = objectMapper != null ? objectMapper.getFactory() : new JsonFactory();
+        ExportRowWriter writer = ExportRowWriter.create(format, out, jsonFactory);
+        PageState state = new PageState(resumeToken != null ? ExportCursor.fromToken(resumeToken) : null);
+
+        try {
+            int pageRows;
+            do {
+                pageRows = exportPage(type, projectId, startDate, endDate, state, writer);
+                writer.flush();
+                state.pages++;
+            } while (pageRows == pageSize);
+        } catch (UncheckedIOException e) {
+            logger.info("导出中断: type={}, rows={}, lastCursor={}", type.getPath(), state.rows,
+                state.cursor != null ? state.cursor.toToken() : null);
+            throw e.getCause();
+        } finally {
+            if (meterRegistry != null) {
+                Counter.builder("export.rows")
+                    .tag("type", type.getPath()).tag("format", format.getExtension())
+                    .register(meterRegistry).increment(state.rows);
+                Timer.builder("export.duration")
+                    .tag("type", type.getPath()).tag("format", format.getExtension())
+                    .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        logger.info("导出完成: type={}, format={}, projectId={}, rows={}, pages={}",
+            type.getPath(), format.getExtension(), projectId, state.rows, state.pages);
+        return new ExportSummary(state.rows, state.pages, state.cursor != null ? state.cursor.toToken() : null);
+    }
+
+    private int exportPage(ExportType type, String projectId, LocalDateTime startDate, LocalDateTime endDate,
+                           PageState state, ExportRowWriter writer) {
+        ExportCursor after = state.cursor;
+        int[] count = new int[1];
+        jdbcTemplate.query(
+            connection -> preparePage(connection, type, projectId, startDate, endDate, after),
+            (RowCallbackHandler) rs -> {
+                try {
+                    if (state.columns == null) {
+                        state.columns = columnLabels(rs.getMetaData());
+                        if (after == null) {
+                            writer.header(state.columns);
+                        }
+                    }
+                    Object[] values = new Object[state.columns.length];
+                    for (int i = 0; i < values.length; i++) {
+                        Object value = rs.getObject(i + 1);
+                        values[i] = value instanceof Timestamp ? ((Timestamp) value).toLocalDateTime() : value;
+                    }
+                    state.cursor = new ExportCursor(
+                        rs.getTimestamp(type.getKeysetLabel()).toLocalDateTime(), rs.getLong("id"));
+                    writer.row(state.columns, values, state.cursor.toToken());
+                    state.rows++;
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        return count[0];
+    }
+
+    /**
+     * 构造单页查询：WHERE 过滤条件 + 键集位置，ORDER BY (时间, id) LIMIT 页大小
+     */
+    PreparedStatement preparePage(Connection connection, ExportType type, String projectId,
+                                  LocalDateTime startDate, LocalDateTime endDate, ExportCursor after) throws SQLException {
+        StringBuilder sql = new StringBuilder(type.getSelectSql()).append(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        String keyset = type.getKeysetColumn();
+
+        if (projectId != null) {
+            sql.append(" AND ").append(type.getProjectColumn()).append(" = ?");
+            params.add(projectId);
+        }
+        if (startDate != null) {
+            sql.append(" AND ").append(keyset).append(" >= ?");
+            params.add(Timestamp.valueOf(startDate));
+        }
+        if (endDate != null) {
+            sql.append(" AND ").append(keyset).append(" <= ?");
+            params.add(Timestamp.valueOf(endDate));
+        }
+        if (after != null) {
+            // 展开的行比较 (keyset, id) > (?, ?)，前导的 >= 条件让索引可以做范围扫描
+            sql.append(" AND ").append(keyset).append(" >= ? AND (").append(keyset).append(" > ? OR ")
+                .append(type.getIdColumn()).append(" > ?)");
+            Timestamp timestamp = Timestamp.valueOf(after.getTimestamp());
+            params.add(timestamp);
+            params.add(timestamp);
+            params.add(after.getId());
+        }
+        sql.append(" ORDER BY ").append(keyset).append(", ").append(type.getIdColumn()).append(" LIMIT ?");
+        params.add(pageSize);
+
+        PreparedStatement statement = connection.prepareStatement(
+            sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(streamingFetchSize(connection));
+        for (int i = 0; i < params.size(); i++) {
+            statement.setObject(i + 1, params.get(i));
+        }
+        return statement;
+    }
+
+    /**
+     * MySQL Connector/J 只有在 fetchSize 为 Integer.MIN_VALUE 时才逐行流式读取，其他驱动使用正常的 fetchSize
+     */
+    private int streamingFetchSize(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        return product != null && product.toLowerCase().contains("mysql") ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    private static String[] columnLabels(ResultSetMetaData metaData) throws SQLException {
+        String[] columns = new String[metaData.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+        }
+        return columns;
+    }
+
+    private static final class PageState {
+        private ExportCursor cursor;
+        private String[] columns;
+        private long rows;
+        private int pages;
+
+        PageState(ExportCursor cursor) {
+            this.cursor = cursor;
+        }
+    }
+
+    /**
+     * 导出摘要
+     */
+    public static class ExportSummary {
+        private final long rows;
+        private final int pages;
+        private final String lastCursor;
+
+        public ExportSummary(long rows, int pages, String lastCursor) {
+            this.rows = rows;
+            this.pages = pages;
+            this.lastCursor = lastCursor;
+        }
+
+        public long getRows() { return rows; }
+        public int getPages() { return pages; }
+        public String getLastCursor() { return lastCursor; }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gitlab.metrics.service.export;
+
+import com.gitlab.metrics.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 导出游标
+ * 键集分页的位置 (时间, id)，编码为不透明的续传令牌
+ */
+public final class ExportCursor {
+
+    private final LocalDateTime timestamp;
+    private final long id;
+
+    public ExportCursor(LocalDateTime timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    /**
+     * 编码为URL安全的续传令牌
+     */
+    public String toToken() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析续传令牌
+     *
+     * @throws ValidationException 令牌格式不正确
+     */
+    public static ExportCursor fromToken(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new ExportCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new ValidationException("Invalid resume token: " + token, e);
+        }
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,32 @@
+package com.gitlab.metrics.service.export;
+
+import com.gitlab.metrics.exception.ValidationException;
+
+/**
+ * 导出格式
+ */
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public static ExportFormat fromParam(String format) {
+        for (ExportFormat value : values()) {
+            if (value.extension.equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new ValidationException("Unsupported export format: " + format);
+    }
+
+    public String getContentType() { return contentType; }
+    public String getExtension() { return extension; }
+}
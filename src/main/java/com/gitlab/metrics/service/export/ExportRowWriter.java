@@ -0,0 +1,123 @@
+package com.gitlab.metrics.service.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 导出行写入器，逐行写入输出流，不在内存中保留已写出的行
+ * 每行附带续传令牌字段 cursor，客户端断开后可用最后一个完整行的令牌续传
+ */
+abstract class ExportRowWriter {
+
+    static final String CURSOR_FIELD = "cursor";
+
+    static ExportRowWriter create(ExportFormat format, OutputStream out, JsonFactory jsonFactory) throws IOException {
+        return format == ExportFormat.CSV ? new CsvWriter(out) : new NdjsonWriter(out, jsonFactory);
+    }
+
+    abstract void header(String[] columns) throws IOException;
+
+    abstract void row(String[] columns, Object[] values, String cursor) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    static final class NdjsonWriter extends ExportRowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out, JsonFactory jsonFactory) throws IOException {
+            generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        }
+
+        @Override
+        void header(String[] columns) {
+            // NDJSON 的每一行都是自描述的对象
+        }
+
+        @Override
+        void row(String[] columns, Object[] values, String cursor) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+                writeValue(values[i]);
+            }
+            generator.writeStringField(CURSOR_FIELD, cursor);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+                generator.writeNumber(((Number) value).longValue());
+            } else if (value instanceof BigDecimal) {
+                generator.writeNumber((BigDecimal) value);
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                generator.writeBoolean((Boolean) value);
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    static final class CsvWriter extends ExportRowWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        void header(String[] columns) throws IOException {
+            for (String column : columns) {
+                writer.write(escape(column));
+                writer.write(',');
+            }
+            writer.write(CURSOR_FIELD);
+            writer.write("\r\n");
+        }
+
+        @Override
+        void row(String[] columns, Object[] values, String cursor) throws IOException {
+            for (Object value : values) {
+                if (value != null) {
+                    writer.write(escape(value.toString()));
+                }
+                writer.write(',');
+            }
+            writer.write(cursor);
+            writer.write("\r\n");
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+
+        static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.gitlab.metrics.service.export;
+
+import com.gitlab.metrics.exception.ValidationException;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+
+/**
+ * 可导出的数据集
+ * 每个数据集按 (keysetColumn, id) 键集分页，列顺序即导出字段顺序
+ */
+public enum ExportType {
+
+    COMMITS("commits", "c", "c.timestamp", "c.project_id", ArchiveTable.COMMITS,
+        "SELECT c.id, c.commit_sha, c.project_id, c.developer_id, c.developer_name, c.timestamp, c.branch, " +
+        "c.lines_added, c.lines_deleted, c.files_changed, c.message FROM commits c"),
+
+    ISSUES("issues", "i", "i.created_at", "i.project_id", null,
+        "SELECT i.id, i.issue_id, i.project_id, i.title, i.author_id, i.assignee_id, i.created_at, i.closed_at, " +
+        "i.status, i.issue_type, i.priority, i.severity, i.response_time_minutes, i.resolution_time_minutes FROM issues i"),
+
+    // 关联提交时带上分区列，保证按分区裁剪
+    FILE_CHANGES("file-changes", "fc", "fc.commit_timestamp", "c.project_id", ArchiveTable.FILE_CHANGES,
+        "SELECT fc.id, fc.commit_id, c.commit_sha, c.project_id, fc.commit_timestamp, fc.file_path, fc.old_path, " +
+        "fc.change_type, fc.lines_added, fc.lines_deleted FROM file_changes fc " +
+        "JOIN commits c ON c.id = fc.commit_id AND c.timestamp = fc.commit_timestamp");
+
+    private final String path;
+    private final String alias;
+    private final String keysetColumn;
+    private final String projectColumn;
+    private final ArchiveTable archiveTable;
+    private final String selectSql;
+
+    ExportType(String path, String alias, String keysetColumn, String projectColumn, ArchiveTable archiveTable,
+               String selectSql) {
+        this.path = path;
+        this.alias = alias;
+        this.keysetColumn = keysetColumn;
+        this.projectColumn = projectColumn;
+        this.archiveTable = archiveTable;
+        this.selectSql = selectSql;
+    }
+
+    /**
+     * 按URL路径解析数据集
+     */
+    public static ExportType fromPath(String path) {
+        for (ExportType type : values()) {
+            if (type.path.equalsIgnoreCase(path)) {
+                return type;
+            }
+        }
+        throw new ValidationException("Unsupported export type: " + path);
+    }
+
+    public String getPath() { return path; }
+    public String getIdColumn() { return alias + ".id"; }
+    public String getKeysetColumn() { return keysetColumn; }
+    public String getKeysetLabel() { return keysetColumn.substring(keysetColumn.indexOf('.') + 1); }
+    public String getProjectColumn() { return projectColumn; }
+    /** 已归档的月份从该表删除，导出只读活跃表；不归档的数据集为 null */
+    public ArchiveTable getArchiveTable() { return archiveTable; }
+    public String getSelectSql() { return selectSql; }
+}
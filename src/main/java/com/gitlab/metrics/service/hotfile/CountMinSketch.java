@@ -0,0 +1,96 @@
+package com.gitlab.metrics.service.hotfile;
+
+/**
+ * Count-Min Sketch
+ * 以固定内存估算字符串出现次数，估计值只会偏大不会偏小。
+ * 相同宽度和深度的草图可以逐格相加合并，用于把多个小时桶合并为查询窗口。
+ * 非线程安全，由调用方负责同步。
+ */
+public class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final int[][] table;
+    private long totalCount;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("width and depth must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.table = new int[depth][width];
+    }
+
+    /**
+     * 累加计数并返回累加后的估计值
+     */
+    public long add(String item, int count) {
+        int hash1 = item.hashCode();
+        int hash2 = mix(hash1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = index(hash1, hash2, row);
+            table[row][column] += count;
+            estimate = Math.min(estimate, table[row][column]);
+        }
+        totalCount += count;
+        return estimate;
+    }
+
+    /**
+     * 估算出现次数
+     */
+    public long estimate(String item) {
+        int hash1 = item.hashCode();
+        int hash2 = mix(hash1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row][index(hash1, hash2, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * 将另一个草图的计数合并到当前草图
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches with different dimensions");
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                table[row][column] += other.table[row][column];
+            }
+        }
+        totalCount += other.totalCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 双重哈希 h1 + row * h2 生成每行独立的列下标
+     */
+    private int index(int hash1, int hash2, int row) {
+        int combined = hash1 + row * hash2;
+        return (combined & Integer.MAX_VALUE) % width;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h | 1;
+    }
+}
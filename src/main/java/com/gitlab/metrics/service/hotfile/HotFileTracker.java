@@ -0,0 +1,227 @@
+package com.gitlab.metrics.service.hotfile;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.FileChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 热点文件流式追踪器
+ * 在提交入库时按项目、按小时桶维护 Count-Min Sketch 和 top-K 候选堆，
+ * 查询时合并窗口内的小时桶得到候选文件，只对最终候选查询精确计数，
+ * 避免对整个时间范围执行 file_changes JOIN commits GROUP BY file_path。
+ * 只有追踪器启动之后的时间窗口才被完整覆盖，更早的窗口需要回退到数据库查询。
+ * 草图只记录本节点入库的提交，多节点部署时各节点只看到部分提交，候选集会漏掉其他节点上的热点文件，
+ * 因此只有显式开启单节点模式（app.hotfiles.single-node，所有提交都由本进程入库）时才用于查询。
+ */
+@Service
+public class HotFileTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotFileTracker.class);
+
+    private static final long SECONDS_PER_HOUR = 3600L;
+
+    @Value("${app.hotfiles.top-k:100}")
+    private int topK = 100;
+
+    @Value("${app.hotfiles.sketch-width:512}")
+    private int sketchWidth = 512;
+
+    @Value("${app.hotfiles.sketch-depth:4}")
+    private int sketchDepth = 4;
+
+    @Value("${app.hotfiles.retention-days:30}")
+    private int retentionDays = 30;
+
+    @Value("${app.hotfiles.single-node:false}")
+    private boolean singleNode = false;
+
+    private final Clock clock;
+
+    private final LocalDateTime trackingSince;
+
+    private final Map<String, NavigableMap<Long, HourBucket>> projects = new ConcurrentHashMap<>();
+
+    public HotFileTracker() {
+        this(Clock.systemDefaultZone());
+    }
+
+    HotFileTracker(Clock clock) {
+        this.clock = clock;
+        // 启动所在的小时可能已有未被追踪的变更，从下一个整点开始视为完整覆盖
+        this.trackingSince = LocalDateTime.now(clock).truncatedTo(ChronoUnit.HOURS).plusHours(1);
+    }
+
+    /**
+     * 记录批量入库提交的文件变更
+     */
+    public void recordCommits(List<Commit> commits) {
+        if (commits == null) {
+            return;
+        }
+        for (Commit commit : commits) {
+            recordCommit(commit);
+        }
+    }
+
+    /**
+     * 记录单个提交的文件变更
+     */
+    public void recordCommit(Commit commit) {
+        if (commit == null || commit.getProjectId() == null || commit.getTimestamp() == null
+                || commit.getFileChanges() == null || commit.getFileChanges().isEmpty()) {
+            return;
+        }
+        HourBucket bucket = bucketFor(commit.getProjectId(), hourKey(commit.getTimestamp()));
+        synchronized (bucket) {
+            for (FileChange fileChange : commit.getFileChanges()) {
+                if (fileChange.getFilePath() != null) {
+                    bucket.add(fileChange.getFilePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * 判断时间窗口是否完整落在追踪范围内；未开启单节点模式时始终返回 false
+     */
+    public boolean covers(LocalDateTime startDate) {
+        return singleNode && startDate != null && !startDate.isBefore(trackingSince)
+            && !startDate.isBefore(LocalDateTime.now(clock).minusDays(retentionDays));
+    }
+
+    /**
+     * 获取窗口内变更次数最多的候选文件
+     * 合并窗口覆盖的小时桶，候选集为各桶 top-K 的并集，按合并后草图的估计值排序。
+     * 窗口两端按整小时取整，估计值只用于筛选候选，最终计数应由调用方精确查询。
+     *
+     * @param limit 返回的候选数量
+     * @return 按估计变更次数降序排列的候选文件
+     */
+    public List<HotFileCandidate> getTopCandidates(String projectId, LocalDateTime startDate,
+                                                   LocalDateTime endDate, int limit) {
+        NavigableMap<Long, HourBucket> buckets = projects.get(projectId);
+        if (buckets == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        CountMinSketch merged = new CountMinSketch(sketchWidth, sketchDepth);
+        Set<String> candidates = new HashSet<>();
+        for (HourBucket bucket : buckets.subMap(hourKey(startDate), true, hourKey(endDate), true).values()) {
+            synchronized (bucket) {
+                merged.merge(bucket.sketch);
+                candidates.addAll(bucket.topFiles.keySet());
+            }
+        }
+
+        List<HotFileCandidate> result = new ArrayList<>(candidates.size());
+        for (String filePath : candidates) {
+            result.add(new HotFileCandidate(filePath, merged.estimate(filePath)));
+        }
+        result.sort(Comparator.comparingLong(HotFileCandidate::getEstimatedCount).reversed()
+            .thenComparing(HotFileCandidate::getFilePath));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 清理超过保留期的小时桶
+     */
+    @Scheduled(cron = "0 5 * * * ?")
+    public void evictExpiredBuckets() {
+        long cutoff = hourKey(LocalDateTime.now(clock).minusDays(retentionDays));
+        int evicted = 0;
+        for (Map.Entry<String, NavigableMap<Long, HourBucket>> entry : projects.entrySet()) {
+            NavigableMap<Long, HourBucket> expired = entry.getValue().headMap(cutoff, false);
+            evicted += expired.size();
+            expired.clear();
+            if (entry.getValue().isEmpty()) {
+                projects.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("清理过期热点文件小时桶: {}", evicted);
+        }
+    }
+
+    public LocalDateTime getTrackingSince() {
+        return trackingSince;
+    }
+
+    private HourBucket bucketFor(String projectId, long hourKey) {
+        return projects.computeIfAbsent(projectId, id -> new ConcurrentSkipListMap<>())
+            .computeIfAbsent(hourKey, key -> new HourBucket(topK, sketchWidth, sketchDepth));
+    }
+
+    private static long hourKey(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / SECONDS_PER_HOUR;
+    }
+
+    /**
+     * 单个项目单个小时的草图和 top-K 候选堆
+     */
+    private static class HourBucket {
+        private final int capacity;
+        private final CountMinSketch sketch;
+        private final Map<String, Long> topFiles = new HashMap<>();
+        private final PriorityQueue<Map.Entry<String, Long>> heap =
+            new PriorityQueue<>(Map.Entry.comparingByValue());
+
+        HourBucket(int capacity, int width, int depth) {
+            this.capacity = capacity;
+            this.sketch = new CountMinSketch(width, depth);
+        }
+
+        void add(String filePath) {
+            long estimate = sketch.add(filePath, 1);
+            if (topFiles.containsKey(filePath)) {
+                heap.removeIf(entry -> entry.getKey().equals(filePath));
+            } else if (topFiles.size() >= capacity) {
+                Map.Entry<String, Long> min = heap.peek();
+                if (min == null || min.getValue() >= estimate) {
+                    return;
+                }
+                heap.poll();
+                topFiles.remove(min.getKey());
+            }
+            topFiles.put(filePath, estimate);
+            heap.add(new AbstractMap.SimpleImmutableEntry<>(filePath, estimate));
+        }
+    }
+
+    /**
+     * 热点文件候选
+     */
+    public static class HotFileCandidate {
+        private final String filePath;
+        private final long estimatedCount;
+
+        public HotFileCandidate(String filePath, long estimatedCount) {
+            this.filePath = filePath;
+            this.estimatedCount = estimatedCount;
+        }
+
+        public String getFilePath() { return filePath; }
+
+        public long getEstimatedCount() { return estimatedCount; }
+    }
+}
@@ -0,0 +1,377 @@
+package com.gitlab.metrics.service.outbox;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.OutboxProperties;
+import com.gitlab.metrics.config.ShardMap;
+import com.gitlab.metrics.config.ShardRoutingDataSource;
+import com.gitlab.metrics.exception.EventPublishException;
+import com.gitlab.metrics.messaging.ConfirmingEventPublisher;
+import com.gitlab.metrics.messaging.PipelineStage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 发件箱中继
+ * 每批分三步：先在一个短事务里按 id 顺序以 FOR UPDATE SKIP LOCKED 选出待发布且未被认领的行，写入认领租约后立即提交；
+ * 然后在事务之外经发布器连续发出并等待 broker 确认，不持有行锁和数据库连接；
+ * 最后在第二个短事务里把已确认的行标记为 SENT，失败和超时的行释放认领。
+ * 多个节点同时运行时各自跳过被锁住或已被认领的行，同一行不会被两个节点同时发布；节点在发布期间崩溃时，
+ * 租约过期后由其他节点接手。一次轮询内用上一批最后的 id 作为下一批的起点（keyset），跳过的和失败的行留给下一次轮询。
+ * 投递语义为至少一次：确认等待超时或租约过期后该行会再次发布；发布次数达到上限仍未确认的行标记为 FAILED
+ */
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    static final String STATUS_PENDING = "PENDING";
+    static final String STATUS_FAILED = "FAILED";
+
+    static final String SELECT_BATCH_SQL = "SELECT id, exchange, routing_key, content_type, headers, payload, attempts, created_at "
+        + "FROM outbox_event WHERE status = 'PENDING' AND id > ? AND (claimed_until IS NULL OR claimed_until < ?) "
+        + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final TypeReference<Map<String, Object>> HEADERS_TYPE = new TypeReference<Map<String, Object>>() { };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConfirmingEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final OutboxProperties properties;
+    private final ShardMap shardMap;
+    private final MeterRegistry meterRegistry;
+
+    private final Counter publishedCounter;
+    private final Timer relayLagTimer;
+    private final Map<String, Long> oldestPendingMs = new ConcurrentHashMap<>();
+
+    /**
+     * @param shardMap 启用项目分片时逐个分片轮询，否则为 null
+     */
+    public OutboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       ConfirmingEventPublisher eventPublisher, ObjectMapper objectMapper,
+                       OutboxProperties properties, ShardMap shardMap, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.shardMap = shardMap;
+        this.meterRegistry = meterRegistry;
+
+        publishedCounter = Counter.builder("outbox.relay.published")
+            .description("Outbox rows published and confirmed by the broker")
+            .register(meterRegistry);
+        relayLagTimer = Timer.builder("outbox.relay.lag")
+            .description("Time from outbox insert to broker confirm")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("outbox.pending.oldest.age", oldestPendingMs,
+                ages -> ages.values().stream().mapToLong(Long::longValue).max().orElse(0L) / 1000.0)
+            .description("Age in seconds of the oldest unpublished outbox row")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 轮询所有分片，发布待发送的行
+     *
+     * @return 本次发布并确认的行数
+     */
+    public int relay() {
+        List<String> shards = shardMap != null ? shardMap.getShards() : Collections.singletonList(null);
+        int published = 0;
+        for (String shard : shards) {
+            String previous = shard != null ? ShardRoutingDataSource.bind(shard) : null;
+            try {
+                published += relayShard(shard);
+            } finally {
+                if (shard != null) {
+                    ShardRoutingDataSource.restore(previous);
+                }
+            }
+        }
+        return published;
+    }
+
+    private int relayShard(String shard) {
+        int published = 0;
+        long afterId = 0;
+        for (int i = 0; i < Math.max(1, properties.getMaxBatchesPerPoll()); i++) {
+            long from = afterId;
+            List<OutboxRow> rows = transactionTemplate.execute(status -> claimBatch(from));
+            if (rows == null) {
+                break;
+            }
+            BatchResult result = publishBatch(from, rows);
+            published += result.sent;
+            afterId = result.lastId;
+            // 不满一批说明已到表尾；整批都没有确认时多半是 broker 不可用，等下一次轮询
+            if (result.scanned < properties.getBatchSize() || (result.scanned > 0 && result.sent == 0)) {
+                break;
+            }
+        }
+        updateOldestPending(shard);
+        return published;
+    }
+
+    /**
+     * 锁定 afterId 之后一批未被认领的行并写入认领租约；返回时事务提交，行锁释放
+     */
+    List<OutboxRow> claimBatch(long afterId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxRow> rows = jdbcTemplate.query(SELECT_BATCH_SQL, this::mapRow,
+            afterId, Timestamp.valueOf(now), properties.getBatchSize());
+        if (!rows.isEmpty()) {
+            long leaseMs = Math.max(properties.getClaimLeaseMs(), properties.getPublishTimeoutMs() * 2);
+            List<Long> ids = rows.stream().map(row -> row.id).collect(Collectors.toList());
+            jdbcTemplate.update("UPDATE outbox_event SET claimed_until = ? WHERE id IN (" + placeholders(ids) + ")",
+                withLeading(Timestamp.valueOf(now.plus(leaseMs, ChronoUnit.MILLIS)), ids));
+        }
+        return rows;
+    }
+
+    /**
+     * 在事务之外发布已认领的行并等待确认，再用一个短事务记录结果
+     */
+    BatchResult publishBatch(long afterId, List<OutboxRow> rows) {
+        BatchResult result = new BatchResult();
+        result.scanned = rows.size();
+        result.lastId = rows.isEmpty() ? afterId : rows.get(rows.size() - 1).id;
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(rows.size());
+        for (OutboxRow row : rows) {
+            futures.add(eventPublisher.publish(row.exchange, row.routingKey, toMessage(row)));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .get(properties.getPublishTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 逐条检查结果
+        }
+
+        List<Long> sent = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows.size(); i++) {
+            OutboxRow row = rows.get(i);
+            CompletableFuture<Void> future = futures.get(i);
+            if (!future.isDone()) {
+                failed.add(new Object[] { retryStatus(row),
+                    "timeout: no confirm within " + properties.getPublishTimeoutMs() + " ms", row.id });
+                countFailure("timeout");
+            } else if (!future.isCompletedExceptionally()) {
+                sent.add(row.id);
+                relayLagTimer.record(Math.max(0, now - row.createdAt.getTime()), TimeUnit.MILLISECONDS);
+            } else {
+                Throwable error = failureOf(future);
+                String reason = error instanceof EventPublishException ? ((EventPublishException) error).getReason() : "error";
+                // 无法路由或无法转换的消息重发也不会成功，标记为 FAILED 留待排查
+                String status = "returned".equals(reason) || "conversion".equals(reason) ? STATUS_FAILED : retryStatus(row);
+                failed.add(new Object[] { status, truncate(reason + ": " + error.getMessage()), row.id });
+                countFailure(reason);
+            }
+        }
+
+        transactionTemplate.execute(status -> {
+            if (!sent.isEmpty()) {
+                jdbcTemplate.update("UPDATE outbox_event SET status = 'SENT', sent_at = ?, attempts = attempts + 1, "
+                    + "claimed_until = NULL WHERE id IN (" + placeholders(sent) + ")",
+                    withLeading(Timestamp.valueOf(LocalDateTime.now()), sent));
+            }
+            if (!failed.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE outbox_event SET status = ?, last_error = ?, attempts = attempts + 1, "
+                    + "claimed_until = NULL WHERE id = ?", failed);
+            }
+            return null;
+        });
+        if (!sent.isEmpty()) {
+            publishedCounter.increment(sent.size());
+        }
+        if (!failed.isEmpty()) {
+            logger.warn("发件箱中部分事件发布失败: failed={}, sent={}, lastId={}", failed.size(), sent.size(), result.lastId);
+        }
+        result.sent = sent.size();
+        return result;
+    }
+
+    /**
+     * 删除超过保留期的已发送行和失败行，每次删除一批以免长时间持有锁
+     *
+     * @return 删除的行数
+     */
+    public int purge() {
+        List<String> shards = shardMap != null ? shardMap.getShards() : Collections.singletonList(null);
+        Timestamp sentCutoff = Timestamp.valueOf(LocalDateTime.now().minusHours(properties.getSentRetentionHours()));
+        Timestamp failedCutoff = Timestamp.valueOf(LocalDateTime.now().minusHours(properties.getFailedRetentionHours()));
+        int deleted = 0;
+        for (String shard : shards) {
+            String previous = shard != null ? ShardRoutingDataSource.bind(shard) : null;
+            try {
+                deleted += deleteInBatches("DELETE FROM outbox_event WHERE status = 'SENT' AND sent_at < ? LIMIT ?", sentCutoff);
+                deleted += deleteInBatches("DELETE FROM outbox_event WHERE status = 'FAILED' AND created_at < ? LIMIT ?", failedCutoff);
+            } finally {
+                if (shard != null) {
+                    ShardRoutingDataSource.restore(previous);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private int deleteInBatches(String sql, Timestamp cutoff) {
+        int deleted = 0;
+        int batch;
+        do {
+            batch = jdbcTemplate.update(sql, cutoff, properties.getCleanupBatchSize());
+            deleted += batch;
+        } while (batch >= properties.getCleanupBatchSize());
+        return deleted;
+    }
+
+    /**
+     * 按存储的字节和消息头还原消息；消息 id 使用行 id，消费端可据此去重
+     */
+    Message toMessage(OutboxRow row) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(row.contentType);
+        messageProperties.setContentLength(row.payload.length);
+        messageProperties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        messageProperties.setMessageId("outbox-" + row.id);
+        messageProperties.setTimestamp(new Date(row.createdAt.getTime()));
+        if (row.headers != null && !row.headers.isEmpty()) {
+            try {
+                Map<String, Object> headers = objectMapper.readValue(row.headers, HEADERS_TYPE);
+                headers.forEach(messageProperties::setHeader);
+            } catch (IOException e) {
+                logger.warn("发件箱消息头无法解析，按无消息头发布: id={}, error={}", row.id, e.getMessage());
+            }
+        }
+        PipelineStage.PUBLISHED.stamp(messageProperties, System.currentTimeMillis());
+        return new Message(row.payload, messageProperties);
+    }
+
+    private void updateOldestPending(String shard) {
+        List<Timestamp> oldest = jdbcTemplate.queryForList(
+            "SELECT created_at FROM outbox_event WHERE status = 'PENDING' ORDER BY id LIMIT 1", Timestamp.class);
+        long age = oldest.isEmpty() || oldest.get(0) == null ? 0L : System.currentTimeMillis() - oldest.get(0).getTime();
+        oldestPendingMs.put(shard != null ? shard : "", Math.max(0L, age));
+    }
+
+    /**
+     * 本次发布失败后行的状态：未达到发布次数上限时留待重发，否则标记为 FAILED
+     */
+    private String retryStatus(OutboxRow row) {
+        if (row.attempts + 1 < properties.getMaxAttempts()) {
+            return STATUS_PENDING;
+        }
+        logger.error("发件箱事件发布次数达到上限，标记为 FAILED: id={}, attempts={}", row.id, row.attempts + 1);
+        countFailure("max_attempts");
+        return STATUS_FAILED;
+    }
+
+    private void countFailure(String reason) {
+        Counter.builder("outbox.relay.failed")
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    private OutboxRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        OutboxRow row = new OutboxRow();
+        row.id = rs.getLong("id");
+        row.exchange = rs.getString("exchange");
+        row.routingKey = rs.getString("routing_key");
+        row.contentType = rs.getString("content_type");
+        row.headers = rs.getString("headers");
+        row.payload = rs.getBytes("payload");
+        row.attempts = rs.getInt("attempts");
+        row.createdAt = rs.getTimestamp("created_at");
+        return row;
+    }
+
+    private static Throwable failureOf(CompletableFuture<Void> future) {
+        try {
+            future.join();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    private static String placeholders(List<Long> ids) {
+        return ids.stream().map(id -> "?").collect(Collectors.joining(","));
+    }
+
+    private static Object[] withLeading(Object first, List<Long> ids) {
+        Object[] args = new Object[ids.size() + 1];
+        args[0] = first;
+        for (int i = 0; i < ids.size(); i++) {
+            args[i + 1] = ids.get(i);
+        }
+        return args;
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    /**
+     * 发件箱中的一行
+     */
+    static final class OutboxRow {
+        long id;
+        String exchange;
+        String routingKey;
+        String contentType;
+        String headers;
+        byte[] payload;
+        int attempts;
+        Timestamp createdAt;
+    }
+
+    /**
+     * 一批的处理结果
+     */
+    static final class BatchResult {
+        int scanned;
+        int sent;
+        long lastId;
+    }
+}
@@ -0,0 +1,89 @@
+package com.gitlab.metrics.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.OutboxProperties;
+import com.gitlab.metrics.exception.EventPublishException;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventEnvelopeMessageConverter;
+import com.gitlab.metrics.messaging.EventTransport;
+import com.gitlab.metrics.messaging.PipelineLagRecorder;
+import com.gitlab.metrics.messaging.PipelineStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 事务发件箱
+ * 事件在调用方的数据库事务内编码并写入 outbox_event，事务回滚时事件随之撤销，broker 不可用时事件留在表中；
+ * OutboxRelay 在提交后把事件发布到 RabbitMQ。调用方没有事务时写入立即提交。
+ * 行写入调用线程当前绑定的数据源（启用项目分片时即该分片，与业务写入在同一事务中）；
+ * 未绑定分片的调用（如告警）写入默认分片。中继逐个分片轮询，每个分片上的事件都会被发布
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    static final String INSERT_SQL = "INSERT INTO outbox_event "
+        + "(exchange, routing_key, event_type, content_type, headers, payload, status, attempts, created_at) "
+        + "VALUES (?, ?, ?, ?, ?, ?, 'PENDING', 0, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("eventMessageConverter")
+    private MessageConverter messageConverter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventTransport eventPublisher;
+
+    @Autowired
+    private OutboxProperties properties;
+
+    /**
+     * 写入一条待发布事件
+     * 载荷在此时按发布时相同的转换器编码，中继只搬运字节，不再依赖载荷的类型
+     *
+     * @return 发件箱关闭时为事件传输的发布 future；否则为已完成的 future，表示事件已写入当前事务
+     */
+    public CompletableFuture<Void> enqueue(String exchange, String routingKey, Object event) {
+        // 监听器内派生的事件沿用触发它的 webhook 的到达时间，端到端延迟从最初的请求算起
+        if (event instanceof EventEnvelope && ((EventEnvelope) event).getReceivedAt() == 0) {
+            ((EventEnvelope) event).setReceivedAt(PipelineLagRecorder.currentReceivedAt());
+        }
+        if (!properties.isEnabled()) {
+            return eventPublisher.publish(exchange, routingKey, event);
+        }
+        Message message = messageConverter.toMessage(event, new MessageProperties());
+        MessageProperties messageProperties = message.getMessageProperties();
+        // 写入发件箱不算发布，发布时间由中继在发送时标记
+        messageProperties.getHeaders().remove(PipelineStage.PUBLISHED.getHeader());
+        PipelineStage.JOURNALED.stamp(messageProperties, System.currentTimeMillis());
+        String headers;
+        try {
+            headers = objectMapper.writeValueAsString(messageProperties.getHeaders());
+        } catch (JsonProcessingException e) {
+            throw new EventPublishException("conversion", 0, "Message headers not serializable: " + e.getMessage());
+        }
+        Object eventType = messageProperties.getHeaders().get(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER);
+        jdbcTemplate.update(INSERT_SQL, exchange, routingKey, eventType != null ? eventType.toString() : null,
+            messageProperties.getContentType(), headers, message.getBody(), Timestamp.valueOf(LocalDateTime.now()));
+        logger.debug("事件已写入发件箱: exchange={}, routingKey={}, eventType={}", exchange, routingKey, eventType);
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,21 @@
+package com.gitlab.metrics.service.realtime;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 实时计数变化事件
+ * 某个项目的当日计数发生变化时发布，只携带项目ID，具体数值由订阅方按需读取
+ */
+public class RealtimeCounterChangedEvent extends ApplicationEvent {
+
+    private final String projectId;
+
+    public RealtimeCounterChangedEvent(Object source, String projectId) {
+        super(source);
+        this.projectId = projectId;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+}
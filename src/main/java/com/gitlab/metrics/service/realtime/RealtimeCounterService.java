@@ -0,0 +1,479 @@
+package com.gitlab.metrics.service.realtime;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.repository.QualityMetricsRepository;
+import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.repository.projection.ProjectDeveloperCountRow;
+import com.gitlab.metrics.repository.projection.ProjectRecordRef;
+import com.gitlab.metrics.service.CommitStatisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 实时计数服务
+ * 在事件处理过程中累加当日提交数、活跃项目、活跃开发者、质量门禁失败和覆盖率失败，
+ * 供 /api/v1/metrics/realtime 以O(1)方式读取，无需执行SQL。
+ * 计数按自然日划分，跨天时自动切换到新的计数桶。
+ * 在事务中记录的变化等事务提交后才计入，回滚的写入不会被计数。
+ * 每次计数变化都会发布 {@link RealtimeCounterChangedEvent}，供推送通道按项目下发增量。
+ * 计数只包含本节点消费的事件，多节点部署时各节点只看到一部分，
+ * 因此只有显式开启单节点模式（app.realtime.single-node）时才从计数读取快照，否则快照按当日数据查询数据库。
+ */
+@Service
+public class RealtimeCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeCounterService.class);
+
+    private static final String STATUS_FAILED = "FAILED";
+
+    @Autowired(required = false)
+    private CommitStatisticsService commitStatisticsService;
+
+    @Autowired(required = false)
+    private QualityMetricsRepository qualityMetricsRepository;
+
+    @Autowired(required = false)
+    private TestCoverageRepository testCoverageRepository;
+
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.realtime.single-node:false}")
+    private boolean singleNode = false;
+
+    private final Clock clock;
+
+    private final AtomicReference<DayCounters> current;
+
+    public RealtimeCounterService() {
+        this(Clock.systemDefaultZone());
+    }
+
+    RealtimeCounterService(Clock clock) {
+        this.clock = clock;
+        this.current = new AtomicReference<>(new DayCounters(LocalDate.now(clock)));
+    }
+
+    /**
+     * 记录一次新入库的提交
+     * 只有提交时间落在当日的记录才计入，与原先按时间范围统计的口径一致
+     */
+    public void recordCommit(Commit commit) {
+        if (commit == null || commit.getTimestamp() == null) {
+            return;
+        }
+        afterCommit(() -> applyCommit(commit));
+    }
+
+    /**
+     * 记录批量入库的提交
+     */
+    public void recordCommits(List<Commit> commits) {
+        if (commits == null) {
+            return;
+        }
+        List<Commit> saved = new ArrayList<>(commits);
+        afterCommit(() -> {
+            for (Commit commit : saved) {
+                if (commit != null && commit.getTimestamp() != null) {
+                    applyCommit(commit);
+                }
+            }
+        });
+    }
+
+    private void applyCommit(Commit commit) {
+        DayCounters counters = currentCounters();
+        if (!counters.day.equals(commit.getTimestamp().toLocalDate())) {
+            return;
+        }
+        counters.commits.incrementAndGet();
+        if (commit.getDeveloperId() != null) {
+            counters.activeDevelopers.add(commit.getDeveloperId());
+        }
+        if (commit.getProjectId() != null) {
+            ProjectCounters project = counters.project(commit.getProjectId());
+            project.commits.incrementAndGet();
+            if (commit.getDeveloperId() != null) {
+                project.developers.add(commit.getDeveloperId());
+            }
+            publishChange(commit.getProjectId());
+        }
+    }
+
+    /**
+     * 记录质量指标的门禁状态
+     * 以记录ID去重，同一记录多次保存不会重复计数；状态由FAILED变为其他值时撤销计数
+     */
+    public void recordQualityGate(QualityMetrics metrics) {
+        if (metrics == null || metrics.getId() == null || metrics.getTimestamp() == null) {
+            return;
+        }
+        afterCommit(() -> applyQualityGate(metrics));
+    }
+
+    private void applyQualityGate(QualityMetrics metrics) {
+        DayCounters counters = currentCounters();
+        if (!counters.day.equals(metrics.getTimestamp().toLocalDate())) {
+            return;
+        }
+        boolean changed;
+        if (STATUS_FAILED.equals(metrics.getQualityGate())) {
+            changed = counters.qualityGateFailures.add(metrics.getId());
+        } else {
+            changed = counters.qualityGateFailures.remove(metrics.getId());
+        }
+        if (changed && metrics.getProjectId() != null) {
+            ProjectCounters project = counters.project(metrics.getProjectId());
+            if (STATUS_FAILED.equals(metrics.getQualityGate())) {
+                project.qualityGateFailures.incrementAndGet();
+            } else {
+                project.qualityGateFailures.decrementAndGet();
+            }
+            publishChange(metrics.getProjectId());
+        }
+    }
+
+    /**
+     * 记录测试覆盖率的检查状态
+     * 以记录ID去重，同一记录多次保存不会重复计数；状态由FAILED变为其他值时撤销计数
+     */
+    public void recordCoverageStatus(TestCoverage coverage) {
+        if (coverage == null || coverage.getId() == null || coverage.getTimestamp() == null) {
+            return;
+        }
+        afterCommit(() -> applyCoverageStatus(coverage));
+    }
+
+    private void applyCoverageStatus(TestCoverage coverage) {
+        DayCounters counters = currentCounters();
+        if (!counters.day.equals(coverage.getTimestamp().toLocalDate())) {
+            return;
+        }
+        boolean changed;
+        if (STATUS_FAILED.equals(coverage.getStatus())) {
+            changed = counters.coverageFailures.add(coverage.getId());
+        } else {
+            changed = counters.coverageFailures.remove(coverage.getId());
+        }
+        if (changed && coverage.getProjectId() != null) {
+            ProjectCounters project = counters.project(coverage.getProjectId());
+            if (STATUS_FAILED.equals(coverage.getStatus())) {
+                project.coverageFailures.incrementAndGet();
+            } else {
+                project.coverageFailures.decrementAndGet();
+            }
+            publishChange(coverage.getProjectId());
+        }
+    }
+
+    /**
+     * 获取当日实时统计快照
+     */
+    public RealtimeSnapshot snapshot() {
+        DayCounters counters = readCounters(null);
+        RealtimeSnapshot snapshot = new RealtimeSnapshot();
+        snapshot.setTimestamp(LocalDateTime.now(clock));
+        snapshot.setDate(counters.day);
+        snapshot.setTodayCommits(counters.commits.get());
+        // 只有质量门禁或覆盖率失败的项目也有计数条目，活跃项目只统计当日有提交的
+        snapshot.setActiveProjects((int) counters.projects.values().stream()
+            .filter(project -> project.commits.get() > 0)
+            .count());
+        snapshot.setActiveDevelopers(counters.activeDevelopers.size());
+        snapshot.setQualityGateFailures(counters.qualityGateFailures.size());
+        snapshot.setCoverageFailures(counters.coverageFailures.size());
+        return snapshot;
+    }
+
+    /**
+     * 获取单个项目的当日计数快照，项目当日无活动时各项为0
+     */
+    public ProjectSnapshot projectSnapshot(String projectId) {
+        DayCounters counters = readCounters(projectId);
+        ProjectCounters project = counters.projects.get(projectId);
+        ProjectSnapshot snapshot = new ProjectSnapshot();
+        snapshot.setProjectId(projectId);
+        snapshot.setDate(counters.day);
+        if (project != null) {
+            snapshot.setTodayCommits(project.commits.get());
+            snapshot.setActiveDevelopers(project.developers.size());
+            snapshot.setQualityGateFailures(project.qualityGateFailures.get());
+            snapshot.setCoverageFailures(project.coverageFailures.get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 获取当日有活动的项目ID
+     */
+    public Set<String> activeProjectIds() {
+        return Collections.unmodifiableSet(new HashSet<>(currentCounters().projects.keySet()));
+    }
+
+    /**
+     * 启动时从数据库回填当日计数，避免重启后计数归零
+     * 在 Bean 初始化阶段执行，早于 RabbitMQ 监听容器、进程内传输的工作线程和 Web 服务器启动，
+     * 回填期间不会有事件同时累加，已入库的记录不会被重复计数；之后全部由事件驱动
+     */
+    @PostConstruct
+    public void seedFromDatabase() {
+        if (!hasDatabase()) {
+            return;
+        }
+
+        DayCounters counters = currentCounters();
+        try {
+            loadFromDatabase(counters, null);
+            logger.info("实时计数回填完成: date={}, commits={}, projects={}, developers={}",
+                       counters.day, counters.commits.get(), counters.projects.size(),
+                       counters.activeDevelopers.size());
+
+        } catch (Exception e) {
+            logger.warn("实时计数回填失败，将从零开始累计: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 快照的数据来源：单节点模式读内存计数，否则按当日数据查询数据库
+     *
+     * @param projectId 只需要单个项目时传入，查询数据库时只加载该项目
+     */
+    private DayCounters readCounters(String projectId) {
+        if (singleNode || !hasDatabase()) {
+            return currentCounters();
+        }
+        DayCounters counters = new DayCounters(LocalDate.now(clock));
+        try {
+            loadFromDatabase(counters, projectId);
+            return counters;
+        } catch (Exception e) {
+            logger.warn("实时计数查询数据库失败，返回本节点计数: {}", e.getMessage());
+            return currentCounters();
+        }
+    }
+
+    /**
+     * 从数据库加载当日计数；提交数、活跃项目和各项目的开发者来自同一条按项目、开发者分组的查询
+     */
+    private void loadFromDatabase(DayCounters counters, String projectId) {
+        LocalDateTime start = counters.day.atStartOfDay();
+        LocalDateTime end = LocalDateTime.now(clock);
+
+        for (ProjectDeveloperCountRow row : commitStatisticsService.getProjectDeveloperCommitCounts(start, end, projectId)) {
+            counters.commits.addAndGet(row.getCommitCount());
+            if (row.getDeveloperId() != null) {
+                counters.activeDevelopers.add(row.getDeveloperId());
+            }
+            if (row.getProjectId() != null) {
+                ProjectCounters project = counters.project(row.getProjectId());
+                project.commits.addAndGet(row.getCommitCount());
+                if (row.getDeveloperId() != null) {
+                    project.developers.add(row.getDeveloperId());
+                }
+            }
+        }
+
+        for (ProjectRecordRef metrics : qualityMetricsRepository.findFailedQualityGateRefs(start, end)) {
+            if (projectId != null && !projectId.equals(metrics.getProjectId())) {
+                continue;
+            }
+            if (counters.qualityGateFailures.add(metrics.getId()) && metrics.getProjectId() != null) {
+                counters.project(metrics.getProjectId()).qualityGateFailures.incrementAndGet();
+            }
+        }
+
+        for (ProjectRecordRef coverage : testCoverageRepository.findFailedCoverageRefs(start, end)) {
+            if (projectId != null && !projectId.equals(coverage.getProjectId())) {
+                continue;
+            }
+            if (counters.coverageFailures.add(coverage.getId()) && coverage.getProjectId() != null) {
+                counters.project(coverage.getProjectId()).coverageFailures.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean hasDatabase() {
+        return commitStatisticsService != null && qualityMetricsRepository != null && testCoverageRepository != null;
+    }
+
+    /**
+     * 处于事务中时推迟到事务提交之后执行，无事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    private void publishChange(String projectId) {
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(new RealtimeCounterChangedEvent(this, projectId));
+        }
+    }
+
+    /**
+     * 获取当日计数桶，跨天时原子地切换为新的计数桶
+     */
+    private DayCounters currentCounters() {
+        LocalDate today = LocalDate.now(clock);
+        DayCounters counters = current.get();
+        while (!counters.day.equals(today)) {
+            DayCounters next = new DayCounters(today);
+            if (current.compareAndSet(counters, next)) {
+                logger.info("实时计数跨天重置: {} -> {}", counters.day, today);
+                return next;
+            }
+            counters = current.get();
+        }
+        return counters;
+    }
+
+    /**
+     * 单日计数桶
+     */
+    private static class DayCounters {
+        private final LocalDate day;
+        private final AtomicLong commits = new AtomicLong();
+        private final Map<String, ProjectCounters> projects = new ConcurrentHashMap<>();
+        private final Set<String> activeDevelopers = ConcurrentHashMap.newKeySet();
+        private final Set<Long> qualityGateFailures = ConcurrentHashMap.newKeySet();
+        private final Set<Long> coverageFailures = ConcurrentHashMap.newKeySet();
+
+        DayCounters(LocalDate day) {
+            this.day = day;
+        }
+
+        ProjectCounters project(String projectId) {
+            return projects.computeIfAbsent(projectId, id -> new ProjectCounters());
+        }
+    }
+
+    /**
+     * 单项目当日计数
+     */
+    private static class ProjectCounters {
+        private final AtomicLong commits = new AtomicLong();
+        private final Set<String> developers = ConcurrentHashMap.newKeySet();
+        private final AtomicLong qualityGateFailures = new AtomicLong();
+        private final AtomicLong coverageFailures = new AtomicLong();
+    }
+
+    /**
+     * 实时统计快照
+     */
+    public static class RealtimeSnapshot {
+        private LocalDateTime timestamp;
+        private LocalDate date;
+        private long todayCommits;
+        private int activeProjects;
+        private int activeDevelopers;
+        private int qualityGateFailures;
+        private int coverageFailures;
+
+        public LocalDateTime getTimestamp() { return timestamp; }
+        public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+
+        public LocalDate getDate() { return date; }
+        public void setDate(LocalDate date) { this.date = date; }
+
+        public long getTodayCommits() { return todayCommits; }
+        public void setTodayCommits(long todayCommits) { this.todayCommits = todayCommits; }
+
+        public int getActiveProjects() { return activeProjects; }
+        public void setActiveProjects(int activeProjects) { this.activeProjects = activeProjects; }
+
+        public int getActiveDevelopers() { return activeDevelopers; }
+        public void setActiveDevelopers(int activeDevelopers) { this.activeDevelopers = activeDevelopers; }
+
+        public int getQualityGateFailures() { return qualityGateFailures; }
+        public void setQualityGateFailures(int qualityGateFailures) { this.qualityGateFailures = qualityGateFailures; }
+
+        public int getCoverageFailures() { return coverageFailures; }
+        public void setCoverageFailures(int coverageFailures) { this.coverageFailures = coverageFailures; }
+    }
+
+    /**
+     * 单项目实时统计快照
+     */
+    public static class ProjectSnapshot {
+        private String projectId;
+        private LocalDate date;
+        private long todayCommits;
+        private int activeDevelopers;
+        private long qualityGateFailures;
+        private long coverageFailures;
+
+        /**
+         * 与上一次快照比较，返回发生变化的字段；日期变化时返回全部字段
+         */
+        public Map<String, Object> diff(ProjectSnapshot previous) {
+            Map<String, Object> delta = new HashMap<>();
+            boolean full = previous == null || !previous.date.equals(date);
+            if (full || previous.todayCommits != todayCommits) {
+                delta.put("todayCommits", todayCommits);
+            }
+            if (full || previous.activeDevelopers != activeDevelopers) {
+                delta.put("activeDevelopers", activeDevelopers);
+            }
+            if (full || previous.qualityGateFailures != qualityGateFailures) {
+                delta.put("qualityGateFailures", qualityGateFailures);
+            }
+            if (full || previous.coverageFailures != coverageFailures) {
+                delta.put("coverageFailures", coverageFailures);
+            }
+            if (full) {
+                delta.put("date", date.toString());
+            }
+            return delta;
+        }
+
+        public String getProjectId() { return projectId; }
+        public void setProjectId(String projectId) { this.projectId = projectId; }
+
+        public LocalDate getDate() { return date; }
+        public void setDate(LocalDate date) { this.date = date; }
+
+        public long getTodayCommits() { return todayCommits; }
+        public void setTodayCommits(long todayCommits) { this.todayCommits = todayCommits; }
+
+        public int getActiveDevelopers() { return activeDevelopers; }
+        public void setActiveDevelopers(int activeDevelopers) { this.activeDevelopers = activeDevelopers; }
+
+        public long getQualityGateFailures() { return qualityGateFailures; }
+        public void setQualityGateFailures(long qualityGateFailures) { this.qualityGateFailures = qualityGateFailures; }
+
+        public long getCoverageFailures() { return coverageFailures; }
+        public void setCoverageFailures(long coverageFailures) { this.coverageFailures = coverageFailures; }
+    }
+}
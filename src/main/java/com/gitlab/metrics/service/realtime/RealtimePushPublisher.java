@@ -0,0 +1,367 @@
+package com.gitlab.metrics.service.realtime;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 实时指标推送发布器
+ * 每个节点一个实例，负责按项目维护订阅者并下发计数增量：
+ * 计数变化只标记项目为脏，定时刷新时对每个脏项目计算一次与上次下发值的差异，
+ * 序列化一次后扇出给该项目的全部订阅者，避免每个客户端各自轮询或重复计算。
+ * 消息先放入每个订阅者的有界待发队列，由独立的发送线程池在锁外写出，慢连接不会阻塞定时刷新线程；
+ * 待发队列写满的订阅者视为跟不上推送，直接断开，客户端重连后会重新收到完整快照。
+ */
+@Service
+public class RealtimePushPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealtimePushPublisher.class);
+
+    static final String EVENT_SNAPSHOT = "snapshot";
+    static final String EVENT_DELTA = "delta";
+
+    @Autowired
+    private RealtimeCounterService realtimeCounterService;
+
+    @Autowired(required = false)
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    @Qualifier("realtimePushExecutor")
+    private Executor pushExecutor;
+
+    @Value("${app.realtime.push.max-pending-messages:64}")
+    private int maxPendingMessages = 64;
+
+    private final Map<String, Set<RealtimeSubscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final Map<String, RealtimeCounterService.ProjectSnapshot> lastPublished = new ConcurrentHashMap<>();
+
+    private final Set<String> dirtyProjects = ConcurrentHashMap.newKeySet();
+
+    private final Map<RealtimeSubscriber, Outbound> outbounds = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private Counter deltasPublished;
+
+    private Counter messagesSent;
+
+    private Counter slowSubscribersDropped;
+
+    @PostConstruct
+    public void init() {
+        if (objectMapper == null) {
+            objectMapper = new ObjectMapper();
+        }
+        if (pushExecutor == null) {
+            // 未配置发送线程池时（如单元测试）在调用线程上直接发送
+            pushExecutor = Runnable::run;
+        }
+        if (meterRegistry != null) {
+            Gauge.builder("realtime.push.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Number of connected realtime metric subscribers")
+                .register(meterRegistry);
+            deltasPublished = Counter.builder("realtime.push.deltas.total")
+                .description("Number of per-project deltas computed and fanned out")
+                .register(meterRegistry);
+            messagesSent = Counter.builder("realtime.push.messages.total")
+                .description("Number of realtime messages delivered to subscribers")
+                .register(meterRegistry);
+            slowSubscribersDropped = Counter.builder("realtime.push.slow.dropped.total")
+                .description("Number of subscribers disconnected because their pending queue was full")
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 订阅项目的实时计数，订阅成功后立即下发一次完整快照
+     * 取快照、快照入队和登记订阅者在项目订阅集合的锁内完成，与该项目的增量计算互斥：
+     * 集合先于取快照放入映射，此后的计数变化都会标记项目为脏，不会在快照与登记之间丢失；
+     * 快照是订阅者待发队列中的第一条消息，新订阅者也不会先于快照收到增量
+     *
+     * @return 初始快照入队成功返回true
+     */
+    public boolean subscribe(String projectId, RealtimeSubscriber subscriber) {
+        while (true) {
+            Set<RealtimeSubscriber> projectSubscribers =
+                subscribers.computeIfAbsent(projectId, id -> new CopyOnWriteArraySet<>());
+            synchronized (projectSubscribers) {
+                if (subscribers.get(projectId) != projectSubscribers) {
+                    // 集合已在最后一个订阅者退订时移除，重新获取
+                    continue;
+                }
+                RealtimeCounterService.ProjectSnapshot snapshot = realtimeCounterService.projectSnapshot(projectId);
+                Map<String, Object> payload = snapshot.diff(null);
+                payload.put("projectId", projectId);
+
+                String data = serialize(payload);
+                if (data == null) {
+                    if (projectSubscribers.isEmpty()) {
+                        subscribers.remove(projectId, projectSubscribers);
+                    }
+                    subscriber.close();
+                    return false;
+                }
+
+                Outbound outbound = new Outbound(projectId, subscriber);
+                outbounds.put(subscriber, outbound);
+                if (projectSubscribers.add(subscriber)) {
+                    subscriberCount.incrementAndGet();
+                }
+                lastPublished.putIfAbsent(projectId, snapshot);
+                if (!outbound.offer(EVENT_SNAPSHOT, data)) {
+                    return false;
+                }
+            }
+            logger.debug("新增实时订阅: projectId={}, 当前订阅数={}", projectId, subscriberCount.get());
+            return true;
+        }
+    }
+
+    /**
+     * 取消订阅
+     */
+    public void unsubscribe(String projectId, RealtimeSubscriber subscriber) {
+        Set<RealtimeSubscriber> projectSubscribers = subscribers.get(projectId);
+        if (projectSubscribers == null) {
+            return;
+        }
+        synchronized (projectSubscribers) {
+            Outbound outbound = outbounds.remove(subscriber);
+            if (outbound != null) {
+                outbound.closed = true;
+            }
+            if (projectSubscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+                if (projectSubscribers.isEmpty()) {
+                    subscribers.remove(projectId, projectSubscribers);
+                    lastPublished.remove(projectId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计数变化时只标记项目，实际下发在定时刷新中合并完成
+     */
+    @EventListener
+    public void onCounterChanged(RealtimeCounterChangedEvent event) {
+        if (subscribers.containsKey(event.getProjectId())) {
+            dirtyProjects.add(event.getProjectId());
+        }
+    }
+
+    /**
+     * 下发脏项目的计数增量
+     * 刷新间隔内同一项目的多次变化合并为一条增量消息
+     */
+    @Scheduled(fixedDelayString = "${app.realtime.push.flush-interval-ms:500}")
+    public void flush() {
+        markDayRollover();
+        if (dirtyProjects.isEmpty()) {
+            return;
+        }
+
+        List<String> projects = new ArrayList<>(dirtyProjects);
+        dirtyProjects.removeAll(projects);
+
+        for (String projectId : projects) {
+            Set<RealtimeSubscriber> projectSubscribers = subscribers.get(projectId);
+            if (projectSubscribers == null) {
+                continue;
+            }
+            String data;
+            List<RealtimeSubscriber> recipients;
+            // 在锁内计算增量并确定接收者：正在订阅的连接持有锁，登记完成后才能看到它；入队在锁外进行
+            synchronized (projectSubscribers) {
+                if (projectSubscribers.isEmpty()) {
+                    continue;
+                }
+                data = computeDelta(projectId);
+                recipients = new ArrayList<>(projectSubscribers);
+            }
+            if (data == null) {
+                continue;
+            }
+            for (RealtimeSubscriber subscriber : recipients) {
+                Outbound outbound = outbounds.get(subscriber);
+                if (outbound != null) {
+                    outbound.offer(EVENT_DELTA, data);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算项目相对上次下发的增量并序列化，无变化时返回null
+     */
+    private String computeDelta(String projectId) {
+        RealtimeCounterService.ProjectSnapshot snapshot = realtimeCounterService.projectSnapshot(projectId);
+        Map<String, Object> delta = snapshot.diff(lastPublished.get(projectId));
+        lastPublished.put(projectId, snapshot);
+        if (delta.isEmpty()) {
+            return null;
+        }
+        delta.put("projectId", projectId);
+
+        String data = serialize(delta);
+        if (data != null && deltasPublished != null) {
+            deltasPublished.increment();
+        }
+        return data;
+    }
+
+    /**
+     * 定时向所有订阅者发送心跳，同时清理已断开或积压的连接
+     */
+    @Scheduled(fixedDelayString = "${app.realtime.push.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (Outbound outbound : new ArrayList<>(outbounds.values())) {
+            outbound.offer(null, null);
+        }
+    }
+
+    /**
+     * 获取当前节点的订阅者总数
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * 跨天后各项目计数归零，需要向订阅者下发新一天的完整计数
+     */
+    private void markDayRollover() {
+        if (lastPublished.isEmpty()) {
+            return;
+        }
+        LocalDate today = realtimeCounterService.snapshot().getDate();
+        for (Map.Entry<String, RealtimeCounterService.ProjectSnapshot> entry : lastPublished.entrySet()) {
+            if (!today.equals(entry.getValue().getDate())) {
+                dirtyProjects.add(entry.getKey());
+            }
+        }
+    }
+
+    private String serialize(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            logger.error("序列化实时计数失败: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 单个订阅者的有界待发队列
+     * 同一时刻最多只有一个发送任务在写出该订阅者的消息，保证快照、增量按入队顺序到达
+     */
+    private final class Outbound implements Runnable {
+        private final String projectId;
+        private final RealtimeSubscriber subscriber;
+        private final BlockingQueue<String[]> pending;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Outbound(String projectId, RealtimeSubscriber subscriber) {
+            this.projectId = projectId;
+            this.subscriber = subscriber;
+            this.pending = new ArrayBlockingQueue<>(Math.max(1, maxPendingMessages));
+        }
+
+        /**
+         * 消息入队并调度发送，事件名为null表示心跳
+         *
+         * @return 入队失败（已关闭或队列已满）返回false，队列已满的订阅者会被断开
+         */
+        boolean offer(String eventName, String data) {
+            if (closed) {
+                return false;
+            }
+            if (!pending.offer(new String[] {eventName, data})) {
+                logger.warn("实时订阅者积压超过{}条消息，断开连接: projectId={}", maxPendingMessages, projectId);
+                if (slowSubscribersDropped != null) {
+                    slowSubscribersDropped.increment();
+                }
+                drop();
+                return false;
+            }
+            schedule();
+            return !closed;
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                pushExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                logger.warn("实时推送发送线程池已满，断开订阅者: projectId={}", projectId);
+                drop();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                String[] message;
+                while (!closed && (message = pending.poll()) != null) {
+                    boolean sent = message[0] == null
+                        ? subscriber.heartbeat()
+                        : subscriber.send(message[0], message[1]);
+                    if (!sent) {
+                        drop();
+                        return;
+                    }
+                    if (EVENT_DELTA.equals(message[0]) && messagesSent != null) {
+                        messagesSent.increment();
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // 释放调度标记前入队的消息需要重新调度
+            if (!closed && !pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void drop() {
+            closed = true;
+            pending.clear();
+            unsubscribe(projectId, subscriber);
+            subscriber.close();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.gitlab.metrics.service.realtime;
+
+/**
+ * 实时指标推送订阅者
+ * 由具体的推送通道（如SSE）实现，发布器只负责把已序列化好的消息交给订阅者
+ */
+public interface RealtimeSubscriber {
+
+    /**
+     * 发送一条事件
+     *
+     * @param eventName 事件名称 (snapshot, delta)
+     * @param data 已序列化的JSON数据
+     * @return 发送成功返回true，返回false的订阅者会被移除
+     */
+    boolean send(String eventName, String data);
+
+    /**
+     * 发送心跳，保持连接不被代理或负载均衡器断开
+     */
+    boolean heartbeat();
+
+    /**
+     * 关闭订阅
+     */
+    void close();
+}
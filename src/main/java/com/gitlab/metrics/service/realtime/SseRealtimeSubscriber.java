@@ -0,0 +1,51 @@
+package com.gitlab.metrics.service.realtime;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * 基于SSE的实时指标订阅者
+ */
+public class SseRealtimeSubscriber implements RealtimeSubscriber {
+
+    private final SseEmitter emitter;
+
+    public SseRealtimeSubscriber(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public boolean send(String eventName, String data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean heartbeat() {
+        try {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            emitter.complete();
+        } catch (IllegalStateException e) {
+            // 连接已关闭
+        }
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+}
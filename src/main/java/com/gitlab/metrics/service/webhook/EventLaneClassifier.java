@@ -0,0 +1,84 @@
+package com.gitlab.metrics.service.webhook;
+
+import com.gitlab.metrics.config.PriorityLaneProperties;
+import com.gitlab.metrics.dto.webhook.IssueEventRequest;
+import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.dto.webhook.WebhookRequest;
+import com.gitlab.metrics.messaging.PriorityLane;
+
+import java.util.List;
+
+/**
+ * 事件优先级分类
+ * 按事件类型和载荷大小决定事件走哪个通道；只读取已解析的字段估算大小，不做序列化
+ */
+public class EventLaneClassifier {
+
+    /**
+     * 每个提交在载荷中除提交信息和文件路径外的固定开销（id、时间、作者、url 等）
+     */
+    private static final int COMMIT_OVERHEAD_BYTES = 300;
+
+    private final PriorityLaneProperties properties;
+
+    public EventLaneClassifier(PriorityLaneProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 合并请求和 Issue 事件驱动实时判断，总是走 INTERACTIVE；push 按规模分类
+     */
+    public PriorityLane classify(WebhookRequest event) {
+        if (event instanceof MergeRequestEventRequest || event instanceof IssueEventRequest) {
+            return PriorityLane.INTERACTIVE;
+        }
+        if (event instanceof PushEventRequest) {
+            return classifyPush((PushEventRequest) event);
+        }
+        return PriorityLane.STANDARD;
+    }
+
+    /**
+     * push 事件按提交数和估算载荷大小分为 STANDARD 或 BULK
+     */
+    public PriorityLane classifyPush(PushEventRequest event) {
+        int commits = event.getCommits() != null ? event.getCommits().size() : 0;
+        if (event.getTotalCommitsCount() != null) {
+            // GitLab 只在载荷里带最近的若干个提交，total_commits_count 才是这次 push 的真实规模
+            commits = Math.max(commits, event.getTotalCommitsCount());
+        }
+        if (commits >= properties.getBulkCommitThreshold()
+            || estimatePayloadBytes(event) >= properties.getBulkPayloadBytes()) {
+            return PriorityLane.BULK;
+        }
+        return PriorityLane.STANDARD;
+    }
+
+    /**
+     * 估算 push 载荷大小：提交信息和增删改文件路径的长度加上每个提交的固定开销
+     */
+    static long estimatePayloadBytes(PushEventRequest event) {
+        if (event.getCommits() == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (PushEventRequest.CommitInfo commit : event.getCommits()) {
+            bytes += COMMIT_OVERHEAD_BYTES;
+            bytes += commit.getMessage() != null ? commit.getMessage().length() : 0;
+            bytes += pathBytes(commit.getAdded()) + pathBytes(commit.getModified()) + pathBytes(commit.getRemoved());
+        }
+        return bytes;
+    }
+
+    private static long pathBytes(List<String> paths) {
+        if (paths == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String path : paths) {
+            bytes += path.length() + 3;
+        }
+        return bytes;
+    }
+}
@@ -48,6 +48,18 @@ public class WebhookEventDispatcher {
      * @param requestId The request ID for tracking
      */
     public void dispatchEvent(String eventType, String payload, String requestId) {
+        dispatchEvent(eventType, payload, requestId, System.currentTimeMillis());
+    }
+    
+    /**
+     * Dispatches webhook event to appropriate parser and processor
+     * 
+     * @param eventType The GitLab event type
+     * @param payload The raw JSON payload
+     * @param requestId The request ID for tracking
+     * @param receivedAt When the webhook request arrived (epoch millis), carried to consumers for pipeline lag
+     */
+    public void dispatchEvent(String eventType, String payload, String requestId, long receivedAt) {
         if (!StringUtils.hasText(eventType)) {
             throw new WebhookProcessingException("Event type is required");
         }
@@ -78,7 +90,7 @@ public class WebhookEventDispatcher {
             logger.debug("Successfully parsed event: type={}, requestId={}", normalizedEventType, requestId);
             
             // Process event asynchronously
-            eventProcessor.processEventAsync(normalizedEventType, parsedEvent, requestId);
+            eventProcessor.processEventAsync(normalizedEventType, parsedEvent, requestId, receivedAt);
             
             logger.info("Event dispatched successfully: type={}, requestId={}", normalizedEventType, requestId);
             
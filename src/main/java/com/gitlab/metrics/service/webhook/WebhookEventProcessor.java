@@ -5,10 +5,12 @@ import com.gitlab.metrics.dto.webhook.IssueEventRequest;
 import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
 import com.gitlab.metrics.dto.webhook.PushEventRequest;
 import com.gitlab.metrics.dto.webhook.WebhookRequest;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventTransport;
+import com.gitlab.metrics.messaging.PriorityLane;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -22,7 +24,10 @@ public class WebhookEventProcessor {
     private static final Logger logger = LoggerFactory.getLogger(WebhookEventProcessor.class);
     
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private EventTransport eventPublisher;
+    
+    @Autowired
+    private EventLaneClassifier laneClassifier;
     
     /**
      * Processes webhook event asynchronously
@@ -33,6 +38,19 @@ public class WebhookEventProcessor {
      */
     @Async
     public void processEventAsync(String eventType, WebhookRequest event, String requestId) {
+        processEventAsync(eventType, event, requestId, System.currentTimeMillis());
+    }
+    
+    /**
+     * Processes webhook event asynchronously
+     * 
+     * @param eventType The event type
+     * @param event The parsed event
+     * @param requestId The request ID for tracking
+     * @param receivedAt When the webhook request arrived (epoch millis); sent as the x-ts-received header
+     */
+    @Async
+    public void processEventAsync(String eventType, WebhookRequest event, String requestId, long receivedAt) {
         // Set up MDC for async processing
         MDC.put("requestId", requestId);
         MDC.put("eventType", eventType);
@@ -42,13 +60,13 @@ public class WebhookEventProcessor {
             
             switch (eventType.toLowerCase()) {
                 case "push":
-                    processPushEvent((PushEventRequest) event, requestId);
+                    processPushEvent((PushEventRequest) event, requestId, receivedAt);
                     break;
                 case "merge request":
-                    processMergeRequestEvent((MergeRequestEventRequest) event, requestId);
+                    processMergeRequestEvent((MergeRequestEventRequest) event, requestId, receivedAt);
                     break;
                 case "issue":
-                    processIssueEvent((IssueEventRequest) event, requestId);
+                    processIssueEvent((IssueEventRequest) event, requestId, receivedAt);
                     break;
                 default:
                     logger.warn("Unsupported event type for processing: {}", eventType);
@@ -70,19 +88,24 @@ public class WebhookEventProcessor {
     /**
      * Processes push events
      */
-    private void processPushEvent(PushEventRequest event, String requestId) {
+    private void processPushEvent(PushEventRequest event, String requestId, long receivedAt) {
         logger.debug("Processing push event: project={}, ref={}, commits={}", 
                     event.getProjectId(), event.getRef(), 
                     event.getCommits() != null ? event.getCommits().size() : 0);
         
-        // Send to commit analysis queue
-        sendToQueue(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, event, requestId);
+        // Large pushes go to the bulk lane so they can't hold up regular commit analysis
+        PriorityLane lane = laneClassifier.classify(event);
+        String commitQueue = lane == PriorityLane.BULK
+            ? RabbitMQConfig.COMMIT_ANALYSIS_BULK_QUEUE : RabbitMQConfig.COMMIT_ANALYSIS_QUEUE;
+        logger.debug("Push event classified: lane={}, totalCommits={}, requestId={}", 
+                    lane, event.getTotalCommitsCount(), requestId);
+        sendToQueue(commitQueue, event, requestId, receivedAt);
         
         // If this is a merge commit, also send to merge analysis queue
         if (event.getCommits() != null && event.getCommits().size() == 1) {
             PushEventRequest.CommitInfo commit = event.getCommits().get(0);
             if (commit.getMessage() != null && commit.getMessage().startsWith("Merge")) {
-                sendToQueue(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, event, requestId);
+                sendToQueue(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, event, requestId, receivedAt);
             }
         }
         
@@ -92,18 +115,18 @@ public class WebhookEventProcessor {
     /**
      * Processes merge request events
      */
-    private void processMergeRequestEvent(MergeRequestEventRequest event, String requestId) {
+    private void processMergeRequestEvent(MergeRequestEventRequest event, String requestId, long receivedAt) {
         logger.debug("Processing merge request event: id={}, action={}, state={}", 
                     event.getObjectAttributes().getId(),
                     event.getObjectAttributes().getAction(),
                     event.getObjectAttributes().getState());
         
-        // Send to code review analysis queue
-        sendToQueue(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, event, requestId);
+        // Send to code review analysis queue (interactive lane: drives merge checks)
+        sendToQueue(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, event, requestId, receivedAt);
         
         // If merge request is merged, also trigger quality analysis
         if ("merged".equals(event.getObjectAttributes().getState())) {
-            sendToQueue(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, event, requestId);
+            sendToQueue(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, event, requestId, receivedAt);
         }
         
         logger.debug("Merge request event processing completed: requestId={}", requestId);
@@ -112,77 +135,46 @@ public class WebhookEventProcessor {
     /**
      * Processes issue events
      */
-    private void processIssueEvent(IssueEventRequest event, String requestId) {
+    private void processIssueEvent(IssueEventRequest event, String requestId, long receivedAt) {
         logger.debug("Processing issue event: id={}, action={}, state={}", 
                     event.getObjectAttributes().getId(),
                     event.getObjectAttributes().getAction(),
                     event.getObjectAttributes().getState());
         
         // Send to bug tracking analysis queue
-        sendToQueue(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE, event, requestId);
+        sendToQueue(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE, event, requestId, receivedAt);
         
         // If issue is closed, trigger efficiency analysis
         if ("closed".equals(event.getObjectAttributes().getState())) {
-            sendToQueue(RabbitMQConfig.EFFICIENCY_ANALYSIS_QUEUE, event, requestId);
+            sendToQueue(RabbitMQConfig.EFFICIENCY_ANALYSIS_QUEUE, event, requestId, receivedAt);
         }
         
         logger.debug("Issue event processing completed: requestId={}", requestId);
     }
     
     /**
-     * Sends event to RabbitMQ queue
+     * Hands the event to the configured transport. With RabbitMQ, events are spooled to local disk while the broker
+     * is down and replayed later, so only unroutable or unspoolable events are reported as failures; in-process,
+     * a queue that stays full rejects the event
      */
-    private void sendToQueue(String queueName, Object event, String requestId) {
+    private void sendToQueue(String queueName, Object event, String requestId, long receivedAt) {
         try {
-            logger.debug("Sending event to queue: queue={}, requestId={}", queueName, requestId);
+            logger.debug("Publishing event to queue: queue={}, requestId={}", queueName, requestId);
             
-            // Add metadata to the message
-            WebhookEventMessage message = new WebhookEventMessage();
-            message.setRequestId(requestId);
-            message.setEventData(event);
-            message.setTimestamp(System.currentTimeMillis());
-            
-            rabbitTemplate.convertAndSend(queueName, message);
-            
-            logger.debug("Event sent to queue successfully: queue={}, requestId={}", queueName, requestId);
+            // Typed envelope: consumers get the event class back instead of a generic map
+            EventEnvelope envelope = EventEnvelope.of(requestId, event);
+            envelope.setReceivedAt(receivedAt);
+            eventPublisher.publishToQueue(queueName, envelope)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        logger.error("Failed to publish event to queue: queue={}, requestId={}", queueName, requestId, error);
+                    } else {
+                        logger.debug("Event accepted by transport: queue={}, requestId={}", queueName, requestId);
+                    }
+                });
             
         } catch (Exception e) {
             logger.error("Failed to send event to queue: queue={}, requestId={}", queueName, requestId, e);
-            // In production, you might want to implement retry logic or dead letter queue
-        }
-    }
-    
-    /**
-     * Message wrapper for queue events
-     */
-    public static class WebhookEventMessage {
-        private String requestId;
-        private Object eventData;
-        private long timestamp;
-        
-        // Getters and Setters
-        public String getRequestId() {
-            return requestId;
-        }
-        
-        public void setRequestId(String requestId) {
-            this.requestId = requestId;
-        }
-        
-        public Object getEventData() {
-            return eventData;
-        }
-        
-        public void setEventData(Object eventData) {
-            this.eventData = eventData;
-        }
-        
-        public long getTimestamp() {
-            return timestamp;
-        }
-        
-        public void setTimestamp(long timestamp) {
-            this.timestamp = timestamp;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+package com.gitlab.metrics.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 趋势序列降采样工具类
+ * 根据时间范围自动选择按日/周/月分组，并提供保持曲线形状的 LTTB (Largest-Triangle-Three-Buckets) 降采样，
+ * 使趋势数据的点数和序列化开销不随查询范围增长。
+ */
+public final class TrendDownsampler {
+
+    /**
+     * 按日分组的最大范围（天）
+     */
+    public static final long MAX_DAYS_FOR_DAILY = 92;
+
+    /**
+     * 按周分组的最大范围（天）
+     */
+    public static final long MAX_DAYS_FOR_WEEKLY = 731;
+
+    /**
+     * 降采样最少保留的点数（首尾点加一个中间点）
+     */
+    public static final int MIN_POINTS = 3;
+
+    /**
+     * 降采样最多保留的点数
+     */
+    public static final int MAX_POINTS = 1000;
+
+    /**
+     * 时间分组粒度
+     */
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        /**
+         * 解析分组参数，auto 或空值按时间范围自动选择
+         */
+        public static Granularity resolve(String groupBy, LocalDateTime startDate, LocalDateTime endDate) {
+            if (groupBy != null) {
+                switch (groupBy.toLowerCase()) {
+                    case "day":
+                        return DAY;
+                    case "week":
+                        return WEEK;
+                    case "month":
+                        return MONTH;
+                    default:
+                        break;
+                }
+            }
+            return forRange(startDate, endDate);
+        }
+
+        /**
+         * 按时间范围选择分组粒度：3个月以内按日，2年以内按周，更长按月
+         */
+        public static Granularity forRange(LocalDateTime startDate, LocalDateTime endDate) {
+            long days = ChronoUnit.DAYS.between(startDate.toLocalDate(), endDate.toLocalDate());
+            if (days <= MAX_DAYS_FOR_DAILY) {
+                return DAY;
+            }
+            return days <= MAX_DAYS_FOR_WEEKLY ? WEEK : MONTH;
+        }
+
+        /**
+         * 返回日期所在分组的起始日期
+         */
+        public LocalDate bucketStart(LocalDate date) {
+            switch (this) {
+                case WEEK:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date;
+            }
+        }
+    }
+
+    private TrendDownsampler() {
+    }
+
+    /**
+     * 把请求的最大点数限制在 [MIN_POINTS, MAX_POINTS] 内
+     */
+    public static int clampMaxPoints(int maxPoints) {
+        return Math.max(MIN_POINTS, Math.min(MAX_POINTS, maxPoints));
+    }
+
+    /**
+     * LTTB 降采样，以序号作为横坐标
+     *
+     * @param data 按时间排序的数据点
+     * @param maxPoints 最大点数，先按 {@link #clampMaxPoints(int)} 限制范围；不小于数据量时原样返回
+     * @param y 纵坐标取值函数
+     * @return 降采样后的数据点，保留首尾点
+     */
+    public static <T> List<T> largestTriangleThreeBuckets(List<T> data, int maxPoints, ToDoubleFunction<T> y) {
+        maxPoints = clampMaxPoints(maxPoints);
+        if (data == null || data.size() <= maxPoints) {
+            return data;
+        }
+
+        int size = data.size();
+        List<T> sampled = new ArrayList<>(maxPoints);
+        sampled.add(data.get(0));
+
+        // 除首尾点外，其余点均分为 maxPoints - 2 个桶，每个桶选出与前一选中点、后一桶均值构成面积最大三角形的点
+        double bucketSize = (double) (size - 2) / (maxPoints - 2);
+        int selected = 0;
+
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            int nextCount = nextEnd - nextStart;
+            if (nextCount <= 0) {
+                nextStart = size - 1;
+                nextCount = 1;
+                nextEnd = size;
+            }
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += i;
+                avgY += y.applyAsDouble(data.get(i));
+            }
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int rangeStart = (int) Math.floor(bucket * bucketSize) + 1;
+            int rangeEnd = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double selectedX = selected;
+            double selectedY = y.applyAsDouble(data.get(selected));
+
+            double maxArea = -1;
+            int maxIndex = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs((selectedX - avgX) * (y.applyAsDouble(data.get(i)) - selectedY)
+                    - (selectedX - i) * (avgY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            sampled.add(data.get(maxIndex));
+            selected = maxIndex;
+        }
+
+        sampled.add(data.get(size - 1));
+        return sampled;
+    }
+}
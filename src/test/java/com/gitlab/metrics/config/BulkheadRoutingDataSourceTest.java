@@ -0,0 +1,172 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.service.BatchProcessingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 连接池隔离舱路由与绑定规则测试
+ */
+public class BulkheadRoutingDataSourceTest {
+
+    private DataSource ingest;
+    private DataSource interactive;
+    private DataSource batch;
+    private BulkheadRoutingDataSource routingDataSource;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        ingest = mock(DataSource.class);
+        interactive = mock(DataSource.class);
+        batch = mock(DataSource.class);
+        Map<String, DataSource> pools = new LinkedHashMap<>();
+        pools.put(BulkheadRoutingDataSource.INTERACTIVE_READ, interactive);
+        pools.put(BulkheadRoutingDataSource.BATCH, batch);
+        routingDataSource = new BulkheadRoutingDataSource(ingest, pools);
+        meterRegistry = new SimpleMeterRegistry();
+        routingDataSource.bindMetrics(meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        BulkheadRoutingDataSource.restore(null);
+    }
+
+    @Test
+    public void testUnboundThreadsUseIngestPool() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(ingest.getConnection()).thenReturn(connection);
+
+        assertSame(connection, routingDataSource.getConnection());
+        assertEquals(1L, meterRegistry.find("datasource.bulkhead.acquire").tag("pool", "ingest").timer().count());
+    }
+
+    @Test
+    public void testBoundPoolIsUsedAndRestored() throws SQLException {
+        when(batch.getConnection()).thenReturn(mock(Connection.class));
+
+        String previous = BulkheadRoutingDataSource.bind(BulkheadRoutingDataSource.BATCH);
+        routingDataSource.getConnection();
+        BulkheadRoutingDataSource.restore(previous);
+        routingDataSource.getConnection();
+
+        verify(batch).getConnection();
+        verify(ingest).getConnection();
+        assertNull(BulkheadRoutingDataSource.currentPool());
+    }
+
+    @Test
+    public void testUnknownPoolFallsBackToIngest() throws SQLException {
+        BulkheadRoutingDataSource.bind("reports");
+
+        routingDataSource.getConnection();
+
+        verify(ingest).getConnection();
+    }
+
+    @Test
+    public void testAspectBindingRules() throws NoSuchMethodException {
+        Map<String, String> bindings = new LinkedHashMap<>();
+        bindings.put("com.gitlab.metrics.config", BulkheadRoutingDataSource.INTERACTIVE_READ);
+        bindings.put("com.gitlab.metrics.config.BulkheadRoutingDataSourceTest$Ingest", BulkheadRoutingDataSource.INGEST);
+        ConnectionPoolAspect aspect = new ConnectionPoolAspect(bindings);
+
+        ConnectionPoolAspect.Binding annotated = aspect.resolve(Annotated.class.getMethod("sweep"), Annotated.class);
+        assertEquals(BulkheadRoutingDataSource.BATCH, annotated.pool);
+        assertTrue(annotated.explicit);
+
+        ConnectionPoolAspect.Binding scheduled = aspect.resolve(Ingest.class.getMethod("tick"), Ingest.class);
+        assertEquals(BulkheadRoutingDataSource.BATCH, scheduled.pool);
+        assertFalse(scheduled.explicit);
+
+        assertEquals(BulkheadRoutingDataSource.INGEST,
+            aspect.resolve(Ingest.class.getMethod("save"), Ingest.class).pool);
+        assertEquals(BulkheadRoutingDataSource.INTERACTIVE_READ,
+            aspect.resolve(Annotated.class.getMethod("toString"), BulkheadRoutingDataSourceTest.class).pool);
+        assertEquals("", new ConnectionPoolAspect(Collections.<String, String>emptyMap())
+            .resolve(Ingest.class.getMethod("save"), Ingest.class).pool);
+    }
+
+    @Test
+    public void testBatchProcessingSavesStayOnIngestPool() throws NoSuchMethodException {
+        ConnectionPoolAspect aspect = new ConnectionPoolAspect(Collections.<String, String>emptyMap());
+        Class<?> service = BatchProcessingService.class;
+        assertEquals(BulkheadRoutingDataSource.INGEST,
+            aspect.resolve(service.getMethod("batchSaveCommits", List.class), service).pool);
+        assertEquals(BulkheadRoutingDataSource.INGEST,
+            aspect.resolve(service.getMethod("batchSaveFileChanges", List.class), service).pool);
+        assertEquals(BulkheadRoutingDataSource.BATCH, aspect.resolve(
+            service.getMethod("batchDeleteExpiredData", String.class, LocalDateTime.class), service).pool);
+    }
+
+    @Test
+    public void testAspectOnlyBindsAtEntryPoints() {
+        Map<String, String> bindings = new LinkedHashMap<>();
+        bindings.put("com.gitlab.metrics.config", BulkheadRoutingDataSource.INTERACTIVE_READ);
+        ConnectionPoolAspect aspect = new ConnectionPoolAspect(bindings);
+
+        // 普通服务方法不是入口，不拦截
+        assertNull(proxy(new PlainService(), aspect).currentPool());
+        assertEquals(BulkheadRoutingDataSource.BATCH, proxy(new EntryPoints(), aspect).tick());
+        assertEquals(BulkheadRoutingDataSource.BATCH, proxy(new Annotated(), aspect).currentPool());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, ConnectionPoolAspect aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return (T) factory.getProxy();
+    }
+
+    @Service
+    static class PlainService {
+        public String currentPool() {
+            return BulkheadRoutingDataSource.currentPool();
+        }
+    }
+
+    static class EntryPoints {
+        @Scheduled(fixedRate = 1000)
+        public String tick() {
+            return BulkheadRoutingDataSource.currentPool();
+        }
+    }
+
+    @UseConnectionPool(BulkheadRoutingDataSource.BATCH)
+    static class Annotated {
+        public void sweep() {
+        }
+
+        public String currentPool() {
+            return BulkheadRoutingDataSource.currentPool();
+        }
+    }
+
+    static class Ingest {
+        public void save() {
+        }
+
+        @Scheduled(fixedRate = 1000)
+        public void tick() {
+        }
+    }
+}
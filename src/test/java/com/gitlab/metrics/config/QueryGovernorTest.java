@@ -0,0 +1,201 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.exception.QueryRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 查询准入控制测试：成本估算与分类、并发预算、排队拒绝、语句超时绑定和拦截器释放
+ */
+public class QueryGovernorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private QueryGovernor governor;
+
+    @Before
+    public void setUp() {
+        QueryGovernorProperties properties = new QueryGovernorProperties();
+        QueryGovernorProperties.QueryClass interactive = new QueryGovernorProperties.QueryClass();
+        interactive.setMaxCost(3000);
+        interactive.setMaxConcurrent(4);
+        interactive.setMaxQueue(2);
+        interactive.setMaxWaitMs(200);
+        QueryGovernorProperties.QueryClass heavy = new QueryGovernorProperties.QueryClass();
+        heavy.setMaxConcurrent(1);
+        heavy.setMaxQueue(1);
+        heavy.setMaxWaitMs(1000);
+        heavy.setStatementTimeoutSeconds(120);
+        properties.getClasses().put("heavy", heavy);
+        properties.getClasses().put("interactive", interactive);
+
+        meterRegistry = new SimpleMeterRegistry();
+        governor = new QueryGovernor(properties, 30, meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        StatementTimeoutDataSource.restore(null);
+    }
+
+    @Test
+    public void testUnscopedYearLeaderboardIsHeavyAndScopedRangesAreInteractive() {
+        long leaderboard = governor.estimateCost(params("timeRange", "1y"));
+        assertEquals(365 * 20, leaderboard);
+        assertEquals("heavy", governor.classify(leaderboard));
+        assertEquals(73, governor.estimateCost(params("timeRange", "1y", "accuracy", "approx")));
+
+        assertEquals("interactive", governor.classify(governor.estimateCost(params("timeRange", "30d"))));
+        assertEquals(365, governor.estimateCost(params("timeRange", "1y", "projectId", "p1")));
+        assertEquals(3 * 90, governor.estimateCost(params("timeRange", "90d", "projectIds", "p1,p2,p3")));
+
+        Map<String, String[]> bugStats = params("startTime", "2023-01-01T00:00:00", "endTime", "2023-12-31T23:59:59");
+        assertEquals(365 * 20, governor.estimateCost(bugStats));
+        assertEquals(30 * 20, governor.estimateCost(params("days", "30")));
+        assertEquals(30 * 20, governor.estimateCost(new HashMap<>()));
+    }
+
+    @Test
+    public void testAdmittedQueryBindsClassStatementTimeout() {
+        try (QueryGovernor.Permit permit = governor.admit(7300)) {
+            assertEquals("heavy", permit.getQueryClass());
+            assertEquals(Integer.valueOf(120), StatementTimeoutDataSource.currentTimeout());
+            assertEquals(1, governor.getActive("heavy"));
+        }
+        assertNull(StatementTimeoutDataSource.currentTimeout());
+        assertEquals(0, governor.getActive("heavy"));
+
+        try (QueryGovernor.Permit permit = governor.admit(100)) {
+            assertEquals(30, permit.getTimeoutSeconds());
+        }
+    }
+
+    @Test
+    public void testQueueFullIsRejectedWith429AndQueueTimeoutWith503() throws Exception {
+        QueryGovernor.Permit running = governor.admit(7300);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<HttpStatus> queued = executor.submit(() -> {
+                try {
+                    governor.admit(7300).close();
+                    return HttpStatus.OK;
+                } catch (QueryRejectedException e) {
+                    return e.getStatus();
+                }
+            });
+            waitForQueued("heavy", 1);
+
+            try {
+                governor.admit(7300);
+                fail("queue is full");
+            } catch (QueryRejectedException e) {
+                assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatus());
+                assertEquals("heavy", e.getQueryClass());
+                assertTrue(e.getRetryAfterSeconds() >= 1);
+            }
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            running.close();
+            executor.shutdownNow();
+        }
+
+        assertEquals(1.0, meterRegistry.get("query.governor.rejected")
+            .tags("class", "heavy", "reason", "queue_full").counter().count(), 0.0);
+        assertEquals(1.0, meterRegistry.get("query.governor.rejected")
+            .tags("class", "heavy", "reason", "wait_timeout").counter().count(), 0.0);
+        assertEquals(1, meterRegistry.get("query.governor.queue.wait").tags("class", "heavy").timer().count());
+        assertEquals(0.0, meterRegistry.get("query.governor.active").tags("class", "heavy").gauge().value(), 0.0);
+    }
+
+    @Test
+    public void testQueuedQueryIsAdmittedWhenSlotFrees() throws Exception {
+        QueryGovernor.Permit running = governor.admit(7300);
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try (QueryGovernor.Permit permit = governor.admit(7300)) {
+                admitted.countDown();
+            }
+        });
+        waiter.start();
+        waitForQueued("heavy", 1);
+
+        running.close();
+
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        waiter.join(5000);
+        assertEquals(1.0, meterRegistry.get("query.governor.admitted")
+            .tags("class", "heavy", "queued", "true").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testInterceptorReleasesPermitAfterCompletion() {
+        QueryGovernorInterceptor interceptor = new QueryGovernorInterceptor(governor);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/metrics/leaderboard");
+        request.setParameter("timeRange", "1y");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertEquals("heavy", response.getHeader("X-Query-Class"));
+        assertEquals(1, governor.getActive("heavy"));
+
+        interceptor.afterCompletion(request, response, null, null);
+        assertEquals(0, governor.getActive("heavy"));
+        assertNull(StatementTimeoutDataSource.currentTimeout());
+    }
+
+    @Test
+    public void testStatementTimeoutAppliedOnlyWhenBound() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        StatementTimeoutDataSource dataSource = new StatementTimeoutDataSource(target);
+
+        assertSame(connection, dataSource.getConnection());
+
+        Integer previous = StatementTimeoutDataSource.bind(15);
+        try {
+            Connection wrapped = dataSource.getConnection();
+            assertSame(statement, wrapped.prepareStatement("SELECT 1"));
+            verify(statement).setQueryTimeout(15);
+        } finally {
+            StatementTimeoutDataSource.restore(previous);
+        }
+    }
+
+    private void waitForQueued(String queryClass, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (governor.getQueued(queryClass) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, governor.getQueued(queryClass));
+    }
+
+    private static Map<String, String[]> params(String... keyValues) {
+        Map<String, String[]> params = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put(keyValues[i], new String[]{keyValues[i + 1]});
+        }
+        return params;
+    }
+}
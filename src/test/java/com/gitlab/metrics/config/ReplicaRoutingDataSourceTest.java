@@ -0,0 +1,130 @@
+package com.gitlab.metrics.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.*;
+
+/**
+ * ReplicaRoutingDataSource单元测试
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica1;
+    private DataSource replica2;
+    private ReplicaRoutingDataSource routingDataSource;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        primary = mock(DataSource.class);
+        replica1 = mock(DataSource.class);
+        replica2 = mock(DataSource.class);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica1);
+        replicas.put("replica-2", replica2);
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, 10);
+        meterRegistry = new SimpleMeterRegistry();
+        routingDataSource.bindMetrics(meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        setActualTransactionActive(false);
+        setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void testWritesAndNonTransactionalCallsUsePrimary() {
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routingDataSource.resolveRoute());
+
+        setActualTransactionActive(true);
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routingDataSource.resolveRoute());
+    }
+
+    @Test
+    public void testReplicasAreNotRoutedBeforeFirstHealthCheck() {
+        setActualTransactionActive(true);
+        setCurrentTransactionReadOnly(true);
+
+        assertFalse(routingDataSource.getReplicas().get(0).isHealthy());
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routingDataSource.resolveRoute());
+    }
+
+    @Test
+    public void testReadOnlyTransactionsRoundRobinAcrossReplicas() throws SQLException {
+        Connection connection = mockReplicaStatus(replica1, 0L);
+        mockReplicaStatus(replica2, 0L);
+        when(replica2.getConnection()).thenReturn(connection);
+        routingDataSource.checkReplicas();
+        setActualTransactionActive(true);
+        setCurrentTransactionReadOnly(true);
+
+        assertSame(connection, routingDataSource.getConnection());
+        assertSame(connection, routingDataSource.getConnection());
+
+        // 健康检查各取一次连接，路由各取一次
+        verify(replica1, times(2)).getConnection();
+        verify(replica2, times(2)).getConnection();
+        verify(primary, never()).getConnection();
+        assertEquals(1.0, meterRegistry.find("datasource.routing.connections").tag("route", "replica-1").counter().count(), 0.01);
+    }
+
+    @Test
+    public void testLaggingOrDownReplicasFallBackToPrimary() throws SQLException {
+        mockReplicaStatus(replica1, 120L);
+        when(replica2.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        routingDataSource.checkReplicas();
+
+        assertEquals(120L, routingDataSource.getReplicas().get(0).getLagSeconds());
+        assertFalse(routingDataSource.getReplicas().get(1).isHealthy());
+        setActualTransactionActive(true);
+        setCurrentTransactionReadOnly(true);
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routingDataSource.resolveRoute());
+        assertEquals(1.0, meterRegistry.find("datasource.routing.fallback").counter().count(), 0.01);
+        assertEquals(0.0, meterRegistry.find("datasource.replica.healthy").tag("route", "replica-2").gauge().value(), 0.01);
+    }
+
+    @Test
+    public void testRecoveredReplicaRejoinsRotation() throws SQLException {
+        mockReplicaStatus(replica1, 3L);
+        mockReplicaStatus(replica2, null);
+
+        routingDataSource.checkReplicas();
+
+        assertTrue(routingDataSource.getReplicas().get(0).isHealthy());
+        assertFalse("stopped replication is unhealthy", routingDataSource.getReplicas().get(1).isHealthy());
+        setActualTransactionActive(true);
+        setCurrentTransactionReadOnly(true);
+        assertEquals("replica-1", routingDataSource.resolveRoute());
+        assertEquals("replica-1", routingDataSource.resolveRoute());
+    }
+
+    private Connection mockReplicaStatus(DataSource replica, Long lag) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("SHOW REPLICA STATUS")).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getObject("Seconds_Behind_Source")).thenReturn(lag);
+        return connection;
+    }
+}
@@ -0,0 +1,393 @@
+package com.gitlab.metrics.config;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.Issue;
+import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.repository.CommitRepository;
+import com.gitlab.metrics.repository.IssueRepository;
+import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.repository.projection.ProjectCommitSummaryRow;
+import com.gitlab.metrics.repository.projection.ProjectionQueryBenchmarkTest;
+import com.gitlab.metrics.service.AlertService;
+import com.gitlab.metrics.service.BugFixEfficiencyService;
+import com.gitlab.metrics.service.CommitStatisticsService;
+import com.gitlab.metrics.service.TestCoverageService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 按项目分片路由测试
+ * 三个 H2 内存库作为分片，通过真实的 Hibernate、Spring Data 仓库和事务验证写入落点、路由查询、
+ * 跨分片排行榜合并、未路由调用的跨分片查找、每小时超时 Bug 巡检和覆盖率清理的跨分片执行以及同一事务跨分片访问的拒绝
+ */
+public class ShardRoutingTest {
+
+    private static final int PROJECTS = 12;
+    private static final int COMMITS_PER_PROJECT = 30;
+    private static final int DEVELOPERS = 7;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 0, 0);
+    private static final LocalDateTime END = BASE.plusDays(30);
+
+    private static final List<String> SHARDS = Arrays.asList("shard-0", "shard-1", "shard-2");
+
+    private static HikariDataSource primary;
+    private static ShardRoutingConfig.ShardRoutingPostProcessor postProcessor;
+    private static EntityManagerFactory entityManagerFactory;
+    private static ThreadPoolTaskExecutor executor;
+    private static ShardMap shardMap;
+    private static ShardScatterGather scatterGather;
+    private static TransactionTemplate transactionTemplate;
+    private static ShardRoutingAspect aspect;
+    private static CommitRepository commitRepository;
+    private static IssueRepository issueRepository;
+    private static TestCoverageRepository testCoverageRepository;
+
+    @BeforeClass
+    public static void createShards() {
+        ShardDataSourceProperties properties = new ShardDataSourceProperties();
+        for (String shard : SHARDS) {
+            createSchema(url(shard));
+            if (!shard.equals(properties.getPrimaryName())) {
+                ShardDataSourceProperties.Shard config = new ShardDataSourceProperties.Shard();
+                config.setUrl(url(shard));
+                config.setUsername("sa");
+                config.setMinimumIdle(1);
+                properties.getShards().put(shard, config);
+            }
+        }
+        primary = new HikariDataSource();
+        primary.setJdbcUrl(url("shard-0"));
+        primary.setUsername("sa");
+        primary.setPoolName("shard-test");
+
+        postProcessor = new ShardRoutingConfig.ShardRoutingPostProcessor(properties,
+            new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        DataSource routed = (DataSource) postProcessor.postProcessAfterInitialization(primary, "dataSource");
+
+        entityManagerFactory = entityManagerFactory(routed, "none");
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(SHARDS.size());
+        executor.initialize();
+        shardMap = new ShardMap(SHARDS, "shard-0", Collections.emptyMap());
+        scatterGather = new ShardScatterGather(shardMap, transactionManager, executor);
+        aspect = new ShardRoutingAspect(shardMap, () -> scatterGather, new SimpleMeterRegistry());
+
+        JpaRepositoryFactory factory = new JpaRepositoryFactory(
+            SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+        factory.addRepositoryProxyPostProcessor((proxyFactory, information) -> proxyFactory.addAdvice(
+            new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource())));
+        commitRepository = routed(factory.getRepository(CommitRepository.class), CommitRepository.class);
+        issueRepository = routed(factory.getRepository(IssueRepository.class), IssueRepository.class);
+        testCoverageRepository = routed(factory.getRepository(TestCoverageRepository.class), TestCoverageRepository.class);
+
+        for (int p = 0; p < PROJECTS; p++) {
+            List<Commit> commits = new ArrayList<>();
+            for (int i = 0; i < COMMITS_PER_PROJECT; i++) {
+                Commit commit = new Commit("sha-" + p + "-" + i, project(p), "dev" + (i % DEVELOPERS),
+                    "Developer " + (i % DEVELOPERS), BASE.plusHours(p * COMMITS_PER_PROJECT + i));
+                commit.setLinesAdded(10 + i);
+                commit.setLinesDeleted(i % 4);
+                commit.setFilesChanged(1 + i % 3);
+                commits.add(commit);
+            }
+            commitRepository.saveAll(commits);
+        }
+    }
+
+    @AfterClass
+    public static void closeShards() throws Exception {
+        entityManagerFactory.close();
+        executor.shutdown();
+        postProcessor.destroy();
+        primary.close();
+    }
+
+    @Before
+    public void setUp() {
+        assertNull(ShardRoutingDataSource.currentShard());
+    }
+
+    @Test
+    public void testCommitsArePhysicallyStoredOnTheirProjectShard() {
+        Set<String> usedShards = new HashSet<>();
+        for (String shard : SHARDS) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url(shard), "sa", ""));
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT project_id, COUNT(*) AS commit_count FROM commits GROUP BY project_id");
+            for (Map<String, Object> row : rows) {
+                assertEquals(shard, shardMap.shardFor((String) row.get("project_id")));
+                assertEquals(COMMITS_PER_PROJECT, ((Number) row.get("commit_count")).intValue());
+                usedShards.add(shard);
+            }
+        }
+        assertEquals("12 projects should spread over all 3 shards", SHARDS.size(), usedShards.size());
+    }
+
+    @Test
+    public void testProjectQueriesRouteToOwningShard() {
+        for (int p = 0; p < PROJECTS; p++) {
+            assertEquals(COMMITS_PER_PROJECT, commitRepository.findByProjectIdAndTimestampBetween(project(p), BASE, END).size());
+            assertEquals(COMMITS_PER_PROJECT, commitRepository.getProjectTotalStats(project(p), BASE, END).getCommitCount());
+        }
+    }
+
+    @Test
+    public void testMultiProjectQueryIsSplitAcrossShards() {
+        List<String> projects = new ArrayList<>();
+        for (int p = 0; p < PROJECTS; p++) {
+            projects.add(project(p));
+        }
+
+        List<ProjectCommitSummaryRow> rows = commitRepository.getCommitStatsByProjects(projects, BASE, END);
+
+        assertEquals(PROJECTS, rows.size());
+        for (ProjectCommitSummaryRow row : rows) {
+            assertEquals(COMMITS_PER_PROJECT, row.getCommitCount());
+        }
+    }
+
+    @Test
+    public void testLeaderboardMergesDeveloperStatsFromAllShards() {
+        CommitStatisticsService service = new CommitStatisticsService();
+        ReflectionTestUtils.setField(service, "commitRepository", commitRepository);
+        ReflectionTestUtils.setField(service, "shardScatterGather", scatterGather);
+
+        List<CommitStatisticsService.DeveloperCommitStats> stats = service.getDeveloperCommitStats(BASE, END, null, null);
+
+        assertEquals(DEVELOPERS, stats.size());
+        assertEquals(PROJECTS * COMMITS_PER_PROJECT,
+            stats.stream().mapToLong(CommitStatisticsService.DeveloperCommitStats::getCommitCount).sum());
+        for (int i = 1; i < stats.size(); i++) {
+            assertTrue(stats.get(i - 1).getCommitCount() >= stats.get(i).getCommitCount());
+        }
+    }
+
+    @Test
+    public void testUnroutedCallsScatterOrFailInsteadOfUsingDefaultShard() {
+        for (int p = 0; p < PROJECTS; p++) {
+            Optional<Commit> commit = commitRepository.findByCommitSha("sha-" + p + "-3");
+            assertTrue(commit.isPresent());
+            assertEquals(project(p), commit.get().getProjectId());
+        }
+        assertFalse(commitRepository.findByCommitSha("sha-missing").isPresent());
+        assertEquals(PROJECTS * COMMITS_PER_PROJECT, commitRepository.count());
+        // dev0 提交了每个项目的第 0、7、14、21、28 个提交
+        assertEquals(PROJECTS * 5, commitRepository.findByDeveloperIdAndTimestampBetween("dev0", BASE, END).size());
+
+        try {
+            commitRepository.findByDeveloperIdOrderByTimestampDesc("dev0");
+            fail("Expected ordered cross-shard query to be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("@ShardedByProject"));
+        }
+        assertNull(ShardRoutingDataSource.currentShard());
+    }
+
+    @Test
+    public void testHourlyTimeoutSweepAlertsOpenBugsOnAllShards() {
+        for (int p = 0; p < PROJECTS; p++) {
+            Issue bug = new Issue("bug-" + p, project(p), "Overdue bug", "dev0", "Developer 0",
+                LocalDateTime.now().minusHours(10 + p), "opened");
+            bug.setIssueType("bug");
+            bug.setSeverity("critical");
+            issueRepository.save(bug);
+        }
+        AlertService alertService = mock(AlertService.class);
+        BugFixEfficiencyService service = new BugFixEfficiencyService();
+        ReflectionTestUtils.setField(service, "issueRepository", issueRepository);
+        ReflectionTestUtils.setField(service, "alertService", alertService);
+        ReflectionTestUtils.setField(service, "shardScatterGather", scatterGather);
+        ReflectionTestUtils.setField(service, "criticalBugTimeoutHours", 4);
+
+        service.checkTimeoutBugsAndSendAlerts();
+
+        // 未限定项目的查询按创建时间排序，分片时不能直接执行；每个分片上的超时 Bug 都应告警
+        ArgumentCaptor<AlertService.Alert> alerts = ArgumentCaptor.forClass(AlertService.Alert.class);
+        verify(alertService, times(PROJECTS)).sendAlert(alerts.capture());
+        Set<String> alertedShards = new HashSet<>();
+        Set<String> alertedProjects = new HashSet<>();
+        for (AlertService.Alert alert : alerts.getAllValues()) {
+            alertedProjects.add(alert.getProjectId());
+            alertedShards.add(shardMap.shardFor(alert.getProjectId()));
+        }
+        assertEquals(PROJECTS, alertedProjects.size());
+        assertEquals(SHARDS.size(), alertedShards.size());
+        assertNull(ShardRoutingDataSource.currentShard());
+    }
+
+    @Test
+    public void testCoverageCleanupDeletesOnEveryShard() {
+        for (int p = 0; p < PROJECTS; p++) {
+            testCoverageRepository.save(new TestCoverage(project(p), "sha-" + p + "-0", BASE.minusDays(1)));
+            testCoverageRepository.save(new TestCoverage(project(p), "sha-" + p + "-1", END));
+        }
+        assertEquals(PROJECTS * 2, testCoverageRepository.count());
+        TestCoverageService service = new TestCoverageService();
+        ReflectionTestUtils.setField(service, "testCoverageRepository", testCoverageRepository);
+        ReflectionTestUtils.setField(service, "shardScatterGather", scatterGather);
+
+        service.cleanupOldCoverageRecords(BASE);
+
+        assertEquals(PROJECTS, testCoverageRepository.count());
+        assertNull(ShardRoutingDataSource.currentShard());
+    }
+
+    @Test
+    public void testCrossShardAccessInOneTransactionIsRejected() {
+        String first = project(0);
+        String other = null;
+        for (int p = 1; p < PROJECTS && other == null; p++) {
+            if (!shardMap.shardFor(project(p)).equals(shardMap.shardFor(first))) {
+                other = project(p);
+            }
+        }
+        String second = other;
+
+        try {
+            transactionTemplate.execute(status -> {
+                commitRepository.findByProjectIdAndTimestampBetween(first, BASE, END);
+                return commitRepository.findByProjectIdAndTimestampBetween(second, BASE, END);
+            });
+            fail("Expected cross-shard access to be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Cross-shard"));
+        }
+
+        Commit a = new Commit("sha-mixed-a", first, "dev0", "Developer 0", BASE);
+        Commit b = new Commit("sha-mixed-b", second, "dev0", "Developer 0", BASE);
+        try {
+            commitRepository.saveAll(Arrays.asList(a, b));
+            fail("Expected mixed-shard batch to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("different shards"));
+        }
+        assertNull(ShardRoutingDataSource.currentShard());
+    }
+
+    @Test
+    public void testShardedByProjectBindsServiceMethod() {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new ShardProbe());
+        proxyFactory.addAspect(aspect);
+        ShardProbe probe = proxyFactory.getProxy();
+
+        for (int p = 0; p < PROJECTS; p++) {
+            assertEquals(shardMap.shardFor(project(p)), probe.currentShard(project(p)));
+        }
+        assertNull(probe.currentShard(null));
+    }
+
+    @Test
+    public void testAssignmentsOverrideHashAndNewShardOnlyTakesItsShare() {
+        Map<String, String> assignments = new HashMap<>();
+        assignments.put("pinned", "shard-2");
+        ShardMap pinned = new ShardMap(SHARDS, "shard-0", assignments);
+        assertEquals("shard-2", pinned.shardFor("pinned"));
+        assertEquals("shard-0", pinned.shardFor(null));
+
+        List<String> grown = new ArrayList<>(SHARDS);
+        grown.add("shard-3");
+        ShardMap expanded = new ShardMap(grown, "shard-0", Collections.emptyMap());
+        int moved = 0;
+        int total = 4000;
+        for (int i = 0; i < total; i++) {
+            String before = shardMap.shardFor(String.valueOf(i));
+            String after = expanded.shardFor(String.valueOf(i));
+            if (!before.equals(after)) {
+                assertEquals("Projects may only move to the new shard", "shard-3", after);
+                moved++;
+            }
+        }
+        assertTrue("Moved " + moved, moved > total / 4 * 0.8 && moved < total / 4 * 1.2);
+
+        try {
+            new ShardMap(SHARDS, "shard-0", Collections.singletonMap("p", "shard-9"));
+            fail("Expected unknown shard to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public static class ShardProbe {
+
+        @ShardedByProject("#projectId")
+        public String currentShard(String projectId) {
+            return ShardRoutingDataSource.currentShard();
+        }
+    }
+
+    private static <T> T routed(T repository, Class<T> type) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(repository);
+        proxyFactory.addInterface(type);
+        proxyFactory.addAspect(aspect);
+        return proxyFactory.getProxy();
+    }
+
+    private static void createSchema(String url) {
+        entityManagerFactory(new DriverManagerDataSource(url, "sa", ""), "create").close();
+    }
+
+    private static EntityManagerFactory entityManagerFactory(DataSource dataSource, String ddl) {
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.gitlab.metrics.entity");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hbm2ddl.auto", ddl);
+        properties.put("hibernate.dialect", ProjectionQueryBenchmarkTest.MetricsH2Dialect.class.getName());
+        properties.put("javax.persistence.validation.mode", "none");
+        properties.put("hibernate.physical_naming_strategy",
+            "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy");
+        properties.put("hibernate.implicit_naming_strategy",
+            "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy");
+        factoryBean.setJpaPropertyMap(properties);
+        factoryBean.afterPropertiesSet();
+        return factoryBean.getObject();
+    }
+
+    private static String url(String shard) {
+        return "jdbc:h2:mem:shard-routing-" + shard + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static String project(int index) {
+        return String.valueOf(1000 + index);
+    }
+}
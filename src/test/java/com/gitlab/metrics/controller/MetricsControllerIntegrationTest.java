@@ -7,7 +7,13 @@ import com.gitlab.metrics.repository.QualityMetricsRepository;
 import com.gitlab.metrics.repository.TestCoverageRepository;
 import com.gitlab.metrics.service.CommitStatisticsService;
 import com.gitlab.metrics.service.DashboardService;
+import com.gitlab.metrics.service.OptimizedQueryService;
+import com.gitlab.metrics.service.ProjectComparisonService;
+import com.gitlab.metrics.service.QualityMetricsService;
 import com.gitlab.metrics.service.TestCoverageService;
+import com.gitlab.metrics.service.approx.ApproximateQueryService;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
+import com.gitlab.metrics.service.realtime.RealtimePushPublisher;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -57,6 +63,24 @@ public class MetricsControllerIntegrationTest {
     @MockBean
     private DashboardService dashboardService;
 
+    @MockBean
+    private ProjectComparisonService projectComparisonService;
+
+    @MockBean
+    private RealtimeCounterService realtimeCounterService;
+
+    @MockBean
+    private RealtimePushPublisher realtimePushPublisher;
+
+    @MockBean
+    private OptimizedQueryService optimizedQueryService;
+
+    @MockBean
+    private QualityMetricsService qualityMetricsService;
+
+    @MockBean
+    private ApproximateQueryService approximateQueryService;
+
     private LocalDateTime startDate;
     private LocalDateTime endDate;
     private String projectId;
@@ -269,6 +293,27 @@ public class MetricsControllerIntegrationTest {
         verify(dashboardService).getDashboardData(eq(projectId), any(LocalDateTime.class), any(LocalDateTime.class), eq("30d"));
     }
 
+    @Test
+    public void testGetQualityTrends_ClampsMaxPoints() throws Exception {
+        // Given
+        when(optimizedQueryService.getOptimizedQualityTrends(eq(projectId), any(LocalDateTime.class), any(LocalDateTime.class),
+                eq("auto"), anyInt()))
+            .thenReturn(Collections.emptyList());
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/metrics/quality/trends")
+                .param("projectId", projectId)
+                .param("timeRange", "1y")
+                .param("maxPoints", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("WEEK"))
+                .andExpect(jsonPath("$.points").isArray());
+
+        verify(optimizedQueryService).getOptimizedQualityTrends(eq(projectId), any(LocalDateTime.class), any(LocalDateTime.class),
+            eq("auto"), eq(3));
+    }
+
     @Test
     public void testGetProjectOverview_Success() throws Exception {
         // Given
@@ -305,19 +350,14 @@ public class MetricsControllerIntegrationTest {
     public void testCompareProjects_Success() throws Exception {
         // Given
         String projectIds = "project1,project2";
-        CommitStatisticsService.ProjectTotalStats commitStats = createMockProjectTotalStats();
-        List<CommitStatisticsService.DeveloperCommitStats> developerStats = createMockDeveloperStats();
-        List<QualityMetrics> latestQuality = createMockQualityMetrics();
-        TestCoverage latestCoverage = createMockTestCoverage().get(0);
+        ProjectComparisonService.ComparisonResult result = new ProjectComparisonService.ComparisonResult();
+        result.setProjects(Arrays.asList(
+            new ProjectComparisonService.ProjectComparison("project1"),
+            new ProjectComparisonService.ProjectComparison("project2")));
+        result.getQueryTimings().put("commitStats", 3L);
 
-        when(commitStatisticsService.getProjectTotalStats(anyString(), any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(commitStats);
-        when(commitStatisticsService.getDeveloperCommitStats(any(LocalDateTime.class), any(LocalDateTime.class), anyString(), isNull()))
-            .thenReturn(developerStats);
-        when(qualityMetricsRepository.findLatestByProject(anyString()))
-            .thenReturn(latestQuality);
-        when(testCoverageService.getLatestCoverage(anyString()))
-            .thenReturn(Optional.of(latestCoverage));
+        when(projectComparisonService.compareProjects(anyCollection(), any(LocalDateTime.class), any(LocalDateTime.class)))
+            .thenReturn(result);
 
         // When & Then
         mockMvc.perform(get("/api/v1/metrics/compare")
@@ -328,9 +368,12 @@ public class MetricsControllerIntegrationTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.timeRange").value("30d"))
                 .andExpect(jsonPath("$.projects").isArray())
-                .andExpect(jsonPath("$.projects").isNotEmpty());
+                .andExpect(jsonPath("$.projects").isNotEmpty())
+                .andExpect(jsonPath("$.queryTimings.commitStats").value(3));
 
-        verify(commitStatisticsService, times(2)).getProjectTotalStats(anyString(), any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(projectComparisonService).compareProjects(eq(Arrays.asList("project1", "project2")),
+            any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(commitStatisticsService, never()).getProjectTotalStats(anyString(), any(LocalDateTime.class), any(LocalDateTime.class));
     }
 
     @Test
@@ -358,19 +401,15 @@ public class MetricsControllerIntegrationTest {
     @Test
     public void testGetRealtimeStats_Success() throws Exception {
         // Given
-        List<CommitStatisticsService.ProjectCommitStats> todayCommits = createMockProjectStats();
-        List<CommitStatisticsService.DeveloperCommitStats> todayDevelopers = createMockDeveloperStats();
-        List<QualityMetrics> recentFailures = createMockQualityMetrics();
-        List<TestCoverage> coverageFailures = createMockTestCoverage();
-
-        when(commitStatisticsService.getProjectCommitStats(any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(todayCommits);
-        when(commitStatisticsService.getDeveloperCommitStats(any(LocalDateTime.class), any(LocalDateTime.class), isNull(), isNull()))
-            .thenReturn(todayDevelopers);
-        when(qualityMetricsRepository.findFailedQualityGates(any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(recentFailures);
-        when(testCoverageRepository.findFailedCoverageRecords(any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(coverageFailures);
+        RealtimeCounterService.RealtimeSnapshot snapshot = new RealtimeCounterService.RealtimeSnapshot();
+        snapshot.setTimestamp(LocalDateTime.now());
+        snapshot.setDate(LocalDateTime.now().toLocalDate());
+        snapshot.setTodayCommits(12);
+        snapshot.setActiveProjects(3);
+        snapshot.setActiveDevelopers(5);
+        snapshot.setQualityGateFailures(1);
+        snapshot.setCoverageFailures(2);
+        when(realtimeCounterService.snapshot()).thenReturn(snapshot);
 
         // When & Then
         mockMvc.perform(get("/api/v1/metrics/realtime")
@@ -379,14 +418,14 @@ public class MetricsControllerIntegrationTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.timestamp").exists())
                 .andExpect(jsonPath("$.date").exists())
-                .andExpect(jsonPath("$.todayCommits").isNumber())
-                .andExpect(jsonPath("$.activeProjects").isNumber())
-                .andExpect(jsonPath("$.activeDevelopers").isNumber())
-                .andExpect(jsonPath("$.qualityGateFailures").isNumber())
-                .andExpect(jsonPath("$.coverageFailures").isNumber());
-
-        verify(commitStatisticsService).getProjectCommitStats(any(LocalDateTime.class), any(LocalDateTime.class));
-        verify(commitStatisticsService).getDeveloperCommitStats(any(LocalDateTime.class), any(LocalDateTime.class), isNull(), isNull());
+                .andExpect(jsonPath("$.todayCommits").value(12))
+                .andExpect(jsonPath("$.activeProjects").value(3))
+                .andExpect(jsonPath("$.activeDevelopers").value(5))
+                .andExpect(jsonPath("$.qualityGateFailures").value(1))
+                .andExpect(jsonPath("$.coverageFailures").value(2));
+
+        verify(realtimeCounterService).snapshot();
+        verifyNoInteractions(commitStatisticsService, qualityMetricsRepository, testCoverageRepository);
     }
 
     @Test
@@ -0,0 +1,76 @@
+package com.gitlab.metrics.controller;
+
+import com.gitlab.metrics.config.HttpsSecurityConfig;
+import com.gitlab.metrics.config.MethodSecurityConfig;
+import com.gitlab.metrics.service.ParkingLotService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * ParkingLotController访问控制测试
+ * 使用生产环境的安全配置，验证删除和重放接口只对 ADMIN 角色开放
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(ParkingLotController.class)
+@Import({HttpsSecurityConfig.class, MethodSecurityConfig.class})
+@ActiveProfiles("prod")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class ParkingLotControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ParkingLotService parkingLotService;
+
+    @Test
+    public void testAnonymousPurgeIsRejected() throws Exception {
+        mockMvc.perform(delete("/api/admin/parking-lot").param("queue", "commit.analysis"))
+            .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(parkingLotService);
+    }
+
+    @Test
+    public void testAnonymousReplayIsRejected() throws Exception {
+        mockMvc.perform(post("/api/admin/parking-lot/replay"))
+            .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(parkingLotService);
+    }
+
+    @Test
+    @WithMockUser
+    public void testNonAdminPurgeIsForbidden() throws Exception {
+        mockMvc.perform(delete("/api/admin/parking-lot"))
+            .andExpect(status().isForbidden());
+
+        verifyNoInteractions(parkingLotService);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    public void testAdminCanPurge() throws Exception {
+        when(parkingLotService.purge(eq("commit.analysis"), anyInt())).thenReturn(3);
+
+        mockMvc.perform(delete("/api/admin/parking-lot").param("queue", "commit.analysis"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.purged").value(3));
+
+        verify(parkingLotService).purge("commit.analysis", 100);
+    }
+}
@@ -1,6 +1,7 @@
 package com.gitlab.metrics.controller;
 
 import com.gitlab.metrics.exception.WebhookValidationException;
+import com.gitlab.metrics.messaging.EventTransport;
 import com.gitlab.metrics.security.WebhookSecurityValidator;
 import com.gitlab.metrics.service.webhook.WebhookEventDispatcher;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -28,6 +29,9 @@ public class WebhookControllerTest {
     @Mock
     private WebhookEventDispatcher eventDispatcher;
     
+    @Mock
+    private EventTransport eventTransport;
+    
     @InjectMocks
     private WebhookController webhookController;
     
@@ -62,7 +66,7 @@ public class WebhookControllerTest {
         
         verify(securityValidator).validateWebhook(token, payload);
         verify(securityValidator).isValidEventType(eventType);
-        verify(eventDispatcher).dispatchEvent(eq(eventType), eq(payload), anyString());
+        verify(eventDispatcher).dispatchEvent(eq(eventType), eq(payload), anyString(), anyLong());
     }
     
     @Test
@@ -171,7 +175,31 @@ public class WebhookControllerTest {
         
         verify(securityValidator).validateWebhook(token, payload);
         verify(securityValidator).isValidEventType(eventType);
-        verify(eventDispatcher).dispatchEvent(eq(eventType), eq(payload), eq(eventUuid));
+        verify(eventDispatcher).dispatchEvent(eq(eventType), eq(payload), eq(eventUuid), anyLong());
+    }
+    
+    @Test
+    public void testHandleGitLabWebhook_TransportSaturated() throws Exception {
+        // Given
+        String token = "test-token";
+        String eventType = "push";
+        String payload = "{\"object_kind\":\"push\"}";
+        
+        when(securityValidator.validateWebhook(token, payload)).thenReturn(true);
+        when(securityValidator.isValidEventType(eventType)).thenReturn(true);
+        when(eventTransport.isSaturated()).thenReturn(true);
+        
+        // When & Then
+        mockMvc.perform(post("/api/webhook/gitlab")
+                .header("X-Gitlab-Token", token)
+                .header("X-Gitlab-Event", eventType)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"))
+                .andExpect(jsonPath("$.status").value("error"));
+        
+        verify(eventDispatcher, never()).dispatchEvent(anyString(), anyString(), anyString(), anyLong());
     }
     
     @Test
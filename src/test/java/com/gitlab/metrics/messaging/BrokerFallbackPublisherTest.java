@@ -0,0 +1,309 @@
+package com.gitlab.metrics.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.BrokerFallbackProperties;
+import com.gitlab.metrics.config.CircuitBreakerConfig;
+import com.gitlab.metrics.config.EventPublisherProperties;
+import com.gitlab.metrics.exception.EventPublishException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.AmqpMessageReturnedException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BrokerFallbackPublisher测试
+ * 委托发布器和重放发送器为 mock，磁盘队列使用临时目录；最后一个用例连接本地 RabbitMQ 模拟 broker 中断
+ */
+public class BrokerFallbackPublisherTest {
+
+    private static final String QUEUE = "commit.analysis.queue";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfirmingEventPublisher delegate;
+    private ConfirmedSender replaySender;
+    private CircuitBreakerConfig.CircuitBreaker circuitBreaker;
+    private BrokerFallbackProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private SegmentSpool spool;
+    private BrokerFallbackPublisher publisher;
+
+    @Before
+    public void setUp() throws IOException {
+        delegate = mock(ConfirmingEventPublisher.class);
+        replaySender = mock(ConfirmedSender.class);
+        circuitBreaker = new CircuitBreakerConfig.CircuitBreaker("rabbitmq-publish", 1, 0);
+        properties = new BrokerFallbackProperties();
+        properties.setReplayRatePerSecond(3);
+        properties.setReplayIntervalMs(1000);
+        properties.setReplayBatchSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        spool = new SegmentSpool(folder.getRoot().toPath(), 1024, 1 << 20, false);
+        publisher = new BrokerFallbackPublisher(delegate, new Jackson2JsonMessageConverter(), new ObjectMapper(),
+            spool, replaySender, circuitBreaker, properties, meterRegistry);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        publisher.close();
+    }
+
+    @Test
+    public void testBrokerFailuresAreSpooledAndOpenCircuit() throws Exception {
+        when(delegate.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(failed(new AmqpConnectException(new java.net.ConnectException("Connection refused"))));
+
+        publisher.publishToQueue(QUEUE, "event-0").get(1, TimeUnit.SECONDS);
+        publisher.publishToQueue(QUEUE, "event-1").get(1, TimeUnit.SECONDS);
+
+        verify(delegate, times(1)).publish(anyString(), anyString(), any(Object.class));
+        assertEquals(CircuitBreakerConfig.State.OPEN, publisher.getCircuitState());
+        assertEquals(2, publisher.getSpoolDepth());
+        assertEquals(2.0, meterRegistry.get("messaging.fallback.spooled").counter().count(), 0.0);
+        assertEquals(2.0, meterRegistry.get("messaging.fallback.depth").gauge().value(), 0.0);
+        assertEquals(1.0, meterRegistry.get("messaging.fallback.circuit.open").gauge().value(), 0.0);
+    }
+
+    @Test
+    public void testNewEventsQueueBehindSpooledEvents() throws Exception {
+        when(delegate.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(failed(new EventPublishException("timeout", 3, "No confirm")))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        publisher.publishToQueue(QUEUE, "event-0").get(1, TimeUnit.SECONDS);
+        publisher.publishToQueue(QUEUE, "event-1").get(1, TimeUnit.SECONDS);
+
+        verify(delegate, times(1)).publish(anyString(), anyString(), any(Object.class));
+        assertEquals("spool is not empty, so event-1 must wait behind event-0", 2, publisher.getSpoolDepth());
+    }
+
+    @Test
+    public void testUnroutableEventIsNotSpooled() throws Exception {
+        when(delegate.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(failed(new EventPublishException("returned", 1, "NO_ROUTE")));
+
+        try {
+            publisher.publish("gitlab.events.exchange", "unbound", "event").get(1, TimeUnit.SECONDS);
+            fail("Expected unroutable publish to fail");
+        } catch (ExecutionException e) {
+            assertEquals("returned", ((EventPublishException) e.getCause()).getReason());
+        }
+        assertEquals(0, publisher.getSpoolDepth());
+        assertEquals(CircuitBreakerConfig.State.CLOSED, publisher.getCircuitState());
+    }
+
+    @Test
+    public void testReplayKeepsOrderAndRespectsRateBudget() throws Exception {
+        spoolEvents(5);
+        List<String> sent = captureReplay();
+
+        assertEquals(3, publisher.replay());
+        assertEquals(2, publisher.getSpoolDepth());
+        assertEquals(2, publisher.replay());
+        assertEquals(0, publisher.getSpoolDepth());
+
+        assertEquals(expectedEvents(5), sent);
+        assertEquals(5.0, meterRegistry.get("messaging.fallback.replayed").counter().count(), 0.0);
+        assertEquals(CircuitBreakerConfig.State.CLOSED, publisher.getCircuitState());
+    }
+
+    @Test
+    public void testReplayStopsOnBrokerFailureAndResumesInOrder() throws Exception {
+        spoolEvents(3);
+        List<String> sent = new ArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(body(invocation.getArgument(2)));
+            return null;
+        }).doThrow(new AmqpTimeoutException("No confirm"))
+            .doAnswer(invocation -> {
+                sent.add(body(invocation.getArgument(2)));
+                return null;
+            })
+            .when(replaySender).send(anyString(), anyString(), any(Message.class));
+
+        assertEquals(1, publisher.replay());
+        assertEquals(CircuitBreakerConfig.State.OPEN, publisher.getCircuitState());
+        assertEquals(2, publisher.getSpoolDepth());
+        awaitOpenTimeout();
+        assertEquals(2, publisher.replay());
+
+        assertEquals(expectedEvents(3), sent);
+        assertEquals(0, publisher.getSpoolDepth());
+    }
+
+    @Test
+    public void testReturnedEventIsDroppedOnReplay() throws Exception {
+        spoolEvents(2);
+        ReturnedMessage returned = new ReturnedMessage(new Message(new byte[0], new MessageProperties()),
+            312, "NO_ROUTE", "", QUEUE);
+        doThrow(new AmqpMessageReturnedException("Returned", returned))
+            .doNothing()
+            .when(replaySender).send(anyString(), anyString(), any(Message.class));
+
+        assertEquals(2, publisher.replay());
+        assertEquals(0, publisher.getSpoolDepth());
+        assertEquals(1.0, meterRegistry.get("messaging.fallback.replayed").counter().count(), 0.0);
+        assertEquals(1.0, meterRegistry.get("messaging.fallback.dropped").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testSpoolRecordRoundTripsMessageProperties() throws Exception {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(EventEnvelopeMessageConverter.CONTENT_TYPE_SMILE);
+        messageProperties.setTimestamp(new java.util.Date(1700000000000L));
+        messageProperties.setHeader("x-envelope-version", 1);
+        messageProperties.setHeader("x-event-type", "push");
+        Message message = new Message("\"payload\"".getBytes(StandardCharsets.UTF_8), messageProperties);
+
+        BrokerFallbackPublisher.SpooledMessage decoded =
+            publisher.decode(publisher.encode("gitlab.events.exchange", "gitlab.event.push", message));
+
+        assertEquals("gitlab.events.exchange", decoded.exchange);
+        assertEquals("gitlab.event.push", decoded.routingKey);
+        MessageProperties restored = decoded.message.getMessageProperties();
+        assertEquals(EventEnvelopeMessageConverter.CONTENT_TYPE_SMILE, restored.getContentType());
+        assertEquals(1700000000000L, restored.getTimestamp().getTime());
+        assertEquals(1, ((Number) restored.getHeaders().get("x-envelope-version")).intValue());
+        assertEquals("push", restored.getHeaders().get("x-event-type"));
+        assertEquals("payload", body(decoded.message));
+    }
+
+    @Test
+    public void testBrokerLossWithLocalBroker() throws Exception {
+        Assume.assumeTrue("RabbitMQ not reachable on localhost:5672", brokerReachable());
+
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory("localhost", 5672);
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        connectionFactory.setPublisherReturns(true);
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        String queue = admin.declareQueue().getName();
+
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMandatory(true);
+        EventPublisherProperties publisherProperties = new EventPublisherProperties();
+        publisherProperties.setConfirmTimeoutMs(1000);
+        publisherProperties.setMaxAttempts(1);
+        ConfirmingEventPublisher brokerPublisher =
+            new ConfirmingEventPublisher(template, publisherProperties, true, meterRegistry);
+        brokerPublisher.start();
+        BrokerFallbackPublisher fallback = new BrokerFallbackPublisher(brokerPublisher,
+            new Jackson2JsonMessageConverter(), new ObjectMapper(), spool,
+            new ConfirmedSender(template, true, 2000), circuitBreaker, properties, meterRegistry);
+        try {
+            // broker 中断：连接切到无人监听的端口
+            connectionFactory.setPort(1);
+            connectionFactory.resetConnection();
+            for (int i = 0; i < 5; i++) {
+                fallback.publishToQueue(queue, "event-" + i).get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(CircuitBreakerConfig.State.OPEN, fallback.getCircuitState());
+            assertEquals(5, fallback.getSpoolDepth());
+            awaitOpenTimeout();
+
+            // broker 恢复
+            connectionFactory.setPort(5672);
+            connectionFactory.resetConnection();
+            while (fallback.getSpoolDepth() > 0) {
+                fallback.replay();
+                awaitOpenTimeout();
+            }
+
+            List<String> received = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Message message = template.receive(queue, 2000);
+                assertNotNull(message);
+                received.add(new ObjectMapper().readValue(message.getBody(), String.class));
+            }
+            assertEquals(expectedEvents(5), received);
+        } finally {
+            brokerPublisher.shutdown();
+            admin.deleteQueue(queue);
+            connectionFactory.destroy();
+        }
+    }
+
+    // Helper methods
+
+    private void spoolEvents(int count) throws Exception {
+        when(delegate.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(failed(new EventPublishException("nack", 3, "Broker nack")));
+        for (int i = 0; i < count; i++) {
+            publisher.publishToQueue(QUEUE, "event-" + i).get(1, TimeUnit.SECONDS);
+        }
+        verify(delegate, times(1)).publish(anyString(), anyString(), any(Object.class));
+        awaitOpenTimeout();
+    }
+
+    /**
+     * 熔断器打开超时为 0，跨过当前毫秒后即允许重放探测
+     */
+    private static void awaitOpenTimeout() throws InterruptedException {
+        Thread.sleep(5);
+    }
+
+    private List<String> captureReplay() {
+        List<String> sent = new ArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(body(invocation.getArgument(2)));
+            return null;
+        }).when(replaySender).send(anyString(), anyString(), any(Message.class));
+        return sent;
+    }
+
+    private static String body(Message message) {
+        String json = new String(message.getBody(), StandardCharsets.UTF_8);
+        return json.substring(1, json.length() - 1);
+    }
+
+    private static List<String> expectedEvents(int count) {
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add("event-" + i);
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    private static CompletableFuture<Void> failed(Throwable error) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static boolean brokerReachable() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 5672), 500);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
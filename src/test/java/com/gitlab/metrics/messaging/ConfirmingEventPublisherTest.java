@@ -0,0 +1,279 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.EventPublisherProperties;
+import com.gitlab.metrics.exception.EventPublishException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ConfirmingEventPublisher测试
+ * RabbitTemplate 为 mock：invoke 直接回调自身，发布的 CorrelationData 进入队列，由测试模拟 broker 的 ack/nack
+ */
+public class ConfirmingEventPublisherTest {
+
+    private RabbitTemplate rabbitTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private EventPublisherProperties properties;
+    private ConfirmingEventPublisher publisher;
+
+    private final BlockingQueue<CorrelationData> published = new LinkedBlockingQueue<>();
+    private final AtomicInteger invokeCount = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new EventPublisherProperties();
+        properties.setChannels(1);
+        properties.setBatchSize(10);
+        properties.setLingerMs(20);
+        properties.setMaxInFlight(100);
+        properties.setRetryBackoffMs(10);
+        properties.setMaxRetryBackoffMs(50);
+        properties.setShutdownTimeoutMs(2000);
+
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            invokeCount.incrementAndGet();
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(rabbitTemplate);
+        });
+        doAnswer(invocation -> {
+            published.add(invocation.getArgument(3));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    public void testMessagesArePublishedInBatchesAndCompletedOnAck() throws Exception {
+        properties.setLingerMs(200);
+        start(true);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(publisher.publishToQueue("commit.analysis.queue", "event-" + i));
+        }
+        ackAll(25);
+
+        for (CompletableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals("25 messages in batches of 10", 3, invokeCount.get());
+        assertEquals(25.0, meterRegistry.get("messaging.publish.confirmed").counter().count(), 0.0);
+        assertEquals(25, meterRegistry.get("messaging.publish.latency").tag("target", "commit.analysis.queue").timer().count());
+        assertEquals(0, publisher.getInFlight());
+    }
+
+    @Test
+    public void testInFlightWindowBoundsUnconfirmedMessages() throws Exception {
+        properties.setBatchSize(5);
+        properties.setMaxInFlight(10);
+        properties.setLingerMs(0);
+        start(true);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(publisher.publishToQueue("queue", "event-" + i));
+        }
+
+        await(() -> published.size() == 10);
+        Thread.sleep(100);
+        assertEquals("window holds further sends until confirms arrive", 10, published.size());
+        assertEquals(10.0, meterRegistry.get("messaging.publish.inflight").gauge().value(), 0.0);
+
+        ackAll(30);
+        for (CompletableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testNackIsRetriedWithNewCorrelation() throws Exception {
+        start(true);
+
+        CompletableFuture<Void> future = publisher.publishToQueue("queue", "event");
+        CorrelationData first = next();
+        first.getFuture().set(new CorrelationData.Confirm(false, "queue full"));
+        CorrelationData second = next();
+        second.getFuture().set(new CorrelationData.Confirm(true, null));
+
+        future.get(5, TimeUnit.SECONDS);
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(1.0, meterRegistry.get("messaging.publish.nacked").counter().count(), 0.0);
+        assertEquals(1.0, meterRegistry.get("messaging.publish.retried").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testRepeatedNacksFailAfterMaxAttempts() throws Exception {
+        properties.setMaxAttempts(3);
+        start(true);
+
+        CompletableFuture<Void> future = publisher.publishToQueue("queue", "event");
+        for (int i = 0; i < 3; i++) {
+            next().getFuture().set(new CorrelationData.Confirm(false, "rejected"));
+        }
+
+        EventPublishException error = failure(future);
+        assertEquals("nack", error.getReason());
+        assertEquals(3, error.getAttempts());
+        assertEquals(1.0, meterRegistry.get("messaging.publish.failed").tag("reason", "nack").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testReturnedMessageFailsWithoutRetry() throws Exception {
+        start(true);
+
+        CompletableFuture<Void> future = publisher.publish("gitlab.events.exchange", "alert.notification", "alert");
+        CorrelationData correlation = next();
+        correlation.setReturned(new ReturnedMessage(new Message(new byte[0], new MessageProperties()),
+            312, "NO_ROUTE", "gitlab.events.exchange", "alert.notification"));
+        correlation.getFuture().set(new CorrelationData.Confirm(true, null));
+
+        EventPublishException error = failure(future);
+        assertEquals("returned", error.getReason());
+        assertNull("no resend for unroutable messages", published.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConnectionFailureIsRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new AmqpConnectException(new ConnectException("Connection refused"));
+            }
+            published.add(invocation.getArgument(3));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+        start(true);
+
+        CompletableFuture<Void> future = publisher.publishToQueue("queue", "event");
+        next().getFuture().set(new CorrelationData.Confirm(true, null));
+
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testMissingConfirmTimesOutAndIsRetried() throws Exception {
+        properties.setConfirmTimeoutMs(200);
+        start(true);
+
+        CompletableFuture<Void> future = publisher.publishToQueue("queue", "event");
+        CorrelationData lost = next();
+        CorrelationData retried = published.poll(5, TimeUnit.SECONDS);
+        assertNotNull("timed out message is resent", retried);
+        retried.getFuture().set(new CorrelationData.Confirm(true, null));
+        // 迟到的确认被忽略
+        lost.getFuture().set(new CorrelationData.Confirm(false, "late"));
+
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, meterRegistry.get("messaging.publish.retried").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testFullBufferRejectsPublish() throws Exception {
+        properties.setMaxPending(2);
+        properties.setEnqueueTimeoutMs(10);
+        start(true);
+
+        CompletableFuture<Void> first = publisher.publishToQueue("queue", "a");
+        CompletableFuture<Void> second = publisher.publishToQueue("queue", "b");
+        CompletableFuture<Void> third = publisher.publishToQueue("queue", "c");
+
+        assertEquals("rejected", failure(third).getReason());
+        ackAll(2);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        publisher.publishToQueue("queue", "d");
+        assertNotNull("space is released once messages are confirmed", published.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWithoutConfirmsMessagesCompleteOnceWritten() throws Exception {
+        start(false);
+
+        publisher.publishToQueue("queue", "event").get(5, TimeUnit.SECONDS);
+        assertEquals(0, publisher.getInFlight());
+    }
+
+    @Test
+    public void testShutdownFailsUnconfirmedMessages() throws Exception {
+        properties.setShutdownTimeoutMs(200);
+        start(true);
+
+        CompletableFuture<Void> future = publisher.publishToQueue("queue", "event");
+        next();
+        publisher.shutdown();
+
+        assertEquals("shutdown", failure(future).getReason());
+        assertEquals("shutdown", failure(publisher.publishToQueue("queue", "late")).getReason());
+    }
+
+    // Helper methods
+
+    private void start(boolean confirms) {
+        publisher = new ConfirmingEventPublisher(rabbitTemplate, properties, confirms, meterRegistry);
+        publisher.start();
+    }
+
+    private CorrelationData next() throws InterruptedException {
+        CorrelationData correlation = published.poll(5, TimeUnit.SECONDS);
+        assertNotNull("expected a published message", correlation);
+        return correlation;
+    }
+
+    private void ackAll(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            next().getFuture().set(new CorrelationData.Confirm(true, null));
+        }
+    }
+
+    private EventPublishException failure(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EventPublishException);
+            return (EventPublishException) e.getCause();
+        }
+        fail("expected publish to fail");
+        return null;
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,195 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.MessageRetryProperties;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import com.gitlab.metrics.exception.DataProcessingException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DelayedRetryInterceptor单元测试
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DelayedRetryInterceptorTest {
+
+    private static final String QUEUE = RabbitMQConfig.COMMIT_ANALYSIS_QUEUE;
+
+    @Mock
+    private ConfirmedSender sender;
+
+    @Mock
+    private MethodInvocation invocation;
+
+    private MessageRetryProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private DelayedRetryInterceptor interceptor;
+    private Message message;
+
+    @Before
+    public void setUp() {
+        properties = new MessageRetryProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new DelayedRetryInterceptor(properties, sender, meterRegistry);
+
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setConsumerQueue(QUEUE);
+        messageProperties.setDeliveryMode(null);
+        message = new Message("{\"type\":\"push\"}".getBytes(), messageProperties);
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message });
+    }
+
+    @Test
+    public void testSuccessIsPassedThrough() throws Throwable {
+        when(invocation.proceed()).thenReturn("done");
+
+        assertEquals("done", interceptor.invoke(invocation));
+
+        verifyNoInteractions(sender);
+    }
+
+    @Test
+    public void testFirstFailureGoesToFirstTier() throws Throwable {
+        when(invocation.proceed()).thenThrow(listenerFailure(new DataProcessingException("db down")));
+
+        assertNull(interceptor.invoke(invocation));
+
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(sender).send(eq("retry.delay.5000ms"), eq(QUEUE), sent.capture());
+        MessageProperties headers = sent.getValue().getMessageProperties();
+        assertEquals(1, headers.getHeaders().get(DelayedRetryInterceptor.ATTEMPTS_HEADER));
+        assertEquals(QUEUE, headers.getHeaders().get(DelayedRetryInterceptor.ORIGINAL_QUEUE_HEADER));
+        assertEquals(DataProcessingException.class.getName(), headers.getHeaders().get(DelayedRetryInterceptor.EXCEPTION_TYPE_HEADER));
+        assertEquals("db down", headers.getHeaders().get(DelayedRetryInterceptor.EXCEPTION_MESSAGE_HEADER));
+        assertEquals(MessageDeliveryMode.PERSISTENT, headers.getDeliveryMode());
+        assertEquals(1.0, meterRegistry.get("messaging.retry.scheduled").tag("queue", QUEUE).tag("delay", "5000ms")
+            .counter().count(), 0.0);
+    }
+
+    @Test
+    public void testLaterFailuresUseLongerTiersAndStayOnTheLast() throws Throwable {
+        when(invocation.proceed()).thenThrow(new DataProcessingException("still down"));
+        properties.setMaxAttempts(10);
+
+        message.getMessageProperties().setHeader(DelayedRetryInterceptor.ATTEMPTS_HEADER, 1);
+        interceptor.invoke(invocation);
+        verify(sender).send(eq("retry.delay.30000ms"), eq(QUEUE), any(Message.class));
+
+        message.getMessageProperties().setHeader(DelayedRetryInterceptor.ATTEMPTS_HEADER, 6);
+        interceptor.invoke(invocation);
+        verify(sender).send(eq("retry.delay.300000ms"), eq(QUEUE), any(Message.class));
+    }
+
+    @Test
+    public void testFirstFailedAtIsKeptAcrossAttempts() throws Throwable {
+        when(invocation.proceed()).thenThrow(new DataProcessingException("still down"));
+        message.getMessageProperties().setHeader(DelayedRetryInterceptor.ATTEMPTS_HEADER, 1);
+        message.getMessageProperties().setHeader(DelayedRetryInterceptor.FIRST_FAILED_AT_HEADER, 42L);
+
+        interceptor.invoke(invocation);
+
+        assertEquals(42L, message.getMessageProperties().getHeaders().get(DelayedRetryInterceptor.FIRST_FAILED_AT_HEADER));
+        assertEquals(2, message.getMessageProperties().getHeaders().get(DelayedRetryInterceptor.ATTEMPTS_HEADER));
+    }
+
+    @Test
+    public void testExhaustedMessageIsParkedWithFailureMetadata() throws Throwable {
+        when(invocation.proceed()).thenThrow(listenerFailure(new DataProcessingException("db down")));
+        message.getMessageProperties().setHeader(DelayedRetryInterceptor.ATTEMPTS_HEADER, properties.getMaxAttempts() - 1);
+
+        interceptor.invoke(invocation);
+
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(sender).send(eq(""), eq("parking.lot.queue"), sent.capture());
+        MessageProperties parked = sent.getValue().getMessageProperties();
+        assertEquals(DelayedRetryInterceptor.REASON_EXHAUSTED, parked.getHeaders().get(DelayedRetryInterceptor.PARKED_REASON_HEADER));
+        assertEquals(properties.getMaxAttempts(), parked.getHeaders().get(DelayedRetryInterceptor.ATTEMPTS_HEADER));
+        String stackTrace = (String) parked.getHeaders().get(DelayedRetryInterceptor.EXCEPTION_STACKTRACE_HEADER);
+        assertTrue(stackTrace.startsWith(ListenerExecutionFailedException.class.getName()));
+        assertTrue(stackTrace.length() <= properties.getMaxStackTraceLength());
+        assertEquals(1.0, meterRegistry.get("messaging.retry.parked").tag("reason", "exhausted").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testMalformedMessageIsParkedImmediately() throws Throwable {
+        when(invocation.proceed()).thenThrow(listenerFailure(new MessageConversionException("Unknown event type: foo")));
+
+        interceptor.invoke(invocation);
+
+        verify(sender).send(eq(""), eq("parking.lot.queue"), any(Message.class));
+        assertEquals(DelayedRetryInterceptor.REASON_NON_RETRYABLE,
+            message.getMessageProperties().getHeaders().get(DelayedRetryInterceptor.PARKED_REASON_HEADER));
+    }
+
+    @Test
+    public void testRejectedEnvelopeIsNotRetried() {
+        EventEnvelope envelope = new EventEnvelope(EventType.PUSH, "req-1", "not a push event");
+        try {
+            envelope.requirePayload(EventType.ISSUE, Object.class);
+            fail("Expected rejection");
+        } catch (AmqpRejectAndDontRequeueException e) {
+            assertFalse(DelayedRetryInterceptor.isRetryable(new DataProcessingException("wrapped", e)));
+        }
+        assertTrue(DelayedRetryInterceptor.isRetryable(new DataProcessingException("db down", new RuntimeException())));
+    }
+
+    @Test
+    public void testRepublishFailureRejectsToDeadLetterQueue() throws Throwable {
+        when(invocation.proceed()).thenThrow(new DataProcessingException("db down"));
+        doThrow(new AmqpException("No confirm within 5000 ms")).when(sender).send(anyString(), anyString(), any(Message.class));
+
+        try {
+            interceptor.invoke(invocation);
+            fail("Expected rejection");
+        } catch (AmqpRejectAndDontRequeueException e) {
+            assertEquals("db down", e.getCause().getMessage());
+        }
+        assertEquals(1.0, meterRegistry.get("messaging.retry.republish.failed").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testDisabledRetryPropagatesFailure() throws Throwable {
+        properties.setEnabled(false);
+        when(invocation.proceed()).thenThrow(new DataProcessingException("db down"));
+
+        try {
+            interceptor.invoke(invocation);
+            fail("Expected failure to propagate");
+        } catch (DataProcessingException e) {
+            assertEquals("db down", e.getMessage());
+        }
+        verifyNoInteractions(sender);
+    }
+
+    @Test
+    public void testRecoveryAfterRetryIsCounted() throws Throwable {
+        when(invocation.proceed()).thenReturn(null);
+        message.getMessageProperties().setHeader(DelayedRetryInterceptor.ATTEMPTS_HEADER, 2);
+
+        interceptor.invoke(invocation);
+
+        assertEquals(1.0, meterRegistry.get("messaging.retry.recovered").tag("queue", QUEUE).counter().count(), 0.0);
+    }
+
+    // Helper methods
+
+    private ListenerExecutionFailedException listenerFailure(Throwable cause) {
+        return new ListenerExecutionFailedException("Listener threw exception", cause, message);
+    }
+}
@@ -0,0 +1,324 @@
+package com.gitlab.metrics.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.dto.webhook.IssueEventRequest;
+import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.dto.webhook.WebhookRequest;
+import com.gitlab.metrics.messaging.EventEnvelopeMessageConverter.WireFormat;
+import com.gitlab.metrics.service.SonarQubeAnalysisMessageListener.QualityAnalysisMessage;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * EventEnvelopeMessageConverter测试
+ * 覆盖各事件类型在 JSON/Smile 下的往返、旧格式消息升级、版本校验，
+ * 并对比旧的 WebhookEventMessage + JSON 与信封 JSON/Smile 的消息大小和序列化耗时
+ */
+public class EventEnvelopeMessageConverterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventEnvelopeMessageConverterTest.class);
+
+    private static final String LEGACY_WRAPPER_CLASS = "com.gitlab.metrics.service.webhook.WebhookEventProcessor$WebhookEventMessage";
+    private static final int ITERATIONS = 2000;
+
+    private final EventEnvelopeMessageConverter jsonConverter =
+        new EventEnvelopeMessageConverter(WireFormat.JSON, new Jackson2JsonMessageConverter());
+    private final EventEnvelopeMessageConverter smileConverter =
+        new EventEnvelopeMessageConverter(WireFormat.SMILE, new Jackson2JsonMessageConverter());
+
+    @Test
+    public void testRoundTripDeliversTypedPayload() {
+        for (EventEnvelopeMessageConverter converter : Arrays.asList(jsonConverter, smileConverter)) {
+            for (EventEnvelope sent : sampleEnvelopes()) {
+                Message message = converter.toMessage(sent, new MessageProperties());
+                assertEquals(converter.getProducerFormat().getContentType(), message.getMessageProperties().getContentType());
+                assertEquals(sent.getType().getWireName(),
+                    message.getMessageProperties().getHeaders().get(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER));
+
+                // 消费端可能使用另一种格式配置，解码只看消息的 content-type
+                EventEnvelope received = (EventEnvelope) jsonConverter.fromMessage(message);
+                assertEquals(sent.getType(), received.getType());
+                assertEquals(sent.getRequestId(), received.getRequestId());
+                assertEquals(sent.getTimestamp(), received.getTimestamp());
+                assertEquals(EventEnvelope.CURRENT_VERSION, received.getVersion());
+                assertSame(sent.getType().getPayloadClass(), received.getPayload().getClass());
+            }
+        }
+
+        EventEnvelope push = (EventEnvelope) smileConverter.fromMessage(
+            smileConverter.toMessage(EventEnvelope.of("req-1", createPushEvent(3)), new MessageProperties()));
+        PushEventRequest payload = push.getPayload(PushEventRequest.class);
+        assertEquals(Long.valueOf(42L), payload.getProjectId());
+        assertEquals(3, payload.getCommits().size());
+        assertEquals("dev@example.com", payload.getCommits().get(0).getAuthor().getEmail());
+    }
+
+    @Test
+    public void testPayloadBeforeTypeIsBuffered() {
+        String body = "{\"payload\":{\"projectId\":\"42\",\"commitSha\":\"abc\",\"sonarProjectKey\":\"key\"},"
+            + "\"type\":\"quality_analysis\",\"v\":1,\"ts\":5}";
+        EventEnvelope envelope = jsonConverter.decode(body.getBytes(StandardCharsets.UTF_8), WireFormat.JSON);
+
+        assertEquals(EventType.QUALITY_ANALYSIS, envelope.getType());
+        assertEquals("key", envelope.getPayload(QualityAnalysisMessage.class).getSonarProjectKey());
+    }
+
+    @Test
+    public void testUnknownFieldsAreSkipped() {
+        String body = "{\"v\":1,\"type\":\"issue\",\"trace\":{\"span\":[1,2]},\"payload\":{\"object_kind\":\"issue\"}}";
+        EventEnvelope envelope = jsonConverter.decode(body.getBytes(StandardCharsets.UTF_8), WireFormat.JSON);
+
+        assertEquals(EventType.ISSUE, envelope.getType());
+        assertTrue(envelope.getPayload() instanceof IssueEventRequest);
+    }
+
+    @Test(expected = MessageConversionException.class)
+    public void testNewerVersionIsRejected() {
+        String body = "{\"v\":2,\"type\":\"push\",\"payload\":{}}";
+        jsonConverter.decode(body.getBytes(StandardCharsets.UTF_8), WireFormat.JSON);
+    }
+
+    @Test(expected = MessageConversionException.class)
+    public void testUnknownTypeIsRejected() {
+        String body = "{\"v\":1,\"type\":\"pipeline\",\"payload\":{}}";
+        jsonConverter.decode(body.getBytes(StandardCharsets.UTF_8), WireFormat.JSON);
+    }
+
+    @Test(expected = MessageConversionException.class)
+    public void testMissingPayloadIsRejected() {
+        jsonConverter.decode("{\"v\":1,\"type\":\"push\"}".getBytes(StandardCharsets.UTF_8), WireFormat.JSON);
+    }
+
+    @Test
+    public void testLegacyWebhookMessageIsUpgraded() throws Exception {
+        Message legacy = legacyWebhookMessage("req-legacy", createPushEvent(2));
+
+        EventEnvelope envelope = (EventEnvelope) smileConverter.fromMessage(legacy);
+
+        assertEquals(EventType.PUSH, envelope.getType());
+        assertEquals("req-legacy", envelope.getRequestId());
+        assertEquals(1700000000000L, envelope.getTimestamp());
+        assertEquals(2, envelope.getPayload(PushEventRequest.class).getCommits().size());
+    }
+
+    @Test
+    public void testLegacyDoubleEncodedQualityMessageIsUpgraded() throws Exception {
+        QualityAnalysisMessage quality = new QualityAnalysisMessage("42", "abc123", "gitlab-42");
+        String doubleEncoded = new ObjectMapper().writeValueAsString(quality);
+        Message legacy = new Jackson2JsonMessageConverter().toMessage(doubleEncoded, new MessageProperties());
+
+        EventEnvelope envelope = (EventEnvelope) jsonConverter.fromMessage(legacy);
+
+        assertEquals(EventType.QUALITY_ANALYSIS, envelope.getType());
+        QualityAnalysisMessage payload = envelope.getPayload(QualityAnalysisMessage.class);
+        assertEquals("abc123", payload.getCommitSha());
+        assertEquals("gitlab-42", payload.getSonarProjectKey());
+    }
+
+    @Test
+    public void testNonEnvelopeObjectsUseDelegate() {
+        Message message = smileConverter.toMessage("plain alert text", new MessageProperties());
+
+        assertEquals(MessageProperties.CONTENT_TYPE_JSON, message.getMessageProperties().getContentType());
+        assertNull(message.getMessageProperties().getHeaders().get(EventEnvelopeMessageConverter.VERSION_HEADER));
+        assertEquals("plain alert text", smileConverter.fromMessage(message));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPayloadTypeMismatchFailsFast() {
+        EventEnvelope envelope = EventEnvelope.of("req", createPushEvent(1));
+        envelope.getPayload(IssueEventRequest.class);
+    }
+
+    @Test
+    public void testWireFormatFromContentType() {
+        assertEquals(WireFormat.SMILE, WireFormat.fromContentType("application/x-jackson-smile"));
+        assertEquals(WireFormat.JSON, WireFormat.fromContentType("application/json; charset=UTF-8"));
+        assertNull(WireFormat.fromContentType("text/plain"));
+        assertNull(WireFormat.fromContentType(null));
+    }
+
+    @Test
+    public void testWireSizeAndSerializationCost() throws Exception {
+        Jackson2JsonMessageConverter legacyConverter = new Jackson2JsonMessageConverter();
+        for (EventEnvelope envelope : sampleEnvelopes()) {
+            Object legacyWrapper = legacyWrapper(envelope);
+
+            int legacyBytes = legacyConverter.toMessage(legacyWrapper, new MessageProperties()).getBody().length;
+            int jsonBytes = jsonConverter.toMessage(envelope, new MessageProperties()).getBody().length;
+            int smileBytes = smileConverter.toMessage(envelope, new MessageProperties()).getBody().length;
+
+            long legacyNanos = cpuNanosPerOp(() -> legacyConverter.toMessage(legacyWrapper, new MessageProperties()));
+            long jsonNanos = cpuNanosPerOp(() -> jsonConverter.toMessage(envelope, new MessageProperties()));
+            long smileNanos = cpuNanosPerOp(() -> smileConverter.toMessage(envelope, new MessageProperties()));
+
+            Message smileMessage = smileConverter.toMessage(envelope, new MessageProperties());
+            long smileDecodeNanos = cpuNanosPerOp(() -> smileConverter.fromMessage(smileMessage));
+
+            logger.info("{}: bytes legacy={} json={} smile={} | encode ns/op legacy={} json={} smile={} | smile decode ns/op={}",
+                envelope.getType(), legacyBytes, jsonBytes, smileBytes, legacyNanos, jsonNanos, smileNanos, smileDecodeNanos);
+            assertTrue(envelope.getType() + " smile should be smaller than legacy json: " + smileBytes + " vs " + legacyBytes,
+                smileBytes < legacyBytes);
+            assertTrue(envelope.getType() + " smile should be smaller than envelope json: " + smileBytes + " vs " + jsonBytes,
+                smileBytes < jsonBytes);
+        }
+    }
+
+    /**
+     * 预热后按当前线程 CPU 时间计算每次操作的平均耗时
+     */
+    private long cpuNanosPerOp(Supplier<Object> operation) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.get();
+        }
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.get();
+        }
+        return (threads.getCurrentThreadCpuTime() - start) / ITERATIONS;
+    }
+
+    // Helper methods
+
+    private List<EventEnvelope> sampleEnvelopes() {
+        List<EventEnvelope> envelopes = new ArrayList<>();
+        envelopes.add(EventEnvelope.of("req-push", createPushEvent(5)));
+        envelopes.add(EventEnvelope.of("req-mr", createMergeRequestEvent()));
+        envelopes.add(EventEnvelope.of("req-issue", createIssueEvent()));
+        envelopes.add(EventEnvelope.of("req-quality", new QualityAnalysisMessage("42", "abc123def456", "gitlab-42")));
+        return envelopes;
+    }
+
+    private Map<String, Object> legacyWrapper(EventEnvelope envelope) {
+        Map<String, Object> wrapper = new LinkedHashMap<>();
+        wrapper.put("requestId", envelope.getRequestId());
+        wrapper.put("eventType", envelope.getType().getWireName());
+        wrapper.put("eventData", envelope.getPayload());
+        wrapper.put("timestamp", envelope.getTimestamp());
+        return wrapper;
+    }
+
+    private Message legacyWebhookMessage(String requestId, Object event) throws Exception {
+        Map<String, Object> wrapper = new LinkedHashMap<>();
+        wrapper.put("requestId", requestId);
+        wrapper.put("eventType", "push");
+        wrapper.put("eventData", event);
+        wrapper.put("timestamp", 1700000000000L);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, LEGACY_WRAPPER_CLASS);
+        return new Message(new ObjectMapper().writeValueAsBytes(wrapper), properties);
+    }
+
+    private PushEventRequest createPushEvent(int commitCount) {
+        PushEventRequest event = new PushEventRequest();
+        event.setObjectKind("push");
+        event.setEventName("push");
+        event.setBefore("95790bf891e76fee5e1747ab589903a6a1f80f22");
+        event.setAfter("da1560886d4f094c3e6c9ef40349f7d38b5d27d7");
+        event.setRef("refs/heads/main");
+        event.setCheckoutSha("da1560886d4f094c3e6c9ef40349f7d38b5d27d7");
+        event.setUserId(7L);
+        event.setUserName("Developer");
+        event.setUserUsername("dev");
+        event.setUserEmail("dev@example.com");
+        event.setProjectId(42L);
+        event.setProject(createProject());
+
+        List<PushEventRequest.CommitInfo> commits = new ArrayList<>();
+        for (int i = 0; i < commitCount; i++) {
+            PushEventRequest.CommitInfo commit = new PushEventRequest.CommitInfo();
+            commit.setId("da1560886d4f094c3e6c9ef40349f7d38b5d27d" + i);
+            commit.setMessage("Fix report aggregation " + i);
+            commit.setTimestamp("2024-03-01T10:0" + i + ":00+08:00");
+            commit.setUrl("http://gitlab.example.com/group/project/commit/" + i);
+            PushEventRequest.AuthorInfo author = new PushEventRequest.AuthorInfo();
+            author.setName("Developer");
+            author.setEmail("dev@example.com");
+            commit.setAuthor(author);
+            commit.setAdded(Arrays.asList("src/main/java/com/example/Report" + i + ".java"));
+            commit.setModified(Arrays.asList("src/main/java/com/example/ReportService.java", "pom.xml"));
+            commit.setRemoved(new ArrayList<>());
+            commits.add(commit);
+        }
+        event.setCommits(commits);
+        event.setTotalCommitsCount(commitCount);
+        return event;
+    }
+
+    private MergeRequestEventRequest createMergeRequestEvent() {
+        MergeRequestEventRequest event = new MergeRequestEventRequest();
+        event.setObjectKind("merge_request");
+        event.setProject(createProject());
+        MergeRequestEventRequest.MergeRequestAttributes attributes = new MergeRequestEventRequest.MergeRequestAttributes();
+        attributes.setId(1001L);
+        attributes.setIid(12L);
+        attributes.setTargetBranch("main");
+        attributes.setSourceBranch("feature/report-cache");
+        attributes.setSourceProjectId(42L);
+        attributes.setTargetProjectId(42L);
+        attributes.setAuthorId(7L);
+        attributes.setTitle("Cache report aggregation");
+        attributes.setDescription("Adds a cache in front of the report aggregation queries");
+        attributes.setState("opened");
+        attributes.setMergeStatus("can_be_merged");
+        attributes.setCreatedAt("2024-03-01T10:00:00Z");
+        attributes.setUpdatedAt("2024-03-01T11:00:00Z");
+        attributes.setAction("open");
+        event.setObjectAttributes(attributes);
+        return event;
+    }
+
+    private IssueEventRequest createIssueEvent() {
+        IssueEventRequest event = new IssueEventRequest();
+        IssueEventRequest.ProjectInfo project = new IssueEventRequest.ProjectInfo();
+        project.setId(42L);
+        event.setProject(project);
+        IssueEventRequest.IssueAttributes attributes = new IssueEventRequest.IssueAttributes();
+        attributes.setId(123L);
+        attributes.setProjectId(42L);
+        attributes.setTitle("Report totals are off by one");
+        attributes.setDescription("The weekly report counts the boundary day twice");
+        attributes.setState("opened");
+        attributes.setAction("open");
+        attributes.setCreatedAt("2024-03-01T10:30:00");
+        attributes.setUpdatedAt("2024-03-01T10:30:00");
+        attributes.setUrl("http://gitlab.example.com/group/project/issues/123");
+        event.setObjectAttributes(attributes);
+        IssueEventRequest.UserInfo user = new IssueEventRequest.UserInfo();
+        user.setId(7L);
+        user.setName("Developer");
+        event.setUser(user);
+        return event;
+    }
+
+    private WebhookRequest.ProjectInfo createProject() {
+        WebhookRequest.ProjectInfo project = new WebhookRequest.ProjectInfo();
+        project.setId(42L);
+        project.setName("project");
+        project.setPath("project");
+        project.setPathWithNamespace("group/project");
+        project.setWebUrl("http://gitlab.example.com/group/project");
+        return project;
+    }
+}
@@ -0,0 +1,208 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.InProcessTransportProperties;
+import com.gitlab.metrics.config.PriorityLaneProperties;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.exception.EventPublishException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * InProcessEventTransport测试
+ */
+public class InProcessEventTransportTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InProcessTransportProperties properties;
+    private InProcessEventTransport transport;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new InProcessTransportProperties();
+        properties.setQueueCapacity(4);
+        properties.setWorkersPerQueue(1);
+        properties.setOfferTimeoutMs(20);
+        properties.setShutdownTimeoutMs(2000);
+        transport = new InProcessEventTransport(properties, new PipelineLagRecorder(meterRegistry, 10),
+            new LaneLatencyRecorder(new PriorityLaneProperties(), meterRegistry), new QueueLoadTracker(), meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+    }
+
+    @Test
+    public void testEventsAreRoutedByQueueNameAndBinding() throws Exception {
+        List<Object> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        transport.register(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, message -> {
+            received.add(message);
+            latch.countDown();
+        });
+        transport.bind(RabbitMQConfig.GITLAB_EVENTS_EXCHANGE, RabbitMQConfig.COMMIT_ROUTING_KEY,
+            RabbitMQConfig.COMMIT_ANALYSIS_QUEUE);
+        transport.start();
+
+        EventEnvelope direct = EventEnvelope.of("req-1", new PushEventRequest());
+        EventEnvelope routed = EventEnvelope.of("req-2", new PushEventRequest());
+        transport.publishToQueue(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, direct).get(1, TimeUnit.SECONDS);
+        transport.publish(RabbitMQConfig.GITLAB_EVENTS_EXCHANGE, RabbitMQConfig.COMMIT_ROUTING_KEY, routed)
+            .get(1, TimeUnit.SECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 事件对象原样交给监听器，不经过序列化
+        assertSame(direct, received.get(0));
+        assertSame(routed, received.get(1));
+    }
+
+    @Test
+    public void testUnroutableEventFailsAsReturned() throws Exception {
+        transport.start();
+
+        CompletableFuture<Void> future = transport.publishToQueue("no.such.queue", "event");
+
+        assertEquals("returned", failureReason(future));
+    }
+
+    @Test
+    public void testFullQueueRejectsPublishAndReportsSaturation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        transport.register(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, message -> {
+            started.countDown();
+            release.await();
+        });
+        transport.start();
+
+        transport.publishToQueue(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, "first").get(1, TimeUnit.SECONDS);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            transport.publishToQueue(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, "event-" + i).get(1, TimeUnit.SECONDS);
+        }
+        assertTrue(transport.isSaturated());
+
+        CompletableFuture<Void> rejected = transport.publishToQueue(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, "overflow");
+        assertEquals("rejected", failureReason(rejected));
+        assertEquals(1.0, meterRegistry.get("messaging.inprocess.rejected").counter().count(), 0.0);
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.getDepth(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(transport.isSaturated());
+    }
+
+    @Test
+    public void testFailingListenerIsRetriedWithBackoffThenParked() throws Exception {
+        properties.setMaxAttempts(3);
+        properties.setRetryInitialDelayMs(100);
+        properties.setRetryMultiplier(2.0);
+        List<Long> attemptTimes = new CopyOnWriteArrayList<>();
+        transport.register(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, message -> {
+            attemptTimes.add(System.nanoTime());
+            throw new IllegalStateException("boom");
+        });
+        transport.start();
+
+        transport.publishToQueue(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, "event").get(1, TimeUnit.SECONDS);
+
+        awaitParked(1);
+        assertEquals(3, attemptTimes.size());
+        // 重新入队前按 100ms、200ms 退避，而不是立即重试
+        assertTrue(attemptTimes.get(1) - attemptTimes.get(0) >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(attemptTimes.get(2) - attemptTimes.get(1) >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(2.0, meterRegistry.get("messaging.inprocess.retried").counter().count(), 0.0);
+        assertEquals(0.0, meterRegistry.get("messaging.inprocess.dropped").counter().count(), 0.0);
+
+        InProcessEventTransport.ParkedEvent parked = transport.getParked(null, 10).get(0);
+        assertEquals(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, parked.getQueue());
+        assertEquals("event", parked.getMessage());
+        assertEquals(3, parked.getAttempts());
+        assertTrue(parked.getError() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testParkedEventCanBeReplayedAndPurged() throws Exception {
+        properties.setMaxAttempts(1);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch replayed = new CountDownLatch(1);
+        transport.register(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, message -> {
+            if (attempts.incrementAndGet() == 1 || "poison".equals(message)) {
+                throw new IllegalStateException("boom");
+            }
+            replayed.countDown();
+        });
+        transport.start();
+
+        transport.publishToQueue(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, "event").get(1, TimeUnit.SECONDS);
+        awaitParked(1);
+
+        assertEquals(0, transport.replayParked("other.queue", 10));
+        assertEquals(1, transport.replayParked(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, 10));
+        assertTrue(replayed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, transport.getParkedCount());
+
+        transport.publishToQueue(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, "poison").get(1, TimeUnit.SECONDS);
+        awaitParked(1);
+        assertEquals(1, transport.purgeParked(null, 10));
+        assertEquals(0, transport.getParkedCount());
+    }
+
+    @Test
+    public void testFullParkingLotDropsOldestEvent() throws Exception {
+        properties.setMaxAttempts(1);
+        properties.setParkingLotCapacity(2);
+        transport.register(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, message -> {
+            throw new IllegalStateException("boom");
+        });
+        transport.start();
+
+        for (int i = 0; i < 3; i++) {
+            transport.publishToQueue(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, "event-" + i).get(1, TimeUnit.SECONDS);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("messaging.inprocess.dropped").counter().count() < 1
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1.0, meterRegistry.get("messaging.inprocess.dropped").counter().count(), 0.0);
+        assertEquals(2, transport.getParkedCount());
+        assertEquals("event-1", transport.getParked(null, 10).get(0).getMessage());
+    }
+
+    private void awaitParked(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.getParkedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, transport.getParkedCount());
+    }
+
+    private static String failureReason(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected publish to fail");
+            return null;
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EventPublishException);
+            return ((EventPublishException) e.getCause()).getReason();
+        }
+    }
+}
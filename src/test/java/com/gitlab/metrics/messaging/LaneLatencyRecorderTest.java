@@ -0,0 +1,84 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.PriorityLaneProperties;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * LaneLatencyRecorder单元测试
+ */
+public class LaneLatencyRecorderTest {
+
+    private PriorityLaneProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private LaneLatencyRecorder recorder;
+
+    @Before
+    public void setUp() {
+        properties = new PriorityLaneProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        recorder = new LaneLatencyRecorder(properties, meterRegistry);
+    }
+
+    @Test
+    public void testLatencyIsTaggedWithQueueLane() {
+        recorder.record(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, 500);
+        recorder.record(RabbitMQConfig.COMMIT_ANALYSIS_BULK_QUEUE, 120000);
+
+        Timer interactive = meterRegistry.get("messaging.lane.latency").tag("lane", "interactive").timer();
+        Timer bulk = meterRegistry.get("messaging.lane.latency").tag("lane", "bulk").timer();
+        assertEquals(1, interactive.count());
+        assertEquals(500.0, interactive.totalTime(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(1, bulk.count());
+        assertEquals(0.0, meterRegistry.get("messaging.lane.slo.breached").tag("lane", "bulk").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testSloBreachesAreCountedAndBucketed() {
+        recorder.record(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, 1000);
+        recorder.record(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, 90000);
+
+        assertEquals(1.0, meterRegistry.get("messaging.lane.slo.breached").tag("lane", "interactive").counter().count(), 0.0);
+        CountAtBucket[] buckets = meterRegistry.get("messaging.lane.latency").tag("lane", "interactive").timer()
+            .takeSnapshot().histogramCounts();
+        assertEquals(1, buckets.length);
+        assertEquals(properties.getInteractiveSloMs(), buckets[0].bucket(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(1.0, buckets[0].count(), 0.0);
+    }
+
+    @Test
+    public void testOnlySuccessfulProcessingIsRecorded() throws Throwable {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setConsumerQueue(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE);
+        messageProperties.setTimestamp(new Date(System.currentTimeMillis() - 1500));
+        Message message = new Message(new byte[0], messageProperties);
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getArguments()).thenReturn(new Object[] { null, message });
+        when(invocation.proceed()).thenThrow(new IllegalStateException("db down")).thenReturn(null);
+
+        try {
+            recorder.invoke(invocation);
+            fail("Expected failure to propagate");
+        } catch (IllegalStateException e) {
+            assertNull(meterRegistry.find("messaging.lane.latency").timer());
+        }
+        recorder.invoke(invocation);
+
+        Timer timer = meterRegistry.get("messaging.lane.latency").tag("queue", RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE).timer();
+        assertEquals(1, timer.count());
+        assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 1500);
+    }
+}
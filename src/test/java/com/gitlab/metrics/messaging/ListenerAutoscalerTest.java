@@ -0,0 +1,202 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.config.ListenerAutoscalerProperties;
+import com.gitlab.metrics.config.ListenerAutoscalerProperties.Bounds;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * ListenerAutoscaler仿真测试
+ * 用离散时间的队列模型代替 broker：每个周期按到达量入队，按消费者数和单条耗时出队，
+ * 处理量和忙碌时间写入 QueueLoadTracker，深度经 DepthProbe 读出，伸缩结果经 ConcurrencyControl 写回模型
+ */
+public class ListenerAutoscalerTest {
+
+    private static final long INTERVAL_MS = 10000;
+
+    private ListenerAutoscalerProperties properties;
+    private QueueLoadTracker tracker;
+    private SimpleMeterRegistry meterRegistry;
+    private Map<String, SimulatedQueue> queues;
+    private List<String> applied;
+    private ListenerAutoscaler autoscaler;
+
+    @Before
+    public void setUp() {
+        properties = new ListenerAutoscalerProperties();
+        properties.getQueues().put(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, new Bounds(2, 24, null, null));
+        properties.getQueues().put(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, new Bounds(null, 4, null, 2));
+        properties.getQueues().put(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE, new Bounds(null, 4, null, null));
+        tracker = new QueueLoadTracker();
+        meterRegistry = new SimpleMeterRegistry();
+        queues = new LinkedHashMap<>();
+        applied = new ArrayList<>();
+        autoscaler = new ListenerAutoscaler(properties, tracker,
+            queue -> queues.get(queue).depth,
+            (queue, consumers, prefetch) -> {
+                SimulatedQueue simulated = queues.get(queue);
+                simulated.consumers = consumers;
+                simulated.prefetch = prefetch;
+                applied.add(queue + ":" + consumers + "/" + prefetch);
+            },
+            meterRegistry);
+    }
+
+    @Test
+    public void testBurstScalesUpWithinBoundsAndBackDown() {
+        SimulatedQueue commits = add(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, 200);
+
+        int peak = 0;
+        int drainedAt = -1;
+        for (int tick = 0; tick < 80; tick++) {
+            long arrivals = tick == 5 ? 20000 : (tick < 60 ? 100 : 0);
+            commits.step(arrivals);
+            autoscaler.tick(INTERVAL_MS);
+            peak = Math.max(peak, commits.consumers);
+            assertTrue("consumers within bounds at tick " + tick, commits.consumers >= 2 && commits.consumers <= 24);
+            if (tick > 5 && drainedAt < 0 && commits.depth < 100) {
+                drainedAt = tick;
+            }
+        }
+
+        assertEquals("burst drives the queue to its ceiling", 24, peak);
+        assertTrue("20k backlog drained within 25 intervals, took " + (drainedAt - 5), drainedAt > 0 && drainedAt - 5 <= 25);
+        assertEquals("idle queue returns to its floor", 2, commits.consumers);
+        assertTrue(meterRegistry.get("messaging.autoscaler.decisions").tag("queue", commits.name).tag("action", "up")
+            .counter().count() >= 3);
+        assertTrue(meterRegistry.get("messaging.autoscaler.decisions").tag("queue", commits.name).tag("action", "down")
+            .counter().count() >= 1);
+    }
+
+    @Test
+    public void testScaleUpIsStepLimited() {
+        SimulatedQueue commits = add(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, 200);
+        commits.step(100);
+        autoscaler.tick(INTERVAL_MS);
+        int before = commits.consumers;
+
+        commits.step(50000);
+        autoscaler.tick(INTERVAL_MS);
+
+        assertTrue("at most doubles per interval", commits.consumers <= Math.max(before * 2, before + 1));
+        assertTrue(commits.consumers > before);
+    }
+
+    @Test
+    public void testScaleDownWaitsForStableLowLoad() {
+        properties.setScaleDownTicks(3);
+        SimulatedQueue commits = add(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, 200);
+        for (int tick = 0; tick < 10; tick++) {
+            commits.step(400);
+            autoscaler.tick(INTERVAL_MS);
+        }
+        int busy = commits.consumers;
+        assertTrue(busy > 2);
+
+        commits.step(0);
+        autoscaler.tick(INTERVAL_MS);
+        commits.step(0);
+        autoscaler.tick(INTERVAL_MS);
+        assertEquals("two quiet intervals are not enough", busy, commits.consumers);
+
+        commits.step(0);
+        autoscaler.tick(INTERVAL_MS);
+        assertTrue(commits.consumers < busy);
+    }
+
+    @Test
+    public void testExpensiveAndCheapQueuesGetDifferentSettings() {
+        SimulatedQueue quality = add(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, 5000);
+        SimulatedQueue issues = add(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE, 5);
+
+        for (int tick = 0; tick < 10; tick++) {
+            quality.step(10);
+            issues.step(500);
+            autoscaler.tick(INTERVAL_MS);
+        }
+
+        assertEquals("SonarQube analysis holds one message per consumer", 1, quality.prefetch);
+        assertEquals("quality queue capped at its own ceiling", 4, quality.consumers);
+        assertEquals("5 ms messages prefetch about a second of work", 200, issues.prefetch);
+        assertEquals(1, issues.consumers);
+    }
+
+    @Test
+    public void testRegisterClampsInitialSettingsToBounds() {
+        SimulatedQueue quality = add(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE, 5000);
+
+        assertEquals(4, quality.consumers);
+        assertEquals(2, quality.prefetch);
+        assertEquals(1, applied.size());
+        assertEquals(4.0, meterRegistry.get("messaging.autoscaler.consumers").tag("queue", quality.name).gauge().value(), 0.0);
+    }
+
+    @Test
+    public void testUnknownDepthScalesOnThroughputOnly() {
+        SimulatedQueue commits = add(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, 200);
+        commits.depthKnown = false;
+
+        for (int tick = 0; tick < 5; tick++) {
+            commits.step(200);
+            autoscaler.tick(INTERVAL_MS);
+        }
+
+        assertEquals(-1.0, meterRegistry.get("messaging.autoscaler.queue.depth").tag("queue", commits.name).gauge().value(), 0.0);
+        assertEquals("200 msg x 200 ms per 10 s at 75% utilization", 6, commits.consumers);
+    }
+
+    @Test
+    public void testUtilizationIsReported() {
+        SimulatedQueue commits = add(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, 200);
+        commits.step(1000);
+        autoscaler.tick(INTERVAL_MS);
+
+        double utilization = meterRegistry.get("messaging.autoscaler.utilization").tag("queue", commits.name).gauge().value();
+        assertEquals("5 consumers fully busy", 1.0, utilization, 0.01);
+    }
+
+    // Helper methods
+
+    private SimulatedQueue add(String name, double serviceMs) {
+        SimulatedQueue queue = new SimulatedQueue(name, serviceMs);
+        queues.put(name, queue);
+        autoscaler.register(name, RabbitMQConfig.INITIAL_CONCURRENT_CONSUMERS, 250);
+        return queue;
+    }
+
+    /**
+     * 单个队列的离散时间模型：每条消息耗时固定，消费者满负荷时每周期处理 consumers × 周期 / 单条耗时 条
+     */
+    private class SimulatedQueue {
+        private final String name;
+        private final double serviceMs;
+        private long backlog;
+        private long depth;
+        private boolean depthKnown = true;
+        private int consumers = RabbitMQConfig.INITIAL_CONCURRENT_CONSUMERS;
+        private int prefetch = 250;
+
+        SimulatedQueue(String name, double serviceMs) {
+            this.name = name;
+            this.serviceMs = serviceMs;
+        }
+
+        void step(long arrivals) {
+            backlog += arrivals;
+            long capacity = (long) (consumers * INTERVAL_MS / serviceMs);
+            long processed = Math.min(backlog, capacity);
+            backlog -= processed;
+            depth = depthKnown ? backlog : -1;
+            tracker.record(name, (int) processed, (long) (processed * serviceMs * 1_000_000));
+        }
+    }
+}
@@ -14,7 +14,6 @@ import com.gitlab.metrics.repository.MergeRequestRepository;
 import com.gitlab.metrics.service.CommitAnalysisMessageListener;
 import com.gitlab.metrics.service.IssueAnalysisMessageListener;
 import com.gitlab.metrics.service.MergeRequestAnalysisMessageListener;
-import com.gitlab.metrics.service.webhook.WebhookEventProcessor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -95,9 +94,9 @@ public class MessageQueueIntegrationTest {
     @Test
     public void testCommitAnalysisMessageFlow() throws Exception {
         // Given
-        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(pushEvent);
+        message.setPayload(pushEvent);
         message.setTimestamp(System.currentTimeMillis());
 
         String messageJson = objectMapper.writeValueAsString(message);
@@ -113,9 +112,9 @@ public class MessageQueueIntegrationTest {
     @Test
     public void testIssueAnalysisMessageFlow() throws Exception {
         // Given
-        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(issueEvent);
+        message.setPayload(issueEvent);
         message.setTimestamp(System.currentTimeMillis());
 
         String messageJson = objectMapper.writeValueAsString(message);
@@ -131,9 +130,9 @@ public class MessageQueueIntegrationTest {
     @Test
     public void testMergeRequestAnalysisMessageFlow() throws Exception {
         // Given
-        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(mergeRequestEvent);
+        message.setPayload(mergeRequestEvent);
         message.setTimestamp(System.currentTimeMillis());
 
         String messageJson = objectMapper.writeValueAsString(message);
@@ -152,9 +151,9 @@ public class MessageQueueIntegrationTest {
         Commit mockCommit = createMockCommit();
         when(commitRepository.save(any(Commit.class))).thenReturn(mockCommit);
 
-        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(pushEvent);
+        message.setPayload(pushEvent);
         message.setTimestamp(System.currentTimeMillis());
 
         String messageJson = objectMapper.writeValueAsString(message);
@@ -189,9 +188,9 @@ public class MessageQueueIntegrationTest {
         int messageCount = 5;
         
         for (int i = 0; i < messageCount; i++) {
-            WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+            EventEnvelope message = new EventEnvelope();
             message.setRequestId(requestId + "-" + i);
-            message.setEventData(pushEvent);
+            message.setPayload(pushEvent);
             message.setTimestamp(System.currentTimeMillis());
 
             String messageJson = objectMapper.writeValueAsString(message);
@@ -209,17 +208,17 @@ public class MessageQueueIntegrationTest {
     @Test
     public void testMessageRoutingToCorrectQueues() throws Exception {
         // Given
-        WebhookEventProcessor.WebhookEventMessage commitMessage = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope commitMessage = new EventEnvelope();
         commitMessage.setRequestId(requestId + "-commit");
-        commitMessage.setEventData(pushEvent);
+        commitMessage.setPayload(pushEvent);
 
-        WebhookEventProcessor.WebhookEventMessage issueMessage = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope issueMessage = new EventEnvelope();
         issueMessage.setRequestId(requestId + "-issue");
-        issueMessage.setEventData(issueEvent);
+        issueMessage.setPayload(issueEvent);
 
-        WebhookEventProcessor.WebhookEventMessage mrMessage = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope mrMessage = new EventEnvelope();
         mrMessage.setRequestId(requestId + "-mr");
-        mrMessage.setEventData(mergeRequestEvent);
+        mrMessage.setPayload(mergeRequestEvent);
 
         String commitMessageJson = objectMapper.writeValueAsString(commitMessage);
         String issueMessageJson = objectMapper.writeValueAsString(issueMessage);
@@ -240,9 +239,9 @@ public class MessageQueueIntegrationTest {
     @Test
     public void testMessagePersistence() throws Exception {
         // Given
-        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(pushEvent);
+        message.setPayload(pushEvent);
         message.setTimestamp(System.currentTimeMillis());
 
         String messageJson = objectMapper.writeValueAsString(message);
@@ -270,9 +269,9 @@ public class MessageQueueIntegrationTest {
             new Thread(() -> {
                 try {
                     for (int m = 0; m < messagesPerThread; m++) {
-                        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+                        EventEnvelope message = new EventEnvelope();
                         message.setRequestId(requestId + "-thread" + threadId + "-msg" + m);
-                        message.setEventData(pushEvent);
+                        message.setPayload(pushEvent);
                         message.setTimestamp(System.currentTimeMillis());
 
                         String messageJson = objectMapper.writeValueAsString(message);
@@ -298,9 +297,9 @@ public class MessageQueueIntegrationTest {
 
         // When - 按顺序发送消息
         for (String messageId : messageIds) {
-            WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+            EventEnvelope message = new EventEnvelope();
             message.setRequestId(messageId);
-            message.setEventData(pushEvent);
+            message.setPayload(pushEvent);
             message.setTimestamp(System.currentTimeMillis());
 
             String messageJson = objectMapper.writeValueAsString(message);
@@ -316,9 +315,9 @@ public class MessageQueueIntegrationTest {
     @Test
     public void testMessageRetryMechanism() throws Exception {
         // Given
-        WebhookEventProcessor.WebhookEventMessage message = new WebhookEventProcessor.WebhookEventMessage();
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(pushEvent);
+        message.setPayload(pushEvent);
         message.setTimestamp(System.currentTimeMillis());
 
         String messageJson = objectMapper.writeValueAsString(message);
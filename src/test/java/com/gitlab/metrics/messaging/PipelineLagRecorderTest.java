@@ -0,0 +1,178 @@
+package com.gitlab.metrics.messaging;
+
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.dto.webhook.WebhookRequest;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * PipelineLagRecorder测试
+ */
+public class PipelineLagRecorderTest {
+
+    private static final String QUEUE = "commit.analysis.queue";
+
+    private SimpleMeterRegistry meterRegistry;
+    private PipelineLagRecorder recorder;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        recorder = new PipelineLagRecorder(meterRegistry, 1);
+    }
+
+    @Test
+    public void testStageAndEndToEndLagAreRecordedFromHeaders() {
+        MessageProperties properties = properties("push", "42");
+        PipelineStage.RECEIVED.stamp(properties, 1000L);
+        PipelineStage.JOURNALED.stamp(properties, 1100L);
+        PipelineStage.PUBLISHED.stamp(properties, 1600L);
+
+        recorder.record(properties, 2000L, 2300L);
+
+        assertEquals(100, stageLag("journaled", "push"), 0.0);
+        assertEquals(500, stageLag("published", "push"), 0.0);
+        assertEquals(400, stageLag("consumed", "push"), 0.0);
+        assertEquals(300, stageLag("persisted", "push"), 0.0);
+        Timer endToEnd = meterRegistry.get("pipeline.lag")
+            .tags("stage", "persisted", "event_type", "push").timer();
+        assertEquals(1300, endToEnd.totalTime(TimeUnit.MILLISECONDS), 0.0);
+        Timer byProject = meterRegistry.get("pipeline.lag.project").tags("stage", "persisted", "project", "42").timer();
+        assertEquals(1300, byProject.totalTime(TimeUnit.MILLISECONDS), 0.0);
+    }
+
+    @Test
+    public void testHistogramsAreNotTaggedWithProject() {
+        MessageProperties properties = properties("push", "42");
+        PipelineStage.RECEIVED.stamp(properties, 1000L);
+
+        recorder.record(properties, 1100L, 1200L);
+
+        assertNull(meterRegistry.find("pipeline.lag").tagKeys("project").timer());
+        assertNull(meterRegistry.find("pipeline.stage.lag").tagKeys("project").timer());
+        Timer byProject = meterRegistry.get("pipeline.lag.project").tag("project", "42").timer();
+        assertEquals(0, byProject.takeSnapshot().histogramCounts().length);
+        assertTrue(meterRegistry.get("pipeline.lag").timer().takeSnapshot().histogramCounts().length > 0);
+    }
+
+    @Test
+    public void testQualityAnalysisEndsAtQualityAnalyzedStage() {
+        MessageProperties properties = properties("quality_analysis", "42");
+        PipelineStage.RECEIVED.stamp(properties, 1000L);
+        PipelineStage.PUBLISHED.stamp(properties, 1200L);
+
+        recorder.record(properties, 1500L, 4000L);
+
+        assertEquals(2500, stageLag("quality_analyzed", "quality_analysis"), 0.0);
+        assertEquals(3000, meterRegistry.get("pipeline.lag").tag("stage", "quality_analyzed").timer()
+            .totalTime(TimeUnit.MILLISECONDS), 0.0);
+        assertNull(meterRegistry.find("pipeline.stage.lag").tag("stage", "journaled").timer());
+    }
+
+    @Test
+    public void testProjectTagsAreCapped() {
+        MessageProperties first = properties("push", "1");
+        MessageProperties second = properties("push", "2");
+        PipelineStage.RECEIVED.stamp(first, 1000L);
+        PipelineStage.RECEIVED.stamp(second, 1000L);
+
+        recorder.record(first, 1100L, 1200L);
+        recorder.record(second, 1100L, 1200L);
+
+        assertNotNull(meterRegistry.find("pipeline.lag.project").tag("project", "1").timer());
+        assertNull(meterRegistry.find("pipeline.lag.project").tag("project", "2").timer());
+        assertNotNull(meterRegistry.find("pipeline.lag.project").tag("project", "other").timer());
+    }
+
+    @Test
+    public void testInvokeExposesReceivedTimeAndUpdatesCurrentLag() throws Throwable {
+        long receivedAt = System.currentTimeMillis() - 5000;
+        MessageProperties properties = properties("push", "42");
+        properties.setConsumerQueue(QUEUE);
+        PipelineStage.RECEIVED.stamp(properties, receivedAt);
+        PipelineStage.PUBLISHED.stamp(properties, receivedAt + 10);
+
+        AtomicLong seenReceivedAt = new AtomicLong();
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getArguments()).thenReturn(new Object[] {null, new Message(new byte[0], properties)});
+        when(invocation.proceed()).thenAnswer(call -> {
+            seenReceivedAt.set(PipelineLagRecorder.currentReceivedAt());
+            return null;
+        });
+
+        recorder.invoke(invocation);
+
+        assertEquals(receivedAt, seenReceivedAt.get());
+        assertEquals(0, PipelineLagRecorder.currentReceivedAt());
+        assertTrue(recorder.getCurrentLag(QUEUE) >= 5000);
+        assertTrue(meterRegistry.get("pipeline.lag.current").tag("queue", QUEUE).gauge().value() >= 5000);
+        // 队列空闲后归零，不再一直显示最后一条消息的延迟
+        long idle = System.currentTimeMillis() + PipelineLagRecorder.IDLE_RESET_MS + 1000;
+        assertEquals(0, recorder.getCurrentLag(QUEUE, idle));
+    }
+
+    @Test
+    public void testFailedProcessingIsNotRecorded() throws Throwable {
+        MessageProperties properties = properties("push", "42");
+        PipelineStage.RECEIVED.stamp(properties, System.currentTimeMillis());
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getArguments()).thenReturn(new Object[] {null, new Message(new byte[0], properties)});
+        when(invocation.proceed()).thenThrow(new IllegalStateException("db down"));
+
+        try {
+            recorder.invoke(invocation);
+            fail("Expected listener failure to propagate");
+        } catch (IllegalStateException e) {
+            assertEquals("db down", e.getMessage());
+        }
+        assertNull(meterRegistry.find("pipeline.lag").timer());
+        assertEquals(0, PipelineLagRecorder.currentReceivedAt());
+    }
+
+    @Test
+    public void testConverterCarriesReceivedTimeAndProject() {
+        EventEnvelopeMessageConverter converter = new EventEnvelopeMessageConverter(
+            EventEnvelopeMessageConverter.WireFormat.SMILE, new Jackson2JsonMessageConverter());
+        PushEventRequest push = new PushEventRequest();
+        WebhookRequest.ProjectInfo project = new WebhookRequest.ProjectInfo();
+        project.setId(42L);
+        push.setProject(project);
+        EventEnvelope envelope = EventEnvelope.of("req-1", push);
+        envelope.setReceivedAt(1234L);
+
+        Message message = converter.toMessage(envelope, new MessageProperties());
+
+        MessageProperties properties = message.getMessageProperties();
+        assertEquals(1234L, PipelineStage.RECEIVED.read(properties));
+        assertTrue(PipelineStage.PUBLISHED.read(properties) > 0);
+        assertEquals("42", properties.getHeaders().get(EventEnvelopeMessageConverter.PROJECT_HEADER));
+        assertEquals(1234L, ((EventEnvelope) converter.fromMessage(message)).getReceivedAt());
+    }
+
+    // Helper methods
+
+    private static MessageProperties properties(String eventType, String projectId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER, eventType);
+        properties.setHeader(EventEnvelopeMessageConverter.PROJECT_HEADER, projectId);
+        return properties;
+    }
+
+    private double stageLag(String stage, String eventType) {
+        return meterRegistry.get("pipeline.stage.lag")
+            .tags("stage", stage, "event_type", eventType)
+            .timer().totalTime(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,124 @@
+package com.gitlab.metrics.messaging;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * SegmentSpool单元测试
+ */
+public class SegmentSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsAreReadInOrderAcrossSegments() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (SegmentSpool spool = new SegmentSpool(directory, 64, 1 << 20, false)) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(bytes("event-" + i));
+            }
+            assertEquals(10, spool.size());
+            assertTrue(spool.segmentCount() > 1);
+
+            List<SegmentSpool.Entry> first = spool.peek(4);
+            assertEquals("event-0", text(first.get(0)));
+            assertEquals("event-3", text(first.get(3)));
+            // peek 不移动游标
+            assertEquals("event-0", text(spool.peek(1).get(0)));
+
+            spool.acknowledge(first);
+            assertEquals(6, spool.size());
+            List<SegmentSpool.Entry> rest = spool.peek(100);
+            assertEquals(6, rest.size());
+            assertEquals("event-4", text(rest.get(0)));
+            assertEquals("event-9", text(rest.get(5)));
+
+            spool.acknowledge(rest);
+            assertTrue(spool.isEmpty());
+            assertEquals(1, spool.segmentCount());
+        }
+    }
+
+    @Test
+    public void testCursorAndPendingRecordsSurviveRestart() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (SegmentSpool spool = new SegmentSpool(directory, 64, 1 << 20, true)) {
+            for (int i = 0; i < 6; i++) {
+                spool.append(bytes("event-" + i));
+            }
+            spool.acknowledge(spool.peek(2));
+        }
+
+        try (SegmentSpool reopened = new SegmentSpool(directory, 64, 1 << 20, true)) {
+            assertEquals(4, reopened.size());
+            assertEquals("event-2", text(reopened.peek(1).get(0)));
+            reopened.append(bytes("event-6"));
+            List<SegmentSpool.Entry> entries = reopened.peek(10);
+            assertEquals(5, entries.size());
+            assertEquals("event-6", text(entries.get(4)));
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncatedOnRecovery() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (SegmentSpool spool = new SegmentSpool(directory, 1 << 20, 1 << 20, false)) {
+            spool.append(bytes("complete"));
+            spool.append(bytes("torn"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(SegmentSpool.SEGMENT_SUFFIX)).findFirst().get();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // 模拟写入第二条记录时进程退出
+            channel.truncate(channel.size() - 2);
+        }
+
+        try (SegmentSpool reopened = new SegmentSpool(directory, 1 << 20, 1 << 20, false)) {
+            assertEquals(1, reopened.size());
+            reopened.append(bytes("after-restart"));
+            List<SegmentSpool.Entry> entries = reopened.peek(10);
+            assertEquals(2, entries.size());
+            assertEquals("complete", text(entries.get(0)));
+            assertEquals("after-restart", text(entries.get(1)));
+        }
+    }
+
+    @Test
+    public void testAppendIsRejectedWhenSpoolIsFull() throws IOException {
+        try (SegmentSpool spool = new SegmentSpool(folder.getRoot().toPath(), 1024, 40, false)) {
+            spool.append(bytes("0123456789"));
+            try {
+                spool.append(bytes("0123456789abcdefghij0123456789"));
+                fail("Expected spool full");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Spool full"));
+            }
+            assertEquals(1, spool.size());
+        }
+    }
+
+    // Helper methods
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(SegmentSpool.Entry entry) {
+        return new String(entry.getData(), StandardCharsets.UTF_8);
+    }
+}
@@ -2,6 +2,7 @@ package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.CodeReview;
 import com.gitlab.metrics.entity.MergeRequest;
+import com.gitlab.metrics.repository.projection.ReviewerStatsRow;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -116,22 +117,21 @@ public class CodeReviewRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(2);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = codeReviewRepository.getReviewerStats(start, end);
+        List<ReviewerStatsRow> stats = codeReviewRepository.getReviewerStats(start, end);
         
         assertThat(stats).hasSize(2);
         
         // 验证reviewer1的统计数据
-        Object[] reviewer1Stats = stats.stream()
-            .filter(stat -> "reviewer1".equals(stat[0]))
+        ReviewerStatsRow reviewer1Stats = stats.stream()
+            .filter(stat -> "reviewer1".equals(stat.getReviewerId()))
             .findFirst()
             .orElse(null);
         
         assertThat(reviewer1Stats).isNotNull();
-        assertThat(reviewer1Stats[0]).isEqualTo("reviewer1"); // reviewerId
-        assertThat(reviewer1Stats[1]).isEqualTo("Reviewer One"); // reviewerName
-        assertThat(reviewer1Stats[2]).isEqualTo(1L); // 评审总数
-        assertThat(reviewer1Stats[3]).isEqualTo(1L); // 批准数量
-        assertThat(reviewer1Stats[4]).isEqualTo(0L); // 要求修改数量
+        assertThat(reviewer1Stats.getReviewerName()).isEqualTo("Reviewer One");
+        assertThat(reviewer1Stats.getReviewCount()).isEqualTo(1L); // 评审总数
+        assertThat(reviewer1Stats.getApprovedCount()).isEqualTo(1L); // 批准数量
+        assertThat(reviewer1Stats.getChangesRequestedCount()).isEqualTo(0L); // 要求修改数量
     }
     
     @Test
@@ -1,6 +1,12 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.repository.projection.BranchActivityRow;
+import com.gitlab.metrics.repository.projection.CommitTotalsRow;
+import com.gitlab.metrics.repository.projection.CommitTrendRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitSizeRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow;
+import com.gitlab.metrics.repository.projection.ProjectCommitStatsRow;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -145,23 +151,23 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = commitRepository.getDeveloperCommitStats(start, end);
+        List<DeveloperCommitStatsRow> stats = commitRepository.getDeveloperCommitStats(start, end);
         
         assertThat(stats).hasSize(2);
         
         // 验证dev1的统计数据（2次提交）
-        Object[] dev1Stats = stats.stream()
-            .filter(stat -> "dev1".equals(stat[0]))
+        DeveloperCommitStatsRow dev1Stats = stats.stream()
+            .filter(stat -> "dev1".equals(stat.getDeveloperId()))
             .findFirst()
             .orElse(null);
         
         assertThat(dev1Stats).isNotNull();
-        assertThat(dev1Stats[0]).isEqualTo("dev1"); // developerId
-        assertThat(dev1Stats[1]).isEqualTo("Developer One"); // developerName
-        assertThat(dev1Stats[2]).isEqualTo(2L); // 提交次数
-        assertThat(dev1Stats[3]).isEqualTo(300L); // 总新增行数
-        assertThat(dev1Stats[4]).isEqualTo(50L); // 总删除行数
-        assertThat(dev1Stats[5]).isEqualTo(13L); // 总修改文件数
+        assertThat(dev1Stats.getDeveloperId()).isEqualTo("dev1");
+        assertThat(dev1Stats.getDeveloperName()).isEqualTo("Developer One");
+        assertThat(dev1Stats.getCommitCount()).isEqualTo(2L); // 提交次数
+        assertThat(dev1Stats.getLinesAdded()).isEqualTo(300L); // 总新增行数
+        assertThat(dev1Stats.getLinesDeleted()).isEqualTo(50L); // 总删除行数
+        assertThat(dev1Stats.getFilesChanged()).isEqualTo(13L); // 总修改文件数
     }
     
     @Test
@@ -169,22 +175,21 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = commitRepository.getProjectCommitStats(start, end);
+        List<ProjectCommitStatsRow> stats = commitRepository.getProjectCommitStats(start, end);
         
         assertThat(stats).hasSize(2);
         
         // 验证project1的统计数据
-        Object[] project1Stats = stats.stream()
-            .filter(stat -> "project1".equals(stat[0]))
+        ProjectCommitStatsRow project1Stats = stats.stream()
+            .filter(stat -> "project1".equals(stat.getProjectId()))
             .findFirst()
             .orElse(null);
         
         assertThat(project1Stats).isNotNull();
-        assertThat(project1Stats[0]).isEqualTo("project1"); // projectId
-        assertThat(project1Stats[1]).isEqualTo(2L); // 提交次数
-        assertThat(project1Stats[2]).isEqualTo(150L); // 总新增行数
-        assertThat(project1Stats[3]).isEqualTo(30L); // 总删除行数
-        assertThat(project1Stats[4]).isEqualTo(8L); // 总修改文件数
+        assertThat(project1Stats.getCommitCount()).isEqualTo(2L); // 提交次数
+        assertThat(project1Stats.getLinesAdded()).isEqualTo(150L); // 总新增行数
+        assertThat(project1Stats.getLinesDeleted()).isEqualTo(30L); // 总删除行数
+        assertThat(project1Stats.getFilesChanged()).isEqualTo(8L); // 总修改文件数
     }
     
     @Test
@@ -192,18 +197,18 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = commitRepository.getDeveloperCommitStatsByProject("project1", start, end);
+        List<DeveloperCommitStatsRow> stats = commitRepository.getDeveloperCommitStatsByProject("project1", start, end);
         
         assertThat(stats).hasSize(2);
         
         // 验证dev1在project1的统计数据
-        Object[] dev1Stats = stats.stream()
-            .filter(stat -> "dev1".equals(stat[0]))
+        DeveloperCommitStatsRow dev1Stats = stats.stream()
+            .filter(stat -> "dev1".equals(stat.getDeveloperId()))
             .findFirst()
             .orElse(null);
         
         assertThat(dev1Stats).isNotNull();
-        assertThat(dev1Stats[2]).isEqualTo(1L); // 在project1中的提交次数
+        assertThat(dev1Stats.getCommitCount()).isEqualTo(1L); // 在project1中的提交次数
     }
     
     @Test
@@ -224,19 +229,19 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = commitRepository.getDeveloperAverageCommitSize(start, end);
+        List<DeveloperCommitSizeRow> stats = commitRepository.getDeveloperAverageCommitSize(start, end);
         
         assertThat(stats).hasSize(2);
         
         // 验证dev1的平均提交大小
-        Object[] dev1Stats = stats.stream()
-            .filter(stat -> "dev1".equals(stat[0]))
+        DeveloperCommitSizeRow dev1Stats = stats.stream()
+            .filter(stat -> "dev1".equals(stat.getDeveloperId()))
             .findFirst()
             .orElse(null);
         
         assertThat(dev1Stats).isNotNull();
-        assertThat(dev1Stats[2]).isEqualTo(175.0); // 平均变更行数 (120+230)/2
-        assertThat(dev1Stats[3]).isEqualTo(6.5); // 平均修改文件数 (5+8)/2
+        assertThat(dev1Stats.getAverageChangedLines()).isEqualTo(175.0); // 平均变更行数 (120+230)/2
+        assertThat(dev1Stats.getAverageChangedFiles()).isEqualTo(6.5); // 平均修改文件数 (5+8)/2
     }
     
     @Test
@@ -244,13 +249,13 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        Object[] stats = commitRepository.getProjectTotalStats("project1", start, end);
+        CommitTotalsRow stats = commitRepository.getProjectTotalStats("project1", start, end);
         
         assertThat(stats).isNotNull();
-        assertThat(stats[0]).isEqualTo(150L); // 总新增行数
-        assertThat(stats[1]).isEqualTo(30L); // 总删除行数
-        assertThat(stats[2]).isEqualTo(8L); // 总修改文件数
-        assertThat(stats[3]).isEqualTo(2L); // 总提交次数
+        assertThat(stats.getLinesAdded()).isEqualTo(150L); // 总新增行数
+        assertThat(stats.getLinesDeleted()).isEqualTo(30L); // 总删除行数
+        assertThat(stats.getFilesChanged()).isEqualTo(8L); // 总修改文件数
+        assertThat(stats.getCommitCount()).isEqualTo(2L); // 总提交次数
     }
     
     @Test
@@ -258,12 +263,13 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> trend = commitRepository.getCommitTrendByDate(start, end);
+        List<CommitTrendRow> trend = commitRepository.getCommitTrendByDate(start, end);
         
         assertThat(trend).isNotEmpty();
-        // 验证趋势数据包含日期、提交数、新增行数、删除行数
-        Object[] firstDay = trend.get(0);
-        assertThat(firstDay).hasSize(4);
+        // 验证趋势数据包含日期和提交数
+        CommitTrendRow firstDay = trend.get(0);
+        assertThat(firstDay.getDate()).isNotNull();
+        assertThat(firstDay.getCommitCount()).isPositive();
     }
     
     @Test
@@ -271,17 +277,17 @@ public class CommitRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(8);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = commitRepository.getBranchActivityStats("project1", start, end);
+        List<BranchActivityRow> stats = commitRepository.getBranchActivityStats("project1", start, end);
         
         assertThat(stats).hasSize(2); // main和develop分支
         
         // 验证main分支的统计
-        Object[] mainStats = stats.stream()
-            .filter(stat -> "main".equals(stat[0]))
+        BranchActivityRow mainStats = stats.stream()
+            .filter(stat -> "main".equals(stat.getBranch()))
             .findFirst()
             .orElse(null);
         
         assertThat(mainStats).isNotNull();
-        assertThat(mainStats[1]).isEqualTo(1L); // main分支的提交次数
+        assertThat(mainStats.getCommitCount()).isEqualTo(1L); // main分支的提交次数
     }
 }
\ No newline at end of file
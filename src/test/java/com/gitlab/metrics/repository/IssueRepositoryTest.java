@@ -1,6 +1,7 @@
 package com.gitlab.metrics.repository;
 
 import com.gitlab.metrics.entity.Issue;
+import com.gitlab.metrics.repository.projection.BugFixTimeRow;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -266,15 +267,15 @@ public class IssueRepositoryTest {
         LocalDateTime start = LocalDateTime.now().minusDays(2);
         LocalDateTime end = LocalDateTime.now().plusDays(1);
         
-        List<Object[]> stats = issueRepository.getBugFixTimesBySeverity("project1", start, end);
+        List<BugFixTimeRow> stats = issueRepository.getBugFixTimesBySeverity("project1", start, end);
         
         assertThat(stats).hasSize(1); // 只有minor严重程度的已关闭bug
         
-        Object[] minorStats = stats.get(0);
-        assertThat(minorStats[0]).isEqualTo("minor"); // severity
-        assertThat(minorStats[1]).isEqualTo(1L); // bug数量
-        assertThat(minorStats[2]).isEqualTo(240.0); // 平均解决时间
-        assertThat(minorStats[3]).isEqualTo(60.0); // 平均响应时间
+        BugFixTimeRow minorStats = stats.get(0);
+        assertThat(minorStats.getGroup()).isEqualTo("minor"); // severity
+        assertThat(minorStats.getBugCount()).isEqualTo(1L); // bug数量
+        assertThat(minorStats.getAverageResolutionMinutes()).isEqualTo(240.0); // 平均解决时间
+        assertThat(minorStats.getAverageResponseMinutes()).isEqualTo(60.0); // 平均响应时间
     }
     
     @Test
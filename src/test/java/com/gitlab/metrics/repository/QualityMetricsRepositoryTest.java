@@ -297,6 +297,28 @@ public class QualityMetricsRepositoryTest {
         assertThat(project1Overview[1]).isEqualTo(2L); // 记录数量
     }
     
+    @Test
+    public void testFindLatestByProjects() {
+        List<QualityMetrics> latest = qualityMetricsRepository.findLatestByProjects(
+            java.util.Arrays.asList("project1", "project2"));
+        
+        assertThat(latest).hasSize(2);
+        assertThat(latest).extracting(QualityMetrics::getCommitSha).containsExactlyInAnyOrder("abc123", "ghi789");
+    }
+    
+    @Test
+    public void testGetQualityOverviewByProjects() {
+        LocalDateTime start = LocalDateTime.now().minusDays(8);
+        LocalDateTime end = LocalDateTime.now().plusDays(1);
+        
+        List<Object[]> overview = qualityMetricsRepository.getQualityOverviewByProjects(
+            java.util.Collections.singletonList("project1"), start, end);
+        
+        assertThat(overview).hasSize(1);
+        assertThat(overview.get(0)[0]).isEqualTo("project1");
+        assertThat(overview.get(0)[1]).isEqualTo(2L);
+    }
+    
     @Test
     public void testFindMostImprovedProjects() {
         LocalDateTime oldStart = LocalDateTime.now().minusDays(8);
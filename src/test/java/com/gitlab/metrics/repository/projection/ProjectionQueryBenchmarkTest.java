@@ -0,0 +1,215 @@
+package com.gitlab.metrics.repository.projection;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.repository.CommitRepository;
+import com.gitlab.metrics.repository.QualityMetricsRepository;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.function.StandardSQLFunction;
+import org.hibernate.type.StandardBasicTypes;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 投影查询基准测试
+ * 在H2上通过真实的Hibernate和Spring Data仓库执行查询，验证构造表达式/接口投影/计数查询与实体查询结果一致，
+ * 并记录实体加载（进入持久化上下文、快照用于脏检查）与投影、计数查询的分配量和耗时。
+ * 分配量随JVM、JIT和GC设置变化，只输出到日志供对比，不作为断言条件
+ */
+public class ProjectionQueryBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectionQueryBenchmarkTest.class);
+
+    private static final int QUALITY_ROWS = 4000;
+    private static final int COMMIT_ROWS = 4000;
+    private static final int ITERATIONS = 10;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private static EmbeddedDatabase database;
+    private static EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+    private QualityMetricsRepository qualityMetricsRepository;
+    private CommitRepository commitRepository;
+
+    @BeforeClass
+    public static void createDatabase() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(database);
+        factoryBean.setPackagesToScan("com.gitlab.metrics.entity");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.dialect", MetricsH2Dialect.class.getName());
+        properties.put("javax.persistence.validation.mode", "none");
+        properties.put("hibernate.physical_naming_strategy",
+            "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy");
+        properties.put("hibernate.implicit_naming_strategy",
+            "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy");
+        factoryBean.setJpaPropertyMap(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        EntityManager em = entityManagerFactory.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < QUALITY_ROWS; i++) {
+            QualityMetrics metrics = new QualityMetrics("project-" + (i % 10), "sha-q" + i, BASE.plusMinutes(i));
+            metrics.setQualityGate(i % 2 == 0 ? "FAILED" : "PASSED");
+            metrics.setCodeComplexity(i % 50 / 2.0);
+            metrics.setAnalysisDetails("details for analysis " + i);
+            em.persist(metrics);
+        }
+        for (int i = 0; i < COMMIT_ROWS; i++) {
+            Commit commit = new Commit("sha-c" + i, "project-" + (i % 10), "dev" + (i % 25),
+                "Developer " + (i % 25), BASE.plusMinutes(i));
+            commit.setLinesAdded(i % 100);
+            commit.setLinesDeleted(i % 30);
+            commit.setFilesChanged(1 + i % 5);
+            commit.setMessage("commit message " + i);
+            em.persist(commit);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        entityManagerFactory.close();
+        database.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+        entityManager = entityManagerFactory.createEntityManager();
+        JpaRepositoryFactory factory = new JpaRepositoryFactory(entityManager);
+        qualityMetricsRepository = factory.getRepository(QualityMetricsRepository.class);
+        commitRepository = factory.getRepository(CommitRepository.class);
+    }
+
+    @Test
+    public void testFailedQualityGateCountAndRefsMatchEntityQuery() {
+        LocalDateTime end = BASE.plusMinutes(QUALITY_ROWS);
+
+        List<QualityMetrics> entities = qualityMetricsRepository.findFailedQualityGates(BASE, end);
+        List<ProjectRecordRef> refs = qualityMetricsRepository.findFailedQualityGateRefs(BASE, end);
+
+        assertEquals(QUALITY_ROWS / 2, entities.size());
+        assertEquals(entities.size(), qualityMetricsRepository.countFailedQualityGates(BASE, end));
+        assertEquals(QUALITY_ROWS / 10, qualityMetricsRepository.countFailedQualityGatesByProject("project-0", BASE, end));
+        assertEquals(entities.stream().map(QualityMetrics::getId).collect(Collectors.toSet()),
+            refs.stream().map(ProjectRecordRef::getId).collect(Collectors.toSet()));
+        assertTrue(refs.stream().allMatch(ref -> ref.getProjectId().startsWith("project-")));
+    }
+
+    @Test
+    public void testDeveloperStatsProjectionMatchesEntityAggregation() {
+        LocalDateTime end = BASE.plusMinutes(COMMIT_ROWS);
+
+        List<DeveloperCommitStatsRow> rows = commitRepository.getDeveloperCommitStatsByProject("project-3", BASE, end);
+        Map<String, Long> linesByDeveloper = commitRepository.findByProjectIdAndTimestampBetween("project-3", BASE, end)
+            .stream()
+            .collect(Collectors.groupingBy(Commit::getDeveloperId, Collectors.summingLong(Commit::getLinesAdded)));
+
+        assertEquals(linesByDeveloper.size(), rows.size());
+        for (DeveloperCommitStatsRow row : rows) {
+            assertEquals(linesByDeveloper.get(row.getDeveloperId()).longValue(), row.getLinesAdded());
+            assertTrue(row.getCommitCount() > 0);
+        }
+
+        CommitTotalsRow totals = commitRepository.getProjectTotalStats("project-3", BASE, end);
+        assertEquals(COMMIT_ROWS / 10, totals.getCommitCount());
+        assertEquals(rows.stream().mapToLong(DeveloperCommitStatsRow::getLinesAdded).sum(), totals.getLinesAdded());
+    }
+
+    @Test
+    public void testLogProjectionAllocationAgainstEntityHydration() {
+        LocalDateTime end = BASE.plusMinutes(QUALITY_ROWS);
+
+        Measurement entities = measure(() -> qualityMetricsRepository.findFailedQualityGates(BASE, end).size());
+        Measurement refs = measure(() -> qualityMetricsRepository.findFailedQualityGateRefs(BASE, end).size());
+        Measurement count = measure(() -> (int) qualityMetricsRepository.countFailedQualityGates(BASE, end));
+
+        logger.info("failed quality gates x{}: entities {} / refs {} / count {}", ITERATIONS, entities, refs, count);
+
+        LocalDateTime commitEnd = BASE.plusMinutes(COMMIT_ROWS);
+        Measurement hydrated = measure(() -> commitRepository.findByProjectIdAndTimestampBetween("project-3", BASE, commitEnd)
+            .stream()
+            .collect(Collectors.groupingBy(Commit::getDeveloperId, Collectors.summingLong(Commit::getLinesAdded)))
+            .size());
+        Measurement projected = measure(() ->
+            commitRepository.getDeveloperCommitStatsByProject("project-3", BASE, commitEnd).size());
+
+        logger.info("developer commit stats x{}: entity aggregation {} / projection {}", ITERATIONS, hydrated, projected);
+    }
+
+    /**
+     * 预热后执行 ITERATIONS 次，每次之后清空持久化上下文，模拟每个请求一个新的会话
+     */
+    private Measurement measure(Supplier<Integer> query) {
+        for (int i = 0; i < 5; i++) {
+            query.get();
+            entityManager.clear();
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+            entityManager.clear();
+        }
+        long elapsed = System.nanoTime() - started;
+        return new Measurement(threadBean.getThreadAllocatedBytes(threadId) - bytesBefore, elapsed);
+    }
+
+    /**
+     * H2方言补充 MySQL 的 DATE() 类型声明，使按日期聚合的仓库查询能通过启动校验
+     */
+    public static class MetricsH2Dialect extends H2Dialect {
+        public MetricsH2Dialect() {
+            registerFunction("date", new StandardSQLFunction("date", StandardBasicTypes.DATE));
+        }
+    }
+
+    private static class Measurement {
+        private final long bytes;
+        private final long nanos;
+
+        Measurement(long bytes, long nanos) {
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f KB/op %.2f ms/op", bytes / 1024.0 / ITERATIONS, nanos / 1e6 / ITERATIONS);
+        }
+    }
+}
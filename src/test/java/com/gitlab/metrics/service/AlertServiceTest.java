@@ -16,7 +16,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import com.gitlab.metrics.service.outbox.OutboxService;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -33,7 +33,7 @@ import static org.mockito.Mockito.*;
 public class AlertServiceTest {
 
     @Mock
-    private RabbitTemplate rabbitTemplate;
+    private OutboxService outboxService;
 
     @Mock
     private ObjectMapper objectMapper;
@@ -89,7 +89,7 @@ public class AlertServiceTest {
         ArgumentCaptor<String> routingKeyCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
 
-        verify(rabbitTemplate).convertAndSend(
+        verify(outboxService).enqueue(
             exchangeCaptor.capture(),
             routingKeyCaptor.capture(),
             messageCaptor.capture()
@@ -109,7 +109,7 @@ public class AlertServiceTest {
         alertService.handleSecurityAnalysisAlert(securityResult);
 
         // Then
-        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), anyString());
+        verify(outboxService, never()).enqueue(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -121,7 +121,7 @@ public class AlertServiceTest {
         alertService.handlePerformanceAnalysisAlert(performanceResult);
 
         // Then
-        verify(rabbitTemplate).convertAndSend(
+        verify(outboxService).enqueue(
             eq(RabbitMQConfig.GITLAB_EVENTS_EXCHANGE),
             eq("alert.notification"),
             eq("{\"test\":\"alert\"}")
@@ -138,7 +138,7 @@ public class AlertServiceTest {
         alertService.handlePerformanceAnalysisAlert(performanceResult);
 
         // Then
-        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), anyString());
+        verify(outboxService, never()).enqueue(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -151,7 +151,7 @@ public class AlertServiceTest {
 
         // Then
         // 应该发送2个告警：1个合并阻止告警 + 1个安全违规告警
-        verify(rabbitTemplate, times(2)).convertAndSend(
+        verify(outboxService, times(2)).enqueue(
             eq(RabbitMQConfig.GITLAB_EVENTS_EXCHANGE),
             eq("alert.notification"),
             eq("{\"test\":\"alert\"}")
@@ -175,7 +175,7 @@ public class AlertServiceTest {
         alertService.sendAlert(alert);
 
         // Then
-        verify(rabbitTemplate).convertAndSend(
+        verify(outboxService).enqueue(
             eq(RabbitMQConfig.GITLAB_EVENTS_EXCHANGE),
             eq("alert.notification"),
             eq("{\"test\":\"alert\"}")
@@ -4,6 +4,8 @@ import com.gitlab.metrics.dto.webhook.PushEventRequest;
 import com.gitlab.metrics.entity.Commit;
 import com.gitlab.metrics.repository.CommitRepository;
 import com.gitlab.metrics.repository.FileChangeRepository;
+import com.gitlab.metrics.service.hotfile.HotFileTracker;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,6 +35,12 @@ public class CommitAnalysisServiceTest {
     @Mock
     private FileChangeRepository fileChangeRepository;
     
+    @Mock
+    private RealtimeCounterService realtimeCounterService;
+
+    @Mock
+    private HotFileTracker hotFileTracker;
+    
     @InjectMocks
     private CommitAnalysisService commitAnalysisService;
     
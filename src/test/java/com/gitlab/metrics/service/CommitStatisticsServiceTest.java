@@ -2,6 +2,13 @@ package com.gitlab.metrics.service;
 
 import com.gitlab.metrics.entity.Commit;
 import com.gitlab.metrics.repository.CommitRepository;
+import com.gitlab.metrics.repository.projection.BranchActivityRow;
+import com.gitlab.metrics.repository.projection.CommitTotalsRow;
+import com.gitlab.metrics.repository.projection.CommitTrendRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitSizeRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow;
+import com.gitlab.metrics.repository.projection.HourlyCommitCountRow;
+import com.gitlab.metrics.repository.projection.ProjectCommitStatsRow;
 import com.gitlab.metrics.service.CommitStatisticsService.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -45,9 +52,9 @@ public class CommitStatisticsServiceTest {
     @Test
     public void testGetDeveloperCommitStats_WithoutProjectFilter() {
         // 准备测试数据
-        Object[] row1 = {"dev1@example.com", "Developer One", 10L, 500L, 200L, 15L};
-        Object[] row2 = {"dev2@example.com", "Developer Two", 8L, 300L, 150L, 12L};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
+        DeveloperCommitStatsRow row1 = new DeveloperCommitStatsRow("dev1@example.com", "Developer One", 10L, 500L, 200L, 15L);
+        DeveloperCommitStatsRow row2 = new DeveloperCommitStatsRow("dev2@example.com", "Developer Two", 8L, 300L, 150L, 12L);
+        List<DeveloperCommitStatsRow> mockData = Arrays.asList(row1, row2);
         
         when(commitRepository.getDeveloperCommitStats(startDate, endDate)).thenReturn(mockData);
         
@@ -74,8 +81,8 @@ public class CommitStatisticsServiceTest {
     public void testGetDeveloperCommitStats_WithProjectFilter() {
         // 准备测试数据
         String projectId = "project123";
-        Object[] row1 = {"dev1@example.com", "Developer One", 5L, 250L, 100L, 8L};
-        List<Object[]> mockData = Collections.singletonList(row1);
+        DeveloperCommitStatsRow row1 = new DeveloperCommitStatsRow("dev1@example.com", "Developer One", 5L, 250L, 100L, 8L);
+        List<DeveloperCommitStatsRow> mockData = Collections.singletonList(row1);
         
         when(commitRepository.getDeveloperCommitStatsByProject(projectId, startDate, endDate))
             .thenReturn(mockData);
@@ -100,9 +107,9 @@ public class CommitStatisticsServiceTest {
     public void testGetDeveloperCommitStats_WithDeveloperFilter() {
         // 准备测试数据
         String targetDeveloperId = "dev1@example.com";
-        Object[] row1 = {"dev1@example.com", "Developer One", 10L, 500L, 200L, 15L};
-        Object[] row2 = {"dev2@example.com", "Developer Two", 8L, 300L, 150L, 12L};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
+        DeveloperCommitStatsRow row1 = new DeveloperCommitStatsRow("dev1@example.com", "Developer One", 10L, 500L, 200L, 15L);
+        DeveloperCommitStatsRow row2 = new DeveloperCommitStatsRow("dev2@example.com", "Developer Two", 8L, 300L, 150L, 12L);
+        List<DeveloperCommitStatsRow> mockData = Arrays.asList(row1, row2);
         
         when(commitRepository.getDeveloperCommitStats(startDate, endDate)).thenReturn(mockData);
         
@@ -120,9 +127,9 @@ public class CommitStatisticsServiceTest {
     @Test
     public void testGetProjectCommitStats() {
         // 准备测试数据
-        Object[] row1 = {"project1", 20L, 1000L, 400L, 30L};
-        Object[] row2 = {"project2", 15L, 750L, 300L, 25L};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
+        ProjectCommitStatsRow row1 = new ProjectCommitStatsRow("project1", 20L, 1000L, 400L, 30L);
+        ProjectCommitStatsRow row2 = new ProjectCommitStatsRow("project2", 15L, 750L, 300L, 25L);
+        List<ProjectCommitStatsRow> mockData = Arrays.asList(row1, row2);
         
         when(commitRepository.getProjectCommitStats(startDate, endDate)).thenReturn(mockData);
         
@@ -147,9 +154,9 @@ public class CommitStatisticsServiceTest {
         // 准备测试数据
         LocalDate date1 = LocalDate.of(2023, 12, 1);
         LocalDate date2 = LocalDate.of(2023, 12, 2);
-        Object[] row1 = {date1, 5L, 250L, 100L};
-        Object[] row2 = {date2, 3L, 150L, 50L};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
+        CommitTrendRow row1 = new CommitTrendRow(date1, 5L, 250L, 100L);
+        CommitTrendRow row2 = new CommitTrendRow(date2, 3L, 150L, 50L);
+        List<CommitTrendRow> mockData = Arrays.asList(row1, row2);
         
         when(commitRepository.getCommitTrendByDate(startDate, endDate)).thenReturn(mockData);
         
@@ -178,8 +185,8 @@ public class CommitStatisticsServiceTest {
         // 准备测试数据
         String projectId = "project123";
         LocalDate date1 = LocalDate.of(2023, 12, 1);
-        Object[] row1 = {projectId, date1, 3L, 150L, 75L};
-        List<Object[]> mockData = Collections.singletonList(row1);
+        CommitTrendRow row1 = new CommitTrendRow(projectId, date1, 3L, 150L, 75L);
+        List<CommitTrendRow> mockData = Collections.singletonList(row1);
         
         when(commitRepository.getCommitTrendByProjectAndDate(projectId, startDate, endDate))
             .thenReturn(mockData);
@@ -206,10 +213,10 @@ public class CommitStatisticsServiceTest {
     public void testGetBranchActivityStats() {
         // 准备测试数据
         String projectId = "project123";
-        Object[] row1 = {"main", 15L, 750L, 300L};
-        Object[] row2 = {"develop", 10L, 500L, 200L};
-        Object[] row3 = {"feature/new-feature", 5L, 250L, 100L};
-        List<Object[]> mockData = Arrays.asList(row1, row2, row3);
+        BranchActivityRow row1 = new BranchActivityRow("main", 15L, 750L, 300L);
+        BranchActivityRow row2 = new BranchActivityRow("develop", 10L, 500L, 200L);
+        BranchActivityRow row3 = new BranchActivityRow("feature/new-feature", 5L, 250L, 100L);
+        List<BranchActivityRow> mockData = Arrays.asList(row1, row2, row3);
         
         when(commitRepository.getBranchActivityStats(projectId, startDate, endDate)).thenReturn(mockData);
         
@@ -232,10 +239,10 @@ public class CommitStatisticsServiceTest {
     public void testGetDeveloperActivityByHour() {
         // 准备测试数据 - 只有几个小时有提交
         String developerId = "dev1@example.com";
-        Object[] row1 = {9, 5L}; // 9点有5次提交
-        Object[] row2 = {14, 3L}; // 14点有3次提交
-        Object[] row3 = {18, 2L}; // 18点有2次提交
-        List<Object[]> mockData = Arrays.asList(row1, row2, row3);
+        HourlyCommitCountRow row1 = new HourlyCommitCountRow(9, 5L); // 9点有5次提交
+        HourlyCommitCountRow row2 = new HourlyCommitCountRow(14, 3L); // 14点有3次提交
+        HourlyCommitCountRow row3 = new HourlyCommitCountRow(18, 2L); // 18点有2次提交
+        List<HourlyCommitCountRow> mockData = Arrays.asList(row1, row2, row3);
         
         when(commitRepository.getDeveloperActivityByHour(developerId, startDate, endDate))
             .thenReturn(mockData);
@@ -296,9 +303,9 @@ public class CommitStatisticsServiceTest {
     @Test
     public void testGetDeveloperAverageCommitSize() {
         // 准备测试数据
-        Object[] row1 = {"dev1@example.com", "Developer One", 50.5, 3.2};
-        Object[] row2 = {"dev2@example.com", "Developer Two", 75.8, 4.1};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
+        DeveloperCommitSizeRow row1 = new DeveloperCommitSizeRow("dev1@example.com", "Developer One", 50.5, 3.2);
+        DeveloperCommitSizeRow row2 = new DeveloperCommitSizeRow("dev2@example.com", "Developer Two", 75.8, 4.1);
+        List<DeveloperCommitSizeRow> mockData = Arrays.asList(row1, row2);
         
         when(commitRepository.getDeveloperAverageCommitSize(startDate, endDate)).thenReturn(mockData);
         
@@ -322,7 +329,7 @@ public class CommitStatisticsServiceTest {
     public void testGetProjectTotalStats() {
         // 准备测试数据
         String projectId = "project123";
-        Object[] mockData = {1000L, 400L, 50L, 25L}; // linesAdded, linesDeleted, filesChanged, commits
+        CommitTotalsRow mockData = new CommitTotalsRow(1000L, 400L, 50L, 25L); // linesAdded, linesDeleted, filesChanged, commits
         
         when(commitRepository.getProjectTotalStats(projectId, startDate, endDate)).thenReturn(mockData);
         
@@ -358,9 +365,9 @@ public class CommitStatisticsServiceTest {
         // 准备测试数据 - 只有部分日期有数据
         LocalDate date1 = LocalDate.of(2023, 12, 1);
         LocalDate date3 = LocalDate.of(2023, 12, 3); // 跳过12月2日
-        Object[] row1 = {date1, 5L, 250L, 100L};
-        Object[] row2 = {date3, 3L, 150L, 50L};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
+        CommitTrendRow row1 = new CommitTrendRow(date1, 5L, 250L, 100L);
+        CommitTrendRow row2 = new CommitTrendRow(date3, 3L, 150L, 50L);
+        List<CommitTrendRow> mockData = Arrays.asList(row1, row2);
         
         // 设置较短的时间范围以便测试
         LocalDateTime shortStartDate = LocalDateTime.of(2023, 12, 1, 0, 0);
@@ -2,6 +2,7 @@ package com.gitlab.metrics.service;
 
 import com.gitlab.metrics.entity.TestCoverage;
 import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -32,6 +33,9 @@ public class CoverageQualityGateServiceTest {
     @Mock
     private AlertService alertService;
     
+    @Mock
+    private RealtimeCounterService realtimeCounterService;
+    
     @InjectMocks
     private CoverageQualityGateService qualityGateService;
     
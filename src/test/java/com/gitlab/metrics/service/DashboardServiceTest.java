@@ -113,11 +113,11 @@ public class DashboardServiceTest {
         when(commitStatisticsService.getDeveloperCommitStats(startDate, endDate, projectId, null))
             .thenReturn(developerStats);
 
-        when(mergeRequestRepository.findByProjectIdAndCreatedAtBetween(projectId, startDate, endDate))
-            .thenReturn(createMockMergeRequests());
+        when(mergeRequestRepository.countByProjectIdAndCreatedAtBetween(projectId, startDate, endDate))
+            .thenReturn((long) createMockMergeRequests().size());
 
-        when(issueRepository.findByProjectIdAndCreatedAtBetween(projectId, startDate, endDate))
-            .thenReturn(createMockIssues());
+        when(issueRepository.countByProjectIdAndCreatedAtBetween(projectId, startDate, endDate))
+            .thenReturn((long) createMockIssues().size());
 
         // When
         DashboardResponse response = dashboardService.getDashboardData(projectId, startDate, endDate, timeRange);
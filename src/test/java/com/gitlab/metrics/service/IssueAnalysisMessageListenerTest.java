@@ -1,18 +1,21 @@
 package com.gitlab.metrics.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gitlab.metrics.dto.webhook.IssueEventRequest;
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.exception.DataProcessingException;
+import com.gitlab.metrics.messaging.DelayedRetryInterceptor;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventType;
 import com.gitlab.metrics.service.IssueAnalysisService.IssueProcessResult;
-import com.gitlab.metrics.service.webhook.WebhookEventProcessor.WebhookEventMessage;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 
-import java.time.LocalDateTime;
-
+import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -25,28 +28,18 @@ public class IssueAnalysisMessageListenerTest {
     @Mock
     private IssueAnalysisService issueAnalysisService;
 
-    @Mock
-    private ObjectMapper objectMapper;
-
     @InjectMocks
     private IssueAnalysisMessageListener messageListener;
 
-    private String testMessage;
-    private WebhookEventMessage webhookEventMessage;
+    private EventEnvelope eventMessage;
     private IssueEventRequest issueEventRequest;
     private IssueProcessResult successResult;
     private IssueProcessResult failureResult;
 
     @Before
     public void setUp() throws Exception {
-        testMessage = "{\"requestId\":\"req123\",\"eventType\":\"issue\",\"eventData\":{\"id\":123}}";
-        
-        webhookEventMessage = new WebhookEventMessage();
-        webhookEventMessage.setRequestId("req123");
-        webhookEventMessage.setEventType("issue");
-        webhookEventMessage.setEventData(createMockIssueEventData());
-        
         issueEventRequest = createMockIssueEventRequest();
+        eventMessage = new EventEnvelope(EventType.ISSUE, "req123", issueEventRequest);
         
         successResult = new IssueProcessResult();
         successResult.setSuccess(true);
@@ -64,133 +57,84 @@ public class IssueAnalysisMessageListenerTest {
     @Test
     public void testHandleIssueAnalysisMessage_Success() throws Exception {
         // Given
-        when(objectMapper.readValue(testMessage, WebhookEventMessage.class))
-            .thenReturn(webhookEventMessage);
-        when(objectMapper.convertValue(any(), eq(IssueEventRequest.class)))
-            .thenReturn(issueEventRequest);
         when(issueAnalysisService.processIssueEvent(issueEventRequest))
             .thenReturn(successResult);
 
         // When
-        messageListener.handleIssueAnalysisMessage(testMessage);
+        messageListener.handleIssueAnalysisMessage(eventMessage);
 
         // Then
-        verify(objectMapper).readValue(testMessage, WebhookEventMessage.class);
-        verify(objectMapper).convertValue(webhookEventMessage.getEventData(), IssueEventRequest.class);
         verify(issueAnalysisService).processIssueEvent(issueEventRequest);
     }
 
     @Test
     public void testHandleIssueAnalysisMessage_ProcessingFailure() throws Exception {
         // Given
-        when(objectMapper.readValue(testMessage, WebhookEventMessage.class))
-            .thenReturn(webhookEventMessage);
-        when(objectMapper.convertValue(any(), eq(IssueEventRequest.class)))
-            .thenReturn(issueEventRequest);
         when(issueAnalysisService.processIssueEvent(issueEventRequest))
             .thenReturn(failureResult);
 
         // When
-        messageListener.handleIssueAnalysisMessage(testMessage);
+        messageListener.handleIssueAnalysisMessage(eventMessage);
 
         // Then
-        verify(objectMapper).readValue(testMessage, WebhookEventMessage.class);
-        verify(objectMapper).convertValue(webhookEventMessage.getEventData(), IssueEventRequest.class);
         verify(issueAnalysisService).processIssueEvent(issueEventRequest);
     }
 
     @Test
-    public void testHandleIssueAnalysisMessage_JsonParsingException() throws Exception {
+    public void testHandleIssueAnalysisMessage_WrongEventType() throws Exception {
         // Given
-        when(objectMapper.readValue(testMessage, WebhookEventMessage.class))
-            .thenThrow(new RuntimeException("JSON解析失败"));
+        EventEnvelope pushMessage = new EventEnvelope(EventType.PUSH, "req123", new PushEventRequest());
 
         // When
-        messageListener.handleIssueAnalysisMessage(testMessage);
-
-        // Then
-        verify(objectMapper).readValue(testMessage, WebhookEventMessage.class);
-        verify(objectMapper, never()).convertValue(any(), eq(IssueEventRequest.class));
+        try {
+            messageListener.handleIssueAnalysisMessage(pushMessage);
+            fail("Expected the message to be rejected");
+        } catch (DataProcessingException e) {
+            // Then: 不可重试，直接进入 parking lot
+            assertFalse(DelayedRetryInterceptor.isRetryable(e));
+        }
         verify(issueAnalysisService, never()).processIssueEvent(any(IssueEventRequest.class));
     }
 
     @Test
-    public void testHandleIssueAnalysisMessage_ConversionException() throws Exception {
+    public void testHandleIssueAnalysisMessage_PayloadTypeMismatch() throws Exception {
         // Given
-        when(objectMapper.readValue(testMessage, WebhookEventMessage.class))
-            .thenReturn(webhookEventMessage);
-        when(objectMapper.convertValue(any(), eq(IssueEventRequest.class)))
-            .thenThrow(new RuntimeException("数据转换失败"));
+        EventEnvelope mismatched = new EventEnvelope(EventType.ISSUE, "req123", new PushEventRequest());
 
         // When
-        messageListener.handleIssueAnalysisMessage(testMessage);
-
-        // Then
-        verify(objectMapper).readValue(testMessage, WebhookEventMessage.class);
-        verify(objectMapper).convertValue(webhookEventMessage.getEventData(), IssueEventRequest.class);
+        try {
+            messageListener.handleIssueAnalysisMessage(mismatched);
+            fail("Expected the message to be rejected");
+        } catch (DataProcessingException e) {
+            // Then
+            assertTrue(e.getCause() instanceof AmqpRejectAndDontRequeueException);
+        }
         verify(issueAnalysisService, never()).processIssueEvent(any(IssueEventRequest.class));
     }
 
     @Test
     public void testHandleIssueAnalysisMessage_ServiceException() throws Exception {
         // Given
-        when(objectMapper.readValue(testMessage, WebhookEventMessage.class))
-            .thenReturn(webhookEventMessage);
-        when(objectMapper.convertValue(any(), eq(IssueEventRequest.class)))
-            .thenReturn(issueEventRequest);
         when(issueAnalysisService.processIssueEvent(issueEventRequest))
             .thenThrow(new RuntimeException("服务处理异常"));
 
         // When
-        messageListener.handleIssueAnalysisMessage(testMessage);
-
-        // Then
-        verify(objectMapper).readValue(testMessage, WebhookEventMessage.class);
-        verify(objectMapper).convertValue(webhookEventMessage.getEventData(), IssueEventRequest.class);
+        try {
+            messageListener.handleIssueAnalysisMessage(eventMessage);
+            fail("Expected the failure to propagate for retry");
+        } catch (DataProcessingException e) {
+            // Then: 可重试，交给延迟梯队
+            assertTrue(DelayedRetryInterceptor.isRetryable(e));
+        }
         verify(issueAnalysisService).processIssueEvent(issueEventRequest);
     }
 
-    @Test
-    public void testHandleIssueAnalysisMessage_EmptyMessage() throws Exception {
-        // Given
-        String emptyMessage = "";
-        when(objectMapper.readValue(emptyMessage, WebhookEventMessage.class))
-            .thenThrow(new RuntimeException("空消息"));
-
-        // When
-        messageListener.handleIssueAnalysisMessage(emptyMessage);
-
-        // Then
-        verify(objectMapper).readValue(emptyMessage, WebhookEventMessage.class);
-        verify(issueAnalysisService, never()).processIssueEvent(any(IssueEventRequest.class));
-    }
-
-    @Test
-    public void testHandleIssueAnalysisMessage_NullMessage() throws Exception {
-        // Given
-        String nullMessage = null;
-        when(objectMapper.readValue(nullMessage, WebhookEventMessage.class))
-            .thenThrow(new RuntimeException("空消息"));
-
-        // When
-        messageListener.handleIssueAnalysisMessage(nullMessage);
-
-        // Then
-        verify(objectMapper).readValue(nullMessage, WebhookEventMessage.class);
-        verify(issueAnalysisService, never()).processIssueEvent(any(IssueEventRequest.class));
-    }
-
     // Helper methods
 
-    private Object createMockIssueEventData() {
-        // 返回一个模拟的事件数据对象
-        return new Object();
-    }
-
     private IssueEventRequest createMockIssueEventRequest() {
         IssueEventRequest request = new IssueEventRequest();
         
-        IssueEventRequest.Project project = new IssueEventRequest.Project();
+        IssueEventRequest.ProjectInfo project = new IssueEventRequest.ProjectInfo();
         project.setId(1L);
         request.setProject(project);
         
@@ -206,7 +150,7 @@ public class IssueAnalysisMessageListenerTest {
         attrs.setUrl("http://gitlab.com/issues/123");
         request.setObjectAttributes(attrs);
         
-        IssueEventRequest.User user = new IssueEventRequest.User();
+        IssueEventRequest.UserInfo user = new IssueEventRequest.UserInfo();
         user.setId(100L);
         user.setName("Test User");
         request.setUser(user);
@@ -0,0 +1,180 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.config.MessageRetryProperties;
+import com.gitlab.metrics.messaging.ConfirmedSender;
+import com.gitlab.metrics.messaging.DelayedRetryInterceptor;
+import com.gitlab.metrics.messaging.InProcessEventTransport;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.OngoingStubbing;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ParkingLotService单元测试
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ParkingLotServiceTest {
+
+    private static final String PARKING_LOT = "parking.lot.queue";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private ConfirmedSender confirmedSender;
+
+    @Mock
+    private AmqpAdmin amqpAdmin;
+
+    @Spy
+    private MessageRetryProperties retryProperties = new MessageRetryProperties();
+
+    @Mock
+    private Channel channel;
+
+    @InjectMocks
+    private ParkingLotService parkingLotService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        lenient().when(rabbitTemplate.execute(any(ChannelCallback.class)))
+            .thenAnswer(invocation -> ((ChannelCallback<Object>) invocation.getArgument(0)).doInRabbit(channel));
+    }
+
+    @Test
+    public void testInspectReturnsMetadataAndRequeuesEverything() throws Exception {
+        parked(parkedMessage(1, "commit.analysis.queue"), parkedMessage(2, "issue.analysis.queue"));
+
+        List<ParkingLotService.ParkedMessage> messages = parkingLotService.inspect(null, 10);
+
+        assertEquals(2, messages.size());
+        ParkingLotService.ParkedMessage first = messages.get(0);
+        assertEquals("commit.analysis.queue", first.getOriginalQueue());
+        assertEquals(Long.valueOf(5), first.getAttempts());
+        assertEquals("exhausted", first.getReason());
+        assertEquals("java.sql.SQLTransientConnectionException", first.getExceptionType());
+        assertEquals("{\"id\":1}", first.getBody());
+        verify(channel).basicNack(1, false, true);
+        verify(channel).basicNack(2, false, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void testInspectFiltersByOriginalQueue() throws Exception {
+        parked(parkedMessage(1, "commit.analysis.queue"), parkedMessage(2, "issue.analysis.queue"),
+            parkedMessage(3, "issue.analysis.queue"));
+
+        List<ParkingLotService.ParkedMessage> messages = parkingLotService.inspect("issue.analysis.queue", 1);
+
+        assertEquals(1, messages.size());
+        assertEquals("{\"id\":2}", messages.get(0).getBody());
+        verify(channel, times(2)).basicGet(PARKING_LOT, false);
+    }
+
+    @Test
+    public void testReplaySendsToOriginalQueueWithoutFailureHeaders() throws Exception {
+        parked(parkedMessage(1, "commit.analysis.queue"), parkedMessage(2, "issue.analysis.queue"));
+
+        int replayed = parkingLotService.replay("commit.analysis.queue", 10);
+
+        assertEquals(1, replayed);
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(confirmedSender).send(eq(""), eq("commit.analysis.queue"), sent.capture());
+        Map<String, Object> headers = sent.getValue().getMessageProperties().getHeaders();
+        assertFalse(headers.containsKey(DelayedRetryInterceptor.ATTEMPTS_HEADER));
+        assertFalse(headers.containsKey(DelayedRetryInterceptor.EXCEPTION_TYPE_HEADER));
+        assertFalse(headers.containsKey(DelayedRetryInterceptor.PARKED_REASON_HEADER));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicNack(2, false, true);
+    }
+
+    @Test
+    public void testReplayFailureLeavesMessageParked() throws Exception {
+        parked(parkedMessage(1, "commit.analysis.queue"));
+        doThrow(new AmqpException("No confirm")).when(confirmedSender).send(anyString(), anyString(), any(Message.class));
+
+        try {
+            parkingLotService.replay(null, 10);
+            fail("Expected replay failure");
+        } catch (AmqpException e) {
+            assertEquals("No confirm", e.getMessage());
+        }
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        verify(channel).basicNack(1, false, true);
+    }
+
+    @Test
+    public void testPurgeRespectsLimit() throws Exception {
+        parked(parkedMessage(1, "commit.analysis.queue"), parkedMessage(2, "commit.analysis.queue"),
+            parkedMessage(3, "commit.analysis.queue"));
+
+        int purged = parkingLotService.purge(null, 2);
+
+        assertEquals(2, purged);
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel, times(2)).basicGet(PARKING_LOT, false);
+        verifyNoInteractions(confirmedSender);
+    }
+
+    @Test
+    public void testInProcessTransportUsesInMemoryParkingLot() {
+        InProcessEventTransport transport = mock(InProcessEventTransport.class);
+        when(transport.getParkedCount()).thenReturn(4);
+        when(transport.replayParked("commit.analysis.queue", 10)).thenReturn(2);
+        ReflectionTestUtils.setField(parkingLotService, "inProcessTransport", transport);
+
+        assertEquals(4, parkingLotService.count());
+        assertEquals(2, parkingLotService.replay("commit.analysis.queue", 10));
+        verifyNoInteractions(rabbitTemplate, amqpAdmin, confirmedSender);
+    }
+
+    // Helper methods
+
+    private void parked(GetResponse... responses) throws Exception {
+        OngoingStubbing<GetResponse> stubbing = when(channel.basicGet(PARKING_LOT, false));
+        for (GetResponse response : responses) {
+            stubbing = stubbing.thenReturn(response);
+        }
+        stubbing.thenReturn(null);
+    }
+
+    private GetResponse parkedMessage(long deliveryTag, String originalQueue) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(DelayedRetryInterceptor.ORIGINAL_QUEUE_HEADER, originalQueue);
+        headers.put(DelayedRetryInterceptor.ATTEMPTS_HEADER, 5);
+        headers.put(DelayedRetryInterceptor.PARKED_REASON_HEADER, "exhausted");
+        headers.put(DelayedRetryInterceptor.EXCEPTION_TYPE_HEADER, "java.sql.SQLTransientConnectionException");
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .headers(headers)
+            .build();
+        byte[] body = ("{\"id\":" + deliveryTag + "}").getBytes(StandardCharsets.UTF_8);
+        return new GetResponse(new Envelope(deliveryTag, false, "", PARKING_LOT), properties, body, 0);
+    }
+}
@@ -0,0 +1,235 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.service.archive.ArchiveService;
+import com.gitlab.metrics.service.archive.ArchiveTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * PartitionMaintenanceService单元测试
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PartitionMaintenanceServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private PartitionMaintenanceService partitionMaintenanceService;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(partitionMaintenanceService, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    public void testPartitionsToCreate_FillsMonthsAfterLastPartition() {
+        List<String> existing = Arrays.asList("p_history", "p202401", "p202402");
+
+        List<String> result = PartitionMaintenanceService.partitionsToCreate(existing, YearMonth.of(2024, 5));
+
+        assertEquals(Arrays.asList("p202403", "p202404", "p202405"), result);
+        assertTrue(PartitionMaintenanceService.partitionsToCreate(existing, YearMonth.of(2024, 2)).isEmpty());
+    }
+
+    @Test
+    public void testPartitionsToRemove_OnlyWholeMonthsBeforeCutoff() {
+        List<String> existing = Arrays.asList("p_history", "p202401", "p202402", "p202403");
+
+        assertEquals(Arrays.asList("p_history", "p202401"),
+            PartitionMaintenanceService.partitionsToRemove(existing, YearMonth.of(2024, 2)));
+        assertTrue(PartitionMaintenanceService.partitionsToRemove(existing, YearMonth.of(2023, 12)).isEmpty());
+        // 始终保留最后一个分区
+        assertEquals(Arrays.asList("p_history", "p202401", "p202402"),
+            PartitionMaintenanceService.partitionsToRemove(existing, YearMonth.of(2030, 1)));
+    }
+
+    @Test
+    public void testRunMaintenance_CreatesAndDropsPartitions() {
+        ReflectionTestUtils.setField(partitionMaintenanceService, "enabled", true);
+        ReflectionTestUtils.setField(partitionMaintenanceService, "mode", "drop");
+        YearMonth now = YearMonth.now();
+        String oldest = PartitionMaintenanceService.partitionName(now.minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(now);
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(3);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList("p_history", oldest, current));
+
+        partitionMaintenanceService.runMaintenance();
+
+        String next = PartitionMaintenanceService.partitionName(now.plusMonths(1));
+        verify(jdbcTemplate).execute(startsWith("ALTER TABLE commits ADD PARTITION (PARTITION " + next));
+        verify(jdbcTemplate).execute("ALTER TABLE commits DROP PARTITION " + oldest);
+        verify(jdbcTemplate).execute("ALTER TABLE file_changes DROP PARTITION p_history");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE commits DROP PARTITION " + current);
+        assertEquals(2.0, meterRegistry.find("retention.partitions.dropped").tag("table", "commits").counter().count(), 0.01);
+        assertEquals(3.0, meterRegistry.find("retention.partitions.created").tag("table", "commits").counter().count(), 0.01);
+        assertNotNull(meterRegistry.find("retention.run.duration").timer());
+    }
+
+    @Test
+    public void testRunMaintenance_ArchiveModeExchangesBeforeDrop() {
+        ReflectionTestUtils.setField(partitionMaintenanceService, "enabled", true);
+        String oldest = PartitionMaintenanceService.partitionName(YearMonth.now().minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(YearMonth.now().plusMonths(3));
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(2);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList(oldest, current));
+
+        partitionMaintenanceService.runMaintenance();
+
+        verify(jdbcTemplate).execute("ALTER TABLE commits EXCHANGE PARTITION " + oldest +
+                                     " WITH TABLE commits_archive_" + oldest);
+        verify(jdbcTemplate).execute("ALTER TABLE commits DROP PARTITION " + oldest);
+    }
+
+    @Test
+    public void testRunMaintenance_ArchiveModeIsIdempotentAfterInterruptedRun() {
+        ReflectionTestUtils.setField(partitionMaintenanceService, "enabled", true);
+        String oldest = PartitionMaintenanceService.partitionName(YearMonth.now().minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(YearMonth.now().plusMonths(3));
+        String archiveTable = "commits_archive_" + oldest;
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(2);
+        // 上次运行已交换分区但未删除：归档表已去分区且有数据，线上分区为空
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), startsWith("commits_archive_")))
+            .thenReturn(0);
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), startsWith("file_changes_archive_")))
+            .thenReturn(0);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList(oldest, current));
+        when(jdbcTemplate.queryForList(startsWith("SELECT 1 FROM " + archiveTable), eq(Integer.class)))
+            .thenReturn(Collections.singletonList(1));
+
+        partitionMaintenanceService.runMaintenance();
+
+        verify(jdbcTemplate, never()).execute("ALTER TABLE " + archiveTable + " REMOVE PARTITIONING");
+        verify(jdbcTemplate, never()).execute(startsWith("ALTER TABLE commits EXCHANGE PARTITION"));
+        verify(jdbcTemplate).execute("ALTER TABLE commits DROP PARTITION " + oldest);
+        verify(jdbcTemplate).execute(startsWith("ALTER TABLE file_changes EXCHANGE PARTITION " + oldest));
+    }
+
+    @Test
+    public void testRunMaintenance_SkipsUnpartitionedTables() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyString()))
+            .thenThrow(new BadSqlGrammarException("partitions", "SELECT", new SQLException("no such table")));
+
+        partitionMaintenanceService.runMaintenance();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+        assertEquals(0L, partitionMaintenanceService.purgePartitionsBefore("commits", LocalDateTime.now()).getDeletedRows());
+    }
+
+    @Test
+    public void testPurgePartitionsBefore_RetentionDisabledIsNoop() {
+        PartitionMaintenanceService.PurgeResult result =
+            partitionMaintenanceService.purgePartitionsBefore("commits", LocalDateTime.now());
+
+        assertEquals(0, result.getPartitions());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void testPurgePartitionsBefore_ReportsExactDroppedRows() {
+        ReflectionTestUtils.setField(partitionMaintenanceService, "enabled", true);
+        ReflectionTestUtils.setField(partitionMaintenanceService, "mode", "drop");
+        String oldest = PartitionMaintenanceService.partitionName(YearMonth.now().minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(YearMonth.now());
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(2);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList(oldest, current));
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM commits PARTITION (" + oldest + ")", Long.class))
+            .thenReturn(42L);
+
+        PartitionMaintenanceService.PurgeResult result =
+            partitionMaintenanceService.purgePartitionsBefore("commits", LocalDateTime.now().minusMonths(24));
+
+        assertEquals(1, result.getPartitions());
+        assertEquals(42L, result.getDeletedRows());
+        assertEquals(0L, result.getArchivedRows());
+    }
+
+    @Test
+    public void testRunMaintenance_ArchiveModeUsesColumnarArchiveWhenEnabled() throws Exception {
+        ArchiveService archiveService = mock(ArchiveService.class);
+        when(archiveService.isEnabled()).thenReturn(true);
+        when(archiveService.archiveBefore(eq(ArchiveTable.COMMITS), any(YearMonth.class))).thenReturn(7L);
+        ReflectionTestUtils.setField(partitionMaintenanceService, "archiveService", archiveService);
+        ReflectionTestUtils.setField(partitionMaintenanceService, "enabled", true);
+        String oldest = PartitionMaintenanceService.partitionName(YearMonth.now().minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(YearMonth.now().plusMonths(3));
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(2);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList(oldest, current));
+
+        partitionMaintenanceService.runMaintenance();
+
+        verify(archiveService).archiveBefore(ArchiveTable.FILE_CHANGES, YearMonth.now().minusMonths(24));
+        verify(archiveService).archiveBefore(ArchiveTable.COMMITS, YearMonth.now().minusMonths(24));
+        verify(jdbcTemplate, never()).execute(contains("EXCHANGE PARTITION"));
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE IF NOT EXISTS"));
+        verify(jdbcTemplate).execute("ALTER TABLE commits DROP PARTITION " + oldest);
+        assertEquals(1.0, meterRegistry.find("retention.partitions.archived").tag("table", "commits").counter().count(), 0.01);
+    }
+
+    @Test
+    public void testRunMaintenance_KeepsPartitionsTheColumnarArchiveDidNotEmpty() throws Exception {
+        ArchiveService archiveService = mock(ArchiveService.class);
+        when(archiveService.isEnabled()).thenReturn(true);
+        ReflectionTestUtils.setField(partitionMaintenanceService, "archiveService", archiveService);
+        ReflectionTestUtils.setField(partitionMaintenanceService, "enabled", true);
+        String oldest = PartitionMaintenanceService.partitionName(YearMonth.now().minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(YearMonth.now().plusMonths(3));
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(2);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList(oldest, current));
+        // 归档校验失败，commits 的过期分区仍有数据
+        when(jdbcTemplate.queryForList("SELECT 1 FROM commits PARTITION (" + oldest + ") LIMIT 1", Integer.class))
+            .thenReturn(Collections.singletonList(1));
+
+        partitionMaintenanceService.runMaintenance();
+
+        verify(jdbcTemplate, never()).execute("ALTER TABLE commits DROP PARTITION " + oldest);
+        verify(jdbcTemplate).execute("ALTER TABLE file_changes DROP PARTITION " + oldest);
+    }
+
+    @Test
+    public void testRunMaintenance_RetentionDisabledOnlyCreatesPartitions() {
+        YearMonth now = YearMonth.now();
+        String oldest = PartitionMaintenanceService.partitionName(now.minusMonths(30));
+        String current = PartitionMaintenanceService.partitionName(now);
+        when(jdbcTemplate.queryForObject(contains("COUNT(*)"), eq(Integer.class), anyString())).thenReturn(3);
+        when(jdbcTemplate.queryForList(contains("PARTITION_NAME"), eq(String.class), anyString()))
+            .thenReturn(Arrays.asList("p_history", oldest, current));
+
+        partitionMaintenanceService.runMaintenance();
+
+        String next = PartitionMaintenanceService.partitionName(now.plusMonths(1));
+        verify(jdbcTemplate).execute(startsWith("ALTER TABLE commits ADD PARTITION (PARTITION " + next));
+        verify(jdbcTemplate, never()).execute(contains("DROP PARTITION"));
+        verify(jdbcTemplate, never()).execute(contains("EXCHANGE PARTITION"));
+        assertNull(meterRegistry.find("retention.partitions.dropped").counter());
+    }
+}
@@ -0,0 +1,146 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.repository.CommitRepository;
+import com.gitlab.metrics.repository.QualityMetricsRepository;
+import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.repository.projection.ProjectCommitSummaryRow;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ProjectComparisonService单元测试
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ProjectComparisonServiceTest {
+
+    @Mock
+    private CommitRepository commitRepository;
+
+    @Mock
+    private QualityMetricsRepository qualityMetricsRepository;
+
+    @Mock
+    private TestCoverageRepository testCoverageRepository;
+
+    @Mock
+    private QualityMetricsService qualityMetricsService;
+
+    @InjectMocks
+    private ProjectComparisonService projectComparisonService;
+
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+
+    @Before
+    public void setUp() {
+        startDate = LocalDateTime.now().minusDays(30);
+        endDate = LocalDateTime.now();
+    }
+
+    @Test
+    public void testCompareProjects_OneQueryPerMetricFamily() {
+        // Given
+        List<String> projectIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            projectIds.add("project" + i);
+        }
+        when(commitRepository.getCommitStatsByProjects(anyCollection(), eq(startDate), eq(endDate)))
+            .thenReturn(Arrays.asList(
+                new ProjectCommitSummaryRow("project1", 10L, 500L, 100L, 3L),
+                new ProjectCommitSummaryRow("project2", 4L, 40L, 20L, 1L)));
+
+        QualityMetricsService.ProjectQualityOverview overview = new QualityMetricsService.ProjectQualityOverview();
+        overview.setProjectId("project1");
+        overview.setTotalScans(5);
+        overview.setAverageMaintainabilityIndex(82.5);
+        when(qualityMetricsService.getProjectsQualityOverview(anyCollection(), eq(startDate), eq(endDate)))
+            .thenReturn(Collections.singletonList(overview));
+
+        QualityMetrics older = createQualityMetrics(1L, "project1", "PASSED");
+        QualityMetrics newer = createQualityMetrics(2L, "project1", "FAILED");
+        when(qualityMetricsRepository.findLatestByProjects(anyCollection()))
+            .thenReturn(Arrays.asList(older, newer));
+
+        TestCoverage coverage = new TestCoverage("project2", "sha", endDate);
+        coverage.setId(1L);
+        coverage.setLineCoverage(76.0);
+        when(testCoverageRepository.findLatestByProjects(anyCollection()))
+            .thenReturn(Collections.singletonList(coverage));
+
+        // When
+        ProjectComparisonService.ComparisonResult result =
+            projectComparisonService.compareProjects(projectIds, startDate, endDate);
+
+        // Then
+        assertEquals(50, result.getProjects().size());
+        assertEquals("project0", result.getProjects().get(0).getProjectId());
+        assertEquals(Integer.valueOf(0), result.getProjects().get(0).getCommits());
+
+        ProjectComparisonService.ProjectComparison project1 = result.getProjects().get(1);
+        assertEquals(Integer.valueOf(10), project1.getCommits());
+        assertEquals(Integer.valueOf(500), project1.getLinesAdded());
+        assertEquals(Integer.valueOf(3), project1.getDevelopers());
+        assertEquals("FAILED", project1.getQualityGate());
+        assertEquals(Double.valueOf(82.5), project1.getAverageMaintainabilityIndex());
+        assertEquals(Double.valueOf(76.0), result.getProjects().get(2).getTestCoverage());
+
+        assertEquals(4, result.getQueryTimings().size());
+        assertTrue(result.getQueryTimings().containsKey("commitStats"));
+        verify(commitRepository, times(1)).getCommitStatsByProjects(anyCollection(), any(), any());
+        verify(qualityMetricsRepository, times(1)).findLatestByProjects(anyCollection());
+        verify(testCoverageRepository, times(1)).findLatestByProjects(anyCollection());
+        verify(qualityMetricsRepository, never()).findLatestByProject(anyString());
+    }
+
+    @Test
+    public void testCompareProjects_TrimsAndDeduplicatesIds() {
+        // Given
+        when(commitRepository.getCommitStatsByProjects(anyCollection(), any(), any())).thenReturn(Collections.emptyList());
+        when(qualityMetricsService.getProjectsQualityOverview(anyCollection(), any(), any())).thenReturn(Collections.emptyList());
+        when(qualityMetricsRepository.findLatestByProjects(anyCollection())).thenReturn(Collections.emptyList());
+        when(testCoverageRepository.findLatestByProjects(anyCollection())).thenReturn(Collections.emptyList());
+
+        // When
+        ProjectComparisonService.ComparisonResult result = projectComparisonService.compareProjects(
+            Arrays.asList(" project1", "project1", "", "project2 "), startDate, endDate);
+
+        // Then
+        assertEquals(2, result.getProjects().size());
+        verify(commitRepository).getCommitStatsByProjects(
+            argThat((Collection<String> ids) -> ids.size() == 2 && ids.contains("project1") && ids.contains("project2")),
+            eq(startDate), eq(endDate));
+    }
+
+    @Test
+    public void testCompareProjects_NoIdsSkipsQueries() {
+        ProjectComparisonService.ComparisonResult result =
+            projectComparisonService.compareProjects(Collections.singletonList(" "), startDate, endDate);
+
+        assertTrue(result.getProjects().isEmpty());
+        verifyNoInteractions(commitRepository, qualityMetricsRepository, testCoverageRepository, qualityMetricsService);
+    }
+
+    private QualityMetrics createQualityMetrics(Long id, String projectId, String qualityGate) {
+        QualityMetrics metrics = new QualityMetrics(projectId, "sha" + id, endDate);
+        metrics.setId(id);
+        metrics.setQualityGate(qualityGate);
+        return metrics;
+    }
+}
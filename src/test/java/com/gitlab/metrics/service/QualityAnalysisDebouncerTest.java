@@ -0,0 +1,160 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.config.SonarQubeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * QualityAnalysisDebouncer单元测试
+ * 窗口设得足够长，由测试直接调用 flush 结束窗口
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class QualityAnalysisDebouncerTest {
+
+    @Mock
+    private SonarQubeAnalysisService sonarQubeAnalysisService;
+
+    @Spy
+    private SonarQubeProperties sonarQubeProperties = new SonarQubeProperties();
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private QualityAnalysisDebouncer debouncer;
+
+    @Before
+    public void setUp() {
+        sonarQubeProperties.getAnalysis().setDebounceWindowMs(60000);
+        debouncer.init();
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        debouncer.shutdown();
+    }
+
+    @Test
+    public void testTriggersWithinWindowCollapseIntoLatestCommit() {
+        for (int i = 0; i < 50; i++) {
+            debouncer.trigger("1", "sha-" + i, "group:project");
+        }
+        verifyNoInteractions(sonarQubeAnalysisService);
+
+        debouncer.flush("group:project");
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("1"), eq("sha-49"), eq("group:project"), anyLong());
+        verifyNoMoreInteractions(sonarQubeAnalysisService);
+        assertEquals(50, debouncer.getTriggerCount());
+        assertEquals(49, debouncer.getCollapsedCount());
+        assertEquals(1, debouncer.getDispatchedCount());
+        assertEquals(49.0, meterRegistry.get("sonarqube.analysis.triggers.collapsed").functionCounter().count(), 0.0);
+    }
+
+    @Test
+    public void testOlderCommitArrivingLastDoesNotReplaceNewerCommit() {
+        LocalDateTime base = LocalDateTime.of(2024, 3, 15, 10, 0);
+        debouncer.trigger("1", "sha-2", "group:project", base.plusMinutes(2));
+        debouncer.trigger("1", "sha-3", "group:project", base.plusMinutes(3));
+        // 同一 push 中较早的提交最后才到达
+        debouncer.trigger("1", "sha-1", "group:project", base.plusMinutes(1));
+
+        debouncer.flush("group:project");
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("1"), eq("sha-3"), eq("group:project"), anyLong());
+        verifyNoMoreInteractions(sonarQubeAnalysisService);
+        assertEquals(2, debouncer.getCollapsedCount());
+    }
+
+    @Test
+    public void testCommitsWithSameTimestampKeepArrivalOrder() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 15, 10, 0);
+        debouncer.trigger("1", "sha-1", "group:project", timestamp);
+        debouncer.trigger("1", "sha-2", "group:project", timestamp);
+
+        debouncer.flush("group:project");
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("1"), eq("sha-2"), eq("group:project"), anyLong());
+    }
+
+    @Test
+    public void testProjectsAreDebouncedIndependently() {
+        debouncer.trigger("1", "a1", "group:a");
+        debouncer.trigger("2", "b1", "group:b");
+        debouncer.trigger("1", "a2", "group:a");
+
+        debouncer.flush("group:a");
+        debouncer.flush("group:b");
+        // 已结束的窗口不会重复触发
+        debouncer.flush("group:a");
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("1"), eq("a2"), eq("group:a"), anyLong());
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("2"), eq("b1"), eq("group:b"), anyLong());
+        verifyNoMoreInteractions(sonarQubeAnalysisService);
+        assertEquals(1, debouncer.getCollapsedCount());
+    }
+
+    @Test
+    public void testZeroWindowTriggersImmediately() {
+        sonarQubeProperties.getAnalysis().setDebounceWindowMs(0);
+
+        debouncer.trigger("1", "sha-1", "group:project");
+        debouncer.trigger("1", "sha-2", "group:project");
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis("1", "sha-1", "group:project");
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis("1", "sha-2", "group:project");
+        assertEquals(0, debouncer.getCollapsedCount());
+    }
+
+    @Test
+    public void testPendingAnalysesAreSubmittedOnShutdown() {
+        debouncer.trigger("1", "sha-1", "group:project");
+
+        debouncer.shutdown();
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("1"), eq("sha-1"), eq("group:project"), anyLong());
+    }
+
+    @Test
+    public void testTriggerInTransactionWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        debouncer.trigger("1", "committed", "group:a");
+        debouncer.trigger("2", "rolled-back", "group:b");
+        assertEquals(2, TransactionSynchronizationManager.getSynchronizations().size());
+
+        // 提交前窗口尚未开启，结束窗口不会触发分析
+        debouncer.flush("group:a");
+        verifyNoInteractions(sonarQubeAnalysisService);
+
+        TransactionSynchronization committed = TransactionSynchronizationManager.getSynchronizations().get(0);
+        TransactionSynchronization rolledBack = TransactionSynchronizationManager.getSynchronizations().get(1);
+        TransactionSynchronizationManager.clearSynchronization();
+        committed.afterCommit();
+        committed.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        rolledBack.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        debouncer.flush("group:a");
+        debouncer.flush("group:b");
+
+        verify(sonarQubeAnalysisService).triggerQualityAnalysis(eq("1"), eq("committed"), eq("group:a"), anyLong());
+        verifyNoMoreInteractions(sonarQubeAnalysisService);
+    }
+}
@@ -0,0 +1,125 @@
+package com.gitlab.metrics.service;
+
+import com.gitlab.metrics.repository.QualityMetricsRepository;
+import org.junit.Test;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * QueryIndexAdvisor单元测试
+ */
+public class QueryIndexAdvisorTest {
+
+    interface SampleRepository {
+
+        @Query("SELECT c FROM Commit c WHERE c.projectId = :projectId AND c.timestamp BETWEEN :start AND :end")
+        List<Object> findRange(@Param("projectId") String projectId,
+                               @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+        @Modifying
+        @Query("DELETE FROM Commit c WHERE c.timestamp < :before")
+        int purge(@Param("before") LocalDateTime before);
+
+        List<Object> findByProjectId(String projectId);
+    }
+
+    @Test
+    public void testBuildCatalog_CollectsReadQueriesWithParameterTypes() {
+        List<QueryIndexAdvisor.CatalogEntry> catalog =
+            QueryIndexAdvisor.buildCatalog(Collections.<Class<?>>singletonList(SampleRepository.class));
+
+        assertEquals(1, catalog.size());
+        QueryIndexAdvisor.CatalogEntry entry = catalog.get(0);
+        assertEquals("SampleRepository", entry.getRepository());
+        assertEquals("findRange", entry.getMethod());
+        assertEquals(String.class, entry.getNamedParameters().get("projectId"));
+        assertEquals(LocalDateTime.class, entry.getNamedParameters().get("end"));
+    }
+
+    @Test
+    public void testBuildCatalog_CoversRepositoryQueries() {
+        List<QueryIndexAdvisor.CatalogEntry> catalog =
+            QueryIndexAdvisor.buildCatalog(Collections.<Class<?>>singletonList(QualityMetricsRepository.class));
+
+        assertFalse(catalog.isEmpty());
+        for (QueryIndexAdvisor.CatalogEntry entry : catalog) {
+            assertTrue(entry.getQuery().toUpperCase().startsWith("SELECT"));
+        }
+    }
+
+    @Test
+    public void testBindLiterals_SkipsQuestionMarksInStrings() {
+        Map<Integer, String> literals = new HashMap<>();
+        literals.put(0, "'p1'");
+        literals.put(1, "10");
+
+        String sql = QueryIndexAdvisor.bindLiterals(
+            "select * from commits where project_id=? and message<>'why?' and lines_added>?", literals);
+
+        assertEquals("select * from commits where project_id='p1' and message<>'why?' and lines_added>10", sql);
+    }
+
+    @Test
+    public void testSampleLiteral() {
+        assertEquals("'p''1'", QueryIndexAdvisor.sampleLiteral("projectId", String.class, "p'1"));
+        assertEquals("'p1'", QueryIndexAdvisor.sampleLiteral("projectIds", Collection.class, "p1"));
+        assertEquals("10", QueryIndexAdvisor.sampleLiteral("limit", Integer.class, "p1"));
+        assertEquals("'sample'", QueryIndexAdvisor.sampleLiteral("developerId", String.class, "p1"));
+        assertTrue(QueryIndexAdvisor.sampleLiteral("start", LocalDateTime.class, "p1").matches("'\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}'"));
+    }
+
+    @Test
+    public void testEvaluate_FlagsFullScansAndFilesorts() {
+        QueryIndexAdvisor.CatalogEntry entry =
+            QueryIndexAdvisor.buildCatalog(Collections.<Class<?>>singletonList(SampleRepository.class)).get(0);
+        List<Map<String, Object>> plan = new ArrayList<>();
+        plan.add(row("issues", "ALL", null, 120000L, "Using where; Using temporary; Using filesort"));
+        plan.add(row("<derived2>", "ALL", null, 10L, null));
+        plan.add(row("commits", "range", "idx_commits_stats_covering", 300L, "Using where; Using index"));
+
+        QueryIndexAdvisor.QueryAdvice advice = QueryIndexAdvisor.evaluate(entry, "select 1", plan);
+
+        assertTrue(advice.hasProblem());
+        assertEquals(Arrays.asList("issues"), advice.getFullScanTables());
+        assertTrue(advice.isFilesort());
+        assertTrue(advice.isTemporary());
+        assertEquals(3, advice.getPlan().size());
+        assertEquals(Long.valueOf(300L), advice.getPlan().get(2).getRows());
+        assertEquals(2, advice.getProblems().size());
+    }
+
+    @Test
+    public void testEvaluate_IndexedPlanHasNoProblem() {
+        QueryIndexAdvisor.CatalogEntry entry =
+            QueryIndexAdvisor.buildCatalog(Collections.<Class<?>>singletonList(SampleRepository.class)).get(0);
+
+        QueryIndexAdvisor.QueryAdvice advice = QueryIndexAdvisor.evaluate(entry, "select 1",
+            Collections.singletonList(row("commits", "range", "idx_commits_project_timestamp", 42L, "Using index condition")));
+
+        assertFalse(advice.hasProblem());
+        assertTrue(advice.getProblems().isEmpty());
+    }
+
+    private Map<String, Object> row(String table, String type, String key, Long rows, String extra) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("table", table);
+        row.put("type", type);
+        row.put("key", key);
+        row.put("rows", rows);
+        row.put("Extra", extra);
+        return row;
+    }
+}
@@ -64,7 +64,7 @@ public class ReviewRuleEngineTest {
     public void testCanMerge_Success() {
         // Given
         when(mergeRequestRepository.findByMrId("123")).thenReturn(Optional.of(testMergeRequest));
-        when(codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(1L))
+        when(codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(testMergeRequest))
             .thenReturn(Arrays.asList(testCodeReview));
         
         // When
@@ -81,7 +81,7 @@ public class ReviewRuleEngineTest {
         // Given
         testMergeRequest.setTargetBranch("main");
         when(mergeRequestRepository.findByMrId("123")).thenReturn(Optional.of(testMergeRequest));
-        when(codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(1L))
+        when(codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(testMergeRequest))
             .thenReturn(Collections.emptyList());
         
         // When
@@ -105,7 +105,7 @@ public class ReviewRuleEngineTest {
         commentedReview.setStatus("commented");
         
         when(mergeRequestRepository.findByMrId("123")).thenReturn(Optional.of(testMergeRequest));
-        when(codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(1L))
+        when(codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(testMergeRequest))
             .thenReturn(Arrays.asList(commentedReview));
         
         // When
@@ -126,7 +126,7 @@ public class ReviewRuleEngineTest {
         changesRequestedReview.setStatus("changes_requested");
         
         when(mergeRequestRepository.findByMrId("123")).thenReturn(Optional.of(testMergeRequest));
-        when(codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(1L))
+        when(codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(testMergeRequest))
             .thenReturn(Arrays.asList(changesRequestedReview));
         
         // When
@@ -149,7 +149,7 @@ public class ReviewRuleEngineTest {
         selfApprovalReview.setStatus("approved");
         
         when(mergeRequestRepository.findByMrId("123")).thenReturn(Optional.of(testMergeRequest));
-        when(codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(1L))
+        when(codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(testMergeRequest))
             .thenReturn(Arrays.asList(selfApprovalReview));
         
         // When
@@ -183,7 +183,7 @@ public class ReviewRuleEngineTest {
         testMergeRequest.setDeletions(300); // Total 600 > 500 threshold
         
         when(mergeRequestRepository.findByMrId("123")).thenReturn(Optional.of(testMergeRequest));
-        when(codeReviewRepository.findByMergeRequestIdOrderByReviewedAtDesc(1L))
+        when(codeReviewRepository.findByMergeRequestOrderByReviewedAtDesc(testMergeRequest))
             .thenReturn(Arrays.asList(testCodeReview)); // Only 1 reviewer, but needs 2
         
         // When
@@ -2,6 +2,7 @@ package com.gitlab.metrics.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.exception.DataProcessingException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,6 +13,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import java.time.LocalDateTime;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -83,8 +85,13 @@ public class TestCoverageAnalysisMessageListenerTest {
         when(objectMapper.readValue(eq(messageJson), eq(TestCoverageAnalysisMessageListener.CoverageAnalysisMessage.class)))
             .thenThrow(new RuntimeException("JSON解析失败"));
         
-        // 执行测试（不应该抛出异常）
-        messageListener.handleCoverageAnalysis(messageJson);
+        // 执行测试：异常向上抛出，交给重试拦截器处理
+        try {
+            messageListener.handleCoverageAnalysis(messageJson);
+            fail("Expected the failure to propagate for retry");
+        } catch (DataProcessingException e) {
+            assertEquals("JSON解析失败", e.getCause().getMessage());
+        }
         
         // 验证结果
         verify(objectMapper).readValue(messageJson, TestCoverageAnalysisMessageListener.CoverageAnalysisMessage.class);
@@ -125,8 +132,13 @@ public class TestCoverageAnalysisMessageListenerTest {
         when(objectMapper.readValue(eq(messageJson), eq(TestCoverageAnalysisMessageListener.CoverageFileAnalysisMessage.class)))
             .thenThrow(new RuntimeException("JSON解析失败"));
         
-        // 执行测试（不应该抛出异常）
-        messageListener.handleCoverageFileAnalysis(messageJson);
+        // 执行测试：异常向上抛出，交给重试拦截器处理
+        try {
+            messageListener.handleCoverageFileAnalysis(messageJson);
+            fail("Expected the failure to propagate for retry");
+        } catch (DataProcessingException e) {
+            assertEquals("JSON解析失败", e.getCause().getMessage());
+        }
         
         // 验证结果
         verify(objectMapper).readValue(messageJson, TestCoverageAnalysisMessageListener.CoverageFileAnalysisMessage.class);
@@ -2,6 +2,7 @@ package com.gitlab.metrics.service;
 
 import com.gitlab.metrics.entity.TestCoverage;
 import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.service.realtime.RealtimeCounterService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,6 +29,9 @@ public class TestCoverageServiceTest {
     @Mock
     private TestCoverageRepository testCoverageRepository;
     
+    @Mock
+    private RealtimeCounterService realtimeCounterService;
+    
     @InjectMocks
     private TestCoverageService testCoverageService;
     
@@ -353,40 +357,28 @@ public class TestCoverageServiceTest {
     public void testCleanupOldCoverageRecords() {
         // 准备测试数据
         LocalDateTime cutoffDate = timestamp.minusDays(30);
-        TestCoverage oldCoverage1 = new TestCoverage(projectId, "old1", timestamp.minusDays(35));
-        TestCoverage oldCoverage2 = new TestCoverage(projectId, "old2", timestamp.minusDays(40));
-        TestCoverage newCoverage = new TestCoverage(projectId, "new", timestamp.minusDays(10));
-        
-        List<TestCoverage> allCoverages = Arrays.asList(oldCoverage1, oldCoverage2, newCoverage);
-        when(testCoverageRepository.findAll()).thenReturn(allCoverages);
+        when(testCoverageRepository.deleteByTimestampBefore(cutoffDate)).thenReturn(2);
         
         // 执行测试
         testCoverageService.cleanupOldCoverageRecords(cutoffDate);
         
-        // 验证结果
-        verify(testCoverageRepository).findAll();
-        verify(testCoverageRepository).deleteAll(argThat(coverages -> {
-            List<TestCoverage> coverageList = (List<TestCoverage>) coverages;
-            return coverageList.size() == 2 && 
-                   coverageList.contains(oldCoverage1) && 
-                   coverageList.contains(oldCoverage2);
-        }));
+        // 验证结果：单条批量删除，不加载全部记录
+        verify(testCoverageRepository).deleteByTimestampBefore(cutoffDate);
+        verify(testCoverageRepository, never()).findAll();
+        verify(testCoverageRepository, never()).deleteAll(any());
     }
     
     @Test
     public void testCleanupOldCoverageRecordsEmpty() {
         // 准备测试数据
         LocalDateTime cutoffDate = timestamp.minusDays(30);
-        TestCoverage newCoverage = new TestCoverage(projectId, "new", timestamp.minusDays(10));
-        
-        List<TestCoverage> allCoverages = Arrays.asList(newCoverage);
-        when(testCoverageRepository.findAll()).thenReturn(allCoverages);
+        when(testCoverageRepository.deleteByTimestampBefore(cutoffDate)).thenReturn(0);
         
         // 执行测试
         testCoverageService.cleanupOldCoverageRecords(cutoffDate);
         
         // 验证结果
-        verify(testCoverageRepository).findAll();
+        verify(testCoverageRepository).deleteByTimestampBefore(cutoffDate);
         verify(testCoverageRepository, never()).deleteAll(any());
     }
 }
\ No newline at end of file
@@ -0,0 +1,287 @@
+package com.gitlab.metrics.service.approx;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 近似查询测试，使用H2内存库验证影子表的确定性抽样、增量同步，以及估计值落在误差范围内
+ */
+public class ApproximateQueryServiceTest {
+
+    private static final int COMMIT_ROWS = 40000;
+    private static final int QUALITY_ROWS = 20000;
+    private static final int MODULUS = 20;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private SampleService sampleService;
+    private ApproximateQueryService approximateQueryService;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE commits (id BIGINT PRIMARY KEY, project_id VARCHAR(100), " +
+            "developer_id VARCHAR(100), developer_name VARCHAR(255), \"TIMESTAMP\" TIMESTAMP, " +
+            "lines_added INT, lines_deleted INT, files_changed INT)");
+        jdbcTemplate.execute("CREATE TABLE commits_sample (id BIGINT PRIMARY KEY, project_id VARCHAR(100), " +
+            "developer_id VARCHAR(100), developer_name VARCHAR(255), \"TIMESTAMP\" TIMESTAMP, " +
+            "lines_added INT, lines_deleted INT, files_changed INT)");
+        jdbcTemplate.execute("CREATE TABLE quality_metrics (id BIGINT PRIMARY KEY, project_id VARCHAR(100), " +
+            "\"TIMESTAMP\" TIMESTAMP, code_complexity DOUBLE, duplicate_rate DOUBLE, " +
+            "maintainability_index DOUBLE, technical_debt DOUBLE)");
+        jdbcTemplate.execute("CREATE TABLE quality_metrics_sample (id BIGINT PRIMARY KEY, project_id VARCHAR(100), " +
+            "\"TIMESTAMP\" TIMESTAMP, code_complexity DOUBLE, duplicate_rate DOUBLE, " +
+            "maintainability_index DOUBLE, technical_debt DOUBLE)");
+
+        end = LocalDateTime.now().withNano(0);
+        start = end.minusDays(365);
+        insertCommits(1, COMMIT_ROWS);
+        List<Object[]> quality = new ArrayList<>();
+        for (int i = 1; i <= QUALITY_ROWS; i++) {
+            quality.add(new Object[]{(long) i, "project-" + (i % 4), Timestamp.valueOf(start.plusMinutes(i * 20L)),
+                10.0 + (i % 4) * 5 + (i % 7), i % 9 == 0 ? null : (i % 13) / 10.0, 60.0 + (i % 4) * 8 + (i % 11), (double) (i % 30)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO quality_metrics VALUES (?, ?, ?, ?, ?, ?, ?)", quality);
+
+        sampleService = new SampleService();
+        ReflectionTestUtils.setField(sampleService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(sampleService, "enabled", true);
+        ReflectionTestUtils.setField(sampleService, "sampleModulus", MODULUS);
+        ReflectionTestUtils.setField(sampleService, "batchSize", 5000);
+        ReflectionTestUtils.setField(sampleService, "resyncIdWindow", 5000L);
+        ReflectionTestUtils.setField(sampleService, "retentionMonths", 24);
+        sampleService.init();
+
+        approximateQueryService = new ApproximateQueryService();
+        ReflectionTestUtils.setField(approximateQueryService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(approximateQueryService, "sampleService", sampleService);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testSyncCopiesDeterministicSampleIncrementally() {
+        long copied = sampleService.syncTable(SampleTable.COMMITS);
+
+        long expected = 0;
+        for (long id = 1; id <= COMMIT_ROWS; id++) {
+            if (sampleService.isSampled(id)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, copied);
+        assertEquals(COMMIT_ROWS / (double) MODULUS, copied, COMMIT_ROWS / (double) MODULUS * 0.1);
+        assertEquals(0, sampleService.syncTable(SampleTable.COMMITS));
+
+        insertCommits(COMMIT_ROWS + 1, COMMIT_ROWS + 2000);
+        long more = sampleService.syncTable(SampleTable.COMMITS);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM commits_sample WHERE id > ?", Long.class, COMMIT_ROWS);
+        assertEquals(more, ids.size());
+        assertTrue(ids.stream().allMatch(sampleService::isSampled));
+        assertEquals(copied + more, sampleService.getSampledRows(SampleTable.COMMITS));
+
+        assertEquals(copied + more, sampleService.rebuild(SampleTable.COMMITS));
+    }
+
+    @Test
+    public void testSyncPicksUpLateRowsBelowNewestSampledId() {
+        jdbcTemplate.update("DELETE FROM commits WHERE id BETWEEN ? AND ?", 38001, 39000);
+        long copied = sampleService.syncTable(SampleTable.COMMITS);
+
+        // 并发事务晚提交的较小 id 在下次同步时补上
+        insertCommits(38001, 39000);
+        long late = sampleService.syncTable(SampleTable.COMMITS);
+
+        long expected = 0;
+        for (long id = 38001; id <= 39000; id++) {
+            if (sampleService.isSampled(id)) {
+                expected++;
+            }
+        }
+        assertTrue(expected > 0);
+        assertEquals(expected, late);
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM commits_sample", Long.class);
+        assertEquals(copied + late, total.longValue());
+    }
+
+    @Test
+    public void testDeveloperEstimatesCoverExactValues() {
+        sampleService.syncTable(SampleTable.COMMITS);
+
+        List<ApproximateQueryService.DeveloperEstimate> estimates = approximateQueryService.getDeveloperStats(start, end);
+        Map<String, long[]> exact = new HashMap<>();
+        jdbcTemplate.query("SELECT developer_id, COUNT(*), SUM(lines_added) FROM commits c " +
+            "WHERE c.timestamp BETWEEN ? AND ? GROUP BY developer_id",
+            rs -> { exact.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)}); },
+            Timestamp.valueOf(start), Timestamp.valueOf(end));
+
+        assertEquals(exact.size(), estimates.size());
+        int covered = 0;
+        double estimatedTotal = 0;
+        for (ApproximateQueryService.DeveloperEstimate estimate : estimates) {
+            long[] actual = exact.get(estimate.getDeveloperId());
+            if (within(estimate.getCommitCount(), actual[0]) && within(estimate.getLinesAdded(), actual[1])) {
+                covered++;
+            }
+            estimatedTotal += estimate.getCommitCount().getValue();
+        }
+        // 95%置信区间，两项同时覆盖的开发者应占绝大多数
+        assertTrue("covered " + covered + " of " + estimates.size(), covered >= estimates.size() * 0.8);
+        assertEquals(COMMIT_ROWS, estimatedTotal, COMMIT_ROWS * 0.05);
+    }
+
+    @Test
+    public void testProjectActivityAndQualityOverviewEstimates() {
+        sampleService.syncTable(SampleTable.COMMITS);
+        sampleService.syncTable(SampleTable.QUALITY_METRICS);
+
+        List<ApproximateQueryService.ProjectActivityEstimate> activity =
+            approximateQueryService.getProjectActivity(start, end, 3);
+        assertEquals(3, activity.size());
+        assertTrue(activity.get(0).getActivityScore() >= activity.get(1).getActivityScore());
+        for (ApproximateQueryService.ProjectActivityEstimate estimate : activity) {
+            Long actual = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM commits c WHERE c.project_id = ?",
+                Long.class, estimate.getProjectId());
+            assertTrue(estimate.getTotalCommits() + " vs " + actual, within(estimate.getTotalCommits(), actual));
+            assertTrue(estimate.getObservedDevelopers() <= 50);
+        }
+
+        List<ApproximateQueryService.ProjectQualityEstimate> quality =
+            approximateQueryService.getAllProjectsQualityOverview(start, end);
+        assertEquals(4, quality.size());
+        assertEquals("project-3", quality.get(0).getProjectId());
+        for (ApproximateQueryService.ProjectQualityEstimate estimate : quality) {
+            Double actual = jdbcTemplate.queryForObject(
+                "SELECT AVG(maintainability_index) FROM quality_metrics q WHERE q.project_id = ?",
+                Double.class, estimate.getProjectId());
+            Estimate maintainability = estimate.getAverageMaintainabilityIndex();
+            assertTrue(maintainability + " vs " + actual, Math.abs(maintainability.getValue() - actual) <= 1.5);
+            assertTrue(maintainability.getRelativeError() < 0.05);
+        }
+    }
+
+    @Test
+    public void testProjectActivityRanksLikeExactQuery() {
+        jdbcTemplate.update("DELETE FROM commits");
+        List<Object[]> rows = new ArrayList<>();
+        long id = 1;
+        // 全年每天一次提交、30名开发者
+        for (int i = 0; i < 364; i++) {
+            rows.add(activityRow(id++, "steady", "dev" + (i % 30), i));
+        }
+        // 5天内集中提交600次、2名开发者
+        for (int k = 0; k < 600; k++) {
+            rows.add(activityRow(id++, "burst", "dev" + (k % 2), 100 + k % 5));
+        }
+        for (int k = 0; k < 100; k++) {
+            rows.add(activityRow(id++, "small", "dev" + (k % 4), 200 + k % 50));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO commits VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        sampleService.syncTable(SampleTable.COMMITS);
+
+        // 与 OptimizedQueryService.getOptimizedProjectActivity 相同的得分公式
+        List<String> exact = jdbcTemplate.queryForList("SELECT c.project_id FROM commits c " +
+            "WHERE c.timestamp BETWEEN ? AND ? GROUP BY c.project_id " +
+            "ORDER BY COUNT(c.id) * 0.3 + COUNT(DISTINCT c.developer_id) * 0.2 " +
+            "+ COUNT(DISTINCT CAST(c.timestamp AS DATE)) * 0.5 DESC",
+            String.class, Timestamp.valueOf(start), Timestamp.valueOf(end));
+        List<ApproximateQueryService.ProjectActivityEstimate> activity =
+            approximateQueryService.getProjectActivity(start, end, 10);
+
+        List<String> approx = new ArrayList<>();
+        for (ApproximateQueryService.ProjectActivityEstimate estimate : activity) {
+            approx.add(estimate.getProjectId());
+            assertTrue(estimate.getEstimatedActiveDays() >= estimate.getObservedActiveDays());
+            assertTrue(estimate.getEstimatedActiveDays() <= 366);
+        }
+        assertEquals(Arrays.asList("steady", "burst", "small"), exact);
+        assertEquals(exact, approx);
+        // 只用样本中观察到的天数会把分散提交的项目排到集中提交的项目之后
+        ApproximateQueryService.ProjectActivityEstimate steady = activity.get(0);
+        assertTrue(steady.getObservedActiveDays() < 100);
+        assertEquals(364, steady.getEstimatedActiveDays(), 364 * 0.25);
+    }
+
+    @Test
+    public void testEstimatorsAreExactAtFullSampleRate() {
+        Estimate count = Estimate.count(42, 1.0);
+        assertEquals(42.0, count.getValue(), 0.0);
+        assertEquals(0.0, count.getErrorBound(), 0.0);
+
+        Estimate total = Estimate.total(10, 100, 0.01);
+        assertEquals(1000.0, total.getValue(), 1e-9);
+        assertEquals(1.96 * Math.sqrt(0.99 * 100) / 0.01, total.getErrorBound(), 1e-9);
+
+        Estimate mean = Estimate.mean(4, 10, 30, 0.5);
+        assertEquals(2.5, mean.getValue(), 1e-9);
+        assertTrue(mean.getLowerBound() < 2.5 && mean.getUpperBound() > 2.5);
+
+        assertEquals(7.0, Estimate.distinct(7, 3, 1, 12, 1.0, 100), 0.0);
+        assertEquals(5.0, Estimate.distinct(5, 0, 2, 20, 0.05, 100), 0.0);
+        // 全是单次取值时按抽样率放大
+        assertEquals(20 + 20 * 19.0, Estimate.distinct(20, 20, 0, 20, 0.05, 1000), 1e-9);
+        assertEquals(366.0, Estimate.distinct(20, 20, 0, 20, 0.05, 366), 0.0);
+    }
+
+    @Test
+    public void testUnavailableWhenDisabledOrShadowTableMissing() {
+        jdbcTemplate.execute("DROP TABLE quality_metrics_sample");
+        SampleService service = new SampleService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "sampleModulus", MODULUS);
+        service.init();
+
+        assertTrue(service.isAvailable(SampleTable.COMMITS));
+        assertFalse(service.isAvailable(SampleTable.QUALITY_METRICS));
+
+        ReflectionTestUtils.setField(service, "enabled", false);
+        assertFalse(service.isAvailable(SampleTable.COMMITS));
+    }
+
+    private static boolean within(Estimate estimate, long actual) {
+        return actual >= estimate.getLowerBound() && actual <= estimate.getUpperBound();
+    }
+
+    private Object[] activityRow(long id, String projectId, String developerId, int day) {
+        Timestamp timestamp = Timestamp.valueOf(
+            start.toLocalDate().plusDays(day + 1L).atStartOfDay().plusSeconds(id % 3600));
+        return new Object[]{id, projectId, developerId, developerId, timestamp, (int) (id % 50), (int) (id % 7), 1};
+    }
+
+    private void insertCommits(int from, int to) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            int developer = i % 40;
+            rows.add(new Object[]{(long) i, "project-" + (i % 10), "dev" + developer, "Developer " + developer,
+                Timestamp.valueOf(start.plusSeconds(i * 700L % (365L * 24 * 3600))),
+                (i * 37) % (20 + developer * 5), i % 13, 1 + i % 6});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO commits VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
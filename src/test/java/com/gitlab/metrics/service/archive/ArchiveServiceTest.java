@@ -0,0 +1,197 @@
+package com.gitlab.metrics.service.archive;
+
+import com.gitlab.metrics.exception.ArchivedRangeException;
+import com.gitlab.metrics.repository.projection.CommitTotalsRow;
+import com.gitlab.metrics.repository.projection.CommitTrendRow;
+import com.gitlab.metrics.repository.projection.DeveloperCommitStatsRow;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ArchiveService测试，使用H2内存库验证月份归档、活跃行删除、追加归档以及归档与活跃数据的合并
+ */
+public class ArchiveServiceTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2023, 1, 10, 12, 0);
+    private static final LocalDateTime FEBRUARY = LocalDateTime.of(2023, 2, 10, 12, 0);
+    private static final LocalDateTime JUNE = LocalDateTime.of(2023, 6, 10, 12, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private ArchiveService archiveService;
+    private ArchiveQueryService archiveQueryService;
+    private Path archiveDir;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE commits (id BIGINT PRIMARY KEY, commit_sha VARCHAR(40), project_id VARCHAR(50), " +
+            "developer_id VARCHAR(50), developer_name VARCHAR(100), \"TIMESTAMP\" TIMESTAMP, message VARCHAR(1000), " +
+            "branch VARCHAR(100), lines_added INT, lines_deleted INT, files_changed INT)");
+        jdbcTemplate.execute("CREATE TABLE quality_metrics (id BIGINT PRIMARY KEY, project_id VARCHAR(50), " +
+            "commit_sha VARCHAR(40), \"TIMESTAMP\" TIMESTAMP, code_complexity DOUBLE, duplicate_rate DOUBLE, " +
+            "maintainability_index DOUBLE, security_issues INT, performance_issues INT, code_smells INT, bugs INT, " +
+            "vulnerabilities INT, hotspots INT, technical_debt DOUBLE, quality_gate VARCHAR(20), analysis_details VARCHAR(1000))");
+
+        insertCommit(1, "p1", "alice", JANUARY, 10);
+        insertCommit(2, "p1", "bob", JANUARY.plusDays(1), 20);
+        insertCommit(3, "p2", "alice", FEBRUARY, 30);
+        insertCommit(4, "p1", "alice", JUNE, 40);
+        insertQuality(1, JANUARY, 4.0);
+        insertQuality(2, JUNE, 8.0);
+
+        archiveDir = folder.newFolder("archive").toPath();
+        archiveService = newArchiveService();
+        archiveQueryService = new ArchiveQueryService();
+        ReflectionTestUtils.setField(archiveQueryService, "archiveService", archiveService);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testArchiveMovesClosedMonthsToSegmentsAndDeletesLiveRows() throws Exception {
+        long archived = archiveService.archiveBefore(ArchiveTable.COMMITS, YearMonth.of(2023, 6));
+
+        assertEquals(3, archived);
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM commits", Integer.class));
+        assertTrue(Files.exists(archiveDir.resolve("commits").resolve("202301-000.seg")));
+        assertTrue(Files.exists(archiveDir.resolve("commits").resolve("202302-000.seg")));
+        assertEquals(2, archiveService.getSegments(ArchiveTable.COMMITS).size());
+
+        List<Long> ids = new ArrayList<>();
+        archiveService.scan(ArchiveTable.COMMITS, null, null, "p1", Collections.singletonList("id"),
+            row -> ids.add(row.getLong("id")));
+        assertEquals(Arrays.asList(1L, 2L), ids);
+        assertTrue(archiveService.hasArchivedData(ArchiveTable.COMMITS, JANUARY.minusDays(1), JUNE));
+        assertFalse(archiveService.hasArchivedData(ArchiveTable.COMMITS, JUNE.minusDays(1), JUNE));
+    }
+
+    @Test
+    public void testLateRowsAreAppendedAsNewSegmentAndCatalogReloads() throws Exception {
+        archiveService.archiveBefore(ArchiveTable.COMMITS, YearMonth.of(2023, 6));
+        insertCommit(5, "p1", "carol", JANUARY.plusDays(2), 50);
+
+        assertEquals(1, archiveService.archiveMonth(ArchiveTable.COMMITS, YearMonth.of(2023, 1)));
+        assertTrue(Files.exists(archiveDir.resolve("commits").resolve("202301-001.seg")));
+
+        ArchiveService reloaded = newArchiveService();
+        assertEquals(3, reloaded.getSegments(ArchiveTable.COMMITS).size());
+        assertEquals(4, reloaded.scan(ArchiveTable.COMMITS, null, null, null,
+            Collections.singletonList("id"), row -> { }));
+    }
+
+    @Test
+    public void testLiveOnlyReadersRejectRangesCoveringArchive() throws Exception {
+        archiveService.archiveBefore(ArchiveTable.COMMITS, YearMonth.of(2023, 6));
+
+        // 范围只覆盖未归档月份时放行
+        archiveQueryService.requireLive("hot files", JUNE.minusDays(1), JUNE, ArchiveTable.COMMITS);
+        archiveQueryService.requireLive("quality trends", JANUARY, JUNE, ArchiveTable.QUALITY_METRICS);
+
+        try {
+            archiveQueryService.requireLive("hot files", JANUARY.minusDays(1), JUNE, ArchiveTable.COMMITS);
+            fail("Expected archived range to be rejected");
+        } catch (ArchivedRangeException e) {
+            assertEquals("commits", e.getTable());
+            assertEquals(FEBRUARY, e.getArchivedThrough());
+            assertTrue(e.getMessage().startsWith("hot files only reads live data"));
+        }
+    }
+
+    @Test
+    public void testArchiveAggregatesMatchRepositoryShapesAndMerge() throws Exception {
+        archiveService.archiveBefore(ArchiveTable.COMMITS, YearMonth.of(2023, 6));
+        LocalDateTime start = JANUARY.minusDays(5);
+        LocalDateTime end = JUNE.plusDays(5);
+
+        List<DeveloperCommitStatsRow> archived = archiveQueryService.getDeveloperCommitStats(start, end, "p1");
+        List<DeveloperCommitStatsRow> live = Collections.singletonList(
+            new DeveloperCommitStatsRow("alice", "alice", 1L, 40L, 0L, 1L));
+        List<DeveloperCommitStatsRow> merged = ArchiveQueryService.mergeRows(live, archived,
+            DeveloperCommitStatsRow::getDeveloperId, DeveloperCommitStatsRow::plus,
+            Comparator.comparingLong(DeveloperCommitStatsRow::getCommitCount).reversed());
+
+        assertEquals(2, merged.size());
+        assertEquals("alice", merged.get(0).getDeveloperId());
+        assertEquals(2L, merged.get(0).getCommitCount());
+        assertEquals(50L, merged.get(0).getLinesAdded());
+        assertEquals(2L, merged.get(0).getFilesChanged());
+        assertEquals("bob", merged.get(1).getDeveloperId());
+        assertEquals(20L, merged.get(1).getLinesAdded());
+
+        List<CommitTrendRow> trend = archiveQueryService.getCommitTrend(start, end, null);
+        assertEquals(3, trend.size());
+        assertEquals(LocalDate.of(2023, 1, 10), trend.get(0).getDate());
+
+        CommitTotalsRow totals = archiveQueryService.getProjectTotalStats("p1", start, end)
+            .plus(new CommitTotalsRow(40L, 0L, 1L, 1L));
+        assertEquals(70L, totals.getLinesAdded());
+        assertEquals(3L, totals.getFilesChanged());
+        assertEquals(3L, totals.getCommitCount());
+    }
+
+    @Test
+    public void testQualityAveragesCombineArchivedAndLiveCounts() throws Exception {
+        archiveService.archiveBefore(ArchiveTable.QUALITY_METRICS, YearMonth.of(2023, 6));
+
+        Object[] archived = archiveQueryService.getQualityTrendTotals("p1", JANUARY.minusDays(1), JUNE.plusDays(1));
+        Object[] live = {8.0, 1L, null, 0L, null, 0L, null, 0L};
+        Double[] averages = ArchiveQueryService.toAverages(ArchiveQueryService.mergeTotals(live, archived));
+
+        assertEquals(6.0, averages[0], 0.0001);
+        assertNull(averages[1]);
+    }
+
+    private ArchiveService newArchiveService() {
+        ArchiveService service = new ArchiveService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "directory", archiveDir.toString());
+        ReflectionTestUtils.setField(service, "rowGroupSize", 2);
+        ReflectionTestUtils.setField(service, "deleteBatchSize", 1);
+        service.loadCatalog();
+        return service;
+    }
+
+    private void insertCommit(long id, String projectId, String developer, LocalDateTime timestamp, int linesAdded) {
+        jdbcTemplate.update("INSERT INTO commits VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            id, "sha" + id, projectId, developer, developer, Timestamp.valueOf(timestamp), "msg", "main",
+            linesAdded, 0, 1);
+    }
+
+    private void insertQuality(long id, LocalDateTime timestamp, double complexity) {
+        jdbcTemplate.update("INSERT INTO quality_metrics (id, project_id, commit_sha, \"TIMESTAMP\", code_complexity) " +
+            "VALUES (?, ?, ?, ?, ?)", id, "p1", "sha" + id, Timestamp.valueOf(timestamp), complexity);
+    }
+}
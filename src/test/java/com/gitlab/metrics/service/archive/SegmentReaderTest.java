@@ -0,0 +1,110 @@
+package com.gitlab.metrics.service.archive;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 归档段文件读写测试：编码往返、空值、列裁剪和按行块时间范围跳过
+ */
+public class SegmentReaderTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 3, 1, 0, 0);
+
+    private static final List<ArchiveColumn> COLUMNS = Arrays.asList(
+        ArchiveColumn.int64("id"),
+        ArchiveColumn.timestamp("timestamp"),
+        ArchiveColumn.string("project_id"),
+        ArchiveColumn.int64("lines_added"),
+        ArchiveColumn.float64("coverage"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTripAcrossRowGroups() throws Exception {
+        Path path = writeSegment(1000, 64);
+
+        SegmentReader reader = SegmentReader.open(path);
+        assertEquals(1000, reader.getRowCount());
+        assertEquals(1000, reader.getMaxId());
+        assertEquals(BASE.plusMinutes(1), reader.getMinTimestamp());
+        assertEquals(BASE.plusMinutes(1000), reader.getMaxTimestamp());
+        assertEquals(5, reader.getColumns().size());
+
+        List<Object[]> rows = new ArrayList<>();
+        reader.scan(null, null, null, row -> rows.add(new Object[]{
+            row.getLong("id"), row.getTimestamp("timestamp"), row.getString("project_id"),
+            row.getLong("lines_added"), row.getDouble("coverage")}));
+
+        assertEquals(1000, rows.size());
+        for (int i = 1; i <= 1000; i++) {
+            Object[] row = rows.get(i - 1);
+            assertEquals(Long.valueOf(i), row[0]);
+            assertEquals(BASE.plusMinutes(i), row[1]);
+            assertEquals(i % 3 == 0 ? null : "project-" + (i % 4), row[2]);
+            assertEquals(Long.valueOf(i % 7 == 0 ? -i : i * 10L), row[3]);
+            assertEquals(i % 5 == 0 ? null : i / 8.0, row[4]);
+        }
+    }
+
+    @Test
+    public void testScanFiltersTimeRangeAndSkipsUnrequestedColumns() throws Exception {
+        Path path = writeSegment(1000, 64);
+        SegmentReader reader = SegmentReader.open(path);
+        List<Long> ids = new ArrayList<>();
+
+        long matched = reader.scan(Collections.singletonList("id"),
+            BASE.plusMinutes(100), BASE.plusMinutes(199), row -> {
+                ids.add(row.getLong("id"));
+                assertNull(row.get("project_id"));
+            });
+
+        assertEquals(100, matched);
+        assertEquals(Long.valueOf(100), ids.get(0));
+        assertEquals(Long.valueOf(199), ids.get(99));
+        assertEquals(0, reader.scan(null, BASE.plusYears(1), null, row -> fail()));
+    }
+
+    @Test
+    public void testDictionaryAndDeltaEncodingCompressRepetitiveColumns() throws Exception {
+        Path path = writeSegment(20000, 65536);
+
+        // 每行约40字节的原始值，字典 + 差分编码后应远小于原始大小
+        assertTrue(Files.size(path) < 20000 * 16);
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testOpenRejectsTruncatedSegment() throws Exception {
+        Path path = writeSegment(100, 64);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+
+        SegmentReader.open(path);
+    }
+
+    private Path writeSegment(int rows, int rowGroupSize) throws Exception {
+        Path path = folder.newFile().toPath();
+        try (SegmentWriter writer = new SegmentWriter(path, COLUMNS, "timestamp", rowGroupSize)) {
+            for (int i = 1; i <= rows; i++) {
+                writer.append(new Object[]{
+                    (long) i,
+                    BASE.plusMinutes(i),
+                    i % 3 == 0 ? null : "project-" + (i % 4),
+                    i % 7 == 0 ? (long) -i : i * 10L,
+                    i % 5 == 0 ? null : i / 8.0});
+            }
+        }
+        return path;
+    }
+}
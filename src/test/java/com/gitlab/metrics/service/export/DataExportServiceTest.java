@@ -0,0 +1,143 @@
+package com.gitlab.metrics.service.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.exception.ValidationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * DataExportService测试，使用H2内存库验证键集分页、续传和输出格式
+ */
+public class DataExportServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private EmbeddedDatabase database;
+    private DataExportService dataExportService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE commits (id BIGINT PRIMARY KEY, commit_sha VARCHAR(40), project_id VARCHAR(50), " +
+            "developer_id VARCHAR(50), developer_name VARCHAR(100), \"TIMESTAMP\" TIMESTAMP, branch VARCHAR(100), " +
+            "lines_added INT, lines_deleted INT, files_changed INT, message VARCHAR(1000))");
+        // 每两个提交共享同一时间戳，验证 (时间, id) 键集在相同时间内按 id 继续
+        for (int i = 1; i <= 25; i++) {
+            jdbcTemplate.update("INSERT INTO commits VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                i, "sha" + i, i % 5 == 0 ? "other" : "p1", "dev", "Dev, \"Jr\"",
+                Timestamp.valueOf(BASE.plusMinutes(i / 2)), "main", i, 0, 1, "line1\nline2");
+        }
+
+        dataExportService = new DataExportService();
+        ReflectionTestUtils.setField(dataExportService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(dataExportService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(dataExportService, "pageSize", 7);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testNdjsonExportWalksAllPagesInKeysetOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        DataExportService.ExportSummary summary = dataExportService.export(
+            ExportType.COMMITS, ExportFormat.NDJSON, "p1", null, null, null, out);
+
+        List<JsonNode> rows = parseLines(out);
+        assertEquals(20, rows.size());
+        assertEquals(20, summary.getRows());
+        assertEquals(3, summary.getPages());
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.get(i).get("id").asLong() > rows.get(i - 1).get("id").asLong());
+        }
+        assertEquals("line1\nline2", rows.get(0).get("message").asText());
+        assertEquals(rows.get(19).get("cursor").asText(), summary.getLastCursor());
+    }
+
+    @Test
+    public void testResumeTokenContinuesAfterLastRow() throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        dataExportService.export(ExportType.COMMITS, ExportFormat.NDJSON, null, null, null, null, first);
+        List<JsonNode> all = parseLines(first);
+        String token = all.get(10).get("cursor").asText();
+
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        dataExportService.export(ExportType.COMMITS, ExportFormat.NDJSON, null, null, null, token, resumed);
+
+        List<JsonNode> rest = parseLines(resumed);
+        assertEquals(14, rest.size());
+        assertEquals(all.get(11).get("id").asLong(), rest.get(0).get("id").asLong());
+    }
+
+    @Test
+    public void testCsvExportEscapesValuesAndSkipsHeaderOnResume() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dataExportService.export(ExportType.COMMITS, ExportFormat.CSV, "p1", BASE, BASE.plusMinutes(2), null, out);
+
+        String csv = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        String[] lines = csv.split("\r\n");
+        assertTrue(lines[0].startsWith("id,commit_sha,project_id,developer_id,developer_name,timestamp"));
+        assertTrue(lines[0].endsWith(",cursor"));
+        assertTrue(csv.contains("\"Dev, \"\"Jr\"\"\""));
+        assertTrue(csv.contains("\"line1\nline2\""));
+
+        String token = new ExportCursor(BASE.plusMinutes(1), 2).toToken();
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        dataExportService.export(ExportType.COMMITS, ExportFormat.CSV, "p1", BASE, BASE.plusMinutes(2), token, resumed);
+        assertTrue(new String(resumed.toByteArray(), StandardCharsets.UTF_8).startsWith("3,sha3,"));
+    }
+
+    @Test
+    public void testCursorTokenRoundTrip() {
+        ExportCursor cursor = new ExportCursor(BASE.plusSeconds(5), 42L);
+
+        ExportCursor decoded = ExportCursor.fromToken(cursor.toToken());
+
+        assertEquals(cursor.getTimestamp(), decoded.getTimestamp());
+        assertEquals(42L, decoded.getId());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testInvalidTokenRejected() {
+        ExportCursor.fromToken("not-a-token");
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testUnknownTypeRejected() {
+        ExportType.fromPath("users");
+    }
+
+    private List<JsonNode> parseLines(ByteArrayOutputStream out) throws Exception {
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                rows.add(objectMapper.readTree(line));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,127 @@
+package com.gitlab.metrics.service.hotfile;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.FileChange;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 热点文件追踪器测试类
+ */
+public class HotFileTrackerTest {
+
+    private LocalDateTime now;
+    private HotFileTracker tracker;
+
+    @Before
+    public void setUp() {
+        now = LocalDateTime.of(2024, 3, 15, 10, 30);
+        tracker = new HotFileTracker(Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    @Test
+    public void testCountMinSketch_NeverUnderestimatesAndMerges() {
+        CountMinSketch first = new CountMinSketch(64, 4);
+        CountMinSketch second = new CountMinSketch(64, 4);
+        for (int i = 0; i < 500; i++) {
+            first.add("file" + (i % 50), 1);
+        }
+        second.add("file1", 5);
+
+        assertTrue(first.estimate("file1") >= 10);
+        first.merge(second);
+        assertTrue(first.estimate("file1") >= 15);
+        assertEquals(505, first.getTotalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountMinSketch_RejectsMismatchedMerge() {
+        new CountMinSketch(64, 4).merge(new CountMinSketch(32, 4));
+    }
+
+    @Test
+    public void testGetTopCandidates_MergesHourBucketsInWindow() {
+        LocalDateTime hour1 = now.plusHours(1);
+        LocalDateTime hour2 = now.plusHours(2);
+        tracker.recordCommits(Arrays.asList(
+            commit("p1", hour1, "src/A.java", "src/B.java"),
+            commit("p1", hour1, "src/A.java"),
+            commit("p1", hour2, "src/A.java", "src/C.java"),
+            commit("p1", hour2, "src/C.java"),
+            commit("p2", hour2, "src/Other.java")
+        ));
+
+        List<HotFileTracker.HotFileCandidate> candidates =
+            tracker.getTopCandidates("p1", hour1, hour2, 10);
+
+        assertEquals(3, candidates.size());
+        assertEquals("src/A.java", candidates.get(0).getFilePath());
+        assertEquals(3, candidates.get(0).getEstimatedCount());
+        assertEquals("src/C.java", candidates.get(1).getFilePath());
+
+        // 窗口只包含第二个小时
+        List<HotFileTracker.HotFileCandidate> lastHour =
+            tracker.getTopCandidates("p1", hour2, hour2, 1);
+        assertEquals(1, lastHour.size());
+        assertEquals(2, lastHour.get(0).getEstimatedCount());
+    }
+
+    @Test
+    public void testGetTopCandidates_KeepsHeavyHittersAmongManyFiles() {
+        LocalDateTime hour = now.plusHours(1);
+        List<Commit> commits = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            commits.add(commit("p1", hour, "noise/File" + i + ".java"));
+            if (i % 10 == 0) {
+                commits.add(commit("p1", hour, "hot/Core.java"));
+            }
+            if (i % 20 == 0) {
+                commits.add(commit("p1", hour, "hot/Service.java"));
+            }
+        }
+        tracker.recordCommits(commits);
+
+        List<HotFileTracker.HotFileCandidate> candidates =
+            tracker.getTopCandidates("p1", hour, hour, 2);
+
+        assertEquals("hot/Core.java", candidates.get(0).getFilePath());
+        assertEquals("hot/Service.java", candidates.get(1).getFilePath());
+        assertTrue(candidates.get(0).getEstimatedCount() >= 200);
+    }
+
+    @Test
+    public void testCovers_OnlyWindowsAfterTrackingStarted() {
+        ReflectionTestUtils.setField(tracker, "singleNode", true);
+        assertFalse(tracker.covers(now.minusDays(7)));
+        assertFalse(tracker.covers(null));
+        assertTrue(tracker.covers(tracker.getTrackingSince()));
+    }
+
+    @Test
+    public void testCovers_NeverWithoutSingleNodeMode() {
+        // 多节点部署时本节点的草图只包含部分提交，查询必须回退到数据库
+        assertFalse(tracker.covers(tracker.getTrackingSince()));
+    }
+
+    private Commit commit(String projectId, LocalDateTime timestamp, String... paths) {
+        Commit commit = new Commit("sha", projectId, "dev1", "Dev One", timestamp);
+        List<FileChange> fileChanges = new ArrayList<>();
+        for (String path : paths) {
+            FileChange fileChange = new FileChange();
+            fileChange.setFilePath(path);
+            fileChanges.add(fileChange);
+        }
+        commit.setFileChanges(fileChanges);
+        return commit;
+    }
+}
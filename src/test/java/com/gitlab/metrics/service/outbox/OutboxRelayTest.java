@@ -0,0 +1,236 @@
+package com.gitlab.metrics.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.OutboxProperties;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import com.gitlab.metrics.exception.EventPublishException;
+import com.gitlab.metrics.messaging.ConfirmingEventPublisher;
+import com.gitlab.metrics.messaging.EventEnvelopeMessageConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OutboxRelay单元测试
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OutboxRelayTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ConfirmingEventPublisher eventPublisher;
+
+    private OutboxProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay relay;
+
+    @Before
+    public void setUp() {
+        properties = new OutboxProperties();
+        properties.setBatchSize(2);
+        properties.setPublishTimeoutMs(1000);
+        meterRegistry = new SimpleMeterRegistry();
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        relay = new OutboxRelay(jdbcTemplate, transactionManager, eventPublisher, new ObjectMapper(),
+            properties, null, meterRegistry);
+    }
+
+    @Test
+    public void testConfirmedRowsAreMarkedSent() {
+        stubBatch(0L, row(5), row(7));
+        stubBatch(7L);
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(2, relay.relay());
+
+        verify(jdbcTemplate).update(startsWith("UPDATE outbox_event SET status = 'SENT'"), any(), eq(5L), eq(7L));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        // 第一批认领和记录结果各一个事务，第二批只有认领
+        verify(transactionManager, times(3)).commit(any());
+        assertEquals(2.0, meterRegistry.get("outbox.relay.published").counter().count(), 0.0);
+        assertEquals(2, meterRegistry.get("outbox.relay.lag").timer().count());
+    }
+
+    @Test
+    public void testPollContinuesFromLastIdOfPreviousBatch() {
+        stubBatch(0L, row(5), row(7));
+        stubBatch(7L, row(9));
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(3, relay.relay());
+
+        // 第二批不满，说明已到表尾，不再查询
+        verify(jdbcTemplate).query(eq(OutboxRelay.SELECT_BATCH_SQL), any(RowMapper.class), eq(7L), any(Timestamp.class), eq(2));
+        verify(jdbcTemplate, never()).query(eq(OutboxRelay.SELECT_BATCH_SQL), any(RowMapper.class), eq(9L), any(Timestamp.class), eq(2));
+    }
+
+    @Test
+    public void testPublishesOutsideClaimTransaction() {
+        stubBatch(0L, row(5));
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(1, relay.relay());
+
+        // 认领事务提交后才发布，确认后再开第二个事务标记 SENT
+        InOrder inOrder = inOrder(jdbcTemplate, transactionManager, eventPublisher);
+        inOrder.verify(jdbcTemplate).update(startsWith("UPDATE outbox_event SET claimed_until = ?"), any(), eq(5L));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(eventPublisher).publish(anyString(), anyString(), any(Object.class));
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(jdbcTemplate).update(startsWith("UPDATE outbox_event SET status = 'SENT'"), any(), eq(5L));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testClaimLeaseCoversPublishTimeout() {
+        properties.setClaimLeaseMs(1000);
+        properties.setPublishTimeoutMs(30000);
+        stubBatch(0L, row(5));
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class)))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        long before = System.currentTimeMillis();
+        relay.relay();
+
+        ArgumentCaptor<Object> lease = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).update(startsWith("UPDATE outbox_event SET claimed_until = ?"), lease.capture(), eq(5L));
+        assertTrue(((Timestamp) lease.getValue()).getTime() >= before + 60000);
+    }
+
+    @Test
+    public void testUnroutableRowIsFailedAndNackedRowStaysPending() {
+        stubBatch(0L, row(1), row(2));
+        CompletableFuture<Void> returned = new CompletableFuture<>();
+        returned.completeExceptionally(new EventPublishException("returned", 1, "NO_ROUTE"));
+        CompletableFuture<Void> nacked = new CompletableFuture<>();
+        nacked.completeExceptionally(new EventPublishException("nack", 5, "broker nack"));
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class))).thenReturn(returned, nacked);
+
+        assertEquals(0, relay.relay());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE outbox_event SET status = ?"), captor.capture());
+        List<Object[]> updates = captor.getValue();
+        assertEquals(OutboxRelay.STATUS_FAILED, updates.get(0)[0]);
+        assertEquals(1L, updates.get(0)[2]);
+        assertEquals(OutboxRelay.STATUS_PENDING, updates.get(1)[0]);
+        assertTrue(((String) updates.get(1)[1]).startsWith("nack"));
+        // 整批都失败时不再继续下一批
+        verify(jdbcTemplate, times(1)).query(eq(OutboxRelay.SELECT_BATCH_SQL), any(RowMapper.class), any(), any(), any());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE outbox_event SET status = 'SENT'"), any(Object[].class));
+    }
+
+    @Test
+    public void testUnconfirmedRowStaysPendingAfterTimeout() {
+        properties.setPublishTimeoutMs(50);
+        stubBatch(0L, row(3));
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class))).thenReturn(new CompletableFuture<>());
+
+        assertEquals(0, relay.relay());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertEquals(OutboxRelay.STATUS_PENDING, captor.getValue().get(0)[0]);
+        verify(jdbcTemplate).batchUpdate(contains("claimed_until = NULL"), anyList());
+        assertEquals(1.0, meterRegistry.get("outbox.relay.failed").tag("reason", "timeout").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testRowIsFailedOnceAttemptsAreExhausted() {
+        properties.setMaxAttempts(3);
+        OutboxRelay.OutboxRow poison = row(4);
+        poison.attempts = 2;
+        stubBatch(0L, poison, row(6));
+        CompletableFuture<Void> nacked = new CompletableFuture<>();
+        nacked.completeExceptionally(new EventPublishException("nack", 4, "broker nack"));
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class))).thenReturn(nacked);
+
+        assertEquals(0, relay.relay());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertEquals(OutboxRelay.STATUS_FAILED, captor.getValue().get(0)[0]);
+        assertEquals(OutboxRelay.STATUS_PENDING, captor.getValue().get(1)[0]);
+        assertEquals(1.0, meterRegistry.get("outbox.relay.failed").tag("reason", "max_attempts").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testStoredBytesAndHeadersAreRepublishedAsIs() {
+        OutboxRelay.OutboxRow row = row(42);
+        Message message = relay.toMessage(row);
+
+        assertArrayEquals(row.payload, message.getBody());
+        assertEquals(EventEnvelopeMessageConverter.CONTENT_TYPE_SMILE, message.getMessageProperties().getContentType());
+        assertEquals("quality_analysis", message.getMessageProperties().getHeader(EventEnvelopeMessageConverter.EVENT_TYPE_HEADER));
+        assertEquals(Integer.valueOf(1), message.getMessageProperties().getHeader(EventEnvelopeMessageConverter.VERSION_HEADER));
+        assertEquals("outbox-42", message.getMessageProperties().getMessageId());
+        assertEquals(MessageDeliveryMode.PERSISTENT, message.getMessageProperties().getDeliveryMode());
+        assertEquals(row.createdAt.getTime(), message.getMessageProperties().getTimestamp().getTime());
+    }
+
+    @Test
+    public void testPurgeDeletesInBatchesUntilShortBatch() {
+        properties.setCleanupBatchSize(100);
+        when(jdbcTemplate.update(startsWith("DELETE FROM outbox_event WHERE status = 'SENT'"), any(), eq(100)))
+            .thenReturn(100, 40);
+        when(jdbcTemplate.update(startsWith("DELETE FROM outbox_event WHERE status = 'FAILED'"), any(), eq(100)))
+            .thenReturn(3);
+
+        assertEquals(143, relay.purge());
+    }
+
+    // Helper methods
+
+    @SuppressWarnings("unchecked")
+    private void stubBatch(long afterId, OutboxRelay.OutboxRow... rows) {
+        List<OutboxRelay.OutboxRow> result = new ArrayList<>(Arrays.asList(rows));
+        when(jdbcTemplate.query(eq(OutboxRelay.SELECT_BATCH_SQL), any(RowMapper.class), eq(afterId), any(Timestamp.class), eq(2)))
+            .thenReturn(result.isEmpty() ? Collections.emptyList() : result);
+    }
+
+    private OutboxRelay.OutboxRow row(long id) {
+        OutboxRelay.OutboxRow row = new OutboxRelay.OutboxRow();
+        row.id = id;
+        row.exchange = RabbitMQConfig.GITLAB_EVENTS_EXCHANGE;
+        row.routingKey = RabbitMQConfig.QUALITY_ROUTING_KEY;
+        row.contentType = EventEnvelopeMessageConverter.CONTENT_TYPE_SMILE;
+        row.headers = "{\"x-envelope-version\":1,\"x-event-type\":\"quality_analysis\"}";
+        row.payload = ("payload-" + id).getBytes(StandardCharsets.UTF_8);
+        row.createdAt = new Timestamp(System.currentTimeMillis() - 250);
+        return row;
+    }
+}
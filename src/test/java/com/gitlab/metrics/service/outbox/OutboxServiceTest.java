@@ -0,0 +1,103 @@
+package com.gitlab.metrics.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitlab.metrics.config.OutboxProperties;
+import com.gitlab.metrics.config.RabbitMQConfig;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventEnvelopeMessageConverter;
+import com.gitlab.metrics.messaging.EventTransport;
+import com.gitlab.metrics.messaging.EventType;
+import com.gitlab.metrics.service.SonarQubeAnalysisMessageListener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OutboxService单元测试
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OutboxServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EventTransport eventPublisher;
+
+    @Spy
+    private MessageConverter messageConverter = new EventEnvelopeMessageConverter(
+        EventEnvelopeMessageConverter.WireFormat.SMILE, new Jackson2JsonMessageConverter());
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private OutboxProperties properties = new OutboxProperties();
+
+    @InjectMocks
+    private OutboxService outboxService;
+
+    @Test
+    public void testEnqueueStoresEncodedEnvelopeInsteadOfPublishing() throws Exception {
+        properties.setEnabled(true);
+        EventEnvelope envelope = new EventEnvelope(EventType.QUALITY_ANALYSIS, "req-1",
+            new SonarQubeAnalysisMessageListener.QualityAnalysisMessage("1", "abc123", "group:project"));
+
+        CompletableFuture<Void> future = outboxService.enqueue(
+            RabbitMQConfig.GITLAB_EVENTS_EXCHANGE, RabbitMQConfig.QUALITY_ROUTING_KEY, envelope);
+
+        assertTrue(future.isDone());
+        verify(eventPublisher, never()).publish(anyString(), anyString(), any(Object.class));
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).update(eq(OutboxService.INSERT_SQL), args.capture(), args.capture(), args.capture(),
+            args.capture(), args.capture(), args.capture(), args.capture());
+        assertEquals(RabbitMQConfig.GITLAB_EVENTS_EXCHANGE, args.getAllValues().get(0));
+        assertEquals(RabbitMQConfig.QUALITY_ROUTING_KEY, args.getAllValues().get(1));
+        assertEquals("quality_analysis", args.getAllValues().get(2));
+        assertEquals(EventEnvelopeMessageConverter.CONTENT_TYPE_SMILE, args.getAllValues().get(3));
+
+        // 存储的字节可由消费端的转换器直接解码
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType((String) args.getAllValues().get(3));
+        objectMapper.readValue((String) args.getAllValues().get(4), Map.class)
+            .forEach((key, value) -> messageProperties.setHeader((String) key, value));
+        EventEnvelope decoded = (EventEnvelope) messageConverter.fromMessage(
+            new Message((byte[]) args.getAllValues().get(5), messageProperties));
+        assertEquals(EventType.QUALITY_ANALYSIS, decoded.getType());
+        assertEquals("abc123", decoded.getPayload(SonarQubeAnalysisMessageListener.QualityAnalysisMessage.class).getCommitSha());
+    }
+
+    @Test
+    public void testOutboxIsOffByDefault() {
+        assertFalse(new OutboxProperties().isEnabled());
+    }
+
+    @Test
+    public void testDisabledOutboxPublishesDirectly() {
+        properties.setEnabled(false);
+        CompletableFuture<Void> confirm = new CompletableFuture<>();
+        when(eventPublisher.publish(anyString(), anyString(), any(Object.class))).thenReturn(confirm);
+
+        CompletableFuture<Void> future = outboxService.enqueue(
+            RabbitMQConfig.GITLAB_EVENTS_EXCHANGE, "alert.notification", "{\"title\":\"alert\"}");
+
+        assertSame(confirm, future);
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,253 @@
+package com.gitlab.metrics.service.realtime;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.QualityMetrics;
+import com.gitlab.metrics.entity.TestCoverage;
+import com.gitlab.metrics.repository.QualityMetricsRepository;
+import com.gitlab.metrics.repository.TestCoverageRepository;
+import com.gitlab.metrics.repository.projection.ProjectDeveloperCountRow;
+import com.gitlab.metrics.repository.projection.ProjectRecordRef;
+import com.gitlab.metrics.service.CommitStatisticsService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 实时计数服务测试类
+ */
+public class RealtimeCounterServiceTest {
+
+    private MutableClock clock;
+    private RealtimeCounterService service;
+    private LocalDateTime today;
+
+    @Before
+    public void setUp() {
+        today = LocalDateTime.of(2024, 3, 15, 10, 0);
+        clock = new MutableClock(today.toInstant(ZoneOffset.UTC));
+        service = new RealtimeCounterService(clock);
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testRecordCommits_CountsDistinctProjectsAndDevelopers() {
+        service.recordCommits(Arrays.asList(
+            new Commit("sha1", "p1", "dev1", "Dev One", today),
+            new Commit("sha2", "p1", "dev2", "Dev Two", today),
+            new Commit("sha3", "p2", "dev1", "Dev One", today)
+        ));
+
+        RealtimeCounterService.RealtimeSnapshot snapshot = service.snapshot();
+        assertEquals(3, snapshot.getTodayCommits());
+        assertEquals(2, snapshot.getActiveProjects());
+        assertEquals(2, snapshot.getActiveDevelopers());
+        assertEquals(today.toLocalDate(), snapshot.getDate());
+    }
+
+    @Test
+    public void testRecordCommit_IgnoresCommitsFromOtherDays() {
+        service.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", today.minusDays(1)));
+
+        assertEquals(0, service.snapshot().getTodayCommits());
+        assertEquals(0, service.snapshot().getActiveProjects());
+    }
+
+    @Test
+    public void testRecordQualityGate_DeduplicatesAndRevertsById() {
+        QualityMetrics metrics = new QualityMetrics("p1", "sha1", today);
+        metrics.setId(1L);
+        metrics.setQualityGate("FAILED");
+
+        service.recordQualityGate(metrics);
+        service.recordQualityGate(metrics);
+        assertEquals(1, service.snapshot().getQualityGateFailures());
+
+        metrics.setQualityGate("PASSED");
+        service.recordQualityGate(metrics);
+        assertEquals(0, service.snapshot().getQualityGateFailures());
+    }
+
+    @Test
+    public void testRecordCoverageStatus_DeduplicatesById() {
+        TestCoverage first = new TestCoverage("p1", "sha1", today);
+        first.setId(1L);
+        first.setStatus("FAILED");
+        TestCoverage second = new TestCoverage("p1", "sha2", today);
+        second.setId(2L);
+        second.setStatus("FAILED");
+
+        service.recordCoverageStatus(first);
+        service.recordCoverageStatus(first);
+        service.recordCoverageStatus(second);
+        service.recordCoverageStatus(null);
+
+        assertEquals(2, service.snapshot().getCoverageFailures());
+    }
+
+    @Test
+    public void testActiveProjects_IgnoresProjectsWithOnlyFailures() {
+        service.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", today));
+        QualityMetrics metrics = new QualityMetrics("p2", "sha2", today);
+        metrics.setId(1L);
+        metrics.setQualityGate("FAILED");
+        service.recordQualityGate(metrics);
+
+        RealtimeCounterService.RealtimeSnapshot snapshot = service.snapshot();
+        assertEquals(1, snapshot.getActiveProjects());
+        assertEquals(1, snapshot.getQualityGateFailures());
+    }
+
+    @Test
+    public void testSnapshot_ResetsAtDayBoundary() {
+        service.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", today));
+        assertEquals(1, service.snapshot().getTodayCommits());
+
+        clock.setInstant(today.plusDays(1).withHour(0).withMinute(1).toInstant(ZoneOffset.UTC));
+
+        RealtimeCounterService.RealtimeSnapshot snapshot = service.snapshot();
+        assertEquals(0, snapshot.getTodayCommits());
+        assertEquals(0, snapshot.getActiveProjects());
+        assertEquals(today.toLocalDate().plusDays(1), snapshot.getDate());
+    }
+
+    @Test
+    public void testRecordInTransaction_CountsOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordCommits(Arrays.asList(new Commit("sha1", "p1", "dev1", "Dev One", today)));
+        QualityMetrics metrics = new QualityMetrics("p1", "sha2", today);
+        metrics.setId(1L);
+        metrics.setQualityGate("FAILED");
+        service.recordQualityGate(metrics);
+
+        // 提交前不计数
+        assertEquals(0, service.snapshot().getTodayCommits());
+        assertEquals(0, service.snapshot().getQualityGateFailures());
+
+        TransactionSynchronization committed = TransactionSynchronizationManager.getSynchronizations().get(0);
+        TransactionSynchronization rolledBack = TransactionSynchronizationManager.getSynchronizations().get(1);
+        TransactionSynchronizationManager.clearSynchronization();
+        committed.afterCommit();
+        rolledBack.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(1, service.snapshot().getTodayCommits());
+        assertEquals(0, service.snapshot().getQualityGateFailures());
+    }
+
+    @Test
+    public void testSeedFromDatabase_FillsProjectDevelopers() {
+        CommitStatisticsService commitStatisticsService = withDatabase();
+        ReflectionTestUtils.setField(service, "singleNode", true);
+        when(commitStatisticsService.getProjectDeveloperCommitCounts(any(), any(), isNull())).thenReturn(Arrays.asList(
+            new ProjectDeveloperCountRow("p1", "dev1", 2L),
+            new ProjectDeveloperCountRow("p1", "dev2", 1L),
+            new ProjectDeveloperCountRow("p2", "dev1", 1L)
+        ));
+
+        service.seedFromDatabase();
+
+        RealtimeCounterService.RealtimeSnapshot snapshot = service.snapshot();
+        assertEquals(4, snapshot.getTodayCommits());
+        assertEquals(2, snapshot.getActiveProjects());
+        assertEquals(2, snapshot.getActiveDevelopers());
+        assertEquals(2, service.projectSnapshot("p1").getActiveDevelopers());
+        assertEquals(3, service.projectSnapshot("p1").getTodayCommits());
+
+        // 回填后由事件继续累加
+        service.recordCommit(new Commit("sha9", "p2", "dev3", "Dev Three", today));
+        assertEquals(2, service.projectSnapshot("p2").getActiveDevelopers());
+    }
+
+    @Test
+    public void testSnapshot_ReadsDatabaseUnlessSingleNode() {
+        CommitStatisticsService commitStatisticsService = withDatabase();
+        when(commitStatisticsService.getProjectDeveloperCommitCounts(any(), any(), isNull())).thenReturn(Arrays.asList(
+            new ProjectDeveloperCountRow("p1", "dev1", 5L),
+            new ProjectDeveloperCountRow("p2", "dev2", 2L)
+        ));
+        when(commitStatisticsService.getProjectDeveloperCommitCounts(any(), any(), eq("p1"))).thenReturn(
+            Collections.singletonList(new ProjectDeveloperCountRow("p1", "dev1", 5L)));
+
+        // 本节点只消费到一条提交，快照仍以数据库为准
+        service.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", today));
+
+        RealtimeCounterService.RealtimeSnapshot snapshot = service.snapshot();
+        assertEquals(7, snapshot.getTodayCommits());
+        assertEquals(2, snapshot.getActiveProjects());
+        assertEquals(1, snapshot.getQualityGateFailures());
+        assertEquals(5, service.projectSnapshot("p1").getTodayCommits());
+        assertEquals(1, service.projectSnapshot("p1").getQualityGateFailures());
+
+        ReflectionTestUtils.setField(service, "singleNode", true);
+        assertEquals(1, service.snapshot().getTodayCommits());
+    }
+
+    /**
+     * 注入数据库依赖，质量门禁失败一条（p1），覆盖率失败为空
+     */
+    private CommitStatisticsService withDatabase() {
+        CommitStatisticsService commitStatisticsService = mock(CommitStatisticsService.class);
+        QualityMetricsRepository qualityMetricsRepository = mock(QualityMetricsRepository.class);
+        TestCoverageRepository testCoverageRepository = mock(TestCoverageRepository.class);
+        when(qualityMetricsRepository.findFailedQualityGateRefs(any(), any()))
+            .thenReturn(Collections.singletonList(new ProjectRecordRef(1L, "p1")));
+        when(testCoverageRepository.findFailedCoverageRefs(any(), any())).thenReturn(Collections.emptyList());
+        ReflectionTestUtils.setField(service, "commitStatisticsService", commitStatisticsService);
+        ReflectionTestUtils.setField(service, "qualityMetricsRepository", qualityMetricsRepository);
+        ReflectionTestUtils.setField(service, "testCoverageRepository", testCoverageRepository);
+        return commitStatisticsService;
+    }
+
+    /**
+     * 可调整时间的测试时钟
+     */
+    private static class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void setInstant(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
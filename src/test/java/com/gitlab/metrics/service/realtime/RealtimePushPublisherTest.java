@@ -0,0 +1,272 @@
+package com.gitlab.metrics.service.realtime;
+
+import com.gitlab.metrics.entity.Commit;
+import com.gitlab.metrics.entity.QualityMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实时指标推送发布器测试类
+ */
+public class RealtimePushPublisherTest {
+
+    private RealtimeCounterService counterService;
+    private RealtimePushPublisher publisher;
+    private MeterRegistry meterRegistry;
+    private LocalDateTime now;
+
+    @Before
+    public void setUp() {
+        now = LocalDateTime.now();
+        counterService = new RealtimeCounterService();
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new RealtimePushPublisher();
+        ReflectionTestUtils.setField(publisher, "realtimeCounterService", counterService);
+        ReflectionTestUtils.setField(publisher, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(counterService, "eventPublisher",
+            (org.springframework.context.ApplicationEventPublisher) event ->
+                publisher.onCounterChanged((RealtimeCounterChangedEvent) event));
+        publisher.init();
+    }
+
+    @Test
+    public void testSubscribe_SendsInitialSnapshot() {
+        counterService.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", now));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        assertTrue(publisher.subscribe("p1", subscriber));
+
+        assertEquals(1, subscriber.messages.size());
+        assertTrue(subscriber.messages.get(0).startsWith("snapshot:"));
+        assertTrue(subscriber.messages.get(0).contains("\"todayCommits\":1"));
+        assertEquals(1, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testSubscribe_ChangeWhileSendingSnapshotIsDelivered() {
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public synchronized boolean send(String eventName, String data) {
+                if (RealtimePushPublisher.EVENT_SNAPSHOT.equals(eventName)) {
+                    // 快照已取出、订阅者尚未登记时发生的计数变化
+                    counterService.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", now));
+                }
+                return super.send(eventName, data);
+            }
+        };
+
+        assertTrue(publisher.subscribe("p1", subscriber));
+        assertTrue(subscriber.messages.get(0).contains("\"todayCommits\":0"));
+
+        publisher.flush();
+        assertEquals(2, subscriber.messages.size());
+        assertTrue(subscriber.messages.get(1).startsWith("delta:"));
+        assertTrue(subscriber.messages.get(1).contains("\"todayCommits\":1"));
+    }
+
+    @Test
+    public void testFlush_SendsOnlyChangedFieldsToProjectSubscribers() {
+        RecordingSubscriber p1 = new RecordingSubscriber();
+        RecordingSubscriber p2 = new RecordingSubscriber();
+        publisher.subscribe("p1", p1);
+        publisher.subscribe("p2", p2);
+
+        counterService.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", now));
+        counterService.recordCommit(new Commit("sha2", "p1", "dev1", "Dev One", now));
+        publisher.flush();
+
+        assertEquals(2, p1.messages.size());
+        String delta = p1.messages.get(1);
+        assertTrue(delta.startsWith("delta:"));
+        assertTrue(delta.contains("\"todayCommits\":2"));
+        assertTrue(delta.contains("\"activeDevelopers\":1"));
+        assertFalse(delta.contains("qualityGateFailures"));
+        assertEquals(1, p2.messages.size());
+
+        // 无变化时不再下发
+        publisher.flush();
+        assertEquals(2, p1.messages.size());
+    }
+
+    @Test
+    public void testFlush_RemovesFailedSubscribers() {
+        RecordingSubscriber healthy = new RecordingSubscriber();
+        RecordingSubscriber broken = new RecordingSubscriber();
+        publisher.subscribe("p1", healthy);
+        publisher.subscribe("p1", broken);
+        broken.failing = true;
+
+        QualityMetrics metrics = new QualityMetrics("p1", "sha1", now);
+        metrics.setId(1L);
+        metrics.setQualityGate("FAILED");
+        counterService.recordQualityGate(metrics);
+        publisher.flush();
+
+        assertEquals(1, publisher.getSubscriberCount());
+        assertTrue(broken.closed);
+        assertTrue(healthy.messages.get(1).contains("\"qualityGateFailures\":1"));
+    }
+
+    @Test
+    public void testFlush_SendsOutsideTheCallerThread() {
+        List<Runnable> tasks = new ArrayList<>();
+        ReflectionTestUtils.setField(publisher, "pushExecutor", (java.util.concurrent.Executor) tasks::add);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        assertTrue(publisher.subscribe("p1", subscriber));
+
+        counterService.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", now));
+        publisher.flush();
+
+        // 快照和增量都只是入队，由发送线程按顺序写出
+        assertTrue(subscriber.messages.isEmpty());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(2, subscriber.messages.size());
+        assertTrue(subscriber.messages.get(0).startsWith("snapshot:"));
+        assertTrue(subscriber.messages.get(1).startsWith("delta:"));
+    }
+
+    @Test
+    public void testFlush_DisconnectsSlowSubscribers() {
+        List<Runnable> tasks = new ArrayList<>();
+        ReflectionTestUtils.setField(publisher, "pushExecutor", (java.util.concurrent.Executor) tasks::add);
+        ReflectionTestUtils.setField(publisher, "maxPendingMessages", 2);
+        RecordingSubscriber slow = new RecordingSubscriber();
+        publisher.subscribe("p1", slow);
+
+        counterService.recordCommit(new Commit("sha1", "p1", "dev1", "Dev One", now));
+        publisher.flush();
+        assertFalse(slow.closed);
+
+        // 发送任务一直没有执行，第三条消息放不下
+        counterService.recordCommit(new Commit("sha2", "p1", "dev1", "Dev One", now));
+        publisher.flush();
+
+        assertTrue(slow.closed);
+        assertEquals(0, publisher.getSubscriberCount());
+        assertEquals(1.0, meterRegistry.find("realtime.push.slow.dropped.total").counter().count(), 0.01);
+
+        // 已断开的订阅者不再写出积压的消息
+        tasks.get(0).run();
+        assertTrue(slow.messages.isEmpty());
+    }
+
+    @Test
+    public void testHeartbeat_RemovesBrokenSubscribers() {
+        RecordingSubscriber broken = new RecordingSubscriber();
+        publisher.subscribe("p1", broken);
+        broken.failing = true;
+
+        publisher.heartbeat();
+
+        assertTrue(broken.closed);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testLoad_ThousandsOfConcurrentSubscribers() throws Exception {
+        int projects = 50;
+        int subscribersPerProject = 100;
+        List<RecordingSubscriber> all = new CopyOnWriteArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch subscribed = new CountDownLatch(projects * subscribersPerProject);
+        for (int p = 0; p < projects; p++) {
+            String projectId = "project-" + p;
+            for (int i = 0; i < subscribersPerProject; i++) {
+                executor.execute(() -> {
+                    RecordingSubscriber subscriber = new RecordingSubscriber();
+                    all.add(subscriber);
+                    publisher.subscribe(projectId, subscriber);
+                    subscribed.countDown();
+                });
+            }
+        }
+        assertTrue(subscribed.await(30, TimeUnit.SECONDS));
+        assertEquals(projects * subscribersPerProject, publisher.getSubscriberCount());
+
+        // 并发写入计数，同时持续刷新
+        AtomicInteger sha = new AtomicInteger();
+        CountDownLatch ingested = new CountDownLatch(projects * 20);
+        for (int p = 0; p < projects; p++) {
+            String projectId = "project-" + p;
+            for (int i = 0; i < 20; i++) {
+                executor.execute(() -> {
+                    counterService.recordCommit(new Commit("sha" + sha.incrementAndGet(), projectId,
+                        "dev" + (sha.get() % 7), "Dev", now));
+                    ingested.countDown();
+                });
+            }
+        }
+        long start = System.nanoTime();
+        while (ingested.getCount() > 0) {
+            publisher.flush();
+        }
+        publisher.flush();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executor.shutdown();
+
+        for (RecordingSubscriber subscriber : all) {
+            String last = subscriber.lastWith("todayCommits");
+            assertNotNull(last);
+            assertTrue(last, last.contains("\"todayCommits\":20"));
+        }
+        // 每个项目的增量只序列化一次，消息数不会超过 增量数 × 订阅者数
+        double deltas = meterRegistry.find("realtime.push.deltas.total").counter().count();
+        double messages = meterRegistry.find("realtime.push.messages.total").counter().count();
+        assertEquals(deltas * subscribersPerProject, messages, 0.01);
+        assertTrue("fan-out took " + elapsedMs + "ms", elapsedMs < 10000);
+    }
+
+    /**
+     * 记录收到消息的测试订阅者
+     */
+    private static class RecordingSubscriber implements RealtimeSubscriber {
+        private final List<String> messages = new ArrayList<>();
+        private volatile boolean failing;
+        private volatile boolean closed;
+
+        @Override
+        public synchronized boolean send(String eventName, String data) {
+            if (failing) {
+                return false;
+            }
+            messages.add(eventName + ":" + data);
+            return true;
+        }
+
+        @Override
+        public boolean heartbeat() {
+            return !failing;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        synchronized String lastWith(String field) {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                if (messages.get(i).contains(field)) {
+                    return messages.get(i);
+                }
+            }
+            return null;
+        }
+    }
+}
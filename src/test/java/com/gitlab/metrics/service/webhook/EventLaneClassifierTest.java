@@ -0,0 +1,86 @@
+package com.gitlab.metrics.service.webhook;
+
+import com.gitlab.metrics.config.PriorityLaneProperties;
+import com.gitlab.metrics.dto.webhook.IssueEventRequest;
+import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
+import com.gitlab.metrics.dto.webhook.PushEventRequest;
+import com.gitlab.metrics.messaging.PriorityLane;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * EventLaneClassifier单元测试
+ */
+public class EventLaneClassifierTest {
+
+    private PriorityLaneProperties properties;
+    private EventLaneClassifier classifier;
+
+    @Before
+    public void setUp() {
+        properties = new PriorityLaneProperties();
+        classifier = new EventLaneClassifier(properties);
+    }
+
+    @Test
+    public void testMergeRequestAndIssueAreInteractive() {
+        assertEquals(PriorityLane.INTERACTIVE, classifier.classify(new MergeRequestEventRequest()));
+        assertEquals(PriorityLane.INTERACTIVE, classifier.classify(new IssueEventRequest()));
+    }
+
+    @Test
+    public void testSmallPushIsStandard() {
+        assertEquals(PriorityLane.STANDARD, classifier.classify(push(3, 5)));
+    }
+
+    @Test
+    public void testPushWithManyCommitsIsBulk() {
+        PushEventRequest push = push(20, 1);
+        push.setTotalCommitsCount(properties.getBulkCommitThreshold());
+
+        assertEquals(PriorityLane.BULK, classifier.classify(push));
+    }
+
+    @Test
+    public void testPushWithLargePayloadIsBulk() {
+        properties.setBulkPayloadBytes(100_000);
+        // 20 个提交，每个改动 500 个文件
+        PushEventRequest push = push(20, 500);
+
+        assertTrue(EventLaneClassifier.estimatePayloadBytes(push) >= 100_000);
+        assertEquals(PriorityLane.BULK, classifier.classify(push));
+    }
+
+    @Test
+    public void testPushWithoutCommitsIsStandard() {
+        assertEquals(PriorityLane.STANDARD, classifier.classify(new PushEventRequest()));
+        assertEquals(0, EventLaneClassifier.estimatePayloadBytes(new PushEventRequest()));
+    }
+
+    // Helper methods
+
+    private PushEventRequest push(int commits, int filesPerCommit) {
+        PushEventRequest push = new PushEventRequest();
+        List<PushEventRequest.CommitInfo> commitInfos = new ArrayList<>();
+        for (int i = 0; i < commits; i++) {
+            PushEventRequest.CommitInfo commit = new PushEventRequest.CommitInfo();
+            commit.setId("sha" + i);
+            commit.setMessage("Change " + i);
+            List<String> files = new ArrayList<>();
+            for (int f = 0; f < filesPerCommit; f++) {
+                files.add("src/main/java/com/example/module" + f + "/Component" + f + ".java");
+            }
+            commit.setModified(files);
+            commit.setAdded(Collections.emptyList());
+            commitInfos.add(commit);
+        }
+        push.setCommits(commitInfos);
+        return push;
+    }
+}
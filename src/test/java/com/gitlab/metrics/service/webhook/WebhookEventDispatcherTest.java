@@ -63,7 +63,7 @@ public class WebhookEventDispatcherTest {
         // Then
         verify(pushEventParser).isValidPayload(validPayload);
         verify(pushEventParser).parseEvent(validPayload);
-        verify(eventProcessor).processEventAsync(eq("push"), eq(mockPushEvent), eq(requestId));
+        verify(eventProcessor).processEventAsync(eq("push"), eq(mockPushEvent), eq(requestId), anyLong());
     }
     
     @Test
@@ -78,7 +78,7 @@ public class WebhookEventDispatcherTest {
         // Then
         verify(pushEventParser).isValidPayload(validPayload);
         verify(pushEventParser).parseEvent(validPayload);
-        verify(eventProcessor).processEventAsync(eq("push"), eq(mockPushEvent), eq(requestId));
+        verify(eventProcessor).processEventAsync(eq("push"), eq(mockPushEvent), eq(requestId), anyLong());
     }
     
     @Test(expected = WebhookProcessingException.class)
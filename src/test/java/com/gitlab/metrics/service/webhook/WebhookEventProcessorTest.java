@@ -1,21 +1,27 @@
 package com.gitlab.metrics.service.webhook;
 
+import com.gitlab.metrics.config.PriorityLaneProperties;
 import com.gitlab.metrics.config.RabbitMQConfig;
 import com.gitlab.metrics.dto.webhook.IssueEventRequest;
 import com.gitlab.metrics.dto.webhook.MergeRequestEventRequest;
 import com.gitlab.metrics.dto.webhook.PushEventRequest;
-import com.gitlab.metrics.service.webhook.WebhookEventProcessor.WebhookEventMessage;
+import com.gitlab.metrics.exception.EventPublishException;
+import com.gitlab.metrics.messaging.EventEnvelope;
+import com.gitlab.metrics.messaging.EventTransport;
+import com.gitlab.metrics.messaging.EventType;
+import com.gitlab.metrics.messaging.PriorityLane;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,7 +34,10 @@ import static org.mockito.Mockito.*;
 public class WebhookEventProcessorTest {
 
     @Mock
-    private RabbitTemplate rabbitTemplate;
+    private EventTransport eventPublisher;
+
+    @Spy
+    private EventLaneClassifier laneClassifier = new EventLaneClassifier(new PriorityLaneProperties());
 
     @InjectMocks
     private WebhookEventProcessor webhookEventProcessor;
@@ -44,6 +53,8 @@ public class WebhookEventProcessorTest {
         pushEvent = createMockPushEvent();
         mergeRequestEvent = createMockMergeRequestEvent();
         issueEvent = createMockIssueEvent();
+        lenient().when(eventPublisher.publishToQueue(anyString(), any()))
+            .thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
@@ -53,14 +64,16 @@ public class WebhookEventProcessorTest {
 
         // Then
         ArgumentCaptor<String> queueCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<WebhookEventMessage> messageCaptor = ArgumentCaptor.forClass(WebhookEventMessage.class);
+        ArgumentCaptor<EventEnvelope> messageCaptor = ArgumentCaptor.forClass(EventEnvelope.class);
 
-        verify(rabbitTemplate).convertAndSend(queueCaptor.capture(), messageCaptor.capture());
+        verify(eventPublisher).publishToQueue(queueCaptor.capture(), messageCaptor.capture());
 
         assertEquals(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE, queueCaptor.getValue());
-        WebhookEventMessage capturedMessage = messageCaptor.getValue();
+        EventEnvelope capturedMessage = messageCaptor.getValue();
         assertEquals(requestId, capturedMessage.getRequestId());
-        assertEquals(pushEvent, capturedMessage.getEventData());
+        assertEquals(pushEvent, capturedMessage.getPayload());
+        assertEquals(EventType.PUSH, capturedMessage.getType());
+        assertEquals(EventEnvelope.CURRENT_VERSION, capturedMessage.getVersion());
         assertTrue(capturedMessage.getTimestamp() > 0);
     }
 
@@ -75,10 +88,10 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("push", pushEvent, requestId);
 
         // Then - 应该发送到两个队列
-        verify(rabbitTemplate, times(2)).convertAndSend(anyString(), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(2)).publishToQueue(anyString(), any(EventEnvelope.class));
 
         ArgumentCaptor<String> queueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(rabbitTemplate, times(2)).convertAndSend(queueCaptor.capture(), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(2)).publishToQueue(queueCaptor.capture(), any(EventEnvelope.class));
 
         assertTrue(queueCaptor.getAllValues().contains(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE));
         assertTrue(queueCaptor.getAllValues().contains(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE));
@@ -91,14 +104,14 @@ public class WebhookEventProcessorTest {
 
         // Then
         ArgumentCaptor<String> queueCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<WebhookEventMessage> messageCaptor = ArgumentCaptor.forClass(WebhookEventMessage.class);
+        ArgumentCaptor<EventEnvelope> messageCaptor = ArgumentCaptor.forClass(EventEnvelope.class);
 
-        verify(rabbitTemplate).convertAndSend(queueCaptor.capture(), messageCaptor.capture());
+        verify(eventPublisher).publishToQueue(queueCaptor.capture(), messageCaptor.capture());
 
         assertEquals(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE, queueCaptor.getValue());
-        WebhookEventMessage capturedMessage = messageCaptor.getValue();
+        EventEnvelope capturedMessage = messageCaptor.getValue();
         assertEquals(requestId, capturedMessage.getRequestId());
-        assertEquals(mergeRequestEvent, capturedMessage.getEventData());
+        assertEquals(mergeRequestEvent, capturedMessage.getPayload());
     }
 
     @Test
@@ -110,10 +123,10 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("merge request", mergeRequestEvent, requestId);
 
         // Then - 应该发送到两个队列
-        verify(rabbitTemplate, times(2)).convertAndSend(anyString(), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(2)).publishToQueue(anyString(), any(EventEnvelope.class));
 
         ArgumentCaptor<String> queueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(rabbitTemplate, times(2)).convertAndSend(queueCaptor.capture(), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(2)).publishToQueue(queueCaptor.capture(), any(EventEnvelope.class));
 
         assertTrue(queueCaptor.getAllValues().contains(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE));
         assertTrue(queueCaptor.getAllValues().contains(RabbitMQConfig.QUALITY_ANALYSIS_QUEUE));
@@ -126,14 +139,14 @@ public class WebhookEventProcessorTest {
 
         // Then
         ArgumentCaptor<String> queueCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<WebhookEventMessage> messageCaptor = ArgumentCaptor.forClass(WebhookEventMessage.class);
+        ArgumentCaptor<EventEnvelope> messageCaptor = ArgumentCaptor.forClass(EventEnvelope.class);
 
-        verify(rabbitTemplate).convertAndSend(queueCaptor.capture(), messageCaptor.capture());
+        verify(eventPublisher).publishToQueue(queueCaptor.capture(), messageCaptor.capture());
 
         assertEquals(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE, queueCaptor.getValue());
-        WebhookEventMessage capturedMessage = messageCaptor.getValue();
+        EventEnvelope capturedMessage = messageCaptor.getValue();
         assertEquals(requestId, capturedMessage.getRequestId());
-        assertEquals(issueEvent, capturedMessage.getEventData());
+        assertEquals(issueEvent, capturedMessage.getPayload());
     }
 
     @Test
@@ -145,10 +158,10 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("issue", issueEvent, requestId);
 
         // Then - 应该发送到两个队列
-        verify(rabbitTemplate, times(2)).convertAndSend(anyString(), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(2)).publishToQueue(anyString(), any(EventEnvelope.class));
 
         ArgumentCaptor<String> queueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(rabbitTemplate, times(2)).convertAndSend(queueCaptor.capture(), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(2)).publishToQueue(queueCaptor.capture(), any(EventEnvelope.class));
 
         assertTrue(queueCaptor.getAllValues().contains(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE));
         assertTrue(queueCaptor.getAllValues().contains(RabbitMQConfig.EFFICIENCY_ANALYSIS_QUEUE));
@@ -160,7 +173,7 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("unsupported", pushEvent, requestId);
 
         // Then
-        verify(rabbitTemplate, never()).convertAndSend(anyString(), any());
+        verify(eventPublisher, never()).publishToQueue(anyString(), any(Object.class));
     }
 
     @Test
@@ -169,20 +182,20 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("PUSH", pushEvent, requestId);
 
         // Then
-        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(WebhookEventMessage.class));
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(EventEnvelope.class));
     }
 
     @Test
     public void testProcessEventAsync_RabbitTemplateException() {
         // Given
         doThrow(new RuntimeException("RabbitMQ connection failed"))
-            .when(rabbitTemplate).convertAndSend(anyString(), any());
+            .when(eventPublisher).publishToQueue(anyString(), any(Object.class));
 
         // When - 应该不抛出异常，只记录日志
         webhookEventProcessor.processEventAsync("push", pushEvent, requestId);
 
         // Then
-        verify(rabbitTemplate).convertAndSend(anyString(), any(WebhookEventMessage.class));
+        verify(eventPublisher).publishToQueue(anyString(), any(EventEnvelope.class));
     }
 
     @Test
@@ -194,8 +207,8 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("push", pushEvent, requestId);
 
         // Then - 应该只发送到一个队列
-        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), any(WebhookEventMessage.class));
-        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(1)).publishToQueue(anyString(), any(EventEnvelope.class));
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(EventEnvelope.class));
     }
 
     @Test
@@ -207,8 +220,8 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("push", pushEvent, requestId);
 
         // Then - 应该只发送到一个队列
-        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), any(WebhookEventMessage.class));
-        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(1)).publishToQueue(anyString(), any(EventEnvelope.class));
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(EventEnvelope.class));
     }
 
     @Test
@@ -224,20 +237,57 @@ public class WebhookEventProcessorTest {
         webhookEventProcessor.processEventAsync("push", pushEvent, requestId);
 
         // Then - 应该只发送到一个队列（因为不是单个合并提交）
-        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), any(WebhookEventMessage.class));
-        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(WebhookEventMessage.class));
+        verify(eventPublisher, times(1)).publishToQueue(anyString(), any(EventEnvelope.class));
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(EventEnvelope.class));
+    }
+
+    @Test
+    public void testProcessEventAsync_PublishNotConfirmed() {
+        // Given
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new EventPublishException("nack", 5, "Publish failed after 5 attempt(s)"));
+        when(eventPublisher.publishToQueue(anyString(), any())).thenReturn(failed);
+
+        // When - 确认失败只记录日志，不影响后续处理
+        webhookEventProcessor.processEventAsync("issue", issueEvent, requestId);
+
+        // Then
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.BUG_TRACKING_ANALYSIS_QUEUE), any(EventEnvelope.class));
+    }
+
+    @Test
+    public void testProcessEventAsync_LargePushGoesToBulkLane() {
+        // Given: GitLab 只带最近的提交，真实规模在 total_commits_count 里
+        pushEvent.setTotalCommitsCount(5000);
+
+        // When
+        webhookEventProcessor.processEventAsync("push", pushEvent, requestId);
+
+        // Then
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.COMMIT_ANALYSIS_BULK_QUEUE), any(EventEnvelope.class));
+        verify(eventPublisher, never()).publishToQueue(eq(RabbitMQConfig.COMMIT_ANALYSIS_QUEUE), any(Object.class));
+    }
+
+    @Test
+    public void testProcessEventAsync_MergeRequestStaysOnInteractiveLane() {
+        // When
+        webhookEventProcessor.processEventAsync("merge request", mergeRequestEvent, requestId);
+
+        // Then
+        verify(eventPublisher).publishToQueue(eq(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE), any(EventEnvelope.class));
+        assertEquals(PriorityLane.INTERACTIVE, PriorityLane.forQueue(RabbitMQConfig.MERGE_REQUEST_ANALYSIS_QUEUE));
     }
 
     @Test
-    public void testWebhookEventMessage() {
-        // Test WebhookEventMessage class
-        WebhookEventMessage message = new WebhookEventMessage();
+    public void testEventEnvelope() {
+        // Test EventEnvelope class
+        EventEnvelope message = new EventEnvelope();
         message.setRequestId(requestId);
-        message.setEventData(pushEvent);
+        message.setPayload(pushEvent);
         message.setTimestamp(12345L);
 
         assertEquals(requestId, message.getRequestId());
-        assertEquals(pushEvent, message.getEventData());
+        assertEquals(pushEvent, message.getPayload());
         assertEquals(12345L, message.getTimestamp());
     }
 
@@ -0,0 +1,90 @@
+package com.gitlab.metrics.util;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 趋势降采样工具类测试
+ */
+public class TrendDownsamplerTest {
+
+    @Test
+    public void testGranularityForRange() {
+        LocalDateTime end = LocalDateTime.of(2024, 6, 30, 0, 0);
+
+        assertEquals(TrendDownsampler.Granularity.DAY, TrendDownsampler.Granularity.forRange(end.minusDays(30), end));
+        assertEquals(TrendDownsampler.Granularity.DAY, TrendDownsampler.Granularity.forRange(end.minusDays(90), end));
+        assertEquals(TrendDownsampler.Granularity.WEEK, TrendDownsampler.Granularity.forRange(end.minusDays(180), end));
+        assertEquals(TrendDownsampler.Granularity.WEEK, TrendDownsampler.Granularity.forRange(end.minusYears(1), end));
+        assertEquals(TrendDownsampler.Granularity.MONTH, TrendDownsampler.Granularity.forRange(end.minusYears(3), end));
+    }
+
+    @Test
+    public void testGranularityResolve_ExplicitOverridesAuto() {
+        LocalDateTime end = LocalDateTime.of(2024, 6, 30, 0, 0);
+
+        assertEquals(TrendDownsampler.Granularity.MONTH,
+            TrendDownsampler.Granularity.resolve("month", end.minusDays(7), end));
+        assertEquals(TrendDownsampler.Granularity.WEEK,
+            TrendDownsampler.Granularity.resolve("auto", end.minusYears(1), end));
+        assertEquals(TrendDownsampler.Granularity.DAY,
+            TrendDownsampler.Granularity.resolve(null, end.minusDays(7), end));
+    }
+
+    @Test
+    public void testBucketStart() {
+        LocalDate thursday = LocalDate.of(2024, 6, 13);
+
+        assertEquals(thursday, TrendDownsampler.Granularity.DAY.bucketStart(thursday));
+        assertEquals(LocalDate.of(2024, 6, 10), TrendDownsampler.Granularity.WEEK.bucketStart(thursday));
+        assertEquals(LocalDate.of(2024, 6, 1), TrendDownsampler.Granularity.MONTH.bucketStart(thursday));
+    }
+
+    @Test
+    public void testLttb_BoundsPointsAndKeepsEndpointsAndPeaks() {
+        List<Double> series = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            series.add(Math.sin(i / 50.0) * 10);
+        }
+        series.set(500, 100.0);
+
+        List<Double> sampled = TrendDownsampler.largestTriangleThreeBuckets(series, 100, Double::doubleValue);
+
+        assertEquals(100, sampled.size());
+        assertEquals(series.get(0), sampled.get(0));
+        assertEquals(series.get(999), sampled.get(99));
+        assertTrue(sampled.contains(100.0));
+    }
+
+    @Test
+    public void testLttb_ReturnsSmallSeriesUnchanged() {
+        List<Double> series = Arrays.asList(1.0, 2.0, 3.0);
+
+        assertSame(series, TrendDownsampler.largestTriangleThreeBuckets(series, 100, Double::doubleValue));
+        assertSame(series, TrendDownsampler.largestTriangleThreeBuckets(series, 0, Double::doubleValue));
+    }
+
+    @Test
+    public void testLttb_ClampsMaxPoints() {
+        List<Double> series = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            series.add((double) (i % 17));
+        }
+
+        assertEquals(TrendDownsampler.MIN_POINTS,
+            TrendDownsampler.largestTriangleThreeBuckets(series, 0, Double::doubleValue).size());
+        assertEquals(TrendDownsampler.MIN_POINTS,
+            TrendDownsampler.largestTriangleThreeBuckets(series, -5, Double::doubleValue).size());
+        assertEquals(TrendDownsampler.MAX_POINTS,
+            TrendDownsampler.largestTriangleThreeBuckets(series, Integer.MAX_VALUE, Double::doubleValue).size());
+        assertEquals(TrendDownsampler.MIN_POINTS, TrendDownsampler.clampMaxPoints(1));
+        assertEquals(120, TrendDownsampler.clampMaxPoints(120));
+    }
+}